@@ -18,7 +18,9 @@ import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.config.AdminConfig;
 import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.rest.BlobStorageService;
+import com.github.ambry.rest.GetSlowRequestsHandler;
 import com.github.ambry.rest.IdConverter;
 import com.github.ambry.rest.IdConverterFactory;
 import com.github.ambry.rest.ResponseStatus;
@@ -67,6 +69,7 @@ class AdminBlobStorageService implements BlobStorageService {
   private final SecurityServiceFactory securityServiceFactory;
   private final AdminConfig adminConfig;
   private final GetReplicasHandler getReplicasHandler;
+  private final GetSlowRequestsHandler getSlowRequestsHandler;
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private IdConverter idConverter = null;
@@ -82,12 +85,13 @@ class AdminBlobStorageService implements BlobStorageService {
    * @param responseHandler the {@link RestResponseHandler} that can be used to submit responses that need to be sent
    *                        out.
    * @param router the {@link Router} instance to use to perform blob operations.
+   * @param traceRecorder the {@link TraceRecorder} that the traces of the requests of the process are recorded in.
    * @param idConverterFactory the {@link IdConverterFactory} to use to get an {@link IdConverter}.
    * @param securityServiceFactory the {@link SecurityServiceFactory} to use to get an {@link SecurityService}.
    */
   public AdminBlobStorageService(AdminConfig adminConfig, AdminMetrics adminMetrics, ClusterMap clusterMap,
-      RestResponseHandler responseHandler, Router router, IdConverterFactory idConverterFactory,
-      SecurityServiceFactory securityServiceFactory) {
+      RestResponseHandler responseHandler, Router router, TraceRecorder traceRecorder,
+      IdConverterFactory idConverterFactory, SecurityServiceFactory securityServiceFactory) {
     this.adminConfig = adminConfig;
     this.adminMetrics = adminMetrics;
     this.responseHandler = responseHandler;
@@ -95,6 +99,7 @@ class AdminBlobStorageService implements BlobStorageService {
     this.idConverterFactory = idConverterFactory;
     this.securityServiceFactory = securityServiceFactory;
     getReplicasHandler = new GetReplicasHandler(adminMetrics, clusterMap);
+    getSlowRequestsHandler = new GetSlowRequestsHandler(traceRecorder, clusterMap.getMetricRegistry());
     logger.trace("Instantiated AdminBlobStorageService");
   }
 
@@ -143,7 +148,10 @@ class AdminBlobStorageService implements BlobStorageService {
       HeadForGetCallback routerCallback = new HeadForGetCallback(restRequest, restResponseChannel, subresource);
       SecurityProcessRequestCallback securityCallback =
           new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
-      if (subresource != null) {
+      if (subresource == null && isGetSlowRequestsRequest(restRequest)) {
+        requestMetrics = adminMetrics.getSlowRequestsMetrics;
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, getSlowRequestsHandler);
+      } else if (subresource != null) {
         logger.trace("Sub-resource requested: {}", subresource);
         switch (subresource) {
           case BlobInfo:
@@ -282,6 +290,21 @@ class AdminBlobStorageService implements BlobStorageService {
     }
   }
 
+  /**
+   * Determines whether the request is a {@link RestUtils.Operations#SLOW_REQUESTS} request, which gets the traces of
+   * the slowest of the recently traced router requests instead of operating on a blob ID in the URI.
+   * @param restRequest the {@link RestRequest} to check.
+   * @return {@code true} if the request is a {@link RestUtils.Operations#SLOW_REQUESTS} request.
+   */
+  private boolean isGetSlowRequestsRequest(RestRequest restRequest) {
+    String operationOrBlobId =
+        RestUtils.getOperationOrBlobIdFromUri(restRequest, null, adminConfig.adminPathPrefixesToRemove);
+    if (operationOrBlobId.startsWith("/")) {
+      operationOrBlobId = operationOrBlobId.substring(1);
+    }
+    return operationOrBlobId.equals(RestUtils.Operations.SLOW_REQUESTS);
+  }
+
   /**
    * Checks if {@link AdminBlobStorageService} is available to serve requests.
    * @throws RestServiceException if {@link AdminBlobStorageService} is not available to serve requests.
@@ -403,6 +426,7 @@ class AdminBlobStorageService implements BlobStorageService {
 
     private final String receivedId;
     private InboundIdConverterCallback idConverterCallback;
+    private GetSlowRequestsHandler getSlowRequestsHandler = null;
 
     SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         HeadForGetCallback callback) {
@@ -431,6 +455,13 @@ class AdminBlobStorageService implements BlobStorageService {
       idConverterCallback = new InboundIdConverterCallback(restRequest, restResponseChannel);
     }
 
+    SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
+        GetSlowRequestsHandler handler) {
+      this(restRequest, restResponseChannel, PROCESS_GET, adminMetrics.getSecurityRequestTimeInMs,
+          adminMetrics.getSecurityRequestCallbackProcessingTimeInMs);
+      getSlowRequestsHandler = handler;
+    }
+
     private SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         String operationType, Histogram operationTimeTracker, Histogram callbackProcessingTimeTracker) {
       this.restRequest = restRequest;
@@ -445,23 +476,29 @@ class AdminBlobStorageService implements BlobStorageService {
     /**
      * Handles request once it has been vetted by the {@link SecurityService}.
      * In case of exception, response is immediately submitted to the {@link RestResponseHandler}.
-     * In case of GET, HEAD and DELETE, ID conversion is triggered.
+     * In case of GET, HEAD and DELETE, ID conversion is triggered, except for GET of
+     * {@link RestUtils.Operations#SLOW_REQUESTS}, which is responded to right away.
      * @param result The result of the request. This would be non null when the request executed successfully
      * @param exception The exception that was reported on execution of the request
      */
     @Override
     public void onCompletion(Void result, Exception exception) {
       callbackTracker.markOperationEnd();
+      ReadableStreamChannel response = null;
       if (exception == null) {
         try {
-          idConverter.convert(restRequest, receivedId, idConverterCallback);
+          if (getSlowRequestsHandler != null) {
+            response = getSlowRequestsHandler.getSlowRequests(restRequest, restResponseChannel);
+          } else {
+            idConverter.convert(restRequest, receivedId, idConverterCallback);
+          }
         } catch (Exception e) {
           exception = e;
         }
       }
 
-      if (exception != null) {
-        submitResponse(restRequest, restResponseChannel, null, exception);
+      if (response != null || exception != null) {
+        submitResponse(restRequest, restResponseChannel, response, exception);
       }
       callbackTracker.markCallbackProcessingEnd();
     }
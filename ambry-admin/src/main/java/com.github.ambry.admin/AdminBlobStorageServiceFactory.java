@@ -16,6 +16,7 @@ package com.github.ambry.admin;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.config.AdminConfig;
 import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.rest.BlobStorageService;
 import com.github.ambry.rest.BlobStorageServiceFactory;
 import com.github.ambry.rest.IdConverterFactory;
@@ -39,6 +40,7 @@ public class AdminBlobStorageServiceFactory implements BlobStorageServiceFactory
   private final ClusterMap clusterMap;
   private final RestResponseHandler responseHandler;
   private final Router router;
+  private final TraceRecorder traceRecorder;
   private final IdConverterFactory idConverterFactory;
   private final SecurityServiceFactory securityServiceFactory;
   private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -55,7 +57,24 @@ public class AdminBlobStorageServiceFactory implements BlobStorageServiceFactory
   public AdminBlobStorageServiceFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
       RestResponseHandler responseHandler, Router router)
       throws Exception {
-    if (verifiableProperties == null || clusterMap == null || responseHandler == null || router == null) {
+    this(verifiableProperties, clusterMap, responseHandler, router, new TraceRecorder(TraceRecorder.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Creates a new instance of AdminBlobStorageServiceFactory.
+   * @param verifiableProperties the properties to use to create configs.
+   * @param clusterMap the {@link ClusterMap} to use.
+   * @param responseHandler the {@link RestResponseHandler} that can be used to submit responses that need to be sent
+   *                        out.
+   * @param router the {@link Router} to use.
+   * @param traceRecorder the {@link TraceRecorder} that the traces of the requests of the process are recorded in.
+   * @throws IllegalArgumentException if any of the arguments are null.
+   */
+  public AdminBlobStorageServiceFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
+      RestResponseHandler responseHandler, Router router, TraceRecorder traceRecorder)
+      throws Exception {
+    if (verifiableProperties == null || clusterMap == null || responseHandler == null || router == null
+        || traceRecorder == null) {
       throw new IllegalArgumentException("Null arguments were provided during instantiation!");
     } else {
       adminConfig = new AdminConfig(verifiableProperties);
@@ -63,6 +82,7 @@ public class AdminBlobStorageServiceFactory implements BlobStorageServiceFactory
       this.clusterMap = clusterMap;
       this.responseHandler = responseHandler;
       this.router = router;
+      this.traceRecorder = traceRecorder;
       idConverterFactory =
           Utils.getObj(adminConfig.adminIdConverterFactory, verifiableProperties, clusterMap.getMetricRegistry());
       securityServiceFactory =
@@ -77,7 +97,7 @@ public class AdminBlobStorageServiceFactory implements BlobStorageServiceFactory
    */
   @Override
   public BlobStorageService getBlobStorageService() {
-    return new AdminBlobStorageService(adminConfig, adminMetrics, clusterMap, responseHandler, router,
+    return new AdminBlobStorageService(adminConfig, adminMetrics, clusterMap, responseHandler, router, traceRecorder,
         idConverterFactory, securityServiceFactory);
   }
 }
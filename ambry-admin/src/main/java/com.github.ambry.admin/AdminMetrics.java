@@ -37,6 +37,7 @@ class AdminMetrics {
   public final RestRequestMetrics getBlobMetrics;
   public final RestRequestMetrics getUserMetadataMetrics;
   public final RestRequestMetrics getReplicasMetrics;
+  public final RestRequestMetrics getSlowRequestsMetrics;
   // POST
   public final RestRequestMetrics postBlobMetrics;
 
@@ -127,6 +128,7 @@ class AdminMetrics {
     getBlobMetrics = new RestRequestMetrics(AdminBlobStorageService.class, "GetBlob", metricRegistry);
     getUserMetadataMetrics = new RestRequestMetrics(AdminBlobStorageService.class, "GetUserMetadata", metricRegistry);
     getReplicasMetrics = new RestRequestMetrics(AdminBlobStorageService.class, "GetReplicas", metricRegistry);
+    getSlowRequestsMetrics = new RestRequestMetrics(AdminBlobStorageService.class, "GetSlowRequests", metricRegistry);
     // POST
     postBlobMetrics = new RestRequestMetrics(AdminBlobStorageService.class, "PostBlob", metricRegistry);
 
@@ -23,6 +23,9 @@ import com.github.ambry.config.AdminConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
+import com.github.ambry.rest.GetSlowRequestsHandler;
 import com.github.ambry.rest.IdConverter;
 import com.github.ambry.rest.IdConverterFactory;
 import com.github.ambry.rest.MockRestResponseChannel;
@@ -39,8 +42,10 @@ import com.github.ambry.rest.RestUtils;
 import com.github.ambry.rest.SecurityService;
 import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.AsyncWritableChannel;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobInfosResult;
 import com.github.ambry.router.InMemoryRouter;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
@@ -95,6 +100,7 @@ public class AdminBlobStorageServiceTest {
   private final SecurityServiceFactory securityServiceFactory;
   private final AdminTestResponseHandler responseHandler;
   private final InMemoryRouter router;
+  private final TraceRecorder traceRecorder = new TraceRecorder(10);
 
   private AdminBlobStorageService adminBlobStorageService;
 
@@ -437,6 +443,46 @@ public class AdminBlobStorageServiceTest {
     }
   }
 
+  /**
+   * Tests that GET of {@link RestUtils.Operations#SLOW_REQUESTS} is handled by the {@link GetSlowRequestsHandler}.
+   * @throws Exception
+   */
+  @Test
+  public void getSlowRequestsTest()
+      throws Exception {
+    RestRequest restRequest =
+        AdminTestUtils.createRestRequest(RestMethod.GET, "/" + RestUtils.Operations.SLOW_REQUESTS, null, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected Content-Type", "application/json",
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_TYPE));
+    JSONObject response = new JSONObject(new String(restResponseChannel.getResponseBody()));
+    assertEquals("No trace should have been recorded", 0, response.getLong(GetSlowRequestsHandler.RECORDED_COUNT_KEY));
+    assertEquals("No trace should be returned", 0,
+        response.getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY).length());
+
+    // the traces are served from the recorder that the service was given.
+    RequestTrace trace = new RequestTrace(1, "trace", 0, 0);
+    trace.complete(100, "Success");
+    traceRecorder.record(trace);
+    restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    response = new JSONObject(new String(restResponseChannel.getResponseBody()));
+    assertEquals("Unexpected recorded count", 1, response.getLong(GetSlowRequestsHandler.RECORDED_COUNT_KEY));
+    assertEquals("Unexpected number of traces", 1,
+        response.getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY).length());
+
+    JSONObject headers = new JSONObject().put(RestUtils.Headers.SLOW_REQUEST_COUNT, "abc");
+    restRequest =
+        AdminTestUtils.createRestRequest(RestMethod.GET, RestUtils.Operations.SLOW_REQUESTS, headers, null);
+    try {
+      doOperation(restRequest, new MockRestResponseChannel());
+      fail("Exception should have been thrown because the count is invalid");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.InvalidArgs, e.getErrorCode());
+    }
+  }
+
   /**
    * Tests that POST fails for {@link AdminBlobStorageService}.
    * @throws Exception
@@ -613,7 +659,7 @@ public class AdminBlobStorageServiceTest {
    * @return an instance of {@link AdminBlobStorageService}.
    */
   private AdminBlobStorageService getAdminBlobStorageService() {
-    return new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, router,
+    return new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, router, traceRecorder,
         idConverterFactory, securityServiceFactory);
   }
 
@@ -924,8 +970,8 @@ public class AdminBlobStorageServiceTest {
   private void doIdConverterExceptionTest(AdminTestIdConverterFactory converterFactory, String expectedExceptionMsg)
       throws InstantiationException, JSONException {
     adminBlobStorageService =
-        new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, router, converterFactory,
-            securityServiceFactory);
+        new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, router, traceRecorder,
+            converterFactory, securityServiceFactory);
     adminBlobStorageService.start();
     doExternalServicesBadInputTest(RestMethod.values(), expectedExceptionMsg);
   }
@@ -951,7 +997,7 @@ public class AdminBlobStorageServiceTest {
       }
       adminBlobStorageService =
           new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, new AdminTestRouter(),
-              idConverterFactory, securityFactory);
+              traceRecorder, idConverterFactory, securityFactory);
       adminBlobStorageService.start();
       doExternalServicesBadInputTest(restMethods, exceptionMsg);
     }
@@ -990,7 +1036,7 @@ public class AdminBlobStorageServiceTest {
   private void doRouterExceptionPipelineTest(AdminTestRouter testRouter, String exceptionMsg)
       throws Exception {
     adminBlobStorageService =
-        new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, testRouter,
+        new AdminBlobStorageService(adminConfig, adminMetrics, CLUSTER_MAP, responseHandler, testRouter, traceRecorder,
             idConverterFactory, securityServiceFactory);
     adminBlobStorageService.start();
     for (RestMethod restMethod : RestMethod.values()) {
@@ -1332,7 +1378,9 @@ class AdminTestRouter implements Router {
    */
   enum OpType {
     DeleteBlob,
+    DeleteBlobs,
     GetBlobInfo,
+    GetBlobInfos,
     GetBlob,
     PutBlob
   }
@@ -1352,16 +1400,53 @@ class AdminTestRouter implements Router {
         OpType.GetBlobInfo);
   }
 
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, callback);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback) {
+    Map<String, BlobInfo> blobInfos = new HashMap<String, BlobInfo>();
+    for (String blobId : blobIds) {
+      blobInfos.put(blobId, new BlobInfo(new BlobProperties(0, "AdminTestRouter"), new byte[0]));
+    }
+    return completeOperation(new GetBlobInfosResult(blobInfos, new HashMap<String, Exception>()), callback,
+        OpType.GetBlobInfos);
+  }
+
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
     return completeOperation(new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0)), callback, OpType.GetBlob);
   }
 
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, callback);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -1383,6 +1468,16 @@ class AdminTestRouter implements Router {
     return completeOperation(null, callback, OpType.DeleteBlob);
   }
 
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback) {
+    return completeOperation((Map<String, Exception>) new HashMap<String, Exception>(), callback, OpType.DeleteBlobs);
+  }
+
   @Override
   public void close() {
     isOpen = false;
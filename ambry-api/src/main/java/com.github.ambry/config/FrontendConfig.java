@@ -57,6 +57,49 @@ public class FrontendConfig {
   @Default("8192")
   public final Integer frontendChunkedGetResponseThresholdInBytes;
 
+  /**
+   * The maximum number of bytes of blob content that the frontend caches. Blobs served from the cache do not go to the
+   * router at all. 0 disables the cache.
+   */
+  @Config("frontend.blob.cache.capacity.bytes")
+  @Default("0")
+  public final long frontendBlobCacheCapacityBytes;
+
+  /**
+   * The size in bytes of the largest blob that is considered for caching by the frontend.
+   */
+  @Config("frontend.blob.cache.max.blob.size.bytes")
+  @Default("65536")
+  public final int frontendBlobCacheMaxBlobSizeBytes;
+
+  /**
+   * The time in ms for which a blob is served from the cache of the frontend after it is cached. Deletes through the
+   * frontend remove the blob from its cache right away, but deletes through other frontends are only seen once it
+   * expires.
+   */
+  @Config("frontend.blob.cache.ttl.ms")
+  @Default("60000")
+  public final long frontendBlobCacheTtlMs;
+
+  /**
+   * The maximum number of blob IDs that a GET of the BlobInfo of multiple blobs can list. Requests that list more are
+   * rejected.
+   */
+  @Config("frontend.max.blob.ids.per.request")
+  @Default("100")
+  public final int frontendMaxBlobIdsPerRequest;
+
+  /**
+   * One in every this many GETs of blobs is traced from the moment the request is received: the time it spends queued
+   * in the frontend, in the router and on each of the data nodes the router sends requests to is recorded, and the
+   * slowest of the recent traces can be looked at through the slowRequests operation. As with
+   * router.trace.sampling.interval, this should only be enabled once every server supports version 4 of get requests.
+   * 0 disables tracing.
+   */
+  @Config("frontend.trace.sampling.interval")
+  @Default("0")
+  public final int frontendTraceSamplingInterval;
+
   public FrontendConfig(VerifiableProperties verifiableProperties) {
     frontendCacheValiditySeconds = verifiableProperties.getLong("frontend.cache.validity.seconds", 365 * 24 * 60 * 60);
     frontendIdConverterFactory = verifiableProperties
@@ -67,5 +110,15 @@ public class FrontendConfig {
         Arrays.asList(verifiableProperties.getString("frontend.path.prefixes.to.remove", "").split(","));
     frontendChunkedGetResponseThresholdInBytes =
         verifiableProperties.getInt("frontend.chunked.get.response.threshold.in.bytes", 8192);
+    frontendBlobCacheCapacityBytes =
+        verifiableProperties.getLongInRange("frontend.blob.cache.capacity.bytes", 0, 0, Long.MAX_VALUE);
+    frontendBlobCacheMaxBlobSizeBytes =
+        verifiableProperties.getIntInRange("frontend.blob.cache.max.blob.size.bytes", 64 * 1024, 0, Integer.MAX_VALUE);
+    frontendBlobCacheTtlMs =
+        verifiableProperties.getLongInRange("frontend.blob.cache.ttl.ms", 60000, 0, Long.MAX_VALUE);
+    frontendMaxBlobIdsPerRequest =
+        verifiableProperties.getIntInRange("frontend.max.blob.ids.per.request", 100, 1, Integer.MAX_VALUE);
+    frontendTraceSamplingInterval =
+        verifiableProperties.getIntInRange("frontend.trace.sampling.interval", 0, 0, Integer.MAX_VALUE);
   }
 }
@@ -49,9 +49,54 @@ public class NettyConfig {
    * Number of netty worker threads.
    */
   @Config("netty.server.worker.thread.count")
-  @Default("1")
+  @Default("Number of available processors")
   public final int nettyServerWorkerThreadCount;
 
+  /**
+   * Use the native epoll transport instead of NIO. The server falls back to NIO if epoll is not available (it is only
+   * available on Linux).
+   */
+  @Config("netty.server.epoll.enabled")
+  @Default("false")
+  public final boolean nettyServerEpollEnabled;
+
+  /**
+   * Number of sockets that are bound to the port, each accepting connections on its own boss thread. Values greater
+   * than 1 require SO_REUSEPORT and are honored only with the epoll transport.
+   */
+  @Config("netty.server.acceptor.count")
+  @Default("1")
+  public final int nettyServerAcceptorCount;
+
+  /**
+   * Whether TCP_NODELAY is set on accepted connections (disables Nagle's algorithm).
+   */
+  @Config("netty.server.tcp.no.delay")
+  @Default("true")
+  public final boolean nettyServerTcpNoDelay;
+
+  /**
+   * The number of bytes queued for write on a connection above which the connection is marked unwritable.
+   */
+  @Config("netty.server.write.buffer.high.water.mark.bytes")
+  @Default("65536")
+  public final int nettyServerWriteBufferHighWaterMarkBytes;
+
+  /**
+   * The number of bytes queued for write on a connection below which an unwritable connection is marked writable
+   * again. Cannot be more than {@link #nettyServerWriteBufferHighWaterMarkBytes}.
+   */
+  @Config("netty.server.write.buffer.low.water.mark.bytes")
+  @Default("32768")
+  public final int nettyServerWriteBufferLowWaterMarkBytes;
+
+  /**
+   * Use a pooled allocator for the buffers that are allocated by the server channels.
+   */
+  @Config("netty.server.pooled.allocator.enabled")
+  @Default("false")
+  public final boolean nettyServerPooledAllocatorEnabled;
+
   /**
    * The maximum length of the initial line in a request (in bytes).
    */
@@ -73,14 +118,84 @@ public class NettyConfig {
   @Default("8192")
   public final int nettyServerMaxChunkSize;
 
+  /**
+   * The maximum number of bytes of response content that are coalesced into a single write to the channel. Response
+   * chunks that are queued for write are wrapped (without copying) into one buffer until this limit is reached. A chunk
+   * larger than this limit is always written by itself.
+   */
+  @Config("netty.server.response.max.batch.size.bytes")
+  @Default("4194304")
+  public final int nettyServerResponseMaxBatchSizeBytes;
+
+  /**
+   * If true, requests that are pipelined on a keep-alive connection (sent before the response to the previous request
+   * is complete) are held and served in order once the previous response completes. Reads on the connection are
+   * paused while requests are being held. If false, a client must wait for a response before sending the next request.
+   */
+  @Config("netty.server.request.pipelining.enabled")
+  @Default("true")
+  public final boolean nettyServerRequestPipeliningEnabled;
+
+  /**
+   * The maximum number of bytes of off-heap memory, shared by all the connections, into which response content for
+   * clients that read slower than {@link #nettyServerResponseSlowClientBytesPerSec} is copied, so that the buffers
+   * handed over by the producer of the content (like the router) can be released without waiting for the client. If
+   * the memory is used up, content is written out without copying, as it is for other clients. 0 disables copying.
+   */
+  @Config("netty.server.response.spool.capacity.bytes")
+  @Default("0")
+  public final long nettyServerResponseSpoolCapacityBytes;
+
+  /**
+   * The maximum amount of the memory of {@link #nettyServerResponseSpoolCapacityBytes} (in bytes) that the responses
+   * of a single connection can take at any time, so that a few slow clients cannot take all of it.
+   */
+  @Config("netty.server.response.spool.connection.capacity.bytes")
+  @Default("8388608")
+  public final long nettyServerResponseSpoolConnectionCapacityBytes;
+
+  /**
+   * The rate (in bytes per second) at which a connection must drain response content to not be considered slow. The
+   * rate is measured over previous responses on the connection and over the response in progress.
+   */
+  @Config("netty.server.response.slow.client.bytes.per.sec")
+  @Default("1048576")
+  public final long nettyServerResponseSlowClientBytesPerSec;
+
   public NettyConfig(VerifiableProperties verifiableProperties) {
     nettyServerBossThreadCount = verifiableProperties.getInt("netty.server.boss.thread.count", 1);
     nettyServerIdleTimeSeconds = verifiableProperties.getInt("netty.server.idle.time.seconds", 60);
     nettyServerPort = verifiableProperties.getInt("netty.server.port", 1174);
     nettyServerSoBacklog = verifiableProperties.getInt("netty.server.so.backlog", 100);
-    nettyServerWorkerThreadCount = verifiableProperties.getInt("netty.server.worker.thread.count", 1);
+    nettyServerWorkerThreadCount = verifiableProperties
+        .getIntInRange("netty.server.worker.thread.count", Runtime.getRuntime().availableProcessors(), 1,
+            Integer.MAX_VALUE);
+    nettyServerEpollEnabled = verifiableProperties.getBoolean("netty.server.epoll.enabled", false);
+    nettyServerAcceptorCount =
+        verifiableProperties.getIntInRange("netty.server.acceptor.count", 1, 1, Integer.MAX_VALUE);
+    nettyServerTcpNoDelay = verifiableProperties.getBoolean("netty.server.tcp.no.delay", true);
+    nettyServerWriteBufferHighWaterMarkBytes =
+        verifiableProperties.getIntInRange("netty.server.write.buffer.high.water.mark.bytes", 64 * 1024, 0,
+            Integer.MAX_VALUE);
+    nettyServerWriteBufferLowWaterMarkBytes =
+        verifiableProperties.getIntInRange("netty.server.write.buffer.low.water.mark.bytes",
+            Math.min(32 * 1024, nettyServerWriteBufferHighWaterMarkBytes), 0, nettyServerWriteBufferHighWaterMarkBytes);
+    nettyServerPooledAllocatorEnabled = verifiableProperties.getBoolean("netty.server.pooled.allocator.enabled", false);
     nettyServerMaxInitialLineLength = verifiableProperties.getInt("netty.server.max.initial.line.length", 4096);
     nettyServerMaxHeaderSize = verifiableProperties.getInt("netty.server.max.header.size", 8192);
     nettyServerMaxChunkSize = verifiableProperties.getInt("netty.server.max.chunk.size", 8192);
+    nettyServerResponseMaxBatchSizeBytes =
+        verifiableProperties.getIntInRange("netty.server.response.max.batch.size.bytes", 4 * 1024 * 1024, 0,
+            Integer.MAX_VALUE);
+    nettyServerRequestPipeliningEnabled =
+        verifiableProperties.getBoolean("netty.server.request.pipelining.enabled", true);
+    nettyServerResponseSpoolCapacityBytes =
+        verifiableProperties.getLongInRange("netty.server.response.spool.capacity.bytes", 0, 0, Long.MAX_VALUE);
+    nettyServerResponseSpoolConnectionCapacityBytes =
+        verifiableProperties.getLongInRange("netty.server.response.spool.connection.capacity.bytes", 8 * 1024 * 1024,
+            0, Long.MAX_VALUE);
+    nettyServerResponseSlowClientBytesPerSec =
+        verifiableProperties.getLongInRange("netty.server.response.slow.client.bytes.per.sec", 1024 * 1024, 0,
+            Long.MAX_VALUE);
   }
 }
@@ -75,6 +75,21 @@ public class NetworkConfig {
   @Default("104857600")
   public final int socketRequestMaxBytes;
 
+  /**
+   * The maximum amount of direct memory in bytes that the buffer pool of each network selector can hold. The pool
+   * is used for SSL buffers and, on the server, for request payloads. 0 disables pooling.
+   */
+  @Config("network.buffer.pool.capacity.bytes")
+  @Default("33554432")
+  public final long networkBufferPoolCapacityBytes;
+
+  /**
+   * Buffers larger than this size in bytes are allocated on the heap instead of from the network buffer pool
+   */
+  @Config("network.buffer.pool.max.buffer.size.bytes")
+  @Default("65536")
+  public final int networkBufferPoolMaxBufferSizeBytes;
+
   public NetworkConfig(VerifiableProperties verifiableProperties) {
 
     numNetworkThreads = verifiableProperties.getIntInRange("num.network.threads", 3, 1, Integer.MAX_VALUE);
@@ -86,5 +101,10 @@ public class NetworkConfig {
     socketRequestMaxBytes =
         verifiableProperties.getIntInRange("socket.request.max.bytes", 100 * 1024 * 1024, 1, Integer.MAX_VALUE);
     queuedMaxRequests = verifiableProperties.getIntInRange("queued.max.requests", 500, 1, Integer.MAX_VALUE);
+    networkBufferPoolCapacityBytes =
+        verifiableProperties.getLongInRange("network.buffer.pool.capacity.bytes", 32 * 1024 * 1024, 0, Long.MAX_VALUE);
+    networkBufferPoolMaxBufferSizeBytes =
+        verifiableProperties.getIntInRange("network.buffer.pool.max.buffer.size.bytes", 64 * 1024, 0,
+            Integer.MAX_VALUE / 2);
   }
 }
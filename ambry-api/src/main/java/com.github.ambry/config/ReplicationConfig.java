@@ -91,6 +91,29 @@ public class ReplicationConfig {
   @Default("false")
   public final boolean replicationValidateMessageStream;
 
+  /**
+   * Whether an empty local replica should bootstrap by copying the sealed index segments and the log ranges they
+   * cover from a peer in the local datacenter, before switching to token based replication
+   */
+  @Config("replication.bootstrap.from.sealed.segments")
+  @Default("false")
+  public final boolean replicationBootstrapFromSealedSegments;
+
+  /**
+   * The number of consecutive failures to reach or copy from the bootstrap source after which another peer is chosen
+   * as the source
+   */
+  @Config("replication.bootstrap.source.max.failures")
+  @Default("3")
+  public final int replicationBootstrapSourceMaxFailures;
+
+  /**
+   * The time after which the bootstrap source is replaced if no sealed segment could be copied from it
+   */
+  @Config("replication.bootstrap.source.timeout.ms")
+  @Default("300000")
+  public final long replicationBootstrapSourceTimeoutMs;
+
   public ReplicationConfig(VerifiableProperties verifiableProperties) {
 
     replicationTokenFactory =
@@ -112,5 +135,11 @@ public class ReplicationConfig {
     replicationMaxLagForWaitTimeInBytes =
         verifiableProperties.getLongInRange("replication.max.lag.for.wait.time.in.bytes", 5242880, 0, 104857600);
     replicationValidateMessageStream = verifiableProperties.getBoolean("replication.validate.message.stream", false);
+    replicationBootstrapFromSealedSegments =
+        verifiableProperties.getBoolean("replication.bootstrap.from.sealed.segments", false);
+    replicationBootstrapSourceMaxFailures =
+        verifiableProperties.getIntInRange("replication.bootstrap.source.max.failures", 3, 1, Integer.MAX_VALUE);
+    replicationBootstrapSourceTimeoutMs =
+        verifiableProperties.getLongInRange("replication.bootstrap.source.timeout.ms", 300000, 1, Long.MAX_VALUE);
   }
 }
@@ -40,6 +40,16 @@ public class RestServerConfig {
   @Default("5")
   public final int restServerRequestHandlerScalingUnitCount;
 
+  /**
+   * Comma separated list of the RestMethods (GET, HEAD etc) whose requests are handed to the BlobStorageService on the
+   * thread that submits them (usually the NIO event loop of the request's channel) instead of being queued for a
+   * request handling scaling unit. Only methods whose handling never blocks should be listed here. If empty, all
+   * requests are queued.
+   */
+  @Config("rest.server.request.handler.inline.dispatch.methods")
+  @Default("")
+  public final String restServerRequestHandlerInlineDispatchMethods;
+
   /**
    * The RestRequestHandlerFactory that needs to be used by the RestServer
    * for bootstrapping the RestRequestHandler
@@ -86,6 +96,15 @@ public class RestServerConfig {
   @Default("Location,x-ambry-blob-size")
   public final String restServerPublicAccessLogResponseHeaders;
 
+  /**
+   * The number of public access log entries that can wait to be formatted and written out by a background thread.
+   * Entries that arrive when this many are waiting are dropped. If 0, entries are formatted and written out on the
+   * NIO event loop that processes the request.
+   */
+  @Config("rest.server.public.access.log.async.buffer.size")
+  @Default("8192")
+  public final int restServerPublicAccessLogAsyncBufferSize;
+
   /**
    * Health check URI for load balancers (VIPs)
    */
@@ -93,12 +112,22 @@ public class RestServerConfig {
   @Default("/healthCheck")
   public final String restServerHealthCheckUri;
 
+  /**
+   * The number of the most recently completed request traces that are kept in memory, out of which the slowest are
+   * served by the slowRequests operation. The recorder is shared by the router and the blob storage service.
+   */
+  @Config("rest.server.trace.recorder.capacity")
+  @Default("1024")
+  public final int restServerTraceRecorderCapacity;
+
   public RestServerConfig(VerifiableProperties verifiableProperties) {
     restServerBlobStorageServiceFactory = verifiableProperties.getString("rest.server.blob.storage.service.factory");
     restServerNioServerFactory =
         verifiableProperties.getString("rest.server.nio.server.factory", "com.github.ambry.rest.NettyServerFactory");
     restServerRequestHandlerScalingUnitCount =
         verifiableProperties.getIntInRange("rest.server.request.handler.scaling.unit.count", 5, 0, Integer.MAX_VALUE);
+    restServerRequestHandlerInlineDispatchMethods =
+        verifiableProperties.getString("rest.server.request.handler.inline.dispatch.methods", "");
     restServerRequestHandlerFactory = verifiableProperties
         .getString("rest.server.request.handler.factory", "com.github.ambry.rest.AsyncRequestResponseHandlerFactory");
     restServerResponseHandlerScalingUnitCount =
@@ -112,6 +141,10 @@ public class RestServerConfig {
             "Host,Referer,User-Agent,Content-Length,x-ambry-content-type,x-ambry-owner-id,x-ambry-ttl,x-ambry-private,x-ambry-service-id,X-Forwarded-For");
     restServerPublicAccessLogResponseHeaders =
         verifiableProperties.getString("rest.server.public.access.log.response.headers", "Location,x-ambry-blob-size");
+    restServerPublicAccessLogAsyncBufferSize =
+        verifiableProperties.getIntInRange("rest.server.public.access.log.async.buffer.size", 8192, 0, 1 << 30);
     restServerHealthCheckUri = verifiableProperties.getString("rest.server.health.check.uri", "/healthCheck");
+    restServerTraceRecorderCapacity =
+        verifiableProperties.getIntInRange("rest.server.trace.recorder.capacity", 1024, 1, Integer.MAX_VALUE);
   }
 }
@@ -28,6 +28,14 @@ public class RouterConfig {
   @Default("1")
   public final int routerScalingUnitCount;
 
+  /**
+   * Number of network event loops shared by all the scaling units of the router. Connections to a data node are
+   * owned by a single event loop.
+   */
+  @Config("router.network.event.loop.count")
+  @Default("1")
+  public final int routerNetworkEventLoopCount;
+
   /**
    * The hostname of the node upon which the router runs.
    */
@@ -54,6 +62,15 @@ public class RouterConfig {
   @Default("2")
   public final int routerScalingUnitMaxConnectionsPerPortSsl;
 
+  /**
+   * The max number of requests that can be in flight at the same time on a single connection to a (datanode, port).
+   * Values greater than 1 multiplex requests over a connection, which lets a few connections per data node sustain
+   * a high request concurrency.
+   */
+  @Config("router.max.in.flight.requests.per.connection")
+  @Default("1")
+  public final int routerMaxInFlightRequestsPerConnection;
+
   /**
    * Timeout for checking out an available connection to a (datanode, port).
    */
@@ -96,6 +113,38 @@ public class RouterConfig {
   @Default("1")
   public final int routerMaxSlippedPutAttempts;
 
+  /**
+   * The number of chunks of a put operation that are filled and put in parallel when the operation starts. The number
+   * adapts to the upload, but never goes below this.
+   */
+  @Config("router.put.min.parallel.chunks")
+  @Default("4")
+  public final int routerPutMinParallelChunks;
+
+  /**
+   * The maximum number of chunks of a put operation that are filled and put in parallel.
+   */
+  @Config("router.put.max.parallel.chunks")
+  @Default("16")
+  public final int routerPutMaxParallelChunks;
+
+  /**
+   * The maximum number of bytes of chunk buffers that the put operations of a router can hold at a time. Put
+   * operations stop reading data from their channels while this memory is exhausted. This must be at least
+   * {@link #routerMaxPutChunkSizeBytes}.
+   */
+  @Config("router.put.chunk.buffer.pool.capacity.bytes")
+  @Default("256 * 1024 * 1024")
+  public final long routerPutChunkBufferPoolCapacityBytes;
+
+  /**
+   * The maximum time in ms for which the router uses its cached list of writable partitions before fetching it again
+   * from the cluster map. The list is also fetched again after a put request fails.
+   */
+  @Config("router.writable.partitions.refresh.interval.ms")
+  @Default("1000")
+  public final long routerWritablePartitionsRefreshIntervalMs;
+
   /**
    * The maximum number of parallel requests allowed for a delete operation.
    */
@@ -110,6 +159,24 @@ public class RouterConfig {
   @Default("2")
   public final int routerDeleteSuccessTarget;
 
+  /**
+   * The maximum number of blobs whose deletes are sent to a data node in a single request when deleting multiple blobs
+   * at once. The deletes of the blobs of a batch that are destined for the same data node are coalesced into requests
+   * of up to this many blobs.
+   */
+  @Config("router.delete.batch.max.blobs.per.request")
+  @Default("100")
+  public final int routerDeleteBatchMaxBlobsPerRequest;
+
+  /**
+   * Whether the deletes of a batch are sent as multi-blob delete requests. Data nodes that predate multi-blob delete
+   * requests cannot read them, so this should only be enabled once all the data nodes understand them. When disabled,
+   * the delete of every blob of a batch is sent as a request of its own.
+   */
+  @Config("router.delete.batch.request.enabled")
+  @Default("false")
+  public final boolean routerDeleteBatchRequestEnabled;
+
   /**
    * The maximum number of parallel requests issued at a time by the get manager for a get operation on a chunk.
    */
@@ -131,18 +198,174 @@ public class RouterConfig {
   @Default("true")
   public final boolean routerGetCrossDcEnabled;
 
+  /**
+   * The maximum number of blobs whose BlobInfo is requested from a data node in a single request when getting the
+   * BlobInfo of multiple blobs at once. The requests of a batch that are destined for the same data node are coalesced
+   * into requests of up to this many blobs.
+   */
+  @Config("router.get.blob.info.batch.max.blobs.per.request")
+  @Default("100")
+  public final int routerGetBlobInfoBatchMaxBlobsPerRequest;
+
+  /**
+   * The maximum number of data chunks of a composite blob that a get operation fetches ahead of the consumer of the
+   * blob, including the chunks that have been fetched but not yet consumed. The number of chunks fetched ahead adapts
+   * between {@link #routerGetPrefetchMinChunks} and this value based on how fast the consumer drains the chunks
+   * relative to how long chunks take to be fetched.
+   */
+  @Config("router.get.prefetch.max.chunks")
+  @Default("4")
+  public final int routerGetPrefetchMaxChunks;
+
+  /**
+   * The minimum number of data chunks of a composite blob that a get operation fetches ahead of the consumer of the
+   * blob. See {@link #routerGetPrefetchMaxChunks}.
+   */
+  @Config("router.get.prefetch.min.chunks")
+  @Default("1")
+  public final int routerGetPrefetchMinChunks;
+
+  /**
+   * The maximum number of bytes of data chunks that the get operations of a router hold in memory, counting the
+   * chunks being fetched and the ones waiting to be consumed. A chunk is not fetched if that would exceed this limit,
+   * unless its operation has no chunks in memory at all.
+   */
+  @Config("router.get.chunk.memory.capacity.bytes")
+  @Default("256 * 1024 * 1024")
+  public final long routerGetChunkMemoryCapacityBytes;
+
+  /**
+   * Indicates whether get operations send a hedged request to one more replica when their requests take longer than
+   * the {@link #routerGetHedgingLatencyPercentile} of the observed request latency of the partition.
+   */
+  @Config("router.get.hedging.enabled")
+  @Default("false")
+  public final boolean routerGetHedgingEnabled;
+
+  /**
+   * The percentile of the observed latency of get requests to a partition after which a get operation on the
+   * partition sends a hedged request, if {@link #routerGetHedgingEnabled} is set.
+   */
+  @Config("router.get.hedging.latency.percentile")
+  @Default("0.95")
+  public final double routerGetHedgingLatencyPercentile;
+
+  /**
+   * The minimum time in ms that the requests of a get operation must have been in flight before a hedged request is
+   * sent, regardless of the observed latency of the partition.
+   */
+  @Config("router.get.hedging.min.delay.ms")
+  @Default("10")
+  public final int routerGetHedgingMinDelayMs;
+
+  /**
+   * The type of the operation tracker that decides the replicas to which the requests of a get operation are sent.
+   * "SimpleOperationTracker" sends requests to the replicas in a random order, local replicas first.
+   * "AdaptiveOperationTracker" sends requests to the replicas with the lowest expected latency first, local replicas
+   * first.
+   */
+  @Config("router.get.operation.tracker.type")
+  @Default("SimpleOperationTracker")
+  public final String routerGetOperationTrackerType;
+
+  /**
+   * The time after which the observed request latency of a data node counts for half as much when the
+   * AdaptiveOperationTracker estimates the latency of a new request to it. This lets data nodes that have not been
+   * sent any requests for a while, for example because they were slow, be tried again.
+   */
+  @Config("router.adaptive.operation.tracker.latency.half.life.ms")
+  @Default("30000")
+  public final int routerAdaptiveOperationTrackerLatencyHalfLifeMs;
+
+  /**
+   * The maximum number of bytes of blob metadata that a router caches: the BlobInfo of blobs and the ids of the data
+   * chunks of composite blobs. Cached metadata is served without contacting data nodes. 0 disables the cache.
+   */
+  @Config("router.metadata.cache.capacity.bytes")
+  @Default("0")
+  public final long routerMetadataCacheCapacityBytes;
+
+  /**
+   * The time in ms for which metadata is served from the cache of the router after it is cached. Deletes through the
+   * router remove the metadata of a blob from its cache right away, but deletes through other routers are only seen
+   * once it expires.
+   */
+  @Config("router.metadata.cache.ttl.ms")
+  @Default("60000")
+  public final long routerMetadataCacheTtlMs;
+
+  /**
+   * Indicates whether the metadata cached by the router is held in direct (off-heap) memory.
+   */
+  @Config("router.metadata.cache.use.direct.memory")
+  @Default("false")
+  public final boolean routerMetadataCacheUseDirectMemory;
+
+  /**
+   * Indicates whether concurrent gets of the whole of the same blob share a single get operation. A get joins the
+   * operation in flight for the blob if the operation has not yet returned the blob, and the chunks fetched by the
+   * operation are then written out to every get that joined it.
+   */
+  @Config("router.get.coalescing.enabled")
+  @Default("false")
+  public final boolean routerGetCoalescingEnabled;
+
+  /**
+   * The maximum number of chunks that a get sharing an operation with others can fall behind the fastest of them
+   * before it is dropped (and fails), so that a slow client does not hold the chunks of the operation, and the other
+   * gets, back.
+   */
+  @Config("router.get.coalescing.max.subscriber.lag.chunks")
+  @Default("4")
+  public final int routerGetCoalescingMaxSubscriberLagChunks;
+
+  /**
+   * Indicates whether gets of a range of a blob ask the data nodes for just that range. Data nodes that do not support
+   * ranges return the whole blob for such requests, so this should only be enabled once every data node supports them.
+   * Whether or not it is enabled, the router cuts the range out of whatever the data nodes return.
+   */
+  @Config("router.get.range.request.enabled")
+  @Default("false")
+  public final boolean routerGetRangeRequestEnabled;
+
+  /**
+   * One in every this many get operations is traced: the time it spends in the router and on each of the data nodes
+   * it sends requests to is recorded, and the slowest of the recent traces can be looked at through the slowRequests
+   * operation of the admin and frontend services. Gets that are part of a request that is traced by the frontend add to
+   * its trace instead.
+   * Traced requests carry a trace id that only servers that support version 4 of get requests can read, so this
+   * should only be enabled once every server does. 0 disables tracing.
+   */
+  @Config("router.trace.sampling.interval")
+  @Default("0")
+  public final int routerTraceSamplingInterval;
+
+  /**
+   * The version of the metadata content that is written for composite blobs. Version 2 records the chunk size and the
+   * total size of the blob, which lets gets of a range of the blob fetch only the data chunks that overlap it. Routers
+   * that only know version 1 cannot read blobs written in version 2, so this should only be set to 2 once every
+   * router does.
+   */
+  @Config("router.metadata.content.version")
+  @Default("1")
+  public final short routerMetadataContentVersion;
+
   /**
    * Create a RouterConfig instance.
    * @param verifiableProperties the properties map to refer to.
    */
   public RouterConfig(VerifiableProperties verifiableProperties) {
     routerScalingUnitCount = verifiableProperties.getIntInRange("router.scaling.unit.count", 1, 1, Integer.MAX_VALUE);
+    routerNetworkEventLoopCount =
+        verifiableProperties.getIntInRange("router.network.event.loop.count", 1, 1, Integer.MAX_VALUE);
     routerHostname = verifiableProperties.getString("router.hostname");
     routerDatacenterName = verifiableProperties.getString("router.datacenter.name");
     routerScalingUnitMaxConnectionsPerPortPlainText =
         verifiableProperties.getIntInRange("router.scaling.unit.max.connections.per.port.plain.text", 5, 1, 20);
     routerScalingUnitMaxConnectionsPerPortSsl =
         verifiableProperties.getIntInRange("router.scaling.unit.max.connections.per.port.ssl", 2, 1, 20);
+    routerMaxInFlightRequestsPerConnection =
+        verifiableProperties.getIntInRange("router.max.in.flight.requests.per.connection", 1, 1, 1000);
     routerConnectionCheckoutTimeoutMs =
         verifiableProperties.getIntInRange("router.connection.checkout.timeout.ms", 1000, 1, 5000);
     routerRequestTimeoutMs = verifiableProperties.getInt("router.request.timeout.ms", 2000);
@@ -150,10 +373,60 @@ public class RouterConfig {
     routerPutRequestParallelism = verifiableProperties.getInt("router.put.request.parallelism", 3);
     routerPutSuccessTarget = verifiableProperties.getInt("router.put.success.target", 2);
     routerMaxSlippedPutAttempts = verifiableProperties.getInt("router.max.slipped.put.attempts", 1);
+    routerPutMinParallelChunks = verifiableProperties.getIntInRange("router.put.min.parallel.chunks", 4, 1, 1024);
+    routerPutMaxParallelChunks =
+        verifiableProperties.getIntInRange("router.put.max.parallel.chunks", Math.max(16, routerPutMinParallelChunks),
+            routerPutMinParallelChunks, 1024);
+    routerPutChunkBufferPoolCapacityBytes =
+        verifiableProperties.getLongInRange("router.put.chunk.buffer.pool.capacity.bytes",
+            Math.max(256 * 1024 * 1024, routerMaxPutChunkSizeBytes), routerMaxPutChunkSizeBytes, Long.MAX_VALUE);
+    routerWritablePartitionsRefreshIntervalMs =
+        verifiableProperties.getLongInRange("router.writable.partitions.refresh.interval.ms", 1000, 0, Long.MAX_VALUE);
     routerDeleteRequestParallelism = verifiableProperties.getInt("router.delete.request.parallelism", 12);
     routerDeleteSuccessTarget = verifiableProperties.getInt("router.delete.success.target", 2);
+    routerDeleteBatchMaxBlobsPerRequest =
+        verifiableProperties.getIntInRange("router.delete.batch.max.blobs.per.request", 100, 1, 10000);
+    routerDeleteBatchRequestEnabled = verifiableProperties.getBoolean("router.delete.batch.request.enabled", false);
     routerGetRequestParallelism = verifiableProperties.getInt("router.get.request.parallelism", 2);
     routerGetSuccessTarget = verifiableProperties.getInt("router.get.success.target", 1);
     routerGetCrossDcEnabled = verifiableProperties.getBoolean("router.get.cross.dc.enabled", true);
+    routerGetBlobInfoBatchMaxBlobsPerRequest =
+        verifiableProperties.getIntInRange("router.get.blob.info.batch.max.blobs.per.request", 100, 1, 10000);
+    routerGetPrefetchMaxChunks =
+        verifiableProperties.getIntInRange("router.get.prefetch.max.chunks", 4, 1, Integer.MAX_VALUE);
+    routerGetPrefetchMinChunks =
+        verifiableProperties.getIntInRange("router.get.prefetch.min.chunks", 1, 1, routerGetPrefetchMaxChunks);
+    routerGetChunkMemoryCapacityBytes =
+        verifiableProperties.getLongInRange("router.get.chunk.memory.capacity.bytes", 256 * 1024 * 1024, 0,
+            Long.MAX_VALUE);
+    routerGetHedgingEnabled = verifiableProperties.getBoolean("router.get.hedging.enabled", false);
+    routerGetHedgingLatencyPercentile =
+        verifiableProperties.getDoubleInRange("router.get.hedging.latency.percentile", 0.95, 0.0, 1.0);
+    routerGetHedgingMinDelayMs =
+        verifiableProperties.getIntInRange("router.get.hedging.min.delay.ms", 10, 1, Integer.MAX_VALUE);
+    routerGetOperationTrackerType =
+        verifiableProperties.getString("router.get.operation.tracker.type", "SimpleOperationTracker");
+    if (!routerGetOperationTrackerType.equals("SimpleOperationTracker") && !routerGetOperationTrackerType.equals(
+        "AdaptiveOperationTracker")) {
+      throw new IllegalArgumentException(
+          "Unknown router.get.operation.tracker.type: " + routerGetOperationTrackerType);
+    }
+    routerAdaptiveOperationTrackerLatencyHalfLifeMs =
+        verifiableProperties.getIntInRange("router.adaptive.operation.tracker.latency.half.life.ms", 30000, 1,
+            Integer.MAX_VALUE);
+    routerMetadataCacheCapacityBytes =
+        verifiableProperties.getLongInRange("router.metadata.cache.capacity.bytes", 0, 0, Long.MAX_VALUE);
+    routerMetadataCacheTtlMs =
+        verifiableProperties.getLongInRange("router.metadata.cache.ttl.ms", 60000, 0, Long.MAX_VALUE);
+    routerMetadataCacheUseDirectMemory =
+        verifiableProperties.getBoolean("router.metadata.cache.use.direct.memory", false);
+    routerGetCoalescingEnabled = verifiableProperties.getBoolean("router.get.coalescing.enabled", false);
+    routerGetCoalescingMaxSubscriberLagChunks =
+        verifiableProperties.getIntInRange("router.get.coalescing.max.subscriber.lag.chunks", 4, 1, Integer.MAX_VALUE);
+    routerGetRangeRequestEnabled = verifiableProperties.getBoolean("router.get.range.request.enabled", false);
+    routerTraceSamplingInterval =
+        verifiableProperties.getIntInRange("router.trace.sampling.interval", 0, 0, Integer.MAX_VALUE);
+    routerMetadataContentVersion =
+        verifiableProperties.getShortInRange("router.metadata.content.version", (short) 1, (short) 1, (short) 2);
   }
 }
@@ -33,8 +33,19 @@ public class ServerConfig {
   @Default("10")
   public final int serverSchedulerNumOfthreads;
 
+  /**
+   * The number of public access log entries that can wait to be formatted and written out by a background thread.
+   * Entries that arrive when this many are waiting are dropped. If 0, entries are formatted and written out by the
+   * request handler threads.
+   */
+  @Config("server.public.access.log.async.buffer.size")
+  @Default("8192")
+  public final int serverPublicAccessLogAsyncBufferSize;
+
   public ServerConfig(VerifiableProperties verifiableProperties) {
     serverRequestHandlerNumOfThreads = verifiableProperties.getInt("server.request.handler.num.of.threads", 7);
     serverSchedulerNumOfthreads = verifiableProperties.getInt("server.scheduler.num.of.threads", 10);
+    serverPublicAccessLogAsyncBufferSize =
+        verifiableProperties.getIntInRange("server.public.access.log.async.buffer.size", 8192, 0, 1 << 30);
   }
 }
@@ -19,7 +19,7 @@ import com.github.ambry.utils.Utils;
 
 /**
  * The properties of a blob that the client can set at time of put. The blob size and serviceId are mandatory fields and
- * must be set. The creation time is determined when this object is constructed.
+ * must be set. The creation time is determined when this object is constructed, unless it is given.
  */
 public class BlobProperties {
 
@@ -60,13 +60,28 @@ public class BlobProperties {
    */
   public BlobProperties(long blobSize, String serviceId, String ownerId, String contentType, boolean isPrivate,
       long timeToLiveInSeconds) {
+    this(blobSize, serviceId, ownerId, contentType, isPrivate, timeToLiveInSeconds,
+        SystemTime.getInstance().milliseconds());
+  }
+
+  /**
+   * @param blobSize The size of the blob in bytes
+   * @param serviceId The service id that is creating this blob
+   * @param ownerId The owner of the blob (For example , memberId or groupId)
+   * @param contentType The content type of the blob (eg: mime). Can be Null
+   * @param isPrivate Is the blob secure
+   * @param timeToLiveInSeconds The time to live, in seconds, relative to blob creation time.
+   * @param creationTimeInMs The time at which the blob was created.
+   */
+  public BlobProperties(long blobSize, String serviceId, String ownerId, String contentType, boolean isPrivate,
+      long timeToLiveInSeconds, long creationTimeInMs) {
     this.blobSize = blobSize;
     this.serviceId = serviceId;
     this.ownerId = ownerId;
     this.contentType = contentType;
     this.isPrivate = isPrivate;
     this.timeToLiveInSeconds = timeToLiveInSeconds;
-    this.creationTimeInMs = SystemTime.getInstance().milliseconds();
+    this.creationTimeInMs = creationTimeInMs;
   }
 
   public long getTimeToLiveInSeconds() {
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The trace of a single request: an id that is propagated to the other hops that serve the request, and the spans of
+ * time spent in each of them. Spans can be added from any thread until the trace is completed.
+ */
+public class RequestTrace {
+  private final long traceId;
+  private final String name;
+  private final long startTimeMs;
+  private final long startTimeNs;
+  private final List<Span> spans = new ArrayList<Span>();
+  private long durationInNs = -1;
+  private String outcome = null;
+
+  /**
+   * A span of time spent on the request by one hop.
+   */
+  public static class Span {
+    private final String name;
+    private final String host;
+    private final long startOffsetInNs;
+    private final long durationInNs;
+    private long remoteQueueTimeInNs = -1;
+    private long remoteProcessingTimeInNs = -1;
+
+    private Span(String name, String host, long startOffsetInNs, long durationInNs) {
+      this.name = name;
+      this.host = host;
+      this.startOffsetInNs = startOffsetInNs;
+      this.durationInNs = durationInNs;
+    }
+
+    /**
+     * Records the breakdown reported by the remote host that served the request of this span.
+     * @param queueTimeInNs the time the request spent queued on the remote host.
+     * @param processingTimeInNs the time spent processing the request on the remote host (looking it up in the store).
+     */
+    public synchronized void setRemoteTimes(long queueTimeInNs, long processingTimeInNs) {
+      remoteQueueTimeInNs = queueTimeInNs;
+      remoteProcessingTimeInNs = processingTimeInNs;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the host the span was spent on (or waiting for), or {@code null} if the span was spent locally.
+     */
+    public String getHost() {
+      return host;
+    }
+
+    /**
+     * @return the time between the start of the trace and the start of the span.
+     */
+    public long getStartOffsetInNs() {
+      return startOffsetInNs;
+    }
+
+    public long getDurationInNs() {
+      return durationInNs;
+    }
+
+    /**
+     * @return the time the request spent queued on the remote host, or -1 if it was not reported.
+     */
+    public synchronized long getRemoteQueueTimeInNs() {
+      return remoteQueueTimeInNs;
+    }
+
+    /**
+     * @return the time spent processing the request on the remote host, or -1 if it was not reported.
+     */
+    public synchronized long getRemoteProcessingTimeInNs() {
+      return remoteProcessingTimeInNs;
+    }
+  }
+
+  /**
+   * @param traceId the id of the trace. Never 0.
+   * @param name a description of the request traced.
+   * @param startTimeMs the wall clock time at which the request started.
+   * @param startTimeNs the monotonic clock time at which the request started.
+   */
+  public RequestTrace(long traceId, String name, long startTimeMs, long startTimeNs) {
+    this.traceId = traceId;
+    this.name = name;
+    this.startTimeMs = startTimeMs;
+    this.startTimeNs = startTimeNs;
+  }
+
+  /**
+   * Adds a span to the trace. Ignored if the trace has been completed.
+   * @param name the name of the span.
+   * @param host the host the span was spent on, or {@code null} if the span was spent locally.
+   * @param spanStartTimeNs the monotonic clock time at which the span started.
+   * @param spanEndTimeNs the monotonic clock time at which the span ended.
+   * @return the {@link Span} added, which is not part of the trace if it has been completed.
+   */
+  public synchronized Span addSpan(String name, String host, long spanStartTimeNs, long spanEndTimeNs) {
+    Span span = new Span(name, host, spanStartTimeNs - startTimeNs, spanEndTimeNs - spanStartTimeNs);
+    if (durationInNs == -1) {
+      spans.add(span);
+    }
+    return span;
+  }
+
+  /**
+   * Completes the trace. Only the first completion counts.
+   * @param endTimeNs the monotonic clock time at which the request completed.
+   * @param outcome a description of the outcome of the request.
+   * @return {@code true} if the trace was completed by this call.
+   */
+  public synchronized boolean complete(long endTimeNs, String outcome) {
+    if (durationInNs != -1) {
+      return false;
+    }
+    durationInNs = Math.max(endTimeNs - startTimeNs, 0);
+    this.outcome = outcome;
+    return true;
+  }
+
+  public long getTraceId() {
+    return traceId;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getStartTimeMs() {
+    return startTimeMs;
+  }
+
+  /**
+   * @return the monotonic clock time at which the request started.
+   */
+  public long getStartTimeNs() {
+    return startTimeNs;
+  }
+
+  /**
+   * @return the time taken by the request, or -1 if the trace has not been completed.
+   */
+  public synchronized long getDurationInNs() {
+    return durationInNs;
+  }
+
+  /**
+   * @return the description of the outcome of the request, or {@code null} if the trace has not been completed.
+   */
+  public synchronized String getOutcome() {
+    return outcome;
+  }
+
+  /**
+   * @return the spans of the trace, in the order in which they were added.
+   */
+  public synchronized List<Span> getSpans() {
+    return new ArrayList<Span>(spans);
+  }
+
+  @Override
+  public String toString() {
+    return "RequestTrace[id=" + traceId + ", name=" + name + ", durationInNs=" + getDurationInNs() + "]";
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.github.ambry.utils.Time;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Samples requests to trace and keeps the most recent completed {@link RequestTrace}s in a fixed size ring buffer, so
+ * that the slowest of them can be looked at. One instance is created per process and handed to every component that
+ * records traces or serves them.
+ */
+public class TraceRecorder {
+  /**
+   * The number of traces kept by recorders that are not given a capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final AtomicReferenceArray<RequestTrace> traces;
+  private final AtomicLong recordedCount = new AtomicLong(0);
+  private final AtomicLong sampledCount = new AtomicLong(0);
+
+  private static final Comparator<RequestTrace> SLOWEST_FIRST = new Comparator<RequestTrace>() {
+    @Override
+    public int compare(RequestTrace trace1, RequestTrace trace2) {
+      return Long.compare(trace2.getDurationInNs(), trace1.getDurationInNs());
+    }
+  };
+
+  /**
+   * @param capacity the number of most recent traces to keep.
+   */
+  public TraceRecorder(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+    }
+    traces = new AtomicReferenceArray<RequestTrace>(capacity);
+  }
+
+  /**
+   * Starts a trace for one in every {@code samplingInterval} requests.
+   * @param name a description of the request.
+   * @param samplingInterval the interval at which requests are traced. Requests are not traced if this is not
+   *                         positive.
+   * @param time the {@link Time} instance to use to time the trace.
+   * @return the {@link RequestTrace} started, or {@code null} if the request is not traced.
+   */
+  public RequestTrace startTrace(String name, int samplingInterval, Time time) {
+    return startTrace(name, samplingInterval, time.milliseconds(), time.nanoseconds());
+  }
+
+  /**
+   * Starts a trace for one in every {@code samplingInterval} requests, from a time at which the request had already
+   * started.
+   * @param name a description of the request.
+   * @param samplingInterval the interval at which requests are traced. Requests are not traced if this is not
+   *                         positive.
+   * @param startTimeMs the wall clock time at which the request started.
+   * @param startTimeNs the monotonic clock time at which the request started.
+   * @return the {@link RequestTrace} started, or {@code null} if the request is not traced.
+   */
+  public RequestTrace startTrace(String name, int samplingInterval, long startTimeMs, long startTimeNs) {
+    if (samplingInterval <= 0 || sampledCount.getAndIncrement() % samplingInterval != 0) {
+      return null;
+    }
+    long traceId;
+    do {
+      traceId = ThreadLocalRandom.current().nextLong();
+    } while (traceId == 0);
+    return new RequestTrace(traceId, name, startTimeMs, startTimeNs);
+  }
+
+  /**
+   * Records a completed trace, replacing the oldest one if the buffer is full.
+   * @param trace the {@link RequestTrace} to record.
+   */
+  public void record(RequestTrace trace) {
+    traces.set((int) (recordedCount.getAndIncrement() % traces.length()), trace);
+  }
+
+  /**
+   * @param count the maximum number of traces to return.
+   * @return the slowest of the traces in the buffer, slowest first.
+   */
+  public List<RequestTrace> getSlowestTraces(int count) {
+    List<RequestTrace> recentTraces = new ArrayList<RequestTrace>();
+    for (int i = 0; i < traces.length(); i++) {
+      RequestTrace trace = traces.get(i);
+      if (trace != null) {
+        recentTraces.add(trace);
+      }
+    }
+    Collections.sort(recentTraces, SLOWEST_FIRST);
+    return recentTraces.subList(0, Math.min(Math.max(count, 0), recentTraces.size()));
+  }
+
+  /**
+   * @return the number of traces recorded since the recorder was created.
+   */
+  public long getRecordedCount() {
+    return recordedCount.get();
+  }
+
+  /**
+   * @return the number of traces that the buffer can hold.
+   */
+  public int getCapacity() {
+    return traces.length();
+  }
+}
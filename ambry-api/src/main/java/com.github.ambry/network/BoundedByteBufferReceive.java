@@ -13,6 +13,7 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferPool;
 import java.io.EOFException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +21,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -31,12 +33,24 @@ public class BoundedByteBufferReceive implements Receive {
   private ByteBuffer sizeBuffer;
   private long sizeToRead;
   private long sizeRead;
+  private final ByteBufferPool bufferPool;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public BoundedByteBufferReceive() {
+    this(null);
+  }
+
+  /**
+   * Creates a receive whose payload buffer is allocated from {@code bufferPool}. The payload must be handed back to the
+   * pool by calling {@link #release()} once it is no longer used.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the payload from. If {@code null}, the payload is
+   *                   allocated on the heap.
+   */
+  public BoundedByteBufferReceive(ByteBufferPool bufferPool) {
     sizeToRead = 0;
     sizeRead = 0;
     sizeBuffer = ByteBuffer.allocate(8);
+    this.bufferPool = bufferPool;
   }
 
   @Override
@@ -58,7 +72,7 @@ public class BoundedByteBufferReceive implements Receive {
         sizeToRead = sizeBuffer.getLong();
         sizeRead += 8;
         bytesRead += 8;
-        buffer = ByteBuffer.allocate((int) sizeToRead - 8);
+        buffer = allocatePayload((int) sizeToRead - 8);
       }
     }
     if (buffer != null && sizeRead < sizeToRead) {
@@ -80,6 +94,36 @@ public class BoundedByteBufferReceive implements Receive {
     return buffer;
   }
 
+  /**
+   * Returns the payload to the {@link ByteBufferPool} it was allocated from. The payload must not be used after this
+   * call. This is a no-op if the receive was not created with a pool or the payload has already been released.
+   */
+  public void release() {
+    if (bufferPool != null && buffer != null) {
+      bufferPool.deallocate(buffer);
+      buffer = null;
+    }
+  }
+
+  /**
+   * Allocates the payload buffer from the pool if there is one, falling back to the heap if the pool cannot serve the
+   * request immediately.
+   * @param size the size of the payload in bytes.
+   * @return the payload buffer.
+   */
+  private ByteBuffer allocatePayload(int size) {
+    if (bufferPool != null) {
+      try {
+        return bufferPool.allocate(size, 0);
+      } catch (TimeoutException e) {
+        logger.trace("Buffer pool could not serve {} bytes, allocating on heap", size);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return ByteBuffer.allocate(size);
+  }
+
   /**
    * The total size in bytes that needs to receive from the channel
    * It will be initialized only after header is read.
@@ -51,4 +51,12 @@ public class NetworkReceive {
   public long getReceiveStartTimeInMs() {
     return receiveStartTimeInMs;
   }
+
+  /**
+   * Returns the buffer holding the received bytes to the pool it was allocated from, if any. The received bytes must
+   * not be used after this call.
+   */
+  public void release() {
+    receivedBytes.release();
+  }
 }
@@ -26,6 +26,7 @@ public class NetworkSend {
   private final Send payload;
   // The start time of this send
   private final long sendStartTimeInMs;
+  private final long sendStartTimeInNs;
   private final NetworkSendMetrics metrics;
   private final Time time;
 
@@ -34,6 +35,7 @@ public class NetworkSend {
     this.payload = payload;
     this.time = time;
     this.sendStartTimeInMs = time.milliseconds();
+    this.sendStartTimeInNs = time.nanoseconds();
     this.metrics = metrics;
   }
 
@@ -51,7 +53,7 @@ public class NetworkSend {
 
   public void onSendComplete() {
     if (metrics != null) {
-      metrics.updateSendTime(time.milliseconds() - sendStartTimeInMs);
+      metrics.updateSendTimeInNs(time.nanoseconds() - sendStartTimeInNs);
     }
   }
 }
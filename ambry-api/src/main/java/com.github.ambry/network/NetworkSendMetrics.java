@@ -14,6 +14,7 @@
 package com.github.ambry.network;
 
 import com.codahale.metrics.Histogram;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -33,4 +34,12 @@ public class NetworkSendMetrics {
   public void updateSendTime(long value) {
     sendTime.update(value);
   }
+
+  /**
+   * Updates the send time metrics when the networkSend has been sent out completely, given the time spent in ns.
+   * @param value the time spent in ns by the request or response to be sent out completely
+   */
+  public void updateSendTimeInNs(long value) {
+    updateSendTime(TimeUnit.NANOSECONDS.toMillis(value));
+  }
 }
@@ -14,6 +14,7 @@
 package com.github.ambry.network;
 
 import com.codahale.metrics.Histogram;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -25,17 +26,40 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
   private final Histogram responseTotalTime;
   private final Histogram responseSendTimeBySize;
   private final Histogram responseTotalTimeBySize;
+  private final Histogram responseQueueTimeInNs;
+  private final Histogram responseSendTimeInNs;
+  private final Histogram responseTotalTimeInNs;
   private long timeSpentTillNow;
+  private long timeSpentTillNowInNs;
 
   public ServerNetworkResponseMetrics(Histogram responseQueueTime, Histogram responseSendTime,
       Histogram responseTotalTime, Histogram responseSendTimeBySize, Histogram responseTotalTimeBySize,
       long timeSpentTillNow) {
+    this(responseQueueTime, responseSendTime, responseTotalTime, responseSendTimeBySize, responseTotalTimeBySize,
+        timeSpentTillNow, null, null, null, 0);
+  }
+
+  /**
+   * @param responseQueueTimeInNs the histogram of the time in ns spent by the response in the queue. Can be
+   *                              {@code null}.
+   * @param responseSendTimeInNs the histogram of the time in ns spent sending the response. Can be {@code null}.
+   * @param responseTotalTimeInNs the histogram of the total time in ns spent on the request. Can be {@code null}.
+   * @param timeSpentTillNowInNs the time in ns spent on the request before the response was queued.
+   */
+  public ServerNetworkResponseMetrics(Histogram responseQueueTime, Histogram responseSendTime,
+      Histogram responseTotalTime, Histogram responseSendTimeBySize, Histogram responseTotalTimeBySize,
+      long timeSpentTillNow, Histogram responseQueueTimeInNs, Histogram responseSendTimeInNs,
+      Histogram responseTotalTimeInNs, long timeSpentTillNowInNs) {
     super(responseSendTime);
     this.responseQueueTime = responseQueueTime;
     this.responseTotalTime = responseTotalTime;
     this.responseSendTimeBySize = responseSendTimeBySize;
     this.responseTotalTimeBySize = responseTotalTimeBySize;
     this.timeSpentTillNow = timeSpentTillNow;
+    this.responseQueueTimeInNs = responseQueueTimeInNs;
+    this.responseSendTimeInNs = responseSendTimeInNs;
+    this.responseTotalTimeInNs = responseTotalTimeInNs;
+    this.timeSpentTillNowInNs = timeSpentTillNowInNs;
   }
 
   /**
@@ -47,6 +71,18 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
     timeSpentTillNow += value;
   }
 
+  /**
+   * Updates the time spent by the response in the queue before being sent out, given in ns
+   * @param value the time spent in ns by the response in the queue before being sent out
+   */
+  public void updateQueueTimeInNs(long value) {
+    if (responseQueueTimeInNs != null) {
+      responseQueueTimeInNs.update(value);
+    }
+    timeSpentTillNowInNs += value;
+    updateQueueTime(TimeUnit.NANOSECONDS.toMillis(value));
+  }
+
   /**
    * Updates few metrics when send completes
    * @param value the time spent by the response to be completely sent
@@ -63,4 +99,20 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
       responseTotalTimeBySize.update(timeSpentTillNow);
     }
   }
+
+  /**
+   * Updates few metrics when send completes, given the time spent in ns
+   * @param value the time spent in ns by the response to be completely sent
+   */
+  @Override
+  public void updateSendTimeInNs(long value) {
+    if (responseSendTimeInNs != null) {
+      responseSendTimeInNs.update(value);
+    }
+    timeSpentTillNowInNs += value;
+    if (responseTotalTimeInNs != null) {
+      responseTotalTimeInNs.update(timeSpentTillNowInNs);
+    }
+    super.updateSendTimeInNs(value);
+  }
 }
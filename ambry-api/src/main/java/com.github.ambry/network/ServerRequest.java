@@ -0,0 +1,28 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+
+/**
+ * A {@link Request} received by a server. Besides the wall clock time, it records the time at which it was received
+ * with a monotonic clock, so that the time it waits to be processed can be measured precisely.
+ */
+public interface ServerRequest extends Request {
+  /**
+   * Gets the time in ns when this request started, as given by a monotonic clock. Only meaningful when compared with
+   * other times given by the same clock.
+   * @return The time in ns when the request started
+   */
+  long getStartTimeInNs();
+}
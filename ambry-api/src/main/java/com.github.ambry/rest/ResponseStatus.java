@@ -30,6 +30,10 @@ public enum ResponseStatus {
    * 202 - Request was accepted.
    */
   Accepted,
+  /**
+   * 206 - Only the requested range of the resource is being returned.
+   */
+  PartialContent,
 
   // 3xx
   /**
@@ -61,6 +65,10 @@ public enum ResponseStatus {
    * 410 Gone - Resource has been deleted or has expired.
    */
   Gone,
+  /**
+   * 416 Range Not Satisfiable - The requested range does not contain any byte of the resource.
+   */
+  RangeNotSatisfiable,
 
   // 5xx
   /**
@@ -86,6 +94,8 @@ public enum ResponseStatus {
       case MissingArgs:
       case UnsupportedHttpMethod:
         return ResponseStatus.BadRequest;
+      case RangeNotSatisfiable:
+        return ResponseStatus.RangeNotSatisfiable;
       case ResourceDirty:
         return ResponseStatus.Forbidden;
       case Unauthorized:
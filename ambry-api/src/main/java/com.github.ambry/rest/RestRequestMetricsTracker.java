@@ -14,6 +14,9 @@
 package com.github.ambry.rest;
 
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -37,6 +40,9 @@ import java.util.concurrent.atomic.AtomicLong;
  *    request.
  * 5. When the response for the request is complete and the request is "closed", the metrics that are stored are
  *    updated in the metrics object (injected or default).
+ * <p/>
+ * The {@link BlobStorageService} can also start a {@link RequestTrace} of the request through the tracker. The trace
+ * starts at the time the request was received by the NIO layer and is recorded when the request is "closed".
  */
 public class RestRequestMetricsTracker {
   protected static final String DEFAULT_REQUEST_TYPE = "Unknown";
@@ -55,6 +61,8 @@ public class RestRequestMetricsTracker {
   private final AtomicBoolean metricsRecorded = new AtomicBoolean(false);
   private RestRequestMetrics metrics = defaultMetrics;
   private boolean failed = false;
+  private volatile RequestTrace trace = null;
+  private volatile TraceRecorder traceRecorder = null;
 
   /**
    * Tracker for updating NIO related metrics.
@@ -66,7 +74,10 @@ public class RestRequestMetricsTracker {
     private final AtomicLong requestProcessingTimeInMs = new AtomicLong(0);
     private final AtomicLong responseProcessingTimeInMs = new AtomicLong(0);
 
-    private long requestReceivedTime = 0;
+    // the round trip time is measured with the monotonic clock so that it is not skewed by changes to the wall clock.
+    private volatile boolean requestReceived = false;
+    private volatile long requestReceivedTimeInNs = 0;
+    private volatile long requestReceivedTimeInMs = 0;
     private long roundTripTimeInMs = 0;
 
     /**
@@ -93,17 +104,19 @@ public class RestRequestMetricsTracker {
      * Marks the time at which the request was received.
      */
     public void markRequestReceived() {
-      requestReceivedTime = System.currentTimeMillis();
+      requestReceivedTimeInMs = System.currentTimeMillis();
+      requestReceivedTimeInNs = System.nanoTime();
+      requestReceived = true;
     }
 
     /**
      * Marks the time at which request was completed so that request RTT can be calculated.
      */
     public void markRequestCompleted() {
-      if (requestReceivedTime == 0) {
+      if (!requestReceived) {
         throw new IllegalStateException("Request was marked completed without being marked received");
       }
-      roundTripTimeInMs = System.currentTimeMillis() - requestReceivedTime;
+      roundTripTimeInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestReceivedTimeInNs);
     }
   }
 
@@ -117,7 +130,9 @@ public class RestRequestMetricsTracker {
     private final AtomicLong responseProcessingTimeInMs = new AtomicLong(0);
     private final AtomicLong responseProcessingWaitTimeInMs = new AtomicLong(0);
 
-    private long requestReceivedTime = 0;
+    // the round trip time is measured with the monotonic clock so that it is not skewed by changes to the wall clock.
+    private boolean requestReceived = false;
+    private long requestReceivedTimeInNs = 0;
     private long roundTripTimeInMs = 0;
 
     /**
@@ -162,17 +177,18 @@ public class RestRequestMetricsTracker {
      * Marks the time at which the request was received.
      */
     public void markRequestReceived() {
-      requestReceivedTime = System.currentTimeMillis();
+      requestReceivedTimeInNs = System.nanoTime();
+      requestReceived = true;
     }
 
     /**
      * Marks the time at which request was completed so that request RTT can be calculated.
      */
     public void markRequestCompleted() {
-      if (requestReceivedTime == 0) {
+      if (!requestReceived) {
         throw new IllegalStateException("Request was marked completed without being marked received");
       }
-      roundTripTimeInMs = System.currentTimeMillis() - requestReceivedTime;
+      roundTripTimeInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestReceivedTimeInNs);
     }
   }
 
@@ -183,6 +199,45 @@ public class RestRequestMetricsTracker {
     failed = true;
   }
 
+  /**
+   * Starts a trace of the request for one in every {@code samplingInterval} requests. The trace starts at the time the
+   * request was received by the NIO layer (or now, if it was not marked received), so the time the request spent in
+   * the NIO and scaling layers before this call is the first span of the trace. The trace is recorded in
+   * {@code traceRecorder} when the metrics are recorded.
+   * @param traceRecorder the {@link TraceRecorder} to sample the request with and to record the trace in.
+   * @param name a description of the request.
+   * @param samplingInterval the interval at which requests are traced. Requests are not traced if this is not
+   *                         positive.
+   * @return the {@link RequestTrace} started, or {@code null} if the request is not traced.
+   * @throws IllegalStateException if a trace of the request has already been started.
+   */
+  public RequestTrace startTrace(TraceRecorder traceRecorder, String name, int samplingInterval) {
+    if (trace != null) {
+      throw new IllegalStateException("A trace of the request has already been started");
+    }
+    long nowNs = System.nanoTime();
+    long startTimeNs = nowNs;
+    long startTimeMs = System.currentTimeMillis();
+    if (nioMetricsTracker.requestReceived) {
+      startTimeNs = nioMetricsTracker.requestReceivedTimeInNs;
+      startTimeMs = nioMetricsTracker.requestReceivedTimeInMs;
+    }
+    RequestTrace requestTrace = traceRecorder.startTrace(name, samplingInterval, startTimeMs, startTimeNs);
+    if (requestTrace != null) {
+      requestTrace.addSpan("RestServerQueue", null, startTimeNs, nowNs);
+      this.traceRecorder = traceRecorder;
+      trace = requestTrace;
+    }
+    return requestTrace;
+  }
+
+  /**
+   * @return the {@link RequestTrace} of the request, or {@code null} if the request is not traced.
+   */
+  public RequestTrace getTrace() {
+    return trace;
+  }
+
   /**
    * Injects a {@link RestRequestMetrics} that can be used to track the metrics of the {@link RestRequest} that this
    * instance of RestRequestMetricsTracker is attached to.
@@ -219,6 +274,10 @@ public class RestRequestMetricsTracker {
         if (failed) {
           metrics.operationError.inc();
         }
+        RequestTrace requestTrace = trace;
+        if (requestTrace != null && requestTrace.complete(System.nanoTime(), failed ? "Failure" : "Success")) {
+          traceRecorder.record(requestTrace);
+        }
       }
     } else {
       throw new IllegalStateException("Could not record metrics because there is no metrics tracker");
@@ -28,6 +28,7 @@ import com.github.ambry.router.RouterErrorCode;
  * {@link ResponseStatus#Forbidden}
  * {@link ResponseStatus#ProxyAuthenticationRequired}
  * {@link ResponseStatus#Unauthorized}
+ * {@link ResponseStatus#RangeNotSatisfiable}
  * <p/>
  * About logging:
  * Generally, error codes not belonging to the group {@link #InternalServerError} are logged at DEBUG level.
@@ -85,6 +86,10 @@ public enum RestServiceErrorCode {
    * Client is requesting a HTTP method that is not supported.
    */
   UnsupportedHttpMethod,
+  /**
+   * Client has requested a range of bytes that does not contain any byte of the resource.
+   */
+  RangeNotSatisfiable,
 
   /**
    * Generic InternalServerError that is a result of problems on the server side that is not caused by the client and
@@ -130,6 +135,8 @@ public enum RestServiceErrorCode {
         return Deleted;
       case BlobDoesNotExist:
         return NotFound;
+      case RangeNotSatisfiable:
+        return RangeNotSatisfiable;
       case AmbryUnavailable:
       case InsufficientCapacity:
       case OperationTimedOut:
@@ -14,12 +14,14 @@
 package com.github.ambry.rest;
 
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.Utils;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -70,6 +72,22 @@ public class RestUtils {
      * {@code "Pragma"}
      */
     public static final String PRAGMA = "Pragma";
+    /**
+     * {@code "Range"}
+     */
+    public static final String RANGE = "Range";
+    /**
+     * {@code "Content-Range"}
+     */
+    public static final String CONTENT_RANGE = "Content-Range";
+    /**
+     * {@code "Accept-Ranges"}
+     */
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+    /**
+     * {@code "ETag"}
+     */
+    public static final String ETAG = "ETag";
 
     // ambry specific headers
     /**
@@ -116,6 +134,36 @@ public class RestUtils {
      * has been modified after the value set for this header.
      */
     public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    /**
+     * Header to be set by the clients during a Get blob call to denote, that blob should be served only if its
+     * {@link #ETAG} does not match any of the entity tags in the value set for this header. Takes precedence over
+     * {@link #IF_MODIFIED_SINCE}.
+     */
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    /**
+     * mandatory in request for {@link Operations#BLOB_INFOS}; comma separated list of the IDs of the blobs whose
+     * BlobInfo is requested.
+     */
+    public final static String BLOB_IDS = "x-ambry-blob-ids";
+    /**
+     * optional in request for {@link Operations#SLOW_REQUESTS}; number; default 10; the maximum number of requests
+     * to return.
+     */
+    public final static String SLOW_REQUEST_COUNT = "x-ambry-slow-request-count";
+  }
+
+  /**
+   * Operations that are not performed on a single blob and are requested by name in place of a blob ID.
+   */
+  public static final class Operations {
+    /**
+     * GET of the BlobInfo of all the blobs in {@link Headers#BLOB_IDS}, returned as JSON content.
+     */
+    public final static String BLOB_INFOS = "blobInfos";
+    /**
+     * GET of the traces of the slowest of the recently traced router requests, returned as JSON content (Admin only).
+     */
+    public final static String SLOW_REQUESTS = "slowRequests";
   }
 
   /**
@@ -139,11 +187,19 @@ public class RestUtils {
     Replicas
   }
 
+  /**
+   * The names of the parts of a multipart POST. All parts other than {@link #BLOB_PART} have to precede it in the body.
+   */
   public static final class MultipartPost {
     public final static String BLOB_PART = "Blob";
     public final static String USER_METADATA_PART = "UserMetadata";
   }
 
+  /**
+   * The unit of the ranges in {@link Headers#RANGE}, {@link Headers#CONTENT_RANGE} and {@link Headers#ACCEPT_RANGES}.
+   */
+  public static final String BYTE_RANGE_UNIT = "bytes";
+
   private static final int CRC_SIZE = 8;
   private static final short USER_METADATA_VERSION_V1 = 1;
   public static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
@@ -344,6 +400,80 @@ public class RestUtils {
     return toReturn;
   }
 
+  /**
+   * Gets the blob IDs in {@link Headers#BLOB_IDS}.
+   * @param args the arguments associated with the request.
+   * @return the blob IDs in {@link Headers#BLOB_IDS}, in the order they are listed.
+   * @throws RestServiceException if {@link Headers#BLOB_IDS} is not present in {@code args} or does not list any
+   *                              blob ID.
+   */
+  public static List<String> getBlobIds(Map<String, Object> args)
+      throws RestServiceException {
+    List<String> blobIds = new ArrayList<String>();
+    for (String blobId : getHeader(args, Headers.BLOB_IDS, true).split(",")) {
+      blobId = blobId.trim();
+      if (!blobId.isEmpty()) {
+        blobIds.add(blobId);
+      }
+    }
+    if (blobIds.isEmpty()) {
+      throw new RestServiceException("Request does not list any blob ID in header: " + Headers.BLOB_IDS,
+          RestServiceErrorCode.InvalidArgs);
+    }
+    return blobIds;
+  }
+
+  /**
+   * Builds the {@link ByteRange} requested in {@link Headers#RANGE}. Only a single range of bytes is supported.
+   * @param args the arguments associated with the request.
+   * @return the {@link ByteRange} requested, or {@code null} if {@link Headers#RANGE} is not present in {@code args}.
+   * @throws RestServiceException if {@link Headers#RANGE} is not a single, valid range of bytes.
+   */
+  public static ByteRange buildByteRange(Map<String, Object> args)
+      throws RestServiceException {
+    String rangeHeaderValue = getHeader(args, Headers.RANGE, false);
+    if (rangeHeaderValue == null) {
+      return null;
+    }
+    String rangeSpec = rangeHeaderValue.trim();
+    if (!rangeSpec.startsWith(BYTE_RANGE_UNIT + "=")) {
+      throw new RestServiceException(Headers.RANGE + "[" + rangeHeaderValue + "] is not a range of " + BYTE_RANGE_UNIT,
+          RestServiceErrorCode.InvalidArgs);
+    }
+    rangeSpec = rangeSpec.substring(BYTE_RANGE_UNIT.length() + 1);
+    int dashIndex = rangeSpec.indexOf('-');
+    if (dashIndex == -1 || rangeSpec.contains(",")) {
+      throw new RestServiceException(Headers.RANGE + "[" + rangeHeaderValue + "] is not a single range",
+          RestServiceErrorCode.InvalidArgs);
+    }
+    String startOffsetStr = rangeSpec.substring(0, dashIndex).trim();
+    String endOffsetStr = rangeSpec.substring(dashIndex + 1).trim();
+    try {
+      if (startOffsetStr.isEmpty()) {
+        return ByteRange.fromLastNBytes(Long.parseLong(endOffsetStr));
+      } else if (endOffsetStr.isEmpty()) {
+        return ByteRange.fromStartOffset(Long.parseLong(startOffsetStr));
+      } else {
+        return ByteRange.fromOffsetRange(Long.parseLong(startOffsetStr), Long.parseLong(endOffsetStr));
+      }
+    } catch (IllegalArgumentException e) {
+      throw new RestServiceException(Headers.RANGE + "[" + rangeHeaderValue + "] is not a valid range", e,
+          RestServiceErrorCode.InvalidArgs);
+    }
+  }
+
+  /**
+   * Builds the value of {@link Headers#CONTENT_RANGE} for a response that contains a range of a blob.
+   * @param resolvedRange the range of the blob in the response, resolved using
+   *                      {@link ByteRange#toResolvedByteRange(long)}.
+   * @param totalSize the size of the blob.
+   * @return the value of {@link Headers#CONTENT_RANGE}.
+   */
+  public static String buildContentRange(ByteRange resolvedRange, long totalSize) {
+    return BYTE_RANGE_UNIT + " " + resolvedRange.getStartOffset() + "-" + resolvedRange.getEndOffset() + "/"
+        + totalSize;
+  }
+
   /**
    * Gets the value of the header {@code header} in {@code args}.
    * @param args a map of arguments to be used to look for {@code header}.
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+/**
+ * A range of bytes of a blob, as requested in a {@link Router#getBlob(String, ByteRange)} call. A range is either
+ * <ul>
+ *   <li>an offset range, from a start offset to an end offset (both inclusive),</li>
+ *   <li>an open ended range, from a start offset to the end of the blob, or</li>
+ *   <li>a suffix range, made up of the last N bytes of the blob.</li>
+ * </ul>
+ * The latter two can only be turned into offsets once the size of the blob is known, which is done by
+ * {@link #toResolvedByteRange(long)}. The semantics follow those of the HTTP {@code Range} header (RFC 7233).
+ */
+public class ByteRange {
+  private final ByteRangeType type;
+  private final long startOffset;
+  private final long endOffset;
+  private final long lastNBytes;
+
+  /**
+   * The types of byte ranges.
+   */
+  public enum ByteRangeType {
+    /**
+     * A range from a start offset to an end offset, both inclusive.
+     */
+    OFFSET_RANGE,
+    /**
+     * A range from a start offset to the end of the blob.
+     */
+    FROM_START_OFFSET,
+    /**
+     * A range made up of the last N bytes of the blob.
+     */
+    LAST_N_BYTES
+  }
+
+  /**
+   * Creates a range from {@code startOffset} to {@code endOffset}, both inclusive.
+   * @param startOffset the offset of the first byte in the range.
+   * @param endOffset the offset of the last byte in the range.
+   * @return the {@link ByteRange}.
+   * @throws IllegalArgumentException if {@code startOffset} is negative or is greater than {@code endOffset}.
+   */
+  public static ByteRange fromOffsetRange(long startOffset, long endOffset) {
+    if (startOffset < 0 || endOffset < startOffset) {
+      throw new IllegalArgumentException("Invalid range offsets: " + startOffset + "-" + endOffset);
+    }
+    return new ByteRange(ByteRangeType.OFFSET_RANGE, startOffset, endOffset, -1);
+  }
+
+  /**
+   * Creates a range from {@code startOffset} to the end of the blob.
+   * @param startOffset the offset of the first byte in the range.
+   * @return the {@link ByteRange}.
+   * @throws IllegalArgumentException if {@code startOffset} is negative.
+   */
+  public static ByteRange fromStartOffset(long startOffset) {
+    if (startOffset < 0) {
+      throw new IllegalArgumentException("Invalid range start offset: " + startOffset);
+    }
+    return new ByteRange(ByteRangeType.FROM_START_OFFSET, startOffset, -1, -1);
+  }
+
+  /**
+   * Creates a range made up of the last {@code lastNBytes} bytes of the blob.
+   * @param lastNBytes the number of bytes at the end of the blob that make up the range.
+   * @return the {@link ByteRange}.
+   * @throws IllegalArgumentException if {@code lastNBytes} is negative.
+   */
+  public static ByteRange fromLastNBytes(long lastNBytes) {
+    if (lastNBytes < 0) {
+      throw new IllegalArgumentException("Invalid number of bytes in range: " + lastNBytes);
+    }
+    return new ByteRange(ByteRangeType.LAST_N_BYTES, -1, -1, lastNBytes);
+  }
+
+  private ByteRange(ByteRangeType type, long startOffset, long endOffset, long lastNBytes) {
+    this.type = type;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.lastNBytes = lastNBytes;
+  }
+
+  /**
+   * @return the {@link ByteRangeType} of this range.
+   */
+  public ByteRangeType getType() {
+    return type;
+  }
+
+  /**
+   * @return the offset of the first byte in the range.
+   * @throws UnsupportedOperationException if this is a {@link ByteRangeType#LAST_N_BYTES} range.
+   */
+  public long getStartOffset() {
+    if (type == ByteRangeType.LAST_N_BYTES) {
+      throw new UnsupportedOperationException("A range of the last N bytes does not have a start offset");
+    }
+    return startOffset;
+  }
+
+  /**
+   * @return the offset of the last byte in the range.
+   * @throws UnsupportedOperationException if this is not a {@link ByteRangeType#OFFSET_RANGE} range.
+   */
+  public long getEndOffset() {
+    if (type != ByteRangeType.OFFSET_RANGE) {
+      throw new UnsupportedOperationException("Only an offset range has an end offset");
+    }
+    return endOffset;
+  }
+
+  /**
+   * @return the number of bytes at the end of the blob that make up the range.
+   * @throws UnsupportedOperationException if this is not a {@link ByteRangeType#LAST_N_BYTES} range.
+   */
+  public long getLastNBytes() {
+    if (type != ByteRangeType.LAST_N_BYTES) {
+      throw new UnsupportedOperationException("Only a range of the last N bytes has a number of bytes");
+    }
+    return lastNBytes;
+  }
+
+  /**
+   * @return the number of bytes in the range.
+   * @throws UnsupportedOperationException if this is not a {@link ByteRangeType#OFFSET_RANGE} range, in which case
+   *                                       the size depends on the size of the blob.
+   */
+  public long getRangeSize() {
+    return getEndOffset() - startOffset + 1;
+  }
+
+  /**
+   * Turns this range into an offset range, given the size of the blob it applies to. The end of the range is capped
+   * at the end of the blob.
+   * @param totalSize the size of the blob in bytes.
+   * @return a {@link ByteRangeType#OFFSET_RANGE} range with offsets within the blob.
+   * @throws RouterException with {@link RouterErrorCode#RangeNotSatisfiable} if the range does not contain any byte of
+   *                         the blob.
+   */
+  public ByteRange toResolvedByteRange(long totalSize)
+      throws RouterException {
+    long resolvedStartOffset;
+    long resolvedEndOffset = totalSize - 1;
+    switch (type) {
+      case OFFSET_RANGE:
+        resolvedStartOffset = startOffset;
+        resolvedEndOffset = Math.min(endOffset, resolvedEndOffset);
+        break;
+      case FROM_START_OFFSET:
+        resolvedStartOffset = startOffset;
+        break;
+      default:
+        resolvedStartOffset = lastNBytes == 0 ? totalSize : Math.max(totalSize - lastNBytes, 0);
+        break;
+    }
+    if (resolvedStartOffset >= totalSize) {
+      throw new RouterException("Range " + this + " cannot be satisfied by a blob of size " + totalSize,
+          RouterErrorCode.RangeNotSatisfiable);
+    }
+    return new ByteRange(ByteRangeType.OFFSET_RANGE, resolvedStartOffset, resolvedEndOffset, -1);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ByteRange other = (ByteRange) o;
+    return type == other.type && startOffset == other.startOffset && endOffset == other.endOffset
+        && lastNBytes == other.lastNBytes;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = type.hashCode();
+    result = 31 * result + (int) (startOffset ^ (startOffset >>> 32));
+    result = 31 * result + (int) (endOffset ^ (endOffset >>> 32));
+    result = 31 * result + (int) (lastNBytes ^ (lastNBytes >>> 32));
+    return result;
+  }
+
+  /**
+   * @return the range in the form of the byte range spec of a HTTP {@code Range} header.
+   */
+  @Override
+  public String toString() {
+    switch (type) {
+      case OFFSET_RANGE:
+        return startOffset + "-" + endOffset;
+      case FROM_START_OFFSET:
+        return startOffset + "-";
+      default:
+        return "-" + lastNBytes;
+    }
+  }
+}
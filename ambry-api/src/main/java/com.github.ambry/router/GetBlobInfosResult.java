@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.messageformat.BlobInfo;
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * The result of a {@link Router#getBlobInfos(java.util.List)} operation. Every distinct blob ID that was requested is
+ * either in {@link #getBlobInfos()} or in {@link #getFailures()}.
+ */
+public class GetBlobInfosResult {
+  private final Map<String, BlobInfo> blobInfos;
+  private final Map<String, Exception> failures;
+
+  /**
+   * Creates a result of a {@link Router#getBlobInfos(java.util.List)} operation.
+   * @param blobInfos a map from the ID of each blob whose {@link BlobInfo} was fetched to the {@link BlobInfo}.
+   * @param failures a map from the ID of each blob whose {@link BlobInfo} could not be fetched to the cause.
+   */
+  public GetBlobInfosResult(Map<String, BlobInfo> blobInfos, Map<String, Exception> failures) {
+    this.blobInfos = Collections.unmodifiableMap(blobInfos);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * @return a map from the ID of each blob whose {@link BlobInfo} was fetched to the {@link BlobInfo}.
+   */
+  public Map<String, BlobInfo> getBlobInfos() {
+    return blobInfos;
+  }
+
+  /**
+   * @return a map from the ID of each blob whose {@link BlobInfo} could not be fetched to the cause of the failure.
+   */
+  public Map<String, Exception> getFailures() {
+    return failures;
+  }
+}
@@ -15,8 +15,11 @@ package com.github.ambry.router;
 
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 
@@ -40,6 +43,33 @@ public interface Router extends Closeable {
    */
   public Future<BlobInfo> getBlobInfo(String blobId, Callback<BlobInfo> callback);
 
+  /**
+   * Requests for the {@link BlobInfo} asynchronously as part of a traced request and invokes the {@link Callback} when
+   * the request completes. The time spent on the request is added to {@code trace}, which the caller completes.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} is requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain the {@link BlobInfo} eventually.
+   */
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback);
+
+  /**
+   * Requests for the {@link BlobInfo} of a number of blobs asynchronously and returns a future that will eventually
+   * contain the {@link BlobInfo} of each blob that could be fetched, and the cause of failure for every other blob.
+   * @param blobIds The IDs of the blobs for which the {@link BlobInfo} is requested.
+   * @return A future that would contain the {@link GetBlobInfosResult} eventually.
+   */
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds);
+
+  /**
+   * Requests for the {@link BlobInfo} of a number of blobs asynchronously and invokes the {@link Callback} when the
+   * request completes.
+   * @param blobIds The IDs of the blobs for which the {@link BlobInfo} is requested.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain the {@link GetBlobInfosResult} eventually.
+   */
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback);
+
   /**
    * Requests for blob data asynchronously and returns a future that will eventually contain a
    * {@link ReadableStreamChannel} that represents blob data on a successful response.
@@ -56,6 +86,43 @@ public interface Router extends Closeable {
    */
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback);
 
+  /**
+   * Requests for a range of the blob data asynchronously and returns a future that will eventually contain a
+   * {@link ReadableStreamChannel} that represents the requested range of the blob data on a successful response.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data that is requested. If {@code null}, all of the blob data is
+   *              requested.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the requested range of the
+   *         blob data eventually.
+   */
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range);
+
+  /**
+   * Requests for a range of the blob data asynchronously and invokes the {@link Callback} when the request completes.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data that is requested. If {@code null}, all of the blob data is
+   *              requested.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the requested range of the
+   *         blob data eventually.
+   */
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback);
+
+  /**
+   * Requests for a range of the blob data asynchronously as part of a traced request and invokes the {@link Callback}
+   * when the request completes. The time spent on the request is added to {@code trace}, which the caller completes.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data that is requested. If {@code null}, all of the blob data is
+   *              requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the requested range of the
+   *         blob data eventually.
+   */
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback);
+
   /**
    * Requests for a new blob to be put asynchronously and returns a future that will eventually contain the BlobId of
    * the new blob on a successful response.
@@ -93,6 +160,25 @@ public interface Router extends Closeable {
    */
   public Future<Void> deleteBlob(String blobId, Callback<Void> callback);
 
+  /**
+   * Requests for a number of blobs to be deleted asynchronously and returns a future that will eventually contain the
+   * blobs that could not be deleted.
+   * @param blobIds The IDs of the blobs that need to be deleted.
+   * @return A future that would contain a map from the ID of each blob that could not be deleted to the cause of the
+   *         failure, eventually. The map is empty if all the blobs were deleted.
+   */
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds);
+
+  /**
+   * Requests for a number of blobs to be deleted asynchronously and invokes the {@link Callback} when the request
+   * completes.
+   * @param blobIds The IDs of the blobs that need to be deleted.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain a map from the ID of each blob that could not be deleted to the cause of the
+   *         failure, eventually. The map is empty if all the blobs were deleted.
+   */
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback);
+
   /**
    * Closes the router and releases any resources held by the router. If the router is already closed, then this
    * method has no effect.
@@ -82,7 +82,11 @@ public enum RouterErrorCode {
   /**
    * TTL of Blob has expired and so Blob cannot be retrieved.
    */
-  BlobExpired;
+  BlobExpired,
+  /**
+   * The {@link ByteRange} requested in a getBlob operation does not contain any byte of the blob.
+   */
+  RangeNotSatisfiable;
 
   /**
    * Converts a given {@link CoordinatorError} into a RouterErrorCode.
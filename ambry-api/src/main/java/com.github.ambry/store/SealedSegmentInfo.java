@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+/**
+ * Describes a sealed index segment of a store and the range of the log that it covers. Used when a new replica
+ * bootstraps by copying sealed segments in bulk from a peer.
+ */
+public class SealedSegmentInfo {
+  private final long startOffset;
+  private final long endOffset;
+  private final long indexSegmentSizeInBytes;
+  private final long logCrc;
+
+  /**
+   * Creates the info of a sealed segment
+   * @param startOffset The start offset in the log of the segment
+   * @param endOffset The end offset in the log of the segment
+   * @param indexSegmentSizeInBytes The size of the persisted index segment file
+   * @param logCrc The crc of the log bytes in the range [startOffset, endOffset)
+   */
+  public SealedSegmentInfo(long startOffset, long endOffset, long indexSegmentSizeInBytes, long logCrc) {
+    if (startOffset < 0 || endOffset < startOffset || indexSegmentSizeInBytes < 0) {
+      throw new IllegalArgumentException(
+          "Invalid sealed segment info startOffset " + startOffset + " endOffset " + endOffset
+              + " indexSegmentSizeInBytes " + indexSegmentSizeInBytes);
+    }
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.indexSegmentSizeInBytes = indexSegmentSizeInBytes;
+    this.logCrc = logCrc;
+  }
+
+  public long getStartOffset() {
+    return startOffset;
+  }
+
+  public long getEndOffset() {
+    return endOffset;
+  }
+
+  public long getIndexSegmentSizeInBytes() {
+    return indexSegmentSizeInBytes;
+  }
+
+  public long getLogSizeInBytes() {
+    return endOffset - startOffset;
+  }
+
+  public long getLogCrc() {
+    return logCrc;
+  }
+
+  /**
+   * @return true if this info does not represent any segment, i.e. the peer has no more sealed segments to offer
+   */
+  public boolean isEmpty() {
+    return indexSegmentSizeInBytes == 0 && endOffset == startOffset;
+  }
+
+  @Override
+  public String toString() {
+    return "StartOffset-" + startOffset + " EndOffset-" + endOffset + " IndexSegmentSize-" + indexSegmentSizeInBytes
+        + " LogCrc-" + logCrc;
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * A sealed index segment and the log range it covers, read from a store so that it can be streamed to a
+ * bootstrapping replica. The bytes are the persisted index segment file followed by the log bytes.
+ */
+public interface SealedSegmentReadSet {
+
+  /**
+   * @return The {@link SealedSegmentInfo} describing the segment. Empty if there are no sealed segments to copy.
+   */
+  SealedSegmentInfo getInfo();
+
+  /**
+   * @return The token from which token based replication can resume once this segment has been applied
+   */
+  FindToken getHandoffToken();
+
+  /**
+   * @return The total number of bytes (index segment and log range) in this set
+   */
+  long sizeInBytes();
+
+  /**
+   * Write the segment from the given relative offset up to maxSize. Less than the complete amount may be written,
+   * but no more than maxSize can be. The number of bytes written is returned
+   * @param channel the channel into which the data needs to be written to
+   * @param relativeOffset The relative offset into the set from which the write needs to start
+   * @param maxSize The max size that needs to be written
+   * @return The total bytes that was written into the channel
+   * @throws IOException
+   */
+  long writeTo(WritableByteChannel channel, long relativeOffset, long maxSize)
+      throws IOException;
+}
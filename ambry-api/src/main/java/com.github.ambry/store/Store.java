@@ -13,6 +13,7 @@
  */
 package com.github.ambry.store;
 
+import java.nio.channels.ReadableByteChannel;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -86,6 +87,29 @@ public interface Store {
   boolean isKeyDeleted(StoreKey key)
       throws StoreException;
 
+  /**
+   * Returns the sealed index segment that starts at the given log offset along with the log range it covers.
+   * If there is no sealed segment at that offset, an empty set is returned whose handoff token can be used to
+   * continue with token based replication. If the segment is not ready to be served yet, a {@link StoreException}
+   * with {@link StoreErrorCodes#Retry_After_Backoff} is thrown and the call should be retried later.
+   * @param startOffset The log offset at which the sealed segment starts
+   * @return The {@link SealedSegmentReadSet} that can be streamed to a bootstrapping replica
+   * @throws StoreException
+   */
+  SealedSegmentReadSet getSealedSegment(long startOffset)
+      throws StoreException;
+
+  /**
+   * Appends a sealed index segment and its log range copied from a peer replica. The segment has to start at the
+   * current end of this store. The index segment bytes followed by the log bytes are read from the channel and
+   * are verified against their crcs before the segment is made visible.
+   * @param info The {@link SealedSegmentInfo} of the segment being appended
+   * @param channel The channel from which the index segment bytes and then the log bytes are read
+   * @throws StoreException
+   */
+  void appendSealedSegment(SealedSegmentInfo info, ReadableByteChannel channel)
+      throws StoreException;
+
   /**
    * Returns the size of the store in bytes
    * @return The size of the store in bytes
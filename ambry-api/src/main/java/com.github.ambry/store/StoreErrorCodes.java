@@ -30,5 +30,6 @@ public enum StoreErrorCodes {
   Illegal_Index_State,
   Index_Creation_Failure,
   Index_Version_Error,
-  Unknown_Error
+  Unknown_Error,
+  Retry_After_Backoff
 }
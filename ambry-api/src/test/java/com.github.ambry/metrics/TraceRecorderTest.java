@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.github.ambry.utils.MockTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link TraceRecorder} and {@link RequestTrace}.
+ */
+public class TraceRecorderTest {
+
+  /**
+   * Tests that one in every sampling interval traces is started, with a unique non-zero id, and that none is started
+   * if the sampling interval is not positive.
+   */
+  @Test
+  public void testSampling() {
+    MockTime time = new MockTime();
+    time.currentMilliseconds = 1000;
+    time.currentNanoSeconds = 2000;
+    TraceRecorder traceRecorder = new TraceRecorder(10);
+    assertNull("Trace should not be started if tracing is disabled", traceRecorder.startTrace("test", 0, time));
+    assertNull("Trace should not be started if tracing is disabled", traceRecorder.startTrace("test", -1, time));
+
+    traceRecorder = new TraceRecorder(10);
+    int samplingInterval = 3;
+    Set<Long> traceIds = new HashSet<Long>();
+    for (int i = 0; i < samplingInterval * 10; i++) {
+      RequestTrace trace = traceRecorder.startTrace("test" + i, samplingInterval, time);
+      if (i % samplingInterval == 0) {
+        assertNotNull("Trace should have been started", trace);
+        assertTrue("Trace id should not be 0", trace.getTraceId() != 0);
+        assertTrue("Trace id should be unique", traceIds.add(trace.getTraceId()));
+        assertEquals("Unexpected name", "test" + i, trace.getName());
+        assertEquals("Unexpected start time", 1000, trace.getStartTimeMs());
+        assertEquals("Unexpected start time", 2000, trace.getStartTimeNs());
+        assertEquals("Trace should not be complete", -1, trace.getDurationInNs());
+      } else {
+        assertNull("Trace should not have been started", trace);
+      }
+    }
+
+    // a trace of a request that had started before the trace.
+    RequestTrace trace = new TraceRecorder(10).startTrace("test", 1, 10, 20);
+    assertEquals("Unexpected start time", 10, trace.getStartTimeMs());
+    assertEquals("Unexpected start time", 20, trace.getStartTimeNs());
+  }
+
+  /**
+   * Tests that the most recent traces are kept, and that the slowest of them are returned slowest first.
+   */
+  @Test
+  public void testRecording() {
+    int capacity = 4;
+    TraceRecorder traceRecorder = new TraceRecorder(capacity);
+    assertEquals("Unexpected capacity", capacity, traceRecorder.getCapacity());
+    assertTrue("No trace should be returned", traceRecorder.getSlowestTraces(10).isEmpty());
+    // durations 6, 1, 5, 2, 4, 3. Once the buffer wraps, the traces with durations 6 and 1 are dropped.
+    long[] durations = {6, 1, 5, 2, 4, 3};
+    for (int i = 0; i < durations.length; i++) {
+      RequestTrace trace = new RequestTrace(i + 1, "test", 0, 0);
+      trace.complete(durations[i], "Success");
+      traceRecorder.record(trace);
+    }
+    assertEquals("Unexpected recorded count", durations.length, traceRecorder.getRecordedCount());
+    List<RequestTrace> traces = traceRecorder.getSlowestTraces(10);
+    assertEquals("Only the most recent traces should be kept", capacity, traces.size());
+    long[] expectedDurations = {5, 4, 3, 2};
+    for (int i = 0; i < expectedDurations.length; i++) {
+      assertEquals("Traces should be returned slowest first", expectedDurations[i], traces.get(i).getDurationInNs());
+    }
+    traces = traceRecorder.getSlowestTraces(2);
+    assertEquals("Unexpected number of traces", 2, traces.size());
+    assertEquals("Unexpected slowest trace", 5, traces.get(0).getDurationInNs());
+    assertTrue("No trace should be returned", traceRecorder.getSlowestTraces(0).isEmpty());
+
+    try {
+      new TraceRecorder(0);
+      fail("Creation should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+  }
+
+  /**
+   * Tests that spans are added to a trace until it is completed, and that it can only be completed once.
+   */
+  @Test
+  public void testTrace() {
+    RequestTrace trace = new RequestTrace(1, "test", 0, 100);
+    RequestTrace.Span span = trace.addSpan("local", null, 100, 150);
+    assertNull("Unexpected host", span.getHost());
+    assertEquals("Unexpected offset", 0, span.getStartOffsetInNs());
+    assertEquals("Unexpected duration", 50, span.getDurationInNs());
+    assertEquals("Remote queue time should not be known", -1, span.getRemoteQueueTimeInNs());
+    span = trace.addSpan("remote", "host", 150, 400);
+    span.setRemoteTimes(20, 30);
+    assertEquals("Unexpected host", "host", span.getHost());
+    assertEquals("Unexpected offset", 50, span.getStartOffsetInNs());
+    assertEquals("Unexpected remote queue time", 20, span.getRemoteQueueTimeInNs());
+    assertEquals("Unexpected remote processing time", 30, span.getRemoteProcessingTimeInNs());
+
+    assertTrue("Trace should have been completed", trace.complete(500, "Success"));
+    assertFalse("Trace should only be completed once", trace.complete(600, "Failure"));
+    assertEquals("Unexpected duration", 400, trace.getDurationInNs());
+    assertEquals("Unexpected outcome", "Success", trace.getOutcome());
+    trace.addSpan("late", null, 500, 550);
+    List<RequestTrace.Span> spans = trace.getSpans();
+    assertEquals("Spans added after completion should be ignored", 2, spans.size());
+    assertEquals("Unexpected span", "local", spans.get(0).getName());
+    assertEquals("Unexpected span", "remote", spans.get(1).getName());
+  }
+}
@@ -15,11 +15,16 @@ package com.github.ambry.rest;
 
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
 import java.util.Map;
 import java.util.Random;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -76,6 +81,46 @@ public class RestRequestMetricsTrackerTest {
     }
   }
 
+  /**
+   * Tests that {@link RestRequestMetricsTracker#startTrace(TraceRecorder, String, int)} starts the trace at the time
+   * the request was received and that the trace is completed and recorded when the metrics are recorded.
+   */
+  @Test
+  public void traceTest() {
+    TraceRecorder traceRecorder = new TraceRecorder(10);
+    RestRequestMetrics restRequestMetrics = new RestRequestMetrics(getClass(), "Trace", new MetricRegistry());
+    RestRequestMetricsTracker requestMetrics = new RestRequestMetricsTracker();
+    requestMetrics.injectMetrics(restRequestMetrics);
+    assertNull("Request should not be traced if tracing is disabled",
+        requestMetrics.startTrace(traceRecorder, "test", 0));
+    assertNull("There should be no trace", requestMetrics.getTrace());
+    requestMetrics.recordMetrics();
+    assertEquals("No trace should have been recorded", 0, traceRecorder.getRecordedCount());
+
+    requestMetrics = new RestRequestMetricsTracker();
+    requestMetrics.injectMetrics(restRequestMetrics);
+    long beforeReceivedTimeNs = System.nanoTime();
+    requestMetrics.nioMetricsTracker.markRequestReceived();
+    long afterReceivedTimeNs = System.nanoTime();
+    RequestTrace trace = requestMetrics.startTrace(traceRecorder, "test", 1);
+    assertSame("Unexpected trace", trace, requestMetrics.getTrace());
+    assertTrue("Trace should start when the request was received",
+        trace.getStartTimeNs() >= beforeReceivedTimeNs && trace.getStartTimeNs() <= afterReceivedTimeNs);
+    assertEquals("The first span should be the time spent queued", "RestServerQueue",
+        trace.getSpans().get(0).getName());
+    try {
+      requestMetrics.startTrace(traceRecorder, "test", 1);
+      fail("Starting a second trace of the request should have failed");
+    } catch (IllegalStateException e) {
+      // expected. nothing to do.
+    }
+    requestMetrics.markFailure();
+    requestMetrics.recordMetrics();
+    assertEquals("The trace should have been recorded", 1, traceRecorder.getRecordedCount());
+    assertEquals("Unexpected outcome", "Failure", trace.getOutcome());
+    assertTrue("Trace should have been completed", trace.getDurationInNs() >= 0);
+  }
+
   // commonCaseTest() helpers
 
   /**
@@ -14,6 +14,7 @@
 package com.github.ambry.rest;
 
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.Utils;
 import java.io.UnsupportedEncodingException;
@@ -703,4 +704,45 @@ public class RestUtilsTest {
 
     assertEquals("Should have returned null", null, RestUtils.getTimeFromDateString("abc"));
   }
+
+  /**
+   * Tests {@link RestUtils#buildByteRange(Map)} and {@link RestUtils#buildContentRange(ByteRange, long)}.
+   * @throws Exception
+   */
+  @Test
+  public void buildByteRangeTest()
+      throws Exception {
+    Map<String, Object> args = new HashMap<>();
+    assertNull("There should be no range if the header is absent", RestUtils.buildByteRange(args));
+
+    args.put(RestUtils.Headers.RANGE, "bytes=10-19");
+    ByteRange range = RestUtils.buildByteRange(args);
+    assertEquals("Unexpected range", ByteRange.fromOffsetRange(10, 19), range);
+    assertEquals("Unexpected content range", "bytes 10-19/100",
+        RestUtils.buildContentRange(range.toResolvedByteRange(100), 100));
+
+    args.put(RestUtils.Headers.RANGE, "bytes=90-");
+    range = RestUtils.buildByteRange(args);
+    assertEquals("Unexpected range", ByteRange.fromStartOffset(90), range);
+    assertEquals("Unexpected content range", "bytes 90-99/100",
+        RestUtils.buildContentRange(range.toResolvedByteRange(100), 100));
+
+    args.put(RestUtils.Headers.RANGE, "bytes=-25");
+    range = RestUtils.buildByteRange(args);
+    assertEquals("Unexpected range", ByteRange.fromLastNBytes(25), range);
+    assertEquals("Unexpected content range", "bytes 75-99/100",
+        RestUtils.buildContentRange(range.toResolvedByteRange(100), 100));
+
+    String[] badRanges = {"10-19", "items=10-19", "bytes=10", "bytes=-", "bytes=a-b", "bytes=20-10", "bytes=0-1,5-6",
+        "bytes=-1-2"};
+    for (String badRange : badRanges) {
+      args.put(RestUtils.Headers.RANGE, badRange);
+      try {
+        RestUtils.buildByteRange(args);
+        fail("Range [" + badRange + "] should have been rejected");
+      } catch (RestServiceException e) {
+        assertEquals("Unexpected error code", RestServiceErrorCode.InvalidArgs, e.getErrorCode());
+      }
+    }
+  }
 }
@@ -16,10 +16,13 @@ package com.github.ambry.router;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.notification.NotificationSystem;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -137,13 +140,55 @@ public class InMemoryRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, callback);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback) {
+    FutureResult<GetBlobInfosResult> futureResult = new FutureResult<GetBlobInfosResult>();
+    handlePrechecks(futureResult, callback);
+    if (!futureResult.isDone()) {
+      // gets of BlobInfo complete synchronously in this router.
+      Map<String, BlobInfo> blobInfos = new HashMap<String, BlobInfo>();
+      Map<String, Exception> failures = new HashMap<String, Exception>();
+      for (String blobId : blobIds) {
+        FutureResult<BlobInfo> blobInfoFuture = (FutureResult<BlobInfo>) getBlobInfo(blobId);
+        if (blobInfoFuture.error() != null) {
+          failures.put(blobId, blobInfoFuture.error());
+        } else {
+          blobInfos.put(blobId, blobInfoFuture.result());
+        }
+      }
+      completeOperation(futureResult, callback, new GetBlobInfosResult(blobInfos, failures), null);
+    }
+    return futureResult;
+  }
+
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
     FutureResult<ReadableStreamChannel> futureResult = new FutureResult<ReadableStreamChannel>();
     handlePrechecks(futureResult, callback);
     ReadableStreamChannel operationResult = null;
@@ -158,9 +203,17 @@ public class InMemoryRouter implements Router {
         } else if (!blobs.containsKey(blobId)) {
           exception = new RouterException("Blob not found", RouterErrorCode.BlobDoesNotExist);
         } else {
-          InMemoryBlob blob = blobs.get(blobId);
-          operationResult = new ByteBufferRSC(blob.getBlob());
+          ByteBuffer blob = blobs.get(blobId).getBlob();
+          if (range != null) {
+            ByteRange resolvedRange = range.toResolvedByteRange(blob.remaining());
+            blob.position((int) resolvedRange.getStartOffset());
+            blob.limit((int) resolvedRange.getEndOffset() + 1);
+            blob = blob.slice();
+          }
+          operationResult = new ByteBufferRSC(blob);
         }
+      } catch (RouterException e) {
+        exception = e;
       } catch (Exception e) {
         exception = new RouterException(e, RouterErrorCode.UnexpectedInternalError);
       } finally {
@@ -170,6 +223,12 @@ public class InMemoryRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, callback);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -218,6 +277,29 @@ public class InMemoryRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback) {
+    FutureResult<Map<String, Exception>> futureResult = new FutureResult<Map<String, Exception>>();
+    handlePrechecks(futureResult, callback);
+    if (!futureResult.isDone()) {
+      // deletes complete synchronously in this router.
+      Map<String, Exception> failedBlobs = new HashMap<String, Exception>();
+      for (String blobId : blobIds) {
+        Exception exception = ((FutureResult<Void>) deleteBlob(blobId)).error();
+        if (exception != null) {
+          failedBlobs.put(blobId, exception);
+        }
+      }
+      completeOperation(futureResult, callback, failedBlobs, null);
+    }
+    return futureResult;
+  }
+
   @Override
   public void close()
       throws IOException {
@@ -18,7 +18,10 @@ import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.config.FrontendConfig;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.rest.BlobStorageService;
+import com.github.ambry.rest.GetSlowRequestsHandler;
 import com.github.ambry.rest.IdConverter;
 import com.github.ambry.rest.IdConverterFactory;
 import com.github.ambry.rest.ResponseStatus;
@@ -32,14 +35,26 @@ import com.github.ambry.rest.RestServiceException;
 import com.github.ambry.rest.RestUtils;
 import com.github.ambry.rest.SecurityService;
 import com.github.ambry.rest.SecurityServiceFactory;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.router.Callback;
+import com.github.ambry.router.GetBlobInfosResult;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterException;
+import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,15 +75,19 @@ class AmbryBlobStorageService implements BlobStorageService {
   private static final String OPERATION_TYPE_POST_RESPONSE_SECURITY = "POST Response Security";
   private static final String OPERATION_TYPE_HEAD_BEFORE_GET = "HEAD Before GET";
   private static final String OPERATION_TYPE_GET = "GET";
+  private static final String OPERATION_TYPE_GET_BLOB_INFOS = "GET BlobInfos";
   private static final String OPERATION_TYPE_HEAD = "HEAD";
   private static final String OPERATION_TYPE_DELETE = "DELETE";
   private static final String OPERATION_TYPE_POST = "POST";
 
   private final RestResponseHandler responseHandler;
   private final Router router;
+  private final TraceRecorder traceRecorder;
+  private final GetSlowRequestsHandler getSlowRequestsHandler;
   private final IdConverterFactory idConverterFactory;
   private final SecurityServiceFactory securityServiceFactory;
   private final FrontendConfig frontendConfig;
+  private final FrontendBlobCache blobCache;
   private final Logger logger = LoggerFactory.getLogger(AmbryBlobStorageService.class);
 
   private IdConverter idConverter = null;
@@ -83,18 +102,24 @@ class AmbryBlobStorageService implements BlobStorageService {
    * @param responseHandler the {@link RestResponseHandler} that can be used to submit responses that need to be sent
    *                        out.
    * @param router the {@link Router} instance to use to perform blob operations.
+   * @param traceRecorder the {@link TraceRecorder} that the traces of the requests of the process are recorded in.
    * @param idConverterFactory the {@link IdConverterFactory} to use to get an {@link IdConverter}.
    * @param securityServiceFactory the {@link SecurityServiceFactory} to use to get an {@link SecurityService}.
+   * @param blobCache the {@link FrontendBlobCache} to serve small blobs from.
    */
   public AmbryBlobStorageService(FrontendConfig frontendConfig, FrontendMetrics frontendMetrics,
-      RestResponseHandler responseHandler, Router router, IdConverterFactory idConverterFactory,
-      SecurityServiceFactory securityServiceFactory) {
+      RestResponseHandler responseHandler, Router router, TraceRecorder traceRecorder,
+      IdConverterFactory idConverterFactory, SecurityServiceFactory securityServiceFactory,
+      FrontendBlobCache blobCache) {
     this.frontendConfig = frontendConfig;
     this.frontendMetrics = frontendMetrics;
     this.responseHandler = responseHandler;
     this.router = router;
+    this.traceRecorder = traceRecorder;
+    getSlowRequestsHandler = new GetSlowRequestsHandler(traceRecorder, frontendMetrics.metricRegistry);
     this.idConverterFactory = idConverterFactory;
     this.securityServiceFactory = securityServiceFactory;
+    this.blobCache = blobCache;
     logger.trace("Instantiated AmbryBlobStorageService");
   }
 
@@ -139,23 +164,36 @@ class AmbryBlobStorageService implements BlobStorageService {
       logger.trace("Handling GET request - {}", restRequest.getUri());
       checkAvailable();
       RestUtils.SubResource subresource = RestUtils.getBlobSubResource(restRequest);
-      RestRequestMetrics requestMetrics = frontendMetrics.getBlobMetrics;
-      if (subresource != null) {
-        logger.trace("Sub-resource requested: {}", subresource);
-        switch (subresource) {
-          case BlobInfo:
-            requestMetrics = frontendMetrics.getBlobInfoMetrics;
-            break;
-          case UserMetadata:
-            requestMetrics = frontendMetrics.getUserMetadataMetrics;
-            break;
+      SecurityProcessRequestCallback securityCallback;
+      if (subresource == null && isGetBlobInfosRequest(restRequest)) {
+        restRequest.getMetricsTracker().injectMetrics(frontendMetrics.getBlobInfosMetrics);
+        GetBlobInfosCallback routerCallback = new GetBlobInfosCallback(restRequest, restResponseChannel);
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
+      } else if (subresource == null && isGetSlowRequestsRequest(restRequest)) {
+        restRequest.getMetricsTracker().injectMetrics(frontendMetrics.getSlowRequestsMetrics);
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, getSlowRequestsHandler);
+      } else {
+        RestRequestMetrics requestMetrics = frontendMetrics.getBlobMetrics;
+        if (subresource == null) {
+          // traced from the moment the request was received, so that the time it spends in the frontend is included.
+          restRequest.getMetricsTracker()
+              .startTrace(traceRecorder, "GET " + restRequest.getUri(), frontendConfig.frontendTraceSamplingInterval);
+        } else {
+          logger.trace("Sub-resource requested: {}", subresource);
+          switch (subresource) {
+            case BlobInfo:
+              requestMetrics = frontendMetrics.getBlobInfoMetrics;
+              break;
+            case UserMetadata:
+              requestMetrics = frontendMetrics.getUserMetadataMetrics;
+              break;
+          }
         }
+        restRequest.getMetricsTracker().injectMetrics(requestMetrics);
+        HeadForGetCallback routerCallback = new HeadForGetCallback(restRequest, restResponseChannel, subresource);
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
       }
-      restRequest.getMetricsTracker().injectMetrics(requestMetrics);
-      HeadForGetCallback routerCallback = new HeadForGetCallback(restRequest, restResponseChannel, subresource);
       preProcessingTime = System.currentTimeMillis() - processingStartTime;
-      SecurityProcessRequestCallback securityCallback =
-          new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
       securityService.processRequest(restRequest, securityCallback);
     } catch (Exception e) {
       submitResponse(restRequest, restResponseChannel, null, e);
@@ -289,6 +327,36 @@ class AmbryBlobStorageService implements BlobStorageService {
     }
   }
 
+  /**
+   * Determines whether the request is a {@link RestUtils.Operations#BLOB_INFOS} request, which gets the BlobInfo of the
+   * blobs listed in {@link RestUtils.Headers#BLOB_IDS} instead of operating on a blob ID in the URI.
+   * @param restRequest the {@link RestRequest} to check.
+   * @return {@code true} if the request is a {@link RestUtils.Operations#BLOB_INFOS} request.
+   */
+  private boolean isGetBlobInfosRequest(RestRequest restRequest) {
+    String operationOrBlobId =
+        RestUtils.getOperationOrBlobIdFromUri(restRequest, null, frontendConfig.frontendPathPrefixesToRemove);
+    if (operationOrBlobId.startsWith("/")) {
+      operationOrBlobId = operationOrBlobId.substring(1);
+    }
+    return operationOrBlobId.equals(RestUtils.Operations.BLOB_INFOS);
+  }
+
+  /**
+   * Determines whether the request is a {@link RestUtils.Operations#SLOW_REQUESTS} request, which gets the traces of
+   * the slowest of the recently traced requests instead of operating on a blob ID in the URI.
+   * @param restRequest the {@link RestRequest} to check.
+   * @return {@code true} if the request is a {@link RestUtils.Operations#SLOW_REQUESTS} request.
+   */
+  private boolean isGetSlowRequestsRequest(RestRequest restRequest) {
+    String operationOrBlobId =
+        RestUtils.getOperationOrBlobIdFromUri(restRequest, null, frontendConfig.frontendPathPrefixesToRemove);
+    if (operationOrBlobId.startsWith("/")) {
+      operationOrBlobId = operationOrBlobId.substring(1);
+    }
+    return operationOrBlobId.equals(RestUtils.Operations.SLOW_REQUESTS);
+  }
+
   /**
    * Checks if {@link AmbryBlobStorageService} is available to serve requests.
    * @throws RestServiceException if {@link AmbryBlobStorageService} is not available to serve requests.
@@ -357,14 +425,24 @@ class AmbryBlobStorageService implements BlobStorageService {
             case GET:
               headForGetCallback.setBlobId(result);
               headForGetCallback.markStartTime();
-              router.getBlobInfo(result, headForGetCallback);
+              if (!headForGetCallback.lookUpInCache()) {
+                RequestTrace trace = restRequest.getMetricsTracker().getTrace();
+                if (trace != null) {
+                  router.getBlobInfo(result, trace, headForGetCallback);
+                } else {
+                  router.getBlobInfo(result, headForGetCallback);
+                }
+              }
               break;
             case HEAD:
               headCallback.markStartTime();
               router.getBlobInfo(result, headCallback);
               break;
             case DELETE:
+              deleteCallback.setBlobId(result);
               deleteCallback.markStartTime();
+              // requests that are in progress must not cache the blob that is being deleted.
+              blobCache.invalidate(result);
               router.deleteBlob(result, deleteCallback);
               break;
             default:
@@ -396,6 +474,8 @@ class AmbryBlobStorageService implements BlobStorageService {
     private final CallbackTracker callbackTracker;
 
     private HeadForGetCallback headForGetCallback;
+    private GetBlobInfosCallback getBlobInfosCallback;
+    private GetSlowRequestsHandler getSlowRequestsHandler;
     private HeadCallback headCallback;
     private PostCallback postCallback;
     private DeleteCallback deleteCallback;
@@ -410,6 +490,20 @@ class AmbryBlobStorageService implements BlobStorageService {
       this.headForGetCallback = callback;
     }
 
+    SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
+        GetBlobInfosCallback callback) {
+      this(restRequest, restResponseChannel, PROCESS_GET, frontendMetrics.getSecurityRequestTimeInMs,
+          frontendMetrics.getSecurityRequestCallbackProcessingTimeInMs);
+      this.getBlobInfosCallback = callback;
+    }
+
+    SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
+        GetSlowRequestsHandler handler) {
+      this(restRequest, restResponseChannel, PROCESS_GET, frontendMetrics.getSecurityRequestTimeInMs,
+          frontendMetrics.getSecurityRequestCallbackProcessingTimeInMs);
+      this.getSlowRequestsHandler = handler;
+    }
+
     SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         HeadCallback callback) {
       this(restRequest, restResponseChannel, PROCESS_HEAD, frontendMetrics.headSecurityRequestTimeInMs,
@@ -445,7 +539,9 @@ class AmbryBlobStorageService implements BlobStorageService {
     /**
      * Handles request once it has been vetted by the {@link SecurityService}.
      * In case of exception, response is immediately submitted to the {@link RestResponseHandler}.
-     * In case of GET, HEAD and DELETE, ID conversion is triggered.
+     * In case of GET, HEAD and DELETE, ID conversion is triggered. For a GET of
+     * {@link RestUtils.Operations#BLOB_INFOS}, all the listed IDs are converted. A GET of
+     * {@link RestUtils.Operations#SLOW_REQUESTS} is responded to right away.
      * In case of POST, request is forwarded to the {@link Router}.
      * @param result The result of the request. This would be non null when the request executed successfully
      * @param exception The exception that was reported on execution of the request
@@ -453,12 +549,20 @@ class AmbryBlobStorageService implements BlobStorageService {
     @Override
     public void onCompletion(Void result, Exception exception) {
       callbackTracker.markOperationEnd();
+      ReadableStreamChannel response = null;
       if (exception == null) {
         try {
           RestMethod restMethod = restRequest.getRestMethod();
           logger.trace("Forwarding {} to the IdConverter/Router", restMethod);
           switch (restMethod) {
             case GET:
+              if (getBlobInfosCallback != null) {
+                getBlobInfosCallback.convertIdsAndGetBlobInfos();
+                break;
+              } else if (getSlowRequestsHandler != null) {
+                response = getSlowRequestsHandler.getSlowRequests(restRequest, restResponseChannel);
+                break;
+              }
               String receivedId = RestUtils
                   .getOperationOrBlobIdFromUri(restRequest, RestUtils.getBlobSubResource(restRequest),
                       frontendConfig.frontendPathPrefixesToRemove);
@@ -490,8 +594,8 @@ class AmbryBlobStorageService implements BlobStorageService {
         }
       }
 
-      if (exception != null) {
-        submitResponse(restRequest, restResponseChannel, null, exception);
+      if (response != null || exception != null) {
+        submitResponse(restRequest, restResponseChannel, response, exception);
       }
       callbackTracker.markCallbackProcessingEnd();
     }
@@ -566,6 +670,8 @@ class AmbryBlobStorageService implements BlobStorageService {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private String blobId;
+    private FrontendBlobCache.CachedBlob cachedBlob = null;
+    private long cacheGeneration;
 
     /**
      * Create a HEAD before GET callback.
@@ -626,8 +732,34 @@ class AmbryBlobStorageService implements BlobStorageService {
                       response = new ByteBufferReadableStreamChannel(AmbryBlobStorageService.EMPTY_BUFFER);
                     }
                   } else if (!blobNotModified) {
-                    logger.trace("Forwarding GET after HEAD for {} to the router", blobId);
-                    router.getBlob(blobId, new GetCallback(restRequest, restResponseChannel));
+                    ByteRange range = RestUtils.buildByteRange(restRequest.getArgs());
+                    if (range != null) {
+                      // resolved against the size of the blob so that the router returns exactly the range that the
+                      // response headers describe.
+                      range = range.toResolvedByteRange(routerResult.getBlobProperties().getBlobSize());
+                    }
+                    if (cachedBlob != null) {
+                      logger.trace("Serving GET of {} from the cache", blobId);
+                      ByteBuffer content = cachedBlob.getContent();
+                      if (range != null) {
+                        content.limit((int) range.getEndOffset() + 1);
+                        content.position((int) range.getStartOffset());
+                      }
+                      frontendMetrics.blobCacheBytesServedCount.inc(content.remaining());
+                      response = new ByteBufferReadableStreamChannel(content);
+                    } else {
+                      logger.trace("Forwarding GET after HEAD for {} to the router", blobId);
+                      // only complete blobs are cached.
+                      BlobInfo blobInfoToCache = range == null ? routerResult : null;
+                      GetCallback getCallback =
+                          new GetCallback(restRequest, restResponseChannel, blobId, blobInfoToCache, cacheGeneration);
+                      RequestTrace trace = restRequest.getMetricsTracker().getTrace();
+                      if (trace != null) {
+                        router.getBlob(blobId, range, trace, getCallback);
+                      } else {
+                        router.getBlob(blobId, range, getCallback);
+                      }
+                    }
                   }
                 }
               } catch (Exception e) {
@@ -668,6 +800,24 @@ class AmbryBlobStorageService implements BlobStorageService {
       callbackTracker.markOperationStart();
     }
 
+    /**
+     * Looks the blob up in the {@link FrontendBlobCache} if the content of the blob is requested. If the blob is
+     * cached, completes this callback with the cached {@link BlobInfo} so that neither the HEAD nor the GET go to the
+     * {@link Router}.
+     * @return {@code true} if the blob was found in the cache and this callback has been completed.
+     */
+    boolean lookUpInCache() {
+      if (subResource != null || !blobCache.isEnabled()) {
+        return false;
+      }
+      cacheGeneration = blobCache.getGeneration();
+      cachedBlob = blobCache.get(blobId);
+      if (cachedBlob != null) {
+        onCompletion(cachedBlob.getBlobInfo(), null);
+      }
+      return cachedBlob != null;
+    }
+
     /**
      * Sets the user metadata in the headers of the response.
      * @param userMetadata the user metadata that need to be set in the headers.
@@ -688,6 +838,9 @@ class AmbryBlobStorageService implements BlobStorageService {
   private class GetCallback implements Callback<ReadableStreamChannel> {
     private final RestRequest restRequest;
     private final RestResponseChannel restResponseChannel;
+    private final String blobId;
+    private final BlobInfo blobInfoToCache;
+    private final long cacheGeneration;
     private final CallbackTracker callbackTracker;
 
     /**
@@ -695,10 +848,18 @@ class AmbryBlobStorageService implements BlobStorageService {
      * @param restRequest the {@link RestRequest} for whose response this is a callback.
      * @param restResponseChannel the {@link RestResponseChannel} over which response to {@code restRequest} can be
      *                            sent.
+     * @param blobId the ID of the blob being fetched.
+     * @param blobInfoToCache the {@link BlobInfo} of the blob if the blob should be offered to the
+     *                        {@link FrontendBlobCache} once it is read, {@code null} otherwise.
+     * @param cacheGeneration the generation of the {@link FrontendBlobCache} when the blob was looked up in it.
      */
-    GetCallback(RestRequest restRequest, RestResponseChannel restResponseChannel) {
+    GetCallback(RestRequest restRequest, RestResponseChannel restResponseChannel, String blobId,
+        BlobInfo blobInfoToCache, long cacheGeneration) {
       this.restRequest = restRequest;
       this.restResponseChannel = restResponseChannel;
+      this.blobId = blobId;
+      this.blobInfoToCache = blobInfoToCache;
+      this.cacheGeneration = cacheGeneration;
       callbackTracker = new CallbackTracker(restRequest, OPERATION_TYPE_GET, frontendMetrics.getTimeInMs,
           frontendMetrics.getCallbackProcessingTimeInMs);
       callbackTracker.markOperationStart();
@@ -716,12 +877,234 @@ class AmbryBlobStorageService implements BlobStorageService {
       if (routerResult == null && routerException == null) {
         throw new IllegalStateException("Both response and exception are null");
       } else {
+        if (routerResult != null && blobInfoToCache != null) {
+          routerResult = blobCache.cacheOnRead(blobId, blobInfoToCache, routerResult, cacheGeneration);
+        }
         submitResponse(restRequest, restResponseChannel, routerResult, routerException);
         callbackTracker.markCallbackProcessingEnd();
       }
     }
   }
 
+  /**
+   * Callback for GET operations of {@link RestUtils.Operations#BLOB_INFOS}. Converts the IDs listed in
+   * {@link RestUtils.Headers#BLOB_IDS}, gets the BlobInfo of all the blobs from the {@link Router} in one operation and
+   * responds with a JSON object that has the BlobInfo of each blob that could be fetched and the error for every other
+   * blob, keyed by the IDs as they were received. The response for every blob is processed by the
+   * {@link SecurityService} and blobs that it rejects are reported with the error it returns.
+   */
+  private class GetBlobInfosCallback implements Callback<GetBlobInfosResult> {
+    static final String BLOB_INFOS_KEY = "blobInfos";
+    static final String ERRORS_KEY = "errors";
+
+    private final RestRequest restRequest;
+    private final RestResponseChannel restResponseChannel;
+    private final CallbackTracker callbackTracker;
+
+    private List<String> receivedIds;
+    private String[] convertedIds;
+
+    /**
+     * Create a GET BlobInfos callback.
+     * @param restRequest the {@link RestRequest} for whose response this is a callback.
+     * @param restResponseChannel the {@link RestResponseChannel} over which response to {@code restRequest} can be
+     *                            sent.
+     */
+    GetBlobInfosCallback(RestRequest restRequest, RestResponseChannel restResponseChannel) {
+      this.restRequest = restRequest;
+      this.restResponseChannel = restResponseChannel;
+      callbackTracker =
+          new CallbackTracker(restRequest, OPERATION_TYPE_GET_BLOB_INFOS, frontendMetrics.getBlobInfosTimeInMs,
+              frontendMetrics.getBlobInfosCallbackProcessingTimeInMs);
+    }
+
+    /**
+     * Converts all the IDs listed in the request and, once all of them have been converted, forwards the request to
+     * the {@link Router}. The response is submitted if any of the conversions fails.
+     * @throws RestServiceException if the request does not list any ID or lists more than
+     *                              {@link FrontendConfig#frontendMaxBlobIdsPerRequest}.
+     */
+    void convertIdsAndGetBlobInfos()
+        throws RestServiceException {
+      receivedIds = RestUtils.getBlobIds(restRequest.getArgs());
+      if (receivedIds.size() > frontendConfig.frontendMaxBlobIdsPerRequest) {
+        throw new RestServiceException(
+            "Request lists " + receivedIds.size() + " blob IDs in header " + RestUtils.Headers.BLOB_IDS
+                + ", more than the maximum of " + frontendConfig.frontendMaxBlobIdsPerRequest,
+            RestServiceErrorCode.BadRequest);
+      }
+      convertedIds = new String[receivedIds.size()];
+      final AtomicInteger pendingConversions = new AtomicInteger(receivedIds.size());
+      final AtomicReference<Exception> conversionException = new AtomicReference<Exception>();
+      final long conversionStartTime = System.currentTimeMillis();
+      for (int i = 0; i < receivedIds.size(); i++) {
+        final int index = i;
+        idConverter.convert(restRequest, receivedIds.get(i), new Callback<String>() {
+          @Override
+          public void onCompletion(String result, Exception exception) {
+            if (exception != null) {
+              conversionException.compareAndSet(null, exception);
+            }
+            convertedIds[index] = result;
+            if (pendingConversions.decrementAndGet() == 0) {
+              frontendMetrics.getBlobInfosIdConversionTimeInMs.update(System.currentTimeMillis() - conversionStartTime);
+              exception = conversionException.get();
+              if (exception == null) {
+                try {
+                  logger.trace("Forwarding GET of BlobInfo of {} blobs to the router", convertedIds.length);
+                  callbackTracker.markOperationStart();
+                  router.getBlobInfos(Arrays.asList(convertedIds), GetBlobInfosCallback.this);
+                } catch (Exception e) {
+                  exception = e;
+                }
+              }
+              if (exception != null) {
+                submitResponse(restRequest, restResponseChannel, null, exception);
+              }
+            }
+          }
+        });
+      }
+    }
+
+    /**
+     * If there was no exception, has the response for every blob that could be fetched processed by the
+     * {@link SecurityService}. Otherwise submits the response for exception handling.
+     * @param routerResult The result of the request. This is non null if the request executed successfully.
+     * @param routerException The exception that was reported on execution of the request (if any).
+     */
+    @Override
+    public void onCompletion(final GetBlobInfosResult routerResult, Exception routerException) {
+      callbackTracker.markOperationEnd();
+      if (routerException != null || routerResult.getBlobInfos().isEmpty()) {
+        submitBlobInfos(routerResult, new ConcurrentHashMap<String, Exception>(), routerException);
+      } else {
+        final Map<String, Exception> rejections = new ConcurrentHashMap<String, Exception>();
+        final AtomicInteger pendingChecks = new AtomicInteger(routerResult.getBlobInfos().size());
+        for (Map.Entry<String, BlobInfo> entry : routerResult.getBlobInfos().entrySet()) {
+          final String blobId = entry.getKey();
+          Callback<Void> securityCallback = new Callback<Void>() {
+            @Override
+            public void onCompletion(Void result, Exception exception) {
+              if (exception != null) {
+                rejections.put(blobId, exception);
+              }
+              if (pendingChecks.decrementAndGet() == 0) {
+                submitBlobInfos(routerResult, rejections, null);
+              }
+            }
+          };
+          try {
+            // the headers the SecurityService sets are for a single blob, so they are kept out of the response.
+            securityService.processResponse(restRequest, new BlobResponseHeaders(), entry.getValue(), securityCallback);
+          } catch (Exception e) {
+            securityCallback.onCompletion(null, e);
+          }
+        }
+      }
+      callbackTracker.markCallbackProcessingEnd();
+    }
+
+    /**
+     * If there was no exception, responds with the BlobInfo of each blob that could be fetched and was not rejected by
+     * the {@link SecurityService} and the error for every other blob. Submits the response either for exception
+     * handling or for sending.
+     * @param routerResult The result of the request. This is non null if the request executed successfully.
+     * @param rejections the exceptions returned by the {@link SecurityService} for the blobs it rejected, keyed by
+     *                   their converted IDs.
+     * @param routerException The exception that was reported on execution of the request (if any).
+     */
+    private void submitBlobInfos(GetBlobInfosResult routerResult, Map<String, Exception> rejections,
+        Exception routerException) {
+      ReadableStreamChannel response = null;
+      try {
+        if (routerException == null) {
+          byte[] content = packageResult(routerResult, rejections).toString().getBytes(StandardCharsets.UTF_8);
+          restResponseChannel.setHeader(RestUtils.Headers.DATE, new GregorianCalendar().getTime());
+          restResponseChannel.setStatus(ResponseStatus.Ok);
+          restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/json");
+          restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, content.length);
+          response = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(content));
+        }
+      } catch (Exception e) {
+        frontendMetrics.getBlobInfosCallbackProcessingError.inc();
+        routerException = e;
+      } finally {
+        submitResponse(restRequest, restResponseChannel, response, routerException);
+      }
+    }
+
+    /**
+     * Packages the result of the {@link Router} into a {@link JSONObject}, keyed by the IDs as they were received.
+     * @param routerResult the {@link GetBlobInfosResult} from the {@link Router}.
+     * @param rejections the exceptions returned by the {@link SecurityService} for the blobs it rejected, keyed by
+     *                   their converted IDs.
+     * @return a {@link JSONObject} with the BlobInfo of each blob that could be fetched and was not rejected under
+     *         {@link #BLOB_INFOS_KEY} and the {@link RestServiceErrorCode} for every other blob under
+     *         {@link #ERRORS_KEY}.
+     * @throws JSONException if there was an error building the {@link JSONObject}.
+     * @throws RestServiceException if the user metadata of a blob could not be read.
+     */
+    private JSONObject packageResult(GetBlobInfosResult routerResult, Map<String, Exception> rejections)
+        throws JSONException, RestServiceException {
+      JSONObject blobInfos = new JSONObject();
+      JSONObject errors = new JSONObject();
+      for (int i = 0; i < receivedIds.size(); i++) {
+        BlobInfo blobInfo = routerResult.getBlobInfos().get(convertedIds[i]);
+        Exception exception = rejections.get(convertedIds[i]);
+        if (blobInfo != null && exception == null) {
+          blobInfos.put(receivedIds.get(i), packageBlobInfo(blobInfo));
+        } else {
+          if (exception == null) {
+            exception = routerResult.getFailures().get(convertedIds[i]);
+          }
+          RestServiceErrorCode errorCode = RestServiceErrorCode.InternalServerError;
+          if (exception instanceof RouterException) {
+            errorCode = RestServiceErrorCode.getRestServiceErrorCode(((RouterException) exception).getErrorCode());
+          } else if (exception instanceof RestServiceException) {
+            errorCode = ((RestServiceException) exception).getErrorCode();
+          }
+          errors.put(receivedIds.get(i), errorCode.name());
+        }
+      }
+      return new JSONObject().put(BLOB_INFOS_KEY, blobInfos).put(ERRORS_KEY, errors);
+    }
+
+    /**
+     * Packages a {@link BlobInfo} into a {@link JSONObject} with the same keys as the headers of a GET of the
+     * {@link RestUtils.SubResource#BlobInfo} of the blob. The creation time is in ms since epoch.
+     * @param blobInfo the {@link BlobInfo} to package.
+     * @return a {@link JSONObject} with the blob properties and the user metadata of the blob.
+     * @throws JSONException if there was an error building the {@link JSONObject}.
+     * @throws RestServiceException if the user metadata could not be read.
+     */
+    private JSONObject packageBlobInfo(BlobInfo blobInfo)
+        throws JSONException, RestServiceException {
+      BlobProperties blobProperties = blobInfo.getBlobProperties();
+      JSONObject packagedBlobInfo = new JSONObject();
+      packagedBlobInfo.put(RestUtils.Headers.BLOB_SIZE, blobProperties.getBlobSize());
+      packagedBlobInfo.put(RestUtils.Headers.SERVICE_ID, blobProperties.getServiceId());
+      packagedBlobInfo.put(RestUtils.Headers.CREATION_TIME, blobProperties.getCreationTimeInMs());
+      packagedBlobInfo.put(RestUtils.Headers.PRIVATE, blobProperties.isPrivate());
+      if (blobProperties.getTimeToLiveInSeconds() != Utils.Infinite_Time) {
+        packagedBlobInfo.put(RestUtils.Headers.TTL, blobProperties.getTimeToLiveInSeconds());
+      }
+      if (blobProperties.getContentType() != null) {
+        packagedBlobInfo.put(RestUtils.Headers.AMBRY_CONTENT_TYPE, blobProperties.getContentType());
+      }
+      if (blobProperties.getOwnerId() != null) {
+        packagedBlobInfo.put(RestUtils.Headers.OWNER_ID, blobProperties.getOwnerId());
+      }
+      Map<String, String> userMetadata = RestUtils.buildUserMetadata(blobInfo.getUserMetadata());
+      if (userMetadata != null) {
+        for (Map.Entry<String, String> entry : userMetadata.entrySet()) {
+          packagedBlobInfo.put(entry.getKey(), entry.getValue());
+        }
+      }
+      return packagedBlobInfo;
+    }
+  }
+
   /**
    * Callback for POST operations. Sends the response received to the client. Submits response either to handle
    * exceptions or to clean up after a response.
@@ -830,6 +1213,8 @@ class AmbryBlobStorageService implements BlobStorageService {
     private final CallbackTracker callbackTracker;
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private String blobId;
+
     /**
      * Create a DELETE callback.
      * @param restRequest the {@link RestRequest} for whose response this is a callback.
@@ -844,8 +1229,9 @@ class AmbryBlobStorageService implements BlobStorageService {
     }
 
     /**
-     * If there was no exception, updates the header with the acceptance of the request. Submits the response either for
-     * exception handling or for cleanup.
+     * If there was no exception, removes the blob from the {@link FrontendBlobCache} (it may have been cached by a
+     * request that started after the deletion was requested) and updates the header with the acceptance of the
+     * request. Submits the response either for exception handling or for cleanup.
      * @param routerResult The result of the request. This is always null.
      * @param routerException The exception that was reported on execution of the request (if any).
      */
@@ -854,6 +1240,7 @@ class AmbryBlobStorageService implements BlobStorageService {
       callbackTracker.markOperationEnd();
       try {
         if (routerException == null) {
+          blobCache.invalidate(blobId);
           restResponseChannel.setHeader(RestUtils.Headers.DATE, new GregorianCalendar().getTime());
           restResponseChannel.setStatus(ResponseStatus.Accepted);
           restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, 0);
@@ -867,6 +1254,14 @@ class AmbryBlobStorageService implements BlobStorageService {
       }
     }
 
+    /**
+     * Sets the ID of the blob being deleted.
+     * @param blobId the ID of the blob being deleted.
+     */
+    void setBlobId(String blobId) {
+      this.blobId = blobId;
+    }
+
     /**
      * Marks the start time of the operation.
      */
@@ -944,4 +1339,52 @@ class AmbryBlobStorageService implements BlobStorageService {
       callbackTracker.markOperationStart();
     }
   }
+
+  /**
+   * A {@link RestResponseChannel} that only holds the status and the headers that are set on it. Used to have the
+   * {@link SecurityService} process the response for each blob of a request that covers several blobs, whose headers
+   * cannot go on the real response. Content cannot be written to it.
+   */
+  private static class BlobResponseHeaders implements RestResponseChannel {
+    private final Map<String, Object> headers = new ConcurrentHashMap<String, Object>();
+    private volatile ResponseStatus status = ResponseStatus.Ok;
+
+    @Override
+    public Future<Long> write(ByteBuffer src, Callback<Long> callback) {
+      throw new UnsupportedOperationException("Content cannot be written to the headers of a single blob");
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void onResponseComplete(Exception exception) {
+    }
+
+    @Override
+    public void setStatus(ResponseStatus status) {
+      this.status = status;
+    }
+
+    @Override
+    public ResponseStatus getStatus() {
+      return status;
+    }
+
+    @Override
+    public void setHeader(String headerName, Object headerValue) {
+      headers.put(headerName, headerValue);
+    }
+
+    @Override
+    public Object getHeader(String headerName) {
+      return headers.get(headerName);
+    }
+  }
 }
@@ -16,12 +16,14 @@ package com.github.ambry.frontend;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.config.FrontendConfig;
 import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.rest.BlobStorageService;
 import com.github.ambry.rest.BlobStorageServiceFactory;
 import com.github.ambry.rest.IdConverterFactory;
 import com.github.ambry.rest.RestResponseHandler;
 import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.Router;
+import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,8 +41,10 @@ public class AmbryBlobStorageServiceFactory implements BlobStorageServiceFactory
   private final ClusterMap clusterMap;
   private final RestResponseHandler responseHandler;
   private final Router router;
+  private final TraceRecorder traceRecorder;
   private final IdConverterFactory idConverterFactory;
   private final SecurityServiceFactory securityServiceFactory;
+  private final FrontendBlobCache blobCache;
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   /**
@@ -55,7 +59,24 @@ public class AmbryBlobStorageServiceFactory implements BlobStorageServiceFactory
   public AmbryBlobStorageServiceFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
       RestResponseHandler responseHandler, Router router)
       throws Exception {
-    if (verifiableProperties == null || clusterMap == null || responseHandler == null || router == null) {
+    this(verifiableProperties, clusterMap, responseHandler, router, new TraceRecorder(TraceRecorder.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Creates a new instance of AmbryBlobStorageServiceFactory.
+   * @param verifiableProperties the properties to use to create configs.
+   * @param clusterMap the {@link ClusterMap} to use.
+   * @param responseHandler the {@link RestResponseHandler} that can be used to submit responses that need to be sent
+   *                        out.
+   * @param router the {@link Router} to use.
+   * @param traceRecorder the {@link TraceRecorder} that the traces of the requests of the process are recorded in.
+   * @throws IllegalArgumentException if any of the arguments are null.
+   */
+  public AmbryBlobStorageServiceFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
+      RestResponseHandler responseHandler, Router router, TraceRecorder traceRecorder)
+      throws Exception {
+    if (verifiableProperties == null || clusterMap == null || responseHandler == null || router == null
+        || traceRecorder == null) {
       throw new IllegalArgumentException("Null arguments were provided during instantiation!");
     } else {
       frontendConfig = new FrontendConfig(verifiableProperties);
@@ -63,10 +84,15 @@ public class AmbryBlobStorageServiceFactory implements BlobStorageServiceFactory
       this.clusterMap = clusterMap;
       this.responseHandler = responseHandler;
       this.router = router;
+      this.traceRecorder = traceRecorder;
       idConverterFactory =
           Utils.getObj(frontendConfig.frontendIdConverterFactory, verifiableProperties, clusterMap.getMetricRegistry());
       securityServiceFactory = Utils
           .getObj(frontendConfig.frontendSecurityServiceFactory, verifiableProperties, clusterMap.getMetricRegistry());
+      blobCache = new FrontendBlobCache(frontendConfig.frontendBlobCacheCapacityBytes,
+          frontendConfig.frontendBlobCacheMaxBlobSizeBytes, frontendConfig.frontendBlobCacheTtlMs, frontendMetrics,
+          SystemTime.getInstance());
+      frontendMetrics.initializeBlobCacheMetrics(blobCache);
     }
     logger.trace("Instantiated AmbryBlobStorageServiceFactory");
   }
@@ -77,7 +103,7 @@ public class AmbryBlobStorageServiceFactory implements BlobStorageServiceFactory
    */
   @Override
   public BlobStorageService getBlobStorageService() {
-    return new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, idConverterFactory,
-        securityServiceFactory);
+    return new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, traceRecorder,
+        idConverterFactory, securityServiceFactory, blobCache);
   }
 }
@@ -24,8 +24,10 @@ import com.github.ambry.rest.RestServiceErrorCode;
 import com.github.ambry.rest.RestServiceException;
 import com.github.ambry.rest.RestUtils;
 import com.github.ambry.rest.SecurityService;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.RouterException;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.util.Date;
@@ -106,22 +108,22 @@ class AmbrySecurityService implements SecurityService {
             responseChannel.setStatus(ResponseStatus.Ok);
             responseChannel.setHeader(RestUtils.Headers.LAST_MODIFIED,
                 new Date(blobInfo.getBlobProperties().getCreationTimeInMs()));
+            responseChannel.setHeader(RestUtils.Headers.ETAG, getETag(blobInfo.getBlobProperties()));
             setHeadResponseHeaders(blobInfo, responseChannel);
             break;
           case GET:
             responseChannel.setStatus(ResponseStatus.Ok);
             RestUtils.SubResource subResource = RestUtils.getBlobSubResource(restRequest);
             if (subResource == null) {
-              Long ifModifiedSinceMs = getIfModifiedSinceMs(restRequest);
-              if (ifModifiedSinceMs != null
-                  && RestUtils.toSecondsPrecisionInMs(blobInfo.getBlobProperties().getCreationTimeInMs())
-                  <= ifModifiedSinceMs) {
+              String eTag = getETag(blobInfo.getBlobProperties());
+              responseChannel.setHeader(RestUtils.Headers.ETAG, eTag);
+              if (isNotModified(restRequest, blobInfo.getBlobProperties(), eTag)) {
                 responseChannel.setStatus(ResponseStatus.NotModified);
                 responseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, 0);
               } else {
                 responseChannel.setHeader(RestUtils.Headers.LAST_MODIFIED,
                     new Date(blobInfo.getBlobProperties().getCreationTimeInMs()));
-                setGetBlobResponseHeaders(responseChannel, blobInfo);
+                setGetBlobResponseHeaders(responseChannel, blobInfo, RestUtils.buildByteRange(restRequest.getArgs()));
               }
             } else {
               responseChannel.setHeader(RestUtils.Headers.LAST_MODIFIED,
@@ -158,6 +160,49 @@ class AmbrySecurityService implements SecurityService {
     isOpen = false;
   }
 
+  /**
+   * Builds the {@link RestUtils.Headers#ETAG} of a blob. Blobs are immutable, so the creation time and the size of a
+   * blob are enough to tell apart the different blobs that may be served at the same URI.
+   * @param blobProperties the {@link BlobProperties} of the blob.
+   * @return the quoted entity tag of the blob.
+   */
+  private String getETag(BlobProperties blobProperties) {
+    return "\"" + Long.toHexString(blobProperties.getCreationTimeInMs()) + "-" + Long
+        .toHexString(blobProperties.getBlobSize()) + "\"";
+  }
+
+  /**
+   * Determines whether the blob has not been modified according to the conditional headers of the request. If
+   * {@link RestUtils.Headers#IF_NONE_MATCH} is present, the blob has not been modified if any of the entity tags listed
+   * (weak or strong) matches {@code eTag} or if the value is {@code *}. Otherwise, the blob has not been modified if it
+   * was created at or before {@link RestUtils.Headers#IF_MODIFIED_SINCE}.
+   * @param restRequest the {@link RestRequest} that needs to be parsed.
+   * @param blobProperties the {@link BlobProperties} of the blob.
+   * @param eTag the {@link RestUtils.Headers#ETAG} of the blob.
+   * @return {@code true} if the blob has not been modified and a {@link ResponseStatus#NotModified} can be returned.
+   */
+  private boolean isNotModified(RestRequest restRequest, BlobProperties blobProperties, String eTag) {
+    String ifNoneMatch = (String) restRequest.getArgs().get(RestUtils.Headers.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      if (ifNoneMatch.trim().equals("*")) {
+        return true;
+      }
+      for (String entityTag : ifNoneMatch.split(",")) {
+        entityTag = entityTag.trim();
+        if (entityTag.startsWith("W/")) {
+          entityTag = entityTag.substring(2);
+        }
+        if (entityTag.equals(eTag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    Long ifModifiedSinceMs = getIfModifiedSinceMs(restRequest);
+    return ifModifiedSinceMs != null
+        && RestUtils.toSecondsPrecisionInMs(blobProperties.getCreationTimeInMs()) <= ifModifiedSinceMs;
+  }
+
   /**
    * Fetches the {@link RestUtils.Headers#IF_MODIFIED_SINCE} value in epoch time if present
    * @param restRequest the {@link RestRequest} that needs to be parsed
@@ -179,6 +224,7 @@ class AmbrySecurityService implements SecurityService {
       throws RestServiceException {
     BlobProperties blobProperties = blobInfo.getBlobProperties();
     restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, blobProperties.getBlobSize());
+    restResponseChannel.setHeader(RestUtils.Headers.ACCEPT_RANGES, RestUtils.BYTE_RANGE_UNIT);
     if (blobProperties.getContentType() != null) {
       restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, blobProperties.getContentType());
     }
@@ -186,16 +232,34 @@ class AmbrySecurityService implements SecurityService {
   }
 
   /**
-   * Sets the required headers in the response.
+   * Sets the required headers in the response. If a range of the blob is requested, the response is marked as
+   * {@link ResponseStatus#PartialContent} and describes the range being returned.
    * @param blobInfo the {@link BlobInfo} to refer to while setting headers.
-   * @throws RestServiceException if there was any problem setting the headers.
+   * @param range the {@link ByteRange} of the blob requested, or {@code null} if the whole blob is requested.
+   * @throws RestServiceException if there was any problem setting the headers or if the range cannot be satisfied.
    */
-  private void setGetBlobResponseHeaders(RestResponseChannel restResponseChannel, BlobInfo blobInfo)
+  private void setGetBlobResponseHeaders(RestResponseChannel restResponseChannel, BlobInfo blobInfo, ByteRange range)
       throws RestServiceException {
     BlobProperties blobProperties = blobInfo.getBlobProperties();
-    restResponseChannel.setHeader(RestUtils.Headers.BLOB_SIZE, blobProperties.getBlobSize());
-    if (blobProperties.getBlobSize() < frontendConfig.frontendChunkedGetResponseThresholdInBytes) {
-      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, blobProperties.getBlobSize());
+    long blobSize = blobProperties.getBlobSize();
+    long contentLength = blobSize;
+    restResponseChannel.setHeader(RestUtils.Headers.BLOB_SIZE, blobSize);
+    restResponseChannel.setHeader(RestUtils.Headers.ACCEPT_RANGES, RestUtils.BYTE_RANGE_UNIT);
+    if (range != null) {
+      ByteRange resolvedRange;
+      try {
+        resolvedRange = range.toResolvedByteRange(blobSize);
+      } catch (RouterException e) {
+        throw new RestServiceException("Range " + range + " cannot be satisfied by a blob of size " + blobSize, e,
+            RestServiceErrorCode.RangeNotSatisfiable);
+      }
+      restResponseChannel.setStatus(ResponseStatus.PartialContent);
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_RANGE,
+          RestUtils.buildContentRange(resolvedRange, blobSize));
+      contentLength = resolvedRange.getRangeSize();
+    }
+    if (contentLength < frontendConfig.frontendChunkedGetResponseThresholdInBytes) {
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, contentLength);
     }
     if (blobProperties.getContentType() != null) {
       restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, blobProperties.getContentType());
@@ -0,0 +1,565 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.frontend;
+
+import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.router.AsyncWritableChannel;
+import com.github.ambry.router.Callback;
+import com.github.ambry.router.ReadableStreamChannel;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+
+/**
+ * A bounded cache of small blobs that is shared by all the requests served by the frontend. Since blobs are immutable,
+ * a blob that has been fetched once can be served again without going to the router, until it is deleted or expires.
+ * <p/>
+ * The content of a blob is held in direct (off-heap) memory along with its {@link BlobInfo}, and the size of the cache
+ * is the total size of the content (plus a fixed overhead per blob). Only blobs that are no larger than a configured
+ * size are cached. Blobs are evicted in the order in which they were least recently used, but a blob is only admitted
+ * if it has been accessed more frequently than every blob that would have to be evicted to make room for it (TinyLFU
+ * admission). This keeps a burst of blobs that are fetched only once from flushing out the blobs that are popular.
+ * <p/>
+ * A blob is invalidated when it is deleted through the frontend. A request that was started before an invalidation may
+ * have fetched the blob before it was deleted, so a blob is only cached if it was fetched by a request that started
+ * after the last invalidation of that blob (see {@link #getGeneration()}). The generation at which each blob was
+ * invalidated is remembered for the last {@link #MAX_INVALIDATED_BLOBS} invalidations, and blobs fetched by requests
+ * that started before the invalidations that have been forgotten are not cached at all. Blobs are served for at most
+ * the configured ttl after they were cached, and never after they expire.
+ * <p/>
+ * Admission is checked before a blob that is being fetched is copied, so no memory is allocated for blobs that would
+ * not be admitted.
+ * <p/>
+ * This class is thread safe.
+ */
+class FrontendBlobCache {
+  // the approximate memory taken by the bookkeeping of a blob (including its BlobInfo), apart from the blob id.
+  static final int ENTRY_OVERHEAD_BYTES = 256;
+  // the number of invalidations for which the generation is remembered.
+  static final int MAX_INVALIDATED_BLOBS = 4096;
+
+  private final long capacity;
+  private final int maxBlobSize;
+  private final long ttlMs;
+  private final FrontendMetrics frontendMetrics;
+  private final Time time;
+  private final FrequencySketch frequencySketch;
+  // blob id to the cached blob, in the order of access.
+  private final LinkedHashMap<String, Entry> blobIdToEntry = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  // blob id to the generation at which the blob was last invalidated, in the order of invalidation.
+  private final LinkedHashMap<String, Long> blobIdToInvalidationGeneration = new LinkedHashMap<String, Long>();
+  private long sizeInBytes = 0;
+  private long generation = 0;
+  // the generation of the last invalidation that is no longer remembered.
+  private long forgottenGeneration = 0;
+
+  /**
+   * Create a FrontendBlobCache.
+   * @param capacity the maximum number of bytes of blobs to cache. 0 disables the cache.
+   * @param maxBlobSize the size in bytes of the largest blob that can be cached.
+   * @param ttlMs the time in ms for which a blob is served after it is cached.
+   * @param frontendMetrics the {@link FrontendMetrics} to record hits, misses and evictions in.
+   * @param time the {@link Time} instance to use.
+   */
+  FrontendBlobCache(long capacity, int maxBlobSize, long ttlMs, FrontendMetrics frontendMetrics, Time time) {
+    this.capacity = capacity;
+    this.maxBlobSize = maxBlobSize;
+    this.ttlMs = ttlMs;
+    this.frontendMetrics = frontendMetrics;
+    this.time = time;
+    frequencySketch = isEnabled() ? new FrequencySketch(capacity) : null;
+  }
+
+  /**
+   * @return {@code true} if blobs are cached at all.
+   */
+  boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  /**
+   * @param blobSize the size of a blob.
+   * @return {@code true} if a blob of size {@code blobSize} can be cached.
+   */
+  boolean isCacheable(long blobSize) {
+    return isEnabled() && blobSize <= maxBlobSize && blobSize + ENTRY_OVERHEAD_BYTES <= capacity;
+  }
+
+  /**
+   * Gets the generation of the cache, which changes whenever a blob is invalidated. Requests get the generation before
+   * they look the blob up and pass it when they cache what they fetched.
+   * @return the current generation.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Gets a blob from the cache and records the access so that the blob can be admitted if it becomes popular.
+   * @param blobId the id of the blob.
+   * @return the {@link CachedBlob}, or {@code null} if the blob is not cached.
+   */
+  CachedBlob get(String blobId) {
+    if (!isEnabled()) {
+      return null;
+    }
+    CachedBlob cachedBlob = null;
+    synchronized (this) {
+      frequencySketch.increment(blobId);
+      Entry entry = getEntry(blobId);
+      if (entry != null) {
+        cachedBlob = new CachedBlob(entry.blobInfo, entry.content.asReadOnlyBuffer());
+      }
+    }
+    if (cachedBlob != null) {
+      frontendMetrics.blobCacheHitCount.inc();
+    } else {
+      frontendMetrics.blobCacheMissCount.inc();
+    }
+    return cachedBlob;
+  }
+
+  /**
+   * Wraps the content of a blob that is being fetched so that the blob is offered to the cache once all of it has been
+   * read. The content is copied as it is read and the channel behaves exactly like {@code channel} otherwise.
+   * @param blobId the id of the blob.
+   * @param blobInfo the {@link BlobInfo} of the blob.
+   * @param channel the {@link ReadableStreamChannel} with the content of the blob.
+   * @param generation the generation of the cache when the request that is fetching the blob looked it up.
+   * @return a {@link ReadableStreamChannel} that should be read instead of {@code channel}. This is {@code channel}
+   *         itself if the blob cannot be cached.
+   */
+  ReadableStreamChannel cacheOnRead(String blobId, BlobInfo blobInfo, ReadableStreamChannel channel, long generation) {
+    long blobSize = blobInfo.getBlobProperties().getBlobSize();
+    // the size of the channel may not be known up front (-1), in which case the size of the blob is expected.
+    if (!isCacheable(blobSize) || (channel.getSize() != -1 && channel.getSize() != blobSize)) {
+      return channel;
+    }
+    return new CachingReadableStreamChannel(blobId, blobInfo, channel, generation);
+  }
+
+  /**
+   * Removes a blob from the cache, and makes sure that the blob is not cached by requests that are in progress.
+   * @param blobId the id of the blob.
+   */
+  synchronized void invalidate(String blobId) {
+    if (!isEnabled()) {
+      return;
+    }
+    generation++;
+    // re-inserted so that the blob moves to the end of the invalidation order.
+    blobIdToInvalidationGeneration.remove(blobId);
+    blobIdToInvalidationGeneration.put(blobId, generation);
+    if (blobIdToInvalidationGeneration.size() > MAX_INVALIDATED_BLOBS) {
+      Iterator<Long> iterator = blobIdToInvalidationGeneration.values().iterator();
+      forgottenGeneration = iterator.next();
+      iterator.remove();
+    }
+    Entry entry = blobIdToEntry.remove(blobId);
+    if (entry != null) {
+      sizeInBytes -= entry.sizeInBytes;
+      frontendMetrics.blobCacheInvalidationCount.inc();
+    }
+  }
+
+  /**
+   * @return the number of bytes taken by the cached blobs.
+   */
+  synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * @return the number of blobs that are cached.
+   */
+  synchronized int getBlobCount() {
+    return blobIdToEntry.size();
+  }
+
+  /**
+   * Offers a blob to the cache. The blob is cached if there is room for it or if it has been accessed more frequently
+   * than all the blobs that need to be evicted to make room for it.
+   * @param blobId the id of the blob.
+   * @param blobInfo the {@link BlobInfo} of the blob.
+   * @param content the content of the blob. This is owned by the cache after the call and must not be modified.
+   * @param generation the generation of the cache when the request that fetched the blob looked it up.
+   * @return {@code true} if the blob was cached.
+   */
+  synchronized boolean put(String blobId, BlobInfo blobInfo, ByteBuffer content, long generation) {
+    if (!isCacheable(content.remaining())) {
+      return false;
+    }
+    long entrySize = getEntrySize(blobId, content.remaining());
+    List<String> victims = getVictims(blobId, entrySize, generation);
+    if (victims == null) {
+      return false;
+    }
+    for (String victim : victims) {
+      sizeInBytes -= blobIdToEntry.remove(victim).sizeInBytes;
+      frontendMetrics.blobCacheEvictionCount.inc();
+    }
+    long now = time.milliseconds();
+    BlobProperties blobProperties = blobInfo.getBlobProperties();
+    long expiresAtMs = now + ttlMs;
+    long blobExpiresAtMs =
+        Utils.addSecondsToEpochTime(blobProperties.getCreationTimeInMs(), blobProperties.getTimeToLiveInSeconds());
+    if (blobExpiresAtMs != Utils.Infinite_Time) {
+      expiresAtMs = Math.min(expiresAtMs, blobExpiresAtMs);
+    }
+    blobIdToEntry.put(blobId, new Entry(blobInfo, content, expiresAtMs, entrySize));
+    sizeInBytes += entrySize;
+    return true;
+  }
+
+  /**
+   * Checks whether a blob would be admitted to the cache if it were offered now.
+   * @param blobId the id of the blob.
+   * @param blobSize the size of the blob.
+   * @param generation the generation of the cache when the request that is fetching the blob looked it up.
+   * @return {@code true} if the blob would be admitted.
+   */
+  private synchronized boolean isAdmissible(String blobId, long blobSize, long generation) {
+    return getVictims(blobId, getEntrySize(blobId, blobSize), generation) != null;
+  }
+
+  /**
+   * Finds the blobs that have to be evicted to make room for a blob, if the blob can be admitted. A blob can be
+   * admitted if it is not cached already, if it was fetched after its last invalidation and if it has been accessed
+   * more frequently than every blob that has to be evicted to make room for it.
+   * @param blobId the id of the blob.
+   * @param entrySize the memory that the blob would take.
+   * @param generation the generation of the cache when the request that fetched the blob looked it up.
+   * @return the ids of the blobs to evict (empty if there is room for the blob), or {@code null} if the blob cannot be
+   *         admitted.
+   */
+  private List<String> getVictims(String blobId, long entrySize, long generation) {
+    Long invalidationGeneration = blobIdToInvalidationGeneration.get(blobId);
+    if (generation < forgottenGeneration || (invalidationGeneration != null && generation < invalidationGeneration)
+        || getEntry(blobId) != null) {
+      return null;
+    }
+    List<String> victims = new ArrayList<String>();
+    long bytesToFree = sizeInBytes + entrySize - capacity;
+    if (bytesToFree > 0) {
+      long now = time.milliseconds();
+      int frequency = frequencySketch.frequency(blobId);
+      Iterator<Map.Entry<String, Entry>> iterator = blobIdToEntry.entrySet().iterator();
+      while (bytesToFree > 0 && iterator.hasNext()) {
+        Map.Entry<String, Entry> victim = iterator.next();
+        if (now < victim.getValue().expiresAtMs && frequencySketch.frequency(victim.getKey()) >= frequency) {
+          frontendMetrics.blobCacheAdmissionRejectCount.inc();
+          return null;
+        }
+        victims.add(victim.getKey());
+        bytesToFree -= victim.getValue().sizeInBytes;
+      }
+    }
+    return victims;
+  }
+
+  /**
+   * @param blobId the id of a blob.
+   * @param blobSize the size of the blob.
+   * @return the memory that the blob takes when it is cached.
+   */
+  private static long getEntrySize(String blobId, long blobSize) {
+    return blobSize + 2 * blobId.length() + ENTRY_OVERHEAD_BYTES;
+  }
+
+  /**
+   * Gets the cached blob, if it is cached and has not expired. An expired blob is removed.
+   * @param blobId the id of the blob.
+   * @return the {@link Entry} of the blob, or {@code null} if there is none.
+   */
+  private Entry getEntry(String blobId) {
+    Entry entry = blobIdToEntry.get(blobId);
+    if (entry != null && time.milliseconds() >= entry.expiresAtMs) {
+      blobIdToEntry.remove(blobId);
+      sizeInBytes -= entry.sizeInBytes;
+      entry = null;
+    }
+    return entry;
+  }
+
+  /**
+   * A blob that was found in the cache.
+   */
+  static class CachedBlob {
+    private final BlobInfo blobInfo;
+    private final ByteBuffer content;
+
+    /**
+     * @param blobInfo the {@link BlobInfo} of the blob.
+     * @param content a read only view of the content of the blob.
+     */
+    CachedBlob(BlobInfo blobInfo, ByteBuffer content) {
+      this.blobInfo = blobInfo;
+      this.content = content;
+    }
+
+    /**
+     * @return the {@link BlobInfo} of the blob.
+     */
+    BlobInfo getBlobInfo() {
+      return blobInfo;
+    }
+
+    /**
+     * @return a read only view of the content of the blob. The view is not shared, so its position and limit can be
+     *         changed.
+     */
+    ByteBuffer getContent() {
+      return content;
+    }
+  }
+
+  /**
+   * A cached blob.
+   */
+  private static class Entry {
+    final BlobInfo blobInfo;
+    final ByteBuffer content;
+    final long expiresAtMs;
+    final long sizeInBytes;
+
+    /**
+     * @param blobInfo the {@link BlobInfo} of the blob.
+     * @param content the content of the blob.
+     * @param expiresAtMs the time at which the blob stops being served.
+     * @param sizeInBytes the memory taken by the blob.
+     */
+    Entry(BlobInfo blobInfo, ByteBuffer content, long expiresAtMs, long sizeInBytes) {
+      this.blobInfo = blobInfo;
+      this.content = content;
+      this.expiresAtMs = expiresAtMs;
+      this.sizeInBytes = sizeInBytes;
+    }
+  }
+
+  /**
+   * A count-min sketch that estimates how often blobs have been accessed recently. There are four rows of small
+   * counters (one counter per KB of capacity of the cache in each row, within bounds) that saturate at 15. Once the
+   * number of recorded accesses reaches ten times the width of a row, all the counters are halved so that accesses
+   * that are no longer recent fade away.
+   */
+  private static class FrequencySketch {
+    private static final int MIN_WIDTH = 64;
+    private static final int MAX_WIDTH = 1 << 20;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * @param capacity the capacity of the cache in bytes.
+     */
+    FrequencySketch(long capacity) {
+      int width = MIN_WIDTH;
+      while (width < MAX_WIDTH && width < capacity / 1024) {
+        width <<= 1;
+      }
+      counters = new byte[SEEDS.length][width];
+      mask = width - 1;
+      sampleSize = 10 * width;
+    }
+
+    /**
+     * Records an access of {@code blobId}.
+     * @param blobId the id of the blob that was accessed.
+     */
+    void increment(String blobId) {
+      int hash = blobId.hashCode();
+      boolean incremented = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = indexOf(hash, i);
+        if (counters[i][index] < MAX_FREQUENCY) {
+          counters[i][index]++;
+          incremented = true;
+        }
+      }
+      if (incremented && ++additions >= sampleSize) {
+        for (byte[] row : counters) {
+          for (int j = 0; j < row.length; j++) {
+            row[j] >>= 1;
+          }
+        }
+        additions /= 2;
+      }
+    }
+
+    /**
+     * @param blobId the id of a blob.
+     * @return the estimated number of recent accesses of {@code blobId}.
+     */
+    int frequency(String blobId) {
+      int hash = blobId.hashCode();
+      int frequency = MAX_FREQUENCY;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+      }
+      return frequency;
+    }
+
+    /**
+     * @param hash the hash of a blob id.
+     * @param row the row of counters.
+     * @return the index of the counter of the blob in {@code row}.
+     */
+    private int indexOf(int hash, int row) {
+      int h = hash * SEEDS[row];
+      h ^= h >>> 16;
+      return h & mask;
+    }
+  }
+
+  /**
+   * A {@link ReadableStreamChannel} that copies the content of a blob as it is read and offers the blob to the cache
+   * once all of it has been read successfully. The content is not copied if the blob would not be admitted to the
+   * cache when the read starts.
+   */
+  private class CachingReadableStreamChannel implements ReadableStreamChannel {
+    private final String blobId;
+    private final BlobInfo blobInfo;
+    private final ReadableStreamChannel channel;
+    private final long generation;
+
+    /**
+     * @param blobId the id of the blob.
+     * @param blobInfo the {@link BlobInfo} of the blob.
+     * @param channel the {@link ReadableStreamChannel} with the content of the blob.
+     * @param generation the generation of the cache when the request that is fetching the blob looked it up.
+     */
+    CachingReadableStreamChannel(String blobId, BlobInfo blobInfo, ReadableStreamChannel channel, long generation) {
+      this.blobId = blobId;
+      this.blobInfo = blobInfo;
+      this.channel = channel;
+      this.generation = generation;
+    }
+
+    @Override
+    public long getSize() {
+      return channel.getSize();
+    }
+
+    @Override
+    public Future<Long> readInto(AsyncWritableChannel asyncWritableChannel, final Callback<Long> callback) {
+      if (!isAdmissible(blobId, blobInfo.getBlobProperties().getBlobSize(), generation)) {
+        return channel.readInto(asyncWritableChannel, callback);
+      }
+      final CopyingChannel copyingChannel =
+          new CopyingChannel(asyncWritableChannel, (int) blobInfo.getBlobProperties().getBlobSize());
+      return channel.readInto(copyingChannel, new Callback<Long>() {
+        @Override
+        public void onCompletion(Long result, Exception exception) {
+          ByteBuffer content = copyingChannel.getContent();
+          if (exception == null && content != null) {
+            put(blobId, blobInfo, content, generation);
+          }
+          if (callback != null) {
+            callback.onCompletion(result, exception);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void setDigestAlgorithm(String digestAlgorithm)
+        throws NoSuchAlgorithmException {
+      channel.setDigestAlgorithm(digestAlgorithm);
+    }
+
+    @Override
+    public byte[] getDigest() {
+      return channel.getDigest();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * An {@link AsyncWritableChannel} that copies the data written to it into a buffer in direct memory before handing
+   * the write off to another {@link AsyncWritableChannel}.
+   */
+  private static class CopyingChannel implements AsyncWritableChannel {
+    private final AsyncWritableChannel asyncWritableChannel;
+    private final ByteBuffer content;
+    private boolean overflowed = false;
+
+    /**
+     * @param asyncWritableChannel the {@link AsyncWritableChannel} to hand writes off to.
+     * @param size the number of bytes expected to be written.
+     */
+    CopyingChannel(AsyncWritableChannel asyncWritableChannel, int size) {
+      this.asyncWritableChannel = asyncWritableChannel;
+      content = ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public synchronized Future<Long> write(ByteBuffer src, Callback<Long> callback) {
+      // copied before the write is handed off since the buffer can be reused once the write is acknowledged.
+      if (!overflowed && src.remaining() <= content.remaining()) {
+        content.put(src.duplicate());
+      } else {
+        overflowed = true;
+      }
+      return asyncWritableChannel.write(src, callback);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return asyncWritableChannel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      asyncWritableChannel.close();
+    }
+
+    /**
+     * @return the copied content, ready to be read, if exactly the expected number of bytes were written. {@code null}
+     *         otherwise.
+     */
+    synchronized ByteBuffer getContent() {
+      if (overflowed || content.hasRemaining()) {
+        return null;
+      }
+      ByteBuffer copiedContent = content.duplicate();
+      copiedContent.flip();
+      return copiedContent;
+    }
+  }
+}
@@ -14,6 +14,7 @@
 package com.github.ambry.frontend;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
@@ -26,6 +27,7 @@ import com.github.ambry.rest.RestRequestMetrics;
  * Exports metrics that are triggered by the Ambry frontend to the provided {@link MetricRegistry}.
  */
 class FrontendMetrics {
+  final MetricRegistry metricRegistry;
 
   // RestRequestMetrics instances
   // DELETE
@@ -34,8 +36,10 @@ class FrontendMetrics {
   public final RestRequestMetrics headBlobMetrics;
   // GET
   public final RestRequestMetrics getBlobInfoMetrics;
+  public final RestRequestMetrics getBlobInfosMetrics;
   public final RestRequestMetrics getBlobMetrics;
   public final RestRequestMetrics getUserMetadataMetrics;
+  public final RestRequestMetrics getSlowRequestsMetrics;
   // POST
   public final RestRequestMetrics postBlobMetrics;
 
@@ -73,6 +77,10 @@ class FrontendMetrics {
   // GetCallback
   public final Histogram getCallbackProcessingTimeInMs;
   public final Histogram getTimeInMs;
+  // GetBlobInfosCallback
+  public final Histogram getBlobInfosCallbackProcessingTimeInMs;
+  public final Histogram getBlobInfosTimeInMs;
+  public final Histogram getBlobInfosIdConversionTimeInMs;
   // PostCallback
   public final Histogram outboundIdConversionCallbackProcessingTimeInMs;
   public final Histogram outboundIdConversionTimeInMs;
@@ -112,6 +120,8 @@ class FrontendMetrics {
   public final Counter getSecurityResponseCallbackProcessingError;
   // GetCallback
   public final Counter getCallbackProcessingError;
+  // GetBlobInfosCallback
+  public final Counter getBlobInfosCallbackProcessingError;
   // PostCallback
   public final Counter postCallbackProcessingError;
   public final Counter outboundIdConversionCallbackProcessingError;
@@ -120,12 +130,23 @@ class FrontendMetrics {
   // AmbryBlobStorageService
   public final Histogram blobStorageServiceStartupTimeInMs;
   public final Histogram blobStorageServiceShutdownTimeInMs;
+  // FrontendBlobCache
+  public final Counter blobCacheHitCount;
+  public final Counter blobCacheMissCount;
+  public final Counter blobCacheEvictionCount;
+  public final Counter blobCacheInvalidationCount;
+  public final Counter blobCacheAdmissionRejectCount;
+  public final Counter blobCacheBytesServedCount;
+  public Gauge<Double> blobCacheHitRatio;
+  public Gauge<Long> blobCacheSizeBytes;
+  public Gauge<Integer> blobCacheBlobCount;
 
   /**
    * Creates an instance of FrontendMetrics using the given {@code metricRegistry}.
    * @param metricRegistry the {@link MetricRegistry} to use for the metrics.
    */
   public FrontendMetrics(MetricRegistry metricRegistry) {
+    this.metricRegistry = metricRegistry;
     // RestRequestMetrics instances
     // DELETE
     deleteBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "DeleteBlob", metricRegistry);
@@ -133,8 +154,10 @@ class FrontendMetrics {
     headBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "HeadBlob", metricRegistry);
     // GET
     getBlobInfoMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetBlobInfo", metricRegistry);
+    getBlobInfosMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetBlobInfos", metricRegistry);
     getBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetBlob", metricRegistry);
     getUserMetadataMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetUserMetadata", metricRegistry);
+    getSlowRequestsMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetSlowRequests", metricRegistry);
     // POST
     postBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "PostBlob", metricRegistry);
 
@@ -191,6 +214,13 @@ class FrontendMetrics {
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackProcessingTimeInMs"));
     getTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackResultTimeInMs"));
+    // GetBlobInfosCallback
+    getBlobInfosCallbackProcessingTimeInMs = metricRegistry
+        .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobInfosCallbackProcessingTimeInMs"));
+    getBlobInfosTimeInMs = metricRegistry
+        .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobInfosCallbackResultTimeInMs"));
+    getBlobInfosIdConversionTimeInMs = metricRegistry
+        .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobInfosIdConversionTimeInMs"));
     // PostCallback
     outboundIdConversionCallbackProcessingTimeInMs = metricRegistry
         .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "OutboundIdCallbackProcessingTimeInMs"));
@@ -257,6 +287,9 @@ class FrontendMetrics {
     // GetCallback
     getCallbackProcessingError =
         metricRegistry.counter(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackProcessingError"));
+    // GetBlobInfosCallback
+    getBlobInfosCallbackProcessingError = metricRegistry
+        .counter(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobInfosCallbackProcessingError"));
     // PostCallback
     postCallbackProcessingError =
         metricRegistry.counter(MetricRegistry.name(AmbryBlobStorageService.class, "PostCallbackProcessingError"));
@@ -268,5 +301,46 @@ class FrontendMetrics {
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "StartupTimeInMs"));
     blobStorageServiceShutdownTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "ShutdownTimeInMs"));
+    // FrontendBlobCache
+    blobCacheHitCount = metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "HitCount"));
+    blobCacheMissCount = metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "MissCount"));
+    blobCacheEvictionCount = metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "EvictionCount"));
+    blobCacheInvalidationCount =
+        metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "InvalidationCount"));
+    blobCacheAdmissionRejectCount =
+        metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "AdmissionRejectCount"));
+    blobCacheBytesServedCount =
+        metricRegistry.counter(MetricRegistry.name(FrontendBlobCache.class, "BytesServedCount"));
+  }
+
+  /**
+   * Initializes the {@link Gauge} metrics of the {@link FrontendBlobCache}: the hit ratio, the number of bytes cached
+   * and the number of blobs cached.
+   * @param blobCache the {@link FrontendBlobCache} to track.
+   */
+  void initializeBlobCacheMetrics(final FrontendBlobCache blobCache) {
+    blobCacheHitRatio = new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        long hits = blobCacheHitCount.getCount();
+        long lookups = hits + blobCacheMissCount.getCount();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+      }
+    };
+    blobCacheSizeBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return blobCache.getSizeInBytes();
+      }
+    };
+    blobCacheBlobCount = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return blobCache.getBlobCount();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(FrontendBlobCache.class, "HitRatio"), blobCacheHitRatio);
+    metricRegistry.register(MetricRegistry.name(FrontendBlobCache.class, "SizeBytes"), blobCacheSizeBytes);
+    metricRegistry.register(MetricRegistry.name(FrontendBlobCache.class, "BlobCount"), blobCacheBlobCount);
   }
 }
@@ -19,6 +19,9 @@ import com.github.ambry.config.FrontendConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
+import com.github.ambry.rest.GetSlowRequestsHandler;
 import com.github.ambry.rest.IdConverter;
 import com.github.ambry.rest.IdConverterFactory;
 import com.github.ambry.rest.MockRestRequest;
@@ -37,13 +40,17 @@ import com.github.ambry.rest.RestUtilsTest;
 import com.github.ambry.rest.SecurityService;
 import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.AsyncWritableChannel;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobInfosResult;
 import com.github.ambry.router.InMemoryRouter;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterErrorCode;
 import com.github.ambry.router.RouterException;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Utils;
 import com.github.ambry.utils.UtilsTest;
 import java.io.IOException;
@@ -55,6 +62,7 @@ import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -87,7 +95,9 @@ public class AmbryBlobStorageServiceTest {
   private final SecurityServiceFactory securityServiceFactory;
   private final FrontendTestResponseHandler responseHandler;
   private final InMemoryRouter router;
+  private final TraceRecorder traceRecorder = new TraceRecorder(10);
 
+  private FrontendBlobCache blobCache = new FrontendBlobCache(0, 0, 0, frontendMetrics, SystemTime.getInstance());
   private AmbryBlobStorageService ambryBlobStorageService;
 
   /**
@@ -345,6 +355,13 @@ public class AmbryBlobStorageServiceTest {
     RestUtilsTest.setUserMetadataHeaders(headers, userMetadata);
     String blobId = postBlobAndVerify(headers, content);
     getBlobAndVerify(blobId, headers, content);
+    getBlobRangeAndVerify(blobId, "bytes=100-199", "bytes 100-199/" + CONTENT_LENGTH,
+        Arrays.copyOfRange(content.array(), 100, 200));
+    getBlobRangeAndVerify(blobId, "bytes=1000-", "bytes 1000-1023/" + CONTENT_LENGTH,
+        Arrays.copyOfRange(content.array(), 1000, CONTENT_LENGTH));
+    getBlobRangeAndVerify(blobId, "bytes=-24", "bytes 1000-1023/" + CONTENT_LENGTH,
+        Arrays.copyOfRange(content.array(), 1000, CONTENT_LENGTH));
+    getUnsatisfiableBlobRangeAndVerify(blobId, "bytes=" + CONTENT_LENGTH + "-");
     getNotModifiedBlobAndVerify(blobId);
     getUserMetadataAndVerify(blobId, headers);
     getBlobInfoAndVerify(blobId, headers);
@@ -355,6 +372,163 @@ public class AmbryBlobStorageServiceTest {
     verifyOperationsAfterDelete(blobId);
   }
 
+  /**
+   * Tests that blobs are served from the {@link FrontendBlobCache} once they have been fetched, that conditional GETs
+   * are answered from the cache and that a DELETE removes a blob from the cache.
+   * @throws Exception
+   */
+  @Test
+  public void blobCacheTest()
+      throws Exception {
+    final int CONTENT_LENGTH = 1024;
+    ambryBlobStorageService.shutdown();
+    blobCache = new FrontendBlobCache(16 * CONTENT_LENGTH, CONTENT_LENGTH, 60000, frontendMetrics, new MockTime());
+    ambryBlobStorageService = getAmbryBlobStorageService();
+    ambryBlobStorageService.start();
+
+    ByteBuffer content = ByteBuffer.wrap(RestTestUtils.getRandomBytes(CONTENT_LENGTH));
+    JSONObject headers = new JSONObject();
+    setAmbryHeaders(headers, CONTENT_LENGTH, 7200, false, "blobCacheServiceID", "application/octet-stream",
+        "blobCacheOwnerID");
+    String blobId = postBlobAndVerify(headers, content);
+    // ranges are not cached.
+    getBlobRangeAndVerify(blobId, "bytes=100-199", "bytes 100-199/" + CONTENT_LENGTH,
+        Arrays.copyOfRange(content.array(), 100, 200));
+    assertEquals("Blob should not have been cached", 0, blobCache.getBlobCount());
+    getBlobAndVerify(blobId, headers, content);
+    assertEquals("Blob should have been cached", 1, blobCache.getBlobCount());
+    assertEquals("Unexpected miss count", 2, frontendMetrics.blobCacheMissCount.getCount());
+    assertEquals("Unexpected hit count", 0, frontendMetrics.blobCacheHitCount.getCount());
+
+    // the blob and ranges of the blob are served from the cache.
+    getBlobAndVerify(blobId, headers, content);
+    getBlobRangeAndVerify(blobId, "bytes=-24", "bytes 1000-1023/" + CONTENT_LENGTH,
+        Arrays.copyOfRange(content.array(), 1000, CONTENT_LENGTH));
+    getUnsatisfiableBlobRangeAndVerify(blobId, "bytes=" + CONTENT_LENGTH + "-");
+    assertEquals("Unexpected hit count", 3, frontendMetrics.blobCacheHitCount.getCount());
+    assertEquals("Unexpected bytes served", CONTENT_LENGTH + 24, frontendMetrics.blobCacheBytesServedCount.getCount());
+
+    // conditional GET with the ETag of the blob.
+    RestRequest restRequest = createRestRequest(RestMethod.GET, blobId, null, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    String eTag = restResponseChannel.getHeader(RestUtils.Headers.ETAG);
+    assertNotNull("No ETag header", eTag);
+    headers = new JSONObject().put(RestUtils.Headers.IF_NONE_MATCH, "\"other\", W/" + eTag);
+    restRequest = createRestRequest(RestMethod.GET, blobId, headers, null);
+    restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.NotModified, restResponseChannel.getStatus());
+    assertEquals("No content expected as blob is not modified", 0, restResponseChannel.getResponseBody().length);
+    assertEquals("Unexpected bytes served", 2 * CONTENT_LENGTH + 24,
+        frontendMetrics.blobCacheBytesServedCount.getCount());
+
+    deleteBlobAndVerify(blobId);
+    assertEquals("Blob should have been removed from the cache", 0, blobCache.getBlobCount());
+    assertEquals("Unexpected invalidation count", 1, frontendMetrics.blobCacheInvalidationCount.getCount());
+    verifyOperationsAfterDelete(blobId);
+    assertEquals("Deleted blob should not have been cached", 0, blobCache.getBlobCount());
+  }
+
+  /**
+   * Tests GET of {@link RestUtils.Operations#BLOB_INFOS} for blobs that exist, for blobs that do not and for blobs that
+   * the {@link SecurityService} rejects.
+   * @throws Exception
+   */
+  @Test
+  public void getBlobInfosTest()
+      throws Exception {
+    final int CONTENT_LENGTH = 1024;
+    String serviceId = "getBlobInfosServiceID";
+    String contentType = "application/octet-stream";
+    String ownerId = "getBlobInfosOwnerID";
+    JSONObject headers = new JSONObject();
+    setAmbryHeaders(headers, CONTENT_LENGTH, Utils.Infinite_Time, true, serviceId, contentType, ownerId);
+    Map<String, String> userMetadata = new HashMap<String, String>();
+    userMetadata.put(RestUtils.Headers.USER_META_DATA_HEADER_PREFIX + "key1", "value1");
+    RestUtilsTest.setUserMetadataHeaders(headers, userMetadata);
+    String blobId = postBlobAndVerify(headers, ByteBuffer.wrap(RestTestUtils.getRandomBytes(CONTENT_LENGTH)));
+    String deletedBlobId = postBlobAndVerify(headers, ByteBuffer.wrap(RestTestUtils.getRandomBytes(CONTENT_LENGTH)));
+    deleteBlobAndVerify(deletedBlobId);
+
+    JSONObject requestHeaders = new JSONObject();
+    requestHeaders.put(RestUtils.Headers.BLOB_IDS, blobId + ", " + deletedBlobId);
+    RestRequest restRequest = createRestRequest(RestMethod.GET, RestUtils.Operations.BLOB_INFOS, requestHeaders, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.Ok, restResponseChannel.getStatus());
+    assertEquals("Unexpected Content-Type", "application/json",
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_TYPE));
+    byte[] responseBody = restResponseChannel.getResponseBody();
+    assertEquals("Content-Length does not match response body", Integer.toString(responseBody.length),
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_LENGTH));
+    JSONObject response = new JSONObject(new String(responseBody, "UTF-8"));
+
+    JSONObject blobInfos = response.getJSONObject("blobInfos");
+    assertEquals("Unexpected number of BlobInfos", 1, blobInfos.length());
+    JSONObject blobInfo = blobInfos.getJSONObject(blobId);
+    assertEquals("Blob size does not match", CONTENT_LENGTH, blobInfo.getLong(RestUtils.Headers.BLOB_SIZE));
+    assertEquals("Service ID does not match", serviceId, blobInfo.getString(RestUtils.Headers.SERVICE_ID));
+    assertEquals("Content type does not match", contentType, blobInfo.getString(RestUtils.Headers.AMBRY_CONTENT_TYPE));
+    assertEquals("Owner ID does not match", ownerId, blobInfo.getString(RestUtils.Headers.OWNER_ID));
+    assertTrue("Blob should be private", blobInfo.getBoolean(RestUtils.Headers.PRIVATE));
+    assertFalse("TTL should not be present for a blob that does not expire", blobInfo.has(RestUtils.Headers.TTL));
+    for (Map.Entry<String, String> entry : userMetadata.entrySet()) {
+      assertEquals("User metadata does not match", entry.getValue(), blobInfo.getString(entry.getKey()));
+    }
+
+    JSONObject errors = response.getJSONObject("errors");
+    assertEquals("Unexpected number of errors", 1, errors.length());
+    assertEquals("Unexpected error", RestServiceErrorCode.Deleted.name(), errors.getString(deletedBlobId));
+
+    // no blob IDs in the request.
+    restRequest = createRestRequest(RestMethod.GET, RestUtils.Operations.BLOB_INFOS, null, null);
+    try {
+      doOperation(restRequest, new MockRestResponseChannel());
+      fail("GET of BlobInfos should have failed because no blob IDs were provided");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MissingArgs, e.getErrorCode());
+    }
+
+    // more blob IDs than allowed in the request.
+    Properties properties = new Properties();
+    properties.setProperty("frontend.max.blob.ids.per.request", "1");
+    ambryBlobStorageService.shutdown();
+    ambryBlobStorageService =
+        new AmbryBlobStorageService(new FrontendConfig(new VerifiableProperties(properties)), frontendMetrics,
+            responseHandler, router, traceRecorder, idConverterFactory, securityServiceFactory, blobCache);
+    ambryBlobStorageService.start();
+    restRequest = createRestRequest(RestMethod.GET, RestUtils.Operations.BLOB_INFOS, requestHeaders, null);
+    try {
+      doOperation(restRequest, new MockRestResponseChannel());
+      fail("GET of BlobInfos should have failed because too many blob IDs were provided");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.BadRequest, e.getErrorCode());
+    }
+
+    // blobs that the SecurityService rejects are reported as errors.
+    FrontendTestSecurityServiceFactory securityFactory = new FrontendTestSecurityServiceFactory();
+    securityFactory.mode = FrontendTestSecurityServiceFactory.Mode.Response;
+    securityFactory.exceptionToReturn = new RestServiceException("Rejected", RestServiceErrorCode.Unauthorized);
+    ambryBlobStorageService.shutdown();
+    ambryBlobStorageService =
+        new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, traceRecorder,
+            idConverterFactory, securityFactory, blobCache);
+    ambryBlobStorageService.start();
+    restRequest = createRestRequest(RestMethod.GET, RestUtils.Operations.BLOB_INFOS, requestHeaders, null);
+    restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.Ok, restResponseChannel.getStatus());
+    assertNull("Headers of the rejected blob should not be in the response",
+        restResponseChannel.getHeader(RestUtils.Headers.BLOB_SIZE));
+    response = new JSONObject(new String(restResponseChannel.getResponseBody(), "UTF-8"));
+    assertEquals("There should be no BlobInfos", 0, response.getJSONObject("blobInfos").length());
+    errors = response.getJSONObject("errors");
+    assertEquals("Unexpected number of errors", 2, errors.length());
+    assertEquals("Unexpected error", RestServiceErrorCode.Unauthorized.name(), errors.getString(blobId));
+    assertEquals("Unexpected error", RestServiceErrorCode.Deleted.name(), errors.getString(deletedBlobId));
+  }
+
   /**
    * Tests how metadata that has not been POSTed in the form of headers is returned.
    * @throws Exception
@@ -382,6 +556,75 @@ public class AmbryBlobStorageServiceTest {
     }
   }
 
+  /**
+   * Tests that GETs of blobs are traced from the {@link RestRequestMetricsTracker} of the request when tracing is
+   * enabled, that the trace is handed to the {@link Router} and that the traces recorded are served by the
+   * {@link RestUtils.Operations#SLOW_REQUESTS} operation.
+   * @throws Exception
+   */
+  @Test
+  public void tracingAndGetSlowRequestsTest()
+      throws Exception {
+    final List<RequestTrace> routerTraces = new ArrayList<>();
+    InMemoryRouter tracingRouter = new InMemoryRouter(new VerifiableProperties(new Properties())) {
+      @Override
+      public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+        routerTraces.add(trace);
+        return super.getBlobInfo(blobId, trace, callback);
+      }
+
+      @Override
+      public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+          Callback<ReadableStreamChannel> callback) {
+        routerTraces.add(trace);
+        return super.getBlob(blobId, range, trace, callback);
+      }
+    };
+    Properties properties = new Properties();
+    properties.setProperty("frontend.trace.sampling.interval", "1");
+    ambryBlobStorageService.shutdown();
+    ambryBlobStorageService =
+        new AmbryBlobStorageService(new FrontendConfig(new VerifiableProperties(properties)), frontendMetrics,
+            responseHandler, tracingRouter, traceRecorder, idConverterFactory, securityServiceFactory, blobCache);
+    ambryBlobStorageService.start();
+
+    byte[] content = RestTestUtils.getRandomBytes(10);
+    String blobId = tracingRouter.putBlob(new BlobProperties(content.length, "tracingTestServiceId"), new byte[0],
+        new ByteBufferReadableStreamChannel(ByteBuffer.wrap(content))).get();
+    RestRequest restRequest = createRestRequest(RestMethod.GET, blobId, null, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertArrayEquals("Unexpected blob content", content, restResponseChannel.getResponseBody());
+    RequestTrace trace = restRequest.getMetricsTracker().getTrace();
+    assertNotNull("The GET should have been traced", trace);
+    assertEquals("The first span should be the time spent queued in the frontend", "RestServerQueue",
+        trace.getSpans().get(0).getName());
+    assertEquals("The router should have been handed the trace for the HEAD and the GET",
+        Arrays.asList(trace, trace), routerTraces);
+    assertEquals("The trace should not be recorded before the request is complete", 0,
+        traceRecorder.getRecordedCount());
+    restRequest.getMetricsTracker().recordMetrics();
+    assertEquals("The trace should have been recorded", 1, traceRecorder.getRecordedCount());
+    assertEquals("Unexpected outcome", "Success", trace.getOutcome());
+
+    // requests for sub-resources are not traced.
+    restRequest = createRestRequest(RestMethod.GET, blobId + "/" + RestUtils.SubResource.BlobInfo, null, null);
+    doOperation(restRequest, new MockRestResponseChannel());
+    assertNull("GET of a sub-resource should not be traced", restRequest.getMetricsTracker().getTrace());
+
+    restRequest = createRestRequest(RestMethod.GET, RestUtils.Operations.SLOW_REQUESTS, null, null);
+    restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.Ok, restResponseChannel.getStatus());
+    JSONObject response = new JSONObject(new String(restResponseChannel.getResponseBody()));
+    assertEquals("Unexpected recorded count", 1, response.getLong(GetSlowRequestsHandler.RECORDED_COUNT_KEY));
+    assertEquals("Unexpected trace", trace.getTraceId(), response.getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY)
+        .getJSONObject(0)
+        .getLong(GetSlowRequestsHandler.TRACE_ID_KEY));
+    assertNull("GET of slow requests should not be traced", restRequest.getMetricsTracker().getTrace());
+    tracingRouter.close();
+  }
+
   /**
    * Tests for cases where the {@link IdConverter} misbehaves and throws {@link RuntimeException}.
    * @throws InstantiationException
@@ -566,8 +809,8 @@ public class AmbryBlobStorageServiceTest {
    * @return an instance of {@link AmbryBlobStorageService}.
    */
   private AmbryBlobStorageService getAmbryBlobStorageService() {
-    return new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, idConverterFactory,
-        securityServiceFactory);
+    return new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, traceRecorder,
+        idConverterFactory, securityServiceFactory, blobCache);
   }
 
   // nullInputsForFunctionsTest() helpers
@@ -688,6 +931,49 @@ public class AmbryBlobStorageServiceTest {
         restResponseChannel.getResponseBody());
   }
 
+  /**
+   * Gets a range of the blob with blob ID {@code blobId} and verifies that the headers and content match with what is
+   * expected.
+   * @param blobId the blob ID of the blob to GET.
+   * @param rangeHeader the value of the {@link RestUtils.Headers#RANGE} header.
+   * @param expectedContentRange the expected value of the {@link RestUtils.Headers#CONTENT_RANGE} header.
+   * @param expectedContent the expected content of the range of the blob.
+   * @throws Exception
+   */
+  private void getBlobRangeAndVerify(String blobId, String rangeHeader, String expectedContentRange,
+      byte[] expectedContent)
+      throws Exception {
+    JSONObject headers = new JSONObject().put(RestUtils.Headers.RANGE, rangeHeader);
+    RestRequest restRequest = createRestRequest(RestMethod.GET, blobId, headers, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.PartialContent, restResponseChannel.getStatus());
+    assertEquals(RestUtils.Headers.CONTENT_RANGE + " does not match", expectedContentRange,
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_RANGE));
+    assertEquals(RestUtils.Headers.CONTENT_LENGTH + " does not match", Integer.toString(expectedContent.length),
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_LENGTH));
+    assertArrayEquals("GET content does not match the requested range", expectedContent,
+        restResponseChannel.getResponseBody());
+  }
+
+  /**
+   * Gets a range of the blob with blob ID {@code blobId} that cannot be satisfied and verifies that the request fails.
+   * @param blobId the blob ID of the blob to GET.
+   * @param rangeHeader the value of the {@link RestUtils.Headers#RANGE} header.
+   * @throws Exception
+   */
+  private void getUnsatisfiableBlobRangeAndVerify(String blobId, String rangeHeader)
+      throws Exception {
+    JSONObject headers = new JSONObject().put(RestUtils.Headers.RANGE, rangeHeader);
+    RestRequest restRequest = createRestRequest(RestMethod.GET, blobId, headers, null);
+    try {
+      doOperation(restRequest, new MockRestResponseChannel());
+      fail("GET of range [" + rangeHeader + "] should have failed");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.RangeNotSatisfiable, e.getErrorCode());
+    }
+  }
+
   /**
    * Gets the blob with blob ID {@code blobId} and verifies that the blob is not returned as blob is not modified
    * @param blobId the blob ID of the blob to GET.
@@ -901,8 +1187,8 @@ public class AmbryBlobStorageServiceTest {
   private void doIdConverterExceptionTest(FrontendTestIdConverterFactory converterFactory, String expectedExceptionMsg)
       throws InstantiationException, JSONException {
     ambryBlobStorageService =
-        new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, converterFactory,
-            securityServiceFactory);
+        new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, router, traceRecorder,
+            converterFactory, securityServiceFactory, blobCache);
     ambryBlobStorageService.start();
     doExternalServicesBadInputTest(RestMethod.values(), expectedExceptionMsg);
   }
@@ -929,7 +1215,7 @@ public class AmbryBlobStorageServiceTest {
       }
       ambryBlobStorageService =
           new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, new FrontendTestRouter(),
-              idConverterFactory, securityFactory);
+              traceRecorder, idConverterFactory, securityFactory, blobCache);
       ambryBlobStorageService.start();
       doExternalServicesBadInputTest(restMethods, exceptionMsg);
     }
@@ -976,8 +1262,8 @@ public class AmbryBlobStorageServiceTest {
   private void doRouterExceptionPipelineTest(FrontendTestRouter testRouter, String exceptionMsg)
       throws Exception {
     ambryBlobStorageService =
-        new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, testRouter, idConverterFactory,
-            securityServiceFactory);
+        new AmbryBlobStorageService(frontendConfig, frontendMetrics, responseHandler, testRouter, traceRecorder,
+            idConverterFactory, securityServiceFactory, blobCache);
     ambryBlobStorageService.start();
     for (RestMethod restMethod : RestMethod.values()) {
       switch (restMethod) {
@@ -1325,7 +1611,9 @@ class FrontendTestRouter implements Router {
    */
   enum OpType {
     DeleteBlob,
+    DeleteBlobs,
     GetBlobInfo,
+    GetBlobInfos,
     GetBlob,
     PutBlob
   }
@@ -1345,16 +1633,53 @@ class FrontendTestRouter implements Router {
         OpType.GetBlobInfo);
   }
 
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, callback);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback) {
+    Map<String, BlobInfo> blobInfos = new HashMap<String, BlobInfo>();
+    for (String blobId : blobIds) {
+      blobInfos.put(blobId, new BlobInfo(new BlobProperties(0, "FrontendTestRouter"), new byte[0]));
+    }
+    return completeOperation(new GetBlobInfosResult(blobInfos, new HashMap<String, Exception>()), callback,
+        OpType.GetBlobInfos);
+  }
+
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
     return completeOperation(new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0)), callback, OpType.GetBlob);
   }
 
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, callback);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -1376,6 +1701,16 @@ class FrontendTestRouter implements Router {
     return completeOperation(null, callback, OpType.DeleteBlob);
   }
 
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback) {
+    return completeOperation((Map<String, Exception>) new HashMap<String, Exception>(), callback, OpType.DeleteBlobs);
+  }
+
   @Override
   public void close() {
     isOpen = false;
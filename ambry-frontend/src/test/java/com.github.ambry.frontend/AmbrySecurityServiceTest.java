@@ -222,6 +222,27 @@ public class AmbrySecurityServiceTest {
     testGetNotModifiedBlob(DEFAULT_INFO, DEFAULT_INFO.getBlobProperties().getCreationTimeInMs());
     // < creation time (in secs)
     testGetNotModifiedBlob(DEFAULT_INFO, DEFAULT_INFO.getBlobProperties().getCreationTimeInMs() - 1000);
+    // If-None-Match
+    String eTag = getETag(DEFAULT_INFO);
+    testGetBlobWithIfNoneMatch(DEFAULT_INFO, eTag, true);
+    testGetBlobWithIfNoneMatch(DEFAULT_INFO, "\"other\", W/" + eTag, true);
+    testGetBlobWithIfNoneMatch(DEFAULT_INFO, "*", true);
+    testGetBlobWithIfNoneMatch(DEFAULT_INFO, "\"other\"", false);
+    // range requests
+    blobInfo = new BlobInfo(new BlobProperties(100, SERVICE_ID, OWNER_ID, "image/gif", false, 10000), null);
+    testGetBlobWithRange(blobInfo, "bytes=10-19", "bytes 10-19/100", 10);
+    testGetBlobWithRange(blobInfo, "bytes=90-", "bytes 90-99/100", 10);
+    testGetBlobWithRange(blobInfo, "bytes=-25", "bytes 75-99/100", 25);
+    testGetBlobWithRange(blobInfo, "bytes=50-1000", "bytes 50-99/100", 50);
+    // range that cannot be satisfied
+    RestRequest rangeRequest = createRestRequest(RestMethod.GET, "/",
+        new JSONObject().put(RestUtils.Headers.RANGE, "bytes=100-200"));
+    testExceptionCasesProcessResponse(rangeRequest, new MockRestResponseChannel(), blobInfo,
+        RestServiceErrorCode.RangeNotSatisfiable);
+    // malformed range
+    rangeRequest = createRestRequest(RestMethod.GET, "/", new JSONObject().put(RestUtils.Headers.RANGE, "bytes=a-b"));
+    testExceptionCasesProcessResponse(rangeRequest, new MockRestResponseChannel(), blobInfo,
+        RestServiceErrorCode.InvalidArgs);
 
     // bad rest response channel
     testExceptionCasesProcessResponse(RestMethod.HEAD, new BadRestResponseChannel(), blobInfo,
@@ -315,6 +336,36 @@ public class AmbrySecurityServiceTest {
     verifyHeadersForGetBlob(blobInfo.getBlobProperties(), restResponseChannel);
   }
 
+  /**
+   * Tests {@link SecurityService#processResponse(RestRequest, RestResponseChannel, BlobInfo, Callback)} for a Get blob
+   * with a {@link RestUtils.Headers#RANGE} header.
+   * @param blobInfo the {@link BlobInfo} to be used for the {@link RestRequest}
+   * @param rangeHeader the value of the {@link RestUtils.Headers#RANGE} header.
+   * @param expectedContentRange the expected value of the {@link RestUtils.Headers#CONTENT_RANGE} header.
+   * @param expectedContentLength the expected value of the {@link RestUtils.Headers#CONTENT_LENGTH} header.
+   * @throws Exception
+   */
+  private void testGetBlobWithRange(BlobInfo blobInfo, String rangeHeader, String expectedContentRange,
+      long expectedContentLength)
+      throws Exception {
+    SecurityServiceCallback callback = new SecurityServiceCallback();
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    RestRequest restRequest =
+        createRestRequest(RestMethod.GET, "/", new JSONObject().put(RestUtils.Headers.RANGE, rangeHeader));
+    securityService.processResponse(restRequest, restResponseChannel, blobInfo, callback).get();
+    Assert.assertTrue("Callback should have been invoked", callback.callbackLatch.await(1, TimeUnit.SECONDS));
+    Assert.assertNull("Exception should not have been thrown", callback.exception);
+    Assert.assertEquals("Unexpected response status", ResponseStatus.PartialContent, restResponseChannel.getStatus());
+    Assert.assertEquals("Blob size mismatch", blobInfo.getBlobProperties().getBlobSize(),
+        Long.parseLong(restResponseChannel.getHeader(RestUtils.Headers.BLOB_SIZE)));
+    Assert.assertEquals("Content range mismatch", expectedContentRange,
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_RANGE));
+    Assert.assertEquals("Content length mismatch", expectedContentLength,
+        Long.parseLong(restResponseChannel.getHeader(RestUtils.Headers.CONTENT_LENGTH)));
+    Assert.assertEquals("Accept ranges mismatch", RestUtils.BYTE_RANGE_UNIT,
+        restResponseChannel.getHeader(RestUtils.Headers.ACCEPT_RANGES));
+  }
+
   /**
    * Tests {@link SecurityService#processResponse(RestRequest, RestResponseChannel, BlobInfo, Callback)} for a Get blob
    * with the passed in {@link BlobInfo} for a not modified response
@@ -347,6 +398,57 @@ public class AmbrySecurityServiceTest {
     }
   }
 
+  /**
+   * Gets the {@link RestUtils.Headers#ETAG} returned in the response to a GET of the blob with the given
+   * {@link BlobInfo}.
+   * @param blobInfo the {@link BlobInfo} of the blob.
+   * @return the {@link RestUtils.Headers#ETAG} of the blob.
+   * @throws Exception
+   */
+  private String getETag(BlobInfo blobInfo)
+      throws Exception {
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    RestRequest restRequest = createRestRequest(RestMethod.GET, "/", null);
+    securityService.processResponse(restRequest, restResponseChannel, blobInfo, null).get();
+    String eTag = restResponseChannel.getHeader(RestUtils.Headers.ETAG);
+    Assert.assertNotNull("ETag has not been set", eTag);
+    return eTag;
+  }
+
+  /**
+   * Tests {@link SecurityService#processResponse(RestRequest, RestResponseChannel, BlobInfo, Callback)} for a Get blob
+   * with a {@link RestUtils.Headers#IF_NONE_MATCH} header. The {@link RestUtils.Headers#IF_MODIFIED_SINCE} header is
+   * also set to a time that would lead to a not modified response, to check that it is ignored.
+   * @param blobInfo the {@link BlobInfo} to be used for the {@link RestRequest}
+   * @param ifNoneMatch the value of the {@link RestUtils.Headers#IF_NONE_MATCH} header.
+   * @param expectNotModified {@code true} if a not modified response is expected.
+   * @throws Exception
+   */
+  private void testGetBlobWithIfNoneMatch(BlobInfo blobInfo, String ifNoneMatch, boolean expectNotModified)
+      throws Exception {
+    SecurityServiceCallback callback = new SecurityServiceCallback();
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    SimpleDateFormat dateFormat = new SimpleDateFormat(RestUtils.HTTP_DATE_FORMAT, Locale.ENGLISH);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    JSONObject headers = new JSONObject().put(RestUtils.Headers.IF_NONE_MATCH, ifNoneMatch)
+        .put(RestUtils.Headers.IF_MODIFIED_SINCE,
+            dateFormat.format(new Date(blobInfo.getBlobProperties().getCreationTimeInMs() + 1000)));
+    RestRequest restRequest = createRestRequest(RestMethod.GET, "/abc", headers);
+    securityService.processResponse(restRequest, restResponseChannel, blobInfo, callback).get();
+    Assert.assertTrue("Callback should have been invoked", callback.callbackLatch.await(1, TimeUnit.SECONDS));
+    Assert.assertNull("Exception should not have been thrown", callback.exception);
+    Assert.assertNotNull("ETag has not been set", restResponseChannel.getHeader(RestUtils.Headers.ETAG));
+    if (expectNotModified) {
+      Assert
+          .assertEquals("Not modified response expected", ResponseStatus.NotModified, restResponseChannel.getStatus());
+      verifyHeadersForGetBlobNotModified(restResponseChannel);
+    } else {
+      Assert.assertEquals("Not modified response should not be returned", ResponseStatus.Ok,
+          restResponseChannel.getStatus());
+      verifyHeadersForGetBlob(blobInfo.getBlobProperties(), restResponseChannel);
+    }
+  }
+
   /**
    * Tests {@link AmbrySecurityService#processResponse(RestRequest, RestResponseChannel, BlobInfo, Callback)} for
    * {@link RestMethod#HEAD}.
@@ -427,7 +529,22 @@ public class AmbrySecurityServiceTest {
   private void testExceptionCasesProcessResponse(RestMethod restMethod, RestResponseChannel restResponseChannel,
       BlobInfo blobInfo, RestServiceErrorCode expectedErrorCode)
       throws Exception {
-    RestRequest restRequest = createRestRequest(restMethod, "/", null);
+    testExceptionCasesProcessResponse(createRestRequest(restMethod, "/", null), restResponseChannel, blobInfo,
+        expectedErrorCode);
+  }
+
+  /**
+   * Tests exception cases for
+   * {@link SecurityService#processResponse(RestRequest, RestResponseChannel, BlobInfo, Callback)}
+   * @param restRequest the {@link RestRequest} to provide as input.
+   * @param restResponseChannel the {@link RestResponseChannel} to write responses over.
+   * @param blobInfo the {@link BlobInfo} to be passed to the security service.
+   * @param expectedErrorCode the {@link RestServiceErrorCode} expected in the exception returned.
+   * @throws Exception
+   */
+  private void testExceptionCasesProcessResponse(RestRequest restRequest, RestResponseChannel restResponseChannel,
+      BlobInfo blobInfo, RestServiceErrorCode expectedErrorCode)
+      throws Exception {
     SecurityServiceCallback callback = new SecurityServiceCallback();
     try {
       securityService.processResponse(restRequest, restResponseChannel, blobInfo, callback).get();
@@ -458,6 +575,7 @@ public class AmbrySecurityServiceTest {
         RestUtils.getTimeFromDateString(restResponseChannel.getHeader(RestUtils.Headers.LAST_MODIFIED)).longValue());
     Assert.assertEquals("Content length mismatch", blobProperties.getBlobSize(),
         Long.parseLong(restResponseChannel.getHeader(RestUtils.Headers.CONTENT_LENGTH)));
+    Assert.assertNotNull("ETag has not been set", restResponseChannel.getHeader(RestUtils.Headers.ETAG));
     if (blobProperties.getContentType() != null) {
       Assert.assertEquals("Content Type mismatch", blobProperties.getContentType(),
           restResponseChannel.getHeader(RestUtils.Headers.CONTENT_TYPE));
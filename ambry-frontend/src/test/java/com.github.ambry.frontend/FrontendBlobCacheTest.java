@@ -0,0 +1,310 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.frontend;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.commons.ByteBufferReadableStreamChannel;
+import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.rest.MockRestResponseChannel;
+import com.github.ambry.rest.RestTestUtils;
+import com.github.ambry.router.AsyncWritableChannel;
+import com.github.ambry.router.Callback;
+import com.github.ambry.router.ReadableStreamChannel;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests functionality of {@link FrontendBlobCache}.
+ */
+public class FrontendBlobCacheTest {
+  private static final int BLOB_SIZE = 1024;
+  private static final long TTL_MS = 60000;
+
+  private final FrontendMetrics frontendMetrics = new FrontendMetrics(new MetricRegistry());
+  private final MockTime time = new MockTime(System.currentTimeMillis());
+
+  /**
+   * Tests that a disabled cache caches nothing.
+   */
+  @Test
+  public void disabledCacheTest() {
+    FrontendBlobCache blobCache = new FrontendBlobCache(0, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    assertFalse("Cache should be disabled", blobCache.isEnabled());
+    assertFalse("Blob should not be cacheable", blobCache.isCacheable(1));
+    assertFalse("Blob should not have been cached", put(blobCache, "blob", BLOB_SIZE, Utils.Infinite_Time));
+    assertNull("Blob should not be found", blobCache.get("blob"));
+    assertEquals("No lookup should have been recorded", 0, frontendMetrics.blobCacheMissCount.getCount());
+  }
+
+  /**
+   * Tests that cached blobs are returned as they were cached and that blobs that are too large are not cached.
+   */
+  @Test
+  public void putGetTest() {
+    FrontendBlobCache blobCache = new FrontendBlobCache(16 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    frontendMetrics.initializeBlobCacheMetrics(blobCache);
+    assertNull("Blob should not be found", blobCache.get("blob"));
+    ByteBuffer content = ByteBuffer.wrap(RestTestUtils.getRandomBytes(BLOB_SIZE));
+    BlobInfo blobInfo = getBlobInfo(BLOB_SIZE, Utils.Infinite_Time);
+    assertTrue("Blob should have been cached", blobCache.put("blob", blobInfo, content.duplicate(), 0));
+    assertFalse("Blob should not be cached twice", blobCache.put("blob", blobInfo, content.duplicate(), 0));
+    FrontendBlobCache.CachedBlob cachedBlob = blobCache.get("blob");
+    assertNotNull("Blob should be found", cachedBlob);
+    assertEquals("Unexpected BlobInfo", blobInfo, cachedBlob.getBlobInfo());
+    assertEquals("Unexpected content", content, cachedBlob.getContent());
+    assertTrue("Content should be read only", cachedBlob.getContent().isReadOnly());
+    // changes to a view do not affect other views.
+    blobCache.get("blob").getContent().position(BLOB_SIZE);
+    assertEquals("Unexpected content", content, blobCache.get("blob").getContent());
+
+    assertFalse("Blob should not be cacheable", blobCache.isCacheable(BLOB_SIZE + 1));
+    assertFalse("Blob should not have been cached", put(blobCache, "large", BLOB_SIZE + 1, Utils.Infinite_Time));
+    assertEquals("Unexpected blob count", 1, blobCache.getBlobCount());
+    assertEquals("Unexpected blob count gauge", 1, frontendMetrics.blobCacheBlobCount.getValue().intValue());
+    assertEquals("Unexpected size gauge", blobCache.getSizeInBytes(),
+        frontendMetrics.blobCacheSizeBytes.getValue().longValue());
+    assertEquals("Unexpected hit count", 3, frontendMetrics.blobCacheHitCount.getCount());
+    assertEquals("Unexpected miss count", 1, frontendMetrics.blobCacheMissCount.getCount());
+    assertEquals("Unexpected hit ratio", 0.75, frontendMetrics.blobCacheHitRatio.getValue(), 0.0);
+  }
+
+  /**
+   * Tests that blobs are not served after the ttl of the cache or after they expire.
+   */
+  @Test
+  public void expiryTest()
+      throws InterruptedException {
+    FrontendBlobCache blobCache = new FrontendBlobCache(16 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    assertTrue("Blob should have been cached", put(blobCache, "blob", BLOB_SIZE, Utils.Infinite_Time));
+    long blobTtlSecs = TTL_MS / 2 / Time.MsPerSec;
+    assertTrue("Blob should have been cached", put(blobCache, "expiringBlob", BLOB_SIZE, blobTtlSecs));
+    // blobs are created at the current system time, which can be slightly ahead of the mock time.
+    time.sleep((blobTtlSecs + 1) * Time.MsPerSec);
+    assertNull("Expired blob should not be found", blobCache.get("expiringBlob"));
+    assertNotNull("Blob should be found", blobCache.get("blob"));
+    time.sleep(TTL_MS);
+    assertNull("Blob should not be served after the ttl", blobCache.get("blob"));
+    assertEquals("Unexpected blob count", 0, blobCache.getBlobCount());
+    assertEquals("Unexpected size", 0, blobCache.getSizeInBytes());
+  }
+
+  /**
+   * Tests that a blob that is accessed once does not evict blobs that are accessed more frequently and that blobs are
+   * evicted in least recently used order when a more popular blob is admitted.
+   */
+  @Test
+  public void admissionAndEvictionTest()
+      throws InterruptedException {
+    FrontendBlobCache blobCache = new FrontendBlobCache(4 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    String[] blobIds = {"blob0", "blob1", "blob2"};
+    for (String blobId : blobIds) {
+      blobCache.get(blobId);
+      assertTrue("Blob should have been cached", put(blobCache, blobId, BLOB_SIZE, Utils.Infinite_Time));
+    }
+    assertEquals("Unexpected blob count", 3, blobCache.getBlobCount());
+    // make blob0 the most recently used, so blob1 is the least recently used.
+    assertNotNull("Blob should be found", blobCache.get("blob0"));
+
+    // a blob seen once cannot displace blobs that have been seen as often.
+    blobCache.get("oneHit");
+    assertFalse("Blob should not have been admitted", put(blobCache, "oneHit", BLOB_SIZE, Utils.Infinite_Time));
+    assertEquals("Unexpected admission reject count", 1, frontendMetrics.blobCacheAdmissionRejectCount.getCount());
+    assertEquals("Unexpected blob count", 3, blobCache.getBlobCount());
+
+    // a blob seen more often evicts the least recently used blob.
+    for (int i = 0; i < 3; i++) {
+      blobCache.get("popular");
+    }
+    assertTrue("Blob should have been admitted", put(blobCache, "popular", BLOB_SIZE, Utils.Infinite_Time));
+    assertEquals("Unexpected eviction count", 1, frontendMetrics.blobCacheEvictionCount.getCount());
+    assertNull("Least recently used blob should have been evicted", blobCache.get("blob1"));
+    assertNotNull("Blob should be found", blobCache.get("blob0"));
+    assertNotNull("Blob should be found", blobCache.get("blob2"));
+    assertNotNull("Blob should be found", blobCache.get("popular"));
+    assertTrue("Cache should be within capacity", blobCache.getSizeInBytes() <= 4 * BLOB_SIZE);
+
+    // expired blobs are evicted regardless of how popular they were.
+    time.sleep(TTL_MS);
+    assertTrue("Blob should have been admitted", put(blobCache, "oneHit", BLOB_SIZE, Utils.Infinite_Time));
+  }
+
+  /**
+   * Tests that invalidation removes a blob, that the blob is not cached by requests that looked it up before the
+   * invalidation and that other blobs still are.
+   */
+  @Test
+  public void invalidationTest() {
+    FrontendBlobCache blobCache = new FrontendBlobCache(16 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    assertTrue("Blob should have been cached", put(blobCache, "blob", BLOB_SIZE, Utils.Infinite_Time));
+    long generation = blobCache.getGeneration();
+    blobCache.invalidate("blob");
+    assertNull("Blob should not be found", blobCache.get("blob"));
+    assertEquals("Unexpected invalidation count", 1, frontendMetrics.blobCacheInvalidationCount.getCount());
+    assertEquals("Unexpected size", 0, blobCache.getSizeInBytes());
+    ByteBuffer content = ByteBuffer.wrap(RestTestUtils.getRandomBytes(BLOB_SIZE));
+    BlobInfo blobInfo = getBlobInfo(BLOB_SIZE, Utils.Infinite_Time);
+    assertFalse("Blob fetched before the invalidation should not have been cached",
+        blobCache.put("blob", blobInfo, content, generation));
+    assertTrue("Other blob should have been cached", blobCache.put("otherBlob", blobInfo, content, generation));
+    assertTrue("Blob should have been cached",
+        blobCache.put("blob", blobInfo, content, blobCache.getGeneration()));
+
+    // once the invalidation is forgotten, nothing fetched before it is cached.
+    generation = blobCache.getGeneration();
+    for (int i = 0; i < FrontendBlobCache.MAX_INVALIDATED_BLOBS + 1; i++) {
+      blobCache.invalidate("invalidatedBlob" + i);
+    }
+    assertFalse("Blob fetched before a forgotten invalidation should not have been cached",
+        blobCache.put("newBlob", blobInfo, content, generation));
+    assertTrue("Blob should have been cached", blobCache.put("newBlob", blobInfo, content, blobCache.getGeneration()));
+  }
+
+  /**
+   * Tests that blobs are cached once they have been completely read through the channel returned by
+   * {@link FrontendBlobCache#cacheOnRead(String, BlobInfo, ReadableStreamChannel, long)}.
+   * @throws Exception
+   */
+  @Test
+  public void cacheOnReadTest()
+      throws Exception {
+    FrontendBlobCache blobCache = new FrontendBlobCache(16 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    ByteBuffer content = ByteBuffer.wrap(RestTestUtils.getRandomBytes(BLOB_SIZE));
+    BlobInfo blobInfo = getBlobInfo(BLOB_SIZE, Utils.Infinite_Time);
+    ReadableStreamChannel channel = new ByteBufferReadableStreamChannel(content.duplicate());
+    ReadableStreamChannel cachingChannel = blobCache.cacheOnRead("blob", blobInfo, channel, blobCache.getGeneration());
+    assertEquals("Unexpected size", BLOB_SIZE, cachingChannel.getSize());
+    assertNull("Blob should not be cached before it is read", blobCache.get("blob"));
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    assertEquals("Unexpected bytes read", BLOB_SIZE,
+        cachingChannel.readInto(restResponseChannel, null).get().longValue());
+    assertArrayEquals("Unexpected content read", content.array(), restResponseChannel.getResponseBody());
+    FrontendBlobCache.CachedBlob cachedBlob = blobCache.get("blob");
+    assertNotNull("Blob should have been cached", cachedBlob);
+    assertEquals("Unexpected content cached", content, cachedBlob.getContent());
+
+    // channels that do not know their size up front are cached once all of the blob is read.
+    blobInfo = getBlobInfo(BLOB_SIZE, Utils.Infinite_Time);
+    cachingChannel = blobCache.cacheOnRead("unknownSize", blobInfo,
+        new UnknownSizeReadableStreamChannel(new ByteBufferReadableStreamChannel(content.duplicate())),
+        blobCache.getGeneration());
+    cachingChannel.readInto(new MockRestResponseChannel(), null).get();
+    assertNotNull("Blob should have been cached", blobCache.get("unknownSize"));
+    // a read that does not return the whole blob does not cache it.
+    blobInfo = getBlobInfo(2 * BLOB_SIZE, Utils.Infinite_Time);
+    cachingChannel = blobCache.cacheOnRead("partial", blobInfo,
+        new UnknownSizeReadableStreamChannel(new ByteBufferReadableStreamChannel(content.duplicate())),
+        blobCache.getGeneration());
+    cachingChannel.readInto(new MockRestResponseChannel(), null).get();
+    assertNull("Blob should not have been cached", blobCache.get("partial"));
+
+    // blobs that would not be admitted are read without being copied.
+    FrontendBlobCache fullBlobCache = new FrontendBlobCache(2 * BLOB_SIZE, BLOB_SIZE, TTL_MS, frontendMetrics, time);
+    fullBlobCache.get("popular");
+    assertTrue("Blob should have been cached", put(fullBlobCache, "popular", BLOB_SIZE, Utils.Infinite_Time));
+    long rejectCount = frontendMetrics.blobCacheAdmissionRejectCount.getCount();
+    cachingChannel = fullBlobCache.cacheOnRead("oneHit", getBlobInfo(BLOB_SIZE, Utils.Infinite_Time),
+        new ByteBufferReadableStreamChannel(content.duplicate()), fullBlobCache.getGeneration());
+    restResponseChannel = new MockRestResponseChannel();
+    cachingChannel.readInto(restResponseChannel, null).get();
+    assertArrayEquals("Unexpected content read", content.array(), restResponseChannel.getResponseBody());
+    assertEquals("Admission should have been checked only when the read started", rejectCount + 1,
+        frontendMetrics.blobCacheAdmissionRejectCount.getCount());
+    assertNull("Blob should not have been cached", fullBlobCache.get("oneHit"));
+
+    // blobs that are too large are not wrapped.
+    BlobInfo largeBlobInfo = getBlobInfo(BLOB_SIZE + 1, Utils.Infinite_Time);
+    channel = new ByteBufferReadableStreamChannel(ByteBuffer.allocate(BLOB_SIZE + 1));
+    assertSame("Channel should not have been wrapped", channel,
+        blobCache.cacheOnRead("large", largeBlobInfo, channel, blobCache.getGeneration()));
+  }
+
+  /**
+   * A {@link ReadableStreamChannel} that does not know its size up front, like the ones returned by the router.
+   */
+  private static class UnknownSizeReadableStreamChannel implements ReadableStreamChannel {
+    private final ReadableStreamChannel channel;
+
+    /**
+     * @param channel the {@link ReadableStreamChannel} to read from.
+     */
+    UnknownSizeReadableStreamChannel(ReadableStreamChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public long getSize() {
+      return -1;
+    }
+
+    @Override
+    public Future<Long> readInto(AsyncWritableChannel asyncWritableChannel, Callback<Long> callback) {
+      return channel.readInto(asyncWritableChannel, callback);
+    }
+
+    @Override
+    public void setDigestAlgorithm(String digestAlgorithm)
+        throws NoSuchAlgorithmException {
+      channel.setDigestAlgorithm(digestAlgorithm);
+    }
+
+    @Override
+    public byte[] getDigest() {
+      return channel.getDigest();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * Offers a blob with random content to the cache.
+   * @param blobCache the {@link FrontendBlobCache} to offer the blob to.
+   * @param blobId the id of the blob.
+   * @param blobSize the size of the blob.
+   * @param ttlSecs the time to live of the blob.
+   * @return {@code true} if the blob was cached.
+   */
+  private boolean put(FrontendBlobCache blobCache, String blobId, int blobSize, long ttlSecs) {
+    return blobCache.put(blobId, getBlobInfo(blobSize, ttlSecs),
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(blobSize)), blobCache.getGeneration());
+  }
+
+  /**
+   * @param blobSize the size of the blob.
+   * @param ttlSecs the time to live of the blob.
+   * @return a {@link BlobInfo} for a blob created now.
+   */
+  private BlobInfo getBlobInfo(long blobSize, long ttlSecs) {
+    return new BlobInfo(new BlobProperties(blobSize, "serviceId", "ownerId", "image/gif", false, ttlSecs),
+        new byte[0]);
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.messageformat;
+
+import com.github.ambry.store.StoreKey;
+import java.util.List;
+
+
+/**
+ * The deserialized content of a metadata blob: the keys of the data chunks that form a composite blob and, for
+ * metadata content written with {@link MessageFormatRecord#Metadata_Content_Version_V2} or later, the chunk size
+ * and the total size of the composite blob.
+ */
+public class CompositeBlobInfo {
+  /**
+   * Value returned by {@link #getChunkSize()} and {@link #getTotalSize()} when the metadata content did not record
+   * the sizes.
+   */
+  public static final int UNKNOWN_SIZE = -1;
+
+  private final int chunkSize;
+  private final long totalSize;
+  private final List<StoreKey> keys;
+
+  /**
+   * Construct a CompositeBlobInfo.
+   * @param chunkSize the size of every data chunk except possibly the last, or {@link #UNKNOWN_SIZE}.
+   * @param totalSize the total size of the composite blob, or {@link #UNKNOWN_SIZE}.
+   * @param keys the keys of the data chunks, in order.
+   */
+  public CompositeBlobInfo(int chunkSize, long totalSize, List<StoreKey> keys) {
+    this.chunkSize = chunkSize;
+    this.totalSize = totalSize;
+    this.keys = keys;
+  }
+
+  /**
+   * @return the size of every data chunk except possibly the last, or {@link #UNKNOWN_SIZE}.
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * @return the total size of the composite blob, or {@link #UNKNOWN_SIZE}.
+   */
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * @return whether the chunk size and the total size of the composite blob are known.
+   */
+  public boolean hasSizes() {
+    return chunkSize != UNKNOWN_SIZE && totalSize != UNKNOWN_SIZE;
+  }
+
+  /**
+   * @return the keys of the data chunks, in order.
+   */
+  public List<StoreKey> getKeys() {
+    return keys;
+  }
+}
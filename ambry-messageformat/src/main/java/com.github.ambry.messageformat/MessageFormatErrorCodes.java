@@ -21,5 +21,6 @@ public enum MessageFormatErrorCodes {
   Header_Constraint_Error,
   Unknown_Format_Version,
   Store_Key_Id_MisMatch,
-  IO_Error
+  IO_Error,
+  Range_Not_Satisfiable
 }
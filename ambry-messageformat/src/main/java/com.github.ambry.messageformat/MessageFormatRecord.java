@@ -46,6 +46,7 @@ public class MessageFormatRecord {
   public static final short Blob_Version_V1 = 1;
   public static final short Blob_Version_V2 = 2;
   public static final short Metadata_Content_Version_V1 = 1;
+  public static final short Metadata_Content_Version_V2 = 2;
   public static final int Message_Header_Invalid_Relative_Offset = -1;
 
   static boolean isValidHeaderVersion(short headerVersion) {
@@ -660,6 +661,81 @@ public class MessageFormatRecord {
       return keys;
     }
   }
+
+  /**
+   *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+   * |         |             |             |               |            |            |          |
+   * | version |  chunk size |  total size |   no of keys  |    key1    |     key2   |  ......  |
+   * |(2 bytes)|  (4 bytes)  |  (8 bytes)  |    (4 bytes)  |            |            |  ......  |
+   * |         |             |             |               |            |            |          |
+   *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+   *  version         - The version of the metadata content record
+   *
+   *  chunk size      - The size of every data chunk except possibly the last one
+   *
+   *  total size      - The total size of the composite blob
+   *
+   *  no of keys      - total number of keys
+   *
+   *  key1            - first key to be part of metadata blob
+   *
+   *  key2            - second key to be part of metadata blob
+   *
+   */
+  public static class Metadata_Content_Format_V2 {
+    public static final int Chunk_Size_Field_Size_In_Bytes = 4;
+    public static final int Total_Size_Field_Size_In_Bytes = 8;
+    public static final int Key_Count_Field_Size_In_Bytes = 4;
+
+    public static int getMetadataContentSize(int keySize, int numberOfKeys) {
+      return Version_Field_Size_In_Bytes +
+          Chunk_Size_Field_Size_In_Bytes +
+          Total_Size_Field_Size_In_Bytes +
+          Key_Count_Field_Size_In_Bytes +
+          (numberOfKeys * keySize);
+    }
+
+    public static void serializeMetadataContentRecord(ByteBuffer outputBuffer, int chunkSize, long totalSize,
+        List<StoreKey> keys) {
+      int keySize = keys.get(0).sizeInBytes();
+      if (chunkSize <= 0 || totalSize > (long) chunkSize * keys.size()
+          || totalSize <= (long) chunkSize * (keys.size() - 1)) {
+        throw new IllegalArgumentException(
+            "Chunk size " + chunkSize + " and total size " + totalSize + " do not match the number of keys "
+                + keys.size());
+      }
+      outputBuffer.putShort(Metadata_Content_Version_V2);
+      outputBuffer.putInt(chunkSize);
+      outputBuffer.putLong(totalSize);
+      outputBuffer.putInt(keys.size());
+      for (StoreKey storeKey : keys) {
+        if (storeKey.sizeInBytes() != keySize) {
+          throw new IllegalArgumentException("Keys are not of same size");
+        }
+        outputBuffer.put(storeKey.toBytes());
+      }
+    }
+
+    public static CompositeBlobInfo deserializeMetadataContentRecord(DataInputStream stream,
+        StoreKeyFactory storeKeyFactory)
+        throws IOException, MessageFormatException {
+      int chunkSize = stream.readInt();
+      long totalSize = stream.readLong();
+      List<StoreKey> keys = new ArrayList<StoreKey>();
+      int numberOfKeys = stream.readInt();
+      for (int i = 0; i < numberOfKeys; i++) {
+        StoreKey storeKey = storeKeyFactory.getStoreKey(stream);
+        keys.add(storeKey);
+      }
+      if (chunkSize <= 0 || totalSize > (long) chunkSize * numberOfKeys
+          || totalSize <= (long) chunkSize * (numberOfKeys - 1)) {
+        throw new MessageFormatException(
+            "Chunk size " + chunkSize + " and total size " + totalSize + " do not match the number of keys "
+                + numberOfKeys, MessageFormatErrorCodes.Data_Corrupt);
+      }
+      return new CompositeBlobInfo(chunkSize, totalSize, keys);
+    }
+  }
 }
 
 class DeserializedBlobProperties {
@@ -14,10 +14,13 @@
 package com.github.ambry.messageformat;
 
 import com.github.ambry.network.Send;
+import com.github.ambry.router.ByteRange;
+import com.github.ambry.router.RouterException;
 import com.github.ambry.store.MessageReadSet;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.utils.ByteBufferOutputStream;
+import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.SystemTime;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -36,9 +39,12 @@ import org.slf4j.LoggerFactory;
  */
 
 public class MessageFormatSend implements Send {
+  // the size of the buffer through which the blob record is read to verify its crc before a slice of it is sent.
+  private static final int CRC_CHECK_BUFFER_SIZE = 64 * 1024;
 
   private MessageReadSet readSet;
   private MessageFormatFlags flag;
+  private ByteRange range;
   private ArrayList<SendInfo> infoList;
   private long totalSizeToWrite;
   private long sizeWritten;
@@ -50,12 +56,27 @@ public class MessageFormatSend implements Send {
   private class SendInfo {
     private long relativeOffset;
     private long sizeToSend;
+    private ByteBuffer prefix;
+    private ByteBuffer suffix;
 
     public SendInfo(long relativeOffset, long sizeToSend) {
       this.relativeOffset = relativeOffset;
       this.sizeToSend = sizeToSend;
     }
 
+    /**
+     * A send info whose bytes read from the {@link MessageReadSet} are framed by bytes held in memory.
+     * @param prefix the bytes to send before the bytes from the {@link MessageReadSet}.
+     * @param relativeOffset the offset of the bytes to send from the {@link MessageReadSet}.
+     * @param size the number of bytes to send from the {@link MessageReadSet}.
+     * @param suffix the bytes to send after the bytes from the {@link MessageReadSet}.
+     */
+    public SendInfo(ByteBuffer prefix, long relativeOffset, long size, ByteBuffer suffix) {
+      this(relativeOffset, prefix.remaining() + size + suffix.remaining());
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
     public long relativeOffset() {
       return relativeOffset;
     }
@@ -63,13 +84,52 @@ public class MessageFormatSend implements Send {
     public long sizetoSend() {
       return sizeToSend;
     }
+
+    public ByteBuffer prefix() {
+      return prefix;
+    }
+
+    public ByteBuffer suffix() {
+      return suffix;
+    }
+
+    public int prefixSize() {
+      return prefix == null ? 0 : prefix.capacity();
+    }
+
+    public int suffixSize() {
+      return suffix == null ? 0 : suffix.capacity();
+    }
   }
 
   public MessageFormatSend(MessageReadSet readSet, MessageFormatFlags flag, MessageFormatMetrics metrics,
       StoreKeyFactory storeKeyFactory)
       throws IOException, MessageFormatException {
+    this(readSet, flag, null, metrics, storeKeyFactory);
+  }
+
+  /**
+   * Construct a send that transfers only the given {@link ByteRange} of the content of every data blob in the read
+   * set. The range only applies to {@link MessageFormatFlags#Blob}. The crc stored with the blob record is verified
+   * and the slice is then sent as a complete blob record of its own with a crc computed over the slice, so that the
+   * receiving end deserializes it like any other blob record.
+   * Metadata blobs are always sent whole since their content has to be read in full to be of any use.
+   * @param readSet the {@link MessageReadSet} to send messages from.
+   * @param flag the {@link MessageFormatFlags} indicating the part of the messages to send.
+   * @param range the {@link ByteRange} of the blob content to send. If {@code null}, the whole content is sent.
+   * @param metrics the {@link MessageFormatMetrics} to use.
+   * @param storeKeyFactory the {@link StoreKeyFactory} to deserialize keys with.
+   * @throws IOException
+   * @throws MessageFormatException if a record is malformed, if the crc of a blob record that is sliced does not match
+   *                                or if the range cannot be satisfied by a data blob, in which case the error code is
+   *                                {@link MessageFormatErrorCodes#Range_Not_Satisfiable}.
+   */
+  public MessageFormatSend(MessageReadSet readSet, MessageFormatFlags flag, ByteRange range,
+      MessageFormatMetrics metrics, StoreKeyFactory storeKeyFactory)
+      throws IOException, MessageFormatException {
     this.readSet = readSet;
     this.flag = flag;
+    this.range = flag == MessageFormatFlags.Blob ? range : null;
     this.storeKeyFactory = storeKeyFactory;
     totalSizeToWrite = 0;
     long startTime = SystemTime.getInstance().milliseconds();
@@ -177,8 +237,15 @@ public class MessageFormatSend implements Send {
                 long blobRecordSize =
                     headerFormat.getMessageSize() - (headerFormat.getBlobRecordRelativeOffset() - headerFormat
                         .getBlobPropertiesRecordRelativeOffset());
-                infoList.add(i, new SendInfo(headerFormat.getBlobRecordRelativeOffset(), blobRecordSize));
-                totalSizeToWrite += blobRecordSize;
+                SendInfo sendInfo = null;
+                if (range != null) {
+                  sendInfo = getBlobSliceSendInfo(i, headerFormat.getBlobRecordRelativeOffset());
+                }
+                if (sendInfo == null) {
+                  sendInfo = new SendInfo(headerFormat.getBlobRecordRelativeOffset(), blobRecordSize);
+                }
+                infoList.add(i, sendInfo);
+                totalSizeToWrite += sendInfo.sizetoSend();
                 logger.trace("Calculate offsets, get total size of blob time: {}",
                     SystemTime.getInstance().milliseconds() - startTime);
                 logger.trace("Sending data for message relativeOffset : {} size : {}", infoList.get(i).relativeOffset(),
@@ -207,17 +274,117 @@ public class MessageFormatSend implements Send {
     }
   }
 
+  /**
+   * Builds a blob record holding only the {@link #range} of the content of the blob record at the given offset of the
+   * message at the given index. The whole blob record is read once to verify its crc and to compute the crc of the
+   * slice, but only the fields that frame the slice are held in memory. The slice itself is sent from the
+   * {@link #readSet}.
+   * @param index the index of the message in the {@link #readSet}.
+   * @param blobRecordRelativeOffset the offset of the blob record relative to the start of the message.
+   * @return the {@link SendInfo} for the sliced blob record, or {@code null} if the blob record is a metadata blob
+   *         that has to be sent whole.
+   * @throws IOException
+   * @throws MessageFormatException if the record version is unknown, the crc of the record does not match or the
+   *                                range cannot be satisfied.
+   */
+  private SendInfo getBlobSliceSendInfo(int index, long blobRecordRelativeOffset)
+      throws IOException, MessageFormatException {
+    DataInputStream stream =
+        new DataInputStream(new MessageReadSetIndexInputStream(readSet, index, (int) blobRecordRelativeOffset));
+    short blobRecordVersion = stream.readShort();
+    long contentRelativeOffset;
+    switch (blobRecordVersion) {
+      case MessageFormatRecord.Blob_Version_V1:
+        contentRelativeOffset = MessageFormatRecord.Version_Field_Size_In_Bytes
+            + MessageFormatRecord.Blob_Format_V1.Blob_Size_Field_In_Bytes;
+        break;
+      case MessageFormatRecord.Blob_Version_V2:
+        short blobTypeOrdinal = stream.readShort();
+        if (blobTypeOrdinal == BlobType.MetadataBlob.ordinal()) {
+          return null;
+        }
+        contentRelativeOffset = MessageFormatRecord.Version_Field_Size_In_Bytes
+            + MessageFormatRecord.Blob_Format_V2.Blob_Type_Field_In_Bytes
+            + MessageFormatRecord.Blob_Format_V2.Blob_Size_Field_In_Bytes;
+        break;
+      default:
+        throw new MessageFormatException("Unknown blob record version " + blobRecordVersion + " for StoreKey "
+            + readSet.getKeyAt(index), MessageFormatErrorCodes.Unknown_Format_Version);
+    }
+    long contentSize = stream.readLong();
+    ByteRange resolvedRange;
+    try {
+      resolvedRange = range.toResolvedByteRange(contentSize);
+    } catch (RouterException e) {
+      throw new MessageFormatException("Range " + range + " cannot be satisfied by StoreKey " + readSet
+          .getKeyAt(index) + " of size " + contentSize, e, MessageFormatErrorCodes.Range_Not_Satisfiable);
+    }
+    long sliceSize = resolvedRange.getRangeSize();
+    long sliceRelativeOffset = blobRecordRelativeOffset + contentRelativeOffset + resolvedRange.getStartOffset();
+    long crcRelativeOffset = blobRecordRelativeOffset + contentRelativeOffset + contentSize;
+    ByteBuffer sliceHeader = ByteBuffer.allocate(
+        (int) (MessageFormatRecord.Blob_Format_V2.getBlobRecordSize(sliceSize) - sliceSize
+            - MessageFormatRecord.Crc_Size));
+    MessageFormatRecord.Blob_Format_V2.serializePartialBlobRecord(sliceHeader, sliceSize, BlobType.DataBlob);
+    Crc32 sliceCrc = new Crc32();
+    sliceCrc.update(sliceHeader.array(), 0, sliceHeader.position());
+    sliceHeader.flip();
+
+    // read the whole record to verify its crc, and pick the crc of the slice up on the way.
+    Crc32 recordCrc = new Crc32();
+    ByteBuffer buffer =
+        ByteBuffer.allocate((int) Math.min(CRC_CHECK_BUFFER_SIZE, crcRelativeOffset - blobRecordRelativeOffset));
+    WritableByteChannel bufferChannel = Channels.newChannel(new ByteBufferOutputStream(buffer));
+    long offset = blobRecordRelativeOffset;
+    while (offset < crcRelativeOffset) {
+      buffer.clear();
+      long read =
+          readSet.writeTo(index, bufferChannel, offset, Math.min(buffer.capacity(), crcRelativeOffset - offset));
+      if (read <= 0) {
+        throw new IOException("Reached end of message " + readSet.getKeyAt(index) + " while reading its blob record");
+      }
+      recordCrc.update(buffer.array(), 0, (int) read);
+      long sliceStart = Math.max(offset, sliceRelativeOffset);
+      long sliceEnd = Math.min(offset + read, sliceRelativeOffset + sliceSize);
+      if (sliceStart < sliceEnd) {
+        sliceCrc.update(buffer.array(), (int) (sliceStart - offset), (int) (sliceEnd - sliceStart));
+      }
+      offset += read;
+    }
+    long storedCrc =
+        new DataInputStream(new MessageReadSetIndexInputStream(readSet, index, (int) crcRelativeOffset)).readLong();
+    if (recordCrc.getValue() != storedCrc) {
+      logger.error("Corrupt blob record for StoreKey {} expected crc {} actual crc {}", readSet.getKeyAt(index),
+          storedCrc, recordCrc.getValue());
+      throw new MessageFormatException("Corrupt blob record for StoreKey " + readSet.getKeyAt(index),
+          MessageFormatErrorCodes.Data_Corrupt);
+    }
+    ByteBuffer sliceTrailer = ByteBuffer.allocate(MessageFormatRecord.Crc_Size);
+    sliceTrailer.putLong(sliceCrc.getValue());
+    sliceTrailer.flip();
+    logger.trace("Sending range {} of data for message at index {} of size {}", resolvedRange, index, contentSize);
+    return new SendInfo(sliceHeader, sliceRelativeOffset, sliceSize, sliceTrailer);
+  }
+
   @Override
   public long writeTo(WritableByteChannel channel)
       throws IOException {
     long written = 0;
     if (!isSendComplete()) {
-      written = readSet.writeTo(currentWriteIndex, channel,
-          infoList.get(currentWriteIndex).relativeOffset() + sizeWrittenFromCurrentIndex,
-          infoList.get(currentWriteIndex).sizetoSend() - sizeWrittenFromCurrentIndex);
+      SendInfo sendInfo = infoList.get(currentWriteIndex);
+      long suffixStart = sendInfo.sizetoSend() - sendInfo.suffixSize();
+      if (sizeWrittenFromCurrentIndex < sendInfo.prefixSize()) {
+        written = channel.write(sendInfo.prefix());
+      } else if (sizeWrittenFromCurrentIndex < suffixStart) {
+        written = readSet.writeTo(currentWriteIndex, channel,
+            sendInfo.relativeOffset() + sizeWrittenFromCurrentIndex - sendInfo.prefixSize(),
+            suffixStart - sizeWrittenFromCurrentIndex);
+      } else {
+        written = channel.write(sendInfo.suffix());
+      }
       logger.trace("writeindex {} relativeOffset {} maxSize {} written {}", currentWriteIndex,
-          infoList.get(currentWriteIndex).relativeOffset() + sizeWrittenFromCurrentIndex,
-          infoList.get(currentWriteIndex).sizetoSend() - sizeWrittenFromCurrentIndex, written);
+          sendInfo.relativeOffset() + sizeWrittenFromCurrentIndex, sendInfo.sizetoSend() - sizeWrittenFromCurrentIndex,
+          written);
       sizeWritten += written;
       sizeWrittenFromCurrentIndex += written;
       logger.trace("size written in this loop : {} size written till now : {}", written, sizeWritten);
@@ -39,6 +39,23 @@ public class MetadataContentSerDe {
     return outputBuf;
   }
 
+  /**
+   * Serialize the input list of keys along with the chunk size and the total size of the composite blob they form.
+   * Recording the sizes lets readers map a byte range of the composite blob to the data chunks that hold it.
+   * @param chunkSize the size of every data chunk except possibly the last.
+   * @param totalSize the total size of the composite blob.
+   * @param keys the input list of keys that form the metadata content.
+   * @return a ByteBuffer containing the serialized output.
+   */
+  public static ByteBuffer serializeMetadataContent(int chunkSize, long totalSize, List<StoreKey> keys) {
+    int bufSize =
+        MessageFormatRecord.Metadata_Content_Format_V2.getMetadataContentSize(keys.get(0).sizeInBytes(), keys.size());
+    ByteBuffer outputBuf = ByteBuffer.allocate(bufSize);
+    MessageFormatRecord.Metadata_Content_Format_V2.serializeMetadataContentRecord(outputBuf, chunkSize, totalSize,
+        keys);
+    return outputBuf;
+  }
+
   /**
    * Deserialize the serialized metadata content in the input ByteBuffer using the given {@link StoreKeyFactory} as a
    * reference.
@@ -50,10 +67,29 @@ public class MetadataContentSerDe {
    */
   public static List<StoreKey> deserializeMetadataContentRecord(ByteBuffer buf, StoreKeyFactory storeKeyFactory)
       throws IOException, MessageFormatException {
+    return deserializeCompositeBlobInfo(buf, storeKeyFactory).getKeys();
+  }
+
+  /**
+   * Deserialize the serialized metadata content in the input ByteBuffer into a {@link CompositeBlobInfo} using the
+   * given {@link StoreKeyFactory} as a reference. The chunk size and total size are
+   * {@link CompositeBlobInfo#UNKNOWN_SIZE} if the content was serialized in a version that does not record them.
+   * @param buf ByteBuffer containing the serialized metadata content.
+   * @param storeKeyFactory the {@link StoreKeyFactory} to use to deserialize the content.
+   * @return the {@link CompositeBlobInfo} containing the deserialized output.
+   * @throws IOException if an IOException is encountered during deserialization.
+   * @throws MessageFormatException if an unknown version is encountered in the header of the serialized input.
+   */
+  public static CompositeBlobInfo deserializeCompositeBlobInfo(ByteBuffer buf, StoreKeyFactory storeKeyFactory)
+      throws IOException, MessageFormatException {
     int version = buf.getShort();
     switch (version) {
-      case MessageFormatRecord.Message_Header_Version_V1:
-        return MessageFormatRecord.Metadata_Content_Format_V1
+      case MessageFormatRecord.Metadata_Content_Version_V1:
+        List<StoreKey> keys = MessageFormatRecord.Metadata_Content_Format_V1
+            .deserializeMetadataContentRecord(new DataInputStream(new ByteBufferInputStream(buf)), storeKeyFactory);
+        return new CompositeBlobInfo(CompositeBlobInfo.UNKNOWN_SIZE, CompositeBlobInfo.UNKNOWN_SIZE, keys);
+      case MessageFormatRecord.Metadata_Content_Version_V2:
+        return MessageFormatRecord.Metadata_Content_Format_V2
             .deserializeMetadataContentRecord(new DataInputStream(new ByteBufferInputStream(buf)), storeKeyFactory);
       default:
         throw new MessageFormatException("Unknown version encountered for MetadataContent: " + version,
@@ -157,6 +157,51 @@ public class MessageFormatRecordTest {
     // no testing of corruption as we metadata content record doesn't have crc
   }
 
+  @Test
+  public void testMetadataContentRecordV2()
+      throws IOException, MessageFormatException {
+    List<StoreKey> keys = getKeys(60, 5);
+    int chunkSize = 1000;
+    long totalSize = chunkSize * 4 + 1;
+    ByteBuffer metadataContent = MetadataContentSerDe.serializeMetadataContent(chunkSize, totalSize, keys);
+    metadataContent.flip();
+    Assert.assertEquals("Unexpected size of metadata content",
+        MessageFormatRecord.Metadata_Content_Format_V2.getMetadataContentSize(keys.get(0).sizeInBytes(), keys.size()),
+        metadataContent.remaining());
+    CompositeBlobInfo compositeBlobInfo =
+        MetadataContentSerDe.deserializeCompositeBlobInfo(metadataContent.duplicate(), new MockIdFactory());
+    Assert.assertEquals("List of keys dont match", keys, compositeBlobInfo.getKeys());
+    Assert.assertEquals("Chunk size does not match", chunkSize, compositeBlobInfo.getChunkSize());
+    Assert.assertEquals("Total size does not match", totalSize, compositeBlobInfo.getTotalSize());
+    Assert.assertEquals("List of keys dont match", keys,
+        MetadataContentSerDe.deserializeMetadataContentRecord(metadataContent.duplicate(), new MockIdFactory()));
+
+    // V1 content is deserialized without sizes.
+    compositeBlobInfo =
+        MetadataContentSerDe.deserializeCompositeBlobInfo(getSerializedMetadataContent(keys), new MockIdFactory());
+    Assert.assertEquals("List of keys dont match", keys, compositeBlobInfo.getKeys());
+    Assert.assertFalse("Sizes should not be known", compositeBlobInfo.hasSizes());
+
+    // sizes that do not match the number of keys.
+    for (long badTotalSize : new long[]{chunkSize * 4, chunkSize * 5 + 1}) {
+      try {
+        MetadataContentSerDe.serializeMetadataContent(chunkSize, badTotalSize, keys);
+        Assert.fail("Serialization should have failed for total size " + badTotalSize);
+      } catch (IllegalArgumentException e) {
+        // expected. Nothing to do.
+      }
+    }
+    // corrupt the total size.
+    metadataContent.putLong(MessageFormatRecord.Version_Field_Size_In_Bytes
+        + MessageFormatRecord.Metadata_Content_Format_V2.Chunk_Size_Field_Size_In_Bytes, chunkSize * 10);
+    try {
+      MetadataContentSerDe.deserializeCompositeBlobInfo(metadataContent, new MockIdFactory());
+      Assert.fail("Deserialization should have failed for a corrupt total size");
+    } catch (MessageFormatException e) {
+      Assert.assertEquals("Error code mismatch", MessageFormatErrorCodes.Data_Corrupt, e.getErrorCode());
+    }
+  }
+
   private ByteBuffer getSerializedMetadataContent(List<StoreKey> keys) {
     int size =
         MessageFormatRecord.Metadata_Content_Format_V1.getMetadataContentSize(keys.get(0).sizeInBytes(), keys.size());
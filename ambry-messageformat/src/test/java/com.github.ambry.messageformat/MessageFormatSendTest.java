@@ -14,18 +14,22 @@
 package com.github.ambry.messageformat;
 
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.store.MessageReadSet;
 import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.ByteBufferOutputStream;
 import com.github.ambry.utils.Crc32;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 
@@ -294,6 +298,148 @@ public class MessageFormatSendTest {
     }
   }
 
+  @Test
+  public void sendWriteTestWithRange()
+      throws IOException, MessageFormatException {
+    byte[] data = new byte[805];
+    new Random().nextBytes(data);
+    MessageReadSet readSet = getMessageReadSetWithBlobRecordV2(BlobType.DataBlob, data);
+    MetricRegistry registry = new MetricRegistry();
+    MessageFormatMetrics metrics = new MessageFormatMetrics(registry);
+
+    ByteRange[] ranges = {ByteRange.fromOffsetRange(100, 199), ByteRange.fromOffsetRange(800, 1000),
+        ByteRange.fromStartOffset(0), ByteRange.fromLastNBytes(10), ByteRange.fromLastNBytes(2000)};
+    long[][] expectedOffsets = {{100, 199}, {800, 804}, {0, 804}, {795, 804}, {0, 804}};
+    for (int i = 0; i < ranges.length; i++) {
+      MessageFormatSend send =
+          new MessageFormatSend(readSet, MessageFormatFlags.Blob, ranges[i], metrics, new MockIdFactory());
+      long expectedSize = expectedOffsets[i][1] - expectedOffsets[i][0] + 1;
+      Assert.assertEquals("Unexpected send size for range " + ranges[i],
+          MessageFormatRecord.Blob_Format_V2.getBlobRecordSize(expectedSize), send.sizeInBytes());
+      ByteBuffer bufresult = ByteBuffer.allocate((int) send.sizeInBytes());
+      WritableByteChannel channel = Channels.newChannel(new ByteBufferOutputStream(bufresult));
+      while (!send.isSendComplete()) {
+        send.writeTo(channel);
+      }
+      bufresult.flip();
+      // the slice is a valid blob record of its own.
+      BlobData blobData = MessageFormatRecord.deserializeBlob(new ByteBufferInputStream(bufresult));
+      Assert.assertEquals("Unexpected blob type", BlobType.DataBlob, blobData.getBlobType());
+      Assert.assertEquals("Unexpected blob size", expectedSize, blobData.getSize());
+      byte[] slice = new byte[(int) expectedSize];
+      blobData.getStream().read(slice);
+      Assert.assertArrayEquals("Content of range " + ranges[i] + " does not match",
+          Arrays.copyOfRange(data, (int) expectedOffsets[i][0], (int) expectedOffsets[i][1] + 1), slice);
+    }
+
+    // a blob that is larger than the buffer through which its crc is verified.
+    byte[] largeData = new byte[150000];
+    new Random().nextBytes(largeData);
+    MessageReadSet largeReadSet = getMessageReadSetWithBlobRecordV2(BlobType.DataBlob, largeData);
+    MessageFormatSend largeSend =
+        new MessageFormatSend(largeReadSet, MessageFormatFlags.Blob, ByteRange.fromOffsetRange(60000, 139999),
+            metrics, new MockIdFactory());
+    ByteBuffer largeResult = ByteBuffer.allocate((int) largeSend.sizeInBytes());
+    WritableByteChannel largeChannel = Channels.newChannel(new ByteBufferOutputStream(largeResult));
+    while (!largeSend.isSendComplete()) {
+      largeSend.writeTo(largeChannel);
+    }
+    largeResult.flip();
+    BlobData largeBlobData = MessageFormatRecord.deserializeBlob(new ByteBufferInputStream(largeResult));
+    byte[] largeSlice = new byte[80000];
+    new DataInputStream(largeBlobData.getStream()).readFully(largeSlice);
+    Assert.assertArrayEquals("Content of the range of the large blob does not match",
+        Arrays.copyOfRange(largeData, 60000, 140000), largeSlice);
+
+    // a range that does not overlap the blob.
+    try {
+      new MessageFormatSend(readSet, MessageFormatFlags.Blob, ByteRange.fromStartOffset(805), metrics,
+          new MockIdFactory());
+      Assert.fail("Creating a send for a range that cannot be satisfied should have failed");
+    } catch (MessageFormatException e) {
+      Assert.assertEquals("Unexpected error code", MessageFormatErrorCodes.Range_Not_Satisfiable, e.getErrorCode());
+    }
+
+    // the range does not apply to anything but the blob.
+    MessageFormatSend send =
+        new MessageFormatSend(readSet, MessageFormatFlags.BlobUserMetadata, ByteRange.fromOffsetRange(0, 0), metrics,
+            new MockIdFactory());
+    Assert.assertEquals("The range should not apply to user metadata", 110, send.sizeInBytes());
+
+    // a slice is not sent out of a blob record whose crc does not match.
+    ByteBuffer corruptBuf = ((MockMessageReadSet) readSet).buffers.get(0);
+    int corruptIndex = corruptBuf.limit() - MessageFormatRecord.Crc_Size - 1;
+    corruptBuf.put(corruptIndex, (byte) (corruptBuf.get(corruptIndex) + 1));
+    try {
+      new MessageFormatSend(readSet, MessageFormatFlags.Blob, ByteRange.fromOffsetRange(0, 0), metrics,
+          new MockIdFactory());
+      Assert.fail("Creating a send for a corrupt blob record should have failed");
+    } catch (MessageFormatException e) {
+      Assert.assertEquals("Unexpected error code", MessageFormatErrorCodes.Data_Corrupt, e.getErrorCode());
+    }
+
+    // metadata blobs are sent whole.
+    readSet = getMessageReadSetWithBlobRecordV2(BlobType.MetadataBlob, data);
+    send = new MessageFormatSend(readSet, MessageFormatFlags.Blob, ByteRange.fromOffsetRange(0, 0), metrics,
+        new MockIdFactory());
+    Assert.assertEquals("Metadata blobs should be sent whole",
+        MessageFormatRecord.Blob_Format_V2.getBlobRecordSize(data.length), send.sizeInBytes());
+  }
+
+  /**
+   * Creates a {@link MessageReadSet} with a single message that has a blob record in
+   * {@link MessageFormatRecord#Blob_Version_V2}.
+   * @param blobType the {@link BlobType} of the blob record.
+   * @param data the content of the blob.
+   * @return the created {@link MessageReadSet}.
+   */
+  private MessageReadSet getMessageReadSetWithBlobRecordV2(BlobType blobType, byte[] data) {
+    int blobRecordSize = (int) MessageFormatRecord.Blob_Format_V2.getBlobRecordSize(data.length);
+    ByteBuffer buf = ByteBuffer.allocate(191 + blobRecordSize);
+    // fill header
+    buf.putShort((short) 1);                       // version
+    buf.putLong(21 + 110 + blobRecordSize);        // total size
+    // put relative offsets
+    buf.putInt(60);                                // blob property relative offset
+    buf.putInt(-1);                                // delete relative offset
+    buf.putInt(81);                                // user metadata relative offset
+    buf.putInt(191);                               // data relative offset
+    Crc32 crc = new Crc32();
+    crc.update(buf.array(), 0, buf.position());
+    buf.putLong(crc.getValue());                   // crc
+    String id = "012345678910123456789012";        // blob id
+    buf.putShort((short) id.length());
+    buf.put(id.getBytes());
+
+    buf.putShort((short) 1);                       // blob property version
+    buf.put("ttl".getBytes());                     // ttl name
+    buf.putLong(12345);                            // ttl value
+    buf.put("del".getBytes());                     // delete name
+    buf.put((byte) 1);                             // delete flag
+    buf.putInt(456);                               // crc
+
+    buf.putShort((short) 1);                       // user metadata version
+    buf.putInt(100);
+    byte[] usermetadata = new byte[100];
+    new Random().nextBytes(usermetadata);
+    buf.put(usermetadata);
+    buf.putInt(123);
+
+    int blobRecordStart = buf.position();
+    MessageFormatRecord.Blob_Format_V2.serializePartialBlobRecord(buf, data.length, blobType);
+    buf.put(data);
+    crc = new Crc32();
+    crc.update(buf.array(), blobRecordStart, buf.position() - blobRecordStart);
+    buf.putLong(crc.getValue());                   // blob crc
+    buf.flip();
+
+    ArrayList<ByteBuffer> listbuf = new ArrayList<ByteBuffer>();
+    listbuf.add(buf);
+    ArrayList<StoreKey> storeKeys = new ArrayList<StoreKey>();
+    storeKeys.add(new MockId(id));
+    return new MockMessageReadSet(listbuf, storeKeys);
+  }
+
   @Test
   public void messageReadSetIndexInputStreamTest() {
     try {
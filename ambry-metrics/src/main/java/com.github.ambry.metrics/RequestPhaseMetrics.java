@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+
+
+/**
+ * The breakdown, in nanoseconds, of the time spent by requests of one type in each of the phases that they go through:
+ * waiting to be processed, being processed, waiting for the response to be sent and sending the response. The phases
+ * are recorded in {@link ThreadLocalHistogram}s so that they are cheap enough to be recorded for every request.
+ */
+public class RequestPhaseMetrics {
+  public final ThreadLocalHistogram requestQueueTimeInNs;
+  public final ThreadLocalHistogram processingTimeInNs;
+  public final ThreadLocalHistogram responseQueueTimeInNs;
+  public final ThreadLocalHistogram sendTimeInNs;
+  public final ThreadLocalHistogram totalTimeInNs;
+
+  /**
+   * Creates the histograms of the phases of a request type (or gets them, if they are already registered). They are
+   * named {@code <ownerClass>.<requestType><Phase>TimeInNs}.
+   * @param registry the {@link MetricRegistry} to register the histograms with.
+   * @param ownerClass the class to name the histograms after.
+   * @param requestType the name of the request type.
+   */
+  public RequestPhaseMetrics(MetricRegistry registry, Class<?> ownerClass, String requestType) {
+    requestQueueTimeInNs = getOrRegister(registry, ownerClass, requestType, "RequestQueueTimeInNs");
+    processingTimeInNs = getOrRegister(registry, ownerClass, requestType, "ProcessingTimeInNs");
+    responseQueueTimeInNs = getOrRegister(registry, ownerClass, requestType, "ResponseQueueTimeInNs");
+    sendTimeInNs = getOrRegister(registry, ownerClass, requestType, "SendTimeInNs");
+    totalTimeInNs = getOrRegister(registry, ownerClass, requestType, "TotalTimeInNs");
+  }
+
+  private static ThreadLocalHistogram getOrRegister(MetricRegistry registry, Class<?> ownerClass, String requestType,
+      String phase) {
+    return ThreadLocalHistogram.getOrRegister(registry, MetricRegistry.name(ownerClass, requestType + phase));
+  }
+}
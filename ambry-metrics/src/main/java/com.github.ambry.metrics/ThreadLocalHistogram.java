@@ -0,0 +1,318 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Time;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * <p>
+ * A {@link Histogram} meant for latencies that are recorded on hot paths, typically in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets (in the manner of an HDR histogram): values below
+ * {@link #SUB_BUCKET_COUNT} have a bucket each and every larger power of two is split into {@link #SUB_BUCKET_COUNT}
+ * buckets, so the relative error of a reported value is at most {@code 1 / SUB_BUCKET_COUNT}. Values above
+ * {@link #MAX_TRACKABLE_VALUE} are counted as {@link #MAX_TRACKABLE_VALUE}.
+ * <p>
+ * Every thread that records values does so into buckets of its own, with plain writes that are published lazily, so
+ * recording takes no lock, does not contend with other threads and does not allocate. The buckets of all the threads
+ * are merged when a {@link Snapshot} is requested. The snapshot covers the values recorded in the last one to two
+ * windows of {@code windowMs}, rather than all the values recorded since the histogram was created.
+ * <p>
+ * Buckets are kept for as long as the histogram is, even if the thread that recorded into them terminates, so this is
+ * meant for histograms recorded into by long lived threads (like those of a thread pool).
+ */
+public class ThreadLocalHistogram extends Histogram {
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  static final long MAX_TRACKABLE_VALUE = (1L << 40) - 1;
+  static final int BUCKET_COUNT = (64 - Long.numberOfLeadingZeros(MAX_TRACKABLE_VALUE) - SUB_BUCKET_BITS + 1)
+      * SUB_BUCKET_COUNT;
+  static final long DEFAULT_WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+  // the number of values returned by Snapshot#getValues().
+  static final int SNAPSHOT_VALUE_COUNT = 1028;
+
+  // the slots of a recorder that follow the buckets.
+  private static final int COUNT_INDEX = BUCKET_COUNT;
+  private static final int SUM_INDEX = BUCKET_COUNT + 1;
+  private static final int SLOT_COUNT = BUCKET_COUNT + 2;
+
+  private final List<AtomicLongArray> recorders = new CopyOnWriteArrayList<AtomicLongArray>();
+  private final ThreadLocal<AtomicLongArray> threadRecorder = new ThreadLocal<AtomicLongArray>() {
+    @Override
+    protected AtomicLongArray initialValue() {
+      AtomicLongArray recorder = new AtomicLongArray(SLOT_COUNT);
+      recorders.add(recorder);
+      return recorder;
+    }
+  };
+  private final Time time;
+  private final long windowMs;
+  // the merged slots at the start of the previous window and at the start of the current window.
+  private long[] previousWindowStart = new long[SLOT_COUNT];
+  private long[] currentWindowStart = new long[SLOT_COUNT];
+  private long currentWindowStartTimeMs;
+
+  /**
+   * Creates a ThreadLocalHistogram whose snapshots cover the last one to two minutes.
+   */
+  public ThreadLocalHistogram() {
+    this(SystemTime.getInstance(), DEFAULT_WINDOW_MS);
+  }
+
+  /**
+   * @param time the {@link Time} instance to use to rotate windows.
+   * @param windowMs the length of a window. Snapshots cover the last one to two windows. If this is not positive,
+   *                 snapshots cover all the values recorded since the histogram was created.
+   */
+  public ThreadLocalHistogram(Time time, long windowMs) {
+    // the reservoir is never used since recording and snapshots are overridden.
+    super(new UniformReservoir(1));
+    this.time = time;
+    this.windowMs = windowMs;
+    currentWindowStartTimeMs = time.milliseconds();
+  }
+
+  /**
+   * Gets the {@link ThreadLocalHistogram} registered with {@code name}, registering a new one if there is none.
+   * @param registry the {@link MetricRegistry} to use.
+   * @param name the name of the histogram.
+   * @return the {@link ThreadLocalHistogram} registered with {@code name}.
+   * @throws IllegalArgumentException if a metric that is not a {@link ThreadLocalHistogram} is registered with
+   *                                  {@code name}.
+   */
+  public static ThreadLocalHistogram getOrRegister(MetricRegistry registry, String name) {
+    Metric metric = registry.getMetrics().get(name);
+    if (metric == null) {
+      try {
+        return registry.register(name, new ThreadLocalHistogram());
+      } catch (IllegalArgumentException e) {
+        // registered concurrently.
+        metric = registry.getMetrics().get(name);
+      }
+    }
+    if (!(metric instanceof ThreadLocalHistogram)) {
+      throw new IllegalArgumentException(name + " is already registered as a different type of metric");
+    }
+    return (ThreadLocalHistogram) metric;
+  }
+
+  @Override
+  public void update(int value) {
+    update((long) value);
+  }
+
+  @Override
+  public void update(long value) {
+    long trackedValue = Math.min(Math.max(value, 0), MAX_TRACKABLE_VALUE);
+    AtomicLongArray recorder = threadRecorder.get();
+    int index = getBucketIndex(trackedValue);
+    // only the owning thread writes to the recorder, so there is no need for atomic increments.
+    recorder.lazySet(index, recorder.get(index) + 1);
+    recorder.lazySet(SUM_INDEX, recorder.get(SUM_INDEX) + trackedValue);
+    recorder.lazySet(COUNT_INDEX, recorder.get(COUNT_INDEX) + 1);
+  }
+
+  /**
+   * @return the number of values recorded since the histogram was created.
+   */
+  @Override
+  public long getCount() {
+    long count = 0;
+    for (AtomicLongArray recorder : recorders) {
+      count += recorder.get(COUNT_INDEX);
+    }
+    return count;
+  }
+
+  /**
+   * @return a {@link Snapshot} of the values recorded in the last one to two windows.
+   */
+  @Override
+  public synchronized Snapshot getSnapshot() {
+    long[] slots = new long[SLOT_COUNT];
+    for (AtomicLongArray recorder : recorders) {
+      for (int i = 0; i < SLOT_COUNT; i++) {
+        slots[i] += recorder.get(i);
+      }
+    }
+    if (windowMs > 0) {
+      long nowMs = time.milliseconds();
+      if (nowMs - currentWindowStartTimeMs >= windowMs) {
+        previousWindowStart = currentWindowStart;
+        currentWindowStart = slots.clone();
+        currentWindowStartTimeMs = nowMs;
+      }
+      for (int i = 0; i < SLOT_COUNT; i++) {
+        slots[i] -= previousWindowStart[i];
+      }
+    }
+    return new BucketSnapshot(slots);
+  }
+
+  /**
+   * @param value a value between 0 and {@link #MAX_TRACKABLE_VALUE}.
+   * @return the index of the bucket that counts {@code value}.
+   */
+  static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the smallest value counted in the bucket.
+   */
+  static long getBucketLowestValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the value reported for the values counted in the bucket, which is the middle of the bucket.
+   */
+  static long getBucketValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    return getBucketLowestValue(index) + ((1L << shift) - 1) / 2;
+  }
+
+  /**
+   * A {@link Snapshot} computed from bucket counts.
+   */
+  private static class BucketSnapshot extends Snapshot {
+    private final long[] slots;
+    private final long count;
+
+    /**
+     * @param slots the bucket counts, followed by the total count and the sum of the values.
+     */
+    BucketSnapshot(long[] slots) {
+      super(new long[0]);
+      this.slots = slots;
+      count = slots[COUNT_INDEX];
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+        throw new IllegalArgumentException(quantile + " is not in [0..1]");
+      }
+      if (count == 0) {
+        return 0.0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += slots[i];
+        if (seen >= rank) {
+          return getBucketValue(i);
+        }
+      }
+      return getMax();
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return values spread evenly over the quantiles of the snapshot, since the recorded values themselves are not
+     *         kept.
+     */
+    @Override
+    public long[] getValues() {
+      long[] values = new long[(int) Math.min(count, SNAPSHOT_VALUE_COUNT)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (long) getValue((i + 0.5) / values.length);
+      }
+      return values;
+    }
+
+    @Override
+    public long getMax() {
+      for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+        if (slots[i] > 0) {
+          return getBucketValue(i);
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public long getMin() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (slots[i] > 0) {
+          return getBucketValue(i);
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public double getMean() {
+      return count == 0 ? 0.0 : (double) slots[SUM_INDEX] / count;
+    }
+
+    @Override
+    public double getStdDev() {
+      if (count <= 1) {
+        return 0.0;
+      }
+      double mean = getMean();
+      double sumOfSquares = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        if (slots[i] > 0) {
+          double diff = getBucketValue(i) - mean;
+          sumOfSquares += slots[i] * diff * diff;
+        }
+      }
+      return Math.sqrt(sumOfSquares / (count - 1));
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      PrintWriter writer = new PrintWriter(output);
+      try {
+        for (long value : getValues()) {
+          writer.printf("%d%n", value);
+        }
+      } finally {
+        writer.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SystemTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link ThreadLocalHistogram} and {@link RequestPhaseMetrics}.
+ */
+public class ThreadLocalHistogramTest {
+  private static final double MAX_RELATIVE_ERROR = 1.0 / ThreadLocalHistogram.SUB_BUCKET_COUNT;
+
+  /**
+   * Tests that every value is counted in a bucket whose reported value is within the expected relative error and that
+   * bucket indexes grow with the values.
+   */
+  @Test
+  public void testBuckets() {
+    int lastIndex = -1;
+    for (long value = 0; value <= ThreadLocalHistogram.MAX_TRACKABLE_VALUE; value = value * 3 / 2 + 1) {
+      verifyBucket(value);
+      int index = ThreadLocalHistogram.getBucketIndex(value);
+      assertTrue("Bucket indexes should grow with the values", index >= lastIndex);
+      lastIndex = index;
+    }
+    verifyBucket(ThreadLocalHistogram.MAX_TRACKABLE_VALUE);
+    assertEquals("Largest value should be in the last bucket", ThreadLocalHistogram.BUCKET_COUNT - 1,
+        ThreadLocalHistogram.getBucketIndex(ThreadLocalHistogram.MAX_TRACKABLE_VALUE));
+    for (int index = 1; index < ThreadLocalHistogram.BUCKET_COUNT; index++) {
+      long lowestValue = ThreadLocalHistogram.getBucketLowestValue(index);
+      assertEquals("Bucket boundaries are not contiguous", index, ThreadLocalHistogram.getBucketIndex(lowestValue));
+      assertEquals("Bucket boundaries are not contiguous", index - 1,
+          ThreadLocalHistogram.getBucketIndex(lowestValue - 1));
+    }
+  }
+
+  /**
+   * Tests the statistics of a snapshot against the values recorded.
+   */
+  @Test
+  public void testSnapshot() {
+    ThreadLocalHistogram histogram = new ThreadLocalHistogram(SystemTime.getInstance(), 0);
+    Snapshot snapshot = histogram.getSnapshot();
+    assertEquals("Snapshot should be empty", 0, snapshot.size());
+    assertEquals("Empty snapshot should have no values", 0, snapshot.getValues().length);
+    assertEquals("Unexpected max", 0, snapshot.getMax());
+    assertEquals("Unexpected mean", 0.0, snapshot.getMean(), 0.0);
+
+    int count = 100000;
+    long sum = 0;
+    for (int i = 1; i <= count; i++) {
+      histogram.update(i);
+      sum += i;
+    }
+    snapshot = histogram.getSnapshot();
+    assertEquals("Unexpected count", count, histogram.getCount());
+    assertEquals("Unexpected size", count, snapshot.size());
+    assertEquals("Mean should be exact", (double) sum / count, snapshot.getMean(), 0.0001);
+    assertEquals("Unexpected min", 1, snapshot.getMin());
+    verifyApproximately("max", count, snapshot.getMax());
+    verifyApproximately("median", count * 0.5, snapshot.getMedian());
+    verifyApproximately("75th percentile", count * 0.75, snapshot.get75thPercentile());
+    verifyApproximately("99th percentile", count * 0.99, snapshot.get99thPercentile());
+    verifyApproximately("999th percentile", count * 0.999, snapshot.get999thPercentile());
+    // the standard deviation of a uniform distribution between 0 and count.
+    verifyApproximately("stddev", count / Math.sqrt(12), snapshot.getStdDev());
+    long[] values = snapshot.getValues();
+    assertEquals("Unexpected number of values", ThreadLocalHistogram.SNAPSHOT_VALUE_COUNT, values.length);
+    for (int i = 1; i < values.length; i++) {
+      assertTrue("Values should be sorted", values[i - 1] <= values[i]);
+    }
+
+    histogram.update(-1);
+    histogram.update(Long.MAX_VALUE);
+    snapshot = histogram.getSnapshot();
+    assertEquals("Negative values should be counted as 0", 0, snapshot.getMin());
+    verifyApproximately("max", ThreadLocalHistogram.MAX_TRACKABLE_VALUE, snapshot.getMax());
+  }
+
+  /**
+   * Tests that the values recorded concurrently by several threads are all merged into snapshots.
+   * @throws InterruptedException
+   */
+  @Test
+  public void testConcurrentRecording()
+      throws InterruptedException {
+    final ThreadLocalHistogram histogram = new ThreadLocalHistogram(SystemTime.getInstance(), 0);
+    final int threadCount = 4;
+    final int valuesPerThread = 50000;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      final long value = (t + 1) * 1000;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          for (int i = 0; i < valuesPerThread; i++) {
+            histogram.update(value);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Snapshot snapshot = histogram.getSnapshot();
+    assertEquals("Unexpected count", threadCount * valuesPerThread, histogram.getCount());
+    assertEquals("Unexpected size", threadCount * valuesPerThread, snapshot.size());
+    assertEquals("Unexpected mean", 2500.0, snapshot.getMean(), 0.0001);
+    verifyApproximately("min", 1000, snapshot.getMin());
+    verifyApproximately("max", 4000, snapshot.getMax());
+  }
+
+  /**
+   * Tests that snapshots only cover the values recorded in the last one to two windows.
+   */
+  @Test
+  public void testWindows() {
+    MockTime time = new MockTime();
+    long windowMs = 1000;
+    ThreadLocalHistogram histogram = new ThreadLocalHistogram(time, windowMs);
+    recordValues(histogram, 10, 100);
+    assertEquals("Unexpected size", 100, histogram.getSnapshot().size());
+    time.currentMilliseconds += windowMs;
+    // the window rotates but the values of the previous window are still covered.
+    assertEquals("Unexpected size", 100, histogram.getSnapshot().size());
+    recordValues(histogram, 1000, 50);
+    Snapshot snapshot = histogram.getSnapshot();
+    assertEquals("Unexpected size", 150, snapshot.size());
+    verifyApproximately("max", 1000, snapshot.getMax());
+    time.currentMilliseconds += windowMs;
+    snapshot = histogram.getSnapshot();
+    assertEquals("Only the values of the last window should be covered", 50, snapshot.size());
+    verifyApproximately("min", 1000, snapshot.getMin());
+    assertEquals("Unexpected mean", 1000.0, snapshot.getMean(), 0.0);
+    time.currentMilliseconds += windowMs;
+    assertEquals("No value should be covered", 0, histogram.getSnapshot().size());
+    assertEquals("Count should cover all the values", 150, histogram.getCount());
+  }
+
+  /**
+   * Tests {@link ThreadLocalHistogram#getOrRegister(MetricRegistry, String)} and the histograms registered by
+   * {@link RequestPhaseMetrics}.
+   */
+  @Test
+  public void testRegistration() {
+    MetricRegistry registry = new MetricRegistry();
+    ThreadLocalHistogram histogram = ThreadLocalHistogram.getOrRegister(registry, "histogram");
+    assertSame("Registered histogram should be returned", histogram,
+        ThreadLocalHistogram.getOrRegister(registry, "histogram"));
+    registry.counter("counter");
+    try {
+      ThreadLocalHistogram.getOrRegister(registry, "counter");
+      fail("Getting a histogram with the name of a counter should have failed");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+
+    RequestPhaseMetrics phaseMetrics = new RequestPhaseMetrics(registry, ThreadLocalHistogramTest.class, "Test");
+    String prefix = ThreadLocalHistogramTest.class.getName() + ".Test";
+    assertSame("Unexpected histogram", phaseMetrics.requestQueueTimeInNs,
+        registry.getMetrics().get(prefix + "RequestQueueTimeInNs"));
+    assertSame("Unexpected histogram", phaseMetrics.processingTimeInNs,
+        registry.getMetrics().get(prefix + "ProcessingTimeInNs"));
+    assertSame("Unexpected histogram", phaseMetrics.responseQueueTimeInNs,
+        registry.getMetrics().get(prefix + "ResponseQueueTimeInNs"));
+    assertSame("Unexpected histogram", phaseMetrics.sendTimeInNs, registry.getMetrics().get(prefix + "SendTimeInNs"));
+    assertSame("Unexpected histogram", phaseMetrics.totalTimeInNs,
+        registry.getMetrics().get(prefix + "TotalTimeInNs"));
+    RequestPhaseMetrics otherPhaseMetrics =
+        new RequestPhaseMetrics(registry, ThreadLocalHistogramTest.class, "Test");
+    assertSame("Histograms should be shared", phaseMetrics.totalTimeInNs, otherPhaseMetrics.totalTimeInNs);
+  }
+
+  /**
+   * Verifies that {@code value} is counted in a bucket whose bounds contain it and whose reported value is within the
+   * expected relative error.
+   * @param value the value to verify.
+   */
+  private void verifyBucket(long value) {
+    int index = ThreadLocalHistogram.getBucketIndex(value);
+    assertTrue("Bucket index out of range for " + value, index >= 0 && index < ThreadLocalHistogram.BUCKET_COUNT);
+    assertTrue("Bucket of " + value + " starts after it", ThreadLocalHistogram.getBucketLowestValue(index) <= value);
+    verifyApproximately("bucket value of " + value, value, ThreadLocalHistogram.getBucketValue(index));
+  }
+
+  /**
+   * Verifies that {@code actual} is within the maximum relative error of {@code expected}.
+   * @param what what is being verified.
+   * @param expected the expected value.
+   * @param actual the actual value.
+   */
+  private void verifyApproximately(String what, double expected, double actual) {
+    assertEquals("Unexpected " + what, expected, actual, expected * MAX_RELATIVE_ERROR);
+  }
+
+  /**
+   * Records {@code count} times {@code value} in {@code histogram}.
+   */
+  private void recordValues(ThreadLocalHistogram histogram, long value, int count) {
+    for (int i = 0; i < count; i++) {
+      histogram.update(value);
+    }
+  }
+}
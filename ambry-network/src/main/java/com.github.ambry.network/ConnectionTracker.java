@@ -15,11 +15,14 @@ package com.github.ambry.network;
 
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 
 /**
  * The ConnectionTracker keeps track of current connections to datanodes, and provides methods to check out and
- * check in connections.
+ * check in connections. A connection can be checked out multiple times, up to the configured maximum number of
+ * requests in flight per connection, before it is checked back in. Connections that have fewer requests in flight
+ * than the maximum are handed out in a round robin fashion.
  *
  * This class is not thread safe.
  */
@@ -29,6 +32,7 @@ class ConnectionTracker {
   private final HashMap<String, HostPortPoolManager> connectionIdToPoolManager;
   private final int maxConnectionsPerPortPlainText;
   private final int maxConnectionsPerPortSsl;
+  private final int maxRequestsInFlightPerConnection;
   private int totalManagedConnectionsCount;
 
   /**
@@ -37,6 +41,23 @@ class ConnectionTracker {
    * @param maxConnectionsPerPortSsl the connection pool limit for ssl connections to a (host, port)
    */
   ConnectionTracker(int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl) {
+    this(maxConnectionsPerPortPlainText, maxConnectionsPerPortSsl, 1);
+  }
+
+  /**
+   * Instantiates a ConnectionTracker
+   * @param maxConnectionsPerPortPlainText the connection pool limit for plain text connections to a (host, port)
+   * @param maxConnectionsPerPortSsl the connection pool limit for ssl connections to a (host, port)
+   * @param maxRequestsInFlightPerConnection the number of times a connection can be checked out before it has to be
+   *                                         checked back in.
+   */
+  ConnectionTracker(int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl,
+      int maxRequestsInFlightPerConnection) {
+    if (maxRequestsInFlightPerConnection < 1) {
+      throw new IllegalArgumentException(
+          "Max requests in flight per connection must be positive: " + maxRequestsInFlightPerConnection);
+    }
+    this.maxRequestsInFlightPerConnection = maxRequestsInFlightPerConnection;
     hostPortToPoolManager = new HashMap<String, HostPortPoolManager>();
     connectionIdToPoolManager = new HashMap<String, HostPortPoolManager>();
     totalManagedConnectionsCount = 0;
@@ -80,7 +101,7 @@ class ConnectionTracker {
   }
 
   /**
-   * Add connection to available pool.
+   * Add connection to available pool. If the connection was checked out, this releases one of its check outs.
    * @param connectionId the id of the newly established or previously checked out connection.
    * @throws {@link IllegalArgumentException} if the passed in connection id is invalid.
    */
@@ -116,7 +137,7 @@ class ConnectionTracker {
 
   /**
    * Return the total available connections across all hostPortPoolManagers.
-   * @return total established and available connections.
+   * @return total established connections that can be checked out.
    */
   int getAvailableConnectionsCount() {
     int count = 0;
@@ -151,6 +172,8 @@ class ConnectionTracker {
   private class HostPortPoolManager {
     private final int maxConnectionsToHostPort;
     private final LinkedList<String> availableConnections;
+    // connection id to the number of times the connection is currently checked out.
+    private final Map<String, Integer> connectionToRequestsInFlight;
     private int poolCount;
 
     /**
@@ -161,6 +184,7 @@ class ConnectionTracker {
       poolCount = 0;
       maxConnectionsToHostPort = poolLimit;
       availableConnections = new LinkedList<String>();
+      connectionToRequestsInFlight = new HashMap<String, Integer>();
     }
 
     /**
@@ -183,7 +207,15 @@ class ConnectionTracker {
      * @return returns a connection id, if there is one; null otherwise.
      */
     String checkOutConnection() {
-      return availableConnections.poll();
+      String connectionId = availableConnections.poll();
+      if (connectionId != null) {
+        int requestsInFlight = connectionToRequestsInFlight.merge(connectionId, 1, Integer::sum);
+        if (requestsInFlight < maxRequestsInFlightPerConnection) {
+          // the connection can take more requests, so it goes to the back of the line.
+          availableConnections.add(connectionId);
+        }
+      }
+      return connectionId;
     }
 
     /**
@@ -191,7 +223,19 @@ class ConnectionTracker {
      * @param connectionId the connection id of the connection.
      */
     void checkInConnection(String connectionId) {
-      availableConnections.add(connectionId);
+      Integer requestsInFlight = connectionToRequestsInFlight.get(connectionId);
+      if (requestsInFlight == null) {
+        availableConnections.add(connectionId);
+      } else {
+        if (requestsInFlight == 1) {
+          connectionToRequestsInFlight.remove(connectionId);
+        } else {
+          connectionToRequestsInFlight.put(connectionId, requestsInFlight - 1);
+        }
+        if (requestsInFlight == maxRequestsInFlightPerConnection) {
+          availableConnections.add(connectionId);
+        }
+      }
     }
 
     /**
@@ -201,6 +245,7 @@ class ConnectionTracker {
      */
     void removeConnection(String connectionId) {
       availableConnections.remove(connectionId);
+      connectionToRequestsInFlight.remove(connectionId);
       poolCount--;
     }
 
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+import com.github.ambry.utils.ByteBufferPool;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A size-classed {@link ByteBufferPool} of direct {@link ByteBuffer}s used by the network layer.
+ * <p>
+ * Requests are rounded up to the next power of two between {@link #Min_Buffer_Size} and the configured maximum pooled
+ * buffer size. Buffers of a size class are reused once they are deallocated back to the pool. The pool never holds
+ * more than {@code capacity} bytes of direct memory. Requests that are larger than the maximum pooled buffer size, or
+ * that arrive when the pool is exhausted, are served with unpooled heap buffers so that the (single threaded) selector
+ * is never blocked. {@code timeToBlockInMs} is therefore ignored.
+ * <p>
+ * A buffer handed out by the pool has a limit equal to the requested size, but its capacity is that of its size class.
+ * Buffers that are never deallocated are not referenced by the pool and are reclaimed by the garbage collector, but
+ * they keep counting against the capacity and are reported as leaks when the pool is closed.
+ * <p>
+ * This class is thread safe.
+ */
+public class NetworkBufferPool implements ByteBufferPool {
+  static final int Min_Buffer_Size = 512;
+
+  private final long capacity;
+  private final int maxPooledBufferSize;
+  private final ConcurrentLinkedQueue<ByteBuffer>[] freeBuffers;
+  private final AtomicInteger[] outstandingBuffers;
+  private final AtomicLong allocatedBytes = new AtomicLong(0);
+  private final AtomicLong outstandingBytes = new AtomicLong(0);
+  private final NetworkMetrics metrics;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  /**
+   * Create a new pool.
+   * @param capacity the maximum amount of direct memory in bytes that this pool can allocate. If this is 0, all
+   *                 buffers are unpooled heap buffers.
+   * @param maxPooledBufferSize the largest buffer size in bytes that is served from the pool. Rounded up to the next
+   *                            power of two.
+   * @param metrics the {@link NetworkMetrics} to record the pool usage in.
+   */
+  @SuppressWarnings("unchecked")
+  public NetworkBufferPool(long capacity, int maxPooledBufferSize, NetworkMetrics metrics) {
+    if (capacity < 0 || maxPooledBufferSize < 0) {
+      throw new IllegalArgumentException(
+          "Invalid pool capacity " + capacity + " or max pooled buffer size " + maxPooledBufferSize);
+    }
+    this.capacity = capacity;
+    this.maxPooledBufferSize = maxPooledBufferSize == 0 ? 0 : sizeOfClass(sizeClassOf(maxPooledBufferSize));
+    int numSizeClasses = this.maxPooledBufferSize == 0 ? 0 : sizeClassOf(this.maxPooledBufferSize) + 1;
+    freeBuffers = new ConcurrentLinkedQueue[numSizeClasses];
+    outstandingBuffers = new AtomicInteger[numSizeClasses];
+    for (int i = 0; i < numSizeClasses; i++) {
+      freeBuffers[i] = new ConcurrentLinkedQueue<>();
+      outstandingBuffers[i] = new AtomicInteger(0);
+    }
+    this.metrics = metrics;
+    metrics.registerNetworkBufferPool(this);
+  }
+
+  /**
+   * Allocate a buffer of the requested size. This method never blocks.
+   * @param size the buffer size to allocate in bytes
+   * @param timeToBlockInMs ignored.
+   * @return a {@link ByteBuffer} with position 0 and limit {@code size}.
+   */
+  @Override
+  public ByteBuffer allocate(int size, long timeToBlockInMs) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Requested size cannot be negative: " + size);
+    }
+    metrics.networkBufferPoolAllocationCount.inc();
+    if (size > maxPooledBufferSize) {
+      metrics.networkBufferPoolUnpooledAllocationCount.inc();
+      return ByteBuffer.allocate(size);
+    }
+    int sizeClass = sizeClassOf(size);
+    int classSize = sizeOfClass(sizeClass);
+    ByteBuffer buffer = freeBuffers[sizeClass].poll();
+    if (buffer != null) {
+      metrics.networkBufferPoolHitCount.inc();
+    } else if (reserve(classSize)) {
+      buffer = ByteBuffer.allocateDirect(classSize);
+    } else {
+      metrics.networkBufferPoolExhaustedCount.inc();
+      return ByteBuffer.allocate(size);
+    }
+    outstandingBuffers[sizeClass].incrementAndGet();
+    outstandingBytes.addAndGet(classSize);
+    buffer.clear();
+    buffer.limit(size);
+    return buffer;
+  }
+
+  /**
+   * Returns {@code buffer} to the pool. Heap buffers were never pooled and are ignored. The caller must not use
+   * {@code buffer} after this call.
+   * @param buffer the {@link ByteBuffer} to be deallocated back to the pool
+   */
+  @Override
+  public void deallocate(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+    int classSize = buffer.capacity();
+    int sizeClass = classSize < Min_Buffer_Size ? -1 : sizeClassOf(classSize);
+    if (sizeClass < 0 || sizeClass >= freeBuffers.length || sizeOfClass(sizeClass) != classSize
+        || outstandingBuffers[sizeClass].getAndUpdate(count -> count > 0 ? count - 1 : count) == 0) {
+      metrics.networkBufferPoolInvalidDeallocationCount.inc();
+      logger.warn("Deallocated a buffer of capacity {} that was not allocated from the pool", classSize);
+      return;
+    }
+    outstandingBytes.addAndGet(-classSize);
+    buffer.clear();
+    freeBuffers[sizeClass].offer(buffer);
+  }
+
+  /**
+   * Drops all free buffers and reports buffers that have not been returned to the pool as leaks.
+   */
+  public void close() {
+    metrics.deregisterNetworkBufferPool(this);
+    int leaked = 0;
+    for (int i = 0; i < freeBuffers.length; i++) {
+      freeBuffers[i].clear();
+      leaked += outstandingBuffers[i].getAndSet(0);
+    }
+    allocatedBytes.set(0);
+    outstandingBytes.set(0);
+    if (leaked > 0) {
+      metrics.networkBufferPoolLeakedBufferCount.inc(leaked);
+      logger.warn("{} buffers were not returned to the pool before it was closed", leaked);
+    }
+  }
+
+  /**
+   * @return the amount of direct memory in bytes that this pool has allocated.
+   */
+  public long allocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  /**
+   * @return the amount of pooled memory in bytes that has been handed out and not yet deallocated.
+   */
+  public long outstandingBytes() {
+    return outstandingBytes.get();
+  }
+
+  /**
+   * @return the maximum amount of direct memory in bytes that this pool can allocate.
+   */
+  public long capacity() {
+    return capacity;
+  }
+
+  /**
+   * Accounts for a new direct buffer of {@code size} bytes if that keeps the pool within its capacity.
+   * @param size the size of the new buffer.
+   * @return {@code true} if the buffer can be allocated.
+   */
+  private boolean reserve(int size) {
+    long current;
+    do {
+      current = allocatedBytes.get();
+      if (current + size > capacity) {
+        return false;
+      }
+    } while (!allocatedBytes.compareAndSet(current, current + size));
+    return true;
+  }
+
+  /**
+   * @param size a buffer size.
+   * @return the index of the smallest size class that can hold {@code size} bytes.
+   */
+  private static int sizeClassOf(int size) {
+    if (size <= Min_Buffer_Size) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(Min_Buffer_Size);
+  }
+
+  /**
+   * @param sizeClass the index of a size class.
+   * @return the size in bytes of the buffers in {@code sizeClass}.
+   */
+  private static int sizeOfClass(int sizeClass) {
+    return Min_Buffer_Size << sizeClass;
+  }
+}
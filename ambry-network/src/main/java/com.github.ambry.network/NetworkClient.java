@@ -18,11 +18,14 @@ import com.github.ambry.utils.Time;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,16 +40,24 @@ import org.slf4j.LoggerFactory;
  * a request should be failed if connections could not be checked out if pool limit for its hostPort has been reached
  * and all connections to the hostPort are unavailable).
  *
+ * A connection can have multiple requests in flight, up to a configured maximum. Responses to requests that share a
+ * connection can arrive in any order and are matched to their requests by the correlation id in the response header.
+ *
  * This class is not thread safe.
  */
 public class NetworkClient implements Closeable {
+  // the correlation id in a response header follows the 2 byte type and the 2 byte version (see RequestOrResponse).
+  static final int CORRELATION_ID_OFFSET_IN_RESPONSE = 4;
+
   private final Selector selector;
   private final ConnectionTracker connectionTracker;
   private final NetworkConfig networkConfig;
   private final NetworkMetrics networkMetrics;
   private final Time time;
   private final LinkedList<RequestMetadata> pendingRequests;
-  private final HashMap<String, RequestMetadata> connectionIdToRequestInFlight;
+  private final HashMap<String, List<RequestMetadata>> connectionIdToRequestsInFlight;
+  // connections that were closed by this client and whose disconnection is yet to be reported by the selector.
+  private final Set<String> connectionsClosedOnError;
   private final AtomicLong numPendingRequests;
   private final int checkoutTimeoutMs;
   private boolean closed = false;
@@ -65,15 +76,39 @@ public class NetworkClient implements Closeable {
    */
   public NetworkClient(Selector selector, NetworkConfig networkConfig, NetworkMetrics networkMetrics,
       int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl, int checkoutTimeoutMs, Time time) {
+    this(selector, networkConfig, networkMetrics, maxConnectionsPerPortPlainText, maxConnectionsPerPortSsl, 1,
+        checkoutTimeoutMs, time);
+  }
+
+  /**
+   * Instantiates a NetworkClient.
+   * @param selector the {@link Selector} for this NetworkClient. If {@code maxRequestsInFlightPerConnection} is
+   *                 greater than 1, the selector must pipeline sends.
+   * @param maxConnectionsPerPortPlainText the maximum number of connections per node per plain text port
+   * @param maxConnectionsPerPortSsl the maximum number of connections per node per ssl port
+   * @param maxRequestsInFlightPerConnection the maximum number of requests that can be in flight on a connection at
+   *                                         the same time. If this is greater than 1, requests must carry their
+   *                                         correlation id (see {@link RequestInfo#getCorrelationId()}).
+   * @param networkConfig the {@link NetworkConfig} for this NetworkClient
+   * @param networkMetrics the metrics to track the network related metrics
+   * @param checkoutTimeoutMs the maximum time a request should remain in this NetworkClient's pending queue waiting
+   *                          for an available connection to its destination.
+   * @param time The Time instance to use.
+   */
+  public NetworkClient(Selector selector, NetworkConfig networkConfig, NetworkMetrics networkMetrics,
+      int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl, int maxRequestsInFlightPerConnection,
+      int checkoutTimeoutMs, Time time) {
     this.selector = selector;
-    this.connectionTracker = new ConnectionTracker(maxConnectionsPerPortPlainText, maxConnectionsPerPortSsl);
+    this.connectionTracker = new ConnectionTracker(maxConnectionsPerPortPlainText, maxConnectionsPerPortSsl,
+        maxRequestsInFlightPerConnection);
     this.networkConfig = networkConfig;
     this.networkMetrics = networkMetrics;
     this.checkoutTimeoutMs = checkoutTimeoutMs;
     this.time = time;
     pendingRequests = new LinkedList<RequestMetadata>();
     numPendingRequests = new AtomicLong(0);
-    connectionIdToRequestInFlight = new HashMap<String, RequestMetadata>();
+    connectionIdToRequestsInFlight = new HashMap<String, List<RequestMetadata>>();
+    connectionsClosedOnError = new HashSet<String>();
     networkMetrics.registerNetworkClientPendingConnections(numPendingRequests);
   }
 
@@ -161,7 +196,13 @@ public class NetworkClient implements Closeable {
           logger.trace("Connection checkout succeeded for {}:{} with connectionId {} ", host, port, connId);
           sends.add(new NetworkSend(connId, requestMetadata.requestInfo.getRequest(),
               requestMetadata.clientNetworkRequestMetrics, time));
-          connectionIdToRequestInFlight.put(connId, requestMetadata);
+          List<RequestMetadata> requestsInFlight = connectionIdToRequestsInFlight.get(connId);
+          if (requestsInFlight == null) {
+            requestsInFlight = new ArrayList<RequestMetadata>();
+            connectionIdToRequestsInFlight.put(connId, requestsInFlight);
+          }
+          networkMetrics.requestsInFlightOnConnectionAtSend.update(requestsInFlight.size());
+          requestsInFlight.add(requestMetadata);
           iter.remove();
           requestMetadata.onRequestDequeue();
         }
@@ -186,27 +227,91 @@ public class NetworkClient implements Closeable {
     }
 
     for (String connId : selector.disconnected()) {
+      if (connectionsClosedOnError.remove(connId)) {
+        // the connection and its requests were already cleaned up when it was closed.
+        continue;
+      }
       logger.trace("Connection disconnected for connectionId {} and hence removing it from connection tracker", connId);
       connectionTracker.removeConnection(connId);
-      RequestMetadata requestMetadata = connectionIdToRequestInFlight.remove(connId);
-      if (requestMetadata != null) {
-        responseInfoList
-            .add(new ResponseInfo(requestMetadata.requestInfo.getRequest(), NetworkClientErrorCode.NetworkError, null));
-      }
+      failRequestsInFlight(connId, responseInfoList);
     }
 
     for (NetworkReceive recv : selector.completedReceives()) {
       String connId = recv.getConnectionId();
+      if (connectionsClosedOnError.contains(connId)) {
+        // the requests on this connection have already been failed.
+        continue;
+      }
+      ByteBuffer response = recv.getReceivedBytes().getPayload();
+      RequestMetadata requestMetadata = removeRequestInFlight(connId, response);
+      if (requestMetadata == null) {
+        networkMetrics.unmatchedResponseError.inc();
+        logger.error("Received a response on connectionId {} that does not match any request in flight on it, "
+            + "closing the connection", connId);
+        connectionTracker.removeConnection(connId);
+        failRequestsInFlight(connId, responseInfoList);
+        connectionsClosedOnError.add(connId);
+        selector.close(connId);
+        continue;
+      }
       logger.trace("Receive completed for connectionId {} and checking in the connection back to connection tracker",
           connId);
       connectionTracker.checkInConnection(connId);
-      RequestMetadata requestMetadata = connectionIdToRequestInFlight.remove(connId);
-      responseInfoList
-          .add(new ResponseInfo(requestMetadata.requestInfo.getRequest(), null, recv.getReceivedBytes().getPayload()));
+      responseInfoList.add(new ResponseInfo(requestMetadata.requestInfo.getRequest(), null, response));
       requestMetadata.onResponseReceive();
     }
   }
 
+  /**
+   * Removes and returns the request in flight on the given connection that the given response is for. If there is
+   * only one request in flight on the connection, that is the one. Otherwise, the request is identified by the
+   * correlation id in the response.
+   * @param connId the connection id on which the response was received.
+   * @param response the payload of the response.
+   * @return the {@link RequestMetadata} of the request, or null if there is no matching request in flight.
+   */
+  private RequestMetadata removeRequestInFlight(String connId, ByteBuffer response) {
+    List<RequestMetadata> requestsInFlight = connectionIdToRequestsInFlight.get(connId);
+    if (requestsInFlight == null) {
+      return null;
+    }
+    RequestMetadata match = null;
+    if (requestsInFlight.size() == 1) {
+      match = requestsInFlight.get(0);
+    } else if (response != null && response.remaining() >= CORRELATION_ID_OFFSET_IN_RESPONSE + Integer.BYTES) {
+      int correlationId = response.getInt(response.position() + CORRELATION_ID_OFFSET_IN_RESPONSE);
+      for (RequestMetadata requestMetadata : requestsInFlight) {
+        Integer requestCorrelationId = requestMetadata.requestInfo.getCorrelationId();
+        if (requestCorrelationId != null && requestCorrelationId == correlationId) {
+          match = requestMetadata;
+          break;
+        }
+      }
+    }
+    if (match != null) {
+      requestsInFlight.remove(match);
+      if (requestsInFlight.isEmpty()) {
+        connectionIdToRequestsInFlight.remove(connId);
+      }
+    }
+    return match;
+  }
+
+  /**
+   * Fails all the requests in flight on the given connection with {@link NetworkClientErrorCode#NetworkError}.
+   * @param connId the connection id.
+   * @param responseInfoList the list to populate with the {@link ResponseInfo} objects for the failed requests.
+   */
+  private void failRequestsInFlight(String connId, List<ResponseInfo> responseInfoList) {
+    List<RequestMetadata> requestsInFlight = connectionIdToRequestsInFlight.remove(connId);
+    if (requestsInFlight != null) {
+      for (RequestMetadata requestMetadata : requestsInFlight) {
+        responseInfoList.add(
+            new ResponseInfo(requestMetadata.requestInfo.getRequest(), NetworkClientErrorCode.NetworkError, null));
+      }
+    }
+  }
+
   /**
    * Close the NetworkClient and cleanup.
    */
@@ -227,6 +332,13 @@ public class NetworkClient implements Closeable {
     selector.wakeup();
   }
 
+  /**
+   * @return the total time in ms that the underlying {@link Selector} has spent blocked waiting for I/O.
+   */
+  long getTotalSelectTimeMs() {
+    return selector.getTotalSelectTimeMs();
+  }
+
   /**
    * A class that consists of a {@link RequestInfo} and some metadata related to the request
    */
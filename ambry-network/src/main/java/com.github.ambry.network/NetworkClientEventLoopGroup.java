@@ -0,0 +1,274 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+import com.codahale.metrics.Gauge;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A group of network event loops that is shared by all the submitters of requests (for example, all the operation
+ * controllers of a router). Each event loop runs in its own thread and owns a {@link NetworkClient}, and hence its own
+ * {@link Selector} and connection pool. Requests are sharded across the loops by their destination, so every
+ * (host, port) is served by exactly one loop and the number of connections to a data node does not grow with the
+ * number of submitters.
+ * <p>
+ * Requests are submitted along with a {@link ResponseQueue} into which the loop delivers the corresponding
+ * {@link ResponseInfo}, including the ones for requests that failed or timed out in the {@link NetworkClient}.
+ * <p>
+ * This class is thread safe.
+ */
+public class NetworkClientEventLoopGroup implements Closeable {
+  static final String THREAD_NAME_PREFIX = "NetworkClientEventLoop-";
+  private static final long SHUTDOWN_WAIT_MS = 10 * Time.MsPerSec;
+
+  private final List<EventLoop> eventLoops;
+  private final AtomicBoolean isOpen = new AtomicBoolean(true);
+  private final Time time;
+  private static final Logger logger = LoggerFactory.getLogger(NetworkClientEventLoopGroup.class);
+
+  /**
+   * Creates and starts the event loops.
+   * @param networkClientFactory the {@link NetworkClientFactory} used to create the {@link NetworkClient} of each loop.
+   * @param numEventLoops the number of event loops.
+   * @param pollTimeoutMs the maximum time in ms that a loop waits for network events in a single poll.
+   * @param time the {@link Time} instance to use.
+   * @throws IOException if a {@link NetworkClient} could not be created.
+   */
+  public NetworkClientEventLoopGroup(NetworkClientFactory networkClientFactory, int numEventLoops, int pollTimeoutMs,
+      Time time)
+      throws IOException {
+    if (numEventLoops < 1) {
+      throw new IllegalArgumentException("Number of event loops must be positive: " + numEventLoops);
+    }
+    this.time = time;
+    eventLoops = new ArrayList<>(numEventLoops);
+    try {
+      for (int i = 0; i < numEventLoops; i++) {
+        eventLoops.add(new EventLoop(i, networkClientFactory.getNetworkClient(), pollTimeoutMs));
+      }
+    } catch (IOException e) {
+      for (EventLoop eventLoop : eventLoops) {
+        eventLoop.networkClient.close();
+      }
+      throw e;
+    }
+    for (EventLoop eventLoop : eventLoops) {
+      eventLoop.registerMetrics(networkClientFactory.networkMetrics);
+      eventLoop.thread.start();
+    }
+  }
+
+  /**
+   * Submits requests to the event loops that serve their destinations. The response to each request will eventually be
+   * added to {@code responseQueue}.
+   * @param requestInfos the requests to send.
+   * @param responseQueue the {@link ResponseQueue} to deliver the responses to.
+   * @throws IllegalStateException if the group is closed.
+   */
+  public void submit(List<RequestInfo> requestInfos, ResponseQueue responseQueue) {
+    if (!isOpen.get()) {
+      throw new IllegalStateException("The NetworkClientEventLoopGroup is closed.");
+    }
+    if (requestInfos.isEmpty()) {
+      return;
+    }
+    boolean[] toWakeup = new boolean[eventLoops.size()];
+    for (RequestInfo requestInfo : requestInfos) {
+      int index = getEventLoopIndex(requestInfo.getHost(), requestInfo.getPort());
+      eventLoops.get(index).newRequests.add(new SubmittedRequest(requestInfo, responseQueue));
+      toWakeup[index] = true;
+    }
+    for (int i = 0; i < toWakeup.length; i++) {
+      if (toWakeup[i]) {
+        eventLoops.get(i).networkClient.wakeup();
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if the group is open. A group closes when {@link #close()} is called, or when one of its
+   * event loops exits due to an error.
+   */
+  public boolean isOpen() {
+    return isOpen.get();
+  }
+
+  /**
+   * @return the number of event loops in this group.
+   */
+  public int getEventLoopCount() {
+    return eventLoops.size();
+  }
+
+  /**
+   * Closes all the event loops and their network clients. Requests that have not received a response by then are
+   * completed with {@link NetworkClientErrorCode#NetworkError}.
+   */
+  @Override
+  public void close() {
+    isOpen.set(false);
+    for (EventLoop eventLoop : eventLoops) {
+      eventLoop.networkClient.wakeup();
+    }
+    for (EventLoop eventLoop : eventLoops) {
+      if (eventLoop.thread != Thread.currentThread()) {
+        try {
+          eventLoop.thread.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * @param host the destination host.
+   * @param port the destination port.
+   * @return the index of the event loop that serves the given destination.
+   */
+  int getEventLoopIndex(String host, Port port) {
+    int hash = 31 * host.hashCode() + port.getPort();
+    return Math.floorMod(hash, eventLoops.size());
+  }
+
+  /**
+   * A request along with the queue that its response has to be delivered to.
+   */
+  private static class SubmittedRequest {
+    final RequestInfo requestInfo;
+    final ResponseQueue responseQueue;
+
+    SubmittedRequest(RequestInfo requestInfo, ResponseQueue responseQueue) {
+      this.requestInfo = requestInfo;
+      this.responseQueue = responseQueue;
+    }
+  }
+
+  /**
+   * A single event loop. Only the loop's thread interacts with its {@link NetworkClient}, except for wakeups.
+   */
+  private class EventLoop implements Runnable {
+    private final int index;
+    private final NetworkClient networkClient;
+    private final int pollTimeoutMs;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<SubmittedRequest> newRequests = new ConcurrentLinkedQueue<>();
+    // only accessed by the loop thread.
+    private final Map<Send, ResponseQueue> requestsInFlight = new IdentityHashMap<>();
+    private final AtomicLong numRequestsInFlight = new AtomicLong(0);
+    private volatile long runTimeMs = 0;
+    private volatile long activeTimeMs = 0;
+
+    EventLoop(int index, NetworkClient networkClient, int pollTimeoutMs) {
+      this.index = index;
+      this.networkClient = networkClient;
+      this.pollTimeoutMs = pollTimeoutMs;
+      thread = Utils.newThread(THREAD_NAME_PREFIX + index, this, true);
+    }
+
+    @Override
+    public void run() {
+      List<RequestInfo> requestInfos = new ArrayList<>();
+      try {
+        while (isOpen.get()) {
+          long startTimeMs = time.milliseconds();
+          long startSelectTimeMs = networkClient.getTotalSelectTimeMs();
+          requestInfos.clear();
+          SubmittedRequest submittedRequest;
+          while ((submittedRequest = newRequests.poll()) != null) {
+            requestInfos.add(submittedRequest.requestInfo);
+            requestsInFlight.put(submittedRequest.requestInfo.getRequest(), submittedRequest.responseQueue);
+          }
+          List<ResponseInfo> responseInfos = networkClient.sendAndPoll(requestInfos, pollTimeoutMs);
+          for (ResponseInfo responseInfo : responseInfos) {
+            ResponseQueue responseQueue = requestsInFlight.remove(responseInfo.getRequest());
+            if (responseQueue != null) {
+              responseQueue.add(responseInfo);
+            } else {
+              logger.error("Received a response for a request that was not submitted to event loop {}", index);
+            }
+          }
+          numRequestsInFlight.set(requestsInFlight.size());
+          long elapsedTimeMs = time.milliseconds() - startTimeMs;
+          long selectTimeMs = networkClient.getTotalSelectTimeMs() - startSelectTimeMs;
+          runTimeMs += elapsedTimeMs;
+          activeTimeMs += Math.max(0, elapsedTimeMs - selectTimeMs);
+        }
+      } catch (Throwable e) {
+        logger.error("Aborting, as event loop {} received an unexpected error: ", index, e);
+        isOpen.set(false);
+      } finally {
+        networkClient.close();
+        failPendingRequests();
+      }
+    }
+
+    /**
+     * Completes all requests that are queued or in flight with {@link NetworkClientErrorCode#NetworkError}.
+     */
+    private void failPendingRequests() {
+      SubmittedRequest submittedRequest;
+      while ((submittedRequest = newRequests.poll()) != null) {
+        requestsInFlight.put(submittedRequest.requestInfo.getRequest(), submittedRequest.responseQueue);
+      }
+      for (Map.Entry<Send, ResponseQueue> entry : requestsInFlight.entrySet()) {
+        entry.getValue().add(new ResponseInfo(entry.getKey(), NetworkClientErrorCode.NetworkError, null));
+      }
+      requestsInFlight.clear();
+      numRequestsInFlight.set(0);
+    }
+
+    /**
+     * Registers the utilization and the number of requests in flight of this loop.
+     * @param metrics the {@link NetworkMetrics} to register with.
+     */
+    void registerMetrics(NetworkMetrics metrics) {
+      Gauge<Double> utilization = new Gauge<Double>() {
+        private long lastRunTimeMs = 0;
+        private long lastActiveTimeMs = 0;
+
+        @Override
+        public synchronized Double getValue() {
+          long currentRunTimeMs = runTimeMs;
+          long currentActiveTimeMs = activeTimeMs;
+          long runTimeDeltaMs = currentRunTimeMs - lastRunTimeMs;
+          double value = runTimeDeltaMs <= 0 ? 0 : (double) (currentActiveTimeMs - lastActiveTimeMs) / runTimeDeltaMs;
+          lastRunTimeMs = currentRunTimeMs;
+          lastActiveTimeMs = currentActiveTimeMs;
+          return value;
+        }
+      };
+      Gauge<Long> requestsInFlight = new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return numRequestsInFlight.get();
+        }
+      };
+      metrics.registerNetworkClientEventLoop(thread.getName(), utilization, requestsInFlight);
+    }
+  }
+}
@@ -27,6 +27,7 @@ public class NetworkClientFactory {
   protected final SSLFactory sslFactory;
   private final int maxConnectionsPerPortPlainText;
   private final int maxConnectionsPerPortSsl;
+  private final int maxRequestsInFlightPerConnection;
   private final int connectionCheckoutTimeoutMs;
   private final Time time;
 
@@ -41,11 +42,30 @@ public class NetworkClientFactory {
    */
   public NetworkClientFactory(NetworkMetrics networkMetrics, NetworkConfig networkConfig, SSLFactory sslFactory,
       int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl, int connectionCheckoutTimeoutMs, Time time) {
+    this(networkMetrics, networkConfig, sslFactory, maxConnectionsPerPortPlainText, maxConnectionsPerPortSsl, 1,
+        connectionCheckoutTimeoutMs, time);
+  }
+
+  /**
+   * Construct a factory using the given parameters.
+   * @param networkMetrics the metrics for the Network layer.
+   * @param networkConfig the configs for the Network layer.
+   * @param sslFactory the sslFactory used for SSL connections.
+   * @param maxConnectionsPerPortPlainText the max number of ports per plain text port for this connection manager.
+   * @param maxConnectionsPerPortSsl the max number of ports per ssl port for this connection manager.
+   * @param maxRequestsInFlightPerConnection the max number of requests in flight on a single connection.
+   * @param connectionCheckoutTimeoutMs the max time a request can wait for a connection to its destination.
+   * @param time the Time instance to use.
+   */
+  public NetworkClientFactory(NetworkMetrics networkMetrics, NetworkConfig networkConfig, SSLFactory sslFactory,
+      int maxConnectionsPerPortPlainText, int maxConnectionsPerPortSsl, int maxRequestsInFlightPerConnection,
+      int connectionCheckoutTimeoutMs, Time time) {
     this.networkMetrics = networkMetrics;
     this.networkConfig = networkConfig;
     this.sslFactory = sslFactory;
     this.maxConnectionsPerPortPlainText = maxConnectionsPerPortPlainText;
     this.maxConnectionsPerPortSsl = maxConnectionsPerPortSsl;
+    this.maxRequestsInFlightPerConnection = maxRequestsInFlightPerConnection;
     this.connectionCheckoutTimeoutMs = connectionCheckoutTimeoutMs;
     this.time = time;
   }
@@ -57,9 +77,14 @@ public class NetworkClientFactory {
    */
   public NetworkClient getNetworkClient()
       throws IOException {
-    Selector selector = new Selector(networkMetrics, time, sslFactory);
+    // responses are handed over to the caller, so only the connection buffers are pooled
+    NetworkBufferPool bufferPool =
+        new NetworkBufferPool(networkConfig.networkBufferPoolCapacityBytes,
+            networkConfig.networkBufferPoolMaxBufferSizeBytes, networkMetrics);
+    Selector selector =
+        new Selector(networkMetrics, time, sslFactory, bufferPool, false, maxRequestsInFlightPerConnection > 1);
     return new NetworkClient(selector, networkConfig, networkMetrics, maxConnectionsPerPortPlainText,
-        maxConnectionsPerPortSsl, connectionCheckoutTimeoutMs, time);
+        maxConnectionsPerPortSsl, maxRequestsInFlightPerConnection, connectionCheckoutTimeoutMs, time);
   }
 }
 
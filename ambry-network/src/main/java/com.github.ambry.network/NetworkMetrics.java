@@ -19,6 +19,7 @@ import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 
@@ -44,6 +45,15 @@ public class NetworkMetrics {
   public final Counter selectorCloseSocketErrorCount;
   private final List<AtomicLong> selectorActiveConnectionsList;
 
+  // NetworkBufferPool metrics
+  public final Counter networkBufferPoolAllocationCount;
+  public final Counter networkBufferPoolHitCount;
+  public final Counter networkBufferPoolUnpooledAllocationCount;
+  public final Counter networkBufferPoolExhaustedCount;
+  public final Counter networkBufferPoolInvalidDeallocationCount;
+  public final Counter networkBufferPoolLeakedBufferCount;
+  private final List<NetworkBufferPool> networkBufferPoolList;
+
   // Plaintext metrics
   // the bytes rate to receive the entire request
   public final Histogram plaintextReceiveBytesRate;
@@ -82,9 +92,11 @@ public class NetworkMetrics {
   public final Histogram requestSendTotalTime;
   public final Histogram requestResponseRoundTripTime;
   public final Histogram requestResponseTotalTime;
+  public final Histogram requestsInFlightOnConnectionAtSend;
 
   public final Counter connectionTimeOutError;
   public final Counter networkClientIOError;
+  public final Counter unmatchedResponseError;
   private List<AtomicLong> networkClientPendingRequestList;
 
   public NetworkMetrics(MetricRegistry registry) {
@@ -105,6 +117,18 @@ public class NetworkMetrics {
     selectorCloseKeyErrorCount = registry.counter(MetricRegistry.name(Selector.class, "SelectorCloseKeyErrorCount"));
     selectorCloseSocketErrorCount =
         registry.counter(MetricRegistry.name(Selector.class, "SelectorCloseSocketErrorCount"));
+    networkBufferPoolAllocationCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolAllocationCount"));
+    networkBufferPoolHitCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolHitCount"));
+    networkBufferPoolUnpooledAllocationCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolUnpooledAllocationCount"));
+    networkBufferPoolExhaustedCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolExhaustedCount"));
+    networkBufferPoolInvalidDeallocationCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolInvalidDeallocationCount"));
+    networkBufferPoolLeakedBufferCount =
+        registry.counter(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolLeakedBufferCount"));
     plaintextReceiveBytesRate = registry.histogram(MetricRegistry.name(Selector.class, "PlaintextReceiveBytesRate"));
     plaintextSendBytesRate = registry.histogram(MetricRegistry.name(Selector.class, "PlaintextSendBytesRate"));
     plaintextReceiveTimePerKB = registry.histogram(MetricRegistry.name(Selector.class, "PlaintextReceiveTimePerKB"));
@@ -138,9 +162,13 @@ public class NetworkMetrics {
     requestResponseTotalTime = registry.histogram(MetricRegistry.name(NetworkClient.class, "RequestResponseTotalTime"));
     connectionTimeOutError = registry.counter(MetricRegistry.name(NetworkClient.class, "ConnectionTimeOutError"));
     networkClientIOError = registry.counter(MetricRegistry.name(NetworkClient.class, "NetworkClientIOError"));
+    requestsInFlightOnConnectionAtSend =
+        registry.histogram(MetricRegistry.name(NetworkClient.class, "RequestsInFlightOnConnectionAtSend"));
+    unmatchedResponseError = registry.counter(MetricRegistry.name(NetworkClient.class, "UnmatchedResponseError"));
 
     selectorActiveConnectionsList = new ArrayList<>();
     networkClientPendingRequestList = new ArrayList<>();
+    networkBufferPoolList = new CopyOnWriteArrayList<>();
 
     final Gauge<Long> selectorActiveConnectionsCount = new Gauge<Long>() {
       @Override
@@ -167,6 +195,32 @@ public class NetworkMetrics {
     };
     registry.register(MetricRegistry.name(NetworkClient.class, "NetworkClientPendingConnectionsCount"),
         networkClientPendingRequestsCount);
+
+    final Gauge<Long> networkBufferPoolAllocatedBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        long allocatedBytes = 0;
+        for (NetworkBufferPool pool : networkBufferPoolList) {
+          allocatedBytes += pool.allocatedBytes();
+        }
+        return allocatedBytes;
+      }
+    };
+    registry.register(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolAllocatedBytes"),
+        networkBufferPoolAllocatedBytes);
+
+    final Gauge<Long> networkBufferPoolOutstandingBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        long outstandingBytes = 0;
+        for (NetworkBufferPool pool : networkBufferPoolList) {
+          outstandingBytes += pool.outstandingBytes();
+        }
+        return outstandingBytes;
+      }
+    };
+    registry.register(MetricRegistry.name(NetworkBufferPool.class, "NetworkBufferPoolOutstandingBytes"),
+        networkBufferPoolOutstandingBytes);
   }
 
   /**
@@ -184,6 +238,35 @@ public class NetworkMetrics {
   void registerNetworkClientPendingConnections(final AtomicLong numPendingConnections) {
     networkClientPendingRequestList.add(numPendingConnections);
   }
+
+  /**
+   * Registers the metrics of an event loop of a {@link NetworkClientEventLoopGroup}
+   * @param eventLoopName the unique name of the event loop
+   * @param utilization the fraction of time the event loop spent doing work rather than waiting for network events
+   * @param requestsInFlight the number of requests the event loop has accepted but not yet responded to
+   */
+  void registerNetworkClientEventLoop(String eventLoopName, Gauge<Double> utilization, Gauge<Long> requestsInFlight) {
+    registry.register(MetricRegistry.name(NetworkClientEventLoopGroup.class, eventLoopName + "Utilization"),
+        utilization);
+    registry.register(MetricRegistry.name(NetworkClientEventLoopGroup.class, eventLoopName + "RequestsInFlight"),
+        requestsInFlight);
+  }
+
+  /**
+   * Registers a {@link NetworkBufferPool} whose memory usage is to be reported
+   * @param pool the {@link NetworkBufferPool} to report on
+   */
+  void registerNetworkBufferPool(NetworkBufferPool pool) {
+    networkBufferPoolList.add(pool);
+  }
+
+  /**
+   * Stops reporting the memory usage of a closed {@link NetworkBufferPool}
+   * @param pool the {@link NetworkBufferPool} that was closed
+   */
+  void deregisterNetworkBufferPool(NetworkBufferPool pool) {
+    networkBufferPoolList.remove(pool);
+  }
 }
 
 class ServerNetworkMetrics extends NetworkMetrics {
@@ -30,7 +30,12 @@ public class PlainTextTransmission extends Transmission {
 
   public PlainTextTransmission(String connectionId, SocketChannel socketChannel, SelectionKey key, Time time,
       NetworkMetrics metrics) {
-    super(connectionId, socketChannel, key, time, metrics);
+    this(connectionId, socketChannel, key, time, metrics, null);
+  }
+
+  public PlainTextTransmission(String connectionId, SocketChannel socketChannel, SelectionKey key, Time time,
+      NetworkMetrics metrics, NetworkBufferPool receiveBufferPool) {
+    super(connectionId, socketChannel, key, time, metrics, receiveBufferPool);
   }
 
   /**
@@ -61,7 +66,7 @@ public class PlainTextTransmission extends Transmission {
   public boolean read()
       throws IOException {
     if (!hasReceive()) {
-      networkReceive = new NetworkReceive(getConnectionId(), new BoundedByteBufferReceive(), time);
+      networkReceive = newNetworkReceive();
     }
     long startTimeMs = SystemTime.getInstance().milliseconds();
     long bytesRead = networkReceive.getReceivedBytes().readFrom(socketChannel);
@@ -103,8 +108,10 @@ public class PlainTextTransmission extends Transmission {
    */
   @Override
   public void close() {
+    releaseReceive();
     clearReceive();
     clearSend();
+    clearQueuedSends();
     key.attach(null);
     key.cancel();
     try {
@@ -21,6 +21,7 @@ public class RequestInfo {
   private final String host;
   private final Port port;
   private final Send request;
+  private final Integer correlationId;
 
   /**
    * Construct a RequestInfo with the given parameters
@@ -29,9 +30,23 @@ public class RequestInfo {
    * @param request the data to be sent.
    */
   public RequestInfo(String host, Port port, Send request) {
+    this(host, port, request, null);
+  }
+
+  /**
+   * Construct a RequestInfo with the given parameters
+   * @param host the host to which the data is meant for
+   * @param port the port on the host to which the data is meant for
+   * @param request the data to be sent.
+   * @param correlationId the correlation id of the request, which the response to the request will carry. This is
+   *                      required for the response to be matched to the request when multiple requests are in flight
+   *                      on the same connection. Can be null.
+   */
+  public RequestInfo(String host, Port port, Send request, Integer correlationId) {
     this.host = host;
     this.port = port;
     this.request = request;
+    this.correlationId = correlationId;
   }
 
   /**
@@ -54,4 +69,11 @@ public class RequestInfo {
   public Send getRequest() {
     return request;
   }
+
+  /**
+   * @return the correlation id of the request associated with this object, or null if it is not known.
+   */
+  public Integer getCorrelationId() {
+    return correlationId;
+  }
 }
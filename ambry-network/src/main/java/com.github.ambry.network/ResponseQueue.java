@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The queue into which a {@link NetworkClientEventLoopGroup} delivers the {@link ResponseInfo}s for requests that were
+ * submitted along with it. A queue is typically owned by a single consumer thread that alternates between submitting
+ * requests and polling for responses.
+ * <p>
+ * This class is thread safe.
+ */
+public class ResponseQueue {
+  private final Object lock = new Object();
+  private List<ResponseInfo> responses = new ArrayList<>();
+  private boolean wakeupPending = false;
+
+  /**
+   * Adds a response to the queue and wakes up the consumer if it is waiting.
+   * @param responseInfo the {@link ResponseInfo} to add.
+   */
+  void add(ResponseInfo responseInfo) {
+    synchronized (lock) {
+      responses.add(responseInfo);
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Waits until there is at least one response in the queue, {@link #wakeup()} is called or {@code timeoutMs} elapses,
+   * and returns all the responses in the queue.
+   * @param timeoutMs the maximum time to wait in ms.
+   * @return the responses that were in the queue. Can be empty.
+   * @throws InterruptedException if the calling thread is interrupted while waiting.
+   */
+  public List<ResponseInfo> poll(long timeoutMs)
+      throws InterruptedException {
+    synchronized (lock) {
+      long deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (responses.isEmpty() && !wakeupPending) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNs - System.nanoTime());
+        if (remainingMs <= 0) {
+          break;
+        }
+        lock.wait(remainingMs);
+      }
+      wakeupPending = false;
+      List<ResponseInfo> polled = responses;
+      responses = new ArrayList<>();
+      return polled;
+    }
+  }
+
+  /**
+   * Wakes up the consumer if it is waiting in {@link #poll(long)}, or makes its next call return immediately.
+   */
+  public void wakeup() {
+    synchronized (lock) {
+      wakeupPending = true;
+      lock.notifyAll();
+    }
+  }
+}
@@ -15,7 +15,6 @@ package com.github.ambry.network;
 
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
-import com.github.ambry.utils.Utils;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -51,16 +50,31 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   // buffer used to hold the decrypted data decrypted from networkReadBuffer
   private ByteBuffer emptyBuf = ByteBuffer.allocate(0);
   private long handshakeStartTime;
+  // pool that netReadBuffer, netWriteBuffer and appReadBuffer are allocated from. Can be null
+  private final NetworkBufferPool bufferPool;
 
   public SSLTransmission(SSLFactory sslFactory, String connectionId, SocketChannel socketChannel, SelectionKey key,
       String remoteHost, int remotePort, Time time, NetworkMetrics metrics, SSLFactory.Mode mode)
       throws IOException {
-    super(connectionId, socketChannel, key, time, metrics);
+    this(sslFactory, connectionId, socketChannel, key, remoteHost, remotePort, time, metrics, mode, null, null);
+  }
+
+  public SSLTransmission(SSLFactory sslFactory, String connectionId, SocketChannel socketChannel, SelectionKey key,
+      String remoteHost, int remotePort, Time time, NetworkMetrics metrics, SSLFactory.Mode mode,
+      NetworkBufferPool bufferPool, NetworkBufferPool receiveBufferPool)
+      throws IOException {
+    super(connectionId, socketChannel, key, time, metrics, receiveBufferPool);
     this.sslEngine = sslFactory.createSSLEngine(remoteHost, remotePort, mode);
-    this.netReadBuffer = ByteBuffer.allocate(packetBufferSize());
-    this.netWriteBuffer = ByteBuffer.allocate(packetBufferSize());
-    this.appReadBuffer = ByteBuffer.allocate(applicationBufferSize());
-    startHandshake();
+    this.bufferPool = bufferPool;
+    this.netReadBuffer = allocateBuffer(packetBufferSize());
+    this.netWriteBuffer = allocateBuffer(packetBufferSize());
+    this.appReadBuffer = allocateBuffer(applicationBufferSize());
+    try {
+      startHandshake();
+    } catch (IOException | RuntimeException e) {
+      releaseBuffers();
+      throw e;
+    }
   }
 
   /**
@@ -116,6 +130,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
       return;
     }
     closing = true;
+    releaseReceive();
     sslEngine.closeOutbound();
     try {
       if (!flush(netWriteBuffer)) {
@@ -139,6 +154,8 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
       metrics.selectorCloseSocketErrorCount.inc();
       logger.warn("Failed to send SSL close message ", ie);
     }
+    releaseBuffers();
+    clearQueuedSends();
     key.attach(null);
     key.cancel();
   }
@@ -206,7 +223,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
           handshakeResult = handshakeWrap(write);
           if (handshakeResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
             int currentPacketBufferSize = packetBufferSize();
-            netWriteBuffer = Utils.ensureCapacity(netWriteBuffer, currentPacketBufferSize);
+            netWriteBuffer = ensureCapacity(netWriteBuffer, currentPacketBufferSize);
             if (netWriteBuffer.position() >= currentPacketBufferSize) {
               throw new IllegalStateException("Buffer overflow when available data size (" + netWriteBuffer.position() +
                   ") >= network buffer size (" + currentPacketBufferSize + ")");
@@ -233,13 +250,13 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
           handshakeResult = handshakeUnwrap(read);
           if (handshakeResult.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
             int currentPacketBufferSize = packetBufferSize();
-            netReadBuffer = Utils.ensureCapacity(netReadBuffer, currentPacketBufferSize);
+            netReadBuffer = ensureCapacity(netReadBuffer, currentPacketBufferSize);
             if (netReadBuffer.position() >= currentPacketBufferSize) {
               throw new IllegalStateException("Buffer underflow when there is available data");
             }
           } else if (handshakeResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
             int currentAppBufferSize = applicationBufferSize();
-            appReadBuffer = Utils.ensureCapacity(appReadBuffer, currentAppBufferSize);
+            appReadBuffer = ensureCapacity(appReadBuffer, currentAppBufferSize);
             if (appReadBuffer.position() > currentAppBufferSize) {
               throw new IllegalStateException("Buffer underflow when available data size (" + appReadBuffer.position() +
                   ") > packet buffer size (" + currentAppBufferSize + ")");
@@ -391,7 +408,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
   public boolean read()
       throws IOException {
     if (!hasReceive()) {
-      this.networkReceive = new NetworkReceive(getConnectionId(), new BoundedByteBufferReceive(), time);
+      this.networkReceive = newNetworkReceive();
     }
     long startTimeMs = SystemTime.getInstance().milliseconds();
     long bytesRead = networkReceive.getReceivedBytes().readFrom(this);
@@ -430,7 +447,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
     }
 
     if (dst.remaining() > 0) {
-      netReadBuffer = Utils.ensureCapacity(netReadBuffer, packetBufferSize());
+      netReadBuffer = ensureCapacity(netReadBuffer, packetBufferSize());
       if (netReadBuffer.remaining() > 0) {
         int netread = socketChannel.read(netReadBuffer);
         if (netread == 0) {
@@ -463,7 +480,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
           read += readFromAppBuffer(dst);
         } else if (unwrapResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
           int currentApplicationBufferSize = applicationBufferSize();
-          appReadBuffer = Utils.ensureCapacity(appReadBuffer, currentApplicationBufferSize);
+          appReadBuffer = ensureCapacity(appReadBuffer, currentApplicationBufferSize);
           if (appReadBuffer.position() >= currentApplicationBufferSize) {
             throw new IllegalStateException("Buffer overflow when available data size (" + appReadBuffer.position() +
                 ") >= application buffer size (" + currentApplicationBufferSize + ")");
@@ -479,7 +496,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
           }
         } else if (unwrapResult.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
           int currentPacketBufferSize = packetBufferSize();
-          netReadBuffer = Utils.ensureCapacity(netReadBuffer, currentPacketBufferSize);
+          netReadBuffer = ensureCapacity(netReadBuffer, currentPacketBufferSize);
           if (netReadBuffer.position() >= currentPacketBufferSize) {
             throw new IllegalStateException("Buffer underflow when available data size (" + netReadBuffer.position() +
                 ") > packet buffer size (" + currentPacketBufferSize + ")");
@@ -562,7 +579,7 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
       flush(netWriteBuffer);
     } else if (wrapResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
       int currentPacketBufferSize = packetBufferSize();
-      netWriteBuffer = Utils.ensureCapacity(netWriteBuffer, packetBufferSize());
+      netWriteBuffer = ensureCapacity(netWriteBuffer, packetBufferSize());
       if (netWriteBuffer.position() >= currentPacketBufferSize) {
         throw new IllegalStateException(
             "SSL BUFFER_OVERFLOW when available data size (" + netWriteBuffer.position() + ") >= network buffer size ("
@@ -600,6 +617,44 @@ public class SSLTransmission extends Transmission implements ReadableByteChannel
     return remaining;
   }
 
+  /**
+   * Allocates a buffer from the pool, or on the heap if there is no pool
+   * @param size the size of the buffer in bytes
+   */
+  private ByteBuffer allocateBuffer(int size) {
+    return bufferPool == null ? ByteBuffer.allocate(size) : bufferPool.allocate(size, 0);
+  }
+
+  /**
+   * Returns a buffer that has at least {@code newLength} bytes of capacity, with the contents of
+   * {@code existingBuffer} copied into it. A buffer that is replaced is returned to the pool.
+   * @param existingBuffer the buffer to grow
+   * @param newLength the required capacity in bytes
+   */
+  private ByteBuffer ensureCapacity(ByteBuffer existingBuffer, int newLength) {
+    if (newLength > existingBuffer.capacity()) {
+      ByteBuffer newBuffer = allocateBuffer(newLength);
+      existingBuffer.flip();
+      newBuffer.put(existingBuffer);
+      if (bufferPool != null) {
+        bufferPool.deallocate(existingBuffer);
+      }
+      return newBuffer;
+    }
+    return existingBuffer;
+  }
+
+  /**
+   * Returns netReadBuffer, netWriteBuffer and appReadBuffer to the pool
+   */
+  private void releaseBuffers() {
+    if (bufferPool != null) {
+      bufferPool.deallocate(netReadBuffer);
+      bufferPool.deallocate(netWriteBuffer);
+      bufferPool.deallocate(appReadBuffer);
+    }
+  }
+
   private int packetBufferSize() {
     return sslEngine.getSession().getPacketBufferSize();
   }
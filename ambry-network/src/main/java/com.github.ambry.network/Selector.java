@@ -80,12 +80,52 @@ public class Selector implements Selectable {
   private final AtomicLong IdGenerator;
   private final AtomicLong numActiveConnections;
   private final SSLFactory sslFactory;
+  private final NetworkBufferPool bufferPool;
+  private final NetworkBufferPool receiveBufferPool;
+  private final boolean pipelineSends;
+  private long totalSelectTimeMs = 0;
 
   /**
    * Create a new selector
    */
   public Selector(NetworkMetrics metrics, Time time, SSLFactory sslFactory)
       throws IOException {
+    this(metrics, time, sslFactory, null, false);
+  }
+
+  /**
+   * Create a new selector whose connections allocate their buffers from {@code bufferPool}. The selector owns the pool
+   * and closes it when it is closed.
+   * @param metrics the {@link NetworkMetrics} to use.
+   * @param time the {@link Time} instance to use.
+   * @param sslFactory the {@link SSLFactory} used for SSL connections.
+   * @param bufferPool the {@link NetworkBufferPool} to allocate connection buffers from. Can be null.
+   * @param poolReceiveBuffers if true, the payloads of completed receives are also allocated from {@code bufferPool}
+   *                           and the consumer of {@link #completedReceives()} must call
+   *                           {@link NetworkReceive#release()} on each of them once it is done.
+   */
+  public Selector(NetworkMetrics metrics, Time time, SSLFactory sslFactory, NetworkBufferPool bufferPool,
+      boolean poolReceiveBuffers)
+      throws IOException {
+    this(metrics, time, sslFactory, bufferPool, poolReceiveBuffers, false);
+  }
+
+  /**
+   * Create a new selector whose connections allocate their buffers from {@code bufferPool}. The selector owns the pool
+   * and closes it when it is closed.
+   * @param metrics the {@link NetworkMetrics} to use.
+   * @param time the {@link Time} instance to use.
+   * @param sslFactory the {@link SSLFactory} used for SSL connections.
+   * @param bufferPool the {@link NetworkBufferPool} to allocate connection buffers from. Can be null.
+   * @param poolReceiveBuffers if true, the payloads of completed receives are also allocated from {@code bufferPool}
+   *                           and the consumer of {@link #completedReceives()} must call
+   *                           {@link NetworkReceive#release()} on each of them once it is done.
+   * @param pipelineSends if true, a send to a connection that already has a send in progress is queued and written
+   *                      once the sends before it complete, instead of being rejected.
+   */
+  public Selector(NetworkMetrics metrics, Time time, SSLFactory sslFactory, NetworkBufferPool bufferPool,
+      boolean poolReceiveBuffers, boolean pipelineSends)
+      throws IOException {
     this.nioSelector = java.nio.channels.Selector.open();
     this.time = time;
     this.keyMap = new HashMap<String, SelectionKey>();
@@ -100,6 +140,9 @@ public class Selector implements Selectable {
     unreadyConnections = new HashSet<>();
     metrics.registerSelectorActiveConnections(numActiveConnections);
     this.sslFactory = sslFactory;
+    this.bufferPool = bufferPool;
+    this.receiveBufferPool = poolReceiveBuffers ? bufferPool : null;
+    this.pipelineSends = pipelineSends;
   }
 
   /**
@@ -159,7 +202,7 @@ public class Selector implements Selectable {
     try {
       transmission = TransmissionFactory
           .getTransmission(connectionId, channel, key, address.getHostName(), address.getPort(), time, metrics,
-              portType, sslFactory, SSLFactory.Mode.CLIENT);
+              portType, sslFactory, SSLFactory.Mode.CLIENT, bufferPool, receiveBufferPool);
     } catch (IOException e) {
       logger.error("IOException on transmission creation " + e);
       channel.socket().close();
@@ -186,7 +229,7 @@ public class Selector implements Selectable {
     try {
       transmission = TransmissionFactory
           .getTransmission(connectionId, channel, key, socket.getInetAddress().getHostAddress(), socket.getPort(), time,
-              metrics, portType, sslFactory, SSLFactory.Mode.SERVER);
+              metrics, portType, sslFactory, SSLFactory.Mode.SERVER, bufferPool, receiveBufferPool);
     } catch (IOException e) {
       logger.error("IOException on transmission creation " + e);
       socket.close();
@@ -233,11 +276,16 @@ public class Selector implements Selectable {
       metrics.selectorNioCloseErrorCount.inc();
       logger.error("Exception closing nioSelector:", e);
     }
+    if (bufferPool != null) {
+      bufferPool.close();
+    }
   }
 
   /**
    * Queue the given request for sending in the subsequent {@poll(long)} calls
    * @param networkSend The NetworkSend that is ready to be sent
+   * @throws IllegalStateException if there is no connection for the send, or if sends are not pipelined and the
+   *                               connection already has a send in progress.
    */
   public void send(NetworkSend networkSend) {
     SelectionKey key = keyForId(networkSend.getConnectionId());
@@ -246,7 +294,11 @@ public class Selector implements Selectable {
     }
     Transmission transmission = getTransmission(key);
     try {
-      transmission.setNetworkSend(networkSend);
+      if (pipelineSends) {
+        transmission.queueNetworkSend(networkSend);
+      } else {
+        transmission.setNetworkSend(networkSend);
+      }
     } catch (CancelledKeyException e) {
       logger.debug("Ignoring response for closed socket.");
       close(key);
@@ -309,6 +361,7 @@ public class Selector implements Selectable {
     long endSelect = time.milliseconds();
     this.metrics.selectorSelectTime.update(endSelect - startSelect);
     this.metrics.selectorSelectCount.inc();
+    totalSelectTimeMs += endSelect - startSelect;
 
     if (readyKeys > 0) {
       Set<SelectionKey> keys = nioSelector.selectedKeys();
@@ -506,6 +559,13 @@ public class Selector implements Selectable {
     this.metrics.selectorConnectionClosed.inc();
   }
 
+  /**
+   * @return the total time in ms that this selector has spent blocked waiting for I/O in {@link #poll(long, List)}.
+   */
+  long getTotalSelectTimeMs() {
+    return totalSelectTimeMs;
+  }
+
   /**
    * Get the selection key associated with this numeric id
    */
@@ -546,7 +606,9 @@ public class Selector implements Selectable {
         this.completedSends.add(transmission.getNetworkSend());
         metrics.sendInFlight.dec();
         transmission.clearSend();
-        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+        if (!transmission.startNextSend()) {
+          key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+        }
       }
     } finally {
       long writeTime = time.milliseconds() - startTimeToWriteInMs;
@@ -13,6 +13,7 @@
  */
 package com.github.ambry.network;
 
+import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.SystemTime;
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,19 +26,33 @@ import org.slf4j.LoggerFactory;
 
 
 // The request at the network layer
-class SocketServerRequest implements Request {
+class SocketServerRequest implements ServerRequest {
   private final int processor;
   private final String connectionId;
   private final InputStream input;
+  private final NetworkReceive networkReceive;
   private final long startTimeInMs;
+  private final long startTimeInNs;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public SocketServerRequest(int processor, String connectionId, InputStream input)
       throws IOException {
+    this(processor, connectionId, input, null);
+  }
+
+  public SocketServerRequest(int processor, String connectionId, NetworkReceive networkReceive)
+      throws IOException {
+    this(processor, connectionId, new ByteBufferInputStream(networkReceive.getReceivedBytes().getPayload()),
+        networkReceive);
+  }
+
+  private SocketServerRequest(int processor, String connectionId, InputStream input, NetworkReceive networkReceive) {
     this.processor = processor;
     this.connectionId = connectionId;
     this.input = input;
+    this.networkReceive = networkReceive;
     this.startTimeInMs = SystemTime.getInstance().milliseconds();
+    this.startTimeInNs = SystemTime.getInstance().nanoseconds();
     logger.trace("Processor {} received request : {}", processor, connectionId);
   }
 
@@ -51,6 +66,11 @@ class SocketServerRequest implements Request {
     return startTimeInMs;
   }
 
+  @Override
+  public long getStartTimeInNs() {
+    return startTimeInNs;
+  }
+
   public int getProcessor() {
     return processor;
   }
@@ -58,6 +78,15 @@ class SocketServerRequest implements Request {
   public String getConnectionId() {
     return connectionId;
   }
+
+  /**
+   * Returns the buffer holding the request to its pool. The request must have been fully handled.
+   */
+  void release() {
+    if (networkReceive != null) {
+      networkReceive.release();
+    }
+  }
 }
 
 // The response at the network layer
@@ -67,7 +96,7 @@ class SocketServerResponse implements Response {
   private final Request request;
   private final Send output;
   private final ServerNetworkResponseMetrics metrics;
-  private long startQueueTimeInMs;
+  private long startQueueTimeInNs;
 
   public SocketServerResponse(Request request, Send output, ServerNetworkResponseMetrics metrics) {
     this.request = request;
@@ -89,12 +118,12 @@ class SocketServerResponse implements Response {
   }
 
   public void onEnqueueIntoResponseQueue() {
-    this.startQueueTimeInMs = SystemTime.getInstance().milliseconds();
+    this.startQueueTimeInNs = SystemTime.getInstance().nanoseconds();
   }
 
   public void onDequeueFromResponseQueue() {
     if (metrics != null) {
-      metrics.updateQueueTime(SystemTime.getInstance().milliseconds() - startQueueTimeInMs);
+      metrics.updateQueueTimeInNs(SystemTime.getInstance().nanoseconds() - startQueueTimeInNs);
     }
   }
 
@@ -16,7 +16,6 @@ package com.github.ambry.network;
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.config.NetworkConfig;
 import com.github.ambry.config.SSLConfig;
-import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
@@ -55,6 +54,8 @@ public class SocketServer implements NetworkServer {
   private final int sendBufferSize;
   private final int recvBufferSize;
   private final int maxRequestSize;
+  private final long bufferPoolCapacity;
+  private final int maxPooledBufferSize;
   private final ArrayList<Processor> processors;
   private volatile ArrayList<Acceptor> acceptors;
   private final SocketRequestResponseChannel requestResponseChannel;
@@ -71,6 +72,8 @@ public class SocketServer implements NetworkServer {
     this.sendBufferSize = config.socketSendBufferBytes;
     this.recvBufferSize = config.socketReceiveBufferBytes;
     this.maxRequestSize = config.socketRequestMaxBytes;
+    this.bufferPoolCapacity = config.networkBufferPoolCapacityBytes;
+    this.maxPooledBufferSize = config.networkBufferPoolMaxBufferSizeBytes;
     processors = new ArrayList<Processor>(numProcessorThreads);
     requestResponseChannel = new SocketRequestResponseChannel(numProcessorThreads, maxQueuedRequests);
     metrics = new ServerNetworkMetrics(requestResponseChannel, registry, processors);
@@ -149,7 +152,8 @@ public class SocketServer implements NetworkServer {
       throws IOException, InterruptedException {
     logger.info("Starting {} processor threads", numProcessorThreads);
     for (int i = 0; i < numProcessorThreads; i++) {
-      processors.add(i, new Processor(i, maxRequestSize, requestResponseChannel, metrics, sslFactory));
+      NetworkBufferPool bufferPool = new NetworkBufferPool(bufferPoolCapacity, maxPooledBufferSize, metrics);
+      processors.add(i, new Processor(i, maxRequestSize, requestResponseChannel, metrics, sslFactory, bufferPool));
       Utils.newThread("ambry-processor-" + port + " " + i, processors.get(i), false).start();
     }
 
@@ -414,13 +418,15 @@ class Processor extends AbstractServerThread {
   private static final long pollTimeoutMs = 300;
 
   Processor(int id, int maxRequestSize, RequestResponseChannel channel, ServerNetworkMetrics metrics,
-      SSLFactory sslFactory)
+      SSLFactory sslFactory, NetworkBufferPool bufferPool)
       throws IOException {
     this.maxRequestSize = maxRequestSize;
     this.channel = (SocketRequestResponseChannel) channel;
     this.id = id;
     this.time = SystemTime.getInstance();
-    selector = new Selector(metrics, time, sslFactory);
+    // request payloads are released once the response to the request has been dequeued. Responses are pipelined as
+    // clients may have multiple requests in flight on a connection, whose responses can complete in any order.
+    selector = new Selector(metrics, time, sslFactory, bufferPool, true, true);
     this.metrics = metrics;
   }
 
@@ -438,8 +444,7 @@ class Processor extends AbstractServerThread {
         List<NetworkReceive> completedReceives = selector.completedReceives();
         for (NetworkReceive networkReceive : completedReceives) {
           String connectionId = networkReceive.getConnectionId();
-          SocketServerRequest req = new SocketServerRequest(id, connectionId,
-              new ByteBufferInputStream(networkReceive.getReceivedBytes().getPayload()));
+          SocketServerRequest req = new SocketServerRequest(id, connectionId, networkReceive);
           channel.sendRequest(req);
         }
       }
@@ -464,6 +469,7 @@ class Processor extends AbstractServerThread {
     while (curr != null) {
       curr.onDequeueFromResponseQueue();
       SocketServerRequest request = (SocketServerRequest) curr.getRequest();
+      request.release();
       String connectionId = request.getConnectionId();
       try {
         if (curr.getPayload() == null) {
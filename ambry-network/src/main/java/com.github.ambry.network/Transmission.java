@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 
 /**
@@ -30,19 +32,33 @@ public abstract class Transmission {
 
   private String connectionId;
   protected NetworkSend networkSend = null;
+  // sends that are waiting for the send in progress to complete.
+  private final Queue<NetworkSend> queuedSends = new ArrayDeque<>();
   protected NetworkReceive networkReceive = null;
   protected SocketChannel socketChannel = null;
   protected SelectionKey key = null;
   protected final Time time;
   protected final NetworkMetrics metrics;
+  protected final NetworkBufferPool receiveBufferPool;
 
   public Transmission(String connectionId, SocketChannel socketChannel, SelectionKey key, Time time,
       NetworkMetrics metrics) {
+    this(connectionId, socketChannel, key, time, metrics, null);
+  }
+
+  /**
+   * @param receiveBufferPool the {@link NetworkBufferPool} to allocate the payloads of {@link NetworkReceive}s from.
+   *                          If non-null, the consumer of a completed {@link NetworkReceive} is responsible for
+   *                          calling {@link NetworkReceive#release()}.
+   */
+  public Transmission(String connectionId, SocketChannel socketChannel, SelectionKey key, Time time,
+      NetworkMetrics metrics, NetworkBufferPool receiveBufferPool) {
     this.connectionId = connectionId;
     this.socketChannel = socketChannel;
     this.key = key;
     this.time = time;
     this.metrics = metrics;
+    this.receiveBufferPool = receiveBufferPool;
   }
 
   /**
@@ -70,6 +86,31 @@ public abstract class Transmission {
     key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
   }
 
+  /**
+   * Setting network send to be written to the underlying channel asynchronously, or queueing it behind the
+   * networkSend in progress if there is one. Queued sends are started by {@link #startNextSend()}.
+   * @param networkSend the {@link NetworkSend} to write.
+   */
+  public void queueNetworkSend(NetworkSend networkSend) {
+    if (hasSend()) {
+      queuedSends.add(networkSend);
+    } else {
+      setNetworkSend(networkSend);
+    }
+  }
+
+  /**
+   * Starts the oldest queued networkSend, if there is one and no networkSend is in progress.
+   * @return true if a networkSend was started, false otherwise.
+   */
+  public boolean startNextSend() {
+    if (hasSend() || queuedSends.isEmpty()) {
+      return false;
+    }
+    setNetworkSend(queuedSends.poll());
+    return true;
+  }
+
   /**
    * Prepare the channel to accept read and write calls
    * @throws IOException
@@ -151,10 +192,34 @@ public abstract class Transmission {
     networkSend = null;
   }
 
+  /**
+   * Drops the networkSends that are queued behind the one in progress.
+   */
+  protected void clearQueuedSends() {
+    queuedSends.clear();
+  }
+
   public boolean hasReceive() {
     return networkReceive != null;
   }
 
+  /**
+   * Creates the {@link NetworkReceive} for the next incoming request or response on this connection
+   */
+  protected NetworkReceive newNetworkReceive() {
+    return new NetworkReceive(getConnectionId(), new BoundedByteBufferReceive(receiveBufferPool), time);
+  }
+
+  /**
+   * Releases the buffer of a {@link NetworkReceive} that is still in progress, if any. Completed receives are owned by
+   * their consumer and are not affected.
+   */
+  protected void releaseReceive() {
+    if (networkReceive != null) {
+      networkReceive.release();
+    }
+  }
+
   public void clearReceive() {
     networkReceive = null;
   }
@@ -30,14 +30,28 @@ public class TransmissionFactory {
       String remoteHost, int remotePort, Time time, NetworkMetrics metrics, PortType portType, SSLFactory sslFactory,
       SSLFactory.Mode mode)
       throws IOException {
+    return getTransmission(connectionId, socketChannel, key, remoteHost, remotePort, time, metrics, portType,
+        sslFactory, mode, null, null);
+  }
+
+  /**
+   * Creates a {@link Transmission} for the given port type.
+   * @param bufferPool the {@link NetworkBufferPool} used for the internal buffers of the transmission. Can be null.
+   * @param receiveBufferPool the {@link NetworkBufferPool} used for the payloads of received requests or responses.
+   *                          Can be null. If non-null, consumers must release completed receives.
+   */
+  public static Transmission getTransmission(String connectionId, SocketChannel socketChannel, SelectionKey key,
+      String remoteHost, int remotePort, Time time, NetworkMetrics metrics, PortType portType, SSLFactory sslFactory,
+      SSLFactory.Mode mode, NetworkBufferPool bufferPool, NetworkBufferPool receiveBufferPool)
+      throws IOException {
     if (portType == PortType.PLAINTEXT) {
-      return new PlainTextTransmission(connectionId, socketChannel, key, time, metrics);
+      return new PlainTextTransmission(connectionId, socketChannel, key, time, metrics, receiveBufferPool);
     } else if (portType == PortType.SSL) {
       SSLTransmission sslTransmission = null;
       try {
         sslTransmission =
             new SSLTransmission(sslFactory, connectionId, socketChannel, key, remoteHost, remotePort, time, metrics,
-                mode);
+                mode, bufferPool, receiveBufferPool);
         metrics.sslTransmissionInitializationCount.inc();
       } catch (IOException e) {
         metrics.sslTransmissionInitializationErrorCount.inc();
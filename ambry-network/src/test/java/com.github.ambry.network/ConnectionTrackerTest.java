@@ -199,6 +199,57 @@ public class ConnectionTrackerTest {
     assertCounts(totalConnectionsCount, availableCount);
   }
 
+  /**
+   * Tests that a connection can be checked out multiple times when multiple requests in flight per connection are
+   * allowed, and that connections are handed out in a round robin fashion.
+   */
+  @Test
+  public void testMultipleRequestsInFlightPerConnection() {
+    int maxRequestsInFlight = 3;
+    connectionTracker = new ConnectionTracker(2, 2, maxRequestsInFlight);
+    Port port = new Port(100, PortType.SSL);
+    Assert.assertNull(connectionTracker.checkOutConnection("host1", port));
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(connectionTracker.mayCreateNewConnection("host1", port));
+      connectionTracker.startTrackingInitiatedConnection("host1", port, mockNewConnection("host1", port));
+    }
+    Assert.assertFalse(connectionTracker.mayCreateNewConnection("host1", port));
+    List<String> established = getNewlyEstablishedConnections();
+    for (String conn : established) {
+      connectionTracker.checkInConnection(conn);
+    }
+    assertCounts(2, 2);
+
+    // check outs alternate between the connections until each has the max requests in flight.
+    List<String> checkedOut = new ArrayList<String>();
+    for (int i = 0; i < 2 * maxRequestsInFlight; i++) {
+      String conn = connectionTracker.checkOutConnection("host1", port);
+      Assert.assertEquals("Connections should be checked out in a round robin fashion", established.get(i % 2), conn);
+      checkedOut.add(conn);
+    }
+    assertCounts(2, 0);
+    Assert.assertNull("All connections are saturated", connectionTracker.checkOutConnection("host1", port));
+
+    // a single check in makes the connection available again.
+    connectionTracker.checkInConnection(checkedOut.get(0));
+    assertCounts(2, 1);
+    Assert.assertEquals(checkedOut.get(0), connectionTracker.checkOutConnection("host1", port));
+    assertCounts(2, 0);
+
+    // release everything on the first connection and remove the second one with requests in flight.
+    for (int i = 0; i < maxRequestsInFlight; i++) {
+      connectionTracker.checkInConnection(established.get(0));
+    }
+    connectionTracker.removeConnection(established.get(1));
+    assertCounts(1, 1);
+    for (int i = 0; i < maxRequestsInFlight; i++) {
+      Assert.assertEquals(established.get(0), connectionTracker.checkOutConnection("host1", port));
+    }
+    Assert.assertNull(connectionTracker.checkOutConnection("host1", port));
+    Assert.assertTrue("A new connection can replace the removed one",
+        connectionTracker.mayCreateNewConnection("host1", port));
+  }
+
   private void assertCounts(int totalConnectionsCount, int availableCount) {
     Assert.assertEquals("total connections should match", totalConnectionsCount,
         connectionTracker.getTotalConnectionsCount());
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.network;
+
+import com.codahale.metrics.MetricRegistry;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link NetworkBufferPool}.
+ */
+public class NetworkBufferPoolTest {
+  private final NetworkMetrics metrics = new NetworkMetrics(new MetricRegistry());
+
+  /**
+   * Tests that buffers are rounded up to their size class, are direct, and are reused once deallocated.
+   */
+  @Test
+  public void testAllocateDeallocate() {
+    NetworkBufferPool pool = new NetworkBufferPool(64 * 1024, 16 * 1024, metrics);
+    ByteBuffer buffer = pool.allocate(1000, 0);
+    assertTrue("Pooled buffer should be direct", buffer.isDirect());
+    assertEquals("Unexpected limit", 1000, buffer.limit());
+    assertEquals("Unexpected capacity", 1024, buffer.capacity());
+    assertEquals("Unexpected allocated bytes", 1024, pool.allocatedBytes());
+    assertEquals("Unexpected outstanding bytes", 1024, pool.outstandingBytes());
+
+    ByteBuffer small = pool.allocate(1, 0);
+    assertEquals("Smallest size class not used", NetworkBufferPool.Min_Buffer_Size, small.capacity());
+    pool.deallocate(small);
+
+    pool.deallocate(buffer);
+    assertEquals("Buffer should have been returned", 0, pool.outstandingBytes());
+    ByteBuffer reused = pool.allocate(1024, 0);
+    assertSame("Buffer should have been reused", buffer, reused);
+    assertEquals("Unexpected position", 0, reused.position());
+    assertEquals("Unexpected limit", 1024, reused.limit());
+    assertEquals("Unexpected pool hits", 1, metrics.networkBufferPoolHitCount.getCount());
+    assertEquals("No new memory should have been allocated", 1024 + NetworkBufferPool.Min_Buffer_Size,
+        pool.allocatedBytes());
+    pool.deallocate(reused);
+    pool.close();
+    assertEquals("No buffers should have leaked", 0, metrics.networkBufferPoolLeakedBufferCount.getCount());
+  }
+
+  /**
+   * Tests that requests that cannot be served from the pool fall back to heap buffers.
+   */
+  @Test
+  public void testUnpooledAllocations() {
+    NetworkBufferPool pool = new NetworkBufferPool(2048, 1024, metrics);
+    ByteBuffer large = pool.allocate(1025, 0);
+    assertFalse("Buffer above the max pooled size should not be direct", large.isDirect());
+    assertEquals("Unexpected capacity", 1025, large.capacity());
+    assertEquals("Unexpected unpooled allocations", 1, metrics.networkBufferPoolUnpooledAllocationCount.getCount());
+
+    ByteBuffer first = pool.allocate(1024, 0);
+    ByteBuffer second = pool.allocate(1024, 0);
+    ByteBuffer overflow = pool.allocate(1024, 0);
+    assertTrue("Buffer within capacity should be direct", first.isDirect() && second.isDirect());
+    assertFalse("Buffer beyond capacity should not be direct", overflow.isDirect());
+    assertEquals("Unexpected exhausted count", 1, metrics.networkBufferPoolExhaustedCount.getCount());
+    assertEquals("Capacity should not be exceeded", 2048, pool.allocatedBytes());
+
+    // heap buffers are ignored
+    pool.deallocate(large);
+    pool.deallocate(overflow);
+    assertEquals("Unexpected invalid deallocations", 0, metrics.networkBufferPoolInvalidDeallocationCount.getCount());
+    // direct buffers that did not come from the pool are rejected
+    pool.deallocate(ByteBuffer.allocateDirect(1000));
+    pool.deallocate(ByteBuffer.allocateDirect(4096));
+    assertEquals("Unexpected invalid deallocations", 2, metrics.networkBufferPoolInvalidDeallocationCount.getCount());
+
+    pool.deallocate(first);
+    pool.close();
+    assertEquals("Unreleased buffer should be reported as leak", 1,
+        metrics.networkBufferPoolLeakedBufferCount.getCount());
+    assertEquals("Closed pool should not hold memory", 0, pool.allocatedBytes());
+  }
+
+  /**
+   * Tests that a pool with 0 capacity only hands out heap buffers.
+   */
+  @Test
+  public void testDisabledPool() {
+    NetworkBufferPool pool = new NetworkBufferPool(0, 0, metrics);
+    ByteBuffer buffer = pool.allocate(100, 0);
+    assertFalse("Buffer should not be direct", buffer.isDirect());
+    assertEquals("Unexpected capacity", 100, buffer.capacity());
+    pool.deallocate(buffer);
+    pool.close();
+  }
+
+  /**
+   * Tests that the payload of a {@link BoundedByteBufferReceive} is allocated from and released to the pool.
+   */
+  @Test
+  public void testPooledReceive()
+      throws Exception {
+    NetworkBufferPool pool = new NetworkBufferPool(64 * 1024, 16 * 1024, metrics);
+    byte[] payload = new byte[3000];
+    new Random().nextBytes(payload);
+    ByteBuffer request = ByteBuffer.allocate(8 + payload.length);
+    request.putLong(8 + payload.length);
+    request.put(payload);
+    BoundedByteBufferReceive receive = new BoundedByteBufferReceive(pool);
+    receive.readFrom(Channels.newChannel(new ByteArrayInputStream(request.array())));
+    assertTrue("Read should be complete", receive.isReadComplete());
+    ByteBuffer received = receive.getPayload();
+    assertTrue("Payload should be allocated from the pool", received.isDirect());
+    assertEquals("Unexpected payload size", payload.length, received.remaining());
+    byte[] receivedBytes = new byte[payload.length];
+    received.get(receivedBytes);
+    assertArrayEquals("Payload does not match", payload, receivedBytes);
+    assertEquals("Unexpected outstanding bytes", 4096, pool.outstandingBytes());
+    receive.release();
+    receive.release();
+    assertNull("Payload should not be available after release", receive.getPayload());
+    assertEquals("Payload should have been returned", 0, pool.outstandingBytes());
+    assertEquals("Unexpected invalid deallocations", 0, metrics.networkBufferPoolInvalidDeallocationCount.getCount());
+    pool.close();
+  }
+}
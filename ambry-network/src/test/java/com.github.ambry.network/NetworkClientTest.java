@@ -17,12 +17,14 @@ import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.config.NetworkConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.TestUtils;
 import com.github.ambry.utils.Time;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -241,6 +243,117 @@ public class NetworkClientTest {
     } catch (IllegalStateException e) {
     }
   }
+
+  /**
+   * Test that a {@link NetworkClientEventLoopGroup} shards requests by destination and delivers every response to the
+   * {@link ResponseQueue} that the request was submitted with.
+   */
+  @Test
+  public void testEventLoopGroup()
+      throws Exception {
+    final int EVENT_LOOPS = 3;
+    final NetworkConfig networkConfig = new NetworkConfig(new VerifiableProperties(new Properties()));
+    NetworkClientFactory factory =
+        new NetworkClientFactory(new NetworkMetrics(new MetricRegistry()), networkConfig, null, MAX_PORTS_PLAIN_TEXT,
+            MAX_PORTS_SSL, CHECKOUT_TIMEOUT_MS, time) {
+          @Override
+          public NetworkClient getNetworkClient()
+              throws IOException {
+            return new NetworkClient(new MockSelector(), networkConfig, networkMetrics, MAX_PORTS_PLAIN_TEXT,
+                MAX_PORTS_SSL, CHECKOUT_TIMEOUT_MS, time);
+          }
+        };
+    NetworkClientEventLoopGroup group = new NetworkClientEventLoopGroup(factory, EVENT_LOOPS, 10, time);
+    Assert.assertEquals("Unexpected number of event loops", EVENT_LOOPS, group.getEventLoopCount());
+    Assert.assertEquals("A destination should always map to the same event loop",
+        group.getEventLoopIndex(host1, port1), group.getEventLoopIndex(host1, new Port(2222, PortType.PLAINTEXT)));
+
+    ResponseQueue[] responseQueues = {new ResponseQueue(), new ResponseQueue()};
+    int correlationId = 0;
+    for (ResponseQueue responseQueue : responseQueues) {
+      List<RequestInfo> requestInfoList = new ArrayList<RequestInfo>();
+      requestInfoList.add(new RequestInfo(host1, port1, new MockSend(correlationId++)));
+      requestInfoList.add(new RequestInfo(host2, port2, new MockSend(correlationId++)));
+      group.submit(requestInfoList, responseQueue);
+    }
+    for (int i = 0; i < responseQueues.length; i++) {
+      Set<Integer> expectedCorrelationIds = new HashSet<Integer>();
+      expectedCorrelationIds.add(2 * i);
+      expectedCorrelationIds.add(2 * i + 1);
+      while (!expectedCorrelationIds.isEmpty()) {
+        for (ResponseInfo responseInfo : responseQueues[i].poll(100)) {
+          Assert.assertNull("Should not have encountered an error", responseInfo.getError());
+          int correlationIdInRequest = ((MockSend) responseInfo.getRequest()).getCorrelationId();
+          Assert.assertEquals("Received response for the wrong request", correlationIdInRequest,
+              responseInfo.getResponse().getInt());
+          Assert.assertTrue("Response delivered to the wrong queue",
+              expectedCorrelationIds.remove(correlationIdInRequest));
+        }
+      }
+    }
+
+    responseQueues[0].wakeup();
+    Assert.assertEquals("No responses are expected after a wakeup", 0, responseQueues[0].poll(10000).size());
+    group.close();
+    Assert.assertFalse("Group should be closed", group.isOpen());
+    Assert.assertEquals("Event loop threads should have exited", 0,
+        TestUtils.numThreadsByThisName(NetworkClientEventLoopGroup.THREAD_NAME_PREFIX));
+    try {
+      group.submit(new ArrayList<RequestInfo>(), responseQueues[0]);
+      Assert.fail("Submitting after close should throw");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+  /**
+   * Tests that multiple requests are sent over a single connection when multiple requests in flight per connection are
+   * allowed, and that responses that arrive out of order are matched to their requests by correlation id.
+   */
+  @Test
+  public void testMultipleRequestsInFlightPerConnection()
+      throws IOException {
+    final int REQUESTS_IN_FLIGHT = 4;
+    MockSelector multiplexingSelector = new MockSelector();
+    multiplexingSelector.setState(MockSelectorState.ReverseReceives);
+    NetworkClient multiplexingClient =
+        new NetworkClient(multiplexingSelector, new NetworkConfig(new VerifiableProperties(new Properties())),
+            new NetworkMetrics(new MetricRegistry()), 1, 1, REQUESTS_IN_FLIGHT, CHECKOUT_TIMEOUT_MS, time);
+    List<RequestInfo> requestInfoList = new ArrayList<RequestInfo>();
+    for (int i = 0; i < REQUESTS_IN_FLIGHT; i++) {
+      requestInfoList.add(new RequestInfo(host1, port1, new MockSend(i), i));
+    }
+    int responseCount = 0;
+    do {
+      List<ResponseInfo> responseInfoList = multiplexingClient.sendAndPoll(requestInfoList, 100);
+      requestInfoList.clear();
+      for (ResponseInfo responseInfo : responseInfoList) {
+        Assert.assertNull("Should not have encountered an error", responseInfo.getError());
+        Assert.assertEquals("Received response for the wrong request",
+            ((MockSend) responseInfo.getRequest()).getCorrelationId(), responseInfo.getResponse().getInt());
+        responseCount++;
+      }
+    } while (responseCount < REQUESTS_IN_FLIGHT);
+    Assert.assertEquals("All requests should have shared one connection", 1, multiplexingSelector.connectionCount());
+
+    // requests that do not carry their correlation id cannot be told apart, so the connection is closed and the
+    // requests fail.
+    requestInfoList.add(new RequestInfo(host1, port1, new MockSend(10)));
+    requestInfoList.add(new RequestInfo(host1, port1, new MockSend(11)));
+    responseCount = 0;
+    do {
+      List<ResponseInfo> responseInfoList = multiplexingClient.sendAndPoll(requestInfoList, 100);
+      requestInfoList.clear();
+      for (ResponseInfo responseInfo : responseInfoList) {
+        Assert.assertEquals("Unmatched requests should fail", NetworkClientErrorCode.NetworkError,
+            responseInfo.getError());
+        responseCount++;
+      }
+    } while (responseCount < 2);
+    // the disconnection that the NetworkClient initiated is reported by the selector without further errors.
+    Assert.assertEquals("No responses are expected at this time", 0,
+        multiplexingClient.sendAndPoll(requestInfoList, 100).size());
+    multiplexingClient.close();
+  }
 }
 
 /**
@@ -310,6 +423,8 @@ class MockBoundedByteBufferReceive extends BoundedByteBufferReceive {
   public MockBoundedByteBufferReceive(int correlationId) {
     buf = ByteBuffer.allocate(16);
     buf.putInt(0, correlationId);
+    // also where it would be in a response header.
+    buf.putInt(NetworkClient.CORRELATION_ID_OFFSET_IN_RESPONSE, correlationId);
     buf.rewind();
   }
 
@@ -343,6 +458,10 @@ enum MockSelectorState {
    * A state that causes all poll calls to throw an IOException.
    */
   ThrowExceptionOnPoll,
+  /**
+   * A state that causes the responses to the sends of a poll to be received in the reverse order.
+   */
+  ReverseReceives,
 }
 
 /**
@@ -423,9 +542,19 @@ class MockSelector extends Selector {
                   new MockTime()));
         }
       }
+      if (state == MockSelectorState.ReverseReceives) {
+        Collections.reverse(receives);
+      }
     }
   }
 
+  /**
+   * @return the number of connections that were created by this selector.
+   */
+  int connectionCount() {
+    return connectionIds.size();
+  }
+
   /**
    * Returns a list of connection ids created between the last two poll() calls (or since instantiation if only one
    * {@link #poll(long, List)} was done).
@@ -233,6 +233,35 @@ public class SelectorTest {
     assertEquals("", blockingRequest(connectionId, ""));
   }
 
+  /**
+   * Test that a selector that pipelines sends queues sends to a connection with a send in progress and writes them
+   * in order.
+   */
+  @Test
+  public void testPipelinedSends()
+      throws Exception {
+    selector.close();
+    selector =
+        new Selector(new NetworkMetrics(new MetricRegistry()), SystemTime.getInstance(), null, null, false, true);
+    String connectionId = blockingConnect();
+    List<NetworkSend> sends = new ArrayList<NetworkSend>();
+    for (int i = 0; i < 3; i++) {
+      sends.add(createSend(connectionId, "request" + i));
+    }
+    selector.poll(1000L, sends);
+    List<String> responses = new ArrayList<String>();
+    int completedSends = selector.completedSends().size();
+    while (responses.size() < sends.size()) {
+      selector.poll(1000L);
+      completedSends += selector.completedSends().size();
+      for (NetworkReceive receive : selector.completedReceives()) {
+        responses.add(asString(receive));
+      }
+    }
+    assertEquals("All sends should have completed", sends.size(), completedSends);
+    assertEquals("Sends should have been written in order", asList("request0", "request1", "request2"), responses);
+  }
+
   private String blockingRequest(String connectionId, String s)
       throws Exception {
     selector.poll(1000L, asList(createSend(connectionId, s)));
@@ -126,6 +126,49 @@ public class SocketServerTest {
     channel.disconnect();
   }
 
+  /**
+   * Tests that multiple requests can be in flight on a connection and that their responses can be sent in a different
+   * order than the requests were received in.
+   */
+  @Test
+  public void pipelinedRequestsWithOutOfOrderResponses()
+      throws IOException, InterruptedException {
+    BlockingChannel channel = new BlockingChannel("localhost", server.getPort(), 10000, 10000, 1000, 2000);
+    channel.connect();
+    int numRequests = 3;
+    for (int i = 0; i < numRequests; i++) {
+      ByteBuffer requestBuffer = ByteBuffer.allocate(12);
+      requestBuffer.putLong(12);
+      requestBuffer.putInt(i);
+      requestBuffer.flip();
+      channel.send(new BoundedByteBufferSend(requestBuffer));
+    }
+    RequestResponseChannel requestResponseChannel = server.getRequestResponseChannel();
+    Request[] requests = new Request[numRequests];
+    for (int i = 0; i < numRequests; i++) {
+      Request request = requestResponseChannel.receiveRequest();
+      requests[new DataInputStream(request.getInputStream()).readInt()] = request;
+    }
+    // respond in the reverse order, with a large response first so that the others have to queue behind it.
+    for (int i = numRequests - 1; i >= 0; i--) {
+      int size = i == numRequests - 1 ? 1024 * 1024 : 12;
+      ByteBuffer responseBuffer = ByteBuffer.allocate(size);
+      responseBuffer.putLong(size);
+      responseBuffer.putInt(i);
+      responseBuffer.rewind();
+      requestResponseChannel.sendResponse(new BoundedByteBufferSend(responseBuffer), requests[i], null);
+    }
+    for (int i = numRequests - 1; i >= 0; i--) {
+      ChannelOutput channelOutput = channel.receive();
+      DataInputStream responseStream = new DataInputStream(channelOutput.getInputStream());
+      byte[] response = new byte[(int) channelOutput.getStreamSize()];
+      responseStream.readFully(response);
+      Assert.assertEquals("Responses should be received in the order they were sent", i,
+          ByteBuffer.wrap(response).getInt());
+    }
+    channel.disconnect();
+  }
+
   /**
    * Choose a number of random available ports
    */
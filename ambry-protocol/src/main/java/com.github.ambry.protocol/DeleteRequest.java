@@ -21,19 +21,40 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
- * Delete request to delete blob
+ * Delete request to delete blobs. Version 1 of the request carries a single blob id. Version 2 carries a list of blob
+ * ids, possibly of different partitions, that are all deleted by the data node that receives the request.
  */
 public class DeleteRequest extends RequestOrResponse {
-  private BlobId blobId;
+  private final List<BlobId> blobIds;
   private int sizeSent;
   private static final short Delete_Request_Version_V1 = 1;
+  private static final short Delete_Request_Version_V2 = 2;
+  private static final int Blob_Id_Count_Size_In_Bytes = 4;
 
   public DeleteRequest(int correlationId, String clientId, BlobId blobId) {
     super(RequestOrResponseType.DeleteRequest, Delete_Request_Version_V1, correlationId, clientId);
-    this.blobId = blobId;
+    this.blobIds = Collections.singletonList(blobId);
+    sizeSent = 0;
+  }
+
+  /**
+   * Creates a request to delete multiple blobs.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param blobIds the ids of the blobs to delete. There must be at least one.
+   */
+  public DeleteRequest(int correlationId, String clientId, List<BlobId> blobIds) {
+    super(RequestOrResponseType.DeleteRequest, Delete_Request_Version_V2, correlationId, clientId);
+    if (blobIds.isEmpty()) {
+      throw new IllegalArgumentException("A DeleteRequest must have at least one blob id");
+    }
+    this.blobIds = blobIds;
     sizeSent = 0;
   }
 
@@ -43,13 +64,41 @@ public class DeleteRequest extends RequestOrResponse {
     Short versionId = stream.readShort();
     int correlationId = stream.readInt();
     String clientId = Utils.readIntString(stream);
-    BlobId blobId = new BlobId(stream, map);
-    // ignore version for now
-    return new DeleteRequest(correlationId, clientId, blobId);
+    switch (versionId) {
+      case Delete_Request_Version_V1:
+        return new DeleteRequest(correlationId, clientId, new BlobId(stream, map));
+      case Delete_Request_Version_V2:
+        int blobIdCount = stream.readInt();
+        List<BlobId> blobIds = new ArrayList<BlobId>(blobIdCount);
+        for (int i = 0; i < blobIdCount; i++) {
+          blobIds.add(new BlobId(stream, map));
+        }
+        return new DeleteRequest(correlationId, clientId, blobIds);
+      default:
+        throw new IllegalStateException("Unknown delete request version " + versionId);
+    }
   }
 
+  /**
+   * @return the id of the first (and, for a version 1 request, the only) blob to delete.
+   */
   public BlobId getBlobId() {
-    return blobId;
+    return blobIds.get(0);
+  }
+
+  /**
+   * @return the ids of all the blobs to delete.
+   */
+  public List<BlobId> getBlobIds() {
+    return blobIds;
+  }
+
+  /**
+   * @return {@code true} if this is a request that can carry multiple blob ids and expects the error of each of them in
+   * the response.
+   */
+  public boolean isMultiBlobRequest() {
+    return versionId == Delete_Request_Version_V2;
   }
 
   @Override
@@ -59,7 +108,12 @@ public class DeleteRequest extends RequestOrResponse {
     if (bufferToSend == null) {
       bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
       writeHeader();
-      bufferToSend.put(blobId.toBytes());
+      if (versionId == Delete_Request_Version_V2) {
+        bufferToSend.putInt(blobIds.size());
+      }
+      for (BlobId blobId : blobIds) {
+        bufferToSend.put(blobId.toBytes());
+      }
       bufferToSend.flip();
     }
     if (bufferToSend.remaining() > 0) {
@@ -76,15 +130,26 @@ public class DeleteRequest extends RequestOrResponse {
 
   @Override
   public long sizeInBytes() {
-    // header + blobId
-    return super.sizeInBytes() + blobId.sizeInBytes();
+    // header + (blobId count) + blobIds
+    long size = super.sizeInBytes();
+    if (versionId == Delete_Request_Version_V2) {
+      size += Blob_Id_Count_Size_In_Bytes;
+    }
+    for (BlobId blobId : blobIds) {
+      size += blobId.sizeInBytes();
+    }
+    return size;
   }
 
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("DeleteRequest[");
-    sb.append("BlobID=").append(blobId);
+    if (blobIds.size() == 1) {
+      sb.append("BlobID=").append(blobIds.get(0));
+    } else {
+      sb.append("BlobIDs=").append(blobIds);
+    }
     sb.append("]");
     return sb.toString();
   }
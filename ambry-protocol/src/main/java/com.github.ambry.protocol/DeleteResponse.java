@@ -18,16 +18,38 @@ import com.github.ambry.utils.Utils;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
- * Response of delete request
+ * Response of delete request. The response to a version 2 {@link DeleteRequest} also carries the error of each of the
+ * blobs in the request, in the order of the blob ids in the request.
  */
 public class DeleteResponse extends Response {
+  private final List<ServerErrorCode> blobErrors;
   private static final short Delete_Response_Version_V1 = 1;
+  private static final short Delete_Response_Version_V2 = 2;
+  private static final int Blob_Error_Count_Size_In_Bytes = 4;
+  private static final int Blob_Error_Size_In_Bytes = 2;
 
   public DeleteResponse(int correlationId, String clientId, ServerErrorCode error) {
     super(RequestOrResponseType.DeleteResponse, Delete_Response_Version_V1, correlationId, clientId, error);
+    blobErrors = null;
+  }
+
+  /**
+   * Creates a response to a request to delete multiple blobs.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client that sent the request.
+   * @param error the error of the request as a whole.
+   * @param blobErrors the error of each blob, in the order of the blob ids in the request.
+   */
+  public DeleteResponse(int correlationId, String clientId, ServerErrorCode error, List<ServerErrorCode> blobErrors) {
+    super(RequestOrResponseType.DeleteResponse, Delete_Response_Version_V2, correlationId, clientId, error);
+    this.blobErrors = blobErrors;
   }
 
   public static DeleteResponse readFrom(DataInputStream stream)
@@ -40,8 +62,53 @@ public class DeleteResponse extends Response {
     int correlationId = stream.readInt();
     String clientId = Utils.readIntString(stream);
     ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
-    // ignore version for now
-    return new DeleteResponse(correlationId, clientId, error);
+    switch (versionId) {
+      case Delete_Response_Version_V1:
+        return new DeleteResponse(correlationId, clientId, error);
+      case Delete_Response_Version_V2:
+        int blobErrorCount = stream.readInt();
+        List<ServerErrorCode> blobErrors = new ArrayList<ServerErrorCode>(blobErrorCount);
+        for (int i = 0; i < blobErrorCount; i++) {
+          blobErrors.add(ServerErrorCode.values()[stream.readShort()]);
+        }
+        return new DeleteResponse(correlationId, clientId, error, blobErrors);
+      default:
+        throw new IllegalStateException("Unknown delete response version " + versionId);
+    }
+  }
+
+  /**
+   * @return the error of each blob in the request, in the order of the blob ids in the request, or {@code null} if this
+   * is the response to a request with a single blob id.
+   */
+  public List<ServerErrorCode> getBlobErrors() {
+    return blobErrors;
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
+      writeHeader();
+      if (blobErrors != null) {
+        bufferToSend.putInt(blobErrors.size());
+        for (ServerErrorCode blobError : blobErrors) {
+          bufferToSend.putShort((short) blobError.ordinal());
+        }
+      }
+      bufferToSend.flip();
+    }
+    return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    long size = super.sizeInBytes();
+    if (blobErrors != null) {
+      size += Blob_Error_Count_Size_In_Bytes + blobErrors.size() * Blob_Error_Size_In_Bytes;
+    }
+    return size;
   }
 
   @Override
@@ -49,6 +116,9 @@ public class DeleteResponse extends Response {
     StringBuilder sb = new StringBuilder();
     sb.append("DeleteResponse[");
     sb.append("ServerErrorCode=").append(getError());
+    if (blobErrors != null) {
+      sb.append(", BlobErrors=").append(blobErrors);
+    }
     sb.append("]");
     return sb.toString();
   }
@@ -15,6 +15,7 @@ package com.github.ambry.protocol;
 
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.utils.Utils;
 
 import java.io.DataInputStream;
@@ -26,12 +27,17 @@ import java.util.List;
 
 
 /**
- * GetRequest to fetch data
+ * GetRequest to fetch data. A request that carries a {@link ByteRange} is sent as {@link #Get_Request_Version_V3};
+ * every other request is sent as {@link #Get_Request_Version_V2} so that it can still be read by servers that do not
+ * know about ranges. A request that carries a trace id is sent as {@link #Get_Request_Version_V4}, which also carries
+ * the range, if any.
  */
 public class GetRequest extends RequestOrResponse {
 
   private MessageFormatFlags flags;
   private GetOptions getOptions;
+  private ByteRange range;
+  private long traceId;
   private List<PartitionRequestInfo> partitionRequestInfoList;
   private int sizeSent;
   private int totalPartitionRequestInfoListSize;
@@ -39,14 +45,53 @@ public class GetRequest extends RequestOrResponse {
   private static final int MessageFormat_Size_In_Bytes = 2;
   private static final int GetOptions_Size_In_Bytes = 2;
   private static final int Partition_Request_Info_List_Size = 4;
-  private static final short Get_Request_Version_V2 = 2;
+  private static final int Range_Type_Size_In_Bytes = 2;
+  private static final int Range_Field_Size_In_Bytes = 8;
+  private static final int Trace_Id_Size_In_Bytes = 8;
+  private static final int Range_Present_Size_In_Bytes = 2;
+  static final short Get_Request_Version_V2 = 2;
+  static final short Get_Request_Version_V3 = 3;
+  static final short Get_Request_Version_V4 = 4;
 
   public GetRequest(int correlationId, String clientId, MessageFormatFlags flags,
       List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions) {
-    super(RequestOrResponseType.GetRequest, Get_Request_Version_V2, correlationId, clientId);
+    this(correlationId, clientId, flags, partitionRequestInfoList, getOptions, null);
+  }
+
+  /**
+   * Construct a GetRequest that asks for the given {@link ByteRange} of the content of every blob requested. The
+   * range is only honoured for {@link MessageFormatFlags#Blob}.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param flags the {@link MessageFormatFlags} indicating the part of the blobs to fetch.
+   * @param partitionRequestInfoList the blobs to fetch, grouped by partition.
+   * @param getOptions the {@link GetOptions} of the request.
+   * @param range the {@link ByteRange} of the blob content to fetch. If {@code null}, the whole content is fetched.
+   */
+  public GetRequest(int correlationId, String clientId, MessageFormatFlags flags,
+      List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions, ByteRange range) {
+    this(correlationId, clientId, flags, partitionRequestInfoList, getOptions, range, 0);
+  }
+
+  /**
+   * Construct a GetRequest that carries the id of the trace of the request it was sent for, so that the time spent on
+   * it by the server can be attributed to that request.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param flags the {@link MessageFormatFlags} indicating the part of the blobs to fetch.
+   * @param partitionRequestInfoList the blobs to fetch, grouped by partition.
+   * @param getOptions the {@link GetOptions} of the request.
+   * @param range the {@link ByteRange} of the blob content to fetch. If {@code null}, the whole content is fetched.
+   * @param traceId the id of the trace of the request. 0 if the request is not traced.
+   */
+  public GetRequest(int correlationId, String clientId, MessageFormatFlags flags,
+      List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions, ByteRange range, long traceId) {
+    super(RequestOrResponseType.GetRequest, getVersionToSend(range, traceId), correlationId, clientId);
 
     this.flags = flags;
     this.getOptions = getOptions;
+    this.range = range;
+    this.traceId = traceId;
     if (partitionRequestInfoList == null) {
       throw new IllegalArgumentException("No partition info specified in GetRequest");
     }
@@ -69,6 +114,27 @@ public class GetRequest extends RequestOrResponse {
     return getOptions;
   }
 
+  /**
+   * @return the {@link ByteRange} of the blob content requested, or {@code null} if the whole content is requested.
+   */
+  public ByteRange getRange() {
+    return range;
+  }
+
+  /**
+   * @return the id of the trace of the request, or 0 if the request is not traced.
+   */
+  public long getTraceId() {
+    return traceId;
+  }
+
+  private static short getVersionToSend(ByteRange range, long traceId) {
+    if (traceId != 0) {
+      return Get_Request_Version_V4;
+    }
+    return range == null ? Get_Request_Version_V2 : Get_Request_Version_V3;
+  }
+
   public static GetRequest readFrom(DataInputStream stream, ClusterMap clusterMap)
       throws IOException {
     RequestOrResponseType type = RequestOrResponseType.GetRequest;
@@ -84,11 +150,61 @@ public class GetRequest extends RequestOrResponse {
       partitionRequestInfoList.add(partitionRequestInfo);
     }
     GetOptions getOption = GetOptions.None;
-    if (versionId == Get_Request_Version_V2) {
+    ByteRange range = null;
+    long traceId = 0;
+    if (versionId == Get_Request_Version_V2 || versionId == Get_Request_Version_V3
+        || versionId == Get_Request_Version_V4) {
       getOption = GetOptions.values()[stream.readShort()];
     }
-    // ignore version for now
-    return new GetRequest(correlationId, clientId, messageType, partitionRequestInfoList, getOption);
+    if (versionId == Get_Request_Version_V3) {
+      range = readRange(stream);
+    } else if (versionId == Get_Request_Version_V4) {
+      traceId = stream.readLong();
+      if (stream.readShort() != 0) {
+        range = readRange(stream);
+      }
+    }
+    return new GetRequest(correlationId, clientId, messageType, partitionRequestInfoList, getOption, range, traceId);
+  }
+
+  private static ByteRange readRange(DataInputStream stream)
+      throws IOException {
+    short rangeType = stream.readShort();
+    long first = stream.readLong();
+    long second = stream.readLong();
+    try {
+      switch (ByteRange.ByteRangeType.values()[rangeType]) {
+        case OFFSET_RANGE:
+          return ByteRange.fromOffsetRange(first, second);
+        case FROM_START_OFFSET:
+          return ByteRange.fromStartOffset(first);
+        default:
+          return ByteRange.fromLastNBytes(first);
+      }
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Invalid range in GetRequest, type: " + rangeType + " values: " + first + ", " + second,
+          e);
+    }
+  }
+
+  private void writeRange() {
+    long first = -1;
+    long second = -1;
+    switch (range.getType()) {
+      case OFFSET_RANGE:
+        first = range.getStartOffset();
+        second = range.getEndOffset();
+        break;
+      case FROM_START_OFFSET:
+        first = range.getStartOffset();
+        break;
+      case LAST_N_BYTES:
+        first = range.getLastNBytes();
+        break;
+    }
+    bufferToSend.putShort((short) range.getType().ordinal());
+    bufferToSend.putLong(first);
+    bufferToSend.putLong(second);
   }
 
   @Override
@@ -104,6 +220,13 @@ public class GetRequest extends RequestOrResponse {
         partitionRequestInfo.writeTo(bufferToSend);
       }
       bufferToSend.putShort((short) getOptions.ordinal());
+      if (traceId != 0) {
+        bufferToSend.putLong(traceId);
+        bufferToSend.putShort((short) (range == null ? 0 : 1));
+      }
+      if (range != null) {
+        writeRange();
+      }
       bufferToSend.flip();
     }
     if (bufferToSend.remaining() > 0) {
@@ -121,8 +244,15 @@ public class GetRequest extends RequestOrResponse {
   @Override
   public long sizeInBytes() {
     // header + message format size + partition request info size + total partition request info list size
-    return super.sizeInBytes() + MessageFormat_Size_In_Bytes +
+    long size = super.sizeInBytes() + MessageFormat_Size_In_Bytes +
         Partition_Request_Info_List_Size + totalPartitionRequestInfoListSize + GetOptions_Size_In_Bytes;
+    if (traceId != 0) {
+      size += Trace_Id_Size_In_Bytes + Range_Present_Size_In_Bytes;
+    }
+    if (range != null) {
+      size += Range_Type_Size_In_Bytes + 2 * Range_Field_Size_In_Bytes;
+    }
+    return size;
   }
 
   @Override
@@ -134,6 +264,12 @@ public class GetRequest extends RequestOrResponse {
     }
     sb.append(", ").append("MessageFormatFlags=").append(flags);
     sb.append(", ").append("GetOptions=").append(getOptions);
+    if (range != null) {
+      sb.append(", ").append("Range=").append(range);
+    }
+    if (traceId != 0) {
+      sb.append(", ").append("TraceId=").append(traceId);
+    }
     sb.append("]");
     return sb.toString();
   }
@@ -28,7 +28,8 @@ import java.util.List;
 
 
 /**
- * Response to GetRequest to fetch data
+ * Response to GetRequest to fetch data. A response that carries the time the server spent on a traced request is sent
+ * as {@link #Get_Response_Version_V2}; every other response is sent as {@link #Get_Response_Version_V1}.
  */
 public class GetResponse extends Response {
 
@@ -36,9 +37,13 @@ public class GetResponse extends Response {
   private InputStream stream = null;
   private final List<PartitionResponseInfo> partitionResponseInfoList;
   private int partitionResponseInfoSize;
+  private long serverQueueTimeInNs = -1;
+  private long serverProcessingTimeInNs = -1;
 
   private static int Partition_Response_Info_List_Size = 4;
-  private static final short Get_Response_Version_V1 = 1;
+  private static final int Server_Time_Size_In_Bytes = 8;
+  static final short Get_Response_Version_V1 = 1;
+  static final short Get_Response_Version_V2 = 2;
 
   public GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
       Send send, ServerErrorCode error) {
@@ -76,6 +81,41 @@ public class GetResponse extends Response {
     return partitionResponseInfoList;
   }
 
+  /**
+   * Sets the time the server spent on the request, to be sent back with the response. Must be called before the
+   * response starts to be sent.
+   * @param serverQueueTimeInNs the time the request spent queued on the server.
+   * @param serverProcessingTimeInNs the time the server spent processing the request.
+   */
+  public void setServerTimes(long serverQueueTimeInNs, long serverProcessingTimeInNs) {
+    versionId = Get_Response_Version_V2;
+    this.serverQueueTimeInNs = serverQueueTimeInNs;
+    this.serverProcessingTimeInNs = serverProcessingTimeInNs;
+  }
+
+  /**
+   * @return the time the request spent queued on the server, or -1 if the server did not send it.
+   */
+  public long getServerQueueTimeInNs() {
+    return serverQueueTimeInNs;
+  }
+
+  /**
+   * @return the time the server spent processing the request, or -1 if the server did not send it.
+   */
+  public long getServerProcessingTimeInNs() {
+    return serverProcessingTimeInNs;
+  }
+
+  @Override
+  protected void writeHeader() {
+    super.writeHeader();
+    if (versionId == Get_Response_Version_V2) {
+      bufferToSend.putLong(serverQueueTimeInNs);
+      bufferToSend.putLong(serverProcessingTimeInNs);
+    }
+  }
+
   public static GetResponse readFrom(DataInputStream stream, ClusterMap map)
       throws IOException {
     short typeval = stream.readShort();
@@ -84,13 +124,18 @@ public class GetResponse extends Response {
       throw new IllegalArgumentException("The type of request response is not compatible");
     }
     Short versionId = stream.readShort();
-    // ignore version for now
     int correlationId = stream.readInt();
     String clientId = Utils.readIntString(stream);
     ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
-
+    long serverQueueTimeInNs = -1;
+    long serverProcessingTimeInNs = -1;
+    if (versionId == Get_Response_Version_V2) {
+      serverQueueTimeInNs = stream.readLong();
+      serverProcessingTimeInNs = stream.readLong();
+    }
+    GetResponse response;
     if (error != ServerErrorCode.No_Error) {
-      return new GetResponse(correlationId, clientId, error);
+      response = new GetResponse(correlationId, clientId, error);
     } else {
       int partitionResponseInfoCount = stream.readInt();
       ArrayList<PartitionResponseInfo> partitionResponseInfoList =
@@ -99,8 +144,12 @@ public class GetResponse extends Response {
         PartitionResponseInfo partitionResponseInfo = PartitionResponseInfo.readFrom(stream, map);
         partitionResponseInfoList.add(partitionResponseInfo);
       }
-      return new GetResponse(correlationId, clientId, partitionResponseInfoList, stream, error);
+      response = new GetResponse(correlationId, clientId, partitionResponseInfoList, stream, error);
     }
+    if (versionId == Get_Response_Version_V2) {
+      response.setServerTimes(serverQueueTimeInNs, serverProcessingTimeInNs);
+    }
+    return response;
   }
 
   @Override
@@ -108,8 +157,9 @@ public class GetResponse extends Response {
       throws IOException {
     long written = 0;
     if (bufferToSend == null) {
-      bufferToSend = ByteBuffer
-          .allocate((int) super.sizeInBytes() + (Partition_Response_Info_List_Size + partitionResponseInfoSize));
+      bufferToSend = ByteBuffer.allocate(
+          (int) super.sizeInBytes() + getServerTimesSizeInBytes() + (Partition_Response_Info_List_Size
+              + partitionResponseInfoSize));
       writeHeader();
       if (partitionResponseInfoList != null) {
         bufferToSend.putInt(partitionResponseInfoList.size());
@@ -135,10 +185,15 @@ public class GetResponse extends Response {
 
   @Override
   public long sizeInBytes() {
-    return super.sizeInBytes() + (Partition_Response_Info_List_Size + partitionResponseInfoSize) +
+    return super.sizeInBytes() + getServerTimesSizeInBytes() + (Partition_Response_Info_List_Size
+        + partitionResponseInfoSize) +
         ((toSend == null) ? 0 : toSend.sizeInBytes());
   }
 
+  private int getServerTimesSizeInBytes() {
+    return versionId == Get_Response_Version_V2 ? 2 * Server_Time_Size_In_Bytes : 0;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -147,6 +202,10 @@ public class GetResponse extends Response {
       sb.append("SizeToSend=").append(toSend.sizeInBytes());
     }
     sb.append(" ServerErrorCode=").append(getError());
+    if (versionId == Get_Response_Version_V2) {
+      sb.append(" ServerQueueTimeInNs=").append(serverQueueTimeInNs);
+      sb.append(" ServerProcessingTimeInNs=").append(serverProcessingTimeInNs);
+    }
     if (partitionResponseInfoList != null) {
       sb.append(" PartitionResponseInfoList=").append(partitionResponseInfoList);
     }
@@ -18,11 +18,13 @@ import com.github.ambry.commons.BlobId;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.messageformat.BlobPropertiesSerDe;
 import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 
@@ -37,6 +39,10 @@ public class PutRequest extends RequestOrResponse {
   protected long sentBytes = 0;
   protected final BlobProperties properties;
   protected final BlobType blobType;
+  // the blob content, if the request was created with a buffer. It is written out directly instead of being copied
+  // from the blobStream.
+  private final ByteBuffer blobBuffer;
+  private ByteBuffer[] buffersToSend;
 
   private static final int UserMetadata_Size_InBytes = 4;
   protected static final int Blob_Size_InBytes = 8;
@@ -55,6 +61,7 @@ public class PutRequest extends RequestOrResponse {
     this.blobStream = blobStream;
     this.blobSize = blobSize;
     this.blobType = blobType;
+    blobBuffer = null;
   }
 
   public PutRequest(int correlationId, String clientId, BlobId blobId, BlobProperties properties,
@@ -63,6 +70,30 @@ public class PutRequest extends RequestOrResponse {
         Put_Request_Version_V2);
   }
 
+  /**
+   * Creates a PutRequest whose blob content is in a {@link ByteBuffer}. The content between the position and the limit
+   * of the buffer is written out directly to the channel when the request is sent, using a gathering write if the
+   * channel supports it. The buffer must not be modified until the send is complete.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param blobId the {@link BlobId} of the blob.
+   * @param properties the {@link BlobProperties} of the blob.
+   * @param usermetadata the user metadata of the blob.
+   * @param blob the {@link ByteBuffer} containing the blob content.
+   * @param blobType the {@link BlobType} of the blob.
+   */
+  public PutRequest(int correlationId, String clientId, BlobId blobId, BlobProperties properties,
+      ByteBuffer usermetadata, ByteBuffer blob, BlobType blobType) {
+    super(RequestOrResponseType.PutRequest, Put_Request_Version_V2, correlationId, clientId);
+    this.blobId = blobId;
+    this.properties = properties;
+    this.usermetadata = usermetadata;
+    this.blobStream = new ByteBufferInputStream(blob.duplicate());
+    this.blobSize = blob.remaining();
+    this.blobType = blobType;
+    blobBuffer = blob.duplicate();
+  }
+
   @Deprecated
   public PutRequest(int correlationId, String clientId, BlobId blobId, BlobProperties properties,
       ByteBuffer usermetadata, InputStream data) {
@@ -132,6 +163,9 @@ public class PutRequest extends RequestOrResponse {
       bufferToSend.putLong(blobSize);
       bufferToSend.flip();
     }
+    if (blobBuffer != null) {
+      return writeBuffersTo(channel);
+    }
     while (sentBytes < sizeInBytes()) {
       if (bufferToSend.remaining() > 0) {
         int toWrite = bufferToSend.remaining();
@@ -151,6 +185,35 @@ public class PutRequest extends RequestOrResponse {
     return totalWritten;
   }
 
+  /**
+   * Writes the serialized header and the blob content in {@link #blobBuffer} to the channel without copying the
+   * content. The two buffers are written with a single gathering write if the channel supports it.
+   * @param channel the channel to write to.
+   * @return the number of bytes written.
+   * @throws IOException if the write fails.
+   */
+  private long writeBuffersTo(WritableByteChannel channel)
+      throws IOException {
+    long written;
+    if (channel instanceof GatheringByteChannel) {
+      if (buffersToSend == null) {
+        buffersToSend = new ByteBuffer[]{bufferToSend, blobBuffer};
+      }
+      written = ((GatheringByteChannel) channel).write(buffersToSend);
+    } else {
+      written = 0;
+      if (bufferToSend.hasRemaining()) {
+        written += channel.write(bufferToSend);
+      }
+      if (!bufferToSend.hasRemaining()) {
+        written += channel.write(blobBuffer);
+      }
+    }
+    sentBytes += written;
+    logger.trace("sent Bytes from Put Request {}", sentBytes);
+    return written;
+  }
+
   @Override
   public boolean isSendComplete() {
     return sizeInBytes() == sentBytes;
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.Utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Request sent by a bootstrapping replica to a peer to fetch the sealed index segment (and the log range it covers)
+ * that starts at the given offset of the peer's log
+ */
+public class ReplicaBootstrapRequest extends RequestOrResponse {
+  private final PartitionId partitionId;
+  private final long startOffset;
+
+  private static final int Start_Offset_Size_In_Bytes = 8;
+  private static final short Replica_Bootstrap_Request_Version_V1 = 1;
+
+  public ReplicaBootstrapRequest(int correlationId, String clientId, PartitionId partitionId, long startOffset) {
+    super(RequestOrResponseType.ReplicaBootstrapRequest, Replica_Bootstrap_Request_Version_V1, correlationId,
+        clientId);
+    if (partitionId == null || startOffset < 0) {
+      throw new IllegalArgumentException("Invalid partition " + partitionId + " or start offset " + startOffset);
+    }
+    this.partitionId = partitionId;
+    this.startOffset = startOffset;
+  }
+
+  public static ReplicaBootstrapRequest readFrom(DataInputStream stream, ClusterMap clusterMap)
+      throws IOException {
+    RequestOrResponseType type = RequestOrResponseType.ReplicaBootstrapRequest;
+    Short versionId = stream.readShort();
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    PartitionId partitionId = clusterMap.getPartitionIdFromStream(stream);
+    long startOffset = stream.readLong();
+    // ignore version for now
+    return new ReplicaBootstrapRequest(correlationId, clientId, partitionId, startOffset);
+  }
+
+  public PartitionId getPartitionId() {
+    return partitionId;
+  }
+
+  public long getStartOffset() {
+    return startOffset;
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
+      writeHeader();
+      bufferToSend.put(partitionId.getBytes());
+      bufferToSend.putLong(startOffset);
+      bufferToSend.flip();
+    }
+    return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
+  }
+
+  @Override
+  public boolean isSendComplete() {
+    return bufferToSend != null && bufferToSend.remaining() == 0;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    // header + partitionId + startOffset
+    return super.sizeInBytes() + partitionId.getBytes().length + Start_Offset_Size_In_Bytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("ReplicaBootstrapRequest[");
+    sb.append("PartitionId=").append(partitionId);
+    sb.append(", ").append("StartOffset=").append(startOffset);
+    sb.append("]");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.store.FindToken;
+import com.github.ambry.store.FindTokenFactory;
+import com.github.ambry.store.SealedSegmentInfo;
+import com.github.ambry.store.SealedSegmentReadSet;
+import com.github.ambry.utils.Utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Response to a {@link ReplicaBootstrapRequest}. Contains the {@link SealedSegmentInfo} of the segment, the token
+ * from which token based replication can resume and is followed by the persisted index segment and the log range.
+ */
+public class ReplicaBootstrapResponse extends Response {
+  private final SealedSegmentInfo info;
+  private final FindToken handoffToken;
+  private final SealedSegmentReadSet readSet;
+  private final InputStream stream;
+  private long payloadSent;
+
+  private static final int Sealed_Segment_Info_Size_In_Bytes = 32;
+  private static final short Replica_Bootstrap_Response_Version_V1 = 1;
+
+  /**
+   * Creates a response that streams the given read set after the header
+   */
+  public ReplicaBootstrapResponse(int correlationId, String clientId, SealedSegmentReadSet readSet) {
+    this(correlationId, clientId, readSet.getInfo(), readSet.getHandoffToken(), readSet, null,
+        ServerErrorCode.No_Error);
+  }
+
+  public ReplicaBootstrapResponse(int correlationId, String clientId, ServerErrorCode error) {
+    this(correlationId, clientId, null, null, null, null, error);
+  }
+
+  private ReplicaBootstrapResponse(int correlationId, String clientId, SealedSegmentInfo info, FindToken handoffToken,
+      SealedSegmentReadSet readSet, InputStream stream, ServerErrorCode error) {
+    super(RequestOrResponseType.ReplicaBootstrapResponse, Replica_Bootstrap_Response_Version_V1, correlationId,
+        clientId, error);
+    this.info = info;
+    this.handoffToken = handoffToken;
+    this.readSet = readSet;
+    this.stream = stream;
+    this.payloadSent = 0;
+  }
+
+  public static ReplicaBootstrapResponse readFrom(DataInputStream stream, FindTokenFactory factory)
+      throws IOException {
+    RequestOrResponseType type = RequestOrResponseType.values()[stream.readShort()];
+    if (type != RequestOrResponseType.ReplicaBootstrapResponse) {
+      throw new IllegalArgumentException("The type of request response is not compatible");
+    }
+    Short versionId = stream.readShort();
+    // ignore version for now
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
+    if (error != ServerErrorCode.No_Error) {
+      return new ReplicaBootstrapResponse(correlationId, clientId, error);
+    }
+    SealedSegmentInfo info =
+        new SealedSegmentInfo(stream.readLong(), stream.readLong(), stream.readLong(), stream.readLong());
+    FindToken handoffToken = factory.getFindToken(stream);
+    return new ReplicaBootstrapResponse(correlationId, clientId, info, handoffToken, null, stream, error);
+  }
+
+  /**
+   * @return The {@link SealedSegmentInfo} of the segment that follows this response. Null if there was an error
+   */
+  public SealedSegmentInfo getSealedSegmentInfo() {
+    return info;
+  }
+
+  /**
+   * @return The token from which token based replication can resume once the segment is applied
+   */
+  public FindToken getHandoffToken() {
+    return handoffToken;
+  }
+
+  /**
+   * @return The stream from which the index segment and then the log range can be read
+   */
+  public InputStream getInputStream() {
+    return stream;
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    long written = 0;
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) getHeaderSizeInBytes());
+      writeHeader();
+      if (info != null) {
+        bufferToSend.putLong(info.getStartOffset());
+        bufferToSend.putLong(info.getEndOffset());
+        bufferToSend.putLong(info.getIndexSegmentSizeInBytes());
+        bufferToSend.putLong(info.getLogCrc());
+        bufferToSend.put(handoffToken.toBytes());
+      }
+      bufferToSend.flip();
+    }
+    if (bufferToSend.remaining() > 0) {
+      written = channel.write(bufferToSend);
+    }
+    if (bufferToSend.remaining() == 0 && readSet != null && payloadSent < readSet.sizeInBytes()) {
+      long payloadWritten = readSet.writeTo(channel, payloadSent, readSet.sizeInBytes() - payloadSent);
+      payloadSent += payloadWritten;
+      written += payloadWritten;
+    }
+    return written;
+  }
+
+  @Override
+  public boolean isSendComplete() {
+    return bufferToSend != null && bufferToSend.remaining() == 0 && (readSet == null
+        || payloadSent == readSet.sizeInBytes());
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return getHeaderSizeInBytes() + (readSet == null ? 0 : readSet.sizeInBytes());
+  }
+
+  private long getHeaderSizeInBytes() {
+    return super.sizeInBytes() + (info == null ? 0 : Sealed_Segment_Info_Size_In_Bytes + handoffToken.toBytes().length);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("ReplicaBootstrapResponse[");
+    sb.append("ServerErrorCode=").append(getError());
+    if (info != null) {
+      sb.append(" SealedSegmentInfo=").append(info);
+      sb.append(" HandoffToken=").append(handoffToken);
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+}
@@ -27,5 +27,7 @@ public enum RequestOrResponseType {
   TTLRequest, // Unsupported
   TTLResponse, // Unsupported
   ReplicaMetadataRequest,
-  ReplicaMetadataResponse
+  ReplicaMetadataResponse,
+  ReplicaBootstrapRequest,
+  ReplicaBootstrapResponse
 }
\ No newline at end of file
@@ -21,19 +21,25 @@ import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.messageformat.BlobPropertiesSerDe;
 import com.github.ambry.messageformat.BlobType;
 import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.store.FindToken;
 import com.github.ambry.store.FindTokenFactory;
 import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.SealedSegmentInfo;
+import com.github.ambry.store.SealedSegmentReadSet;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.ByteBufferOutputStream;
 import com.github.ambry.utils.Utils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
@@ -156,6 +162,30 @@ public class RequestResponseTest {
     byte[] blobRead = new byte[blobSize];
     deserializedPutRequest.getBlobStream().read(blobRead);
     Assert.assertArrayEquals(blob, blobRead);
+
+    // A request created with a buffer must be serialized identically, with or without gathering writes.
+    byte[] serializedRequest = outputStream.toByteArray();
+    request = new PutRequest(correlationId, clientId, blobId, blobProperties, ByteBuffer.wrap(userMetadata),
+        ByteBuffer.wrap(blob), blobType);
+    Assert.assertEquals("Unexpected size", serializedRequest.length, request.sizeInBytes());
+    outputStream.reset();
+    while (!request.isSendComplete()) {
+      request.writeTo(writableByteChannel);
+    }
+    Assert.assertArrayEquals("Serialized requests do not match", serializedRequest, outputStream.toByteArray());
+    File file = File.createTempFile("putRequest", null);
+    file.deleteOnExit();
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      request = new PutRequest(correlationId, clientId, blobId, blobProperties, ByteBuffer.wrap(userMetadata),
+          ByteBuffer.wrap(blob), blobType);
+      FileChannel fileChannel = randomAccessFile.getChannel();
+      while (!request.isSendComplete()) {
+        request.writeTo(fileChannel);
+      }
+      ByteBuffer written = ByteBuffer.allocate((int) fileChannel.size());
+      fileChannel.read(written, 0);
+      Assert.assertArrayEquals("Serialized requests do not match", serializedRequest, written.array());
+    }
   }
 
   private void testPutRequestV1(MockClusterMap clusterMap, int correlationId, String clientId, BlobId blobId,
@@ -325,6 +355,130 @@ public class RequestResponseTest {
         .getExpirationTimeInMs(), 1000);
   }
 
+  @Test
+  public void getRequestWithRangeTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    BlobId id1 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    ArrayList<BlobId> blobIdList = new ArrayList<BlobId>();
+    blobIdList.add(id1);
+    ArrayList<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
+    partitionRequestInfoList.add(new PartitionRequestInfo(new MockPartitionId(), blobIdList));
+    ByteRange[] ranges = {null, ByteRange.fromOffsetRange(10, 20), ByteRange.fromStartOffset(5),
+        ByteRange.fromLastNBytes(7)};
+    for (ByteRange range : ranges) {
+      GetRequest getRequest =
+          new GetRequest(1234, "clientId", MessageFormatFlags.Blob, partitionRequestInfoList, GetOptions.Include_All,
+              range);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+      do {
+        getRequest.writeTo(writableByteChannel);
+      } while (!getRequest.isSendComplete());
+      Assert.assertEquals("Size written does not match the size of the request", getRequest.sizeInBytes(),
+          outputStream.size());
+      DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+      requestStream.readLong(); // read length
+      requestStream.readShort(); // read type
+      GetRequest deserializedGetRequest = GetRequest.readFrom(requestStream, clusterMap);
+      Assert.assertEquals("Version does not match", range == null ? GetRequest.Get_Request_Version_V2
+          : GetRequest.Get_Request_Version_V3, deserializedGetRequest.getVersionId());
+      Assert.assertEquals("Range does not match", range, deserializedGetRequest.getRange());
+      Assert.assertEquals("GetOptions does not match", GetOptions.Include_All,
+          deserializedGetRequest.getGetOptions());
+      Assert.assertEquals(deserializedGetRequest.getPartitionInfoList().get(0).getBlobIds().get(0), id1);
+    }
+  }
+
+  @Test
+  public void getRequestResponseWithTraceTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    BlobId id1 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    ArrayList<BlobId> blobIdList = new ArrayList<BlobId>();
+    blobIdList.add(id1);
+    ArrayList<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
+    partitionRequestInfoList.add(new PartitionRequestInfo(new MockPartitionId(), blobIdList));
+    long traceId = new Random().nextLong() | 1;
+    ByteRange[] ranges = {null, ByteRange.fromOffsetRange(10, 20)};
+    for (ByteRange range : ranges) {
+      GetRequest getRequest =
+          new GetRequest(1234, "clientId", MessageFormatFlags.Blob, partitionRequestInfoList, GetOptions.Include_All,
+              range, traceId);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+      do {
+        getRequest.writeTo(writableByteChannel);
+      } while (!getRequest.isSendComplete());
+      Assert.assertEquals("Size written does not match the size of the request", getRequest.sizeInBytes(),
+          outputStream.size());
+      DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+      requestStream.readLong(); // read length
+      requestStream.readShort(); // read type
+      GetRequest deserializedGetRequest = GetRequest.readFrom(requestStream, clusterMap);
+      Assert.assertEquals("Version does not match", GetRequest.Get_Request_Version_V4,
+          deserializedGetRequest.getVersionId());
+      Assert.assertEquals("Trace id does not match", traceId, deserializedGetRequest.getTraceId());
+      Assert.assertEquals("Range does not match", range, deserializedGetRequest.getRange());
+      Assert.assertEquals("GetOptions does not match", GetOptions.Include_All,
+          deserializedGetRequest.getGetOptions());
+      Assert.assertEquals(deserializedGetRequest.getPartitionInfoList().get(0).getBlobIds().get(0), id1);
+    }
+
+    // a response with server times, with and without an error.
+    ArrayList<MessageInfo> messageInfoList = new ArrayList<MessageInfo>();
+    messageInfoList.add(new MessageInfo(id1, 1000, 1000));
+    List<PartitionResponseInfo> partitionResponseInfoList = new ArrayList<PartitionResponseInfo>();
+    partitionResponseInfoList.add(new PartitionResponseInfo(clusterMap.getWritablePartitionIds().get(0),
+        messageInfoList));
+    byte[] buf = new byte[1000];
+    new Random().nextBytes(buf);
+    GetResponse response =
+        new GetResponse(1234, "clientId", partitionResponseInfoList, new ByteArrayInputStream(buf),
+            ServerErrorCode.No_Error);
+    response.setServerTimes(100, 200);
+    GetResponse deserializedGetResponse = serializeAndDeserialize(response, clusterMap);
+    Assert.assertEquals("Version does not match", GetResponse.Get_Response_Version_V2,
+        deserializedGetResponse.getVersionId());
+    Assert.assertEquals("Queue time does not match", 100, deserializedGetResponse.getServerQueueTimeInNs());
+    Assert.assertEquals("Processing time does not match", 200, deserializedGetResponse.getServerProcessingTimeInNs());
+    Assert.assertEquals(deserializedGetResponse.getError(), ServerErrorCode.No_Error);
+    Assert.assertEquals(
+        deserializedGetResponse.getPartitionResponseInfoList().get(0).getMessageInfoList().get(0).getStoreKey(), id1);
+
+    response = new GetResponse(1234, "clientId", ServerErrorCode.Blob_Not_Found);
+    response.setServerTimes(300, 400);
+    deserializedGetResponse = serializeAndDeserialize(response, clusterMap);
+    Assert.assertEquals("Queue time does not match", 300, deserializedGetResponse.getServerQueueTimeInNs());
+    Assert.assertEquals("Processing time does not match", 400, deserializedGetResponse.getServerProcessingTimeInNs());
+    Assert.assertEquals(deserializedGetResponse.getError(), ServerErrorCode.Blob_Not_Found);
+
+    response = new GetResponse(1234, "clientId", ServerErrorCode.Blob_Not_Found);
+    deserializedGetResponse = serializeAndDeserialize(response, clusterMap);
+    Assert.assertEquals("Version does not match", GetResponse.Get_Response_Version_V1,
+        deserializedGetResponse.getVersionId());
+    Assert.assertEquals("Queue time should not be known", -1, deserializedGetResponse.getServerQueueTimeInNs());
+  }
+
+  /**
+   * Serializes {@code response} and reads it back.
+   * @param response the {@link GetResponse} to serialize.
+   * @param clusterMap the {@link MockClusterMap} to use to read the response.
+   * @return the {@link GetResponse} read back.
+   * @throws IOException
+   */
+  private GetResponse serializeAndDeserialize(GetResponse response, MockClusterMap clusterMap)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    DataInputStream responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    responseStream.readLong(); // read size
+    return GetResponse.readFrom(responseStream, clusterMap);
+  }
+
   @Test
   public void deleteRequestResponseTest()
       throws IOException {
@@ -352,6 +506,46 @@ public class RequestResponseTest {
     DeleteResponse deserializedDeleteResponse = DeleteResponse.readFrom(requestStream);
     Assert.assertEquals(deserializedDeleteResponse.getCorrelationId(), 1234);
     Assert.assertEquals(deserializedDeleteResponse.getError(), ServerErrorCode.No_Error);
+    Assert.assertNull(deserializedDeleteResponse.getBlobErrors());
+  }
+
+  @Test
+  public void multiBlobDeleteRequestResponseTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    List<BlobId> blobIds = new ArrayList<BlobId>();
+    blobIds.add(new BlobId(clusterMap.getWritablePartitionIds().get(0)));
+    blobIds.add(new BlobId(clusterMap.getWritablePartitionIds().get(1)));
+    blobIds.add(new BlobId(clusterMap.getWritablePartitionIds().get(0)));
+    DeleteRequest deleteRequest = new DeleteRequest(1234, "client", blobIds);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      deleteRequest.writeTo(writableByteChannel);
+    } while (!deleteRequest.isSendComplete());
+    Assert.assertEquals(deleteRequest.sizeInBytes(), outputStream.size());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong(); // read length
+    requestStream.readShort(); // read short
+    DeleteRequest deserializedDeleteRequest = DeleteRequest.readFrom(requestStream, clusterMap);
+    Assert.assertEquals(deserializedDeleteRequest.getClientId(), "client");
+    Assert.assertEquals(deserializedDeleteRequest.getBlobIds(), blobIds);
+    List<ServerErrorCode> blobErrors = new ArrayList<ServerErrorCode>();
+    blobErrors.add(ServerErrorCode.No_Error);
+    blobErrors.add(ServerErrorCode.Blob_Not_Found);
+    blobErrors.add(ServerErrorCode.Blob_Deleted);
+    DeleteResponse response = new DeleteResponse(1234, "client", ServerErrorCode.No_Error, blobErrors);
+    outputStream.reset();
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    Assert.assertEquals(response.sizeInBytes(), outputStream.size());
+    requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong(); // read size
+    DeleteResponse deserializedDeleteResponse = DeleteResponse.readFrom(requestStream);
+    Assert.assertEquals(deserializedDeleteResponse.getCorrelationId(), 1234);
+    Assert.assertEquals(deserializedDeleteResponse.getError(), ServerErrorCode.No_Error);
+    Assert.assertEquals(deserializedDeleteResponse.getBlobErrors(), blobErrors);
   }
 
   @Test
@@ -418,4 +612,88 @@ public class RequestResponseTest {
     Assert.assertEquals(deserializedDeleteResponse.getCorrelationId(), 1234);
     Assert.assertEquals(deserializedDeleteResponse.getError(), ServerErrorCode.No_Error);
   }
+
+  @Test
+  public void replicaBootstrapRequestResponseTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    ReplicaBootstrapRequest request =
+        new ReplicaBootstrapRequest(1234, "client", clusterMap.getWritablePartitionIds().get(0), 4096);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      request.writeTo(writableByteChannel);
+    } while (!request.isSendComplete());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals(requestStream.readLong(), request.sizeInBytes());
+    Assert.assertEquals(RequestOrResponseType.values()[requestStream.readShort()],
+        RequestOrResponseType.ReplicaBootstrapRequest);
+    ReplicaBootstrapRequest deserializedRequest = ReplicaBootstrapRequest.readFrom(requestStream, clusterMap);
+    Assert.assertEquals(deserializedRequest.getClientId(), "client");
+    Assert.assertEquals(deserializedRequest.getPartitionId(), clusterMap.getWritablePartitionIds().get(0));
+    Assert.assertEquals(deserializedRequest.getStartOffset(), 4096);
+
+    final byte[] payload = new byte[1000];
+    new Random().nextBytes(payload);
+    final SealedSegmentInfo info = new SealedSegmentInfo(4096, 4096 + 900, 100, 12345);
+    final MockFindToken handoffToken = new MockFindToken(7, 5000);
+    SealedSegmentReadSet readSet = new SealedSegmentReadSet() {
+      @Override
+      public SealedSegmentInfo getInfo() {
+        return info;
+      }
+
+      @Override
+      public FindToken getHandoffToken() {
+        return handoffToken;
+      }
+
+      @Override
+      public long sizeInBytes() {
+        return payload.length;
+      }
+
+      @Override
+      public long writeTo(WritableByteChannel channel, long relativeOffset, long maxSize)
+          throws IOException {
+        // write in small pieces to exercise partial writes
+        int size = (int) Math.min(maxSize, 64);
+        return channel.write(ByteBuffer.wrap(payload, (int) relativeOffset, size));
+      }
+    };
+    ReplicaBootstrapResponse response = new ReplicaBootstrapResponse(1234, "client", readSet);
+    outputStream.reset();
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    Assert.assertEquals(outputStream.size(), response.sizeInBytes());
+    DataInputStream responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals(responseStream.readLong(), response.sizeInBytes());
+    ReplicaBootstrapResponse deserializedResponse =
+        ReplicaBootstrapResponse.readFrom(responseStream, new MockFindTokenFactory());
+    Assert.assertEquals(deserializedResponse.getCorrelationId(), 1234);
+    Assert.assertEquals(deserializedResponse.getError(), ServerErrorCode.No_Error);
+    SealedSegmentInfo deserializedInfo = deserializedResponse.getSealedSegmentInfo();
+    Assert.assertEquals(deserializedInfo.getStartOffset(), info.getStartOffset());
+    Assert.assertEquals(deserializedInfo.getEndOffset(), info.getEndOffset());
+    Assert.assertEquals(deserializedInfo.getIndexSegmentSizeInBytes(), info.getIndexSegmentSizeInBytes());
+    Assert.assertEquals(deserializedInfo.getLogCrc(), info.getLogCrc());
+    MockFindToken deserializedToken = (MockFindToken) deserializedResponse.getHandoffToken();
+    Assert.assertEquals(deserializedToken.getIndex(), 7);
+    Assert.assertEquals(deserializedToken.getBytesRead(), 5000);
+    byte[] payloadRead = new byte[payload.length];
+    new DataInputStream(deserializedResponse.getInputStream()).readFully(payloadRead);
+    Assert.assertArrayEquals(payload, payloadRead);
+
+    response = new ReplicaBootstrapResponse(1234, "client", ServerErrorCode.Partition_Unknown);
+    outputStream.reset();
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    responseStream.readLong(); // read size
+    deserializedResponse = ReplicaBootstrapResponse.readFrom(responseStream, new MockFindTokenFactory());
+    Assert.assertEquals(deserializedResponse.getError(), ServerErrorCode.Partition_Unknown);
+    Assert.assertNull(deserializedResponse.getSealedSegmentInfo());
+  }
 }
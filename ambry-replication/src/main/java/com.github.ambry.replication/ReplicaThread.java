@@ -37,6 +37,8 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
+import com.github.ambry.protocol.ReplicaBootstrapRequest;
+import com.github.ambry.protocol.ReplicaBootstrapResponse;
 import com.github.ambry.protocol.ReplicaMetadataRequest;
 import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
 import com.github.ambry.protocol.ReplicaMetadataResponse;
@@ -44,6 +46,7 @@ import com.github.ambry.protocol.ReplicaMetadataResponseInfo;
 import com.github.ambry.store.FindToken;
 import com.github.ambry.store.FindTokenFactory;
 import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.SealedSegmentInfo;
 import com.github.ambry.store.StoreErrorCodes;
 import com.github.ambry.store.StoreException;
 import com.github.ambry.store.StoreKey;
@@ -55,6 +58,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -179,20 +183,45 @@ class ReplicaThread implements Runnable {
             }
           }
           if (activeReplicasPerNode.size() > 0) {
+            List<RemoteReplicaInfo> replicasToBootstrap = new ArrayList<RemoteReplicaInfo>();
+            List<RemoteReplicaInfo> replicasToExchangeMetadata = new ArrayList<RemoteReplicaInfo>();
+            for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+              ReplicaBootstrapState bootstrapState = remoteReplicaInfo.getBootstrapState();
+              // getSource() replaces a source that is down or stuck, so it is consulted for every peer
+              RemoteReplicaInfo bootstrapSource = bootstrapState == null ? null : bootstrapState.getSource();
+              if (bootstrapSource == null) {
+                replicasToExchangeMetadata.add(remoteReplicaInfo);
+              } else if (bootstrapSource == remoteReplicaInfo) {
+                replicasToBootstrap.add(remoteReplicaInfo);
+              }
+              // other peers of a bootstrapping partition are replicated from once the bootstrap completes
+            }
+            boolean sealedSegmentsCopied = false;
             try {
               connectedChannel = connectionPool
                   .checkOutConnection(remoteNode.getHostname(), replicasToReplicatePerNode.get(0).getPort(),
                       replicationConfig.replicationConnectionPoolCheckoutTimeoutMs);
               checkoutConnectionTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+              if (replicasToBootstrap.size() > 0) {
+                copySealedSegments(connectedChannel, replicasToBootstrap);
+              }
+              sealedSegmentsCopied = true;
               startTimeInMs = SystemTime.getInstance().milliseconds();
-              List<ExchangeMetadataResponse> exchangeMetadataResponseList =
-                  exchangeMetadata(connectedChannel, replicasToReplicatePerNode);
-              exchangeMetadataTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+              if (replicasToExchangeMetadata.size() > 0) {
+                List<ExchangeMetadataResponse> exchangeMetadataResponseList =
+                    exchangeMetadata(connectedChannel, replicasToExchangeMetadata);
+                exchangeMetadataTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
 
-              startTimeInMs = SystemTime.getInstance().milliseconds();
-              fixMissingStoreKeys(connectedChannel, replicasToReplicatePerNode, exchangeMetadataResponseList);
-              fixMissingStoreKeysTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+                startTimeInMs = SystemTime.getInstance().milliseconds();
+                fixMissingStoreKeys(connectedChannel, replicasToExchangeMetadata, exchangeMetadataResponseList);
+                fixMissingStoreKeysTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+              }
             } catch (Exception e) {
+              if (!sealedSegmentsCopied) {
+                for (RemoteReplicaInfo remoteReplicaInfo : replicasToBootstrap) {
+                  remoteReplicaInfo.getBootstrapState().onSourceFailure(remoteReplicaInfo);
+                }
+              }
               if (checkoutConnectionTimeInMs == -1) {
                 // exception happened in checkout connection phase
                 checkoutConnectionTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
@@ -370,6 +399,85 @@ class ReplicaThread implements Runnable {
     }
   }
 
+  /**
+   * Copies the next sealed index segment, along with the log range it covers, from each of the remote replicas that
+   * the local replicas are being bootstrapped from. The segments are appended to the local stores and the tokens of
+   * the remote replicas are set to the handed off tokens, so that token based replication resumes from the end of
+   * the copied segments. The bootstrap completes when the remote replica has no more sealed segments to offer, or
+   * when the local store cannot take the segment (for e.g. if it took writes in the meantime). A segment that the
+   * remote replica is not ready to serve yet is requested again in the next round.
+   * @param connectedChannel The connected channel that represents a connection to the remote replica
+   * @param replicasToBootstrap The remote replicas that the local replicas are bootstrapping from
+   * @throws IOException
+   * @throws StoreException
+   */
+  protected void copySealedSegments(ConnectedChannel connectedChannel, List<RemoteReplicaInfo> replicasToBootstrap)
+      throws IOException, StoreException {
+    DataNodeId remoteNode = replicasToBootstrap.get(0).getReplicaId().getDataNodeId();
+    for (RemoteReplicaInfo remoteReplicaInfo : replicasToBootstrap) {
+      long startTimeInMs = SystemTime.getInstance().milliseconds();
+      ReplicaBootstrapState bootstrapState = remoteReplicaInfo.getBootstrapState();
+      long startOffset = remoteReplicaInfo.getLocalStore().getSizeInBytes();
+      ReplicaBootstrapRequest request = new ReplicaBootstrapRequest(correlationIdGenerator.incrementAndGet(),
+          "replication-bootstrap-" + dataNodeId.getHostname(), remoteReplicaInfo.getReplicaId().getPartitionId(),
+          startOffset);
+      ReplicaBootstrapResponse response;
+      try {
+        connectedChannel.send(request);
+        ChannelOutput channelOutput = connectedChannel.receive();
+        response =
+            ReplicaBootstrapResponse.readFrom(new DataInputStream(channelOutput.getInputStream()), findTokenFactory);
+      } catch (IOException e) {
+        responseHandler.onRequestResponseException(remoteReplicaInfo.getReplicaId(), e);
+        throw e;
+      }
+      responseHandler.onRequestResponseError(remoteReplicaInfo.getReplicaId(), response.getError());
+      if (response.getError() == ServerErrorCode.Retry_After_Backoff) {
+        // the remote replica is still computing the crc of the segment, the request is retried in the next round
+        logger.trace("Remote node: {} Thread name: {} Remote replica: {} Sealed segment at {} not ready", remoteNode,
+            threadName, remoteReplicaInfo.getReplicaId(), startOffset);
+        continue;
+      } else if (response.getError() != ServerErrorCode.No_Error) {
+        logger.error("Remote node: {} Thread name: {} Remote replica: {} Bootstrap error: {}, switching to token "
+            + "based replication", remoteNode, threadName, remoteReplicaInfo.getReplicaId(), response.getError());
+        replicationMetrics.replicaBootstrapErrorCount.inc();
+        bootstrapState.onComplete();
+        continue;
+      }
+      SealedSegmentInfo info = response.getSealedSegmentInfo();
+      if (!info.isEmpty()) {
+        try {
+          remoteReplicaInfo.getLocalStore()
+              .appendSealedSegment(info, Channels.newChannel(response.getInputStream()));
+        } catch (StoreException e) {
+          replicationMetrics.replicaBootstrapErrorCount.inc();
+          if (e.getErrorCode() == StoreErrorCodes.Illegal_Index_Operation) {
+            // the local store moved on, continue with token based replication from the last handed off token
+            logger.error("Remote node: " + remoteNode + " Thread name: " + threadName + " Remote replica: " +
+                remoteReplicaInfo.getReplicaId() + " local store cannot take sealed segment " + info +
+                ", switching to token based replication", e);
+            bootstrapState.onComplete();
+          }
+          // the response stream is not completely consumed, so the connection cannot be reused
+          throw e;
+        }
+        bootstrapState.onProgress();
+        replicationMetrics.replicaBootstrapSegmentsCopiedCount.inc();
+        replicationMetrics.replicaBootstrapBytesRate.mark(info.getIndexSegmentSizeInBytes() + info.getLogSizeInBytes());
+        replicationMetrics.replicaBootstrapSegmentCopyTime.update(
+            SystemTime.getInstance().milliseconds() - startTimeInMs);
+        logger.info("Remote node: {} Thread name: {} Remote replica: {} Copied sealed segment {}", remoteNode,
+            threadName, remoteReplicaInfo.getReplicaId(), info);
+      } else {
+        bootstrapState.onCaughtUp();
+        replicationMetrics.replicaBootstrapCompletedCount.inc();
+        logger.info("Remote node: {} Thread name: {} Remote replica: {} Bootstrap complete at offset {}", remoteNode,
+            threadName, remoteReplicaInfo.getReplicaId(), startOffset);
+      }
+      remoteReplicaInfo.setToken(response.getHandoffToken());
+    }
+  }
+
   /**
    * Gets the replica metadata response for a list of remote replicas on a given remote data node
    * @param replicasToReplicatePerNode The list of remote replicas for a node
@@ -75,6 +75,9 @@ final class RemoteReplicaInfo {
   private long totalBytesReadFromLocalStore;
   private Time time;
   private final Port port;
+  private volatile ReplicaBootstrapState bootstrapState = null;
+  // the persisted token that was reset because the local store was empty, kept until the bootstrap catches up
+  private FindToken tokenBeforeBootstrap = null;
 
   public RemoteReplicaInfo(ReplicaId replicaId, ReplicaId localReplicaId, Store localStore, FindToken token,
       long tokenPersistIntervalInMs, Time time, Port port) {
@@ -134,6 +137,29 @@ final class RemoteReplicaInfo {
     }
   }
 
+  /**
+   * @return The bootstrap state of the partition this replica belongs to, or null if the local replica of the
+   *         partition is not being bootstrapped
+   */
+  ReplicaBootstrapState getBootstrapState() {
+    return bootstrapState;
+  }
+
+  void setBootstrapState(ReplicaBootstrapState bootstrapState) {
+    this.bootstrapState = bootstrapState;
+  }
+
+  /**
+   * @return The persisted token of this replica that was not used because the local store was empty, or null
+   */
+  FindToken getTokenBeforeBootstrap() {
+    return tokenBeforeBootstrap;
+  }
+
+  void setTokenBeforeBootstrap(FindToken tokenBeforeBootstrap) {
+    this.tokenBeforeBootstrap = tokenBeforeBootstrap;
+  }
+
   void initializeTokens(FindToken token) {
     synchronized (lock) {
       this.currentToken = token;
@@ -195,6 +221,141 @@ final class RemoteReplicaInfo {
   }
 }
 
+/**
+ * Tracks the bootstrap of an empty local replica from a single peer. While the bootstrap is in progress, the sealed
+ * index segments of the peer are copied in bulk and the other peers of the partition are not replicated from.
+ * <p/>
+ * If the source is down, fails repeatedly or makes no progress for a while, the next candidate peer becomes the source
+ * as long as nothing has been copied yet. Once segments have been copied the local log follows the layout of the
+ * source, so the bootstrap is completed instead and all the peers are replicated from using tokens.
+ * <p/>
+ * Once the local replica has caught up with all the sealed segments of the source, the other peers resume from the
+ * tokens that were persisted for them, if any, instead of from the beginning. Anything they sent before those tokens
+ * that the source does not have yet reaches the local replica through the source, which replicates from them too.
+ */
+final class ReplicaBootstrapState {
+  private final List<RemoteReplicaInfo> candidates;
+  private final List<RemoteReplicaInfo> peers;
+  private final Store localStore;
+  private final int maxSourceFailures;
+  private final long sourceTimeoutMs;
+  private final Time time;
+  private final ReplicationMetrics replicationMetrics;
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private int sourceIndex = 0;
+  private int sourceFailures = 0;
+  private long lastProgressTimeInMs;
+  private volatile boolean complete = false;
+
+  /**
+   * @param candidates The remote replicas that can be the source, in order of preference. Cannot be empty.
+   * @param peers All the remote replicas of the partition
+   * @param localStore The local store that is being bootstrapped
+   * @param maxSourceFailures The number of consecutive failures after which the source is replaced
+   * @param sourceTimeoutMs The time without progress after which the source is replaced
+   * @param time The time instance to use
+   * @param replicationMetrics The metrics to update when the source is replaced
+   */
+  ReplicaBootstrapState(List<RemoteReplicaInfo> candidates, List<RemoteReplicaInfo> peers, Store localStore,
+      int maxSourceFailures, long sourceTimeoutMs, Time time, ReplicationMetrics replicationMetrics) {
+    this.candidates = candidates;
+    this.peers = peers;
+    this.localStore = localStore;
+    this.maxSourceFailures = maxSourceFailures;
+    this.sourceTimeoutMs = sourceTimeoutMs;
+    this.time = time;
+    this.replicationMetrics = replicationMetrics;
+    lastProgressTimeInMs = time.milliseconds();
+  }
+
+  /**
+   * Replaces the source first if it is down or has not made progress within the timeout.
+   * @return The remote replica that the sealed segments are copied from, or null if the bootstrap is complete
+   */
+  synchronized RemoteReplicaInfo getSource() {
+    if (!complete) {
+      RemoteReplicaInfo source = candidates.get(sourceIndex);
+      if (source.getReplicaId().isDown()) {
+        failOver("is down");
+      } else if (time.milliseconds() - lastProgressTimeInMs > sourceTimeoutMs) {
+        failOver("made no progress in " + sourceTimeoutMs + " ms");
+      }
+    }
+    return complete ? null : candidates.get(sourceIndex);
+  }
+
+  boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Records that a sealed segment was copied from the source.
+   */
+  synchronized void onProgress() {
+    sourceFailures = 0;
+    lastProgressTimeInMs = time.milliseconds();
+  }
+
+  /**
+   * Records a failure to reach or copy from {@code source}. The source is replaced once it has failed
+   * {@link #maxSourceFailures} times in a row.
+   * @param source The remote replica that failed
+   */
+  synchronized void onSourceFailure(RemoteReplicaInfo source) {
+    if (!complete && source == candidates.get(sourceIndex) && ++sourceFailures >= maxSourceFailures) {
+      failOver("failed " + sourceFailures + " times in a row");
+    }
+  }
+
+  /**
+   * Marks the bootstrap as complete. All the peers of the partition are replicated from using tokens from here on.
+   */
+  void onComplete() {
+    complete = true;
+  }
+
+  /**
+   * Marks the bootstrap as complete after the source had no more sealed segments to offer. The peers other than the
+   * source resume from their persisted tokens.
+   */
+  synchronized void onCaughtUp() {
+    RemoteReplicaInfo source = candidates.get(sourceIndex);
+    for (RemoteReplicaInfo peer : peers) {
+      FindToken token = peer.getTokenBeforeBootstrap();
+      if (peer != source && token != null) {
+        logger.info("Bootstrap from {} caught up, resuming replication from {} with persisted token {}", source, peer,
+            token);
+        peer.initializeTokens(token);
+      }
+      peer.setTokenBeforeBootstrap(null);
+    }
+    complete = true;
+  }
+
+  private void failOver(String reason) {
+    RemoteReplicaInfo source = candidates.get(sourceIndex);
+    int nextIndex = sourceIndex + 1;
+    while (nextIndex < candidates.size() && candidates.get(nextIndex).getReplicaId().isDown()) {
+      nextIndex++;
+    }
+    if (localStore.getSizeInBytes() == 0 && nextIndex < candidates.size()) {
+      sourceIndex = nextIndex;
+      sourceFailures = 0;
+      lastProgressTimeInMs = time.milliseconds();
+      logger.warn("Bootstrap source {} {}, bootstrapping from {} instead", source, reason, candidates.get(sourceIndex));
+    } else {
+      complete = true;
+      logger.warn("Bootstrap source {} {}, switching to token based replication", source, reason);
+    }
+    replicationMetrics.replicaBootstrapSourceFailoverCount.inc();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "Source-" + candidates.get(sourceIndex) + " Complete-" + complete;
+  }
+}
+
 final class PartitionInfo {
 
   private final List<RemoteReplicaInfo> remoteReplicas;
@@ -337,6 +498,9 @@ public final class ReplicationManager {
       for (String mountPath : partitionGroupedByMountPath.keySet()) {
         readFromFileAndPersistIfNecessary(mountPath);
       }
+      if (replicationConfig.replicationBootstrapFromSealedSegments) {
+        initializeBootstraps();
+      }
       if (dataNodeRemoteReplicaInfosPerDC.size() == 0) {
         logger.warn("Number of Datacenters to replicate from is 0, not starting any replica threads");
         return;
@@ -365,6 +529,39 @@ public final class ReplicationManager {
     }
   }
 
+  /**
+   * Sets up a bootstrap for every partition whose local replica is empty. The sealed segments are copied from the
+   * first available peer in the local datacenter, and from the next one if that peer becomes unavailable. Partitions
+   * with no such peer use token based replication.
+   */
+  private void initializeBootstraps() {
+    for (PartitionInfo partitionInfo : partitionsToReplicate.values()) {
+      if (partitionInfo.getStore().getSizeInBytes() > 0) {
+        continue;
+      }
+      List<RemoteReplicaInfo> candidates = new ArrayList<RemoteReplicaInfo>();
+      for (RemoteReplicaInfo remoteReplicaInfo : partitionInfo.getRemoteReplicaInfos()) {
+        ReplicaId remoteReplica = remoteReplicaInfo.getReplicaId();
+        if (remoteReplica.getDataNodeId().getDatacenterName().equals(dataNodeId.getDatacenterName())
+            && !remoteReplica.isDown()) {
+          candidates.add(remoteReplicaInfo);
+        }
+      }
+      if (candidates.size() > 0) {
+        ReplicaBootstrapState bootstrapState =
+            new ReplicaBootstrapState(candidates, partitionInfo.getRemoteReplicaInfos(), partitionInfo.getStore(),
+                replicationConfig.replicationBootstrapSourceMaxFailures,
+                replicationConfig.replicationBootstrapSourceTimeoutMs, SystemTime.getInstance(), replicationMetrics);
+        for (RemoteReplicaInfo remoteReplicaInfo : partitionInfo.getRemoteReplicaInfos()) {
+          remoteReplicaInfo.setBootstrapState(bootstrapState);
+        }
+        replicationMetrics.replicaBootstrapStartedCount.inc();
+        logger.info("Bootstrapping partition {} from sealed segments of remote replica {}",
+            partitionInfo.getPartitionId(), candidates.get(0));
+      }
+    }
+  }
+
   /**
    * Returns the port to be contacted for the remote replica according to the configs.
    * @param replicaId Replica against which connection has to be establised
@@ -619,6 +816,10 @@ public final class ReplicationManager {
                     // local replica should also be set to 0. During initialization these values are already set to 0,
                     // so we let them be.
                     tokenWasReset = true;
+                    if (replicationConfig.replicationBootstrapFromSealedSegments) {
+                      // kept for when the replica is bootstrapped from another peer
+                      remoteReplicaInfo.setTokenBeforeBootstrap(token);
+                    }
                     replicationMetrics.replicationTokenResetCount.inc();
                     logger.info("Resetting token for partition {} remote host {} port {}, persisted token {}",
                         partitionId, hostname, port, token);
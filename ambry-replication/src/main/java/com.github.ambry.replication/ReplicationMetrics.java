@@ -58,6 +58,13 @@ public class ReplicationMetrics {
   public final Counter sslReplicationErrors;
   public final Counter replicationTokenResetCount;
   public final Counter replicationInvalidMessageStreamErrorCount;
+  public final Counter replicaBootstrapStartedCount;
+  public final Counter replicaBootstrapCompletedCount;
+  public final Counter replicaBootstrapErrorCount;
+  public final Counter replicaBootstrapSegmentsCopiedCount;
+  public final Counter replicaBootstrapSourceFailoverCount;
+  public final Meter replicaBootstrapBytesRate;
+  public final Histogram replicaBootstrapSegmentCopyTime;
   public final Map<String, Timer> interColoReplicationLatency = new HashMap<String, Timer>();
   public final Timer intraColoReplicationLatency;
   public final Map<String, Timer> plainTextInterColoReplicationLatency = new HashMap<String, Timer>();
@@ -149,6 +156,18 @@ public class ReplicationMetrics {
         registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationTokenResetCount"));
     replicationInvalidMessageStreamErrorCount =
         registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationInvalidMessageStreamErrorCount"));
+    replicaBootstrapStartedCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapStartedCount"));
+    replicaBootstrapCompletedCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapCompletedCount"));
+    replicaBootstrapErrorCount = registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapErrorCount"));
+    replicaBootstrapSegmentsCopiedCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapSegmentsCopiedCount"));
+    replicaBootstrapSourceFailoverCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapSourceFailoverCount"));
+    replicaBootstrapBytesRate = registry.meter(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapBytesRate"));
+    replicaBootstrapSegmentCopyTime =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "ReplicaBootstrapSegmentCopyTime"));
     intraColoReplicationLatency =
         registry.timer(MetricRegistry.name(ReplicaThread.class, "IntraColoReplicationLatency"));
     plainTextIntraColoReplicationLatency =
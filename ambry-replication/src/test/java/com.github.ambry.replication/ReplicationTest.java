@@ -40,6 +40,8 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
+import com.github.ambry.protocol.ReplicaBootstrapRequest;
+import com.github.ambry.protocol.ReplicaBootstrapResponse;
 import com.github.ambry.protocol.ReplicaMetadataRequest;
 import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
 import com.github.ambry.protocol.ReplicaMetadataResponse;
@@ -52,6 +54,8 @@ import com.github.ambry.store.MessageReadSet;
 import com.github.ambry.store.MessageStoreHardDelete;
 import com.github.ambry.store.MessageStoreRecovery;
 import com.github.ambry.store.MessageWriteSet;
+import com.github.ambry.store.SealedSegmentInfo;
+import com.github.ambry.store.SealedSegmentReadSet;
 import com.github.ambry.store.Store;
 import com.github.ambry.store.StoreException;
 import com.github.ambry.store.StoreGetOptions;
@@ -68,12 +72,14 @@ import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
+import java.net.ConnectException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -312,6 +318,18 @@ public class ReplicationTest {
       return false;
     }
 
+    @Override
+    public SealedSegmentReadSet getSealedSegment(long startOffset)
+        throws StoreException {
+      throw new UnsupportedOperationException("Bootstrap is not supported by the mock store");
+    }
+
+    @Override
+    public void appendSealedSegment(SealedSegmentInfo info, ReadableByteChannel channel)
+        throws StoreException {
+      throw new UnsupportedOperationException("Bootstrap is not supported by the mock store");
+    }
+
     @Override
     public long getSizeInBytes() {
       return log.getEndOffSet();
@@ -381,6 +399,7 @@ public class ReplicationTest {
     Map<PartitionId, List<MessageInfo>> messageInfoToReturn;
     ReplicaMetadataRequest metadataRequest;
     GetRequest getRequest;
+    ReplicaBootstrapRequest bootstrapRequest;
     String host;
     int port;
     int maxSizeToReturn;
@@ -400,6 +419,9 @@ public class ReplicationTest {
       if (request instanceof ReplicaMetadataRequest) {
         metadataRequest = (ReplicaMetadataRequest) request;
       }
+      if (request instanceof ReplicaBootstrapRequest) {
+        bootstrapRequest = (ReplicaBootstrapRequest) request;
+      }
       if (request instanceof GetRequest) {
         getRequest = (GetRequest) request;
         bufferToReturn = new ArrayList<ByteBuffer>();
@@ -427,7 +449,31 @@ public class ReplicationTest {
     public ChannelOutput receive()
         throws IOException {
       Response response = null;
-      if (metadataRequest != null) {
+      if (bootstrapRequest != null) {
+        // the remote replica has no sealed segments to offer, so the bootstrap completes right away
+        response = new ReplicaBootstrapResponse(1, "replicabootstrap", new SealedSegmentReadSet() {
+          @Override
+          public SealedSegmentInfo getInfo() {
+            return new SealedSegmentInfo(0, 0, 0, 0);
+          }
+
+          @Override
+          public FindToken getHandoffToken() {
+            return new MockFindToken(0, 0);
+          }
+
+          @Override
+          public long sizeInBytes() {
+            return 0;
+          }
+
+          @Override
+          public long writeTo(WritableByteChannel channel, long relativeOffset, long maxSize) {
+            return 0;
+          }
+        });
+        bootstrapRequest = null;
+      } else if (metadataRequest != null) {
         List<ReplicaMetadataResponseInfo> replicaMetadataResponseInfoList =
             new ArrayList<ReplicaMetadataResponseInfo>();
         for (ReplicaMetadataRequestInfo replicaMetadataRequestInfo : metadataRequest.getReplicaMetadataRequestInfoList()) {
@@ -508,7 +554,12 @@ public class ReplicationTest {
     @Override
     public ConnectedChannel checkOutConnection(String host, Port port, long timeout)
         throws IOException, InterruptedException, ConnectionPoolTimeoutException {
-      return new MockConnection(host, port.getPort(), messageInfoList.get(host + port), byteBufferList.get(host + port),
+      String node = host + port.getPort();
+      if (messageInfoList.get(node) == null) {
+        // nodes without any replica registered in the pool are unreachable
+        throw new ConnectException("Connection refused to " + node);
+      }
+      return new MockConnection(host, port.getPort(), messageInfoList.get(node), byteBufferList.get(node),
           maxEntriesToReturn);
     }
 
@@ -722,6 +773,158 @@ public class ReplicationTest {
     }
   }
 
+  /**
+   * Tests that a partition whose bootstrap source is unreachable is bootstrapped from another peer after
+   * {@link ReplicationConfig#replicationBootstrapSourceMaxFailures} failures, and then replicates from it.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadBootstrapSourceDownTest()
+      throws Exception {
+    Random random = new Random();
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+    // the source node is not registered in the connection pool, so it cannot be reached
+    DataNodeId sourceNode = clusterMap.getDataNodeIds().get(1);
+    DataNodeId otherNode = clusterMap.getDataNodeIds().get(2);
+
+    Properties properties = new Properties();
+    properties.setProperty("replication.wait.time.between.replicas.ms", "0");
+    properties.setProperty("replication.bootstrap.source.max.failures", "2");
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+    replicationMetrics.populatePerColoMetrics(new HashSet<String>(Arrays.asList(localNode.getDatacenterName())));
+
+    Map<PartitionId, List<MessageInfo>> messageInfoOtherNode = new HashMap<PartitionId, List<MessageInfo>>();
+    Map<PartitionId, List<ByteBuffer>> bufferListOtherNode = new HashMap<PartitionId, List<ByteBuffer>>();
+    Map<PartitionId, List<MessageInfo>> messageInfoLocalNode = new HashMap<PartitionId, List<MessageInfo>>();
+    List<ReplicaBootstrapState> bootstrapStates = new ArrayList<ReplicaBootstrapState>();
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    replicasToReplicate.put(sourceNode, new ArrayList<RemoteReplicaInfo>());
+    replicasToReplicate.put(otherNode, new ArrayList<RemoteReplicaInfo>());
+    for (ReplicaId replicaId : replicaIds) {
+      PartitionId partitionId = replicaId.getPartitionId();
+      List<MessageInfo> messageInfoList = new ArrayList<MessageInfo>();
+      List<ByteBuffer> bufferList = new ArrayList<ByteBuffer>();
+      for (int i = 0; i < 5; i++) {
+        BlobId id = new BlobId(partitionId);
+        ByteBuffer byteBuffer = constructTestBlobInMessageFormat(id, 1000, random);
+        messageInfoList.add(new MessageInfo(id, byteBuffer.limit()));
+        bufferList.add(byteBuffer);
+      }
+      messageInfoOtherNode.put(partitionId, messageInfoList);
+      bufferListOtherNode.put(partitionId, bufferList);
+
+      messageInfoLocalNode.put(partitionId, new ArrayList<MessageInfo>());
+      MockStore localStore = new MockStore(messageInfoLocalNode.get(partitionId), new ArrayList<ByteBuffer>());
+      List<RemoteReplicaInfo> candidates = new ArrayList<RemoteReplicaInfo>();
+      for (DataNodeId remoteNode : Arrays.asList(sourceNode, otherNode)) {
+        for (ReplicaId peerReplicaId : replicaId.getPeerReplicaIds()) {
+          if (peerReplicaId.getDataNodeId().equals(remoteNode)) {
+            RemoteReplicaInfo remoteReplicaInfo =
+                new RemoteReplicaInfo(peerReplicaId, replicaId, localStore, new MockFindToken(0, 0), 1000000,
+                    SystemTime.getInstance(), new Port(remoteNode.getPort(), PortType.PLAINTEXT));
+            candidates.add(remoteReplicaInfo);
+            replicasToReplicate.get(remoteNode).add(remoteReplicaInfo);
+          }
+        }
+      }
+      ReplicaBootstrapState bootstrapState =
+          new ReplicaBootstrapState(candidates, candidates, localStore, config.replicationBootstrapSourceMaxFailures,
+              config.replicationBootstrapSourceTimeoutMs, SystemTime.getInstance(), replicationMetrics);
+      for (RemoteReplicaInfo remoteReplicaInfo : candidates) {
+        remoteReplicaInfo.setBootstrapState(bootstrapState);
+      }
+      Assert.assertEquals("Source should be the first candidate", candidates.get(0), bootstrapState.getSource());
+      bootstrapStates.add(bootstrapState);
+    }
+
+    Map<String, Map<PartitionId, List<MessageInfo>>> replicaStores =
+        new HashMap<String, Map<PartitionId, List<MessageInfo>>>();
+    Map<String, Map<PartitionId, List<ByteBuffer>>> replicaBuffers =
+        new HashMap<String, Map<PartitionId, List<ByteBuffer>>>();
+    replicaStores.put(otherNode.getHostname() + otherNode.getPort(), messageInfoOtherNode);
+    replicaBuffers.put(otherNode.getHostname() + otherNode.getPort(), bufferListOtherNode);
+    StoreKeyFactory storeKeyFactory = Utils.getObj("com.github.ambry.commons.BlobIdFactory", clusterMap);
+    ReplicaThread replicaThread =
+        new ReplicaThread("bootstrapthreadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+            new AtomicInteger(0), localNode, new MockConnectionPool(replicaStores, replicaBuffers, 3), config,
+            replicationMetrics, null, storeKeyFactory, true, clusterMap.getMetricRegistry(), false,
+            localNode.getDatacenterName(), new ResponseHandler(clusterMap));
+    Thread thread = Utils.newThread(replicaThread, false);
+    thread.start();
+    try {
+      long deadlineInMs = SystemTime.getInstance().milliseconds() + 10000;
+      boolean replicated = false;
+      while (!replicated && SystemTime.getInstance().milliseconds() < deadlineInMs) {
+        replicated = true;
+        for (Map.Entry<PartitionId, List<MessageInfo>> entry : messageInfoLocalNode.entrySet()) {
+          replicated &= entry.getValue().size() == messageInfoOtherNode.get(entry.getKey()).size();
+        }
+        Thread.sleep(10);
+      }
+      Assert.assertTrue("Partitions were not replicated from the other peer", replicated);
+    } finally {
+      replicaThread.shutdown();
+    }
+    for (ReplicaBootstrapState bootstrapState : bootstrapStates) {
+      Assert.assertTrue("Bootstrap should be complete", bootstrapState.isComplete());
+      Assert.assertNull("There should be no source once complete", bootstrapState.getSource());
+    }
+    Assert.assertEquals("Every partition should have failed over once", replicaIds.size(),
+        replicationMetrics.replicaBootstrapSourceFailoverCount.getCount());
+    Assert.assertEquals("Every partition should have completed its bootstrap", replicaIds.size(),
+        replicationMetrics.replicaBootstrapCompletedCount.getCount());
+  }
+
+  /**
+   * Tests that the peers other than the bootstrap source resume from their persisted tokens once the bootstrap has
+   * caught up with the source, and that they keep replicating from the beginning if the bootstrap is abandoned.
+   */
+  @Test
+  public void replicaBootstrapPeerTokensTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    ReplicaId replicaId = clusterMap.getReplicaIds(clusterMap.getDataNodeIds().get(0)).get(0);
+    ReplicationMetrics replicationMetrics =
+        new ReplicationMetrics(new MetricRegistry(), Collections.singletonList(replicaId));
+    MockStore localStore = new MockStore(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>());
+    for (boolean caughtUp : new boolean[]{true, false}) {
+      List<RemoteReplicaInfo> peers = new ArrayList<RemoteReplicaInfo>();
+      for (ReplicaId peerReplicaId : replicaId.getPeerReplicaIds()) {
+        peers.add(new RemoteReplicaInfo(peerReplicaId, replicaId, localStore, new MockFindToken(0, 0), 1000000,
+            SystemTime.getInstance(), new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT)));
+      }
+      Assert.assertTrue("The test needs at least two peers", peers.size() > 1);
+      RemoteReplicaInfo source = peers.get(0);
+      RemoteReplicaInfo otherPeer = peers.get(1);
+      MockFindToken sourceToken = new MockFindToken(0, 300);
+      MockFindToken persistedSourceToken = new MockFindToken(0, 100);
+      MockFindToken persistedPeerToken = new MockFindToken(0, 200);
+      source.setTokenBeforeBootstrap(persistedSourceToken);
+      otherPeer.setTokenBeforeBootstrap(persistedPeerToken);
+      ReplicaBootstrapState bootstrapState =
+          new ReplicaBootstrapState(Collections.singletonList(source), peers, localStore, 1, 1000000,
+              SystemTime.getInstance(), replicationMetrics);
+      Assert.assertEquals("Source should be the only candidate", source, bootstrapState.getSource());
+      source.setToken(sourceToken);
+      FindToken peerToken = otherPeer.getToken();
+      if (caughtUp) {
+        bootstrapState.onCaughtUp();
+        Assert.assertEquals("Other peer should resume from its persisted token", persistedPeerToken,
+            otherPeer.getToken());
+        Assert.assertEquals("Persisted token should be the one to persist", persistedPeerToken,
+            otherPeer.getTokenToPersist());
+      } else {
+        bootstrapState.onComplete();
+        Assert.assertEquals("Other peer should keep its token", peerToken, otherPeer.getToken());
+      }
+      Assert.assertTrue("Bootstrap should be complete", bootstrapState.isComplete());
+      Assert.assertEquals("Source should keep the handed off token", sourceToken, source.getToken());
+    }
+  }
+
   @Test
   public void replicaTokenTest()
       throws InterruptedException {
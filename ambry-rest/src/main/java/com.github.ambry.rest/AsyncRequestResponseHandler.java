@@ -19,9 +19,11 @@ import com.github.ambry.utils.Utils;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -41,8 +43,11 @@ import org.slf4j.LoggerFactory;
  * <p/>
  * Maintains multiple "workers" internally that run continuously to handle submitted requests.
  * <p/>
- * Requests are queued on submission and handed off to the {@link BlobStorageService} when they are dequeued. Responses
- * are sent to the client via the appropriate {@link RestResponseChannel} and callbacks/errors are handled.
+ * Requests are queued on submission and handed off to the {@link BlobStorageService} when they are dequeued. Requests
+ * whose {@link RestMethod} has been set up for inline dispatch skip the queue and are handed off to the
+ * {@link BlobStorageService} on the thread that submits them (usually the NIO event loop that received them). This
+ * saves a thread hop per request but is only appropriate if the handling of such requests never blocks. Responses are
+ * sent to the client via the appropriate {@link RestResponseChannel} and callbacks/errors are handled.
  * <p/>
  * These are the scaling units of the {@link RestServer} and can be scaled up and down independently of any other
  * component of the {@link RestServer}.
@@ -57,6 +62,7 @@ class AsyncRequestResponseHandler implements RestRequestHandler, RestResponseHan
   private AsyncResponseHandler asyncResponseHandler = null;
   private BlobStorageService blobStorageService = null;
   private int requestWorkersCount = 0;
+  private Set<RestMethod> inlineDispatchMethods = EnumSet.noneOf(RestMethod.class);
   private volatile boolean isRunning = false;
 
   /**
@@ -136,6 +142,9 @@ class AsyncRequestResponseHandler implements RestRequestHandler, RestResponseHan
   /**
    * Queues the {@code restRequest} to be handled async. When this function returns, it may not be handled yet. When
    * the response is ready, {@link RestResponseChannel} will be used to send the response.
+   * <p/>
+   * If the {@link RestMethod} of {@code restRequest} has been set up for inline dispatch, the {@code restRequest} is
+   * handed off to the {@link BlobStorageService} before this function returns.
    * @param restRequest the {@link RestRequest} that needs to be handled.
    * @param restResponseChannel the {@link RestResponseChannel} on which a response to the request may be sent.
    * @throws IllegalArgumentException if either of {@code restRequest} or {@code restResponseChannel} is null.
@@ -145,7 +154,11 @@ class AsyncRequestResponseHandler implements RestRequestHandler, RestResponseHan
   public void handleRequest(RestRequest restRequest, RestResponseChannel restResponseChannel)
       throws RestServiceException {
     if (isRunning() && requestWorkersCount > 0) {
-      getWorker().submitRequest(restRequest, restResponseChannel);
+      if (restRequest != null && inlineDispatchMethods.contains(restRequest.getRestMethod())) {
+        getWorker().processRequestInline(restRequest, restResponseChannel);
+      } else {
+        getWorker().submitRequest(restRequest, restResponseChannel);
+      }
     } else {
       restServerMetrics.requestResponseHandlerUnavailableError.inc();
       throw new RestServiceException(
@@ -196,16 +209,38 @@ class AsyncRequestResponseHandler implements RestRequestHandler, RestResponseHan
    * @throws IllegalStateException if {@link #start()} has already been called before a call to this function.
    */
   protected void setupRequestHandling(int workerCount, BlobStorageService blobStorageService) {
+    setupRequestHandling(workerCount, blobStorageService, EnumSet.noneOf(RestMethod.class));
+  }
+
+  /**
+   * Sets the number of request handling units, the {@link BlobStorageService} that will be used in
+   * {@link AsyncRequestWorker} instances and the {@link RestMethod}s whose requests are handed off to the
+   * {@link BlobStorageService} on the thread that submits them instead of being queued.
+   * @param workerCount the required number of request handling units.
+   * @param blobStorageService the {@link BlobStorageService} instance to be used to process requests.
+   * @param inlineDispatchMethods the {@link RestMethod}s whose requests need to be dispatched inline. The handling of
+   *                              requests of these methods by the {@link BlobStorageService} must never block.
+   * @throws IllegalArgumentException if {@code workerCount} < 0, if {@code workerCount} > 0 but
+   *                                  {@code blobStorageService} is null or if {@code inlineDispatchMethods} is null.
+   * @throws IllegalStateException if {@link #start()} has already been called before a call to this function.
+   */
+  protected void setupRequestHandling(int workerCount, BlobStorageService blobStorageService,
+      Set<RestMethod> inlineDispatchMethods) {
     if (isRunning()) {
       throw new IllegalStateException("Cannot modify scaling unit count after the service has started");
     } else if (workerCount < 0) {
       throw new IllegalArgumentException("Request worker workerCount has to be >= 0");
     } else if (workerCount > 0 && blobStorageService == null) {
       throw new IllegalArgumentException("BlobStorageService cannot be null");
+    } else if (inlineDispatchMethods == null) {
+      throw new IllegalArgumentException("Inline dispatch methods cannot be null");
     }
     requestWorkersCount = workerCount;
     this.blobStorageService = blobStorageService;
-    logger.trace("Request handling units count set to {}", requestWorkersCount);
+    this.inlineDispatchMethods = EnumSet.noneOf(RestMethod.class);
+    this.inlineDispatchMethods.addAll(inlineDispatchMethods);
+    logger.trace("Request handling units count set to {}. Inline dispatch methods set to {}", requestWorkersCount,
+        inlineDispatchMethods);
   }
 
   /**
@@ -389,6 +424,31 @@ class AsyncRequestWorker implements Runnable {
     }
   }
 
+  /**
+   * Handles the {@code restRequest} on the calling thread instead of queuing it. When this function returns, the
+   * {@code restRequest} has been handed off to the {@link BlobStorageService} (or failed).
+   * <p/>
+   * Any failure in handling the request is sent as a response on {@code restResponseChannel}.
+   * @param restRequest the {@link RestRequest} that needs to be handled.
+   * @param restResponseChannel the {@link RestResponseChannel} on which a response to the request may be sent.
+   * @throws IllegalArgumentException if either of {@code restRequest} or {@code restResponseChannel} is null.
+   */
+  protected void processRequestInline(RestRequest restRequest, RestResponseChannel restResponseChannel) {
+    if (restRequest == null || restResponseChannel == null) {
+      throw new IllegalArgumentException("Received one or more null arguments");
+    }
+    restRequest.getMetricsTracker().scalingMetricsTracker.markRequestReceived();
+    restServerMetrics.requestArrivalRate.mark();
+    restServerMetrics.inlineRequestDispatchRate.mark();
+    try {
+      processRequest(restRequest, restResponseChannel);
+      logger.trace("Request {} was processed inline successfully", restRequest.getUri());
+    } catch (Exception e) {
+      restServerMetrics.requestProcessingError.inc();
+      onProcessingFailure(restRequest, restResponseChannel, e);
+    }
+  }
+
   /**
    * Information on whether this instance is accepting requests and responses. This will return {@code false} as soon as
    * {@link #shutdown(long, TimeUnit)} is called whether or not the instance has actually stopped working.
@@ -407,20 +467,29 @@ class AsyncRequestWorker implements Runnable {
   }
 
   /**
-   * Processes the {@code asyncRequestInfo}. Discerns the type of {@link RestMethod} in the request and calls the right
-   * function of the {@link BlobStorageService}.
+   * Processes the request in the {@code asyncRequestInfo} once it has been dequeued.
    * @param asyncRequestInfo the currently dequeued {@link AsyncRequestInfo}.
    * @throws RestServiceException if the request cannot be prepared for hand-off to the {@link BlobStorageService}.
    */
   private void processRequest(AsyncRequestInfo asyncRequestInfo)
       throws RestServiceException {
+    onRequestDequeue(asyncRequestInfo);
+    processRequest(asyncRequestInfo.restRequest, asyncRequestInfo.restResponseChannel);
+  }
+
+  /**
+   * Processes the {@code restRequest}. Discerns the type of {@link RestMethod} in the request and calls the right
+   * function of the {@link BlobStorageService}.
+   * @param restRequest the {@link RestRequest} that needs to be handled.
+   * @param restResponseChannel the {@link RestResponseChannel} on which a response to the request may be sent.
+   * @throws RestServiceException if the request cannot be prepared for hand-off to the {@link BlobStorageService}.
+   */
+  private void processRequest(RestRequest restRequest, RestResponseChannel restResponseChannel)
+      throws RestServiceException {
     long processingStartTime = System.currentTimeMillis();
     // needed to avoid double counting.
     long blobStorageProcessingTime = 0;
-    RestRequest restRequest = asyncRequestInfo.restRequest;
     try {
-      onRequestDequeue(asyncRequestInfo);
-      RestResponseChannel restResponseChannel = asyncRequestInfo.restResponseChannel;
       RestMethod restMethod = restRequest.getRestMethod();
       restRequest.prepare();
       logger.trace("Processing request {} with RestMethod {}", restRequest.getUri(), restMethod);
@@ -13,6 +13,9 @@
  */
 package com.github.ambry.rest;
 
+import com.github.ambry.config.RestServerConfig;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,13 +63,43 @@ public class AsyncRequestResponseHandlerFactory implements RestRequestHandlerFac
    */
   public AsyncRequestResponseHandlerFactory(Integer handlerCount, RestServerMetrics restServerMetrics,
       BlobStorageService blobStorageService) {
+    this(handlerCount, restServerMetrics, blobStorageService, EnumSet.noneOf(RestMethod.class));
+  }
+
+  /**
+   * Constructor for {@link RestRequestHandlerFactory} that also sets up the {@link RestMethod}s whose requests are
+   * handled inline (see {@link RestServerConfig#restServerRequestHandlerInlineDispatchMethods}).
+   * @param handlerCount the number of request scaling units required.
+   * @param restServerMetrics the {@link RestServerMetrics} instance that should be used for metrics.
+   * @param blobStorageService the {@link BlobStorageService} to use for handling requests.
+   * @param restServerConfig the {@link RestServerConfig} to use.
+   * @throws IllegalArgumentException if {@code handlerCount} <= 0, if {@code restServerMetrics},
+   * {@code blobStorageService} or {@code restServerConfig} is null or if a {@link RestMethod} configured for inline
+   * dispatch is not recognized.
+   */
+  public AsyncRequestResponseHandlerFactory(Integer handlerCount, RestServerMetrics restServerMetrics,
+      BlobStorageService blobStorageService, RestServerConfig restServerConfig) {
+    this(handlerCount, restServerMetrics, blobStorageService, getInlineDispatchMethods(restServerConfig));
+  }
+
+  /**
+   * Constructor for {@link RestRequestHandlerFactory}.
+   * @param handlerCount the number of request scaling units required.
+   * @param restServerMetrics the {@link RestServerMetrics} instance that should be used for metrics.
+   * @param blobStorageService the {@link BlobStorageService} to use for handling requests.
+   * @param inlineDispatchMethods the {@link RestMethod}s whose requests are handled on the thread that submits them.
+   * @throws IllegalArgumentException if {@code handlerCount} <= 0 or if {@code restServerMetrics} or
+   * {@code blobStorageService} is null.
+   */
+  private AsyncRequestResponseHandlerFactory(Integer handlerCount, RestServerMetrics restServerMetrics,
+      BlobStorageService blobStorageService, Set<RestMethod> inlineDispatchMethods) {
     if (restServerMetrics == null || blobStorageService == null) {
       throw new IllegalArgumentException("One or more arguments received is null");
     } else if (handlerCount <= 0) {
       throw new IllegalArgumentException("Request handler scaling unit count has to be > 0. Is " + handlerCount);
     } else {
       buildInstance(restServerMetrics);
-      instance.setupRequestHandling(handlerCount, blobStorageService);
+      instance.setupRequestHandling(handlerCount, blobStorageService, inlineDispatchMethods);
     }
     logger.trace("Instantiated AsyncRequestResponseHandlerFactory as RestRequestHandler");
   }
@@ -89,6 +122,31 @@ public class AsyncRequestResponseHandlerFactory implements RestRequestHandlerFac
     return instance;
   }
 
+  /**
+   * Parses the {@link RestMethod}s configured for inline dispatch in {@code restServerConfig}.
+   * @param restServerConfig the {@link RestServerConfig} to use.
+   * @return the {@link RestMethod}s whose requests have to be handled on the thread that submits them.
+   * @throws IllegalArgumentException if {@code restServerConfig} is null or if a configured {@link RestMethod} is not
+   *                                  recognized.
+   */
+  private static Set<RestMethod> getInlineDispatchMethods(RestServerConfig restServerConfig) {
+    if (restServerConfig == null) {
+      throw new IllegalArgumentException("RestServerConfig instance provided is null");
+    }
+    Set<RestMethod> inlineDispatchMethods = EnumSet.noneOf(RestMethod.class);
+    for (String method : restServerConfig.restServerRequestHandlerInlineDispatchMethods.split(",")) {
+      method = method.trim();
+      if (!method.isEmpty()) {
+        RestMethod restMethod = RestMethod.valueOf(method.toUpperCase());
+        if (restMethod == RestMethod.UNKNOWN) {
+          throw new IllegalArgumentException("RestMethod " + method + " cannot be dispatched inline");
+        }
+        inlineDispatchMethods.add(restMethod);
+      }
+    }
+    return inlineDispatchMethods;
+  }
+
   /**
    * Returns the singleton {@link AsyncRequestResponseHandler} instance being maintained. Creates it if it hasn't been
    * created already.
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import com.github.ambry.utils.Time;
+
+
+/**
+ * Tracks the rate at which a client drains response content from its connection, as an exponentially weighted moving
+ * average of the rates measured over the responses sent on it. There is one per connection.
+ * <p/>
+ * Responses that are written out faster than {@link #MIN_SAMPLE_TIME_NS} are not counted, because they are absorbed by
+ * the socket buffers and say little about the client.
+ * <p/>
+ * This class is thread safe.
+ */
+class DrainRateTracker {
+  static final long MIN_SAMPLE_TIME_NS = 10 * Time.NsPerMs;
+  // the weight of the most recent response. Kept high so that the estimate follows changes in the client quickly.
+  private static final double SAMPLE_WEIGHT = 0.5;
+
+  private long bytesPerSec = -1;
+
+  /**
+   * Records the time it took to drain the content of a response.
+   * @param bytes the number of bytes that were drained.
+   * @param timeInNs the time it took to drain them.
+   */
+  synchronized void record(long bytes, long timeInNs) {
+    if (timeInNs >= MIN_SAMPLE_TIME_NS) {
+      long sample = getBytesPerSec(bytes, timeInNs);
+      bytesPerSec = bytesPerSec == -1 ? sample : (long) (SAMPLE_WEIGHT * sample + (1 - SAMPLE_WEIGHT) * bytesPerSec);
+    }
+  }
+
+  /**
+   * @return the estimated drain rate in bytes per second, or -1 if no response has been counted yet.
+   */
+  synchronized long getBytesPerSec() {
+    return bytesPerSec;
+  }
+
+  /**
+   * @param bytes the number of bytes drained.
+   * @param timeInNs the time it took to drain them. Has to be positive.
+   * @return the drain rate in bytes per second.
+   */
+  static long getBytesPerSec(long bytes, long timeInNs) {
+    return (long) ((double) bytes * Time.NsPerSec / timeInNs);
+  }
+}
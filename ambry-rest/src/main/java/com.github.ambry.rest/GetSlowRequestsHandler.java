@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.commons.ByteBufferReadableStreamChannel;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
+import com.github.ambry.router.ReadableStreamChannel;
+import java.nio.ByteBuffer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Performs the {@link RestUtils.Operations#SLOW_REQUESTS} operation, which any {@link BlobStorageService} can support
+ * by serving the traces in the {@link TraceRecorder} of its process.
+ */
+public class GetSlowRequestsHandler {
+  public static final String SLOW_REQUESTS_KEY = "slowRequests";
+  public static final String RECORDED_COUNT_KEY = "recordedCount";
+  public static final String TRACE_ID_KEY = "traceId";
+  public static final String NAME_KEY = "name";
+  public static final String START_TIME_MS_KEY = "startTimeMs";
+  public static final String DURATION_IN_NS_KEY = "durationInNs";
+  public static final String OUTCOME_KEY = "outcome";
+  public static final String SPANS_KEY = "spans";
+  public static final String HOST_KEY = "host";
+  public static final String START_OFFSET_IN_NS_KEY = "startOffsetInNs";
+  public static final String SERVER_QUEUE_TIME_IN_NS_KEY = "serverQueueTimeInNs";
+  public static final String SERVER_PROCESSING_TIME_IN_NS_KEY = "serverProcessingTimeInNs";
+  public static final String NETWORK_AND_SEND_TIME_IN_NS_KEY = "networkAndSendTimeInNs";
+  static final int DEFAULT_COUNT = 10;
+
+  private final TraceRecorder traceRecorder;
+  private final Histogram processingTimeInMs;
+  private final Counter responseConstructionError;
+  private final Logger logger = LoggerFactory.getLogger(GetSlowRequestsHandler.class);
+
+  /**
+   * Instantiate a handler to handle {@link RestUtils.Operations#SLOW_REQUESTS} operations.
+   * @param traceRecorder the {@link TraceRecorder} that the traces of the requests of the process are recorded in.
+   * @param metricRegistry the {@link MetricRegistry} to register the metrics of the handler with.
+   */
+  public GetSlowRequestsHandler(TraceRecorder traceRecorder, MetricRegistry metricRegistry) {
+    this.traceRecorder = traceRecorder;
+    processingTimeInMs =
+        metricRegistry.histogram(MetricRegistry.name(GetSlowRequestsHandler.class, "ProcessingTimeInMs"));
+    responseConstructionError =
+        metricRegistry.counter(MetricRegistry.name(GetSlowRequestsHandler.class, "ResponseConstructionError"));
+  }
+
+  /**
+   * Handles {@link RestUtils.Operations#SLOW_REQUESTS} operations by returning the slowest of the traces in the
+   * {@link TraceRecorder} as a serialized JSON object in the response. The number of traces returned is at most the
+   * value of {@link RestUtils.Headers#SLOW_REQUEST_COUNT}, or {@link #DEFAULT_COUNT} if it is absent.
+   * @param restRequest the {@link RestRequest} that requested the operation.
+   * @param restResponseChannel the {@link RestResponseChannel} to set headers in.
+   * @return a {@link ReadableStreamChannel} that contains the getSlowRequests response.
+   * @throws RestServiceException if the count requested is invalid or if there was any problem constructing the
+   *                              response.
+   */
+  public ReadableStreamChannel getSlowRequests(RestRequest restRequest, RestResponseChannel restResponseChannel)
+      throws RestServiceException {
+    long startTime = System.currentTimeMillis();
+    ReadableStreamChannel channel = null;
+    try {
+      int count = getCount(restRequest);
+      logger.trace("Getting the {} slowest traced requests", count);
+      String slowRequestsStr = packageResult(count).toString();
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/json");
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, slowRequestsStr.length());
+      channel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(slowRequestsStr.getBytes()));
+    } catch (JSONException e) {
+      responseConstructionError.inc();
+      throw new RestServiceException("Could not create response for GET of slow requests", e,
+          RestServiceErrorCode.InternalServerError);
+    } finally {
+      processingTimeInMs.update(System.currentTimeMillis() - startTime);
+    }
+    return channel;
+  }
+
+  /**
+   * @param restRequest the {@link RestRequest} that requested the operation.
+   * @return the number of traces requested.
+   * @throws RestServiceException if the count requested is not a positive number.
+   */
+  private int getCount(RestRequest restRequest)
+      throws RestServiceException {
+    Object countObj = restRequest.getArgs().get(RestUtils.Headers.SLOW_REQUEST_COUNT);
+    if (countObj == null) {
+      return DEFAULT_COUNT;
+    }
+    try {
+      int count = Integer.parseInt(countObj.toString());
+      if (count > 0) {
+        return count;
+      }
+    } catch (NumberFormatException e) {
+      // handled below.
+    }
+    throw new RestServiceException(
+        "Invalid value for header " + RestUtils.Headers.SLOW_REQUEST_COUNT + ": " + countObj,
+        RestServiceErrorCode.InvalidArgs);
+  }
+
+  /**
+   * Packages the slowest traces into a {@link JSONObject}.
+   * @param count the maximum number of traces to package.
+   * @return A {@link JSONObject} that wraps the traces, slowest first.
+   * @throws JSONException if there was an error building the {@link JSONObject}.
+   */
+  private JSONObject packageResult(int count)
+      throws JSONException {
+    JSONObject result = new JSONObject();
+    JSONArray slowRequests = new JSONArray();
+    for (RequestTrace trace : traceRecorder.getSlowestTraces(count)) {
+      JSONObject traceObject = new JSONObject();
+      traceObject.put(TRACE_ID_KEY, trace.getTraceId());
+      traceObject.put(NAME_KEY, trace.getName());
+      traceObject.put(START_TIME_MS_KEY, trace.getStartTimeMs());
+      traceObject.put(DURATION_IN_NS_KEY, trace.getDurationInNs());
+      traceObject.put(OUTCOME_KEY, trace.getOutcome());
+      JSONArray spans = new JSONArray();
+      for (RequestTrace.Span span : trace.getSpans()) {
+        JSONObject spanObject = new JSONObject();
+        spanObject.put(NAME_KEY, span.getName());
+        spanObject.putOpt(HOST_KEY, span.getHost());
+        spanObject.put(START_OFFSET_IN_NS_KEY, span.getStartOffsetInNs());
+        spanObject.put(DURATION_IN_NS_KEY, span.getDurationInNs());
+        long serverQueueTimeInNs = span.getRemoteQueueTimeInNs();
+        long serverProcessingTimeInNs = span.getRemoteProcessingTimeInNs();
+        if (serverQueueTimeInNs != -1) {
+          spanObject.put(SERVER_QUEUE_TIME_IN_NS_KEY, serverQueueTimeInNs);
+          spanObject.put(SERVER_PROCESSING_TIME_IN_NS_KEY, serverProcessingTimeInNs);
+          // what is left is the time on the network, plus the time the server spent reading the blob off the disk
+          // while sending it.
+          spanObject.put(NETWORK_AND_SEND_TIME_IN_NS_KEY,
+              Math.max(span.getDurationInNs() - serverQueueTimeInNs - serverProcessingTimeInNs, 0));
+        }
+        spans.put(spanObject);
+      }
+      traceObject.put(SPANS_KEY, spans);
+      slowRequests.put(traceObject);
+    }
+    result.put(RECORDED_COUNT_KEY, traceRecorder.getRecordedCount());
+    result.put(SLOW_REQUESTS_KEY, slowRequests);
+    return result;
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Handler that supports HTTP/1.1 request pipelining on keep-alive connections.
+ * <p/>
+ * {@link NettyMessageProcessor} serves exactly one request at a time on a channel. If a client sends a request before
+ * the response to its previous request is complete, this handler holds the new request (and everything that follows
+ * it) and pauses reads on the channel. Once the response in progress has been completely written, the held objects are
+ * passed down the pipeline in the order they were received and reads are resumed once nothing is being held.
+ * <p/>
+ * A response is considered complete when a {@link LastHttpContent} (this includes {@link FullHttpResponse}) is written.
+ * All the methods of this class are called on the event loop of the channel and hence there is no synchronization.
+ */
+public class HttpPipeliningHandler extends ChannelDuplexHandler {
+  private final NettyMetrics nettyMetrics;
+  private final Queue<Object> heldMessages = new ArrayDeque<Object>();
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+
+  // true if a request has been passed down the pipeline and the response to it has not been completely written yet.
+  private boolean responseInProgress = false;
+
+  /**
+   * Creates a new HttpPipeliningHandler.
+   * @param nettyMetrics the {@link NettyMetrics} instance to use.
+   */
+  public HttpPipeliningHandler(NettyMetrics nettyMetrics) {
+    this.nettyMetrics = nettyMetrics;
+  }
+
+  /**
+   * Passes {@code msg} down the pipeline if there is no response in progress or if {@code msg} is part of the request
+   * whose response is in progress. Otherwise holds {@code msg} until the response in progress is complete.
+   * @param ctx The {@link ChannelHandlerContext} that can be used to perform operations on the channel.
+   * @param msg the object that was read.
+   * @throws Exception if there is a problem passing {@code msg} down the pipeline.
+   */
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg)
+      throws Exception {
+    if (!heldMessages.isEmpty() || (responseInProgress && msg instanceof HttpRequest)) {
+      if (heldMessages.isEmpty()) {
+        logger.trace("Pausing reads on channel {} because a request was pipelined", ctx.channel());
+        ctx.channel().config().setAutoRead(false);
+      }
+      if (msg instanceof HttpRequest) {
+        nettyMetrics.pipelinedRequestRate.mark();
+      }
+      heldMessages.add(msg);
+    } else {
+      if (msg instanceof HttpRequest) {
+        responseInProgress = true;
+      }
+      super.channelRead(ctx, msg);
+    }
+  }
+
+  /**
+   * Tracks the completion of the response in progress and schedules the release of held objects when it completes.
+   * @param ctx The {@link ChannelHandlerContext} that can be used to perform operations on the channel.
+   * @param msg the object that needs to be written.
+   * @param promise the {@link ChannelPromise} that will be notified once the write is complete.
+   * @throws Exception if there is a problem writing {@code msg}.
+   */
+  @Override
+  public void write(final ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof LastHttpContent) {
+      responseInProgress = false;
+      if (!heldMessages.isEmpty()) {
+        // released in a separate task so that the write of the response completes before the next request is handled.
+        ctx.executor().execute(new Runnable() {
+          @Override
+          public void run() {
+            releaseHeldMessages(ctx);
+          }
+        });
+      }
+    }
+    super.write(ctx, msg, promise);
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx)
+      throws Exception {
+    discardHeldMessages();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx)
+      throws Exception {
+    discardHeldMessages();
+    super.handlerRemoved(ctx);
+  }
+
+  /**
+   * Passes held objects down the pipeline until either there is nothing more being held or a held request has to wait
+   * for the response to the request before it. Resumes reads if nothing more is being held.
+   * @param ctx The {@link ChannelHandlerContext} that can be used to perform operations on the channel.
+   */
+  private void releaseHeldMessages(ChannelHandlerContext ctx) {
+    if (!ctx.channel().isActive()) {
+      discardHeldMessages();
+      return;
+    }
+    while (!heldMessages.isEmpty() && !(responseInProgress && heldMessages.peek() instanceof HttpRequest)) {
+      Object msg = heldMessages.poll();
+      if (msg instanceof HttpRequest) {
+        responseInProgress = true;
+      }
+      ctx.fireChannelRead(msg);
+    }
+    if (heldMessages.isEmpty()) {
+      logger.trace("Resuming reads on channel {}", ctx.channel());
+      ctx.channel().config().setAutoRead(true);
+    }
+  }
+
+  /**
+   * Releases all the held objects without passing them down the pipeline.
+   */
+  private void discardHeldMessages() {
+    Object msg;
+    while ((msg = heldMessages.poll()) != null) {
+      if (msg instanceof HttpRequest) {
+        nettyMetrics.pipelinedRequestDiscardCount.inc();
+      }
+      ReferenceCountUtil.release(msg);
+    }
+  }
+}
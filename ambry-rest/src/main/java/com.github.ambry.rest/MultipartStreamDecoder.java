@@ -0,0 +1,438 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Decodes the body of a multipart/form-data request incrementally as it arrives.
+ * <p/>
+ * Content is pushed in through {@link #decode(ByteBuf, boolean)} in whatever pieces it arrives in and the decoded parts
+ * are reported to a {@link Listener}. The data of a part is reported as soon as it is known not to be a part of a
+ * delimiter and is never accumulated by the decoder. The only bytes held back between calls are the few bytes at the
+ * end of a piece that might be the start of a delimiter.
+ * <p/>
+ * Only a flat multipart body is supported. Parts whose content is itself multipart (multipart/mixed) are rejected.
+ * <p/>
+ * This class is not thread safe.
+ */
+class MultipartStreamDecoder {
+  /**
+   * The maximum size of the headers of a single part.
+   */
+  static final int MAX_PART_HEADERS_SIZE = 8192;
+
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte DASH = '-';
+  private static final String BOUNDARY_PARAM = "boundary=";
+  private static final String CONTENT_DISPOSITION = "content-disposition";
+  private static final String CONTENT_TYPE = "content-type";
+  private static final String CONTENT_TRANSFER_ENCODING = "content-transfer-encoding";
+
+  /**
+   * The state of the decoder.
+   */
+  private enum State {
+    /**
+     * Before the first delimiter. All bytes are ignored.
+     */
+    Preamble,
+    /**
+     * Right after a delimiter. Expecting either a line break (another part follows) or "--" (end of the body).
+     */
+    AfterDelimiter,
+    /**
+     * Reading the headers of a part.
+     */
+    PartHeaders,
+    /**
+     * Reading the data of a part.
+     */
+    PartData,
+    /**
+     * After the closing delimiter. All bytes are ignored.
+     */
+    Epilogue
+  }
+
+  private final byte[] delimiter;
+  private final Listener listener;
+  private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+
+  private State state = State.Preamble;
+  // the number of bytes of the delimiter that have been matched so far.
+  private int delimiterBytesMatched;
+  // the bytes after a delimiter that are used to decide whether the body has ended.
+  private int afterDelimiterBytesSeen = 0;
+  private boolean afterDelimiterIsEnd = false;
+  private boolean bodyBytesReceived = false;
+
+  /**
+   * Creates a decoder for a multipart body whose parts are separated by {@code boundary}.
+   * @param boundary the boundary that separates parts (without the leading "--").
+   * @param listener the {@link Listener} that will be notified of the decoded parts.
+   */
+  MultipartStreamDecoder(String boundary, Listener listener) {
+    delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+    this.listener = listener;
+    // the first delimiter need not be preceded by a line break.
+    delimiterBytesMatched = 2;
+  }
+
+  /**
+   * Extracts the boundary from the value of the Content-Type header of a multipart request.
+   * @param contentType the value of the Content-Type header.
+   * @return the boundary that separates the parts of the request.
+   * @throws RestServiceException if {@code contentType} does not define a boundary.
+   */
+  static String getBoundary(String contentType)
+      throws RestServiceException {
+    if (contentType != null) {
+      for (String param : contentType.split(";")) {
+        param = param.trim();
+        if (param.regionMatches(true, 0, BOUNDARY_PARAM, 0, BOUNDARY_PARAM.length())) {
+          String boundary = stripQuotes(param.substring(BOUNDARY_PARAM.length()).trim());
+          if (!boundary.isEmpty()) {
+            return boundary;
+          }
+        }
+      }
+    }
+    throw new RestServiceException("Multipart request does not define a boundary in [" + contentType + "]",
+        RestServiceErrorCode.MalformedRequest);
+  }
+
+  /**
+   * Decodes the next piece of the body. Data of parts in {@code content} is reported to the {@link Listener} as slices
+   * of {@code content} that are valid only for the duration of the callback. They have to be retained if they are
+   * required after that.
+   * @param content the next piece of the body.
+   * @param isLast {@code true} if this is the last piece of the body.
+   * @throws RestServiceException if the body is malformed or if the {@link Listener} rejects a part.
+   */
+  void decode(ByteBuf content, boolean isLast)
+      throws RestServiceException {
+    int index = content.readerIndex();
+    int end = content.writerIndex();
+    if (index < end) {
+      bodyBytesReceived = true;
+    }
+    while (index < end) {
+      switch (state) {
+        case Preamble:
+          index = findDelimiter(content, index, end, false);
+          break;
+        case AfterDelimiter:
+          index = readAfterDelimiter(content, index, end);
+          break;
+        case PartHeaders:
+          index = readPartHeaders(content, index, end);
+          break;
+        case PartData:
+          index = findDelimiter(content, index, end, true);
+          break;
+        case Epilogue:
+          index = end;
+          break;
+      }
+    }
+    content.readerIndex(end);
+    if (isLast && state != State.Epilogue && (state != State.Preamble || bodyBytesReceived)) {
+      throw new RestServiceException("Multipart request ended before its body was complete",
+          RestServiceErrorCode.MalformedRequest);
+    } else if (isLast && state == State.Preamble) {
+      // a request without any content at all is treated as one without any parts.
+      state = State.Epilogue;
+      listener.onEnd();
+    }
+  }
+
+  /**
+   * Scans for the delimiter in {@code content} between {@code index} and {@code end}. If {@code reportData} is
+   * {@code true}, the bytes that are not part of a delimiter are reported as data of the current part.
+   * <p/>
+   * A delimiter never contains a carriage return after its first byte, so a partial match that fails can always be
+   * released as data in full and matching restarts from the failing byte.
+   * @param content the content to scan.
+   * @param index the index to start scanning from.
+   * @param end the index to stop scanning at.
+   * @param reportData {@code true} if bytes that are not a part of the delimiter are data of a part.
+   * @return the index to continue decoding from.
+   * @throws RestServiceException if the {@link Listener} rejects the data.
+   */
+  private int findDelimiter(ByteBuf content, int index, int end, boolean reportData)
+      throws RestServiceException {
+    int dataStart = index;
+    // bytes of the current partial match that were seen in earlier pieces of content.
+    int heldBytes = delimiterBytesMatched;
+    while (index < end) {
+      if (content.getByte(index) == delimiter[delimiterBytesMatched]) {
+        delimiterBytesMatched++;
+        index++;
+        if (delimiterBytesMatched == delimiter.length) {
+          int dataEnd = heldBytes > 0 ? dataStart : index - delimiterBytesMatched;
+          if (reportData) {
+            reportData(content, dataStart, dataEnd);
+            listener.onPartEnd();
+          }
+          delimiterBytesMatched = 0;
+          state = State.AfterDelimiter;
+          afterDelimiterBytesSeen = 0;
+          return index;
+        }
+      } else if (delimiterBytesMatched > 0) {
+        if (heldBytes > 0) {
+          // the bytes held back from earlier pieces were data after all. They are a prefix of the delimiter.
+          if (reportData) {
+            listener.onPartData(Unpooled.wrappedBuffer(delimiter, 0, heldBytes));
+          }
+          heldBytes = 0;
+        }
+        // the failing byte is examined again from the start of the delimiter.
+        delimiterBytesMatched = 0;
+      } else {
+        index++;
+      }
+    }
+    if (reportData) {
+      reportData(content, dataStart, heldBytes > 0 ? dataStart : index - delimiterBytesMatched);
+    }
+    return index;
+  }
+
+  /**
+   * Reads the bytes after a delimiter to determine whether another part follows or whether the body has ended.
+   * Whitespace before the line break is ignored.
+   * @param content the content to read.
+   * @param index the index to start reading from.
+   * @param end the index to stop reading at.
+   * @return the index to continue decoding from.
+   * @throws RestServiceException if the bytes after the delimiter are malformed.
+   */
+  private int readAfterDelimiter(ByteBuf content, int index, int end)
+      throws RestServiceException {
+    while (index < end && state == State.AfterDelimiter) {
+      byte b = content.getByte(index++);
+      if (afterDelimiterBytesSeen == 0 && b == DASH) {
+        afterDelimiterIsEnd = true;
+        afterDelimiterBytesSeen++;
+      } else if (afterDelimiterIsEnd) {
+        if (b != DASH) {
+          throw new RestServiceException("Malformed closing delimiter in multipart request",
+              RestServiceErrorCode.MalformedRequest);
+        }
+        afterDelimiterIsEnd = false;
+        state = State.Epilogue;
+        listener.onEnd();
+      } else if (b == LF) {
+        headerBytes.reset();
+        state = State.PartHeaders;
+      } else if (b != CR && b != ' ' && b != '\t') {
+        throw new RestServiceException("Unexpected data after delimiter in multipart request",
+            RestServiceErrorCode.MalformedRequest);
+      } else {
+        afterDelimiterBytesSeen++;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Reads the headers of a part until the empty line that ends them. Once all the headers have been read, the
+   * {@link Listener} is notified of the start of the part.
+   * @param content the content to read.
+   * @param index the index to start reading from.
+   * @param end the index to stop reading at.
+   * @return the index to continue decoding from.
+   * @throws RestServiceException if the headers are too large or malformed or if the {@link Listener} rejects the part.
+   */
+  private int readPartHeaders(ByteBuf content, int index, int end)
+      throws RestServiceException {
+    while (index < end && state == State.PartHeaders) {
+      byte b = content.getByte(index++);
+      headerBytes.write(b);
+      if (headerBytes.size() > MAX_PART_HEADERS_SIZE) {
+        throw new RestServiceException("Headers of part in multipart request are larger than " + MAX_PART_HEADERS_SIZE,
+            RestServiceErrorCode.MalformedRequest);
+      } else if (b == LF && endsWithEmptyLine()) {
+        Part part = parsePartHeaders(new String(headerBytes.toByteArray(), StandardCharsets.UTF_8));
+        state = State.PartData;
+        listener.onPartStart(part);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @return {@code true} if the header bytes read so far end with an empty line.
+   */
+  private boolean endsWithEmptyLine() {
+    byte[] bytes = headerBytes.toByteArray();
+    int size = bytes.length;
+    return size == 1 || (size == 2 && bytes[0] == CR) || (size >= 2 && bytes[size - 2] == LF) || (size >= 3
+        && bytes[size - 2] == CR && bytes[size - 3] == LF);
+  }
+
+  /**
+   * Reports data of the current part between {@code start} and {@code end} in {@code content}.
+   * @param content the content containing the data.
+   * @param start the index at which the data starts.
+   * @param end the index at which the data ends.
+   * @throws RestServiceException if the {@link Listener} rejects the data.
+   */
+  private void reportData(ByteBuf content, int start, int end)
+      throws RestServiceException {
+    if (end > start) {
+      listener.onPartData(content.slice(start, end - start));
+    }
+  }
+
+  /**
+   * Parses the headers of a part.
+   * @param headers the headers of the part as a string.
+   * @return the {@link Part} described by the headers.
+   * @throws RestServiceException if the headers are malformed.
+   */
+  private static Part parsePartHeaders(String headers)
+      throws RestServiceException {
+    String name = null;
+    String fileName = null;
+    String contentType = null;
+    String transferEncoding = null;
+    for (String line : headers.split("\r?\n")) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      int colonIndex = line.indexOf(':');
+      if (colonIndex <= 0) {
+        throw new RestServiceException("Malformed header [" + line + "] in part of multipart request",
+            RestServiceErrorCode.MalformedRequest);
+      }
+      String headerName = line.substring(0, colonIndex).trim().toLowerCase();
+      String headerValue = line.substring(colonIndex + 1).trim();
+      if (headerName.equals(CONTENT_DISPOSITION)) {
+        for (String param : headerValue.split(";")) {
+          param = param.trim();
+          int equalsIndex = param.indexOf('=');
+          if (equalsIndex > 0) {
+            String paramName = param.substring(0, equalsIndex).trim().toLowerCase();
+            String paramValue = stripQuotes(param.substring(equalsIndex + 1).trim());
+            if (paramName.equals("name")) {
+              name = paramValue;
+            } else if (paramName.equals("filename")) {
+              fileName = paramValue;
+            }
+          }
+        }
+      } else if (headerName.equals(CONTENT_TYPE)) {
+        contentType = headerValue;
+      } else if (headerName.equals(CONTENT_TRANSFER_ENCODING)) {
+        transferEncoding = headerValue;
+      }
+    }
+    if (name == null) {
+      throw new RestServiceException("Part in multipart request does not have a name",
+          RestServiceErrorCode.MalformedRequest);
+    } else if (contentType != null && contentType.toLowerCase().startsWith("multipart/")) {
+      throw new RestServiceException("Nested multipart content in part [" + name + "] is not supported",
+          RestServiceErrorCode.MalformedRequest);
+    } else if (transferEncoding != null && !transferEncoding.isEmpty() && !transferEncoding.equalsIgnoreCase("binary")
+        && !transferEncoding.equalsIgnoreCase("7bit") && !transferEncoding.equalsIgnoreCase("8bit")) {
+      throw new RestServiceException("Content-Transfer-Encoding [" + transferEncoding + "] of part [" + name
+          + "] is not supported", RestServiceErrorCode.MalformedRequest);
+    }
+    return new Part(name, fileName, contentType);
+  }
+
+  /**
+   * @param value the value to strip quotes from.
+   * @return {@code value} without surrounding double quotes (if there were any).
+   */
+  private static String stripQuotes(String value) {
+    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * The metadata of a part of a multipart body.
+   */
+  static class Part {
+    /**
+     * The name of the part.
+     */
+    final String name;
+    /**
+     * The file name of the part. {@code null} if the part is not a file.
+     */
+    final String fileName;
+    /**
+     * The content type of the part. {@code null} if not specified.
+     */
+    final String contentType;
+
+    /**
+     * @param name the name of the part.
+     * @param fileName the file name of the part. {@code null} if the part is not a file.
+     * @param contentType the content type of the part. {@code null} if not specified.
+     */
+    Part(String name, String fileName, String contentType) {
+      this.name = name;
+      this.fileName = fileName;
+      this.contentType = contentType;
+    }
+  }
+
+  /**
+   * Receives the parts decoded by a {@link MultipartStreamDecoder}, in the order they appear in the body.
+   */
+  interface Listener {
+
+    /**
+     * Called when the headers of a part have been decoded.
+     * @param part the metadata of the part.
+     * @throws RestServiceException if the part is not acceptable.
+     */
+    void onPartStart(Part part)
+        throws RestServiceException;
+
+    /**
+     * Called with data of the part that was last started. This may be called any number of times for a part.
+     * @param data the data. Valid only for the duration of the call and has to be retained if required later.
+     * @throws RestServiceException if the data is not acceptable.
+     */
+    void onPartData(ByteBuf data)
+        throws RestServiceException;
+
+    /**
+     * Called when all the data of the part that was last started has been reported.
+     * @throws RestServiceException if the part is not acceptable.
+     */
+    void onPartEnd()
+        throws RestServiceException;
+
+    /**
+     * Called when the end of the multipart body has been reached.
+     * @throws RestServiceException if the body is not acceptable.
+     */
+    void onEnd()
+        throws RestServiceException;
+  }
+}
@@ -56,21 +56,26 @@ import org.slf4j.LoggerFactory;
  * If there is no keepalive, a channel is created and destroyed for the lifetime of exactly one request. If there is
  * keepalive, requests can follow one after the other. But at any point of time, only one request is actually "alive"
  * in the channel (i.e. there cannot be multiple requests in flight that are being actively served on the same channel).
+ * Requests that are pipelined by the client are held by {@link HttpPipeliningHandler} until the response to the request
+ * before them is complete.
  */
 public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObject> {
   private final NettyMetrics nettyMetrics;
   private final NettyConfig nettyConfig;
   private final RestRequestHandler requestHandler;
+  private final ResponseSpool responseSpool;
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   // variables that will live through the life of the channel.
   private final AtomicBoolean channelOpen = new AtomicBoolean(true);
+  private final DrainRateTracker drainRateTracker = new DrainRateTracker();
   private ChannelHandlerContext ctx = null;
 
   // variables that will live for the life of a single request.
   private volatile NettyRequest request = null;
   private volatile NettyResponseChannel responseChannel = null;
   private volatile boolean requestContentFullyReceived = false;
+  private volatile boolean multipartRequestHandedOff = false;
 
   // variables that live for one channelRead0
   private volatile Long lastChannelReadTime = null;
@@ -83,9 +88,26 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
    * @param requestHandler the {@link RestRequestHandler} that can be used to submit requests that need to be handled.
    */
   public NettyMessageProcessor(NettyMetrics nettyMetrics, NettyConfig nettyConfig, RestRequestHandler requestHandler) {
+    this(nettyMetrics, nettyConfig, requestHandler, new ResponseSpool(0));
+  }
+
+  /**
+   * Creates a new NettyMessageProcessor instance that spools the response content of slow clients into
+   * {@code responseSpool}.
+   * @param nettyMetrics the metrics object to use.
+   * @param nettyConfig the configuration object to use.
+   * @param requestHandler the {@link RestRequestHandler} that can be used to submit requests that need to be handled.
+   * @param responseSpool the {@link ResponseSpool} shared by all the connections. The responses of the connection of
+   *                      this NettyMessageProcessor take no more than
+   *                      {@link NettyConfig#nettyServerResponseSpoolConnectionCapacityBytes} of it.
+   */
+  NettyMessageProcessor(NettyMetrics nettyMetrics, NettyConfig nettyConfig, RestRequestHandler requestHandler,
+      ResponseSpool responseSpool) {
     this.nettyMetrics = nettyMetrics;
     this.nettyConfig = nettyConfig;
     this.requestHandler = requestHandler;
+    this.responseSpool =
+        new ResponseSpool(nettyConfig.nettyServerResponseSpoolConnectionCapacityBytes, responseSpool);
     logger.trace("Instantiated NettyMessageProcessor");
   }
 
@@ -267,8 +289,8 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
     boolean success = true;
     if (responseChannel == null || requestContentFullyReceived) {
       // Once all content associated with a request has been received, this channel is clear to receive new requests.
-      // If the client sends a request without waiting for the response, it is possible to screw things up a little
-      // but doing so would constitute an error and no proper client would do that.
+      // Requests that are sent without waiting for the response are held back by HttpPipeliningHandler (if it is in the
+      // pipeline) until the response is complete.
       long processingStartTime = System.currentTimeMillis();
       resetState();
       nettyMetrics.requestArrivalRate.mark();
@@ -292,8 +314,8 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
           responseChannel.setRequest(request);
           logger.trace("Channel {} now handling request {}", ctx.channel(), request.getUri());
           // We send POST that is not multipart for handling immediately since we expect valid content with it that will
-          // be streamed in. In the case of POST that is multipart, all the content has to be received for Netty's
-          // decoder and NettyMultipartRequest to work. So it is scheduled for handling when LastHttpContent is received.
+          // be streamed in. In the case of POST that is multipart, the parts that precede the blob have to be decoded
+          // first. So it is scheduled for handling in handleContent() once the blob part starts (or the body ends).
           // With any other method that we support, we do not expect any valid content. LastHttpContent is a Netty thing.
           // So we wait for LastHttpContent (throw an error if we don't receive it or receive something else) and then
           // schedule the other methods for handling in handleContent().
@@ -329,7 +351,8 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
    * Checks to see that a valid {@link RestRequest} is available so that the content can be pushed into the request.
    * <p/>
    * If the HTTP method for the request is something other than POST, delegates handling of {@link RestRequest} to the
-   * {@link RestRequestHandler} when {@link LastHttpContent} is received.
+   * {@link RestRequestHandler} when {@link LastHttpContent} is received. If the request is a multipart POST, delegates
+   * handling once enough of it has been decoded (see {@link NettyMultipartRequest#isReadyForHandling()}).
    * @param httpContent the {@link HttpContent} that needs to be handled.
    * @return {@code true} if the handling succeeded without problems.
    * @throws RestServiceException if there is an error handling the current {@link HttpContent}.
@@ -353,8 +376,11 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
         nettyMetrics.requestChunkProcessingTimeInMs.update(chunkProcessingTime);
         request.getMetricsTracker().nioMetricsTracker.addToRequestProcessingTime(chunkProcessingTime);
       }
-      if (success && (!request.getRestMethod().equals(RestMethod.POST) || (request.isMultipart()
-          && requestContentFullyReceived))) {
+      if (success && !request.getRestMethod().equals(RestMethod.POST)) {
+        requestHandler.handleRequest(request, responseChannel);
+      } else if (success && request instanceof NettyMultipartRequest && !multipartRequestHandedOff
+          && ((NettyMultipartRequest) request).isReadyForHandling()) {
+        multipartRequestHandedOff = true;
         requestHandler.handleRequest(request, responseChannel);
       }
     } else {
@@ -375,7 +401,8 @@ public class NettyMessageProcessor extends SimpleChannelInboundHandler<HttpObjec
     request = null;
     lastChannelReadTime = null;
     requestContentFullyReceived = false;
-    responseChannel = new NettyResponseChannel(ctx, nettyMetrics);
+    multipartRequestHandedOff = false;
+    responseChannel = new NettyResponseChannel(ctx, nettyMetrics, nettyConfig, responseSpool, drainRateTracker);
     logger.trace("Refreshed state for channel {}", ctx.channel());
   }
 
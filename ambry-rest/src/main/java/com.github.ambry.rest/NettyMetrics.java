@@ -44,6 +44,8 @@ public class NettyMetrics {
   public final Meter publicAccessLogRequestRate;
   // HealthCheckRequestHandler
   public final Meter healthCheckRequestRate;
+  // HttpPipeliningHandler
+  public final Meter pipelinedRequestRate;
 
   // Latencies
   // NettyMessageProcessor
@@ -81,6 +83,7 @@ public class NettyMetrics {
   public final Counter multipartRequestAlreadyClosedError;
   public final Counter multipartRequestDecodeError;
   public final Counter multipartRequestSizeMismatchError;
+  public final Counter partAfterBlobError;
   public final Counter repeatedPartsError;
   public final Counter unsupportedPartError;
   // NettyRequest
@@ -93,11 +96,14 @@ public class NettyMetrics {
   // NettyServer
   public final Counter nettyServerShutdownError;
   public final Counter nettyServerStartError;
+  public final Counter epollUnavailableCount;
 
   // Other
   // NettyRequest
   public final Counter contentCopyCount;
   public final Histogram digestCalculationTimeInMs;
+  // NettyMultipartRequest
+  public final Counter blobPartHeldCount;
   // NettyMessageProcessor
   public final Histogram channelReadIntervalInMs;
   public final Counter idleConnectionCloseCount;
@@ -116,8 +122,13 @@ public class NettyMetrics {
   public final Counter notFoundCount;
   public final Counter forbiddenCount;
   public final Counter proxyAuthRequiredCount;
+  public final Counter rangeNotSatisfiableCount;
   public final Counter throwableCount;
   public final Counter unknownResponseStatusCount;
+  public final Histogram chunksPerResponseBatch;
+  public final Counter spooledChunkCount;
+  public final Counter responseSpoolFullCount;
+  public final Histogram responseDrainRateBytesPerSec;
   // NettyServer
   public final Histogram nettyServerShutdownTimeInMs;
   public final Histogram nettyServerStartTimeInMs;
@@ -130,6 +141,8 @@ public class NettyMetrics {
   public final Counter publicAccessLogRequestCloseWhileRequestInProgressCount;
   // HealthCheckRequestHandler
   public final Counter healthCheckHandlerChannelCloseOnWriteCount;
+  // HttpPipeliningHandler
+  public final Counter pipelinedRequestDiscardCount;
 
   /**
    * Creates an instance of NettyMetrics using the given {@code metricRegistry}.
@@ -153,6 +166,8 @@ public class NettyMetrics {
     publicAccessLogRequestRate =
         metricRegistry.meter(MetricRegistry.name(PublicAccessLogHandler.class, "RequestArrivalRate"));
     healthCheckRequestRate = metricRegistry.meter(MetricRegistry.name(HealthCheckHandler.class, "RequestArrivalRate"));
+    pipelinedRequestRate =
+        metricRegistry.meter(MetricRegistry.name(HttpPipeliningHandler.class, "PipelinedRequestRate"));
 
     // Latencies
     // NettyMessageProcessor
@@ -215,6 +230,8 @@ public class NettyMetrics {
         metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "DecodeError"));
     multipartRequestSizeMismatchError =
         metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "SizeMismatchError"));
+    partAfterBlobError =
+        metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "PartAfterBlobError"));
     repeatedPartsError = metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "RepeatedPartsError"));
     unsupportedPartError =
         metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "UnsupportedPartError"));
@@ -231,6 +248,7 @@ public class NettyMetrics {
     // NettyServer
     nettyServerShutdownError = metricRegistry.counter(MetricRegistry.name(NettyServer.class, "ShutdownError"));
     nettyServerStartError = metricRegistry.counter(MetricRegistry.name(NettyServer.class, "StartError"));
+    epollUnavailableCount = metricRegistry.counter(MetricRegistry.name(NettyServer.class, "EpollUnavailableCount"));
     // PublicAccessLogHandler
     publicAccessLogRequestDisconnectWhileInProgressCount = metricRegistry
         .counter(MetricRegistry.name(PublicAccessLogHandler.class, "ChannelDisconnectWhileRequestInProgressCount"));
@@ -239,12 +257,17 @@ public class NettyMetrics {
     // HealthCheckHandler
     healthCheckHandlerChannelCloseOnWriteCount =
         metricRegistry.counter(MetricRegistry.name(HealthCheckHandler.class, "ChannelCloseOnWriteCount"));
+    // HttpPipeliningHandler
+    pipelinedRequestDiscardCount =
+        metricRegistry.counter(MetricRegistry.name(HttpPipeliningHandler.class, "PipelinedRequestDiscardCount"));
 
     // Other
     // NettyRequest
     contentCopyCount = metricRegistry.counter(MetricRegistry.name(NettyRequest.class, "ContentCopyCount"));
     digestCalculationTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(NettyRequest.class, "DigestCalculationTimeInMs"));
+    // NettyMultipartRequest
+    blobPartHeldCount = metricRegistry.counter(MetricRegistry.name(NettyMultipartRequest.class, "BlobPartHeldCount"));
     // NettyMessageProcessor
     channelReadIntervalInMs =
         metricRegistry.histogram(MetricRegistry.name(NettyMessageProcessor.class, "ChannelReadIntervalInMs"));
@@ -272,9 +295,18 @@ public class NettyMetrics {
     forbiddenCount = metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "ForbiddenCount"));
     proxyAuthRequiredCount =
         metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "ProxyAuthenticationRequiredCount"));
+    rangeNotSatisfiableCount =
+        metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "RangeNotSatisfiableCount"));
     throwableCount = metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "ThrowableCount"));
     unknownResponseStatusCount =
         metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "UnknownResponseStatusCount"));
+    chunksPerResponseBatch =
+        metricRegistry.histogram(MetricRegistry.name(NettyResponseChannel.class, "ChunksPerResponseBatch"));
+    spooledChunkCount = metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "SpooledChunkCount"));
+    responseSpoolFullCount =
+        metricRegistry.counter(MetricRegistry.name(NettyResponseChannel.class, "ResponseSpoolFullCount"));
+    responseDrainRateBytesPerSec =
+        metricRegistry.histogram(MetricRegistry.name(NettyResponseChannel.class, "ResponseDrainRateBytesPerSec"));
     // NettyServer
     nettyServerShutdownTimeInMs = metricRegistry.histogram(MetricRegistry.name(NettyServer.class, "ShutdownTimeInMs"));
     nettyServerStartTimeInMs = metricRegistry.histogram(MetricRegistry.name(NettyServer.class, "StartTimeInMs"));
@@ -298,4 +330,18 @@ public class NettyMetrics {
     };
     metricRegistry.register(MetricRegistry.name(ConnectionStatsHandler.class, "OpenConnections"), openConnections);
   }
+
+  /**
+   * Registers the {@link ResponseSpool} to track the number of bytes spooled.
+   * @param responseSpool the {@link ResponseSpool} to be tracked.
+   */
+  void registerResponseSpool(final ResponseSpool responseSpool) {
+    Gauge<Long> spooledBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return responseSpool.getSpooledBytes();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(NettyResponseChannel.class, "ResponseSpoolBytes"), spooledBytes);
+  }
 }
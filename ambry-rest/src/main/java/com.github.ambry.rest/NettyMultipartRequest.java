@@ -15,42 +15,44 @@ package com.github.ambry.rest;
 
 import com.github.ambry.router.AsyncWritableChannel;
 import com.github.ambry.router.Callback;
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
-import io.netty.handler.codec.http.multipart.FileUpload;
-import io.netty.handler.codec.http.multipart.HttpDataFactory;
-import io.netty.handler.codec.http.multipart.HttpPostMultipartRequestDecoder;
-import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import io.netty.handler.codec.http.multipart.InterfaceHttpData;
-import io.netty.util.ReferenceCountUtil;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
 import java.util.Collections;
-import java.util.Queue;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 
 /**
  * An extension of {@link NettyRequest} that can handle multipart requests.
  * <p/>
- * However, unlike {@link NettyRequest} and because of the limitations of multipart decoding offered by Netty, this does
- * not allow on-demand streaming. The full content of the request is held in memory and decoded on {@link #prepare()}.
- * Do not call {@link #prepare()} in I/O bound threads as decoding is a costly operation.
- * </p>
- * Multipart decoding also creates copies of the data. This affects latency and increases memory pressure.
+ * The multipart body is decoded incrementally as content is added through {@link #addContent(HttpContent)}. All parts
+ * other than the {@link RestUtils.MultipartPost#BLOB_PART} are exposed via {@link #getArgs()} and the data of the
+ * {@link RestUtils.MultipartPost#BLOB_PART} is streamed through the channel as it arrives (without copies), just like
+ * the content of a {@link NettyRequest}.
+ * <p/>
+ * The request is handed off for handling before the {@link RestUtils.MultipartPost#BLOB_PART} has been received, so no
+ * parts can be accepted after it once it is streamed. It is streamed only if the
+ * {@link RestUtils.MultipartPost#USER_METADATA_PART} precedes it, in which case the request is ready to be handled
+ * (see {@link #isReadyForHandling()}) as soon as the {@link RestUtils.MultipartPost#BLOB_PART} starts. Otherwise other
+ * parts may still follow, so the data of the {@link RestUtils.MultipartPost#BLOB_PART} is held and the request is only
+ * ready to be handled once the whole body has been decoded.
+ * <p/>
+ * Errors in decoding are thrown from {@link #addContent(HttpContent)} and are also reported to the callback of
+ * {@link #readInto(AsyncWritableChannel, Callback)} if a read is in progress.
  */
 class NettyMultipartRequest extends NettyRequest {
-  private final Queue<HttpContent> rawRequestContents = new LinkedBlockingQueue<HttpContent>();
-  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final MultipartStreamDecoder decoder;
 
-  private boolean readyForRead = false;
-  private boolean hasBlob = false;
+  private volatile boolean blobPartStarted = false;
+  private volatile boolean blobPartStreamed = false;
+  private volatile boolean allPartsDecoded = false;
+  private volatile boolean readyForRead = false;
+  private volatile RestServiceException decodeException = null;
 
   /**
    * Wraps the {@code request} in a NettyMultipartRequest so that other layers can understand the request.
@@ -59,7 +61,7 @@ class NettyMultipartRequest extends NettyRequest {
    * @throws IllegalArgumentException if {@code request} is null or if the HTTP method defined in {@code request} is
    *                                    anything other than POST.
    * @throws RestServiceException if the HTTP method defined in {@code request} is not recognized as a
-   *                                {@link RestMethod}.
+   *                                {@link RestMethod} or if the multipart boundary is not defined in the request.
    */
   public NettyMultipartRequest(HttpRequest request, NettyMetrics nettyMetrics)
       throws RestServiceException {
@@ -67,16 +69,12 @@ class NettyMultipartRequest extends NettyRequest {
     if (!getRestMethod().equals(RestMethod.POST)) {
       throw new IllegalArgumentException("NettyMultipartRequest cannot be created for " + getRestMethod());
     }
-  }
-
-  @Override
-  public void close() {
-    super.close();
-    logger.trace("Closing NettyMultipartRequest with {} raw content chunks unread", rawRequestContents.size());
-    HttpContent content = rawRequestContents.poll();
-    while (content != null) {
-      ReferenceCountUtil.release(content);
-      content = rawRequestContents.poll();
+    String contentType = HttpHeaders.getHeader(request, HttpHeaders.Names.CONTENT_TYPE);
+    try {
+      decoder = new MultipartStreamDecoder(MultipartStreamDecoder.getBoundary(contentType), new PartHandler());
+    } catch (RestServiceException e) {
+      nettyMetrics.multipartRequestDecodeError.inc();
+      throw e;
     }
   }
 
@@ -96,29 +94,19 @@ class NettyMultipartRequest extends NettyRequest {
     } else if (!readyForRead) {
       throw new IllegalStateException("The channel cannot be read yet");
     }
-    callbackWrapper = new ReadIntoCallbackWrapper(callback);
-    if (!isOpen()) {
-      nettyMetrics.multipartRequestAlreadyClosedError.inc();
-      callbackWrapper.invokeCallback(new ClosedChannelException());
-    }
-    HttpContent content = requestContents.poll();
-    while (content != null) {
-      try {
-        writeContent(asyncWritableChannel, callbackWrapper, content);
-      } finally {
-        ReferenceCountUtil.release(content);
-      }
-      content = requestContents.poll();
+    Future<Long> future = super.readInto(asyncWritableChannel, callback);
+    if (decodeException != null) {
+      callbackWrapper.invokeCallback(decodeException);
     }
-    return callbackWrapper.futureResult;
+    return future;
   }
 
   /**
-   * Adds content that will be decoded on a call to {@link #prepare()}.
-   * </p>
-   * All content has to be added before {@link #prepare()} can be called.
+   * Decodes {@code httpContent} as the next piece of the multipart body. Parts other than the
+   * {@link RestUtils.MultipartPost#BLOB_PART} become available through {@link #getArgs()} as soon as they are decoded
+   * and data of the {@link RestUtils.MultipartPost#BLOB_PART} becomes available to read as soon as it is decoded.
    * @param httpContent the {@link HttpContent} that needs to be added.
-   * @throws RestServiceException if request channel has been closed.
+   * @throws RestServiceException if request channel has been closed or if the content could not be decoded.
    */
   @Override
   public void addContent(HttpContent httpContent)
@@ -127,16 +115,34 @@ class NettyMultipartRequest extends NettyRequest {
       nettyMetrics.multipartRequestAlreadyClosedError.inc();
       throw new RestServiceException("The request has been closed and is not accepting content",
           RestServiceErrorCode.RequestChannelClosed);
-    } else {
-      rawRequestContents.add(ReferenceCountUtil.retain(httpContent));
+    } else if (decodeException != null) {
+      throw decodeException;
+    }
+    boolean isLast = httpContent instanceof LastHttpContent;
+    try {
+      // the content is not consumed so that the caller sees it as it was provided.
+      decoder.decode(httpContent.content().duplicate(), isLast);
+      if (isLast) {
+        // the read completes only once the whole request has been received, even if the multipart body ended earlier.
+        addReadableContent(LastHttpContent.EMPTY_LAST_CONTENT);
+      }
+    } catch (RestServiceException e) {
+      if (e.getErrorCode().equals(RestServiceErrorCode.MalformedRequest)) {
+        nettyMetrics.multipartRequestDecodeError.inc();
+      }
+      decodeException = e;
+      if (callbackWrapper != null) {
+        callbackWrapper.invokeCallback(e);
+      }
+      throw e;
     }
   }
 
   /**
    * {@inheritDoc}
    * <p/>
-   * Prepares the request for reading by decoding all the content added via {@link #addContent(HttpContent)}.
-   * @throws RestServiceException if request channel is closed or if the request could not be decoded/prepared.
+   * Since content is decoded as it is added, this only checks that the request is ready to be read.
+   * @throws RestServiceException if request channel is closed or if the request could not be decoded.
    */
   @Override
   public void prepare()
@@ -144,100 +150,133 @@ class NettyMultipartRequest extends NettyRequest {
     if (!isOpen()) {
       nettyMetrics.multipartRequestAlreadyClosedError.inc();
       throw new RestServiceException("Request is closed", RestServiceErrorCode.RequestChannelClosed);
-    } else if (!readyForRead) {
-      // make sure data is held in memory.
-      HttpDataFactory httpDataFactory = new DefaultHttpDataFactory(false);
-      HttpPostMultipartRequestDecoder postRequestDecoder =
-          new HttpPostMultipartRequestDecoder(httpDataFactory, request);
-      try {
-        HttpContent httpContent = rawRequestContents.poll();
-        while (httpContent != null) {
-          try {
-            // if the request is also an instance of HttpContent, the HttpPostMultipartRequestDecoder does the offer
-            // automatically at the time of construction. We should not add it again.
-            if (httpContent != request) {
-              postRequestDecoder.offer(httpContent);
-            }
-          } finally {
-            ReferenceCountUtil.release(httpContent);
-          }
-          httpContent = rawRequestContents.poll();
-        }
-        for (InterfaceHttpData part : postRequestDecoder.getBodyHttpDatas()) {
-          processPart(part);
-        }
-        allArgsReadOnly = Collections.unmodifiableMap(allArgs);
-        requestContents.add(LastHttpContent.EMPTY_LAST_CONTENT);
-        readyForRead = true;
-      } catch (HttpPostRequestDecoder.ErrorDataDecoderException e) {
-        nettyMetrics.multipartRequestDecodeError.inc();
-        throw new RestServiceException("There was an error decoding the request", e,
-            RestServiceErrorCode.MalformedRequest);
-      } finally {
-        postRequestDecoder.destroy();
-      }
+    } else if (decodeException != null) {
+      throw decodeException;
+    } else if (!isReadyForHandling()) {
+      nettyMetrics.multipartRequestDecodeError.inc();
+      throw new RestServiceException("Request has not been decoded sufficiently to be read",
+          RestServiceErrorCode.MalformedRequest);
     }
+    readyForRead = true;
   }
 
   /**
-   * Processes a single decoded part in a multipart request. Exposes the data in the part either through the channel
-   * itself (if it is the blob part) or via {@link #getArgs()}.
-   * @param part the {@link InterfaceHttpData} that needs to be processed.
-   * @throws RestServiceException if the request channel is closed, if there is more than one part of the same name, if
-   *                              the size obtained from the headers does not match the actual size of the blob part or
-   *                              if {@code part} is not of the expected type ({@link FileUpload}).
+   * Provides info on whether enough of the request has been decoded for it to be handled. This is the case once a
+   * {@link RestUtils.MultipartPost#BLOB_PART} that is streamed has started (all other parts have been decoded by then)
+   * or once the whole body has been decoded.
+   * @return {@code true} if the request can be handled. {@code false} otherwise.
    */
-  private void processPart(InterfaceHttpData part)
-      throws RestServiceException {
-    if (part.getHttpDataType() == InterfaceHttpData.HttpDataType.FileUpload) {
-      FileUpload fileUpload = (FileUpload) part;
-      if (fileUpload.getName().equals(RestUtils.MultipartPost.BLOB_PART)) {
+  boolean isReadyForHandling() {
+    return blobPartStreamed || allPartsDecoded;
+  }
+
+  /**
+   * Handles the parts decoded by the {@link MultipartStreamDecoder}. Exposes the data in the part either through the
+   * channel itself (if it is the blob part) or via {@link #getArgs()}.
+   */
+  private class PartHandler implements MultipartStreamDecoder.Listener {
+    private MultipartStreamDecoder.Part currentPart = null;
+    private ByteArrayOutputStream currentPartContent = null;
+    private long blobBytesReceived = 0;
+
+    /**
+     * {@inheritDoc}
+     * @param part the metadata of the part.
+     * @throws RestServiceException if the part is not a file, if there is more than one part of the same name or if the
+     *                              part follows a {@link RestUtils.MultipartPost#BLOB_PART} that is streamed.
+     */
+    @Override
+    public void onPartStart(MultipartStreamDecoder.Part part)
+        throws RestServiceException {
+      if (blobPartStarted && part.name.equals(RestUtils.MultipartPost.BLOB_PART)) {
+        nettyMetrics.repeatedPartsError.inc();
+        throw new RestServiceException("Request has more than one " + RestUtils.MultipartPost.BLOB_PART,
+            RestServiceErrorCode.BadRequest);
+      } else if (blobPartStreamed) {
+        nettyMetrics.partAfterBlobError.inc();
+        throw new RestServiceException(
+            "Part [" + part.name + "] has to precede the " + RestUtils.MultipartPost.BLOB_PART,
+            RestServiceErrorCode.BadRequest);
+      } else if (part.fileName == null) {
+        // TODO: find a configurable way of rejecting unexpected file parts.
+        nettyMetrics.unsupportedPartError.inc();
+        throw new RestServiceException("Unexpected HTTP data in part [" + part.name + "]",
+            RestServiceErrorCode.BadRequest);
+      } else if (allArgs.containsKey(part.name)) {
+        nettyMetrics.repeatedPartsError.inc();
+        throw new RestServiceException("Request already has a component named " + part.name,
+            RestServiceErrorCode.BadRequest);
+      }
+      currentPart = part;
+      if (part.name.equals(RestUtils.MultipartPost.BLOB_PART)) {
+        blobPartStarted = true;
+        if (allArgs.containsKey(RestUtils.MultipartPost.USER_METADATA_PART)) {
+          // all the other parts have been decoded.
+          allArgsReadOnly = Collections.unmodifiableMap(allArgs);
+          blobPartStreamed = true;
+        } else {
+          // other parts may follow, so the blob data is held until the whole body has been decoded.
+          nettyMetrics.blobPartHeldCount.inc();
+        }
+      } else {
+        currentPartContent = new ByteArrayOutputStream();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data the data.
+     * @throws RestServiceException if the request channel is closed or if the size of the blob part exceeds the size
+     *                              in the headers.
+     */
+    @Override
+    public void onPartData(ByteBuf data)
+        throws RestServiceException {
+      if (currentPartContent == null) {
         // this is actual data.
-        if (hasBlob) {
-          nettyMetrics.repeatedPartsError.inc();
-          throw new RestServiceException("Request has more than one " + RestUtils.MultipartPost.BLOB_PART,
+        blobBytesReceived += data.readableBytes();
+        if (blobBytesReceived > getSize()) {
+          nettyMetrics.multipartRequestSizeMismatchError.inc();
+          throw new RestServiceException(
+              "Request size [" + blobBytesReceived + "] is more than the size in headers [" + getSize() + "]",
               RestServiceErrorCode.BadRequest);
-        } else {
-          hasBlob = true;
-          if (fileUpload.length() != getSize()) {
-            nettyMetrics.multipartRequestSizeMismatchError.inc();
-            throw new RestServiceException(
-                "Request size [" + fileUpload.length() + "] does not match Content-Length [" + getSize() + "]",
-                RestServiceErrorCode.BadRequest);
-          } else {
-            contentLock.lock();
-            try {
-              if (isOpen()) {
-                requestContents.add(new DefaultHttpContent(ReferenceCountUtil.retain(fileUpload.content())));
-              } else {
-                nettyMetrics.multipartRequestAlreadyClosedError.inc();
-                throw new RestServiceException("Request is closed", RestServiceErrorCode.RequestChannelClosed);
-              }
-            } finally {
-              contentLock.unlock();
-            }
-          }
         }
+        addReadableContent(new DefaultHttpContent(data));
       } else {
         // this is any kind of data. (For ambry, this will be user metadata).
-        // TODO: find a configurable way of rejecting unexpected file parts.
-        String name = fileUpload.getName();
-        if (allArgs.containsKey(name)) {
-          nettyMetrics.repeatedPartsError.inc();
-          throw new RestServiceException("Request already has a component named " + name,
+        // TODO: Possible optimization - Upgrade ByteBufferReadableStreamChannel to take a list of ByteBuffer. This
+        // TODO: will avoid the copy.
+        byte[] bytes = new byte[data.readableBytes()];
+        data.readBytes(bytes);
+        currentPartContent.write(bytes, 0, bytes.length);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws RestServiceException if the size of the blob part does not match the size in the headers.
+     */
+    @Override
+    public void onPartEnd()
+        throws RestServiceException {
+      if (currentPartContent == null) {
+        if (blobBytesReceived != getSize()) {
+          nettyMetrics.multipartRequestSizeMismatchError.inc();
+          throw new RestServiceException(
+              "Request size [" + blobBytesReceived + "] does not match Content-Length [" + getSize() + "]",
               RestServiceErrorCode.BadRequest);
-        } else {
-          ByteBuffer buffer = ByteBuffer.allocate(fileUpload.content().readableBytes());
-          // TODO: Possible optimization - Upgrade ByteBufferReadableStreamChannel to take a list of ByteBuffer. This
-          // TODO: will avoid the copy.
-          fileUpload.content().readBytes(buffer);
-          buffer.flip();
-          allArgs.put(name, buffer);
         }
+      } else {
+        allArgs.put(currentPart.name, ByteBuffer.wrap(currentPartContent.toByteArray()));
+        currentPartContent = null;
       }
-    } else {
-      nettyMetrics.unsupportedPartError.inc();
-      throw new RestServiceException("Unexpected HTTP data", RestServiceErrorCode.BadRequest);
+      currentPart = null;
+    }
+
+    @Override
+    public void onEnd() {
+      allArgsReadOnly = Collections.unmodifiableMap(allArgs);
+      allPartsDecoded = true;
     }
   }
 }
@@ -343,20 +343,31 @@ class NettyRequest implements RestRequest {
       throw new IllegalStateException("There is no content expected for " + getRestMethod());
     } else {
       validateState(httpContent);
-      contentLock.lock();
-      try {
-        if (!isOpen()) {
-          nettyMetrics.requestAlreadyClosedError.inc();
-          throw new RestServiceException("The request has been closed and is not accepting content",
-              RestServiceErrorCode.RequestChannelClosed);
-        } else if (writeChannel != null) {
-          writeContent(writeChannel, callbackWrapper, httpContent);
-        } else {
-          requestContents.add(ReferenceCountUtil.retain(httpContent));
-        }
-      } finally {
-        contentLock.unlock();
+      addReadableContent(httpContent);
+    }
+  }
+
+  /**
+   * Makes {@code httpContent} available to the reader of this request. The content is written to the channel being
+   * read into if there is one or queued until there is.
+   * @param httpContent the {@link HttpContent} that needs to be made available to the reader.
+   * @throws RestServiceException if request channel has been closed.
+   */
+  protected void addReadableContent(HttpContent httpContent)
+      throws RestServiceException {
+    contentLock.lock();
+    try {
+      if (!isOpen()) {
+        nettyMetrics.requestAlreadyClosedError.inc();
+        throw new RestServiceException("The request has been closed and is not accepting content",
+            RestServiceErrorCode.RequestChannelClosed);
+      } else if (writeChannel != null) {
+        writeContent(writeChannel, callbackWrapper, httpContent);
+      } else {
+        requestContents.add(ReferenceCountUtil.retain(httpContent));
       }
+    } finally {
+      contentLock.unlock();
     }
   }
 
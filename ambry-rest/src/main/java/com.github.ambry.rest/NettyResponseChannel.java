@@ -13,6 +13,7 @@
  */
 package com.github.ambry.rest;
 
+import com.github.ambry.config.NettyConfig;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
 import com.github.ambry.utils.Utils;
@@ -58,10 +59,24 @@ import org.slf4j.LoggerFactory;
  * Netty specific implementation of {@link RestResponseChannel} used to return responses via Netty. It is supported by
  * an underlying Netty channel whose handle this class has in the form of a {@link ChannelHandlerContext}.
  * <p/>
- * Data is sent in the order that threads call {@link #write(ByteBuffer, Callback)}.
+ * Data is sent in the order that threads call {@link #write(ByteBuffer, Callback)}. Unless the client is slow (see
+ * below), buffers provided are not copied. They are wrapped into Netty buffers and chunks that have queued up by the
+ * time the channel is ready for more data are coalesced into a single write (upto
+ * {@link NettyConfig#nettyServerResponseMaxBatchSizeBytes}). The callback of a chunk is invoked once all of its bytes
+ * have been written to the network, after which the buffer can be reused.
  * <p/>
  * If a write through this class fails at any time, the underlying channel will be closed immediately and no more writes
  * will be accepted and all scheduled writes will be notified of the failure.
+ * <p/>
+ * The rate at which the client drains content is tracked per connection by a {@link DrainRateTracker}. Only the time
+ * during which content is waiting to be written to the client counts towards the rate, so that the time it takes for
+ * the content to be provided does not make a client look slow. Content for
+ * clients slower than {@link NettyConfig#nettyServerResponseSlowClientBytesPerSec} is copied into the
+ * {@link ResponseSpool} (if it has room) and acknowledged without waiting for the client, so that the buffers provided
+ * are not held for as long as the client takes to read them. Writes are still acknowledged in the order they were
+ * received. Once spooled content has been acknowledged, a failure to send it only fails the writes that come after.
+ * The callback of a write that is acknowledged right away is invoked before {@link #write(ByteBuffer, Callback)}
+ * returns, on the thread that called it.
  */
 class NettyResponseChannel implements RestResponseChannel {
   // add to this list if the connection needs to be closed on certain errors on GET, DELETE and HEAD.
@@ -70,8 +85,12 @@ class NettyResponseChannel implements RestResponseChannel {
 
   private final ChannelHandlerContext ctx;
   private final NettyMetrics nettyMetrics;
+  private final int maxBatchSizeBytes;
   private final ChannelProgressivePromise writeFuture;
   private final ChunkedWriteHandler chunkedWriteHandler;
+  private final ResponseSpool responseSpool;
+  private final DrainRateTracker drainRateTracker;
+  private final long slowClientBytesPerSec;
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
   private final HttpResponse responseMetadata = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
@@ -85,6 +104,11 @@ class NettyResponseChannel implements RestResponseChannel {
   private final Queue<Chunk> chunksToWrite = new ConcurrentLinkedQueue<Chunk>();
   private final Queue<Chunk> chunksAwaitingCallback = new ConcurrentLinkedQueue<Chunk>();
   private final AtomicLong chunksToWriteCount = new AtomicLong(0);
+  // all the chunks whose writes have not been acknowledged yet, in the order they were received.
+  private final Queue<Chunk> chunksAwaitingAck = new ConcurrentLinkedQueue<Chunk>();
+  // the chunks whose writes can be acknowledged, in order, and whether a thread is invoking their callbacks.
+  private final Queue<Chunk> chunksToAcknowledge = new ConcurrentLinkedQueue<Chunk>();
+  private final AtomicBoolean acknowledgingChunks = new AtomicBoolean(false);
 
   private NettyRequest request = null;
   // marked as true if force close is required because close() was called.
@@ -96,27 +120,58 @@ class NettyResponseChannel implements RestResponseChannel {
   // temp variable to hold the error response status which will be overwritten on responseStatus if the error response
   // was successfully sent
   private ResponseStatus errorResponseStatus = null;
+  // measures the time during which content of the response was waiting for the client.
+  private final DrainTimer drainTimer = new DrainTimer();
+
+  /**
+   * Create an instance of NettyResponseChannel that will use {@code ctx} to return responses. Content is never spooled.
+   * @param ctx the {@link ChannelHandlerContext} to use.
+   * @param nettyMetrics the {@link NettyMetrics} instance to use.
+   * @param nettyConfig the {@link NettyConfig} instance to use.
+   */
+  public NettyResponseChannel(ChannelHandlerContext ctx, NettyMetrics nettyMetrics, NettyConfig nettyConfig) {
+    this(ctx, nettyMetrics, nettyConfig, new ResponseSpool(0), new DrainRateTracker());
+  }
 
   /**
    * Create an instance of NettyResponseChannel that will use {@code ctx} to return responses.
    * @param ctx the {@link ChannelHandlerContext} to use.
    * @param nettyMetrics the {@link NettyMetrics} instance to use.
+   * @param nettyConfig the {@link NettyConfig} instance to use.
+   * @param responseSpool the {@link ResponseSpool} to copy the content of slow clients into.
+   * @param drainRateTracker the {@link DrainRateTracker} of the connection that {@code ctx} belongs to.
    */
-  public NettyResponseChannel(ChannelHandlerContext ctx, NettyMetrics nettyMetrics) {
+  NettyResponseChannel(ChannelHandlerContext ctx, NettyMetrics nettyMetrics, NettyConfig nettyConfig,
+      ResponseSpool responseSpool, DrainRateTracker drainRateTracker) {
     this.ctx = ctx;
     this.nettyMetrics = nettyMetrics;
+    this.responseSpool = responseSpool;
+    this.drainRateTracker = drainRateTracker;
+    maxBatchSizeBytes = nettyConfig.nettyServerResponseMaxBatchSizeBytes;
+    slowClientBytesPerSec = nettyConfig.nettyServerResponseSlowClientBytesPerSec;
     chunkedWriteHandler = ctx.pipeline().get(ChunkedWriteHandler.class);
     writeFuture = ctx.newProgressivePromise();
     logger.trace("Instantiated NettyResponseChannel");
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * If the content is spooled and the writes before it have been acknowledged, the write is acknowledged and
+   * {@code callback} is invoked inline, before this method returns. The callback can also be invoked inline for writes
+   * before this one that became acknowledgeable at the same time, so it must not block or wait for the thread that
+   * called this method.
+   */
   @Override
   public Future<Long> write(ByteBuffer src, Callback<Long> callback) {
     long writeProcessingStartTime = System.currentTimeMillis();
     if (!responseMetadataWriteInitiated.get()) {
       maybeWriteResponseMetadata(responseMetadata, new ResponseMetadataWriteListener());
     }
-    Chunk chunk = new Chunk(src, callback);
+    ByteBuf spooledBuf = maybeSpool(src);
+    Chunk chunk = new Chunk(src, callback, spooledBuf);
+    drainTimer.onContentQueued();
+    chunksAwaitingAck.add(chunk);
     chunksToWrite.add(chunk);
     if (!isOpen()) {
       // the isOpen() check is not before addition to the queue because chunks need to be acknowledged in the order
@@ -146,6 +201,10 @@ class NettyResponseChannel implements RestResponseChannel {
     } else {
       chunkedWriteHandler.resumeTransfer();
     }
+    if (spooledBuf != null) {
+      // the content has been copied, so the write can be acknowledged as soon as the ones before it are.
+      acknowledgeChunks();
+    }
 
     long writeProcessingTime = System.currentTimeMillis() - writeProcessingStartTime;
     nettyMetrics.writeProcessingTimeInMs.update(writeProcessingTime);
@@ -435,6 +494,9 @@ class NettyResponseChannel implements RestResponseChannel {
       case Accepted:
         status = HttpResponseStatus.ACCEPTED;
         break;
+      case PartialContent:
+        status = HttpResponseStatus.PARTIAL_CONTENT;
+        break;
       case NotModified:
         status = HttpResponseStatus.NOT_MODIFIED;
         break;
@@ -462,6 +524,10 @@ class NettyResponseChannel implements RestResponseChannel {
         nettyMetrics.proxyAuthRequiredCount.inc();
         status = HttpResponseStatus.PROXY_AUTHENTICATION_REQUIRED;
         break;
+      case RangeNotSatisfiable:
+        nettyMetrics.rangeNotSatisfiableCount.inc();
+        status = HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+        break;
       case InternalServerError:
         nettyMetrics.internalServerErrorCount.inc();
         status = HttpResponseStatus.INTERNAL_SERVER_ERROR;
@@ -518,6 +584,75 @@ class NettyResponseChannel implements RestResponseChannel {
     }
   }
 
+  /**
+   * Copies the content of a write into the {@link ResponseSpool} if the client is slow and the content can be sent.
+   * @param src the content of the write.
+   * @return the buffer the content was copied into, or {@code null} if it was not copied.
+   */
+  private ByteBuf maybeSpool(ByteBuffer src) {
+    ByteBuf spooledBuf = null;
+    HttpResponse metadata = finalResponseMetadata;
+    if (responseSpool.getCapacity() > 0 && src.hasRemaining() && isOpen() && metadata != null
+        && !(metadata instanceof FullHttpResponse) && isSlowClient()) {
+      long contentLength = HttpHeaders.getContentLength(metadata, -1);
+      if (contentLength == -1 || totalBytesReceived.get() + src.remaining() <= contentLength) {
+        spooledBuf = responseSpool.trySpool(src, ctx.alloc());
+        if (spooledBuf != null) {
+          nettyMetrics.spooledChunkCount.inc();
+        } else {
+          nettyMetrics.responseSpoolFullCount.inc();
+        }
+      }
+    }
+    return spooledBuf;
+  }
+
+  /**
+   * Determines whether the client drains content slower than {@link #slowClientBytesPerSec}. The rate measured over
+   * the current response is used if content has been waiting for the client for long enough, and the rate measured
+   * over the previous responses on the connection otherwise.
+   * @return {@code true} if the client is known to be slow.
+   */
+  private boolean isSlowClient() {
+    long bytesPerSec = drainRateTracker.getBytesPerSec();
+    long drainTimeNs = drainTimer.getDrainTimeNs(System.nanoTime());
+    if (drainTimeNs >= DrainRateTracker.MIN_SAMPLE_TIME_NS) {
+      bytesPerSec = DrainRateTracker.getBytesPerSec(drainTimer.getBytesDrained(), drainTimeNs);
+    }
+    return bytesPerSec != -1 && bytesPerSec < slowClientBytesPerSec;
+  }
+
+  /**
+   * Acknowledges the writes that can be acknowledged, in the order that they were received. A write can be acknowledged
+   * once its chunk has been resolved or its content has been spooled, and all the writes before it have been
+   * acknowledged.
+   * <p/>
+   * The callbacks are not invoked while holding the lock that orders the writes. Only one thread invokes callbacks at
+   * a time, so that they are still invoked in order. If another thread (or a callback further up the stack of this
+   * thread) is already invoking them, it also invokes those of the writes found here.
+   */
+  private void acknowledgeChunks() {
+    synchronized (chunksAwaitingAck) {
+      Chunk chunk = chunksAwaitingAck.peek();
+      while (chunk != null && chunk.canBeAcknowledged()) {
+        chunksAwaitingAck.poll();
+        chunksToAcknowledge.add(chunk);
+        chunk = chunksAwaitingAck.peek();
+      }
+    }
+    while (!chunksToAcknowledge.isEmpty() && acknowledgingChunks.compareAndSet(false, true)) {
+      try {
+        Chunk chunk = chunksToAcknowledge.poll();
+        while (chunk != null) {
+          chunk.acknowledge();
+          chunk = chunksToAcknowledge.poll();
+        }
+      } finally {
+        acknowledgingChunks.set(false);
+      }
+    }
+  }
+
   /**
    * Logs the exception at the appropriate level.
    * @param exception the {@link Exception} that has to be logged.
@@ -595,17 +730,25 @@ class NettyResponseChannel implements RestResponseChannel {
      */
     final boolean isLast;
     private final Callback<Long> callback;
+    private final ByteBuf spooledBuf;
     private final long chunkQueueStartTime = System.currentTimeMillis();
 
     private long chunkWriteStartTime;
+    private volatile boolean dispensed = false;
+    private volatile boolean resolved = false;
+    private long bytesWritten = 0;
+    private Exception exception = null;
 
     /**
      * Creates a chunk.
      * @param buffer the {@link ByteBuffer} that forms the data of this chunk.
-     * @param callback the {@link Callback} to invoke when {@link #writeCompleteThreshold} is reached.
+     * @param callback the {@link Callback} to invoke when the write is acknowledged.
+     * @param spooledBuf the {@link ByteBuf} that the content of {@code buffer} was spooled into, or {@code null} if it
+     *                   was not spooled.
      */
-    public Chunk(ByteBuffer buffer, Callback<Long> callback) {
+    public Chunk(ByteBuffer buffer, Callback<Long> callback, ByteBuf spooledBuf) {
       this.buffer = buffer;
+      this.spooledBuf = spooledBuf;
       bytesToBeWritten = buffer.remaining();
       this.callback = callback;
       writeCompleteThreshold = totalBytesReceived.addAndGet(bytesToBeWritten);
@@ -630,22 +773,33 @@ class NettyResponseChannel implements RestResponseChannel {
     }
 
     /**
-     * Marks a chunk as handled and invokes the callback and future that accompanied this chunk of data. Once a chunk is
-     * resolved, the data inside it is considered void.
+     * Provides the data of this chunk to be written to the channel. The spooled copy is provided if there is one, and
+     * is freed by Netty once it has been written.
+     * @return the data of this chunk as a {@link ByteBuf}.
+     */
+    ByteBuf dispense() {
+      dispensed = true;
+      return spooledBuf != null ? spooledBuf : Unpooled.wrappedBuffer(buffer);
+    }
+
+    /**
+     * Marks a chunk as handled and acknowledges the writes that can be acknowledged. Once a chunk is resolved, the data
+     * inside it is considered void.
      * @param exception the reason for chunk handling failure.
      */
     public void resolveChunk(Exception exception) {
       long chunkWriteFinishTime = System.currentTimeMillis();
-      long bytesWritten = 0;
-      if (exception == null) {
-        bytesWritten = bytesToBeWritten;
-        buffer.position(buffer.limit());
-      }
+      bytesWritten = exception == null ? bytesToBeWritten : 0;
+      this.exception = exception;
+      resolved = true;
       nettyMetrics.bytesWriteRate.mark(bytesWritten);
-      future.done(bytesWritten, exception);
-      if (callback != null) {
-        callback.onCompletion(bytesWritten, exception);
+      if (spooledBuf != null) {
+        responseSpool.release(bytesToBeWritten);
+        if (!dispensed) {
+          spooledBuf.release();
+        }
       }
+      acknowledgeChunks();
       long chunkResolutionProcessingTime = System.currentTimeMillis() - chunkWriteFinishTime;
       long chunkWriteTime = chunkWriteFinishTime - chunkWriteStartTime;
       nettyMetrics.channelWriteTimeInMs.update(chunkWriteTime);
@@ -655,6 +809,95 @@ class NettyResponseChannel implements RestResponseChannel {
             .addToResponseProcessingTime(chunkWriteTime + chunkResolutionProcessingTime);
       }
     }
+
+    /**
+     * @return {@code true} if the write of this chunk can be acknowledged once the writes before it are.
+     */
+    boolean canBeAcknowledged() {
+      return resolved || spooledBuf != null;
+    }
+
+    /**
+     * Invokes the callback and future that accompanied this chunk of data. A spooled chunk that has not been resolved
+     * yet is acknowledged as written.
+     */
+    void acknowledge() {
+      long bytesAcknowledged = bytesToBeWritten;
+      Exception exceptionToReturn = null;
+      if (resolved) {
+        bytesAcknowledged = bytesWritten;
+        exceptionToReturn = exception;
+      }
+      if (exceptionToReturn == null) {
+        buffer.position(buffer.limit());
+      }
+      future.done(bytesAcknowledged, exceptionToReturn);
+      if (callback != null) {
+        callback.onCompletion(bytesAcknowledged, exceptionToReturn);
+      }
+    }
+  }
+
+  /**
+   * Measures the time during which content of the response was waiting to be written to the client and the number of
+   * bytes written to the client during that time. Content is waiting for the client from the time it is queued (or
+   * content writing starts, if it is queued before) until all the content queued so far has been written. The time
+   * during which all the content queued has been written, such as the time the producer takes to provide the next
+   * chunk, is not counted.
+   */
+  private class DrainTimer {
+    private boolean contentWriteStarted = false;
+    private long waitStartTimeNs = -1;
+    private long lastBytesDrained = 0;
+    private long waitTimeNs = 0;
+    private long bytesDrainedWhileWaiting = 0;
+
+    /**
+     * Records that content writing has started.
+     */
+    synchronized void onContentWriteStarted() {
+      contentWriteStarted = true;
+      onContentQueued();
+    }
+
+    /**
+     * Records that content has been queued to be written.
+     */
+    synchronized void onContentQueued() {
+      if (contentWriteStarted && waitStartTimeNs == -1 && totalBytesReceived.get() > lastBytesDrained) {
+        waitStartTimeNs = System.nanoTime();
+      }
+    }
+
+    /**
+     * Records the progress of content writing.
+     * @param bytesDrained the total number of bytes of content written so far.
+     */
+    synchronized void onContentDrained(long bytesDrained) {
+      if (waitStartTimeNs != -1) {
+        bytesDrainedWhileWaiting += bytesDrained - lastBytesDrained;
+        if (bytesDrained >= totalBytesReceived.get()) {
+          waitTimeNs += System.nanoTime() - waitStartTimeNs;
+          waitStartTimeNs = -1;
+        }
+      }
+      lastBytesDrained = bytesDrained;
+    }
+
+    /**
+     * @param nowNs the current time in ns.
+     * @return the time during which content was waiting for the client, including the current wait if there is one.
+     */
+    synchronized long getDrainTimeNs(long nowNs) {
+      return waitStartTimeNs == -1 ? waitTimeNs : waitTimeNs + nowNs - waitStartTimeNs;
+    }
+
+    /**
+     * @return the number of bytes written to the client while content was waiting for it.
+     */
+    synchronized long getBytesDrained() {
+      return bytesDrainedWhileWaiting;
+    }
   }
 
   /**
@@ -681,7 +924,9 @@ class NettyResponseChannel implements RestResponseChannel {
 
     /**
      * Dispenses the next chunk from {@link #chunksToWrite} if one is available and adds the chunk dispensed to
-     * {@link #chunksAwaitingCallback}.
+     * {@link #chunksAwaitingCallback}. If more chunks are waiting to be written, they are dispensed along with the
+     * first as long as the total size does not exceed {@link #maxBatchSizeBytes}. The buffers of the chunks are wrapped
+     * and not copied.
      * @param ctx the {@link ChannelHandlerContext} for the channel being written to.
      * @return a chunk of data if one is available. {@code null} otherwise.
      */
@@ -693,9 +938,32 @@ class NettyResponseChannel implements RestResponseChannel {
       Chunk chunk = chunksToWrite.poll();
       if (chunk != null) {
         chunk.onDequeue();
-        ByteBuf buf = Unpooled.wrappedBuffer(chunk.buffer);
         chunksAwaitingCallback.add(chunk);
-        if (chunk.isLast) {
+        ByteBuf buf;
+        boolean isLast = chunk.isLast;
+        Chunk nextChunk = isLast ? null : chunksToWrite.peek();
+        if (nextChunk == null || chunk.bytesToBeWritten + nextChunk.bytesToBeWritten > maxBatchSizeBytes) {
+          buf = chunk.dispense();
+          nettyMetrics.chunksPerResponseBatch.update(1);
+        } else {
+          // only the event loop removes chunks from the head of the queue, so the peeked chunk is the one polled.
+          List<ByteBuf> buffers = new ArrayList<>();
+          buffers.add(chunk.dispense());
+          long batchSize = chunk.bytesToBeWritten;
+          while (nextChunk != null && batchSize + nextChunk.bytesToBeWritten <= maxBatchSizeBytes) {
+            chunksToWrite.poll();
+            nextChunk.onDequeue();
+            chunksAwaitingCallback.add(nextChunk);
+            buffers.add(nextChunk.dispense());
+            batchSize += nextChunk.bytesToBeWritten;
+            isLast = nextChunk.isLast;
+            nextChunk = isLast ? null : chunksToWrite.peek();
+          }
+          // the number of components is specified so that the composite buffer never consolidates (copies) them.
+          buf = Unpooled.wrappedBuffer(buffers.size(), buffers.toArray(new ByteBuf[buffers.size()]));
+          nettyMetrics.chunksPerResponseBatch.update(buffers.size());
+        }
+        if (isLast) {
           content = new DefaultLastHttpContent(buf);
           sentLastChunk = true;
         } else {
@@ -739,6 +1007,7 @@ class NettyResponseChannel implements RestResponseChannel {
     @Override
     public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
       logger.trace("{} bytes of response written on channel {}", progress, ctx.channel());
+      drainTimer.onContentDrained(progress);
       while (chunksAwaitingCallback.peek() != null && progress >= chunksAwaitingCallback
           .peek().writeCompleteThreshold) {
         chunksAwaitingCallback.poll().resolveChunk(null);
@@ -754,6 +1023,12 @@ class NettyResponseChannel implements RestResponseChannel {
     public void operationComplete(ChannelProgressiveFuture future) {
       if (future.isSuccess()) {
         logger.trace("Response sending complete on channel {}", ctx.channel());
+        long drainTimeNs = drainTimer.getDrainTimeNs(System.nanoTime());
+        long bytesDrained = drainTimer.getBytesDrained();
+        drainRateTracker.record(bytesDrained, drainTimeNs);
+        if (drainTimeNs >= DrainRateTracker.MIN_SAMPLE_TIME_NS) {
+          nettyMetrics.responseDrainRateBytesPerSec.update(DrainRateTracker.getBytesPerSec(bytesDrained, drainTimeNs));
+        }
         completeRequest(request == null || !request.isKeepAlive());
       } else {
         handleChannelWriteFailure(future.cause(), true);
@@ -786,6 +1061,7 @@ class NettyResponseChannel implements RestResponseChannel {
         } else {
           // otherwise there is some content to write.
           logger.trace("Starting ChunkedWriteHandler on channel {}", ctx.channel());
+          drainTimer.onContentWriteStarted();
           writeFuture.addListener(new CallbackInvoker());
           ctx.writeAndFlush(new ChunkDispenser(), writeFuture);
         }
@@ -15,14 +15,17 @@ package com.github.ambry.rest;
 
 import com.github.ambry.config.NettyConfig;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,8 +43,14 @@ import org.slf4j.LoggerFactory;
  * This implementation creates a pipeline of handlers for every connection that it accepts and the last inbound handler,
  * {@link NettyMessageProcessor}, is responsible for processing the inbound requests and passing them to services that
  * can generate a response.
+ * <p/>
+ * The native epoll transport is used instead of NIO if it is enabled and available. With epoll, the port can also be
+ * bound by multiple sockets (using SO_REUSEPORT) so that connections are accepted by multiple boss threads.
  */
 public class NettyServer implements NioServer {
+  // the low water mark that Netty uses if none is configured.
+  private static final int NETTY_DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+
   private final NettyConfig nettyConfig;
   private final NettyMetrics nettyMetrics;
   private final ChannelInitializer<SocketChannel> channelInitializer;
@@ -70,15 +79,52 @@ public class NettyServer implements NioServer {
     long startupBeginTime = System.currentTimeMillis();
     try {
       logger.trace("Starting NettyServer deployment");
-      bossGroup = new NioEventLoopGroup(nettyConfig.nettyServerBossThreadCount);
-      workerGroup = new NioEventLoopGroup(nettyConfig.nettyServerWorkerThreadCount);
+      boolean useEpoll = nettyConfig.nettyServerEpollEnabled && Epoll.isAvailable();
+      if (nettyConfig.nettyServerEpollEnabled && !useEpoll) {
+        logger.warn("Epoll transport is not available. Falling back to NIO", Epoll.unavailabilityCause());
+        nettyMetrics.epollUnavailableCount.inc();
+      }
+      int acceptorCount = 1;
+      if (useEpoll) {
+        acceptorCount = nettyConfig.nettyServerAcceptorCount;
+      } else if (nettyConfig.nettyServerAcceptorCount > 1) {
+        logger.warn("Multiple acceptors require the epoll transport. Using one acceptor");
+      }
+      int bossThreadCount = Math.max(nettyConfig.nettyServerBossThreadCount, acceptorCount);
       ServerBootstrap b = new ServerBootstrap();
+      if (useEpoll) {
+        bossGroup = new EpollEventLoopGroup(bossThreadCount);
+        workerGroup = new EpollEventLoopGroup(nettyConfig.nettyServerWorkerThreadCount);
+        b.channel(EpollServerSocketChannel.class);
+        if (acceptorCount > 1) {
+          b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+      } else {
+        bossGroup = new NioEventLoopGroup(bossThreadCount);
+        workerGroup = new NioEventLoopGroup(nettyConfig.nettyServerWorkerThreadCount);
+        b.channel(NioServerSocketChannel.class);
+      }
       // Netty creates a new instance of every class in the pipeline for every connection
       // i.e. if there are a 1000 active connections there will be a 1000 NettyMessageProcessor instances.
-      b.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
-          .option(ChannelOption.SO_BACKLOG, nettyConfig.nettyServerSoBacklog)
-          .handler(new LoggingHandler(LogLevel.DEBUG)).childHandler(channelInitializer);
-      b.bind(nettyConfig.nettyServerPort).sync();
+      b.group(bossGroup, workerGroup).option(ChannelOption.SO_BACKLOG, nettyConfig.nettyServerSoBacklog)
+          .childOption(ChannelOption.TCP_NODELAY, nettyConfig.nettyServerTcpNoDelay).childHandler(channelInitializer);
+      // a water mark cannot cross the current value of the other one. So the order in which they are set matters.
+      if (nettyConfig.nettyServerWriteBufferHighWaterMarkBytes < NETTY_DEFAULT_WRITE_BUFFER_LOW_WATER_MARK) {
+        b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, nettyConfig.nettyServerWriteBufferLowWaterMarkBytes);
+        b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, nettyConfig.nettyServerWriteBufferHighWaterMarkBytes);
+      } else {
+        b.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, nettyConfig.nettyServerWriteBufferHighWaterMarkBytes);
+        b.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, nettyConfig.nettyServerWriteBufferLowWaterMarkBytes);
+      }
+      if (nettyConfig.nettyServerPooledAllocatorEnabled) {
+        b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        b.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+      }
+      for (int i = 0; i < acceptorCount; i++) {
+        b.bind(nettyConfig.nettyServerPort).sync();
+      }
+      logger.info("NettyServer using {} transport with {} acceptor(s) and {} worker thread(s)",
+          useEpoll ? "epoll" : "NIO", acceptorCount, nettyConfig.nettyServerWorkerThreadCount);
       logger.info("NettyServer now listening on port {}", nettyConfig.nettyServerPort);
     } catch (InterruptedException e) {
       logger.error("NettyServer start await was interrupted", e);
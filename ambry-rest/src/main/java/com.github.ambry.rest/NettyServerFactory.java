@@ -55,6 +55,8 @@ public class NettyServerFactory implements NioServerFactory {
       nettyConfig = new NettyConfig(verifiableProperties);
       nettyMetrics = new NettyMetrics(metricRegistry);
       final ConnectionStatsHandler connectionStatsHandler = new ConnectionStatsHandler(nettyMetrics);
+      final ResponseSpool responseSpool = new ResponseSpool(nettyConfig.nettyServerResponseSpoolCapacityBytes);
+      nettyMetrics.registerResponseSpool(responseSpool);
       channelInitializer = new ChannelInitializer<SocketChannel>() {
         @Override
         protected void initChannel(SocketChannel ch) {
@@ -65,8 +67,13 @@ public class NettyServerFactory implements NioServerFactory {
                   // to go here.
               .addLast("codec",
                   new HttpServerCodec(nettyConfig.nettyServerMaxInitialLineLength, nettyConfig.nettyServerMaxHeaderSize,
-                      nettyConfig.nettyServerMaxChunkSize))
-                  // for health check request handling
+                      nettyConfig.nettyServerMaxChunkSize));
+          if (nettyConfig.nettyServerRequestPipeliningEnabled) {
+            // for holding pipelined requests until the response to the request before them is complete
+            ch.pipeline().addLast("pipeliningHandler", new HttpPipeliningHandler(nettyMetrics));
+          }
+          ch.pipeline()
+              // for health check request handling
               .addLast("healthCheckHandler", new HealthCheckHandler(restServerState, nettyMetrics))
                   // for public access logging
               .addLast("publicAccessLogHandler", new PublicAccessLogHandler(publicAccessLogger, nettyMetrics))
@@ -75,7 +82,8 @@ public class NettyServerFactory implements NioServerFactory {
                   // for safe writing of chunks for responses
               .addLast("chunker", new ChunkedWriteHandler())
                   // custom processing class that interfaces with a BlobStorageService.
-              .addLast("processor", new NettyMessageProcessor(nettyMetrics, nettyConfig, requestHandler));
+              .addLast("processor",
+                  new NettyMessageProcessor(nettyMetrics, nettyConfig, requestHandler, responseSpool));
         }
       };
     }
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+
+
+/**
+ * The raw information about a request and its response that makes up a public access log entry. Only the values that
+ * are needed are captured when the request and the response are processed, and they are formatted into a log message
+ * by {@link PublicAccessLogger#format(PublicAccessLogEntry, StringBuilder)}, possibly on another thread.
+ */
+class PublicAccessLogEntry {
+  static final long INIT_TIME = -1;
+
+  private final Object remoteAddress;
+  private final Object method;
+  private final String uri;
+  private final String[] requestHeaderValues;
+  private final boolean isRequestChunked;
+  private final long requestArrivalTimeInMs;
+  private long requestLastChunkArrivalTimeInMs = INIT_TIME;
+  private String[] responseHeaderValues = null;
+  private boolean isResponseChunked = false;
+  private int responseStatus;
+  private long responseFirstChunkStartTimeInMs = INIT_TIME;
+  private long completionTimeInMs = INIT_TIME;
+  private String message = null;
+
+  /**
+   * Creates an entry for a request that has just arrived.
+   * @param remoteAddress the address of the client that sent the request.
+   * @param request the {@link HttpRequest} that arrived.
+   * @param requestHeaders the names of the request headers that have to be logged.
+   * @param requestArrivalTimeInMs the time at which the request arrived.
+   */
+  PublicAccessLogEntry(Object remoteAddress, HttpRequest request, String[] requestHeaders,
+      long requestArrivalTimeInMs) {
+    this.remoteAddress = remoteAddress;
+    method = request.getMethod();
+    uri = request.getUri();
+    requestHeaderValues = getHeaderValues(request, requestHeaders);
+    isRequestChunked = HttpHeaders.isTransferEncodingChunked(request);
+    this.requestArrivalTimeInMs = requestArrivalTimeInMs;
+  }
+
+  /**
+   * Records the arrival of the last chunk of a chunked request.
+   * @param timeInMs the time at which the last chunk arrived.
+   */
+  void onRequestLastChunkArrival(long timeInMs) {
+    requestLastChunkArrivalTimeInMs = timeInMs;
+  }
+
+  /**
+   * Records the response to the request.
+   * @param response the {@link HttpResponse} that is being sent.
+   * @param responseHeaders the names of the response headers that have to be logged.
+   * @param timeInMs the time at which the response is being sent.
+   */
+  void onResponse(HttpResponse response, String[] responseHeaders, long timeInMs) {
+    responseHeaderValues = getHeaderValues(response, responseHeaders);
+    isResponseChunked = HttpHeaders.isTransferEncodingChunked(response);
+    responseStatus = response.getStatus().code();
+    if (isResponseChunked) {
+      responseFirstChunkStartTimeInMs = timeInMs;
+    }
+  }
+
+  /**
+   * Records the completion of the request (successful or not).
+   * @param timeInMs the time at which the request completed.
+   * @param message a message to append to the log entry. Can be {@code null}.
+   */
+  void onCompletion(long timeInMs, String message) {
+    completionTimeInMs = timeInMs;
+    this.message = message;
+  }
+
+  /**
+   * @return {@code true} if the response has been sent with chunked transfer encoding.
+   */
+  boolean isResponseChunked() {
+    return isResponseChunked;
+  }
+
+  Object getRemoteAddress() {
+    return remoteAddress;
+  }
+
+  Object getMethod() {
+    return method;
+  }
+
+  String getUri() {
+    return uri;
+  }
+
+  String[] getRequestHeaderValues() {
+    return requestHeaderValues;
+  }
+
+  boolean isRequestChunked() {
+    return isRequestChunked;
+  }
+
+  /**
+   * @return the values of the response headers that have to be logged, or {@code null} if there has been no response.
+   */
+  String[] getResponseHeaderValues() {
+    return responseHeaderValues;
+  }
+
+  int getResponseStatus() {
+    return responseStatus;
+  }
+
+  long getRequestArrivalTimeInMs() {
+    return requestArrivalTimeInMs;
+  }
+
+  long getRequestLastChunkArrivalTimeInMs() {
+    return requestLastChunkArrivalTimeInMs;
+  }
+
+  long getResponseFirstChunkStartTimeInMs() {
+    return responseFirstChunkStartTimeInMs;
+  }
+
+  long getCompletionTimeInMs() {
+    return completionTimeInMs;
+  }
+
+  String getMessage() {
+    return message;
+  }
+
+  /**
+   * Gets the values of the given headers in an {@link HttpMessage}.
+   * @param message the {@link HttpMessage} to get the header values from.
+   * @param headers the names of the headers.
+   * @return the values of {@code headers}, with {@code null} for the headers that are not present.
+   */
+  private static String[] getHeaderValues(HttpMessage message, String[] headers) {
+    String[] values = new String[headers.length];
+    for (int i = 0; i < headers.length; i++) {
+      values[i] = message.headers().get(headers[i]);
+    }
+    return values;
+  }
+}
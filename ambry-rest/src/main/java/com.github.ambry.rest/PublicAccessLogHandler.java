@@ -17,8 +17,6 @@ import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.HttpContent;
-import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.LastHttpContent;
@@ -33,13 +31,8 @@ import org.slf4j.LoggerFactory;
 public class PublicAccessLogHandler extends ChannelDuplexHandler {
   private final PublicAccessLogger publicAccessLogger;
   private final NettyMetrics nettyMetrics;
-  private long requestArrivalTimeInMs;
-  private long requestLastChunkArrivalTimeInMs;
-  private long responseFirstChunkStartTimeInMs;
-  private StringBuilder logMessage;
-  private HttpRequest request;
+  private PublicAccessLogEntry logEntry;
 
-  private static final long INIT_TIME = -1;
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   public PublicAccessLogHandler(PublicAccessLogger publicAccessLogger, NettyMetrics nettyMetrics) {
@@ -55,21 +48,20 @@ public class PublicAccessLogHandler extends ChannelDuplexHandler {
     long startTimeInMs = System.currentTimeMillis();
     if (obj instanceof HttpRequest) {
       nettyMetrics.publicAccessLogRequestRate.mark();
-      if (request != null) {
-        logDurations();
-        logMessage.append(" : Received request while another request in progress. Resetting log message.");
+      if (logEntry != null) {
+        logEntry.onCompletion(System.currentTimeMillis(),
+            " : Received request while another request in progress. Resetting log message.");
+        StringBuilder logMessage = new StringBuilder();
+        publicAccessLogger.format(logEntry, logMessage);
         logger.error(logMessage.toString());
       }
       reset();
-      requestArrivalTimeInMs = System.currentTimeMillis();
-      request = (HttpRequest) obj;
-      logMessage.append(ctx.channel().remoteAddress()).append(" ");
-      logMessage.append(request.getMethod().toString()).append(" ");
-      logMessage.append(request.getUri()).append(", ");
-      logHeaders("Request", request, publicAccessLogger.getRequestHeaders());
-      logMessage.append(", ");
+      logEntry = new PublicAccessLogEntry(ctx.channel().remoteAddress(), (HttpRequest) obj,
+          publicAccessLogger.getRequestHeaders(), System.currentTimeMillis());
     } else if (obj instanceof LastHttpContent) {
-      requestLastChunkArrivalTimeInMs = System.currentTimeMillis();
+      if (logEntry != null) {
+        logEntry.onRequestLastChunkArrival(System.currentTimeMillis());
+      }
     } else if (!(obj instanceof HttpContent)) {
       logger.error("Receiving request (messageReceived) that is not of type HttpRequest or HttpContent. " +
           "Receiving request from " + ctx.channel().remoteAddress() + ". " +
@@ -85,16 +77,10 @@ public class PublicAccessLogHandler extends ChannelDuplexHandler {
       throws Exception {
     long startTimeInMs = System.currentTimeMillis();
     boolean shouldReset = msg instanceof LastHttpContent;
-    if (request != null) {
+    if (logEntry != null) {
       if (msg instanceof HttpResponse) {
-        HttpResponse response = (HttpResponse) msg;
-        logHeaders("Response", response, publicAccessLogger.getResponseHeaders());
-        logMessage.append(", ");
-        logMessage.append("status=").append(response.getStatus().code());
-        logMessage.append(", ");
-        if (HttpHeaders.isTransferEncodingChunked(response)) {
-          responseFirstChunkStartTimeInMs = System.currentTimeMillis();
-        } else {
+        logEntry.onResponse((HttpResponse) msg, publicAccessLogger.getResponseHeaders(), System.currentTimeMillis());
+        if (!logEntry.isResponseChunked()) {
           shouldReset = true;
         }
       } else if (!(msg instanceof HttpContent)) {
@@ -104,8 +90,8 @@ public class PublicAccessLogHandler extends ChannelDuplexHandler {
                 + ". No action being taken other than logging this unexpected state.");
       }
       if (shouldReset) {
-        logDurations();
-        publicAccessLogger.logInfo(logMessage.toString());
+        logEntry.onCompletion(System.currentTimeMillis(), null);
+        publicAccessLogger.log(logEntry, false);
         reset();
       }
     }
@@ -116,7 +102,7 @@ public class PublicAccessLogHandler extends ChannelDuplexHandler {
   @Override
   public void disconnect(ChannelHandlerContext ctx, ChannelPromise future)
       throws Exception {
-    if (request != null) {
+    if (logEntry != null) {
       logError(" : Channel disconnected while request in progress.");
     }
     super.disconnect(ctx, future);
@@ -125,64 +111,27 @@ public class PublicAccessLogHandler extends ChannelDuplexHandler {
   @Override
   public void close(ChannelHandlerContext ctx, ChannelPromise future)
       throws Exception {
-    if (request != null) {
+    if (logEntry != null) {
       logError(" : Channel closed while request in progress.");
     }
     super.close(ctx, future);
   }
 
   /**
-   * Appends specified headers to the log message if those headers are not null
-   * @param tag pretty name for set of headers to append
-   * @param message http message from which to log headers
-   * @param headers array of headers to log
-   */
-  private void logHeaders(String tag, HttpMessage message, String[] headers) {
-    logMessage.append(tag).append(" (");
-    for (String header : headers) {
-      if (message.headers().get(header) != null) {
-        logMessage.append("[").append(header).append("=").append(message.headers().get(header)).append("] ");
-      }
-    }
-    boolean isChunked = HttpHeaders.isTransferEncodingChunked(message);
-    logMessage.append("[isChunked=").append(isChunked).append("]");
-    logMessage.append(")");
-  }
-
-  /**
-   * Appends duration of operation to the log message. Also appends duration of receive or send phases of
-   * operations if those phases used chunked encoding.
-   */
-  private void logDurations() {
-    long nowMs = System.currentTimeMillis();
-    logMessage.append("duration=").append(nowMs - requestArrivalTimeInMs).append("ms ");
-    if (requestLastChunkArrivalTimeInMs != INIT_TIME) {
-      logMessage.append("(chunked request receive=").append(requestLastChunkArrivalTimeInMs - requestArrivalTimeInMs)
-          .append("ms) ");
-    }
-    if (responseFirstChunkStartTimeInMs != INIT_TIME) {
-      logMessage.append("(chunked response send=").append(nowMs - responseFirstChunkStartTimeInMs).append("ms) ");
-    }
-  }
-
-  /**
-   * Resets some variables as part of logging a response
+   * Resets the state as part of logging a response. The {@link PublicAccessLogEntry} that has been logged is not
+   * touched again, since it may still be waiting to be formatted.
    */
   private void reset() {
-    responseFirstChunkStartTimeInMs = INIT_TIME;
-    requestLastChunkArrivalTimeInMs = INIT_TIME;
-    requestArrivalTimeInMs = INIT_TIME;
-    logMessage = new StringBuilder();
-    request = null;
+    logEntry = null;
   }
 
   /**
-   * Logs error message
-   * @param msg
+   * Logs the request in progress as an error and resets the state.
+   * @param msg the message to append to the log entry.
    */
   private void logError(String msg) {
-    logDurations();
-    logMessage.append(msg);
-    publicAccessLogger.logError(logMessage.toString());
+    logEntry.onCompletion(System.currentTimeMillis(), msg);
+    publicAccessLogger.log(logEntry, true);
+    reset();
   }
 }
@@ -13,24 +13,62 @@
  */
 package com.github.ambry.rest;
 
+import com.github.ambry.utils.AsyncAccessLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
  * Logs requests and responses to public access log.
+ * <p/>
+ * If created with an async buffer, entries are formatted and written out on a background thread (see
+ * {@link AsyncAccessLogger}) and entries that arrive when the buffer is full are dropped. Otherwise, entries are
+ * formatted and written out on the thread that logs them.
  */
 public class PublicAccessLogger {
+  private static final int ASYNC_BATCH_SIZE = 256;
+  private static final long ASYNC_IDLE_WAIT_MS = 10;
 
   private Logger publicAccessLogger = LoggerFactory.getLogger("PublicAccessLogger");
 
   private final String[] requestHeaders;
   private final String[] responseHeaders;
+  private final AsyncAccessLogger asyncAccessLogger;
+  private final AsyncAccessLogger.EntryFormatter entryFormatter = new AsyncAccessLogger.EntryFormatter() {
+    @Override
+    public void format(AsyncAccessLogger.Entry entry, StringBuilder builder) {
+      PublicAccessLogger.this.format((PublicAccessLogEntry) entry.getField(0), builder);
+    }
+  };
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   public PublicAccessLogger(String[] requestHeaders, String[] responseHeaders) {
+    this(requestHeaders, responseHeaders, 0);
+  }
+
+  /**
+   * @param requestHeaders the request headers that need to be logged.
+   * @param responseHeaders the response headers that need to be logged.
+   * @param asyncBufferSize the number of entries that can be pending on the background thread. If 0, entries are
+   *                        formatted and written out synchronously.
+   */
+  public PublicAccessLogger(String[] requestHeaders, String[] responseHeaders, int asyncBufferSize) {
     this.requestHeaders = requestHeaders;
     this.responseHeaders = responseHeaders;
+    if (asyncBufferSize > 0) {
+      asyncAccessLogger = new AsyncAccessLogger("PublicAccessLogWriter", new AsyncAccessLogger.LogWriter() {
+        @Override
+        public void write(String message, boolean isError) {
+          if (isError) {
+            logError(message);
+          } else {
+            logInfo(message);
+          }
+        }
+      }, asyncBufferSize, 1, ASYNC_BATCH_SIZE, ASYNC_IDLE_WAIT_MS);
+    } else {
+      asyncAccessLogger = null;
+    }
     logger.trace("Created PublicAccessLogger for log " + publicAccessLogger.getName());
   }
 
@@ -49,4 +87,103 @@ public class PublicAccessLogger {
   public void logInfo(String message) {
     publicAccessLogger.info(message);
   }
+
+  /**
+   * @return the number of entries that have been dropped because the async buffer was full.
+   */
+  public long getDroppedEntryCount() {
+    return asyncAccessLogger == null ? 0 : asyncAccessLogger.getDroppedCount();
+  }
+
+  /**
+   * @return the number of entries that are waiting to be written out.
+   */
+  public int getPendingEntryCount() {
+    return asyncAccessLogger == null ? 0 : asyncAccessLogger.getPendingCount();
+  }
+
+  /**
+   * Writes out the pending entries and stops the background thread, if there is one.
+   */
+  public void close() {
+    if (asyncAccessLogger != null) {
+      asyncAccessLogger.close();
+    }
+  }
+
+  /**
+   * Logs a completed {@link PublicAccessLogEntry}.
+   * @param entry the {@link PublicAccessLogEntry} to log.
+   * @param isError {@code true} if the entry should be logged as an error.
+   */
+  void log(PublicAccessLogEntry entry, boolean isError) {
+    if (asyncAccessLogger == null) {
+      StringBuilder builder = new StringBuilder();
+      format(entry, builder);
+      if (isError) {
+        logError(builder.toString());
+      } else {
+        logInfo(builder.toString());
+      }
+    } else {
+      AsyncAccessLogger.Entry slot = asyncAccessLogger.claim();
+      if (slot != null) {
+        slot.setField(0, entry);
+        asyncAccessLogger.publish(slot, entryFormatter, isError);
+      }
+    }
+  }
+
+  /**
+   * Formats a {@link PublicAccessLogEntry} into a log message.
+   * @param entry the {@link PublicAccessLogEntry} to format.
+   * @param builder the {@link StringBuilder} to append the log message to.
+   */
+  void format(PublicAccessLogEntry entry, StringBuilder builder) {
+    builder.append(entry.getRemoteAddress()).append(" ");
+    builder.append(entry.getMethod()).append(" ");
+    builder.append(entry.getUri()).append(", ");
+    formatHeaders(builder, "Request", requestHeaders, entry.getRequestHeaderValues(), entry.isRequestChunked());
+    builder.append(", ");
+    if (entry.getResponseHeaderValues() != null) {
+      formatHeaders(builder, "Response", responseHeaders, entry.getResponseHeaderValues(), entry.isResponseChunked());
+      builder.append(", ");
+      builder.append("status=").append(entry.getResponseStatus());
+      builder.append(", ");
+    }
+    long completionTimeInMs = entry.getCompletionTimeInMs();
+    builder.append("duration=").append(completionTimeInMs - entry.getRequestArrivalTimeInMs()).append("ms ");
+    if (entry.getRequestLastChunkArrivalTimeInMs() != PublicAccessLogEntry.INIT_TIME) {
+      builder.append("(chunked request receive=")
+          .append(entry.getRequestLastChunkArrivalTimeInMs() - entry.getRequestArrivalTimeInMs())
+          .append("ms) ");
+    }
+    if (entry.getResponseFirstChunkStartTimeInMs() != PublicAccessLogEntry.INIT_TIME) {
+      builder.append("(chunked response send=")
+          .append(completionTimeInMs - entry.getResponseFirstChunkStartTimeInMs())
+          .append("ms) ");
+    }
+    if (entry.getMessage() != null) {
+      builder.append(entry.getMessage());
+    }
+  }
+
+  /**
+   * Appends the headers that are present to a log message.
+   * @param builder the {@link StringBuilder} to append to.
+   * @param tag pretty name for set of headers to append.
+   * @param headers the names of the headers.
+   * @param values the values of the headers ({@code null} if absent).
+   * @param isChunked whether the message used chunked transfer encoding.
+   */
+  private void formatHeaders(StringBuilder builder, String tag, String[] headers, String[] values, boolean isChunked) {
+    builder.append(tag).append(" (");
+    for (int i = 0; i < headers.length; i++) {
+      if (values[i] != null) {
+        builder.append("[").append(headers[i]).append("=").append(values[i]).append("] ");
+      }
+    }
+    builder.append("[isChunked=").append(isChunked).append("]");
+    builder.append(")");
+  }
 }
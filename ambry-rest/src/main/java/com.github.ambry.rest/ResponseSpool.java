@@ -0,0 +1,121 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded amount of off-heap memory that is shared by all the connections of a server, into which
+ * {@link NettyResponseChannel} copies the response content of slow clients. Once the content is copied, the buffer
+ * that was handed over by the producer of the content can be released right away instead of staying pinned until the
+ * client reads it.
+ * <p/>
+ * Copies are never made if they would take the memory used above the capacity, so a capacity of 0 disables spooling.
+ * <p/>
+ * A spool can be given a parent, in which case copies are also limited by the capacity of the parent and count
+ * towards the memory used by it. This is used to limit the memory that a single connection can take from the spool
+ * shared by all the connections.
+ * <p/>
+ * This class is thread safe.
+ */
+class ResponseSpool {
+  private final long capacity;
+  private final ResponseSpool parent;
+  private final AtomicLong spooledBytes = new AtomicLong(0);
+
+  /**
+   * Create a ResponseSpool.
+   * @param capacity the maximum number of bytes that can be spooled at any time.
+   */
+  ResponseSpool(long capacity) {
+    this(capacity, null);
+  }
+
+  /**
+   * Create a ResponseSpool that takes its memory from {@code parent}.
+   * @param capacity the maximum number of bytes that can be spooled into this spool at any time.
+   * @param parent the {@link ResponseSpool} to take the memory from. Can be {@code null}.
+   */
+  ResponseSpool(long capacity, ResponseSpool parent) {
+    this.capacity = parent == null ? capacity : Math.min(capacity, parent.getCapacity());
+    this.parent = parent;
+  }
+
+  /**
+   * Copies the remaining bytes of {@code src} into a direct buffer if there is room for them. The position of
+   * {@code src} is not changed. The memory has to be returned through {@link #release(long)} once the buffer has
+   * been written out (the buffer itself is freed by whoever releases it).
+   * @param src the content to spool.
+   * @param allocator the {@link ByteBufAllocator} to allocate the direct buffer from.
+   * @return the direct buffer that holds the copy, or {@code null} if there is no room for it.
+   */
+  ByteBuf trySpool(ByteBuffer src, ByteBufAllocator allocator) {
+    int size = src.remaining();
+    if (!reserve(size)) {
+      return null;
+    }
+    ByteBuf buf = allocator.directBuffer(size, size);
+    buf.writeBytes(src.duplicate());
+    return buf;
+  }
+
+  /**
+   * Returns memory to the spool (and its parent, if it has one).
+   * @param bytes the size of a buffer returned by {@link #trySpool(ByteBuffer, ByteBufAllocator)}.
+   */
+  void release(long bytes) {
+    spooledBytes.addAndGet(-bytes);
+    if (parent != null) {
+      parent.release(bytes);
+    }
+  }
+
+  /**
+   * Takes memory from this spool and its parent, if it has one.
+   * @param bytes the number of bytes to take.
+   * @return {@code true} if the memory was taken, {@code false} if there is no room for it.
+   */
+  private boolean reserve(long bytes) {
+    long current;
+    do {
+      current = spooledBytes.get();
+      if (current + bytes > capacity) {
+        return false;
+      }
+    } while (!spooledBytes.compareAndSet(current, current + bytes));
+    if (parent != null && !parent.reserve(bytes)) {
+      spooledBytes.addAndGet(-bytes);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of bytes that are currently spooled.
+   */
+  long getSpooledBytes() {
+    return spooledBytes.get();
+  }
+
+  /**
+   * @return the capacity of the spool.
+   */
+  long getCapacity() {
+    return capacity;
+  }
+}
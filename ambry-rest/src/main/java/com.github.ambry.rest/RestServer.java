@@ -17,6 +17,7 @@ import com.codahale.metrics.JmxReporter;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.config.RestServerConfig;
 import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterFactory;
@@ -85,9 +86,17 @@ public class RestServer {
     RestRequestMetricsTracker.setDefaults(clusterMap.getMetricRegistry());
     restServerState = new RestServerState(restServerConfig.restServerHealthCheckUri);
     restServerMetrics = new RestServerMetrics(clusterMap.getMetricRegistry(), restServerState);
+    TraceRecorder traceRecorder = new TraceRecorder(restServerConfig.restServerTraceRecorderCapacity);
     try {
+      // factories that do not take the TraceRecorder that the router and the blob storage service share are
+      // constructed with the arguments they took before it was introduced.
       RouterFactory routerFactory =
-          Utils.getObj(restServerConfig.restServerRouterFactory, verifiableProperties, clusterMap, notificationSystem);
+          Utils.getObj(restServerConfig.restServerRouterFactory, verifiableProperties, clusterMap, notificationSystem,
+              traceRecorder);
+      if (routerFactory == null) {
+        routerFactory = Utils
+            .getObj(restServerConfig.restServerRouterFactory, verifiableProperties, clusterMap, notificationSystem);
+      }
       router = routerFactory.getRouter();
 
       RestResponseHandlerFactory restResponseHandlerFactory = Utils
@@ -97,15 +106,28 @@ public class RestServer {
 
       BlobStorageServiceFactory blobStorageServiceFactory = Utils
           .getObj(restServerConfig.restServerBlobStorageServiceFactory, verifiableProperties, clusterMap,
-              restResponseHandler, router);
+              restResponseHandler, router, traceRecorder);
+      if (blobStorageServiceFactory == null) {
+        blobStorageServiceFactory = Utils
+            .getObj(restServerConfig.restServerBlobStorageServiceFactory, verifiableProperties, clusterMap,
+                restResponseHandler, router);
+      }
       blobStorageService = blobStorageServiceFactory.getBlobStorageService();
 
       RestRequestHandlerFactory restRequestHandlerFactory = Utils
           .getObj(restServerConfig.restServerRequestHandlerFactory,
-              restServerConfig.restServerRequestHandlerScalingUnitCount, restServerMetrics, blobStorageService);
+              restServerConfig.restServerRequestHandlerScalingUnitCount, restServerMetrics, blobStorageService,
+              restServerConfig);
+      if (restRequestHandlerFactory == null) {
+        restRequestHandlerFactory = Utils
+            .getObj(restServerConfig.restServerRequestHandlerFactory,
+                restServerConfig.restServerRequestHandlerScalingUnitCount, restServerMetrics, blobStorageService);
+      }
       restRequestHandler = restRequestHandlerFactory.getRestRequestHandler();
       publicAccessLogger = new PublicAccessLogger(restServerConfig.restServerPublicAccessLogRequestHeaders.split(","),
-          restServerConfig.restServerPublicAccessLogResponseHeaders.split(","));
+          restServerConfig.restServerPublicAccessLogResponseHeaders.split(","),
+          restServerConfig.restServerPublicAccessLogAsyncBufferSize);
+      restServerMetrics.trackPublicAccessLogger(publicAccessLogger);
       NioServerFactory nioServerFactory = Utils
           .getObj(restServerConfig.restServerNioServerFactory, verifiableProperties, clusterMap.getMetricRegistry(),
               restRequestHandler, publicAccessLogger, restServerState);
@@ -186,9 +208,15 @@ public class RestServer {
       logger.info("NIO server shutdown took {} ms", elapsedTime);
       restServerMetrics.nioServerShutdownTimeInMs.update(elapsedTime);
 
+      publicAccessLogger.close();
+      long publicAccessLoggerCloseTime = System.currentTimeMillis();
+      elapsedTime = publicAccessLoggerCloseTime - nioServerShutdownTime;
+      logger.info("Public access logger close took {} ms", elapsedTime);
+      restServerMetrics.publicAccessLoggerCloseTimeInMs.update(elapsedTime);
+
       restRequestHandler.shutdown();
       long requestHandlerShutdownTime = System.currentTimeMillis();
-      elapsedTime = requestHandlerShutdownTime - nioServerShutdownTime;
+      elapsedTime = requestHandlerShutdownTime - publicAccessLoggerCloseTime;
       logger.info("Request handler shutdown took {} ms", elapsedTime);
       restServerMetrics.restRequestHandlerShutdownTimeInMs.update(elapsedTime);
 
@@ -34,6 +34,7 @@ class RestServerMetrics {
   // AsyncRequestWorker
   public final Meter requestArrivalRate;
   public final Meter requestDequeuingRate;
+  public final Meter inlineRequestDispatchRate;
   public final Meter requestQueuingRate;
   // AsyncResponseHandler
   public final Meter responseArrivalRate;
@@ -80,6 +81,7 @@ class RestServerMetrics {
   public final Histogram blobStorageServiceStartTimeInMs;
   public final Histogram nioServerShutdownTimeInMs;
   public final Histogram nioServerStartTimeInMs;
+  public final Histogram publicAccessLoggerCloseTimeInMs;
   public final Histogram jmxReporterShutdownTimeInMs;
   public final Histogram jmxReporterStartTimeInMs;
   public final Histogram restRequestHandlerShutdownTimeInMs;
@@ -101,6 +103,8 @@ class RestServerMetrics {
     // AsyncRequestWorker
     requestArrivalRate = metricRegistry.meter(MetricRegistry.name(AsyncRequestWorker.class, "RequestArrivalRate"));
     requestDequeuingRate = metricRegistry.meter(MetricRegistry.name(AsyncRequestWorker.class, "RequestDequeuingRate"));
+    inlineRequestDispatchRate =
+        metricRegistry.meter(MetricRegistry.name(AsyncRequestWorker.class, "InlineRequestDispatchRate"));
     requestQueuingRate = metricRegistry.meter(MetricRegistry.name(AsyncRequestWorker.class, "RequestQueuingRate"));
     // AsyncResponseHandler
     responseArrivalRate = metricRegistry.meter(MetricRegistry.name(AsyncResponseHandler.class, "ResponseArrivalRate"));
@@ -176,6 +180,8 @@ class RestServerMetrics {
     nioServerShutdownTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(RestServer.class, "NioServerShutdownTimeInMs"));
     nioServerStartTimeInMs = metricRegistry.histogram(MetricRegistry.name(RestServer.class, "NioServerStartTimeInMs"));
+    publicAccessLoggerCloseTimeInMs =
+        metricRegistry.histogram(MetricRegistry.name(RestServer.class, "PublicAccessLoggerCloseTimeInMs"));
     restRequestHandlerShutdownTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(RestServer.class, "RestRequestHandlerShutdownTimeInMs"));
     restRequestHandlerStartTimeInMs =
@@ -246,4 +252,26 @@ class RestServerMetrics {
     metricRegistry.register(MetricRegistry.name(AsyncRequestResponseHandler.class, "AsyncHandlerWorkersAlive"),
         asyncHandlerWorkersAlive);
   }
+
+  /**
+   * Tracks the entries of the {@code publicAccessLogger} that are waiting to be written out or have been dropped.
+   * @param publicAccessLogger the {@link PublicAccessLogger} whose entries have to be tracked.
+   */
+  public void trackPublicAccessLogger(final PublicAccessLogger publicAccessLogger) {
+    Gauge<Integer> pendingEntryCount = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return publicAccessLogger.getPendingEntryCount();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(PublicAccessLogger.class, "PendingEntryCount"), pendingEntryCount);
+
+    Gauge<Long> droppedEntryCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return publicAccessLogger.getDroppedEntryCount();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(PublicAccessLogger.class, "DroppedEntryCount"), droppedEntryCount);
+  }
 }
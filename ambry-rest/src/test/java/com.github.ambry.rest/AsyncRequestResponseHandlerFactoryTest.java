@@ -14,6 +14,7 @@
 package com.github.ambry.rest;
 
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.config.RestServerConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.router.InMemoryRouter;
 import com.github.ambry.router.Router;
@@ -138,6 +139,29 @@ public class AsyncRequestResponseHandlerFactoryTest {
       // expected. Nothing to do.
     }
 
+    // RestServerConfig null.
+    try {
+      new AsyncRequestResponseHandlerFactory(1, restServerMetrics, blobStorageService, null);
+      fail("Instantiation should have failed because one of the arguments was null");
+    } catch (IllegalArgumentException e) {
+      // expected. Nothing to do.
+    }
+
+    // RestMethods that cannot be dispatched inline.
+    String[] badInlineDispatchMethods = {"GET,PUT", "UNKNOWN"};
+    for (String inlineDispatchMethods : badInlineDispatchMethods) {
+      Properties properties = new Properties();
+      properties.setProperty("rest.server.blob.storage.service.factory", "");
+      properties.setProperty("rest.server.request.handler.inline.dispatch.methods", inlineDispatchMethods);
+      RestServerConfig restServerConfig = new RestServerConfig(new VerifiableProperties(properties));
+      try {
+        new AsyncRequestResponseHandlerFactory(1, restServerMetrics, blobStorageService, restServerConfig);
+        fail("Instantiation should have failed because inline dispatch methods are invalid: " + inlineDispatchMethods);
+      } catch (IllegalArgumentException e) {
+        // expected. Nothing to do.
+      }
+    }
+
     // Different instances of RestServerMetrics during construction of different instances of the factory.
     new AsyncRequestResponseHandlerFactory(1, restServerMetrics);
     try {
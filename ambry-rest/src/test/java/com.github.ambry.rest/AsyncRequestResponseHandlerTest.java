@@ -29,6 +29,7 @@ import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -187,6 +188,14 @@ public class AsyncRequestResponseHandlerTest {
     } catch (IllegalArgumentException e) {
       // expected. nothing to do.
     }
+
+    // set null inline dispatch methods
+    try {
+      requestResponseHandler.setupRequestHandling(1, blobStorageService, null);
+      fail("Setting inline dispatch methods to null should have thrown exception");
+    } catch (IllegalArgumentException e) {
+      // expected. nothing to do.
+    }
   }
 
   /**
@@ -221,6 +230,43 @@ public class AsyncRequestResponseHandlerTest {
     }
   }
 
+  /**
+   * Tests that requests of {@link RestMethod}s set up for inline dispatch are handed off to the
+   * {@link BlobStorageService} on the calling thread and that requests of other {@link RestMethod}s are still queued.
+   * @throws Exception
+   */
+  @Test
+  public void inlineDispatchTest()
+      throws Exception {
+    RestServerMetrics serverMetrics =
+        new RestServerMetrics(new MetricRegistry(), new RestServerState("/healthCheckUri"));
+    AsyncRequestResponseHandler requestResponseHandler = new AsyncRequestResponseHandler(serverMetrics);
+    requestResponseHandler.setupRequestHandling(1, blobStorageService, EnumSet.of(RestMethod.GET, RestMethod.HEAD));
+    requestResponseHandler.start();
+    try {
+      // failures of inline requests are sent as responses before handleRequest() returns.
+      RestRequest restRequest =
+          createRestRequest(RestMethod.GET, MockBlobStorageService.THROW_RUNTIME_EXCEPTION, null, null);
+      MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+      requestResponseHandler.handleRequest(restRequest, restResponseChannel);
+      assertNotNull("Response should have been completed with an exception", restResponseChannel.getException());
+      assertEquals("Failure message does not match expectation", MockBlobStorageService.THROW_RUNTIME_EXCEPTION,
+          restResponseChannel.getException().getMessage());
+
+      for (RestMethod restMethod : RestMethod.values()) {
+        if (restMethod != RestMethod.UNKNOWN) {
+          doHandleRequestSuccessTest(restMethod, requestResponseHandler);
+        }
+      }
+      assertEquals("Unexpected number of requests dispatched inline", 3,
+          serverMetrics.inlineRequestDispatchRate.getCount());
+      assertEquals("Unexpected number of requests queued", 2, serverMetrics.requestQueuingRate.getCount());
+      assertTrue("AsyncRequestResponseHandler is dead", requestResponseHandler.isRunning());
+    } finally {
+      requestResponseHandler.shutdown();
+    }
+  }
+
   /**
    * Tests that right exceptions are thrown on bad input to
    * {@link AsyncRequestResponseHandler#handleRequest(RestRequest, RestResponseChannel)}. These are exceptions that get
@@ -29,7 +29,7 @@ public class FaultyFactory implements BlobStorageServiceFactory, NioServerFactor
     // don't care.
   }
 
-  // for RestRequestHandlerFactory and RouterFactory
+  // for RouterFactory
   public FaultyFactory(Object obj1, Object obj2, Object obj3) {
     // don't care.
   }
@@ -39,7 +39,7 @@ public class FaultyFactory implements BlobStorageServiceFactory, NioServerFactor
     // don't care.
   }
 
-  // for BlobStorageServiceFactory
+  // for BlobStorageServiceFactory and RestRequestHandlerFactory
   public FaultyFactory(Object... objs) {
     // don't care.
   }
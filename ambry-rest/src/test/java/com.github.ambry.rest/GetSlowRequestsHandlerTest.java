@@ -0,0 +1,136 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.metrics.TraceRecorder;
+import com.github.ambry.router.CopyingAsyncWritableChannel;
+import com.github.ambry.router.ReadableStreamChannel;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link GetSlowRequestsHandler}
+ */
+public class GetSlowRequestsHandlerTest {
+  private final TraceRecorder traceRecorder = new TraceRecorder(10);
+  private final GetSlowRequestsHandler getSlowRequestsHandler =
+      new GetSlowRequestsHandler(traceRecorder, new MetricRegistry());
+
+  /**
+   * Tests {@link GetSlowRequestsHandler#getSlowRequests(RestRequest, RestResponseChannel)}: the slowest traces should
+   * be returned, slowest first, with their spans and the breakdown reported by the servers.
+   * @throws Exception
+   */
+  @Test
+  public void getSlowRequestsTest()
+      throws Exception {
+    JSONObject response = getSlowRequests(null);
+    assertEquals("No trace should have been recorded", 0, response.getLong(GetSlowRequestsHandler.RECORDED_COUNT_KEY));
+    assertEquals("No trace should be returned", 0,
+        response.getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY).length());
+
+    for (int i = 1; i <= 5; i++) {
+      RequestTrace trace = new RequestTrace(i, "trace" + i, 1000, 0);
+      trace.addSpan("RouterQueue", null, 0, 10);
+      trace.addSpan("BlobRequest", "host" + i, 10, 10 + i * 100).setRemoteTimes(i, i * 10);
+      trace.complete(20 + i * 100, "Success");
+      traceRecorder.record(trace);
+    }
+    JSONObject headers = new JSONObject().put(RestUtils.Headers.SLOW_REQUEST_COUNT, 2);
+    response = getSlowRequests(headers);
+    assertEquals("Unexpected recorded count", 5, response.getLong(GetSlowRequestsHandler.RECORDED_COUNT_KEY));
+    JSONArray slowRequests = response.getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY);
+    assertEquals("Unexpected number of traces", 2, slowRequests.length());
+    for (int i = 0; i < slowRequests.length(); i++) {
+      int traceId = 5 - i;
+      JSONObject traceObject = slowRequests.getJSONObject(i);
+      assertEquals("Traces should be returned slowest first", traceId,
+          traceObject.getLong(GetSlowRequestsHandler.TRACE_ID_KEY));
+      assertEquals("Unexpected name", "trace" + traceId, traceObject.getString(GetSlowRequestsHandler.NAME_KEY));
+      assertEquals("Unexpected start time", 1000, traceObject.getLong(GetSlowRequestsHandler.START_TIME_MS_KEY));
+      assertEquals("Unexpected duration", 20 + traceId * 100,
+          traceObject.getLong(GetSlowRequestsHandler.DURATION_IN_NS_KEY));
+      assertEquals("Unexpected outcome", "Success", traceObject.getString(GetSlowRequestsHandler.OUTCOME_KEY));
+      JSONArray spans = traceObject.getJSONArray(GetSlowRequestsHandler.SPANS_KEY);
+      assertEquals("Unexpected number of spans", 2, spans.length());
+      JSONObject queueSpan = spans.getJSONObject(0);
+      assertFalse("Local span should have no host", queueSpan.has(GetSlowRequestsHandler.HOST_KEY));
+      assertFalse("Local span should have no server times",
+          queueSpan.has(GetSlowRequestsHandler.SERVER_QUEUE_TIME_IN_NS_KEY));
+      JSONObject requestSpan = spans.getJSONObject(1);
+      assertEquals("Unexpected host", "host" + traceId, requestSpan.getString(GetSlowRequestsHandler.HOST_KEY));
+      assertEquals("Unexpected offset", 10, requestSpan.getLong(GetSlowRequestsHandler.START_OFFSET_IN_NS_KEY));
+      assertEquals("Unexpected duration", traceId * 100,
+          requestSpan.getLong(GetSlowRequestsHandler.DURATION_IN_NS_KEY));
+      assertEquals("Unexpected server queue time", traceId,
+          requestSpan.getLong(GetSlowRequestsHandler.SERVER_QUEUE_TIME_IN_NS_KEY));
+      assertEquals("Unexpected server processing time", traceId * 10,
+          requestSpan.getLong(GetSlowRequestsHandler.SERVER_PROCESSING_TIME_IN_NS_KEY));
+      assertEquals("Unexpected network and send time", traceId * 100 - traceId - traceId * 10,
+          requestSpan.getLong(GetSlowRequestsHandler.NETWORK_AND_SEND_TIME_IN_NS_KEY));
+    }
+    assertEquals("All the traces should be returned by default", 5,
+        getSlowRequests(null).getJSONArray(GetSlowRequestsHandler.SLOW_REQUESTS_KEY).length());
+  }
+
+  /**
+   * Tests reactions of {@link GetSlowRequestsHandler#getSlowRequests(RestRequest, RestResponseChannel)} to invalid
+   * counts.
+   * @throws Exception
+   */
+  @Test
+  public void getSlowRequestsWithBadInputTest()
+      throws Exception {
+    String[] badCounts = {"0", "-1", "abc"};
+    for (String badCount : badCounts) {
+      JSONObject headers = new JSONObject().put(RestUtils.Headers.SLOW_REQUEST_COUNT, badCount);
+      try {
+        getSlowRequests(headers);
+        fail("Exception should have been thrown because the count is invalid: " + badCount);
+      } catch (RestServiceException e) {
+        assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.InvalidArgs, e.getErrorCode());
+      }
+    }
+  }
+
+  /**
+   * Gets the slow requests through the {@link GetSlowRequestsHandler}.
+   * @param headers the headers of the request. Can be {@code null}.
+   * @return the response decoded into a {@link JSONObject}.
+   * @throws Exception
+   */
+  private JSONObject getSlowRequests(JSONObject headers)
+      throws Exception {
+    JSONObject request = new JSONObject();
+    request.put(MockRestRequest.REST_METHOD_KEY, RestMethod.GET);
+    request.put(MockRestRequest.URI_KEY, RestUtils.Operations.SLOW_REQUESTS);
+    if (headers != null) {
+      request.put(MockRestRequest.HEADERS_KEY, headers);
+    }
+    RestRequest restRequest = new MockRestRequest(request, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    ReadableStreamChannel channel = getSlowRequestsHandler.getSlowRequests(restRequest, restResponseChannel);
+    assertEquals("Unexpected Content-Type", "application/json",
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_TYPE));
+    CopyingAsyncWritableChannel asyncWritableChannel = new CopyingAsyncWritableChannel((int) channel.getSize());
+    channel.readInto(asyncWritableChannel, null).get();
+    return new JSONObject(new String(asyncWritableChannel.getData()));
+  }
+}
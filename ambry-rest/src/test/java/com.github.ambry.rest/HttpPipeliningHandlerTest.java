@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests functionality of {@link HttpPipeliningHandler}.
+ */
+public class HttpPipeliningHandlerTest {
+  private final NettyMetrics nettyMetrics = new NettyMetrics(new MetricRegistry());
+
+  /**
+   * Tests that requests that are not pipelined pass through without being held.
+   */
+  @Test
+  public void noPipeliningTest() {
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(nettyMetrics));
+    for (int i = 0; i < 3; i++) {
+      HttpRequest request = RestTestUtils.createRequest(HttpMethod.GET, "/" + i, null);
+      channel.writeInbound(request, LastHttpContent.EMPTY_LAST_CONTENT);
+      assertEquals("Unexpected request", request, channel.readInbound());
+      assertEquals("Unexpected content", LastHttpContent.EMPTY_LAST_CONTENT, channel.readInbound());
+      assertTrue("Reads should not have been paused", channel.config().isAutoRead());
+      channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+      channel.runPendingTasks();
+    }
+    assertEquals("Unexpected pipelined request count", 0, nettyMetrics.pipelinedRequestRate.getCount());
+    assertTrue("Channel should be active", channel.isActive());
+    channel.close();
+  }
+
+  /**
+   * Tests that pipelined requests are held (and reads are paused) until the responses to the requests before them are
+   * complete and are then released in order.
+   */
+  @Test
+  public void pipelinedRequestsTest() {
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(nettyMetrics));
+    HttpRequest first = RestTestUtils.createRequest(HttpMethod.POST, "/first", null);
+    HttpContent firstContent = new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[10]));
+    HttpRequest second = RestTestUtils.createRequest(HttpMethod.GET, "/second", null);
+    HttpRequest third = RestTestUtils.createRequest(HttpMethod.HEAD, "/third", null);
+    channel.writeInbound(first, firstContent);
+    // a request arriving while the content of the previous request is still coming in is held.
+    channel.writeInbound(second, LastHttpContent.EMPTY_LAST_CONTENT);
+    // everything that arrives after a held request is also held.
+    channel.writeInbound(third, LastHttpContent.EMPTY_LAST_CONTENT);
+    assertEquals("Unexpected request", first, channel.readInbound());
+    assertEquals("Unexpected content", firstContent, channel.readInbound());
+    assertNull("Pipelined request should have been held", channel.readInbound());
+    assertFalse("Reads should have been paused", channel.config().isAutoRead());
+    assertEquals("Unexpected pipelined request count", 2, nettyMetrics.pipelinedRequestRate.getCount());
+
+    // response metadata alone does not complete the response.
+    channel.writeOutbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    channel.runPendingTasks();
+    assertNull("Pipelined request should have been held", channel.readInbound());
+    channel.writeOutbound(new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[10])));
+    channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+    channel.runPendingTasks();
+    assertEquals("Unexpected request", second, channel.readInbound());
+    assertEquals("Unexpected content", LastHttpContent.EMPTY_LAST_CONTENT, channel.readInbound());
+    assertNull("Pipelined request should have been held", channel.readInbound());
+    assertFalse("Reads should have been paused", channel.config().isAutoRead());
+
+    // a FullHttpResponse also completes the response.
+    channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    channel.runPendingTasks();
+    assertEquals("Unexpected request", third, channel.readInbound());
+    assertEquals("Unexpected content", LastHttpContent.EMPTY_LAST_CONTENT, channel.readInbound());
+    assertNull("There should be no more objects", channel.readInbound());
+    assertTrue("Reads should have been resumed", channel.config().isAutoRead());
+    // responses are passed through untouched and in order.
+    int responseCount = 0;
+    while (channel.readOutbound() != null) {
+      responseCount++;
+    }
+    assertEquals("Unexpected number of objects written", 4, responseCount);
+    channel.close();
+  }
+
+  /**
+   * Tests that held objects are released if the channel becomes inactive.
+   */
+  @Test
+  public void heldMessagesDiscardedOnCloseTest() {
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpPipeliningHandler(nettyMetrics));
+    HttpRequest first = RestTestUtils.createRequest(HttpMethod.GET, "/first", null);
+    HttpRequest second = RestTestUtils.createRequest(HttpMethod.POST, "/second", null);
+    HttpContent secondContent = new DefaultHttpContent(Unpooled.wrappedBuffer(new byte[10]));
+    channel.writeInbound(first, LastHttpContent.EMPTY_LAST_CONTENT, second, secondContent);
+    assertEquals("Unexpected request", first, channel.readInbound());
+    assertEquals("Unexpected content", LastHttpContent.EMPTY_LAST_CONTENT, channel.readInbound());
+    assertNull("Pipelined request should have been held", channel.readInbound());
+    channel.close();
+    channel.runPendingTasks();
+    assertEquals("Held content should have been released", 0, secondContent.refCnt());
+    assertEquals("Unexpected discarded request count", 1, nettyMetrics.pipelinedRequestDiscardCount.getCount());
+  }
+}
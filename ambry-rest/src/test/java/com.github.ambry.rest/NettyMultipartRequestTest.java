@@ -24,6 +24,7 @@ import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
@@ -32,9 +33,9 @@ import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
 import io.netty.handler.codec.http.multipart.FileUpload;
 import io.netty.handler.codec.http.multipart.HttpDataFactory;
-import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
 import io.netty.handler.codec.http.multipart.HttpPostRequestEncoder;
 import io.netty.handler.codec.http.multipart.MemoryFileUpload;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
@@ -45,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -65,7 +67,7 @@ public class NettyMultipartRequestTest {
   /**
    * Tests instantiation of {@link NettyMultipartRequest} with different {@link HttpMethod} types.
    * </p>
-   * Only {@link HttpMethod#POST} should succeed.
+   * Only {@link HttpMethod#POST} with a multipart boundary should succeed.
    * @throws RestServiceException
    */
   @Test
@@ -73,12 +75,29 @@ public class NettyMultipartRequestTest {
       throws RestServiceException {
     // POST will succeed.
     HttpRequest httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    HttpHeaders.setHeader(httpRequest, HttpHeaders.Names.CONTENT_TYPE, "multipart/form-data; boundary=\"abc\"");
     closeRequestAndValidate(new NettyMultipartRequest(httpRequest, nettyMetrics));
 
+    // POST without a boundary will fail.
+    String[] contentTypes = {null, "multipart/form-data", "multipart/form-data; boundary="};
+    for (String contentType : contentTypes) {
+      httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+      if (contentType != null) {
+        HttpHeaders.setHeader(httpRequest, HttpHeaders.Names.CONTENT_TYPE, contentType);
+      }
+      try {
+        new NettyMultipartRequest(httpRequest, nettyMetrics);
+        fail("Creation of NettyMultipartRequest should have failed for Content-Type " + contentType);
+      } catch (RestServiceException e) {
+        assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MalformedRequest, e.getErrorCode());
+      }
+    }
+
     // Methods that will fail. Can include other methods, but these should be enough.
     HttpMethod[] methods = {HttpMethod.GET, HttpMethod.DELETE, HttpMethod.HEAD};
     for (HttpMethod method : methods) {
       httpRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, "/");
+      HttpHeaders.setHeader(httpRequest, HttpHeaders.Names.CONTENT_TYPE, "multipart/form-data; boundary=abc");
       try {
         new NettyMultipartRequest(httpRequest, nettyMetrics);
         fail("Creation of NettyMultipartRequest should have failed for " + method);
@@ -94,6 +113,7 @@ public class NettyMultipartRequestTest {
    * 1. Request without content.
    * 2. Request without a {@link RestUtils.MultipartPost#BLOB_PART} but with other parts.
    * 3. Request with a {@link RestUtils.MultipartPost#BLOB_PART} and with other parts.
+   * 4. Request with other parts that follow the {@link RestUtils.MultipartPost#BLOB_PART}.
    * @throws Exception
    */
   @Test
@@ -121,7 +141,60 @@ public class NettyMultipartRequestTest {
       files[NUM_TOTAL_PARTS - 1] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART,
           ByteBuffer.wrap(RestTestUtils.getRandomBytes(BLOB_PART_SIZE)));
       doMultipartDecodeTest(BLOB_PART_SIZE, files, digestAlgorithm);
+
+      // request with other parts after the blob
+      InMemoryFile blobPart = files[NUM_TOTAL_PARTS - 1];
+      files[NUM_TOTAL_PARTS - 1] = files[0];
+      files[0] = blobPart;
+      doMultipartDecodeTest(BLOB_PART_SIZE, files, digestAlgorithm);
+    }
+  }
+
+  /**
+   * Tests that the data of a {@link RestUtils.MultipartPost#BLOB_PART} that is not preceded by the
+   * {@link RestUtils.MultipartPost#USER_METADATA_PART} is held until the whole body has been decoded, so that parts
+   * that follow it are accepted.
+   * @throws Exception
+   */
+  @Test
+  public void heldBlobPartTest()
+      throws Exception {
+    final int BLOB_PART_SIZE = 1024;
+    InMemoryFile[] files = new InMemoryFile[2];
+    files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART,
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(BLOB_PART_SIZE)));
+    files[1] = new InMemoryFile(RestUtils.MultipartPost.USER_METADATA_PART,
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(128)));
+    HttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    HttpHeaders.setHeader(httpRequest, RestUtils.Headers.BLOB_SIZE, BLOB_PART_SIZE);
+    HttpPostRequestEncoder encoder = createEncoder(httpRequest, files);
+    NettyMultipartRequest request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
+    long heldCount = nettyMetrics.blobPartHeldCount.getCount();
+    byte[] body = getBody(encoder);
+    int chunkSize = 64;
+    int offset = 0;
+    while (offset + chunkSize < body.length) {
+      request.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(body, offset, chunkSize)));
+      offset += chunkSize;
+      assertFalse("Request should not be ready for handling before the body has been decoded",
+          request.isReadyForHandling());
     }
+    request.addContent(new DefaultLastHttpContent(Unpooled.wrappedBuffer(body, offset, body.length - offset)));
+    assertTrue("Request should be ready for handling", request.isReadyForHandling());
+    assertEquals("Blob part should have been held", heldCount + 1, nettyMetrics.blobPartHeldCount.getCount());
+    request.prepare();
+    ByteBuffer value = (ByteBuffer) request.getArgs().get(RestUtils.MultipartPost.USER_METADATA_PART);
+    assertNotNull("Request does not contain " + RestUtils.MultipartPost.USER_METADATA_PART, value);
+    byte[] readOutput = new byte[value.remaining()];
+    value.get(readOutput);
+    assertArrayEquals(RestUtils.MultipartPost.USER_METADATA_PART + " content does not match", files[1].content.array(),
+        readOutput);
+    CopyingAsyncWritableChannel asyncWritableChannel = new CopyingAsyncWritableChannel(BLOB_PART_SIZE);
+    assertEquals("Unexpected number of bytes read", BLOB_PART_SIZE,
+        request.readInto(asyncWritableChannel, null).get().longValue());
+    assertArrayEquals(RestUtils.MultipartPost.BLOB_PART + " content does not match", files[0].content.array(),
+        asyncWritableChannel.getData());
+    closeRequestAndValidate(request);
   }
 
   /**
@@ -131,16 +204,20 @@ public class NettyMultipartRequestTest {
   @Test
   public void refCountsAfterCloseTest()
       throws Exception {
-    NettyMultipartRequest requestCloseBeforePrepare = createRequest(null, null);
-    NettyMultipartRequest requestCloseAfterPrepare = createRequest(null, null);
-    List<HttpContent> httpContents = new ArrayList<HttpContent>(5);
-    for (int i = 0; i < 5; i++) {
-      HttpContent httpContent = new DefaultHttpContent(Unpooled.wrappedBuffer(RestTestUtils.getRandomBytes(10)));
-      requestCloseBeforePrepare.addContent(httpContent);
-      requestCloseAfterPrepare.addContent(httpContent);
-      assertEquals("Reference count is not as expected", 3, httpContent.refCnt());
-      httpContents.add(httpContent);
+    HttpHeaders httpHeaders = new DefaultHttpHeaders();
+    httpHeaders.set(RestUtils.Headers.BLOB_SIZE, 1024);
+    InMemoryFile[] files = new InMemoryFile[2];
+    files[0] = new InMemoryFile("part-0", ByteBuffer.wrap(RestTestUtils.getRandomBytes(128)));
+    files[1] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(1024)));
+    List<HttpContent> httpContents = new ArrayList<HttpContent>();
+    NettyMultipartRequest requestCloseBeforePrepare = createRequest(httpHeaders, files, httpContents);
+    NettyMultipartRequest requestCloseAfterPrepare = createRequest(httpHeaders, files, httpContents);
+    boolean contentRetained = false;
+    for (HttpContent httpContent : httpContents) {
+      // blob data is held by the request until it is read.
+      contentRetained = contentRetained || httpContent.refCnt() > 1;
     }
+    assertTrue("Blob data has not been retained", contentRetained);
     closeRequestAndValidate(requestCloseBeforePrepare);
     requestCloseAfterPrepare.prepare();
     closeRequestAndValidate(requestCloseAfterPrepare);
@@ -149,6 +226,73 @@ public class NettyMultipartRequestTest {
     }
   }
 
+  /**
+   * Tests that parts are made available as soon as they are decoded, irrespective of how the content is split into
+   * chunks, and that the data of a {@link RestUtils.MultipartPost#BLOB_PART} that follows the
+   * {@link RestUtils.MultipartPost#USER_METADATA_PART} can be read before all the content has been received.
+   * @throws Exception
+   */
+  @Test
+  public void streamingDecodeTest()
+      throws Exception {
+    final int BLOB_PART_SIZE = 8192;
+    Random random = new Random();
+    InMemoryFile[] files = new InMemoryFile[3];
+    files[0] = new InMemoryFile("part-0", ByteBuffer.wrap(RestTestUtils.getRandomBytes(random.nextInt(128) + 128)));
+    files[1] = new InMemoryFile(RestUtils.MultipartPost.USER_METADATA_PART,
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(random.nextInt(128) + 128)));
+    byte[] blob = RestTestUtils.getRandomBytes(BLOB_PART_SIZE);
+    // data that looks like the start of a delimiter has to be treated as data.
+    byte[] delimiterLike = "\r\n-\r\n--\r\r\n--".getBytes();
+    System.arraycopy(delimiterLike, 0, blob, BLOB_PART_SIZE / 2, delimiterLike.length);
+    System.arraycopy(delimiterLike, 0, blob, BLOB_PART_SIZE - delimiterLike.length, delimiterLike.length);
+    files[2] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(blob));
+    int[] maxChunkSizes = {1, 3, 17, 512, 100000};
+    for (int maxChunkSize : maxChunkSizes) {
+      HttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+      HttpHeaders.setHeader(httpRequest, RestUtils.Headers.BLOB_SIZE, BLOB_PART_SIZE);
+      HttpPostRequestEncoder encoder = createEncoder(httpRequest, files);
+      NettyMultipartRequest request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
+      byte[] body = getBody(encoder);
+      // the body ends with the closing delimiter which is followed by CRLF. Hold back enough to not finish the blob.
+      int holdBack = 128;
+      int offset = 0;
+      while (!request.isReadyForHandling()) {
+        int chunkSize = Math.min(random.nextInt(maxChunkSize) + 1, body.length - holdBack - offset);
+        assertTrue("Blob part should have started by now", chunkSize > 0);
+        request.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(body, offset, chunkSize)));
+        offset += chunkSize;
+      }
+      request.prepare();
+      Map<String, Object> args = request.getArgs();
+      for (int i = 0; i < 2; i++) {
+        ByteBuffer value = (ByteBuffer) args.get(files[i].name);
+        assertNotNull("Request does not contain " + files[i].name, value);
+        byte[] readOutput = new byte[value.remaining()];
+        value.get(readOutput);
+        assertArrayEquals(files[i].name + " content does not match", files[i].content.array(), readOutput);
+      }
+      CopyingAsyncWritableChannel asyncWritableChannel = new CopyingAsyncWritableChannel(BLOB_PART_SIZE);
+      Future<Long> future = request.readInto(asyncWritableChannel, null);
+      while (offset < body.length - holdBack) {
+        int chunkSize = Math.min(random.nextInt(maxChunkSize) + 1, body.length - holdBack - offset);
+        request.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(body, offset, chunkSize)));
+        offset += chunkSize;
+      }
+      byte[] dataSoFar = asyncWritableChannel.getData();
+      assertFalse("Read should not be complete", future.isDone());
+      assertTrue("Blob data should have been streamed before the end of the request", dataSoFar.length > 0);
+      for (int i = 0; i < dataSoFar.length; i++) {
+        assertEquals("Streamed blob data does not match at " + i, blob[i], dataSoFar[i]);
+      }
+      request.addContent(new DefaultLastHttpContent(Unpooled.wrappedBuffer(body, offset, body.length - offset)));
+      assertEquals("Unexpected number of bytes read", BLOB_PART_SIZE, future.get().longValue());
+      assertArrayEquals(RestUtils.MultipartPost.BLOB_PART + " content does not match", blob,
+          asyncWritableChannel.getData());
+      closeRequestAndValidate(request);
+    }
+  }
+
   /**
    * Tests the expected behavior of operations after {@link NettyMultipartRequest#close()} has been called.
    * @throws Exception
@@ -223,97 +367,96 @@ public class NettyMultipartRequestTest {
    * Tests different scenarios with {@link NettyMultipartRequest#prepare()}.
    * Currently tests:
    * 1. Idempotency of {@link NettyMultipartRequest#prepare()}.
-   * 2. Exception scenarios of {@link NettyMultipartRequest#prepare()}.
+   * 2. Exception scenarios of {@link NettyMultipartRequest#prepare()} and decoding.
    * @throws Exception
    */
   @Test
   public void prepareTest()
       throws Exception {
-    // prepare half baked data
+    // prepare is idempotent
+    NettyMultipartRequest request = createRequest(null, null);
+    request.prepare();
+    request.prepare();
+    closeRequestAndValidate(request);
+
+    // prepare before the request can be handled
     HttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
     HttpPostRequestEncoder encoder = createEncoder(httpRequest, null);
-    NettyMultipartRequest request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
-    assertTrue("Request channel is not open", request.isOpen());
-    // insert random data
-    HttpContent httpContent = new DefaultHttpContent(Unpooled.wrappedBuffer(RestTestUtils.getRandomBytes(10)));
-    request.addContent(httpContent);
-    // prepare should fail
+    request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
+    assertFalse("Request should not be ready for handling", request.isReadyForHandling());
     try {
       request.prepare();
       fail("Preparing request should have failed");
-    } catch (HttpPostRequestDecoder.NotEnoughDataDecoderException e) {
-      assertEquals("Reference count is not as expected", 1, httpContent.refCnt());
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MalformedRequest, e.getErrorCode());
     } finally {
       closeRequestAndValidate(request);
     }
 
-    // more than one blob part
+    // half baked data
     HttpHeaders httpHeaders = new DefaultHttpHeaders();
     httpHeaders.set(RestUtils.Headers.BLOB_SIZE, 256);
     InMemoryFile[] files = new InMemoryFile[2];
-    files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
+    files[0] = new InMemoryFile(RestUtils.MultipartPost.USER_METADATA_PART,
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(16)));
     files[1] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
-    request = createRequest(httpHeaders, files);
-    assertEquals("Request size does not match", 256, request.getSize());
+    httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    httpRequest.headers().set(httpHeaders);
+    encoder = createEncoder(httpRequest, files);
+    request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
+    byte[] body = getBody(encoder);
+    // stop in the middle of the blob data (the blob part is followed by less than 128 bytes).
+    request.addContent(new DefaultHttpContent(Unpooled.wrappedBuffer(body, 0, body.length - 128)));
+    request.prepare();
+    CopyingAsyncWritableChannel asyncWritableChannel = new CopyingAsyncWritableChannel();
+    Future<Long> future = request.readInto(asyncWritableChannel, null);
+    HttpContent httpContent = new DefaultLastHttpContent();
     try {
-      request.prepare();
-      fail("Prepare should have failed because there was more than one " + RestUtils.MultipartPost.BLOB_PART);
+      request.addContent(httpContent);
+      fail("Adding content should have failed because the request ended before the body was complete");
     } catch (RestServiceException e) {
       assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MalformedRequest, e.getErrorCode());
+      assertEquals("Reference count is not as expected", 1, httpContent.refCnt());
+    }
+    try {
+      future.get();
+      fail("Reading should have failed because the request ended before the body was complete");
+    } catch (ExecutionException e) {
+      RestServiceException rse = (RestServiceException) Utils.getRootCause(e);
+      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MalformedRequest, rse.getErrorCode());
     } finally {
       closeRequestAndValidate(request);
     }
 
+    // more than one blob part
+    files = new InMemoryFile[2];
+    files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
+    files[1] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
+    verifyDecodeFailure(httpHeaders, files, null, RestServiceErrorCode.MalformedRequest);
+
     // more than one part named "part-1"
     files = new InMemoryFile[2];
     files[0] = new InMemoryFile("Part-1", ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
     files[1] = new InMemoryFile("Part-1", ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
-    request = createRequest(null, files);
-    try {
-      request.prepare();
-      fail("Prepare should have failed because there was more than one part named Part-1");
-    } catch (RestServiceException e) {
-      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.MalformedRequest, e.getErrorCode());
-    } finally {
-      closeRequestAndValidate(request);
-    }
+    verifyDecodeFailure(null, files, null, RestServiceErrorCode.MalformedRequest);
 
     // size of blob does not match the advertized size
-    httpHeaders = new DefaultHttpHeaders();
-    httpHeaders.set(RestUtils.Headers.BLOB_SIZE, 256);
     files = new InMemoryFile[1];
     files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(128)));
-    request = createRequest(httpHeaders, files);
-    try {
-      request.prepare();
-      fail("Prepare should have failed because there was more than one " + RestUtils.MultipartPost.BLOB_PART);
-    } catch (RestServiceException e) {
-      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.BadRequest, e.getErrorCode());
-    } finally {
-      closeRequestAndValidate(request);
-    }
+    verifyDecodeFailure(httpHeaders, files, null, RestServiceErrorCode.BadRequest);
+    files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(512)));
+    verifyDecodeFailure(httpHeaders, files, null, RestServiceErrorCode.BadRequest);
+
+    // part after a blob part that is streamed
+    files = new InMemoryFile[3];
+    files[0] = new InMemoryFile(RestUtils.MultipartPost.USER_METADATA_PART,
+        ByteBuffer.wrap(RestTestUtils.getRandomBytes(16)));
+    files[1] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
+    files[2] = new InMemoryFile("Part-1", ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
+    verifyDecodeFailure(httpHeaders, files, null, RestServiceErrorCode.BadRequest);
 
     // non fileupload (file attribute present)
-    httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
-    HttpHeaders.setHeader(httpRequest, RestUtils.Headers.BLOB_SIZE, 256);
-    files = new InMemoryFile[1];
-    files[0] = new InMemoryFile(RestUtils.MultipartPost.BLOB_PART, ByteBuffer.wrap(RestTestUtils.getRandomBytes(256)));
-    encoder = createEncoder(httpRequest, files);
-    encoder.addBodyAttribute("dummyKey", "dummyValue");
-    request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
-    assertTrue("Request channel is not open", request.isOpen());
-    while (!encoder.isEndOfInput()) {
-      // Sending null for ctx because the encoder is OK with that.
-      request.addContent(encoder.readChunk(null));
-    }
-    try {
-      request.prepare();
-      fail("Prepare should have failed because there was non fileupload");
-    } catch (RestServiceException e) {
-      assertEquals("Unexpected RestServiceErrorCode", RestServiceErrorCode.BadRequest, e.getErrorCode());
-    } finally {
-      closeRequestAndValidate(request);
-    }
+    verifyDecodeFailure(null, null, "dummyKey", RestServiceErrorCode.BadRequest);
   }
 
   // helpers
@@ -328,6 +471,20 @@ public class NettyMultipartRequestTest {
    */
   private NettyMultipartRequest createRequest(HttpHeaders headers, InMemoryFile[] parts)
       throws Exception {
+    return createRequest(headers, parts, null);
+  }
+
+  /**
+   * Creates a {@link NettyMultipartRequest} with the given {@code headers} and {@code parts}.
+   * @param headers the {@link HttpHeaders} that need to be added to the request.
+   * @param parts the files that will form the parts of the request.
+   * @param httpContents if not {@code null}, the {@link HttpContent} added to the request are added to this list.
+   * @return a {@link NettyMultipartRequest} containing all the {@code headers} and {@code parts}.
+   * @throws Exception
+   */
+  private NettyMultipartRequest createRequest(HttpHeaders headers, InMemoryFile[] parts,
+      List<HttpContent> httpContents)
+      throws Exception {
     HttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
     if (headers != null) {
       httpRequest.headers().set(headers);
@@ -337,11 +494,75 @@ public class NettyMultipartRequestTest {
     assertTrue("Request channel is not open", request.isOpen());
     while (!encoder.isEndOfInput()) {
       // Sending null for ctx because the encoder is OK with that.
-      request.addContent(encoder.readChunk(null));
+      HttpContent httpContent = encoder.readChunk(null);
+      request.addContent(httpContent);
+      if (httpContents != null) {
+        httpContents.add(httpContent);
+      }
     }
     return request;
   }
 
+  /**
+   * Gets the body of a multipart request as encoded by {@code encoder}.
+   * @param encoder the {@link HttpPostRequestEncoder} whose request has been finalized.
+   * @return the encoded body.
+   * @throws Exception
+   */
+  private byte[] getBody(HttpPostRequestEncoder encoder)
+      throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    while (!encoder.isEndOfInput()) {
+      // Sending null for ctx because the encoder is OK with that.
+      HttpContent httpContent = encoder.readChunk(null);
+      httpContent.content().readBytes(body, httpContent.content().readableBytes());
+      httpContent.release();
+    }
+    return body.toByteArray();
+  }
+
+  /**
+   * Creates a {@link NettyMultipartRequest} with the given {@code headers}, {@code parts} and an attribute named
+   * {@code attributeName} (if not {@code null}) and verifies that decoding its content fails with
+   * {@code expectedErrorCode}. Also verifies that {@link NettyMultipartRequest#prepare()} fails afterwards.
+   * @param headers the {@link HttpHeaders} that need to be added to the request.
+   * @param parts the files that will form the parts of the request.
+   * @param attributeName the name of the attribute to add after the {@code parts}. Can be {@code null}.
+   * @param expectedErrorCode the {@link RestServiceErrorCode} expected.
+   * @throws Exception
+   */
+  private void verifyDecodeFailure(HttpHeaders headers, InMemoryFile[] parts, String attributeName,
+      RestServiceErrorCode expectedErrorCode)
+      throws Exception {
+    HttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    if (headers != null) {
+      httpRequest.headers().set(headers);
+    }
+    HttpPostRequestEncoder encoder = createEncoder(httpRequest, parts);
+    if (attributeName != null) {
+      encoder.addBodyAttribute(attributeName, "dummyValue");
+    }
+    NettyMultipartRequest request = new NettyMultipartRequest(encoder.finalizeRequest(), nettyMetrics);
+    assertTrue("Request channel is not open", request.isOpen());
+    try {
+      while (!encoder.isEndOfInput()) {
+        // Sending null for ctx because the encoder is OK with that.
+        request.addContent(encoder.readChunk(null));
+      }
+      fail("Decoding should have failed");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", expectedErrorCode, e.getErrorCode());
+    }
+    try {
+      request.prepare();
+      fail("Prepare should have failed because decoding failed");
+    } catch (RestServiceException e) {
+      assertEquals("Unexpected RestServiceErrorCode", expectedErrorCode, e.getErrorCode());
+    } finally {
+      closeRequestAndValidate(request);
+    }
+  }
+
   /**
    * Creates a {@link HttpPostRequestEncoder} that encodes the given {@code request} and {@code parts}.
    * @param request the {@link HttpRequest} containing headers and other metadata about the request.
@@ -14,11 +14,15 @@
 package com.github.ambry.rest;
 
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.config.NettyConfig;
+import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.router.Callback;
 import com.github.ambry.utils.Utils;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
@@ -42,16 +46,21 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -75,6 +84,8 @@ public class NettyResponseChannelTest {
     REST_ERROR_CODE_TO_HTTP_STATUS
         .put(RestServiceErrorCode.ResourceScanInProgress, HttpResponseStatus.PROXY_AUTHENTICATION_REQUIRED);
     REST_ERROR_CODE_TO_HTTP_STATUS.put(RestServiceErrorCode.ResourceDirty, HttpResponseStatus.FORBIDDEN);
+    REST_ERROR_CODE_TO_HTTP_STATUS
+        .put(RestServiceErrorCode.RangeNotSatisfiable, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
     REST_ERROR_CODE_TO_HTTP_STATUS
         .put(RestServiceErrorCode.InternalServerError, HttpResponseStatus.INTERNAL_SERVER_ERROR);
   }
@@ -276,6 +287,163 @@ public class NettyResponseChannelTest {
     assertFalse("Channel is not closed at the remote end", channel.isActive());
   }
 
+  /**
+   * Tests that chunks that are queued up while the channel is not ready to accept them are coalesced into a single
+   * write as long as they fit within {@link NettyConfig#nettyServerResponseMaxBatchSizeBytes}.
+   * @throws Exception
+   */
+  @Test
+  public void responseBatchingTest()
+      throws Exception {
+    final int CHUNK_SIZE = 16;
+    final int CHUNK_COUNT = 6;
+    // all chunks fit in a batch
+    doResponseBatchingTest(CHUNK_SIZE, CHUNK_COUNT, MockNettyMessageProcessor.NETTY_CONFIG, CHUNK_COUNT);
+    // batch size limits the chunks that are coalesced
+    Properties properties = new Properties();
+    properties.setProperty("netty.server.response.max.batch.size.bytes", Integer.toString(2 * CHUNK_SIZE + 1));
+    doResponseBatchingTest(CHUNK_SIZE, CHUNK_COUNT, new NettyConfig(new VerifiableProperties(properties)), 2);
+    // batching disabled
+    properties.setProperty("netty.server.response.max.batch.size.bytes", "0");
+    doResponseBatchingTest(CHUNK_SIZE, CHUNK_COUNT, new NettyConfig(new VerifiableProperties(properties)), 1);
+  }
+
+  /**
+   * Tests that the content of slow clients is spooled and acknowledged right away, as long as there is room in the
+   * {@link ResponseSpool}, that writes are still acknowledged in order and that the content sent is intact.
+   * @throws Exception
+   */
+  @Test
+  public void slowClientSpoolingTest()
+      throws Exception {
+    final int CHUNK_SIZE = 16;
+    // known to be slow from previous responses: the first three chunks fit in the spool and are acknowledged at once.
+    DrainRateTracker drainRateTracker = new DrainRateTracker();
+    drainRateTracker.record(1, DrainRateTracker.MIN_SAMPLE_TIME_NS);
+    doSlowClientSpoolingTest(CHUNK_SIZE, 4, 3 * CHUNK_SIZE, drainRateTracker, false,
+        new boolean[]{true, true, true, false});
+    // not known to be slow: nothing is spooled.
+    doSlowClientSpoolingTest(CHUNK_SIZE, 2, 3 * CHUNK_SIZE, new DrainRateTracker(), false, new boolean[]{false, false});
+    // spooling disabled.
+    doSlowClientSpoolingTest(CHUNK_SIZE, 2, 0, drainRateTracker, false, new boolean[]{false, false});
+    // found to be slow while the response is in progress: the second chunk is spooled, but can only be acknowledged
+    // after the first.
+    doSlowClientSpoolingTest(CHUNK_SIZE, 2, 3 * CHUNK_SIZE, new DrainRateTracker(), true, new boolean[]{false, false});
+    // the spool of the connection has less room than the one it takes its memory from.
+    ResponseSpool sharedSpool = new ResponseSpool(4 * CHUNK_SIZE);
+    doSlowClientSpoolingTest(CHUNK_SIZE, 4, new ResponseSpool(2 * CHUNK_SIZE, sharedSpool), drainRateTracker, false,
+        new boolean[]{true, true, false, false});
+    assertEquals("Shared spool should be empty", 0, sharedSpool.getSpooledBytes());
+    // the spool the connection takes its memory from has less room than the spool of the connection.
+    sharedSpool = new ResponseSpool(4 * CHUNK_SIZE);
+    ResponseSpool otherConnectionSpool = new ResponseSpool(4 * CHUNK_SIZE, sharedSpool);
+    ByteBuf otherConnectionBuf =
+        otherConnectionSpool.trySpool(ByteBuffer.allocate(3 * CHUNK_SIZE), ByteBufAllocator.DEFAULT);
+    assertNotNull("Content of other connection should have been spooled", otherConnectionBuf);
+    doSlowClientSpoolingTest(CHUNK_SIZE, 2, new ResponseSpool(4 * CHUNK_SIZE, sharedSpool), drainRateTracker, false,
+        new boolean[]{true, false});
+    otherConnectionBuf.release();
+    otherConnectionSpool.release(3 * CHUNK_SIZE);
+    assertEquals("Shared spool should be empty", 0, sharedSpool.getSpooledBytes());
+  }
+
+  /**
+   * Tests that the callbacks of writes that are acknowledged right away are invoked in order without holding up
+   * threads that write at the same time.
+   * @throws Exception
+   */
+  @Test
+  public void acknowledgementCallbackTest()
+      throws Exception {
+    final int CHUNK_SIZE = 16;
+    DrainRateTracker drainRateTracker = new DrainRateTracker();
+    drainRateTracker.record(1, DrainRateTracker.MIN_SAMPLE_TIME_NS);
+    HeldContentHandler heldContentHandler = new HeldContentHandler();
+    ChannelInboundHandlerAdapter lastHandler = new ChannelInboundHandlerAdapter();
+    EmbeddedChannel channel = new EmbeddedChannel(heldContentHandler, new ChunkedWriteHandler(), lastHandler);
+    final NettyResponseChannel responseChannel =
+        new NettyResponseChannel(channel.pipeline().context(lastHandler), new NettyMetrics(new MetricRegistry()),
+            MockNettyMessageProcessor.NETTY_CONFIG, new ResponseSpool(4 * CHUNK_SIZE), drainRateTracker);
+    final List<Integer> callbackOrder = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicReference<Future<Long>> otherWriteFuture = new AtomicReference<>();
+    final CountDownLatch otherWriteReturned = new CountDownLatch(1);
+    final AtomicBoolean otherWriteReturnedInCallback = new AtomicBoolean(false);
+    final Callback<Long> otherWriteCallback = new Callback<Long>() {
+      @Override
+      public void onCompletion(Long result, Exception exception) {
+        callbackOrder.add(1);
+      }
+    };
+    Future<Long> future = responseChannel.write(ByteBuffer.allocate(CHUNK_SIZE), new Callback<Long>() {
+      @Override
+      public void onCompletion(Long result, Exception exception) {
+        callbackOrder.add(0);
+        // another thread writes while this callback is running.
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            otherWriteFuture.set(responseChannel.write(ByteBuffer.allocate(CHUNK_SIZE), otherWriteCallback));
+            otherWriteReturned.countDown();
+          }
+        }).start();
+        try {
+          otherWriteReturnedInCallback.set(otherWriteReturned.await(1, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    assertTrue("Write should have been acknowledged inline", future.isDone());
+    assertTrue("Other write should have returned while the callback was running", otherWriteReturnedInCallback.get());
+    assertEquals("Other write should have been acknowledged after the first", Arrays.asList(0, 1), callbackOrder);
+    assertEquals("Unexpected result of other write", CHUNK_SIZE,
+        otherWriteFuture.get().get(1, TimeUnit.SECONDS).longValue());
+    responseChannel.onResponseComplete(null);
+    heldContentHandler.release();
+  }
+
+  /**
+   * Tests that only the time during which content is waiting for the client counts towards the drain rate of the
+   * client, so that a fast client of a slow producer is not considered slow, while a slow client is.
+   * @throws Exception
+   */
+  @Test
+  public void drainRateMeasurementTest()
+      throws Exception {
+    final int CHUNK_SIZE = 16;
+    long waitTimeMs = 2 * TimeUnit.NANOSECONDS.toMillis(DrainRateTracker.MIN_SAMPLE_TIME_NS);
+    // the client reads everything right away, but the producer takes time between writes.
+    DrainRateTracker drainRateTracker = new DrainRateTracker();
+    ChannelInboundHandlerAdapter lastHandler = new ChannelInboundHandlerAdapter();
+    EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), lastHandler);
+    NettyResponseChannel responseChannel =
+        new NettyResponseChannel(channel.pipeline().context(lastHandler), new NettyMetrics(new MetricRegistry()),
+            MockNettyMessageProcessor.NETTY_CONFIG, new ResponseSpool(0), drainRateTracker);
+    for (int i = 0; i < 2; i++) {
+      Thread.sleep(waitTimeMs);
+      responseChannel.write(ByteBuffer.wrap(new byte[CHUNK_SIZE]), null).get(1, TimeUnit.SECONDS);
+    }
+    responseChannel.onResponseComplete(null);
+    assertEquals("Time the producer took should not have been counted", -1, drainRateTracker.getBytesPerSec());
+
+    // the client takes time to read the content.
+    HeldContentHandler heldContentHandler = new HeldContentHandler();
+    lastHandler = new ChannelInboundHandlerAdapter();
+    channel = new EmbeddedChannel(heldContentHandler, new ChunkedWriteHandler(), lastHandler);
+    responseChannel =
+        new NettyResponseChannel(channel.pipeline().context(lastHandler), new NettyMetrics(new MetricRegistry()),
+            MockNettyMessageProcessor.NETTY_CONFIG, new ResponseSpool(0), drainRateTracker);
+    Future<Long> future = responseChannel.write(ByteBuffer.wrap(new byte[CHUNK_SIZE]), null);
+    Thread.sleep(waitTimeMs);
+    responseChannel.onResponseComplete(null);
+    heldContentHandler.release();
+    assertEquals("Unexpected result of write", CHUNK_SIZE, future.get(1, TimeUnit.SECONDS).longValue());
+    long bytesPerSec = drainRateTracker.getBytesPerSec();
+    assertTrue("Drain rate should have been recorded", bytesPerSec != -1);
+    assertTrue("Drain rate should have been measured over the time the client took: " + bytesPerSec,
+        bytesPerSec <= DrainRateTracker.getBytesPerSec(CHUNK_SIZE, TimeUnit.MILLISECONDS.toNanos(waitTimeMs)));
+  }
+
   /**
    * Asks the server to write more data than the set Content-Length and checks behavior.
    * @throws Exception
@@ -515,6 +683,156 @@ public class NettyResponseChannelTest {
     }
   }
 
+  // responseBatchingTest() helpers
+
+  /**
+   * Echoes {@code chunkCount} chunks of size {@code chunkSize} while the write of the response metadata is held back,
+   * so that all the chunks are queued in the {@link NettyResponseChannel} when the metadata write completes. Verifies
+   * that the chunks are coalesced into writes of {@code expectedChunksPerWrite} chunks and that the content is intact.
+   * A last chunk that is echoed after the metadata write completes is expected to be written by itself.
+   * @param chunkSize the size of each chunk.
+   * @param chunkCount the number of chunks to echo.
+   * @param nettyConfig the {@link NettyConfig} to use in the {@link MockNettyMessageProcessor}.
+   * @param expectedChunksPerWrite the number of chunks expected to be coalesced into each write.
+   * @throws Exception
+   */
+  private void doResponseBatchingTest(int chunkSize, int chunkCount, NettyConfig nettyConfig,
+      int expectedChunksPerWrite)
+      throws Exception {
+    HeldResponseMetadataHandler heldResponseMetadataHandler = new HeldResponseMetadataHandler();
+    MockNettyMessageProcessor processor = new MockNettyMessageProcessor(nettyConfig);
+    EmbeddedChannel channel = new EmbeddedChannel(heldResponseMetadataHandler, new ChunkedWriteHandler(), processor);
+    HttpRequest httpRequest = RestTestUtils.createRequest(HttpMethod.POST, "/", null);
+    HttpHeaders.setKeepAlive(httpRequest, false);
+    channel.writeInbound(httpRequest);
+    StringBuilder expectedContent = new StringBuilder();
+    for (int i = 0; i < chunkCount; i++) {
+      String contentToSend = new String(new char[chunkSize]).replace('\0', (char) ('a' + i));
+      channel.writeInbound(createContent(contentToSend, false));
+      expectedContent.append(contentToSend);
+    }
+    assertNull("No response should have been written yet", channel.readOutbound());
+    heldResponseMetadataHandler.release();
+    String lastContent = new String(new char[chunkSize]).replace('\0', 'z');
+    channel.writeInbound(createContent(lastContent, true));
+    verifyCallbacks(processor);
+
+    HttpResponse response = (HttpResponse) channel.readOutbound();
+    assertEquals("Unexpected response status", HttpResponseStatus.OK, response.getStatus());
+    StringBuilder returnedContent = new StringBuilder();
+    Object outbound = channel.readOutbound();
+    while (returnedContent.length() < expectedContent.length()) {
+      String content = RestTestUtils.getContentString((HttpContent) outbound);
+      int expectedSize =
+          Math.min(expectedChunksPerWrite * chunkSize, expectedContent.length() - returnedContent.length());
+      assertEquals("Unexpected size of write", expectedSize, content.length());
+      returnedContent.append(content);
+      outbound = channel.readOutbound();
+    }
+    assertEquals("Content does not match with expected content", expectedContent.toString(),
+        returnedContent.toString());
+    assertEquals("Last content does not match with expected content", lastContent,
+        RestTestUtils.getContentString((HttpContent) outbound));
+    assertTrue("Did not receive end marker", channel.readOutbound() instanceof LastHttpContent);
+    assertFalse("Channel not closed on the server", channel.isActive());
+  }
+
+  // slowClientSpoolingTest() helpers
+
+  /**
+   * Writes {@code chunkCount} chunks of size {@code chunkSize} through a {@link NettyResponseChannel} while the client
+   * does not read any of them and checks which of the writes are acknowledged. Then lets the client read everything
+   * and checks that all the writes are acknowledged, that the spool is empty and that the content is intact even
+   * though the buffers of the writes that were acknowledged are overwritten.
+   * @param chunkSize the size of each chunk.
+   * @param chunkCount the number of chunks to write.
+   * @param spoolCapacity the capacity of the {@link ResponseSpool}.
+   * @param drainRateTracker the {@link DrainRateTracker} of the connection.
+   * @param waitBeforeLastWrite if {@code true}, waits for long enough before the last write for the drain rate of the
+   *                            response to be measured.
+   * @param expectedAcknowledged whether each write is expected to be acknowledged before the client reads anything.
+   * @throws Exception
+   */
+  private void doSlowClientSpoolingTest(int chunkSize, int chunkCount, long spoolCapacity,
+      DrainRateTracker drainRateTracker, boolean waitBeforeLastWrite, boolean[] expectedAcknowledged)
+      throws Exception {
+    doSlowClientSpoolingTest(chunkSize, chunkCount, new ResponseSpool(spoolCapacity), drainRateTracker,
+        waitBeforeLastWrite, expectedAcknowledged);
+  }
+
+  /**
+   * Same as {@link #doSlowClientSpoolingTest(int, int, long, DrainRateTracker, boolean, boolean[])}, but with the given
+   * {@link ResponseSpool}, which has to be empty.
+   * @param chunkSize the size of each chunk.
+   * @param chunkCount the number of chunks to write.
+   * @param responseSpool the {@link ResponseSpool} of the connection.
+   * @param drainRateTracker the {@link DrainRateTracker} of the connection.
+   * @param waitBeforeLastWrite if {@code true}, waits for long enough before the last write for the drain rate of the
+   *                            response to be measured.
+   * @param expectedAcknowledged whether each write is expected to be acknowledged before the client reads anything.
+   * @throws Exception
+   */
+  private void doSlowClientSpoolingTest(int chunkSize, int chunkCount, ResponseSpool responseSpool,
+      DrainRateTracker drainRateTracker, boolean waitBeforeLastWrite, boolean[] expectedAcknowledged)
+      throws Exception {
+    HeldContentHandler heldContentHandler = new HeldContentHandler();
+    ChannelInboundHandlerAdapter lastHandler = new ChannelInboundHandlerAdapter();
+    EmbeddedChannel channel = new EmbeddedChannel(heldContentHandler, new ChunkedWriteHandler(), lastHandler);
+    NettyResponseChannel responseChannel =
+        new NettyResponseChannel(channel.pipeline().context(lastHandler), new NettyMetrics(new MetricRegistry()),
+            MockNettyMessageProcessor.NETTY_CONFIG, responseSpool, drainRateTracker);
+    StringBuilder expectedContent = new StringBuilder();
+    List<ByteBuffer> buffers = new ArrayList<>();
+    List<ChannelWriteCallback> callbacks = new ArrayList<>();
+    for (int i = 0; i < chunkCount; i++) {
+      if (waitBeforeLastWrite && i == chunkCount - 1) {
+        Thread.sleep(2 * TimeUnit.NANOSECONDS.toMillis(DrainRateTracker.MIN_SAMPLE_TIME_NS));
+      }
+      String content = new String(new char[chunkSize]).replace('\0', (char) ('a' + i));
+      expectedContent.append(content);
+      ByteBuffer buffer = ByteBuffer.wrap(content.getBytes());
+      ChannelWriteCallback callback = new ChannelWriteCallback();
+      callback.setFuture(responseChannel.write(buffer, callback));
+      buffers.add(buffer);
+      callbacks.add(callback);
+    }
+    long expectedSpooledBytes = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      if (expectedAcknowledged[i]) {
+        expectedSpooledBytes += chunkSize;
+        assertEquals("Write " + i + " should have been acknowledged", chunkSize, callbacks.get(i).result.longValue());
+        assertFalse("Buffer should have been consumed", buffers.get(i).hasRemaining());
+        // the buffer can be reused once the write is acknowledged.
+        Arrays.fill(buffers.get(i).array(), (byte) 'z');
+      } else {
+        assertNull("Write " + i + " should not have been acknowledged", callbacks.get(i).result);
+      }
+    }
+    if (!waitBeforeLastWrite) {
+      assertEquals("Unexpected number of bytes spooled", expectedSpooledBytes, responseSpool.getSpooledBytes());
+    } else {
+      assertEquals("Last write should have been spooled", chunkSize, responseSpool.getSpooledBytes());
+    }
+
+    responseChannel.onResponseComplete(null);
+    heldContentHandler.release();
+    for (ChannelWriteCallback callback : callbacks) {
+      callback.compareWithFuture();
+      assertEquals("Unexpected result of write", chunkSize, callback.result.longValue());
+    }
+    assertEquals("Spool should be empty", 0, responseSpool.getSpooledBytes());
+    HttpResponse response = (HttpResponse) channel.readOutbound();
+    assertEquals("Unexpected response status", HttpResponseStatus.OK, response.getStatus());
+    StringBuilder returnedContent = new StringBuilder();
+    Object outbound = channel.readOutbound();
+    while (!(outbound instanceof LastHttpContent)) {
+      returnedContent.append(RestTestUtils.getContentString((HttpContent) outbound));
+      outbound = channel.readOutbound();
+    }
+    assertEquals("Content does not match with expected content", expectedContent.toString(),
+        returnedContent.toString());
+  }
+
   // badStateTransitionsTest() helpers
 
   /**
@@ -834,6 +1152,7 @@ enum TestingUri {
  */
 class MockNettyMessageProcessor extends SimpleChannelInboundHandler<HttpObject> {
   static final MetricRegistry METRIC_REGISTRY = new MetricRegistry();
+  static final NettyConfig NETTY_CONFIG = new NettyConfig(new VerifiableProperties(new Properties()));
   static final String CUSTOM_HEADER_NAME = "customHeader";
   static final String STATUS_HEADER_NAME = "status";
   static final String REST_SERVICE_ERROR_CODE_HEADER_NAME = "restServiceErrorCode";
@@ -849,11 +1168,27 @@ class MockNettyMessageProcessor extends SimpleChannelInboundHandler<HttpObject>
   // the write callbacks to verify if any. This is reset at the beginning of every request.
   final List<ChannelWriteCallback> writeCallbacksToVerify = new ArrayList<>();
 
+  private final NettyConfig nettyConfig;
   private ChannelHandlerContext ctx;
   private NettyRequest request;
   private NettyResponseChannel restResponseChannel;
   private NettyMetrics nettyMetrics;
 
+  /**
+   * Creates a processor that uses {@link #NETTY_CONFIG}.
+   */
+  MockNettyMessageProcessor() {
+    this(NETTY_CONFIG);
+  }
+
+  /**
+   * Creates a processor that uses the given {@link NettyConfig} for the {@link NettyResponseChannel}s it creates.
+   * @param nettyConfig the {@link NettyConfig} to use.
+   */
+  MockNettyMessageProcessor(NettyConfig nettyConfig) {
+    this.nettyConfig = nettyConfig;
+  }
+
   @Override
   public void channelActive(ChannelHandlerContext ctx) {
     this.ctx = ctx;
@@ -894,7 +1229,7 @@ class MockNettyMessageProcessor extends SimpleChannelInboundHandler<HttpObject>
       throws Exception {
     writeCallbacksToVerify.clear();
     request = new NettyRequest(httpRequest, nettyMetrics);
-    restResponseChannel = new NettyResponseChannel(ctx, nettyMetrics);
+    restResponseChannel = new NettyResponseChannel(ctx, nettyMetrics, nettyConfig);
     restResponseChannel.setRequest(request);
     restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/octet-stream");
     TestingUri uri = TestingUri.getTestingURI(request.getUri());
@@ -1166,7 +1501,7 @@ class MockNettyMessageProcessor extends SimpleChannelInboundHandler<HttpObject>
   private void setRequestTest()
       throws RestServiceException {
     ResponseStatus status = ResponseStatus.Accepted;
-    restResponseChannel = new NettyResponseChannel(ctx, new NettyMetrics(new MetricRegistry()));
+    restResponseChannel = new NettyResponseChannel(ctx, new NettyMetrics(new MetricRegistry()), NETTY_CONFIG);
     try {
       try {
         restResponseChannel.setRequest(null);
@@ -1217,6 +1552,68 @@ class ErrorOutboundHandler extends ChannelOutboundHandlerAdapter {
   }
 }
 
+/**
+ * A {@link ChannelOutboundHandler} that holds back the write of the response metadata ({@link HttpResponse}) until
+ * {@link #release()} is called.
+ */
+class HeldResponseMetadataHandler extends ChannelOutboundHandlerAdapter {
+  private ChannelHandlerContext ctx;
+  private Object heldMsg = null;
+  private ChannelPromise heldPromise = null;
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof HttpResponse && heldMsg == null) {
+      this.ctx = ctx;
+      heldMsg = msg;
+      heldPromise = promise;
+    } else {
+      ctx.write(msg, promise);
+    }
+  }
+
+  /**
+   * Writes and flushes the response metadata that was held back.
+   */
+  void release() {
+    ctx.writeAndFlush(heldMsg, heldPromise);
+  }
+}
+
+/**
+ * Holds back the writes of response content, as if the client was not reading it, until {@link #release()} is called.
+ */
+class HeldContentHandler extends ChannelOutboundHandlerAdapter {
+  private final List<Object> heldMsgs = new ArrayList<>();
+  private final List<ChannelPromise> heldPromises = new ArrayList<>();
+  private ChannelHandlerContext ctx;
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof HttpContent) {
+      this.ctx = ctx;
+      heldMsgs.add(msg);
+      heldPromises.add(promise);
+    } else {
+      ctx.write(msg, promise);
+    }
+  }
+
+  /**
+   * Writes and flushes the content that was held back.
+   */
+  void release() {
+    for (int i = 0; i < heldMsgs.size(); i++) {
+      ctx.write(heldMsgs.get(i), heldPromises.get(i));
+    }
+    heldMsgs.clear();
+    heldPromises.clear();
+    ctx.flush();
+  }
+}
+
 /**
  * Class that can be used to receive callbacks from {@link NettyResponseChannel}.
  * <p/>
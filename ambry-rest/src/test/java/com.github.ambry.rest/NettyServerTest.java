@@ -22,6 +22,7 @@ import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import java.io.IOException;
+import java.net.Socket;
 import java.util.Properties;
 import org.junit.Test;
 
@@ -46,6 +47,42 @@ public class NettyServerTest {
     nioServer.shutdown();
   }
 
+  /**
+   * Tests {@link NettyServer#start()} and {@link NettyServer#shutdown()} with the transport and socket options tuned.
+   * Epoll (and with it, multiple acceptors) is used only if available, so this works on all platforms.
+   * @throws InstantiationException
+   * @throws IOException
+   */
+  @Test
+  public void startShutdownWithTuningTest()
+      throws InstantiationException, IOException {
+    Properties properties = new Properties();
+    properties.setProperty("netty.server.epoll.enabled", "true");
+    properties.setProperty("netty.server.acceptor.count", "2");
+    properties.setProperty("netty.server.worker.thread.count", "2");
+    properties.setProperty("netty.server.tcp.no.delay", "false");
+    properties.setProperty("netty.server.pooled.allocator.enabled", "true");
+    // high water mark lower than the default low water mark.
+    properties.setProperty("netty.server.write.buffer.high.water.mark.bytes", "16384");
+    properties.setProperty("netty.server.write.buffer.low.water.mark.bytes", "8192");
+    NioServer nioServer = getNettyServer(properties);
+    nioServer.start();
+    try {
+      Socket socket = new Socket("localhost", new NettyConfig(new VerifiableProperties(properties)).nettyServerPort);
+      socket.close();
+    } finally {
+      nioServer.shutdown();
+    }
+
+    // low water mark higher than the default high water mark.
+    properties = new Properties();
+    properties.setProperty("netty.server.write.buffer.high.water.mark.bytes", "262144");
+    properties.setProperty("netty.server.write.buffer.low.water.mark.bytes", "131072");
+    nioServer = getNettyServer(properties);
+    nioServer.start();
+    nioServer.shutdown();
+  }
+
   /**
    * Tests for {@link NettyServer#shutdown()} when {@link NettyServer#start()} has not been called previously.
    * This test is for cases where {@link NettyServer#start()} has failed and {@link NettyServer#shutdown()} needs to be
@@ -84,6 +121,19 @@ public class NettyServerTest {
       }
     }
 
+    // low water mark cannot be higher than the high water mark. So will throw at instantiation.
+    properties.setProperty("netty.server.port", "1174");
+    properties.setProperty("netty.server.write.buffer.high.water.mark.bytes", "1024");
+    properties.setProperty("netty.server.write.buffer.low.water.mark.bytes", "2048");
+    try {
+      getNettyServer(properties);
+      fail("NettyServer instantiation should have failed because of bad water mark values");
+    } catch (IllegalArgumentException e) {
+      // nothing to do. expected.
+    }
+    properties.remove("netty.server.write.buffer.high.water.mark.bytes");
+    properties.remove("netty.server.write.buffer.low.water.mark.bytes");
+
     // Should be > 0. So will throw at start().
     properties.setProperty("netty.server.port", "-1");
     nioServer = getNettyServer(properties);
@@ -13,7 +13,17 @@
  */
 package com.github.ambry.rest;
 
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import junit.framework.Assert;
 import org.junit.Test;
 
@@ -35,4 +45,55 @@ public class PublicAccessLoggerTest {
     Assert.assertTrue("Response Headers mismatch ",
         Arrays.deepEquals(publicAccessLogger.getResponseHeaders(), responseHeaders));
   }
+
+  /**
+   * Tests that entries logged through the async buffer are formatted in the same way as entries logged synchronously
+   * and that they are written out, in order, by the time the logger is closed.
+   */
+  @Test
+  public void testAsyncLogging() {
+    String[] requestHeaders = new String[]{REQUEST_HEADER_PREFIX + "1", REQUEST_HEADER_PREFIX + "2"};
+    String[] responseHeaders = new String[]{RESPONSE_HEADER_PREFIX + "1", RESPONSE_HEADER_PREFIX + "2"};
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    PublicAccessLogger asyncLogger = new PublicAccessLogger(requestHeaders, responseHeaders, 16) {
+      @Override
+      public void logError(String message) {
+        messages.add("Error:" + message);
+      }
+
+      @Override
+      public void logInfo(String message) {
+        messages.add("Info:" + message);
+      }
+    };
+    MockPublicAccessLogger syncLogger = new MockPublicAccessLogger(requestHeaders, responseHeaders);
+    List<String> expectedMessages = new ArrayList<String>();
+    for (int i = 0; i < 5; i++) {
+      HttpHeaders headers = new DefaultHttpHeaders();
+      headers.add(REQUEST_HEADER_PREFIX + "1", "value" + i);
+      PublicAccessLogEntry entry =
+          new PublicAccessLogEntry("remote", RestTestUtils.createRequest(HttpMethod.GET, "/uri" + i, headers),
+              requestHeaders, 100);
+      boolean isError = i % 2 == 1;
+      if (isError) {
+        entry.onCompletion(150 + i, " : Channel closed while request in progress.");
+      } else {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().add(RESPONSE_HEADER_PREFIX + "2", "responseValue" + i);
+        entry.onResponse(response, responseHeaders, 120);
+        entry.onCompletion(150 + i, null);
+      }
+      asyncLogger.log(entry, isError);
+      syncLogger.log(entry, isError);
+      expectedMessages.add(syncLogger.getLastPublicAccessLogEntry());
+    }
+    asyncLogger.close();
+    Assert.assertEquals("Async log entries do not match the synchronous ones", expectedMessages, messages);
+    Assert.assertEquals("No entry should have been dropped", 0, asyncLogger.getDroppedEntryCount());
+    Assert.assertEquals("No entry should be pending", 0, asyncLogger.getPendingEntryCount());
+    Assert.assertEquals("Unexpected message",
+        "Info:remote GET /uri0, Request ([requestHeader1=value0] [isChunked=false]), "
+            + "Response ([responseHeader2=responseValue0] [isChunked=false]), status=200, duration=50ms ",
+        messages.get(0));
+  }
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.Time;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * An implementation of {@link OperationTracker} that sends requests to the replicas that are expected to respond the
+ * fastest first. It behaves like a {@link SimpleOperationTracker}, except that within the local and the remote replicas
+ * the replicas are ordered by the expected latency of their data nodes rather than randomly.
+ * <p>
+ * The expected latency of a data node is derived from the {@link NonBlockingRouterMetrics.NodeLevelMetrics} of the data
+ * node: the moving average of the latency of the requests to it, multiplied by one more than the number of requests to
+ * it that are in flight. Requests that time out count as taking the request timeout. While no request to the data
+ * node is in flight, the moving average counts for less the longer ago it was last updated (it halves every
+ * {@code latencyHalfLifeMs}), so that a data node that stopped getting requests because it was slow is eventually tried
+ * again. While requests to the data node are in flight, the moving average does not decay and the expected latency is
+ * at least the time the oldest of them has been in flight, so that a data node that stopped responding is not ranked
+ * ahead of the others. Data nodes with the same expected latency, such as those that have not received any requests
+ * yet, are ordered randomly.
+ */
+class AdaptiveOperationTracker extends SimpleOperationTracker {
+
+  /**
+   * Constructor for an {@code AdaptiveOperationTracker}.
+   *
+   * @param datacenterName The datacenter where the router is located.
+   * @param partitionId The partition on which the operation is performed.
+   * @param crossColoEnabled {@code true} if requests can be sent to remote replicas, {@code false}
+   *                                otherwise.
+   * @param successTarget The number of successful responses required to succeed the operation.
+   * @param parallelism The maximum number of inflight requests at any point of time.
+   * @param routerMetrics The {@link NonBlockingRouterMetrics} that tracks the latency of the data nodes.
+   * @param latencyHalfLifeMs The time after which the observed latency of a data node counts for half as much.
+   * @param time The {@link Time} instance to use.
+   */
+  AdaptiveOperationTracker(final String datacenterName, PartitionId partitionId, boolean crossColoEnabled,
+      int successTarget, int parallelism, NonBlockingRouterMetrics routerMetrics, long latencyHalfLifeMs, Time time) {
+    super(datacenterName, partitionId, crossColoEnabled, successTarget, parallelism, true);
+    long nowMs = time.milliseconds();
+    final Map<ReplicaId, Double> expectedLatenciesMs = new HashMap<>();
+    for (ReplicaId replicaId : replicaPool) {
+      expectedLatenciesMs.put(replicaId,
+          getExpectedLatencyMs(routerMetrics.getDataNodeBasedMetrics(replicaId.getDataNodeId()), latencyHalfLifeMs,
+              nowMs));
+    }
+    // the sort is stable, so replicas with the same expected latency remain shuffled.
+    Collections.sort(replicaPool, new Comparator<ReplicaId>() {
+      @Override
+      public int compare(ReplicaId r1, ReplicaId r2) {
+        boolean r1IsLocal = r1.getDataNodeId().getDatacenterName().equals(datacenterName);
+        boolean r2IsLocal = r2.getDataNodeId().getDatacenterName().equals(datacenterName);
+        if (r1IsLocal != r2IsLocal) {
+          return r1IsLocal ? -1 : 1;
+        }
+        return Double.compare(expectedLatenciesMs.get(r1), expectedLatenciesMs.get(r2));
+      }
+    });
+  }
+
+  /**
+   * Estimates the latency of a new request to a data node.
+   * @param nodeLevelMetrics the {@link NonBlockingRouterMetrics.NodeLevelMetrics} of the data node.
+   * @param latencyHalfLifeMs The time after which the observed latency of a data node counts for half as much.
+   * @param nowMs the current time in ms.
+   * @return the expected latency in ms. 0 if the latency of the data node is not known and no request to it is in
+   *         flight.
+   */
+  static double getExpectedLatencyMs(NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics,
+      long latencyHalfLifeMs, long nowMs) {
+    if (nodeLevelMetrics == null) {
+      return 0;
+    }
+    long lastUpdateTimeMs = nodeLevelMetrics.getLastRequestLatencyUpdateTimeMs();
+    long oldestSendTimeMs = nodeLevelMetrics.getOldestRequestInFlightSendTimeMs();
+    double latencyMs = 0;
+    if (oldestSendTimeMs != -1) {
+      latencyMs = Math.max(nodeLevelMetrics.getRequestLatencyEwmaMs(), nowMs - oldestSendTimeMs);
+    } else if (lastUpdateTimeMs != -1) {
+      double ageInHalfLives = (double) Math.max(0, nowMs - lastUpdateTimeMs) / latencyHalfLifeMs;
+      latencyMs = nodeLevelMetrics.getRequestLatencyEwmaMs() * Math.pow(0.5, ageInHalfLives);
+    }
+    return latencyMs * (1 + nodeLevelMetrics.getRequestsInFlight());
+  }
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.ResponseHandler;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.config.RouterConfig;
+import com.github.ambry.network.RequestInfo;
+import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.protocol.DeleteRequest;
+import com.github.ambry.protocol.DeleteResponse;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Time;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * This class manages the internal state of a {@code BatchDeleteOperation} that deletes a number of blobs at once.
+ * <p>
+ * The state of the delete of each blob is held by a {@link DeleteOperation}, so each blob is deleted with the same
+ * parallelism, success target and error resolution as a blob deleted on its own. Instead of each of them sending a
+ * request per replica, the {@code BatchDeleteOperation} collects the replicas that every blob has to be deleted from
+ * and sends a single multi-blob {@link DeleteRequest} to each data node, for all the blobs that have a replica on it.
+ * The request to a data node carries up to {@link RouterConfig#routerDeleteBatchMaxBlobsPerRequest} blobs. The
+ * response carries the error of each blob, which is handed to its {@link DeleteOperation}.
+ * <p>
+ * Multi-blob requests are only sent if {@link RouterConfig#routerDeleteBatchRequestEnabled} is set, since data nodes
+ * that predate them cannot read them. Otherwise, the delete of each blob is sent to each data node as a single-blob
+ * {@link DeleteRequest}, just like a blob deleted on its own.
+ * <p>
+ * The result of the operation is a map from the id of each blob that could not be deleted to the cause.
+ */
+class BatchDeleteOperation {
+  private final RouterConfig routerConfig;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final ResponseHandler responseHandler;
+  private final FutureResult<Map<String, Exception>> futureResult;
+  private final Callback<Map<String, Exception>> callback;
+  private final Time time;
+  private final long submissionTimeMs;
+
+  // the delete operation of each distinct and valid blob id.
+  private final Map<String, DeleteOperation> blobIdToDeleteOperation = new LinkedHashMap<String, DeleteOperation>();
+  // the blob ids that failed before any request was sent, for example because they are invalid.
+  private final Map<String, Exception> blobIdToPreSendFailure = new HashMap<String, Exception>();
+  // A map used to find inflight requests using a correlation id.
+  private final HashMap<Integer, BatchDeleteRequestInfo> batchDeleteRequestInfos =
+      new HashMap<Integer, BatchDeleteRequestInfo>();
+  // the cause for failure of this operation as a whole. This will be set if and when the operation encounters an
+  // irrecoverable failure.
+  private final AtomicReference<Exception> operationException = new AtomicReference<Exception>();
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchDeleteOperation.class);
+
+  /**
+   * Instantiates a {@link BatchDeleteOperation}.
+   * @param routerConfig The {@link RouterConfig} that contains router-level configurations.
+   * @param routerMetrics The {@link NonBlockingRouterMetrics} to record all router-related metrics.
+   * @param responseHandler The {@link ResponseHandler} used to notify failures for failure detection.
+   * @param clusterMap The {@link ClusterMap} used to get the {@link BlobId}s of the blobs.
+   * @param blobIds The ids of the blobs that are to be deleted.
+   * @param futureResult The {@link FutureResult} that is returned to the caller.
+   * @param callback The {@link Callback} that is supplied by the caller.
+   * @param time A {@link Time} reference.
+   */
+  BatchDeleteOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
+      ResponseHandler responseHandler, ClusterMap clusterMap, List<String> blobIds,
+      FutureResult<Map<String, Exception>> futureResult, Callback<Map<String, Exception>> callback, Time time) {
+    this.submissionTimeMs = time.milliseconds();
+    this.routerConfig = routerConfig;
+    this.routerMetrics = routerMetrics;
+    this.responseHandler = responseHandler;
+    this.futureResult = futureResult;
+    this.callback = callback;
+    this.time = time;
+    for (String blobIdString : blobIds) {
+      if (blobIdToDeleteOperation.containsKey(blobIdString) || blobIdToPreSendFailure.containsKey(blobIdString)) {
+        continue;
+      }
+      try {
+        BlobId blobId = RouterUtils.getBlobIdFromString(blobIdString, clusterMap);
+        blobIdToDeleteOperation.put(blobIdString,
+            new DeleteOperation(routerConfig, routerMetrics, responseHandler, blobId, null, null, time));
+      } catch (RouterException e) {
+        blobIdToPreSendFailure.put(blobIdString, e);
+      }
+    }
+  }
+
+  /**
+   * Gets the multi-blob {@link DeleteRequest}s to send to data nodes, one per data node (or more, if there are more
+   * blobs for it than fit into a single request). If multi-blob requests are disabled, a single-blob request is sent
+   * for each blob instead.
+   * @param requestRegistrationCallback the {@link RequestRegistrationCallback} to call for every request
+   *                            that gets created as part of this poll operation.
+   */
+  void poll(RequestRegistrationCallback<BatchDeleteOperation> requestRegistrationCallback) {
+    cleanupExpiredInflightRequests();
+    Map<DataNodeId, List<BlobReplica>> dataNodeToBlobReplicas = new LinkedHashMap<DataNodeId, List<BlobReplica>>();
+    for (DeleteOperation deleteOperation : blobIdToDeleteOperation.values()) {
+      for (ReplicaId replica : deleteOperation.fetchReplicasToSend()) {
+        List<BlobReplica> blobReplicas = dataNodeToBlobReplicas.get(replica.getDataNodeId());
+        if (blobReplicas == null) {
+          blobReplicas = new ArrayList<BlobReplica>();
+          dataNodeToBlobReplicas.put(replica.getDataNodeId(), blobReplicas);
+        }
+        blobReplicas.add(new BlobReplica(deleteOperation, replica));
+      }
+    }
+    int maxBlobsPerRequest =
+        routerConfig.routerDeleteBatchRequestEnabled ? routerConfig.routerDeleteBatchMaxBlobsPerRequest : 1;
+    for (Map.Entry<DataNodeId, List<BlobReplica>> entry : dataNodeToBlobReplicas.entrySet()) {
+      DataNodeId dataNode = entry.getKey();
+      List<BlobReplica> blobReplicas = entry.getValue();
+      for (int start = 0; start < blobReplicas.size(); start += maxBlobsPerRequest) {
+        int end = Math.min(blobReplicas.size(), start + maxBlobsPerRequest);
+        List<BlobReplica> requestBlobReplicas = new ArrayList<BlobReplica>(blobReplicas.subList(start, end));
+        List<BlobId> requestBlobIds = new ArrayList<BlobId>(requestBlobReplicas.size());
+        for (BlobReplica blobReplica : requestBlobReplicas) {
+          requestBlobIds.add(blobReplica.deleteOperation.getBlobId());
+        }
+        int correlationId = NonBlockingRouter.correlationIdGenerator.incrementAndGet();
+        DeleteRequest deleteRequest =
+            routerConfig.routerDeleteBatchRequestEnabled ? new DeleteRequest(correlationId, routerConfig.routerHostname,
+                requestBlobIds) : new DeleteRequest(correlationId, routerConfig.routerHostname, requestBlobIds.get(0));
+        batchDeleteRequestInfos.put(deleteRequest.getCorrelationId(),
+            new BatchDeleteRequestInfo(time.milliseconds(), dataNode, requestBlobReplicas));
+        RequestInfo requestInfo = new RequestInfo(dataNode.getHostname(), dataNode.getPortToConnectTo(), deleteRequest,
+            deleteRequest.getCorrelationId());
+        requestRegistrationCallback.registerRequestToSend(this, requestInfo);
+        routerMetrics.deleteBlobsPerRequest.update(requestBlobIds.size());
+      }
+    }
+  }
+
+  /**
+   * Handles a response to a {@link DeleteRequest} sent by this operation. The error of each blob in the response is
+   * handed to the {@link DeleteOperation} of the blob. The {@link ResponseHandler} is notified once per replica in the
+   * request.
+   * @param responseInfo The response to be handled.
+   */
+  void handleResponse(ResponseInfo responseInfo) {
+    DeleteRequest deleteRequest = (DeleteRequest) responseInfo.getRequest();
+    BatchDeleteRequestInfo requestInfo = batchDeleteRequestInfos.remove(deleteRequest.getCorrelationId());
+    // requestInfo can be null if this request was timed out before this response is received.
+    if (requestInfo == null) {
+      return;
+    }
+    long requestLatencyMs = time.milliseconds() - requestInfo.startTimeMs;
+    routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
+    routerMetrics.getDataNodeBasedMetrics(requestInfo.dataNode).deleteRequestLatencyMs.update(requestLatencyMs);
+    if (responseInfo.getError() != null) {
+      onRequestFailed(requestInfo, new IOException("NetworkClient error."), RouterErrorCode.OperationTimedOut);
+      return;
+    }
+    try {
+      DeleteResponse deleteResponse =
+          DeleteResponse.readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())));
+      List<ServerErrorCode> blobErrors = deleteResponse.getBlobErrors();
+      if (blobErrors == null && (deleteResponse.getError() != ServerErrorCode.No_Error || !deleteRequest
+          .isMultiBlobRequest())) {
+        // the request failed as a whole on the server, or it was a single-blob request whose error is that of the blob.
+        blobErrors = Collections.nCopies(requestInfo.blobReplicas.size(), deleteResponse.getError());
+      }
+      if (deleteResponse.getCorrelationId() != deleteRequest.getCorrelationId()) {
+        logger.error("The correlation id in the DeleteResponse " + deleteResponse.getCorrelationId()
+            + " is not the same as the correlation id in the associated DeleteRequest: " + deleteRequest
+            .getCorrelationId());
+        routerMetrics.unknownReplicaResponseError.inc();
+        onRequestFailed(requestInfo, null, RouterErrorCode.UnexpectedInternalError);
+      } else if (blobErrors == null || blobErrors.size() != requestInfo.blobReplicas.size()) {
+        logger.error(
+            "The DeleteResponse " + deleteResponse + " does not have an error for each blob of " + deleteRequest);
+        routerMetrics.unknownReplicaResponseError.inc();
+        onRequestFailed(requestInfo, null, RouterErrorCode.UnexpectedInternalError);
+      } else {
+        Set<ReplicaId> notifiedReplicas = new HashSet<ReplicaId>();
+        for (int i = 0; i < blobErrors.size(); i++) {
+          BlobReplica blobReplica = requestInfo.blobReplicas.get(i);
+          if (notifiedReplicas.add(blobReplica.replica)) {
+            responseHandler.onRequestResponseError(blobReplica.replica, blobErrors.get(i));
+          }
+          blobReplica.deleteOperation.onReplicaResponse(blobReplica.replica, blobErrors.get(i));
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Unable to recover a deleteResponse from received stream.");
+      onRequestFailed(requestInfo, null, RouterErrorCode.UnexpectedInternalError);
+    }
+  }
+
+  /**
+   * Goes through the inflight requests of this {@code BatchDeleteOperation} and fails those that have timed out.
+   */
+  private void cleanupExpiredInflightRequests() {
+    Iterator<Map.Entry<Integer, BatchDeleteRequestInfo>> itr = batchDeleteRequestInfos.entrySet().iterator();
+    while (itr.hasNext()) {
+      BatchDeleteRequestInfo requestInfo = itr.next().getValue();
+      if (time.milliseconds() - requestInfo.startTimeMs > routerConfig.routerRequestTimeoutMs) {
+        itr.remove();
+        onRequestFailed(requestInfo, new IOException("Timed out waiting for a response"),
+            RouterErrorCode.OperationTimedOut);
+      }
+    }
+  }
+
+  /**
+   * Fails the delete of every blob of a request that did not get a usable response.
+   * @param requestInfo the {@link BatchDeleteRequestInfo} of the request.
+   * @param exception the exception to notify the {@link ResponseHandler} of, once per replica. Can be null if the
+   *                  failure says nothing about the health of the replicas.
+   * @param routerErrorCode the {@link RouterErrorCode} that describes the failure.
+   */
+  private void onRequestFailed(BatchDeleteRequestInfo requestInfo, Exception exception,
+      RouterErrorCode routerErrorCode) {
+    Set<ReplicaId> notifiedReplicas = new HashSet<ReplicaId>();
+    for (BlobReplica blobReplica : requestInfo.blobReplicas) {
+      if (exception != null && notifiedReplicas.add(blobReplica.replica)) {
+        responseHandler.onRequestResponseException(blobReplica.replica, exception);
+      }
+      blobReplica.deleteOperation.onReplicaRequestFailed(blobReplica.replica, routerErrorCode);
+    }
+  }
+
+  /**
+   * Returns whether the operation has completed. The operation is complete when the delete of every blob is complete
+   * or when the operation has failed as a whole.
+   * @return whether the operation has completed.
+   */
+  boolean isOperationComplete() {
+    if (operationException.get() != null) {
+      return true;
+    }
+    for (DeleteOperation deleteOperation : blobIdToDeleteOperation.values()) {
+      if (!deleteOperation.isOperationComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the ids of the valid blobs that this operation deletes, as they were submitted.
+   */
+  Set<String> getBlobIdStrings() {
+    return blobIdToDeleteOperation.keySet();
+  }
+
+  /**
+   * @return the ids of the blobs that were deleted.
+   */
+  List<BlobId> getDeletedBlobIds() {
+    List<BlobId> deletedBlobIds = new ArrayList<BlobId>();
+    for (DeleteOperation deleteOperation : blobIdToDeleteOperation.values()) {
+      if (deleteOperation.isOperationComplete() && deleteOperation.getOperationException() == null) {
+        deletedBlobIds.add(deleteOperation.getBlobId());
+      }
+    }
+    return deletedBlobIds;
+  }
+
+  /**
+   * Gets the result of this {@code BatchDeleteOperation}: a map from the id of each blob that could not be deleted to
+   * the cause of the failure.
+   * @return the blobs that could not be deleted.
+   */
+  Map<String, Exception> getOperationResult() {
+    Map<String, Exception> failedBlobs = new HashMap<String, Exception>(blobIdToPreSendFailure);
+    for (Map.Entry<String, DeleteOperation> entry : blobIdToDeleteOperation.entrySet()) {
+      DeleteOperation deleteOperation = entry.getValue();
+      if (!deleteOperation.isOperationComplete()) {
+        failedBlobs.put(entry.getKey(),
+            new RouterException("The delete of the blob did not complete", RouterErrorCode.UnexpectedInternalError));
+      } else if (deleteOperation.getOperationException() != null) {
+        failedBlobs.put(entry.getKey(), deleteOperation.getOperationException());
+      }
+    }
+    return failedBlobs;
+  }
+
+  /**
+   * Get the {@link FutureResult} for this {@code BatchDeleteOperation}.
+   * @return The {@link FutureResult}.
+   */
+  FutureResult<Map<String, Exception>> getFutureResult() {
+    return futureResult;
+  }
+
+  /**
+   * Gets the {@link Callback} for this {@code BatchDeleteOperation}.
+   * @return The {@link Callback}.
+   */
+  Callback<Map<String, Exception>> getCallback() {
+    return callback;
+  }
+
+  /**
+   * Gets the exception associated with this operation if it failed as a whole; null otherwise.
+   * @return exception associated with this operation if it failed as a whole; null otherwise.
+   */
+  Exception getOperationException() {
+    return operationException.get();
+  }
+
+  /**
+   * Sets the exception associated with this operation. When this is called, the operation has failed as a whole.
+   * @param exception the irrecoverable exception associated with this operation.
+   */
+  void setOperationException(Exception exception) {
+    operationException.set(exception);
+  }
+
+  long getSubmissionTimeMs() {
+    return submissionTimeMs;
+  }
+
+  /**
+   * The {@link DeleteOperation} of a blob and a replica of the blob that a request was created for.
+   */
+  private static class BlobReplica {
+    final DeleteOperation deleteOperation;
+    final ReplicaId replica;
+
+    BlobReplica(DeleteOperation deleteOperation, ReplicaId replica) {
+      this.deleteOperation = deleteOperation;
+      this.replica = replica;
+    }
+  }
+
+  /**
+   * A wrapper class for an inflight multi-blob request, in the order of the blob ids in the request.
+   */
+  private static class BatchDeleteRequestInfo {
+    final long startTimeMs;
+    final DataNodeId dataNode;
+    final List<BlobReplica> blobReplicas;
+
+    BatchDeleteRequestInfo(long startTimeMs, DataNodeId dataNode, List<BlobReplica> blobReplicas) {
+      this.startTimeMs = startTimeMs;
+      this.dataNode = dataNode;
+      this.blobReplicas = blobReplicas;
+    }
+  }
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.ResponseHandler;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.config.RouterConfig;
+import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.messageformat.MessageFormatException;
+import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.network.RequestInfo;
+import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.protocol.GetOptions;
+import com.github.ambry.protocol.GetRequest;
+import com.github.ambry.protocol.GetResponse;
+import com.github.ambry.protocol.PartitionRequestInfo;
+import com.github.ambry.protocol.PartitionResponseInfo;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Time;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * This class manages the internal state of a {@code BatchGetBlobInfoOperation} that gets the {@link BlobInfo} of a
+ * number of blobs at once.
+ * <p>
+ * The state of the get of each blob is held by a {@link GetBlobInfoOperation}, so the {@link BlobInfo} of each blob is
+ * fetched with the same parallelism, success target and error resolution as when it is fetched on its own. Instead of
+ * each of them sending a request per replica, the {@code BatchGetBlobInfoOperation} collects the replicas that every
+ * blob has to be fetched from and sends a single {@link GetRequest} with {@link MessageFormatFlags#BlobInfo} to each
+ * data node, for all the blobs that have a replica on it. The request to a data node carries up to
+ * {@link RouterConfig#routerGetBlobInfoBatchMaxBlobsPerRequest} blobs.
+ * <p>
+ * A server fails the get of all the blobs of a {@link PartitionRequestInfo} if any of them fails, so every blob gets a
+ * {@link PartitionRequestInfo} of its own (even if several blobs are on the same partition). The response then has a
+ * {@link PartitionResponseInfo} with the error of each blob, and the {@link BlobInfo} of each blob without an error.
+ */
+class BatchGetBlobInfoOperation {
+  private final RouterConfig routerConfig;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final ClusterMap clusterMap;
+  private final ResponseHandler responseHandler;
+  private final FutureResult<GetBlobInfosResult> futureResult;
+  private final Callback<GetBlobInfosResult> callback;
+  private final Time time;
+  private final long submissionTimeMs;
+
+  // the operation of each distinct and valid blob id.
+  private final Map<String, GetBlobInfoOperation> blobIdToGetBlobInfoOperation =
+      new LinkedHashMap<String, GetBlobInfoOperation>();
+  // the blob ids that failed before any request was sent, for example because they are invalid.
+  private final Map<String, Exception> blobIdToPreSendFailure = new HashMap<String, Exception>();
+  // the blob ids whose BlobInfo was found in the metadata cache, which are not fetched.
+  private final Map<String, BlobInfo> blobIdToCachedBlobInfo = new HashMap<String, BlobInfo>();
+  // A map used to find inflight requests using a correlation id.
+  private final Map<Integer, BatchGetRequestInfo> batchGetRequestInfos = new HashMap<Integer, BatchGetRequestInfo>();
+  // the cause for failure of this operation as a whole. This will be set if and when the operation encounters an
+  // irrecoverable failure.
+  private final AtomicReference<Exception> operationException = new AtomicReference<Exception>();
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchGetBlobInfoOperation.class);
+
+  /**
+   * Instantiates a {@link BatchGetBlobInfoOperation}.
+   * @param routerConfig The {@link RouterConfig} that contains router-level configurations.
+   * @param routerMetrics The {@link NonBlockingRouterMetrics} to record all router-related metrics.
+   * @param clusterMap The {@link ClusterMap} of the cluster.
+   * @param responseHandler The {@link ResponseHandler} used to notify failures for failure detection.
+   * @param blobIds The ids of the blobs whose {@link BlobInfo} is requested.
+   * @param futureResult The {@link FutureResult} that is returned to the caller.
+   * @param callback The {@link Callback} that is supplied by the caller.
+   * @param blobMetadataCache The {@link BlobMetadataCache} to look up the {@link BlobInfo} of the blobs in first, and
+   *                          to add the fetched {@link BlobInfo}s to.
+   * @param time A {@link Time} reference.
+   */
+  BatchGetBlobInfoOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
+      ResponseHandler responseHandler, List<String> blobIds, FutureResult<GetBlobInfosResult> futureResult,
+      Callback<GetBlobInfosResult> callback, BlobMetadataCache blobMetadataCache, Time time) {
+    this.submissionTimeMs = time.milliseconds();
+    this.routerConfig = routerConfig;
+    this.routerMetrics = routerMetrics;
+    this.clusterMap = clusterMap;
+    this.responseHandler = responseHandler;
+    this.futureResult = futureResult;
+    this.callback = callback;
+    this.time = time;
+    for (String blobIdString : blobIds) {
+      if (blobIdToGetBlobInfoOperation.containsKey(blobIdString) || blobIdToPreSendFailure.containsKey(blobIdString)
+          || blobIdToCachedBlobInfo.containsKey(blobIdString)) {
+        continue;
+      }
+      BlobInfo cachedBlobInfo = blobMetadataCache.getBlobInfo(blobIdString);
+      if (cachedBlobInfo != null) {
+        blobIdToCachedBlobInfo.put(blobIdString, cachedBlobInfo);
+        continue;
+      }
+      try {
+        blobIdToGetBlobInfoOperation.put(blobIdString,
+            new GetBlobInfoOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdString, null, null,
+                null, blobMetadataCache, time));
+      } catch (RouterException e) {
+        blobIdToPreSendFailure.put(blobIdString, e);
+      }
+    }
+  }
+
+  /**
+   * Gets the {@link GetRequest}s to send to data nodes, one per data node (or more, if there are more blobs for it than
+   * fit into a single request).
+   * @param requestRegistrationCallback the {@link RequestRegistrationCallback} to call for every request
+   *                            that gets created as part of this poll operation.
+   */
+  void poll(RequestRegistrationCallback<BatchGetBlobInfoOperation> requestRegistrationCallback) {
+    cleanupExpiredInflightRequests();
+    Map<DataNodeId, List<BlobReplica>> dataNodeToBlobReplicas = new LinkedHashMap<DataNodeId, List<BlobReplica>>();
+    for (GetBlobInfoOperation getBlobInfoOperation : blobIdToGetBlobInfoOperation.values()) {
+      for (ReplicaId replica : getBlobInfoOperation.fetchReplicasToSend()) {
+        List<BlobReplica> blobReplicas = dataNodeToBlobReplicas.get(replica.getDataNodeId());
+        if (blobReplicas == null) {
+          blobReplicas = new ArrayList<BlobReplica>();
+          dataNodeToBlobReplicas.put(replica.getDataNodeId(), blobReplicas);
+        }
+        blobReplicas.add(new BlobReplica(getBlobInfoOperation, replica));
+      }
+    }
+    int maxBlobsPerRequest = routerConfig.routerGetBlobInfoBatchMaxBlobsPerRequest;
+    for (Map.Entry<DataNodeId, List<BlobReplica>> entry : dataNodeToBlobReplicas.entrySet()) {
+      DataNodeId dataNode = entry.getKey();
+      List<BlobReplica> blobReplicas = entry.getValue();
+      for (int start = 0; start < blobReplicas.size(); start += maxBlobsPerRequest) {
+        int end = Math.min(blobReplicas.size(), start + maxBlobsPerRequest);
+        List<BlobReplica> requestBlobReplicas = new ArrayList<BlobReplica>(blobReplicas.subList(start, end));
+        List<PartitionRequestInfo> partitionRequestInfos =
+            new ArrayList<PartitionRequestInfo>(requestBlobReplicas.size());
+        for (BlobReplica blobReplica : requestBlobReplicas) {
+          BlobId blobId = blobReplica.getBlobInfoOperation.blobId;
+          partitionRequestInfos.add(new PartitionRequestInfo(blobId.getPartition(), Collections.singletonList(blobId)));
+        }
+        GetRequest getRequest =
+            new GetRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname,
+                MessageFormatFlags.BlobInfo, partitionRequestInfos, GetOptions.None);
+        batchGetRequestInfos.put(getRequest.getCorrelationId(),
+            new BatchGetRequestInfo(time.milliseconds(), dataNode, requestBlobReplicas));
+        RequestInfo requestInfo = new RequestInfo(dataNode.getHostname(), dataNode.getPortToConnectTo(), getRequest,
+            getRequest.getCorrelationId());
+        requestRegistrationCallback.registerRequestToSend(this, requestInfo);
+        routerMetrics.getBlobInfosPerRequest.update(partitionRequestInfos.size());
+      }
+    }
+  }
+
+  /**
+   * Handles a response to a {@link GetRequest} of this operation. The error and the {@link BlobInfo} of each blob in
+   * the response are handed to the {@link GetBlobInfoOperation} of the blob. The {@link ResponseHandler} is notified
+   * once per replica in the request.
+   * @param responseInfo The response to be handled.
+   */
+  void handleResponse(ResponseInfo responseInfo) {
+    GetRequest getRequest = (GetRequest) responseInfo.getRequest();
+    BatchGetRequestInfo requestInfo = batchGetRequestInfos.remove(getRequest.getCorrelationId());
+    // requestInfo can be null if this request was timed out before this response is received.
+    if (requestInfo == null) {
+      return;
+    }
+    long requestLatencyMs = time.milliseconds() - requestInfo.startTimeMs;
+    routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
+    routerMetrics.getDataNodeBasedMetrics(requestInfo.dataNode).getBlobInfoRequestLatencyMs.update(requestLatencyMs);
+    if (responseInfo.getError() != null) {
+      onRequestFailed(requestInfo, new IOException("NetworkClient error"),
+          new RouterException("Operation timed out", RouterErrorCode.OperationTimedOut));
+      return;
+    }
+    try {
+      GetResponse getResponse = GetResponse
+          .readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())), clusterMap);
+      List<PartitionResponseInfo> partitionResponseInfos = getResponse.getPartitionResponseInfoList();
+      if (getResponse.getCorrelationId() != getRequest.getCorrelationId()) {
+        routerMetrics.unknownReplicaResponseError.inc();
+        onRequestFailed(requestInfo, null, new RouterException(
+            "The correlation id in the GetResponse " + getResponse.getCorrelationId()
+                + " is not the same as the correlation id in the associated GetRequest: "
+                + getRequest.getCorrelationId(), RouterErrorCode.UnexpectedInternalError));
+      } else if (getResponse.getError() != ServerErrorCode.No_Error) {
+        // the request failed as a whole on the server.
+        List<ServerErrorCode> blobErrors =
+            Collections.nCopies(requestInfo.blobReplicas.size(), getResponse.getError());
+        onResponse(requestInfo, blobErrors, getResponse);
+      } else if (partitionResponseInfos.size() != requestInfo.blobReplicas.size()) {
+        onRequestFailed(requestInfo, null, new RouterException(
+            "Unexpected number of partition responses, expected: " + requestInfo.blobReplicas.size() + ", received: "
+                + partitionResponseInfos.size(), RouterErrorCode.UnexpectedInternalError));
+      } else {
+        List<ServerErrorCode> blobErrors = new ArrayList<ServerErrorCode>(partitionResponseInfos.size());
+        for (PartitionResponseInfo partitionResponseInfo : partitionResponseInfos) {
+          blobErrors.add(partitionResponseInfo.getErrorCode());
+        }
+        onResponse(requestInfo, blobErrors, getResponse);
+      }
+    } catch (IOException | MessageFormatException e) {
+      logger.error("Unable to recover a GetResponse from received stream.", e);
+      onRequestFailed(requestInfo, null,
+          new RouterException("Response deserialization received an unexpected error", e,
+              RouterErrorCode.UnexpectedInternalError));
+    }
+  }
+
+  /**
+   * Hands the error of each blob of a request, and the {@link BlobInfo} of each blob without an error, to the
+   * {@link GetBlobInfoOperation} of the blob.
+   * @param requestInfo the {@link BatchGetRequestInfo} of the request.
+   * @param blobErrors the error of each blob, in the order of the blobs in the request.
+   * @param getResponse the {@link GetResponse} whose stream contains the {@link BlobInfo} of each blob without an error,
+   *                    in the order of the blobs in the request.
+   * @throws IOException if there is an error during deserialization of a {@link BlobInfo}.
+   * @throws MessageFormatException if there is an error during deserialization of a {@link BlobInfo}.
+   */
+  private void onResponse(BatchGetRequestInfo requestInfo, List<ServerErrorCode> blobErrors, GetResponse getResponse)
+      throws IOException, MessageFormatException {
+    // deserialize all the BlobInfos before handing any of them over, so that a malformed stream fails every blob.
+    List<BlobInfo> blobInfos = new ArrayList<BlobInfo>(blobErrors.size());
+    for (ServerErrorCode blobError : blobErrors) {
+      blobInfos.add(blobError == ServerErrorCode.No_Error ? GetBlobInfoOperation
+          .deserializeBlobInfo(getResponse.getInputStream()) : null);
+    }
+    Set<ReplicaId> notifiedReplicas = new HashSet<ReplicaId>();
+    for (int i = 0; i < blobErrors.size(); i++) {
+      BlobReplica blobReplica = requestInfo.blobReplicas.get(i);
+      if (notifiedReplicas.add(blobReplica.replica)) {
+        responseHandler.onRequestResponseError(blobReplica.replica, blobErrors.get(i));
+      }
+      blobReplica.getBlobInfoOperation.onReplicaResponse(blobReplica.replica, blobErrors.get(i), blobInfos.get(i));
+    }
+  }
+
+  /**
+   * Goes through the inflight requests of this {@code BatchGetBlobInfoOperation} and fails those that have timed out.
+   */
+  private void cleanupExpiredInflightRequests() {
+    Iterator<Map.Entry<Integer, BatchGetRequestInfo>> itr = batchGetRequestInfos.entrySet().iterator();
+    while (itr.hasNext()) {
+      BatchGetRequestInfo requestInfo = itr.next().getValue();
+      if (time.milliseconds() - requestInfo.startTimeMs > routerConfig.routerRequestTimeoutMs) {
+        itr.remove();
+        onRequestFailed(requestInfo, new IOException("Timed out waiting for a response"),
+            new RouterException("Timed out waiting for a response", RouterErrorCode.OperationTimedOut));
+      }
+    }
+  }
+
+  /**
+   * Fails the get of every blob of a request that did not get a usable response.
+   * @param requestInfo the {@link BatchGetRequestInfo} of the request.
+   * @param exception the exception to notify the {@link ResponseHandler} of, once per replica. Can be null if the
+   *                  failure says nothing about the health of the replicas.
+   * @param routerException the {@link RouterException} that describes the failure.
+   */
+  private void onRequestFailed(BatchGetRequestInfo requestInfo, Exception exception, RouterException routerException) {
+    Set<ReplicaId> notifiedReplicas = new HashSet<ReplicaId>();
+    for (BlobReplica blobReplica : requestInfo.blobReplicas) {
+      if (exception != null && notifiedReplicas.add(blobReplica.replica)) {
+        responseHandler.onRequestResponseException(blobReplica.replica, exception);
+      }
+      blobReplica.getBlobInfoOperation.onReplicaRequestFailed(blobReplica.replica, routerException);
+    }
+  }
+
+  /**
+   * Returns whether the operation has completed. The operation is complete when the get of every blob is complete or
+   * when the operation has failed as a whole.
+   * @return whether the operation has completed.
+   */
+  boolean isOperationComplete() {
+    if (operationException.get() != null) {
+      return true;
+    }
+    for (GetBlobInfoOperation getBlobInfoOperation : blobIdToGetBlobInfoOperation.values()) {
+      if (!getBlobInfoOperation.isOperationComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the result of this {@code BatchGetBlobInfoOperation}: the {@link BlobInfo} of each blob that could be fetched
+   * and the cause of the failure for every other blob.
+   * @return the {@link GetBlobInfosResult} of this operation.
+   */
+  GetBlobInfosResult getOperationResult() {
+    Map<String, BlobInfo> blobInfos = new HashMap<String, BlobInfo>(blobIdToCachedBlobInfo);
+    Map<String, Exception> failures = new HashMap<String, Exception>(blobIdToPreSendFailure);
+    for (Map.Entry<String, GetBlobInfoOperation> entry : blobIdToGetBlobInfoOperation.entrySet()) {
+      GetBlobInfoOperation getBlobInfoOperation = entry.getValue();
+      if (!getBlobInfoOperation.isOperationComplete()) {
+        failures.put(entry.getKey(), new RouterException("The get of the BlobInfo of the blob did not complete",
+            RouterErrorCode.UnexpectedInternalError));
+      } else if (getBlobInfoOperation.getOperationException() != null) {
+        failures.put(entry.getKey(), getBlobInfoOperation.getOperationException());
+      } else if (getBlobInfoOperation.getOperationResult() == null) {
+        failures.put(entry.getKey(),
+            new RouterException("No BlobInfo was received for the blob", RouterErrorCode.UnexpectedInternalError));
+      } else {
+        blobInfos.put(entry.getKey(), getBlobInfoOperation.getOperationResult());
+      }
+    }
+    return new GetBlobInfosResult(blobInfos, failures);
+  }
+
+  /**
+   * Get the {@link FutureResult} for this {@code BatchGetBlobInfoOperation}.
+   * @return The {@link FutureResult}.
+   */
+  FutureResult<GetBlobInfosResult> getFutureResult() {
+    return futureResult;
+  }
+
+  /**
+   * Gets the {@link Callback} for this {@code BatchGetBlobInfoOperation}.
+   * @return The {@link Callback}.
+   */
+  Callback<GetBlobInfosResult> getCallback() {
+    return callback;
+  }
+
+  /**
+   * Gets the exception associated with this operation if it failed as a whole; null otherwise.
+   * @return exception associated with this operation if it failed as a whole; null otherwise.
+   */
+  Exception getOperationException() {
+    return operationException.get();
+  }
+
+  /**
+   * Sets the exception associated with this operation. When this is called, the operation has failed as a whole.
+   * @param exception the irrecoverable exception associated with this operation.
+   */
+  void setOperationException(Exception exception) {
+    operationException.set(exception);
+  }
+
+  long getSubmissionTimeMs() {
+    return submissionTimeMs;
+  }
+
+  /**
+   * The {@link GetBlobInfoOperation} of a blob and a replica of the blob that a request was created for.
+   */
+  private static class BlobReplica {
+    final GetBlobInfoOperation getBlobInfoOperation;
+    final ReplicaId replica;
+
+    BlobReplica(GetBlobInfoOperation getBlobInfoOperation, ReplicaId replica) {
+      this.getBlobInfoOperation = getBlobInfoOperation;
+      this.replica = replica;
+    }
+  }
+
+  /**
+   * A wrapper class for an inflight request, with the blobs in the order of the {@link PartitionRequestInfo}s of the
+   * request.
+   */
+  private static class BatchGetRequestInfo {
+    final long startTimeMs;
+    final DataNodeId dataNode;
+    final List<BlobReplica> blobReplicas;
+
+    BatchGetRequestInfo(long startTimeMs, DataNodeId dataNode, List<BlobReplica> blobReplicas) {
+      this.startTimeMs = startTimeMs;
+      this.dataNode = dataNode;
+      this.blobReplicas = blobReplicas;
+    }
+  }
+}
@@ -0,0 +1,354 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.BlobPropertiesSerDe;
+import com.github.ambry.messageformat.CompositeBlobInfo;
+import com.github.ambry.messageformat.MessageFormatException;
+import com.github.ambry.messageformat.MetadataContentSerDe;
+import com.github.ambry.store.StoreKeyFactory;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A bounded cache of the metadata of blobs that is shared by all the operations of a router: the {@link BlobInfo} of
+ * blobs and the ids of the data chunks of composite blobs. Since blobs are immutable, metadata that has been fetched
+ * once can be served again without contacting data nodes, until the blob is deleted or expires.
+ * <p>
+ * Metadata is held in serialized form in buffers that are allocated on the heap or in direct memory, and the size of
+ * the cache is the total size of these buffers (plus a fixed overhead per blob). When the metadata of a blob does not
+ * fit, the metadata of the least recently used blobs is evicted. Metadata is served for at most the configured ttl
+ * after it was cached, and never after the blob expires.
+ * <p>
+ * The metadata of a blob is invalidated when the blob is deleted through the router. An operation that was started
+ * before an invalidation may have fetched the metadata of the blob before it was deleted, so the metadata of a blob is
+ * only cached if it was fetched by an operation that started after the last invalidation of that blob (see
+ * {@link #getGeneration()}). The generation at which each blob was invalidated is remembered for the last
+ * {@link #MAX_INVALIDATED_BLOBS} invalidations. Metadata fetched by operations that started before the invalidations
+ * that have been forgotten is not cached at all.
+ * <p>
+ * This class is thread safe.
+ */
+class BlobMetadataCache {
+  // the approximate memory taken by the bookkeeping of the metadata of a blob, apart from the blob id.
+  static final int ENTRY_OVERHEAD_BYTES = 64;
+  // the number of invalidations for which the generation is remembered.
+  static final int MAX_INVALIDATED_BLOBS = 4096;
+
+  private final long capacity;
+  private final long ttlMs;
+  private final boolean useDirectMemory;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final Time time;
+  // blob id to the metadata of the blob, in the order of access.
+  private final LinkedHashMap<String, Entry> blobIdToEntry = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  // blob id to the generation at which the blob was last invalidated, in the order of invalidation.
+  private final LinkedHashMap<String, Long> blobIdToInvalidationGeneration = new LinkedHashMap<String, Long>();
+  private long sizeInBytes = 0;
+  private long generation = 0;
+  // the generation of the last invalidation that is no longer remembered.
+  private long forgottenGeneration = 0;
+
+  private static final Logger logger = LoggerFactory.getLogger(BlobMetadataCache.class);
+
+  /**
+   * Create a BlobMetadataCache.
+   * @param capacity the maximum number of bytes of metadata to cache. 0 disables the cache.
+   * @param ttlMs the time in ms for which metadata is served after it is cached.
+   * @param useDirectMemory {@code true} if the metadata should be held in direct memory.
+   * @param routerMetrics the {@link NonBlockingRouterMetrics} to record the hits and misses in.
+   * @param time the {@link Time} instance to use.
+   */
+  BlobMetadataCache(long capacity, long ttlMs, boolean useDirectMemory, NonBlockingRouterMetrics routerMetrics,
+      Time time) {
+    this.capacity = capacity;
+    this.ttlMs = ttlMs;
+    this.useDirectMemory = useDirectMemory;
+    this.routerMetrics = routerMetrics;
+    this.time = time;
+  }
+
+  /**
+   * @return {@code true} if metadata is cached at all.
+   */
+  boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  /**
+   * Gets the generation of the cache, which changes whenever the metadata of a blob is invalidated. Operations get
+   * the generation before they start fetching metadata and pass it when they cache what they fetched.
+   * @return the current generation.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Gets the cached {@link BlobInfo} of a blob.
+   * @param blobId the id of the blob.
+   * @return the {@link BlobInfo} of the blob, or {@code null} if it is not cached.
+   */
+  BlobInfo getBlobInfo(String blobId) {
+    if (!isEnabled()) {
+      return null;
+    }
+    ByteBuffer serializedBlobInfo = null;
+    synchronized (this) {
+      Entry entry = getEntry(blobId);
+      if (entry != null && entry.blobInfo != null) {
+        serializedBlobInfo = entry.blobInfo.duplicate();
+      }
+    }
+    BlobInfo blobInfo = null;
+    if (serializedBlobInfo != null) {
+      try {
+        DataInputStream stream = new DataInputStream(new ByteBufferInputStream(serializedBlobInfo));
+        BlobProperties blobProperties = BlobPropertiesSerDe.getBlobPropertiesFromStream(stream);
+        byte[] userMetadata = new byte[stream.readInt()];
+        stream.readFully(userMetadata);
+        blobInfo = new BlobInfo(blobProperties, userMetadata);
+      } catch (IOException e) {
+        logger.error("Could not deserialize the cached BlobInfo of {}", blobId, e);
+        invalidate(blobId);
+      }
+    }
+    recordLookup(blobInfo != null);
+    return blobInfo;
+  }
+
+  /**
+   * Caches the {@link BlobInfo} of a blob.
+   * @param blobId the id of the blob.
+   * @param blobInfo the {@link BlobInfo} of the blob.
+   * @param generation the generation of the cache when the operation that fetched the {@link BlobInfo} started.
+   */
+  void putBlobInfo(String blobId, BlobInfo blobInfo, long generation) {
+    if (!isEnabled()) {
+      return;
+    }
+    BlobProperties blobProperties = blobInfo.getBlobProperties();
+    byte[] userMetadata = blobInfo.getUserMetadata();
+    ByteBuffer serializedBlobInfo =
+        allocate(BlobPropertiesSerDe.getBlobPropertiesSize(blobProperties) + 4 + userMetadata.length);
+    BlobPropertiesSerDe.putBlobPropertiesToBuffer(serializedBlobInfo, blobProperties);
+    serializedBlobInfo.putInt(userMetadata.length);
+    serializedBlobInfo.put(userMetadata);
+    serializedBlobInfo.flip();
+    long expiresAtMs =
+        Utils.addSecondsToEpochTime(blobProperties.getCreationTimeInMs(), blobProperties.getTimeToLiveInSeconds());
+    put(blobId, serializedBlobInfo, null, expiresAtMs, generation);
+  }
+
+  /**
+   * Gets the cached ids of the data chunks of a composite blob, along with its chunk size and total size if the
+   * metadata content recorded them.
+   * @param blobId the id of the composite blob.
+   * @param storeKeyFactory the {@link StoreKeyFactory} to use to deserialize the ids.
+   * @return the {@link CompositeBlobInfo} holding the ids of the data chunks of the blob, in order, or {@code null} if
+   *         they are not cached.
+   */
+  CompositeBlobInfo getChunkIds(String blobId, StoreKeyFactory storeKeyFactory) {
+    if (!isEnabled()) {
+      return null;
+    }
+    ByteBuffer serializedChunkIds = null;
+    synchronized (this) {
+      Entry entry = getEntry(blobId);
+      if (entry != null && entry.chunkIds != null) {
+        serializedChunkIds = entry.chunkIds.duplicate();
+      }
+    }
+    CompositeBlobInfo chunkIds = null;
+    if (serializedChunkIds != null) {
+      try {
+        chunkIds = MetadataContentSerDe.deserializeCompositeBlobInfo(serializedChunkIds, storeKeyFactory);
+      } catch (IOException | MessageFormatException e) {
+        logger.error("Could not deserialize the cached chunk ids of {}", blobId, e);
+        invalidate(blobId);
+      }
+    }
+    recordLookup(chunkIds != null);
+    return chunkIds;
+  }
+
+  /**
+   * Caches the ids of the data chunks of a composite blob.
+   * @param blobId the id of the composite blob.
+   * @param serializedMetadataContent the content of the metadata chunk of the blob, as serialized by
+   *                                  {@link MetadataContentSerDe}. Its position is not changed.
+   * @param generation the generation of the cache when the operation that fetched the metadata chunk started.
+   */
+  void putChunkIds(String blobId, ByteBuffer serializedMetadataContent, long generation) {
+    if (!isEnabled()) {
+      return;
+    }
+    ByteBuffer serializedChunkIds = allocate(serializedMetadataContent.remaining());
+    serializedChunkIds.put(serializedMetadataContent.duplicate());
+    serializedChunkIds.flip();
+    put(blobId, null, serializedChunkIds, Utils.Infinite_Time, generation);
+  }
+
+  /**
+   * Removes all the cached metadata of a blob, and makes sure that metadata of the blob fetched by operations that are
+   * in progress is not cached.
+   * @param blobId the id of the blob.
+   */
+  synchronized void invalidate(String blobId) {
+    if (!isEnabled()) {
+      return;
+    }
+    generation++;
+    // re-inserted so that the blob moves to the end of the invalidation order.
+    blobIdToInvalidationGeneration.remove(blobId);
+    blobIdToInvalidationGeneration.put(blobId, generation);
+    if (blobIdToInvalidationGeneration.size() > MAX_INVALIDATED_BLOBS) {
+      Iterator<Long> iterator = blobIdToInvalidationGeneration.values().iterator();
+      forgottenGeneration = iterator.next();
+      iterator.remove();
+    }
+    Entry entry = blobIdToEntry.remove(blobId);
+    if (entry != null) {
+      sizeInBytes -= entry.sizeInBytes;
+      routerMetrics.metadataCacheInvalidationCount.inc();
+    }
+  }
+
+  /**
+   * @return the number of bytes of metadata that are cached.
+   */
+  synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * @return the number of blobs whose metadata is cached.
+   */
+  synchronized int getBlobCount() {
+    return blobIdToEntry.size();
+  }
+
+  /**
+   * Gets the metadata of a blob, if it is cached and has not expired. Expired metadata is removed.
+   * @param blobId the id of the blob.
+   * @return the {@link Entry} of the blob, or {@code null} if there is none.
+   */
+  private Entry getEntry(String blobId) {
+    Entry entry = blobIdToEntry.get(blobId);
+    if (entry != null && time.milliseconds() >= entry.expiresAtMs) {
+      blobIdToEntry.remove(blobId);
+      sizeInBytes -= entry.sizeInBytes;
+      entry = null;
+    }
+    return entry;
+  }
+
+  /**
+   * Adds metadata of a blob to the metadata that is already cached for it, and evicts the metadata of the least
+   * recently used blobs until the cache is within its capacity.
+   * @param blobId the id of the blob.
+   * @param blobInfo the serialized {@link BlobInfo} of the blob, or {@code null} if it is not being cached.
+   * @param chunkIds the serialized ids of the data chunks of the blob, or {@code null} if they are not being cached.
+   * @param blobExpiresAtMs the time at which the blob expires, or {@link Utils#Infinite_Time} if it does not expire
+   *                        or is not known.
+   * @param generation the generation of the cache when the operation that fetched the metadata started.
+   */
+  private synchronized void put(String blobId, ByteBuffer blobInfo, ByteBuffer chunkIds, long blobExpiresAtMs,
+      long generation) {
+    Long invalidationGeneration = blobIdToInvalidationGeneration.get(blobId);
+    if (generation < forgottenGeneration || (invalidationGeneration != null && generation < invalidationGeneration)) {
+      return;
+    }
+    Entry entry = getEntry(blobId);
+    if (entry == null) {
+      entry = new Entry(time.milliseconds() + ttlMs, 2 * blobId.length() + ENTRY_OVERHEAD_BYTES);
+      blobIdToEntry.put(blobId, entry);
+      sizeInBytes += entry.sizeInBytes;
+    }
+    if (blobExpiresAtMs != Utils.Infinite_Time) {
+      entry.expiresAtMs = Math.min(entry.expiresAtMs, blobExpiresAtMs);
+    }
+    if (blobInfo != null && entry.blobInfo == null) {
+      entry.blobInfo = blobInfo;
+      entry.sizeInBytes += blobInfo.capacity();
+      sizeInBytes += blobInfo.capacity();
+    }
+    if (chunkIds != null && entry.chunkIds == null) {
+      entry.chunkIds = chunkIds;
+      entry.sizeInBytes += chunkIds.capacity();
+      sizeInBytes += chunkIds.capacity();
+    }
+    Iterator<Map.Entry<String, Entry>> iterator = blobIdToEntry.entrySet().iterator();
+    while (sizeInBytes > capacity && iterator.hasNext()) {
+      Entry evictedEntry = iterator.next().getValue();
+      iterator.remove();
+      sizeInBytes -= evictedEntry.sizeInBytes;
+      if (evictedEntry != entry) {
+        routerMetrics.metadataCacheEvictionCount.inc();
+      }
+    }
+  }
+
+  /**
+   * Allocates a buffer to hold serialized metadata.
+   * @param size the size of the buffer.
+   * @return a buffer on the heap or in direct memory, as configured.
+   */
+  private ByteBuffer allocate(int size) {
+    return useDirectMemory ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  /**
+   * Records a lookup in the metrics.
+   * @param hit {@code true} if the metadata was found.
+   */
+  private void recordLookup(boolean hit) {
+    if (hit) {
+      routerMetrics.metadataCacheHitCount.inc();
+    } else {
+      routerMetrics.metadataCacheMissCount.inc();
+    }
+  }
+
+  /**
+   * The cached metadata of a blob.
+   */
+  private static class Entry {
+    ByteBuffer blobInfo = null;
+    ByteBuffer chunkIds = null;
+    long expiresAtMs;
+    long sizeInBytes;
+
+    /**
+     * @param expiresAtMs the time at which the metadata stops being served.
+     * @param sizeInBytes the memory taken by the metadata apart from the serialized metadata.
+     */
+    Entry(long expiresAtMs, long sizeInBytes) {
+      this.expiresAtMs = expiresAtMs;
+      this.sizeInBytes = sizeInBytes;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+/**
+ * A bounded amount of memory that is shared by all the {@link GetBlobOperation}s of a router, from which the memory
+ * for the data chunks that are being fetched or are waiting to be written out is reserved. Like
+ * {@link com.github.ambry.utils.SimpleByteBufferPool}, it ensures that the reserved memory does not go above the
+ * capacity, but it does not allocate the buffers itself, as the chunk buffers are created when responses are
+ * deserialized.
+ * <p>
+ * Reservations never block. A reservation that does not fit can be forced, so that an operation that has no memory
+ * reserved can always make progress, which means that the capacity may be exceeded by at most one chunk per
+ * operation.
+ * <p>
+ * This class is thread safe.
+ */
+class ChunkMemoryBudget {
+  private final long capacity;
+  private long reservedBytes = 0;
+
+  /**
+   * Create a ChunkMemoryBudget.
+   * @param capacity the maximum number of bytes that can be reserved, unless reservations are forced.
+   */
+  ChunkMemoryBudget(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Reserves memory if it is available.
+   * @param bytes the number of bytes to reserve.
+   * @param force {@code true} if the memory should be reserved even if that exceeds the capacity.
+   * @return {@code true} if the memory was reserved.
+   */
+  synchronized boolean tryReserve(long bytes, boolean force) {
+    if (!force && reservedBytes + bytes > capacity) {
+      return false;
+    }
+    reservedBytes += bytes;
+    return true;
+  }
+
+  /**
+   * Releases memory that was reserved.
+   * @param bytes the number of bytes to release.
+   */
+  synchronized void release(long bytes) {
+    reservedBytes = Math.max(0, reservedBytes - bytes);
+  }
+
+  /**
+   * @return the number of bytes that are currently reserved.
+   */
+  synchronized long getReservedBytes() {
+    return reservedBytes;
+  }
+
+  /**
+   * @return the capacity of the budget.
+   */
+  long getCapacity() {
+    return capacity;
+  }
+}
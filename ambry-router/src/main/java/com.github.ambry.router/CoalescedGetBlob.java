@@ -0,0 +1,589 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.utils.Time;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A get of the whole of a blob that is shared by concurrent getBlob calls for the same blob, so that the chunks of the
+ * blob are fetched from the data nodes only once.
+ * <p/>
+ * The getBlob call that starts the {@link GetBlobOperation} is the first subscriber and other getBlob calls for the
+ * blob can subscribe until the operation returns the blob (i.e. until this object, which is the callback of the
+ * operation, is invoked). Every subscriber is then completed with its own {@link ReadableStreamChannel}. The blob is
+ * read from the operation as soon as the first subscriber calls
+ * {@link ReadableStreamChannel#readInto(AsyncWritableChannel, Callback)}, and subscribers that call it before the
+ * first chunk is written out join the read. Each chunk is written out to the channel of every subscriber that is
+ * reading and is acknowledged to the operation (which releases the memory held for it and lets the operation fetch
+ * further chunks) once all of them have consumed it. Subscribers that start reading too late get the blob through a
+ * get of their own.
+ * <p/>
+ * So that one subscriber cannot hold up the others, a subscriber that falls more than the maximum lag (in chunks)
+ * behind the fastest subscriber is dropped and its read fails. The chunks it has not consumed are then acknowledged
+ * without waiting for it. {@link #dropStalledSubscribers()} has to be called periodically as well: it checks the lag
+ * of the subscribers, drops a subscriber that takes longer than the stall timeout to consume a chunk, and releases the
+ * blob if no subscriber has started reading within the stall timeout. A subscriber whose channel fails is dropped
+ * without affecting the others.
+ * <p/>
+ * If there is only one subscriber, it is handed the result of the operation as is.
+ */
+class CoalescedGetBlob implements Callback<ReadableStreamChannel> {
+  private static final Logger logger = LoggerFactory.getLogger(CoalescedGetBlob.class);
+
+  private final String blobId;
+  private final ConcurrentMap<String, CoalescedGetBlob> inFlightGets;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final OperationCompleteCallback operationCompleteCallback;
+  private final GetBlobSubmitter getBlobSubmitter;
+  private final Time time;
+  private final long stallTimeoutMs;
+  private final int maxLagChunks;
+  private final FutureResult<ReadableStreamChannel> operationFuture = new FutureResult<ReadableStreamChannel>();
+  private final List<Subscriber> subscribers = new ArrayList<Subscriber>();
+  // the subscribers that are reading the blob. Fixed once the first chunk is written out.
+  private final List<Subscriber> readers = new ArrayList<Subscriber>();
+  private final AtomicInteger failedReaderCount = new AtomicInteger(0);
+
+  private boolean acceptingSubscribers = true;
+  private ReadableStreamChannel source = null;
+  private long completionTimeMs = -1;
+  // the number of subscribers that have neither started reading nor closed their channel.
+  private int pendingSubscriberCount = 0;
+  private boolean readStarted = false;
+  private boolean readersFixed = false;
+  // whether the source has been closed without being read.
+  private boolean sourceReleased = false;
+  private volatile boolean isComplete = false;
+
+  /**
+   * Starts a get of the whole of a blob that is not coalesced with other gets, for a subscriber that started reading
+   * too late to join the shared read.
+   */
+  interface GetBlobSubmitter {
+    /**
+     * Submits the get.
+     * @param blobId the ID of the blob.
+     * @param callback the {@link Callback} to invoke once the get returns the blob (or fails).
+     */
+    void submitGetBlob(String blobId, Callback<ReadableStreamChannel> callback);
+  }
+
+  /**
+   * Creates a CoalescedGetBlob for the getBlob call that is starting a {@link GetBlobOperation} for the blob.
+   * @param blobId the ID of the blob.
+   * @param futureResult the {@link FutureResult} of the getBlob call.
+   * @param callback the {@link Callback} of the getBlob call. Can be null.
+   * @param inFlightGets the map in which this object is registered for other getBlob calls to find. This object
+   *                     removes itself from the map once it stops accepting subscribers.
+   * @param routerMetrics the {@link NonBlockingRouterMetrics} to use.
+   * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete the getBlob calls that
+   *                                  subscribe.
+   * @param getBlobSubmitter the {@link GetBlobSubmitter} to use for subscribers that start reading too late.
+   * @param time the {@link Time} instance to use.
+   * @param stallTimeoutMs the time after which a subscriber that is holding up the others is dropped.
+   * @param maxLagChunks the number of chunks that a subscriber can fall behind the fastest subscriber before it is
+   *                     dropped.
+   */
+  CoalescedGetBlob(String blobId, FutureResult<ReadableStreamChannel> futureResult,
+      Callback<ReadableStreamChannel> callback, ConcurrentMap<String, CoalescedGetBlob> inFlightGets,
+      NonBlockingRouterMetrics routerMetrics, OperationCompleteCallback operationCompleteCallback,
+      GetBlobSubmitter getBlobSubmitter, Time time, long stallTimeoutMs, int maxLagChunks) {
+    this.blobId = blobId;
+    this.inFlightGets = inFlightGets;
+    this.routerMetrics = routerMetrics;
+    this.operationCompleteCallback = operationCompleteCallback;
+    this.getBlobSubmitter = getBlobSubmitter;
+    this.time = time;
+    this.stallTimeoutMs = stallTimeoutMs;
+    this.maxLagChunks = maxLagChunks;
+    subscribers.add(new Subscriber(futureResult, callback));
+  }
+
+  /**
+   * @return the {@link FutureResult} that the {@link GetBlobOperation} of the blob should complete.
+   */
+  FutureResult<ReadableStreamChannel> getOperationFuture() {
+    return operationFuture;
+  }
+
+  /**
+   * @return {@code true} once the blob has been read or released, after which this object does not have to be
+   *         checked for stalled subscribers anymore.
+   */
+  boolean isComplete() {
+    return isComplete;
+  }
+
+  /**
+   * Subscribes a getBlob call to the operation, if the operation has not returned the blob yet.
+   * @param futureResult the {@link FutureResult} of the getBlob call.
+   * @param callback the {@link Callback} of the getBlob call. Can be null.
+   * @return {@code true} if the getBlob call was subscribed and will be completed with the blob. {@code false} if a
+   *         new operation has to be started for the getBlob call.
+   */
+  synchronized boolean subscribe(FutureResult<ReadableStreamChannel> futureResult,
+      Callback<ReadableStreamChannel> callback) {
+    if (!acceptingSubscribers) {
+      return false;
+    }
+    subscribers.add(new Subscriber(futureResult, callback));
+    return true;
+  }
+
+  /**
+   * Completes all the subscribers once the {@link GetBlobOperation} returns the blob (or fails).
+   * @param result the {@link ReadableStreamChannel} of the blob. This is non null if the operation succeeded.
+   * @param exception the exception that the operation failed with (if any).
+   */
+  @Override
+  public void onCompletion(ReadableStreamChannel result, Exception exception) {
+    synchronized (this) {
+      acceptingSubscribers = false;
+      source = result;
+      completionTimeMs = time.milliseconds();
+      pendingSubscriberCount = subscribers.size();
+    }
+    if (exception != null || subscribers.size() == 1) {
+      isComplete = true;
+    }
+    inFlightGets.remove(blobId, this);
+    routerMetrics.getBlobCoalescedSubscriberCount.update(subscribers.size());
+    for (int i = 0; i < subscribers.size(); i++) {
+      Subscriber subscriber = subscribers.get(i);
+      ReadableStreamChannel channel = null;
+      if (exception == null) {
+        channel = subscribers.size() == 1 ? result : subscriber;
+      }
+      if (i == 0) {
+        // the operation was started for the first subscriber and has already been accounted for by the router.
+        try {
+          subscriber.futureResult.done(channel, exception);
+          if (subscriber.callback != null) {
+            subscriber.callback.onCompletion(channel, exception);
+          }
+        } catch (Exception e) {
+          logger.error("Exception caught during future and callback completion", e);
+        }
+      } else {
+        operationCompleteCallback.completeOperation(subscriber.futureResult, subscriber.callback, channel, exception);
+      }
+    }
+  }
+
+  /**
+   * Drops the subscribers that are holding up the others. If no subscriber has started reading within the stall
+   * timeout of the operation returning the blob, the blob is released and the subscribers that start reading later
+   * get the blob through a get of their own. A subscriber that has fallen too far behind the fastest subscriber, or
+   * that has not consumed a chunk within the stall timeout of the chunk being written out to it, is dropped and its
+   * read fails.
+   */
+  void dropStalledSubscribers() {
+    if (isComplete) {
+      return;
+    }
+    boolean releaseSource = false;
+    List<Subscriber> readersToCheck = null;
+    synchronized (this) {
+      if (completionTimeMs == -1) {
+        return;
+      }
+      long currentTimeMs = time.milliseconds();
+      if (!readStarted && !sourceReleased && currentTimeMs - completionTimeMs > stallTimeoutMs) {
+        releaseSource = true;
+        sourceReleased = true;
+      } else if (readersFixed) {
+        readersToCheck = readers;
+      }
+    }
+    if (releaseSource) {
+      logger.trace("Releasing the result of the get of {} as no subscriber started reading it in time", blobId);
+      releaseSource();
+    } else if (readersToCheck != null) {
+      dropLaggingReaders();
+      for (Subscriber reader : readersToCheck) {
+        reader.dropIfStalled();
+      }
+    }
+  }
+
+  /**
+   * Drops the subscribers that are reading and have more than {@link #maxLagChunks} chunks more written out to them
+   * and not consumed than the fastest subscriber. Must only be called once the readers are fixed.
+   */
+  private void dropLaggingReaders() {
+    int minPendingWriteCount = Integer.MAX_VALUE;
+    for (Subscriber reader : readers) {
+      if (reader.getWriteException() == null) {
+        minPendingWriteCount = Math.min(minPendingWriteCount, reader.getPendingWriteCount());
+      }
+    }
+    for (Subscriber reader : readers) {
+      if (reader.getWriteException() == null && reader.getPendingWriteCount() - minPendingWriteCount > maxLagChunks) {
+        reader.drop(new RouterException(
+            "Subscriber of the get of " + blobId + " fell more than " + maxLagChunks + " chunks behind the others",
+            RouterErrorCode.OperationTimedOut));
+      }
+    }
+  }
+
+  /**
+   * Closes the result of the operation without reading it.
+   */
+  private void releaseSource() {
+    isComplete = true;
+    try {
+      source.close();
+    } catch (IOException e) {
+      logger.error("Error closing the result of the get of {}", blobId, e);
+    }
+  }
+
+  /**
+   * Starts the read of the result of the operation, which the subscribers that are reading are completed with.
+   */
+  private void startRead() {
+    source.readInto(new FanOutChannel(), new Callback<Long>() {
+      @Override
+      public void onCompletion(Long result, Exception exception) {
+        isComplete = true;
+        for (Subscriber reader : readers) {
+          reader.completeRead(exception);
+        }
+      }
+    });
+  }
+
+  /**
+   * The {@link ReadableStreamChannel} handed to a subscriber when there is more than one.
+   */
+  private class Subscriber implements ReadableStreamChannel {
+    final FutureResult<ReadableStreamChannel> futureResult;
+    final Callback<ReadableStreamChannel> callback;
+
+    private final AtomicLong bytesWritten = new AtomicLong(0);
+    // the chunks written out to this subscriber that it has not consumed yet, oldest first.
+    private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+    private final AtomicReference<Exception> writeException = new AtomicReference<Exception>(null);
+    private volatile boolean readCompleted = false;
+    private volatile boolean isOpen = true;
+    private boolean ready = false;
+    private AsyncWritableChannel asyncWritableChannel;
+    private Callback<Long> readIntoCallback;
+    private FutureResult<Long> readIntoFuture;
+
+    /**
+     * @param futureResult the {@link FutureResult} of the getBlob call of the subscriber.
+     * @param callback the {@link Callback} of the getBlob call of the subscriber. Can be null.
+     */
+    Subscriber(FutureResult<ReadableStreamChannel> futureResult, Callback<ReadableStreamChannel> callback) {
+      this.futureResult = futureResult;
+      this.callback = callback;
+    }
+
+    @Override
+    public long getSize() {
+      return source.getSize();
+    }
+
+    @Override
+    public Future<Long> readInto(AsyncWritableChannel asyncWritableChannel, Callback<Long> callback) {
+      boolean joined = false;
+      boolean startRead = false;
+      synchronized (CoalescedGetBlob.this) {
+        if (ready) {
+          throw new IllegalStateException("Cannot read the result of a GetBlob operation more than once");
+        }
+        ready = true;
+        pendingSubscriberCount--;
+        this.asyncWritableChannel = asyncWritableChannel;
+        readIntoCallback = callback;
+        readIntoFuture = new FutureResult<Long>();
+        if (!readersFixed && !sourceReleased) {
+          readers.add(this);
+          joined = true;
+          startRead = !readStarted;
+          readStarted = true;
+        }
+      }
+      if (startRead) {
+        startRead();
+      } else if (!joined) {
+        readThroughOwnGet();
+      }
+      return readIntoFuture;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return isOpen;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      isOpen = false;
+      boolean releaseSource = false;
+      synchronized (CoalescedGetBlob.this) {
+        if (!ready) {
+          ready = true;
+          releaseSource = --pendingSubscriberCount == 0 && !readStarted && !sourceReleased;
+          sourceReleased |= releaseSource;
+        }
+      }
+      if (releaseSource) {
+        releaseSource();
+      }
+    }
+
+    @Override
+    public void setDigestAlgorithm(String digestAlgorithm) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getDigest() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads the blob through a get of its own, for when this subscriber started reading too late to join the shared
+     * read.
+     */
+    private void readThroughOwnGet() {
+      routerMetrics.getBlobCoalescedFailoverCount.inc();
+      logger.trace("Starting a get of {} of its own for a subscriber that started reading late", blobId);
+      getBlobSubmitter.submitGetBlob(blobId, new Callback<ReadableStreamChannel>() {
+        @Override
+        public void onCompletion(ReadableStreamChannel result, Exception exception) {
+          if (exception != null) {
+            completeRead(exception);
+          } else {
+            result.readInto(asyncWritableChannel, new Callback<Long>() {
+              @Override
+              public void onCompletion(Long result, Exception exception) {
+                if (result != null) {
+                  bytesWritten.set(result);
+                }
+                completeRead(exception);
+              }
+            });
+          }
+        }
+      });
+    }
+
+    /**
+     * Writes a chunk of the blob out to the channel of this subscriber, unless this subscriber has been dropped.
+     * @param chunk the chunk to write.
+     * @param chunkWrite the {@link ChunkWrite} to notify once the chunk has been consumed.
+     */
+    void write(ByteBuffer chunk, ChunkWrite chunkWrite) {
+      if (writeException.get() != null) {
+        chunkWrite.onSubscriberWriteComplete();
+        return;
+      }
+      final PendingWrite pendingWrite = new PendingWrite(chunkWrite, time.milliseconds());
+      pendingWrites.add(pendingWrite);
+      asyncWritableChannel.write(chunk, new Callback<Long>() {
+        @Override
+        public void onCompletion(Long result, Exception exception) {
+          pendingWrites.remove(pendingWrite);
+          if (exception != null) {
+            drop(exception);
+          } else if (result != null) {
+            bytesWritten.addAndGet(result);
+          }
+          pendingWrite.complete();
+        }
+      });
+      if (writeException.get() != null) {
+        // dropped while the chunk was being handed over, so the chunk may have been missed by the drop.
+        pendingWrites.remove(pendingWrite);
+        pendingWrite.complete();
+      }
+    }
+
+    /**
+     * Drops this subscriber if it has not consumed the oldest chunk written out to it within the stall timeout. The
+     * chunks that it has not consumed are then acknowledged without waiting for it.
+     */
+    void dropIfStalled() {
+      PendingWrite oldestPendingWrite = pendingWrites.peek();
+      if (oldestPendingWrite != null && time.milliseconds() - oldestPendingWrite.startTimeMs > stallTimeoutMs) {
+        drop(new RouterException("Subscriber of the get of " + blobId + " did not consume a chunk in time",
+            RouterErrorCode.OperationTimedOut));
+      }
+    }
+
+    /**
+     * @return the number of chunks written out to this subscriber that it has not consumed yet.
+     */
+    int getPendingWriteCount() {
+      return pendingWrites.size();
+    }
+
+    /**
+     * Stops writing chunks out to this subscriber, acknowledges the chunks that it has not consumed and fails its
+     * read.
+     * @param exception the exception to fail the read with.
+     */
+    void drop(Exception exception) {
+      if (writeException.compareAndSet(null, exception)) {
+        failedReaderCount.incrementAndGet();
+        routerMetrics.getBlobCoalescedSubscriberErrorCount.inc();
+        logger.trace("Dropping a subscriber of the get of {}", blobId, exception);
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+          pendingWrite.complete();
+        }
+        completeRead(exception);
+      }
+    }
+
+    /**
+     * Completes the read of this subscriber by marking the future and invoking the callback, if not already done.
+     * @param exception the exception that the read failed with (if any). Ignored if this subscriber was dropped.
+     */
+    void completeRead(Exception exception) {
+      synchronized (this) {
+        if (readCompleted) {
+          return;
+        }
+        readCompleted = true;
+      }
+      if (writeException.get() != null) {
+        exception = writeException.get();
+      }
+      readIntoFuture.done(bytesWritten.get(), exception);
+      if (readIntoCallback != null) {
+        readIntoCallback.onCompletion(bytesWritten.get(), exception);
+      }
+    }
+
+    /**
+     * @return the exception that this subscriber was dropped with, if any.
+     */
+    Exception getWriteException() {
+      return writeException.get();
+    }
+  }
+
+  /**
+   * A chunk written out to a subscriber that the subscriber has not consumed yet.
+   */
+  private static class PendingWrite {
+    final long startTimeMs;
+    private final ChunkWrite chunkWrite;
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    /**
+     * @param chunkWrite the {@link ChunkWrite} of the chunk.
+     * @param startTimeMs the time at which the chunk was written out to the subscriber.
+     */
+    PendingWrite(ChunkWrite chunkWrite, long startTimeMs) {
+      this.chunkWrite = chunkWrite;
+      this.startTimeMs = startTimeMs;
+    }
+
+    /**
+     * Records that the subscriber is done with the chunk, if not already done.
+     */
+    void complete() {
+      if (completed.compareAndSet(false, true)) {
+        chunkWrite.onSubscriberWriteComplete();
+      }
+    }
+  }
+
+  /**
+   * The {@link AsyncWritableChannel} that the result of the operation is read into. Writes every chunk out to all the
+   * subscribers that are reading.
+   */
+  private class FanOutChannel implements AsyncWritableChannel {
+    private volatile boolean isOpen = true;
+
+    @Override
+    public Future<Long> write(ByteBuffer src, Callback<Long> callback) {
+      synchronized (CoalescedGetBlob.this) {
+        readersFixed = true;
+      }
+      ChunkWrite chunkWrite = new ChunkWrite(src.remaining(), callback);
+      for (Subscriber reader : readers) {
+        reader.write(src.duplicate(), chunkWrite);
+      }
+      dropLaggingReaders();
+      return chunkWrite.future;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return isOpen;
+    }
+
+    @Override
+    public void close() {
+      isOpen = false;
+    }
+  }
+
+  /**
+   * Tracks the consumption of a chunk by all the subscribers that are reading, and acknowledges the chunk to the
+   * operation once all of them are done with it. The write fails only if every subscriber has been dropped.
+   */
+  private class ChunkWrite {
+    final FutureResult<Long> future = new FutureResult<Long>();
+    private final long chunkSize;
+    private final Callback<Long> callback;
+    private final AtomicInteger pendingWrites = new AtomicInteger(readers.size());
+
+    /**
+     * @param chunkSize the size of the chunk.
+     * @param callback the {@link Callback} of the write of the chunk by the operation.
+     */
+    ChunkWrite(long chunkSize, Callback<Long> callback) {
+      this.chunkSize = chunkSize;
+      this.callback = callback;
+    }
+
+    /**
+     * Records that a subscriber is done with the chunk, successfully or not.
+     */
+    void onSubscriberWriteComplete() {
+      if (pendingWrites.decrementAndGet() == 0) {
+        Exception exception = null;
+        if (failedReaderCount.get() == readers.size()) {
+          exception = readers.get(readers.size() - 1).getWriteException();
+        }
+        future.done(chunkSize, exception);
+        if (callback != null) {
+          callback.onCompletion(chunkSize, exception);
+        }
+      }
+    }
+  }
+}
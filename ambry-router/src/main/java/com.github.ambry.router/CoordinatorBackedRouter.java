@@ -21,14 +21,19 @@ import com.github.ambry.coordinator.CoordinatorException;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobOutput;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -93,20 +98,79 @@ public class CoordinatorBackedRouter implements Router {
     }
   }
 
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, callback);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The {@link Coordinator} cannot get the {@link BlobInfo} of multiple blobs at once, so the {@link BlobInfo} of each
+   * blob is fetched by its own operation and the results are collected when all of them complete.
+   */
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, final Callback<GetBlobInfosResult> callback) {
+    final FutureResult<GetBlobInfosResult> futureResult = new FutureResult<GetBlobInfosResult>();
+    final Map<String, BlobInfo> blobInfos = new ConcurrentHashMap<String, BlobInfo>();
+    final Map<String, Exception> failures = new ConcurrentHashMap<String, Exception>();
+    final AtomicInteger pendingGets = new AtomicInteger(blobIds.size());
+    if (blobIds.isEmpty()) {
+      completeOperation(futureResult, callback, new GetBlobInfosResult(blobInfos, failures), null);
+    }
+    for (final String blobId : blobIds) {
+      getBlobInfo(blobId, new Callback<BlobInfo>() {
+        @Override
+        public void onCompletion(BlobInfo result, Exception exception) {
+          if (exception != null) {
+            failures.put(blobId, exception);
+          } else {
+            blobInfos.put(blobId, result);
+          }
+          if (pendingGets.decrementAndGet() == 0) {
+            completeOperation(futureResult, callback, new GetBlobInfosResult(blobInfos, failures), null);
+          }
+        }
+      });
+    }
+    return futureResult;
+  }
+
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The {@link Coordinator} cannot fetch a range of a blob, so the whole blob is fetched and the range is returned out
+   * of it.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
     long preProcessingStartTime = System.currentTimeMillis();
     try {
       metrics.getBlobRate.mark();
       logger.trace("Beginning getBlob for {}", blobId);
       FutureResult<ReadableStreamChannel> futureResult = new FutureResult<ReadableStreamChannel>();
-      CoordinatorOperation operation =
-          new CoordinatorOperation(this, futureResult, blobId, callback, CoordinatorOperationType.GetBlob);
+      CoordinatorOperation operation = new CoordinatorOperation(this, futureResult, blobId, range, callback);
       submitOperation(operation, futureResult, callback);
       return futureResult;
     } finally {
@@ -114,6 +178,12 @@ public class CoordinatorBackedRouter implements Router {
     }
   }
 
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, callback);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -157,6 +227,48 @@ public class CoordinatorBackedRouter implements Router {
     }
   }
 
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The {@link Coordinator} cannot delete multiple blobs at once, so each blob is deleted by its own operation and the
+   * results are collected when all of them complete.
+   */
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds,
+      final Callback<Map<String, Exception>> callback) {
+    final FutureResult<Map<String, Exception>> futureResult = new FutureResult<Map<String, Exception>>();
+    final Map<String, Exception> failedBlobs = new ConcurrentHashMap<String, Exception>();
+    final AtomicInteger pendingDeletes = new AtomicInteger(blobIds.size());
+    if (blobIds.isEmpty()) {
+      futureResult.done(failedBlobs, null);
+      if (callback != null) {
+        callback.onCompletion(failedBlobs, null);
+      }
+    }
+    for (final String blobId : blobIds) {
+      deleteBlob(blobId, new Callback<Void>() {
+        @Override
+        public void onCompletion(Void result, Exception exception) {
+          if (exception != null) {
+            failedBlobs.put(blobId, exception);
+          }
+          if (pendingDeletes.decrementAndGet() == 0) {
+            futureResult.done(failedBlobs, null);
+            if (callback != null) {
+              callback.onCompletion(failedBlobs, null);
+            }
+          }
+        }
+      });
+    }
+    return futureResult;
+  }
+
   @Override
   public void close()
       throws IOException {
@@ -260,6 +372,8 @@ class CoordinatorOperation implements Runnable {
 
   // getBlob, getBlobInfo and delete arguments.
   private String blobId;
+  // getBlob argument.
+  private ByteRange range;
 
   // put arguments. Might be used to store returns in GetBlob and GetBlobInfo too.
   private BlobProperties blobProperties;
@@ -287,6 +401,21 @@ class CoordinatorOperation implements Runnable {
     this.blobId = blobId;
   }
 
+  /**
+   * Constructor used to invoke the {@link Coordinator} equivalent operation for
+   * {@link Router#getBlob(String, ByteRange)} and its variant.
+   * @param router the {@link CoordinatorBackedRouter} instance to use to submit operations.
+   * @param futureResult the {@link FutureResult} where the final result has to be loaded.
+   * @param blobId the blob id that the operation needs to be performed on.
+   * @param range the {@link ByteRange} of the blob that is requested, or {@code null} for the whole blob.
+   * @param callback the {@link Callback} to invoke once operation is complete (can be null if no callback required).
+   */
+  public CoordinatorOperation(CoordinatorBackedRouter router, FutureResult futureResult, String blobId,
+      ByteRange range, Callback callback) {
+    this(router, futureResult, blobId, callback, CoordinatorOperationType.GetBlob);
+    this.range = range;
+  }
+
   /**
    * Constructor used to invoke {@link Coordinator} equivalent operations for
    * {@link Router#putBlob(BlobProperties, byte[], ReadableStreamChannel)} and its variant.
@@ -335,7 +464,12 @@ class CoordinatorOperation implements Runnable {
 
           byte[] buf = Utils.readBytesFromStream(blobOutput.getStream(), (int) blobOutput.getSize());
           logger.trace("Blob data has completely arrived");
-          operationResult = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(buf));
+          ByteBuffer blobData = ByteBuffer.wrap(buf);
+          if (range != null) {
+            ByteRange resolvedRange = range.toResolvedByteRange(buf.length);
+            blobData = ByteBuffer.wrap(buf, (int) resolvedRange.getStartOffset(), (int) resolvedRange.getRangeSize());
+          }
+          operationResult = new ByteBufferReadableStreamChannel(blobData);
           router.metrics.getBlobResultConstructionTimeInMs.update(System.currentTimeMillis() - getBlobEndTime);
           operationTotalTimeTracker = router.metrics.getBlobTotalTimeInMs;
           break;
@@ -382,6 +516,9 @@ class CoordinatorOperation implements Runnable {
     } catch (CoordinatorException e) {
       router.metrics.operationError.inc();
       exception = new RouterException(e, RouterErrorCode.convertCoordinatorErrorToRouterErrorCode(e.getErrorCode()));
+    } catch (RouterException e) {
+      router.metrics.operationError.inc();
+      exception = e;
     } catch (Exception e) {
       router.metrics.operationError.inc();
       exception = new RouterException(e, RouterErrorCode.UnexpectedInternalError);
@@ -26,6 +26,7 @@ import com.github.ambry.utils.Time;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
@@ -33,12 +34,14 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * Handles {@link DeleteOperation}. A {@code DeleteManager} keeps track of all the delete
- * operations that are assigned to it, and manages their states and life cycles.
+ * Handles {@link DeleteOperation}s and {@link BatchDeleteOperation}s. A {@code DeleteManager} keeps track of all the
+ * delete operations that are assigned to it, and manages their states and life cycles.
  */
 class DeleteManager {
   private final Set<DeleteOperation> deleteOperations;
   private final HashMap<Integer, DeleteOperation> correlationIdToDeleteOperation;
+  private final Set<BatchDeleteOperation> batchDeleteOperations;
+  private final HashMap<Integer, BatchDeleteOperation> correlationIdToBatchDeleteOperation;
   private final NotificationSystem notificationSystem;
   private final Time time;
   private final ResponseHandler responseHandler;
@@ -46,6 +49,7 @@ class DeleteManager {
   private final ClusterMap clusterMap;
   private final RouterConfig routerConfig;
   private final OperationCompleteCallback operationCompleteCallback;
+  private final BlobMetadataCache blobMetadataCache;
 
   private static final Logger logger = LoggerFactory.getLogger(DeleteManager.class);
 
@@ -66,6 +70,24 @@ class DeleteManager {
   private final DeleteRequestRegistrationCallbackImpl requestRegistrationCallback =
       new DeleteRequestRegistrationCallbackImpl();
 
+  /**
+   * Used by a {@link BatchDeleteOperation} to associate a {@code CorrelationId} to a {@link BatchDeleteOperation}.
+   */
+  private class BatchDeleteRequestRegistrationCallbackImpl
+      implements RequestRegistrationCallback<BatchDeleteOperation> {
+    private List<RequestInfo> requestListToFill;
+
+    @Override
+    public void registerRequestToSend(BatchDeleteOperation batchDeleteOperation, RequestInfo requestInfo) {
+      requestListToFill.add(requestInfo);
+      correlationIdToBatchDeleteOperation
+          .put(((RequestOrResponse) requestInfo.getRequest()).getCorrelationId(), batchDeleteOperation);
+    }
+  }
+
+  private final BatchDeleteRequestRegistrationCallbackImpl batchRequestRegistrationCallback =
+      new BatchDeleteRequestRegistrationCallbackImpl();
+
   /**
    * Creates a DeleteManager.
    * @param clusterMap The {@link ClusterMap} of the cluster.
@@ -74,29 +96,36 @@ class DeleteManager {
    * @param routerConfig The {@link RouterConfig} containing the configs for the DeleteManager.
    * @param routerMetrics The {@link NonBlockingRouterMetrics} to be used for reporting metrics.
    * @param operationCompleteCallback The {@link OperationCompleteCallback} to use to complete operations.
+   * @param blobMetadataCache The {@link BlobMetadataCache} from which the metadata of deleted blobs is invalidated.
    * @param time The {@link Time} instance to use.
    */
   DeleteManager(ClusterMap clusterMap, ResponseHandler responseHandler, NotificationSystem notificationSystem,
       RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
-      OperationCompleteCallback operationCompleteCallback, Time time) {
+      OperationCompleteCallback operationCompleteCallback, BlobMetadataCache blobMetadataCache, Time time) {
     this.clusterMap = clusterMap;
     this.responseHandler = responseHandler;
     this.notificationSystem = notificationSystem;
     this.routerConfig = routerConfig;
     this.routerMetrics = routerMetrics;
     this.operationCompleteCallback = operationCompleteCallback;
+    this.blobMetadataCache = blobMetadataCache;
     this.time = time;
     deleteOperations = Collections.newSetFromMap(new ConcurrentHashMap<DeleteOperation, Boolean>());
     correlationIdToDeleteOperation = new HashMap<Integer, DeleteOperation>();
+    batchDeleteOperations = Collections.newSetFromMap(new ConcurrentHashMap<BatchDeleteOperation, Boolean>());
+    correlationIdToBatchDeleteOperation = new HashMap<Integer, BatchDeleteOperation>();
   }
 
   /**
-   * Submits a {@link DeleteOperation} to this {@code DeleteManager}.
+   * Submits a {@link DeleteOperation} to this {@code DeleteManager}. The metadata of the blob is invalidated in the
+   * {@link BlobMetadataCache} when the operation is submitted and again when it completes, so that metadata fetched
+   * while the delete is in progress is not served afterwards.
    * @param blobIdString The blobId string to be deleted.
    * @param futureResult The {@link FutureResult} that will contain the result eventually and exception if any.
    * @param callback The {@link Callback} that will be called on completion of the request.
    */
   void submitDeleteBlobOperation(String blobIdString, FutureResult<Void> futureResult, Callback<Void> callback) {
+    blobMetadataCache.invalidate(blobIdString);
     try {
       BlobId blobId = RouterUtils.getBlobIdFromString(blobIdString, clusterMap);
       DeleteOperation deleteOperation =
@@ -110,6 +139,28 @@ class DeleteManager {
     }
   }
 
+  /**
+   * Submits a {@link BatchDeleteOperation} to this {@code DeleteManager}.
+   * @param blobIdStrings The blobId strings to be deleted.
+   * @param futureResult The {@link FutureResult} that will contain the result eventually and exception if any.
+   * @param callback The {@link Callback} that will be called on completion of the request.
+   */
+  void submitDeleteBlobsOperation(List<String> blobIdStrings, FutureResult<Map<String, Exception>> futureResult,
+      Callback<Map<String, Exception>> callback) {
+    for (String blobIdString : blobIdStrings) {
+      blobMetadataCache.invalidate(blobIdString);
+    }
+    BatchDeleteOperation batchDeleteOperation =
+        new BatchDeleteOperation(routerConfig, routerMetrics, responseHandler, clusterMap, blobIdStrings, futureResult,
+            callback, time);
+    if (batchDeleteOperation.isOperationComplete()) {
+      // none of the blob ids were valid.
+      onComplete(batchDeleteOperation);
+    } else {
+      batchDeleteOperations.add(batchDeleteOperation);
+    }
+  }
+
   /**
    * Polls all delete operations and populates a list of {@link RequestInfo} to be sent to data nodes in order to
    * complete delete operations.
@@ -135,6 +186,22 @@ class DeleteManager {
         }
       }
     }
+    batchRequestRegistrationCallback.requestListToFill = requestListToFill;
+    for (BatchDeleteOperation op : batchDeleteOperations) {
+      boolean exceptionEncountered = false;
+      try {
+        op.poll(batchRequestRegistrationCallback);
+      } catch (Exception e) {
+        exceptionEncountered = true;
+        op.setOperationException(new RouterException("Batch delete poll encountered unexpected error", e,
+            RouterErrorCode.UnexpectedInternalError));
+      }
+      if (exceptionEncountered || op.isOperationComplete()) {
+        if (batchDeleteOperations.remove(op)) {
+          onComplete(op);
+        }
+      }
+    }
     routerMetrics.deleteManagerPollTimeMs.update(time.milliseconds() - startTime);
   }
 
@@ -145,6 +212,10 @@ class DeleteManager {
   void handleResponse(ResponseInfo responseInfo) {
     long startTime = time.milliseconds();
     int correlationId = ((DeleteRequest) responseInfo.getRequest()).getCorrelationId();
+    if (correlationIdToBatchDeleteOperation.containsKey(correlationId)) {
+      handleBatchResponse(responseInfo, correlationIdToBatchDeleteOperation.remove(correlationId), startTime);
+      return;
+    }
     DeleteOperation deleteOperation = correlationIdToDeleteOperation.remove(correlationId);
     // If it is still an active operation, hand over the response. Otherwise, ignore.
     if (deleteOperations.contains(deleteOperation)) {
@@ -168,6 +239,36 @@ class DeleteManager {
     }
   }
 
+  /**
+   * Handles a response received for a {@link BatchDeleteOperation} within this delete manager.
+   * @param responseInfo the {@link ResponseInfo} containing the response.
+   * @param batchDeleteOperation the {@link BatchDeleteOperation} that the request was sent for.
+   * @param startTime the time at which the handling of the response started.
+   */
+  private void handleBatchResponse(ResponseInfo responseInfo, BatchDeleteOperation batchDeleteOperation,
+      long startTime) {
+    // If it is still an active operation, hand over the response. Otherwise, ignore.
+    if (batchDeleteOperations.contains(batchDeleteOperation)) {
+      boolean exceptionEncountered = false;
+      try {
+        batchDeleteOperation.handleResponse(responseInfo);
+      } catch (Exception e) {
+        exceptionEncountered = true;
+        batchDeleteOperation.setOperationException(
+            new RouterException("Batch delete handleResponse encountered unexpected error", e,
+                RouterErrorCode.UnexpectedInternalError));
+      }
+      if (exceptionEncountered || batchDeleteOperation.isOperationComplete()) {
+        if (batchDeleteOperations.remove(batchDeleteOperation)) {
+          onComplete(batchDeleteOperation);
+        }
+      }
+      routerMetrics.deleteManagerHandleResponseTimeMs.update(time.milliseconds() - startTime);
+    } else {
+      routerMetrics.ignoredResponseCount.inc();
+    }
+  }
+
   /**
    * Called when the delete operation is completed. The {@code DeleteManager} also finishes the delete operation
    * by performing the callback and notification.
@@ -175,6 +276,7 @@ class DeleteManager {
    */
   void onComplete(DeleteOperation op) {
     Exception e = op.getOperationException();
+    blobMetadataCache.invalidate(op.getBlobId().getID());
     if (e == null) {
       notificationSystem.onBlobDeleted(op.getBlobId().getID());
     } else {
@@ -187,6 +289,35 @@ class DeleteManager {
         .completeOperation(op.getFutureResult(), op.getCallback(), op.getOperationResult(), op.getOperationException());
   }
 
+  /**
+   * Called when a {@link BatchDeleteOperation} is completed. The {@code DeleteManager} also finishes the operation by
+   * performing the callback and notifying the deletes.
+   * @param op The {@link BatchDeleteOperation} that has completed.
+   */
+  void onComplete(BatchDeleteOperation op) {
+    Exception e = op.getOperationException();
+    Map<String, Exception> failedBlobs = null;
+    for (String blobIdString : op.getBlobIdStrings()) {
+      blobMetadataCache.invalidate(blobIdString);
+    }
+    if (e == null) {
+      for (BlobId blobId : op.getDeletedBlobIds()) {
+        notificationSystem.onBlobDeleted(blobId.getID());
+      }
+      failedBlobs = op.getOperationResult();
+      for (Exception blobException : failedBlobs.values()) {
+        routerMetrics.deleteBlobErrorCount.inc();
+        routerMetrics.countError(blobException);
+      }
+    } else {
+      routerMetrics.deleteBlobErrorCount.inc();
+      routerMetrics.countError(e);
+    }
+    routerMetrics.operationDequeuingRate.mark();
+    routerMetrics.deleteBlobsOperationLatencyMs.update(time.milliseconds() - op.getSubmissionTimeMs());
+    operationCompleteCallback.completeOperation(op.getFutureResult(), op.getCallback(), failedBlobs, e);
+  }
+
   /**
    * Closes the {@code DeleteManager}. A {@code DeleteManager} can be closed for only once. Any further close action
    * will have no effect.
@@ -205,5 +336,15 @@ class DeleteManager {
         operationCompleteCallback.completeOperation(op.getFutureResult(), op.getCallback(), null, e);
       }
     }
+    for (BatchDeleteOperation op : batchDeleteOperations) {
+      if (batchDeleteOperations.remove(op)) {
+        Exception e = new RouterException("Aborted operation because Router is closed.", RouterErrorCode.RouterClosed);
+        routerMetrics.operationDequeuingRate.mark();
+        routerMetrics.operationAbortCount.inc();
+        routerMetrics.deleteBlobErrorCount.inc();
+        routerMetrics.countError(e);
+        operationCompleteCallback.completeOperation(op.getFutureResult(), op.getCallback(), null, e);
+      }
+    }
   }
 }
@@ -27,8 +27,10 @@ import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.Time;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
@@ -121,15 +123,46 @@ class DeleteOperation {
       Port port = replica.getDataNodeId().getPortToConnectTo();
       DeleteRequest deleteRequest = createDeleteRequest();
       deleteRequestInfos.put(deleteRequest.getCorrelationId(), new DeleteRequestInfo(time.milliseconds(), replica));
-      RequestInfo requestInfo = new RequestInfo(hostname, port, deleteRequest);
+      RequestInfo requestInfo = new RequestInfo(hostname, port, deleteRequest, deleteRequest.getCorrelationId());
       requestRegistrationCallback.registerRequestToSend(this, requestInfo);
       replicaIterator.remove();
-      if (RouterUtils.isRemoteReplica(routerConfig, replica)) {
-        logger.trace("Making request to a remote replica in", replica.getDataNodeId().getDatacenterName());
-        routerMetrics.crossColoRequestCount.inc();
+      onRequestCreated(replica);
+    }
+  }
+
+  /**
+   * Gets the replicas that delete requests for the blob of this operation should be sent to now, without creating the
+   * requests. This is used by a {@link BatchDeleteOperation}, which coalesces the requests of several operations into
+   * requests for multiple blobs. The {@link BatchDeleteOperation} tracks the requests, and reports their outcome
+   * through {@link #onReplicaResponse(ReplicaId, ServerErrorCode)} and
+   * {@link #onReplicaRequestFailed(ReplicaId, RouterErrorCode)}.
+   * @return the replicas to send delete requests to. Empty if the operation is complete.
+   */
+  List<ReplicaId> fetchReplicasToSend() {
+    checkAndMaybeComplete();
+    List<ReplicaId> replicas = new ArrayList<ReplicaId>();
+    if (!isOperationComplete()) {
+      Iterator<ReplicaId> replicaIterator = operationTracker.getReplicaIterator();
+      while (replicaIterator.hasNext()) {
+        ReplicaId replica = replicaIterator.next();
+        replicaIterator.remove();
+        onRequestCreated(replica);
+        replicas.add(replica);
       }
-      routerMetrics.getDataNodeBasedMetrics(replica.getDataNodeId()).deleteRequestRate.mark();
     }
+    return replicas;
+  }
+
+  /**
+   * Updates the metrics for a request that was created for a replica.
+   * @param replica the {@link ReplicaId} that the request is destined for.
+   */
+  private void onRequestCreated(ReplicaId replica) {
+    if (RouterUtils.isRemoteReplica(routerConfig, replica)) {
+      logger.trace("Making request to a remote replica in", replica.getDataNodeId().getDatacenterName());
+      routerMetrics.crossColoRequestCount.inc();
+    }
+    routerMetrics.getDataNodeBasedMetrics(replica.getDataNodeId()).deleteRequestRate.mark();
   }
 
   /**
@@ -193,6 +226,34 @@ class DeleteOperation {
     checkAndMaybeComplete();
   }
 
+  /**
+   * Handles the {@link ServerErrorCode} that a replica returned for the blob of this operation in response to a request
+   * created by a {@link BatchDeleteOperation}. Responses received after the operation is complete are ignored.
+   * @param replica the {@link ReplicaId} that returned the error.
+   * @param serverErrorCode the {@link ServerErrorCode} for the blob of this operation.
+   */
+  void onReplicaResponse(ReplicaId replica, ServerErrorCode serverErrorCode) {
+    if (isOperationComplete()) {
+      return;
+    }
+    processServerError(replica, serverErrorCode);
+    checkAndMaybeComplete();
+  }
+
+  /**
+   * Handles the failure of a request created by a {@link BatchDeleteOperation} for which no response was received for
+   * the blob of this operation. Failures after the operation is complete are ignored.
+   * @param replica the {@link ReplicaId} that the request was sent to.
+   * @param routerErrorCode the {@link RouterErrorCode} that describes the failure.
+   */
+  void onReplicaRequestFailed(ReplicaId replica, RouterErrorCode routerErrorCode) {
+    if (isOperationComplete()) {
+      return;
+    }
+    updateOperationState(replica, routerErrorCode);
+    checkAndMaybeComplete();
+  }
+
   /**
    * A wrapper class that is used to check if a request has been expired.
    */
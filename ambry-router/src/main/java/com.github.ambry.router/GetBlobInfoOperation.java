@@ -33,7 +33,9 @@ import com.github.ambry.utils.Time;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import org.slf4j.Logger;
@@ -47,10 +49,17 @@ import org.slf4j.LoggerFactory;
  */
 class GetBlobInfoOperation extends GetOperation<BlobInfo> {
   private final OperationCompleteCallback operationCompleteCallback;
-  private final SimpleOperationTracker operationTracker;
+  private final OperationTracker operationTracker;
   // map of correlation id to the request metadata for every request issued for this operation.
   private final Map<Integer, GetRequestInfo> correlationIdToGetRequestInfo = new TreeMap<Integer, GetRequestInfo>();
+  // whether a hedged request has been allowed for this operation.
+  private boolean hedged = false;
+  // the cache that the fetched BlobInfo is added to, and its generation when this operation was created.
+  private final BlobMetadataCache blobMetadataCache;
+  private final long cacheGeneration;
 
+  // the name of the spans of the requests of this operation in its trace.
+  private static final String TRACE_SPAN_NAME = "BlobInfoRequest";
   private static final Logger logger = LoggerFactory.getLogger(GetBlobInfoOperation.class);
 
   /**
@@ -62,23 +71,27 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
    * @param blobIdStr the blob id associated with the operation in string form.
    * @param futureResult the future that will contain the result of the operation.
    * @param callback the callback that is to be called when the operation completes.
-   * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete operations.
+   * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete operations. Null if the
+   *                                  operation is driven by a {@link BatchGetBlobInfoOperation}, which completes it.
+   * @param blobMetadataCache the {@link BlobMetadataCache} to add the fetched {@link BlobInfo} to.
    * @param time the Time instance to use.
    * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
   GetBlobInfoOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
       ResponseHandler responseHandler, String blobIdStr, FutureResult<BlobInfo> futureResult,
-      Callback<BlobInfo> callback, OperationCompleteCallback operationCompleteCallback, Time time)
+      Callback<BlobInfo> callback, OperationCompleteCallback operationCompleteCallback,
+      BlobMetadataCache blobMetadataCache, Time time)
       throws RouterException {
     super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
-    operationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, blobId.getPartition(),
-        routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
-        routerConfig.routerGetRequestParallelism);
+    this.blobMetadataCache = blobMetadataCache;
+    cacheGeneration = blobMetadataCache.getGeneration();
+    operationTracker = getOperationTracker(blobId.getPartition());
   }
 
   @Override
   void abort(Exception abortCause) {
+    completeTrace(abortCause);
     operationCompleteCallback.completeOperation(operationFuture, operationCallback, null, abortCause);
     operationCompleted = true;
   }
@@ -103,10 +116,21 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
     cleanupExpiredInFlightRequests();
     checkAndMaybeComplete();
     if (!isOperationComplete()) {
+      maybeHedge();
       fetchRequests(requestRegistrationCallback);
     }
   }
 
+  /**
+   * Allow one more request to be sent if the requests in flight have been pending for longer than requests to the
+   * partition usually take. This is done at most once for the operation.
+   */
+  private void maybeHedge() {
+    if (!hedged && isHedgeDue(blobId.getPartition(), correlationIdToGetRequestInfo) && operationTracker.hedge()) {
+      hedged = true;
+    }
+  }
+
   /**
    * Clean up requests sent out by this operation that have now timed out.
    */
@@ -121,6 +145,7 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
             new IOException("Timed out waiting for a response"));
         setOperationException(
             new RouterException("Timed out waiting for a response", RouterErrorCode.OperationTimedOut));
+        traceRequest(TRACE_SPAN_NAME, entry.getValue(), null);
         inFlightRequestsIterator.remove();
       } else {
         // the entries are ordered by correlation id and time. Break on the first request that has not timed out.
@@ -139,17 +164,51 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
       String hostname = replicaId.getDataNodeId().getHostname();
       Port port = replicaId.getDataNodeId().getPortToConnectTo();
       GetRequest getRequest = createGetRequest(blobId, getOperationFlag(), GetOptions.None);
-      RequestInfo request = new RequestInfo(hostname, port, getRequest);
+      RequestInfo request = new RequestInfo(hostname, port, getRequest, getRequest.getCorrelationId());
       int correlationId = getRequest.getCorrelationId();
-      correlationIdToGetRequestInfo.put(correlationId, new GetRequestInfo(replicaId, time.milliseconds()));
+      boolean isHedge = operationTracker.isNextSendHedge();
+      correlationIdToGetRequestInfo.put(correlationId, createGetRequestInfo(replicaId, isHedge));
       requestRegistrationCallback.registerRequestToSend(this, request);
       replicaIterator.remove();
-      if (RouterUtils.isRemoteReplica(routerConfig, replicaId)) {
-        logger.trace("Making request to a remote replica in", replicaId.getDataNodeId().getDatacenterName());
-        routerMetrics.crossColoRequestCount.inc();
+      if (isHedge) {
+        routerMetrics.hedgedGetRequestRate.mark();
+      }
+      onRequestCreated(replicaId);
+    }
+  }
+
+  /**
+   * Gets the replicas that requests for the BlobInfo of this operation should be sent to now, without creating the
+   * requests. This is used by a {@link BatchGetBlobInfoOperation}, which coalesces the requests of several operations
+   * into requests for multiple blobs. The {@link BatchGetBlobInfoOperation} tracks the requests, and reports their
+   * outcome through {@link #onReplicaResponse(ReplicaId, ServerErrorCode, BlobInfo)} and
+   * {@link #onReplicaRequestFailed(ReplicaId, RouterException)}.
+   * @return the replicas to send requests to. Empty if the operation is complete.
+   */
+  List<ReplicaId> fetchReplicasToSend() {
+    List<ReplicaId> replicas = new ArrayList<ReplicaId>();
+    if (!isOperationComplete()) {
+      Iterator<ReplicaId> replicaIterator = operationTracker.getReplicaIterator();
+      while (replicaIterator.hasNext()) {
+        ReplicaId replicaId = replicaIterator.next();
+        replicaIterator.remove();
+        onRequestCreated(replicaId);
+        replicas.add(replicaId);
       }
-      routerMetrics.getDataNodeBasedMetrics(replicaId.getDataNodeId()).getBlobInfoRequestRate.mark();
     }
+    return replicas;
+  }
+
+  /**
+   * Updates the metrics for a request that was created for a replica.
+   * @param replicaId the {@link ReplicaId} that the request is destined for.
+   */
+  private void onRequestCreated(ReplicaId replicaId) {
+    if (RouterUtils.isRemoteReplica(routerConfig, replicaId)) {
+      logger.trace("Making request to a remote replica in", replicaId.getDataNodeId().getDatacenterName());
+      routerMetrics.crossColoRequestCount.inc();
+    }
+    routerMetrics.getDataNodeBasedMetrics(replicaId.getDataNodeId()).getBlobInfoRequestRate.mark();
   }
 
   /**
@@ -174,7 +233,11 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
     routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
     routerMetrics.getDataNodeBasedMetrics(getRequestInfo.replicaId.getDataNodeId()).getBlobInfoRequestLatencyMs
         .update(requestLatencyMs);
+    if (responseInfo.getError() == null) {
+      routerMetrics.updateGetRequestLatency(blobId.getPartition(), requestLatencyMs);
+    }
     if (responseInfo.getError() != null) {
+      traceRequest(TRACE_SPAN_NAME, getRequestInfo, null);
       setOperationException(new RouterException("Operation timed out", RouterErrorCode.OperationTimedOut));
       responseHandler.onRequestResponseException(getRequestInfo.replicaId, new IOException("NetworkClient error"));
       onErrorResponse(getRequestInfo.replicaId);
@@ -182,11 +245,11 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
       try {
         GetResponse getResponse = GetResponse
             .readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())), clusterMap);
+        traceRequest(TRACE_SPAN_NAME, getRequestInfo, getResponse);
         if (getResponse.getCorrelationId() != correlationId) {
-          // The NetworkClient associates a response with a request based on the fact that only one request is sent
-          // out over a connection id, and the response received on a connection id must be for the latest request
-          // sent over it. The check here ensures that is indeed the case. If not, log an error and fail this request.
-          // There is no other way to handle it.
+          // The NetworkClient associates a response with a request either because it is the only request in flight on
+          // its connection id, or by the correlation id in the response. The check here ensures that is indeed the
+          // case. If not, log an error and fail this request. There is no other way to handle it.
           routerMetrics.unknownReplicaResponseError.inc();
           setOperationException(
               new RouterException("The correlation id in the GetResponse " + getResponse.getCorrelationId() +
@@ -229,25 +292,9 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
       } else {
         getError = getResponse.getPartitionResponseInfoList().get(0).getErrorCode();
         responseHandler.onRequestResponseError(getRequestInfo.replicaId, getError);
-        if (getError == ServerErrorCode.No_Error) {
-          handleBody(getResponse.getInputStream());
-          operationTracker.onResponse(getRequestInfo.replicaId, true);
-          if (RouterUtils.isRemoteReplica(routerConfig, getRequestInfo.replicaId)) {
-            logger.trace("Cross colo request successful for remote replica in ",
-                getRequestInfo.replicaId.getDataNodeId().getDatacenterName());
-            routerMetrics.crossColoSuccessCount.inc();
-          }
-        } else {
-          // process and set the most relevant exception.
-          processServerError(getError);
-          if (getError == ServerErrorCode.Blob_Deleted || getError == ServerErrorCode.Blob_Expired) {
-            // this is a successful response and one that completes the operation regardless of whether the
-            // success target has been reached or not.
-            operationCompleted = true;
-          } else {
-            onErrorResponse(getRequestInfo.replicaId);
-          }
-        }
+        BlobInfo blobInfo =
+            getError == ServerErrorCode.No_Error ? deserializeBlobInfo(getResponse.getInputStream()) : null;
+        processReplicaResponse(getRequestInfo.replicaId, getRequestInfo.isHedge, getError, blobInfo);
       }
     } else {
       responseHandler.onRequestResponseError(getRequestInfo.replicaId, getError);
@@ -255,6 +302,73 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
     }
   }
 
+  /**
+   * Process the error returned by a replica for the blob of this operation, along with the {@link BlobInfo} if the
+   * replica returned one.
+   * @param replicaId the {@link ReplicaId} that returned the response.
+   * @param isHedge {@code true} if the request to the replica was a hedged request.
+   * @param getError the {@link ServerErrorCode} returned for the blob.
+   * @param blobInfo the {@link BlobInfo} returned for the blob. Non-null if {@code getError} is
+   *                 {@link ServerErrorCode#No_Error}.
+   */
+  private void processReplicaResponse(ReplicaId replicaId, boolean isHedge, ServerErrorCode getError,
+      BlobInfo blobInfo) {
+    if (getError == ServerErrorCode.No_Error) {
+      handleBody(blobInfo);
+      if (isHedge && !operationTracker.hasSucceeded()) {
+        routerMetrics.hedgedGetRequestWinCount.inc();
+      }
+      operationTracker.onResponse(replicaId, true);
+      if (RouterUtils.isRemoteReplica(routerConfig, replicaId)) {
+        logger.trace("Cross colo request successful for remote replica in ",
+            replicaId.getDataNodeId().getDatacenterName());
+        routerMetrics.crossColoSuccessCount.inc();
+      }
+    } else {
+      // process and set the most relevant exception.
+      processServerError(getError);
+      if (getError == ServerErrorCode.Blob_Deleted || getError == ServerErrorCode.Blob_Expired) {
+        // this is a successful response and one that completes the operation regardless of whether the
+        // success target has been reached or not.
+        operationCompleted = true;
+      } else {
+        onErrorResponse(replicaId);
+      }
+    }
+  }
+
+  /**
+   * Handles the error (and the {@link BlobInfo}, if there was no error) that a replica returned for the blob of this
+   * operation in response to a request created by a {@link BatchGetBlobInfoOperation}. Responses received after the
+   * operation is complete are ignored.
+   * @param replicaId the {@link ReplicaId} that returned the response.
+   * @param getError the {@link ServerErrorCode} returned for the blob.
+   * @param blobInfo the {@link BlobInfo} returned for the blob. Non-null if {@code getError} is
+   *                 {@link ServerErrorCode#No_Error}.
+   */
+  void onReplicaResponse(ReplicaId replicaId, ServerErrorCode getError, BlobInfo blobInfo) {
+    if (isOperationComplete()) {
+      return;
+    }
+    processReplicaResponse(replicaId, false, getError, blobInfo);
+    checkAndMaybeComplete();
+  }
+
+  /**
+   * Handles the failure of a request created by a {@link BatchGetBlobInfoOperation} for which no response was received
+   * for the blob of this operation. Failures after the operation is complete are ignored.
+   * @param replicaId the {@link ReplicaId} that the request was sent to.
+   * @param exception the {@link RouterException} that describes the failure.
+   */
+  void onReplicaRequestFailed(ReplicaId replicaId, RouterException exception) {
+    if (isOperationComplete()) {
+      return;
+    }
+    setOperationException(exception);
+    onErrorResponse(replicaId);
+    checkAndMaybeComplete();
+  }
+
   /**
    * Perform the necessary actions when a request to a replica fails.
    * @param replicaId the {@link ReplicaId} associated with the failed response.
@@ -266,16 +380,26 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
   }
 
   /**
-   * Handle the body of the response: Deserialize and set the {@link BlobInfo} to return.
+   * Deserialize the {@link BlobInfo} in the body of a response.
    * @param payload the body of the response.
+   * @return the deserialized {@link BlobInfo}.
    * @throws IOException if there is an IOException while deserializing the body.
    * @throws MessageFormatException if there is a MessageFormatException while deserializing the body.
    */
-  private void handleBody(InputStream payload)
+  static BlobInfo deserializeBlobInfo(InputStream payload)
       throws IOException, MessageFormatException {
+    return new BlobInfo(MessageFormatRecord.deserializeBlobProperties(payload),
+        MessageFormatRecord.deserializeUserMetadata(payload).array());
+  }
+
+  /**
+   * Handle the body of the response: Set the {@link BlobInfo} to return and cache it.
+   * @param blobInfo the {@link BlobInfo} in the body of the response.
+   */
+  private void handleBody(BlobInfo blobInfo) {
     if (operationResult == null) {
-      operationResult = new BlobInfo(MessageFormatRecord.deserializeBlobProperties(payload),
-          MessageFormatRecord.deserializeUserMetadata(payload).array());
+      operationResult = blobInfo;
+      blobMetadataCache.putBlobInfo(blobId.getID(), blobInfo, cacheGeneration);
     } else {
       // If the successTarget is 1, this case will never get executed.
       // If it is more than 1, then, different responses will have to be reconciled in some way. Here is where that
@@ -320,13 +444,14 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
       operationCompleted = true;
     }
 
-    if (operationCompleted) {
+    if (operationCompleted && operationCompleteCallback != null) {
       Exception e = operationException.get();
       if (e != null) {
         routerMetrics.getBlobInfoErrorCount.inc();
         routerMetrics.countError(e);
       }
       routerMetrics.getBlobInfoOperationLatencyMs.update(time.milliseconds() - submissionTimeMs);
+      completeTrace(e);
       operationCompleteCallback.completeOperation(operationFuture, operationCallback, operationResult, e);
     }
   }
@@ -22,6 +22,7 @@ import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobData;
 import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.CompositeBlobInfo;
 import com.github.ambry.messageformat.MessageFormatException;
 import com.github.ambry.messageformat.MessageFormatFlags;
 import com.github.ambry.messageformat.MessageFormatRecord;
@@ -46,6 +47,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
@@ -66,6 +68,23 @@ import org.slf4j.LoggerFactory;
  * as done) so that the caller can start reading in data. The rest of the chunks are asynchronously fetched and
  * buffered up to the maximum that can be buffered. When fetched chunks are consumed by the caller, subsequent chunks
  * become eligible to be fetched.
+ *
+ * The number of data chunks that are fetched ahead of the caller (the prefetch window) adapts to how fast the caller
+ * consumes chunks relative to how long chunks take to be fetched, so that a fast consumer does not wait on the
+ * network and a slow consumer does not cause chunks to pile up in memory. The memory for every data chunk that is
+ * being fetched or is waiting to be consumed is reserved from a {@link ChunkMemoryBudget} that is shared by all
+ * operations.
+ *
+ * The ids of the data chunks of composite blobs are cached in the {@link BlobMetadataCache}. If they are cached, the
+ * metadata chunk is not fetched and the data chunks are fetched right away.
+ *
+ * If a {@link ByteRange} is requested and {@link RouterConfig#routerGetRangeRequestEnabled} is set, the request for
+ * the first chunk carries the range so that the server returns only that range of a simple blob. For a composite blob
+ * whose metadata records the chunk size and the total size, only the data chunks that overlap the range are fetched,
+ * and the partially covered first and last of them are fetched as ranges of their own if range requests are enabled.
+ * Whenever a server returns a whole chunk instead of the range of it that is needed (because it was not asked for the
+ * range or does not support ranges), the range is cut out of the chunk by the router. Composite blobs whose metadata
+ * does not record the sizes are fetched whole and the range is cut out of the data chunks as they are written out.
  */
 class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
   // the callback to use to complete the operation.
@@ -95,7 +114,36 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
   // the operation callback is invoked.
   private GetBlobResult getBlobResult;
   private final ReadyForPollCallback readyForPollCallback;
+  // the memory shared by all get operations, from which memory for the data chunks of this operation is reserved.
+  private final ChunkMemoryBudget chunkMemoryBudget;
+  // chunk index to the bytes reserved for it from the chunkMemoryBudget. Entries are removed when the chunk is written
+  // out, which may happen outside the poll thread.
+  private final Map<Integer, Long> chunkIndexToReservedBytes = new ConcurrentHashMap<>();
+  // the moving average of the time taken to fetch a data chunk, or -1 if no data chunk has been fetched yet.
+  private double chunkFetchTimeEwmaMs = -1;
+  // the moving average of the time the caller takes to consume a data chunk, or -1 if no chunk has been consumed yet.
+  private volatile double chunkDrainTimeEwmaMs = -1;
+  // the time at which the last chunk was completely written out.
+  private volatile long lastChunkWriteCompletionTimeMs = -1;
+  // the cache of the ids of the data chunks of composite blobs, and its generation when this operation was created.
+  private final BlobMetadataCache blobMetadataCache;
+  private final long cacheGeneration;
+  // the cached ids of the data chunks of the blob, or null if they were not cached.
+  private final CompositeBlobInfo cachedChunkIds;
+  // the range of the blob requested, or null if the whole blob is requested.
+  private final ByteRange range;
+  // for a composite blob whose sizes are known, the offset within the first data chunk fetched at which the range
+  // starts, the offset within the last data chunk fetched at which it ends, the size of the data chunks and the size
+  // of the last data chunk fetched.
+  private long firstDataChunkStartOffset = 0;
+  private long lastDataChunkEndOffset = -1;
+  private long dataChunkSize = -1;
+  private long lastDataChunkSize = -1;
+  // whether the range has to be cut out of the data chunks as they are written out, because the sizes of the
+  // composite blob are not known.
+  private boolean sliceRangeOnWrite = false;
 
+  static final double CHUNK_TIME_EWMA_WEIGHT = 0.2;
   private static final Logger logger = LoggerFactory.getLogger(GetBlobOperation.class);
 
   /**
@@ -105,24 +153,34 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
    * @param clusterMap the {@link ClusterMap} of the cluster
    * @param responseHandler the {@link ResponseHandler} responsible for failure detection.
    * @param blobIdStr the blob id associated with the operation in string form.
+   * @param range the {@link ByteRange} of the blob to get, or {@code null} to get the whole blob.
    * @param futureResult the future that will contain the result of the operation.
    * @param callback the callback that is to be called when the operation completes.
    * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete operations.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
    * @param blobIdFactory the factory to use to deserialize keys in a metadata chunk.
+   * @param chunkMemoryBudget the {@link ChunkMemoryBudget} to reserve the memory for data chunks from.
+   * @param blobMetadataCache the {@link BlobMetadataCache} to look up and cache the ids of the data chunks in.
    * @param time the Time instance to use.
    * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
   GetBlobOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
-      ResponseHandler responseHandler, String blobIdStr, FutureResult<ReadableStreamChannel> futureResult,
-      Callback<ReadableStreamChannel> callback, OperationCompleteCallback operationCompleteCallback,
-      ReadyForPollCallback readyForPollCallback, BlobIdFactory blobIdFactory, Time time)
+      ResponseHandler responseHandler, String blobIdStr, ByteRange range,
+      FutureResult<ReadableStreamChannel> futureResult, Callback<ReadableStreamChannel> callback,
+      OperationCompleteCallback operationCompleteCallback,
+      ReadyForPollCallback readyForPollCallback, BlobIdFactory blobIdFactory, ChunkMemoryBudget chunkMemoryBudget,
+      BlobMetadataCache blobMetadataCache, Time time)
       throws RouterException {
     super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
     this.blobIdFactory = blobIdFactory;
+    this.chunkMemoryBudget = chunkMemoryBudget;
+    this.blobMetadataCache = blobMetadataCache;
+    this.range = range;
+    cacheGeneration = blobMetadataCache.getGeneration();
+    cachedChunkIds = blobMetadataCache.getChunkIds(blobId.getID(), blobIdFactory);
     firstChunk = new FirstGetChunk(blobId);
   }
 
@@ -135,6 +193,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
    */
   @Override
   void abort(Exception abortCause) {
+    completeTrace(abortCause);
     if (operationCallbackInvoked.compareAndSet(false, true)) {
       operationCompleteCallback.completeOperation(operationFuture, operationCallback, null, abortCause);
     } else {
@@ -143,6 +202,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         getBlobResult.completeRead();
       }
     }
+    releaseAllChunkMemory();
     operationCompleted = true;
   }
 
@@ -182,6 +242,8 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         }
         operationCompleteCallback.completeOperation(operationFuture, operationCallback, getBlobResult, e);
       }
+    } else if (chunk.getChunkException() == null) {
+      chunkFetchTimeEwmaMs = updateEwma(chunkFetchTimeEwmaMs, time.milliseconds() - chunk.fetchStartTimeMs);
     }
     chunk.postCompletionCleanup();
     if (getBlobResult != null) {
@@ -216,6 +278,10 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       return;
     }
     if (operationException.get() == null) {
+      if (firstChunk.isReady() && cachedChunkIds != null) {
+        firstChunk.initializeFromChunkIds(cachedChunkIds);
+        onChunkOperationComplete(firstChunk);
+      }
       if (firstChunk.isReady() || firstChunk.isInProgress()) {
         firstChunk.poll(requestRegistrationCallback);
       }
@@ -232,8 +298,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
             if (dataChunk.isFree() && chunkIdIterator.hasNext()) {
               dataChunk.initialize(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
             }
-            if (dataChunk.isInProgress() || (dataChunk.isReady()
-                && numChunksRetrieved - getBlobResult.getNumChunksWrittenOut() < NonBlockingRouter.MAX_IN_MEM_CHUNKS)) {
+            if (dataChunk.isInProgress() || (dataChunk.isReady() && mayFetchChunk(dataChunk))) {
               dataChunk.poll(requestRegistrationCallback);
               if (dataChunk.isComplete()) {
                 onChunkOperationComplete(dataChunk);
@@ -251,6 +316,89 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     }
   }
 
+  /**
+   * Determines whether a data chunk that is ready may be fetched, and if so, reserves memory for it. A chunk may be
+   * fetched if the number of chunks that are being fetched or are waiting to be written out is within the prefetch
+   * window and the memory for the chunk can be reserved. The chunk that is to be written out next is always fetched,
+   * so that the operation makes progress even if the memory is exhausted.
+   * @param chunk the {@link GetChunk} that is ready.
+   * @return {@code true} if the chunk may be fetched.
+   */
+  private boolean mayFetchChunk(GetChunk chunk) {
+    if (chunkIndexToReservedBytes.containsKey(chunk.chunkIndex)) {
+      return true;
+    }
+    boolean isNextToWriteOut = chunk.chunkIndex == getBlobResult.indexOfNextChunkToWriteOut;
+    if (!isNextToWriteOut && chunkIndexToReservedBytes.size() >= getPrefetchWindow()) {
+      return false;
+    }
+    long bytesToReserve = routerConfig.routerMaxPutChunkSizeBytes;
+    if (!chunkMemoryBudget.tryReserve(bytesToReserve, isNextToWriteOut)) {
+      routerMetrics.getChunkMemoryExhaustedCount.inc();
+      return false;
+    }
+    chunkIndexToReservedBytes.put(chunk.chunkIndex, bytesToReserve);
+    return true;
+  }
+
+  /**
+   * Changes the memory reserved for a data chunk to the actual size of the chunk.
+   * @param chunkIndex the index of the chunk.
+   * @param chunkSize the size of the chunk in bytes.
+   */
+  private void adjustChunkMemory(int chunkIndex, long chunkSize) {
+    Long reservedBytes = chunkIndexToReservedBytes.put(chunkIndex, chunkSize);
+    if (reservedBytes != null) {
+      chunkMemoryBudget.release(reservedBytes);
+    }
+    chunkMemoryBudget.tryReserve(chunkSize, true);
+  }
+
+  /**
+   * Releases the memory reserved for a data chunk, if any.
+   * @param chunkIndex the index of the chunk.
+   */
+  private void releaseChunkMemory(int chunkIndex) {
+    Long reservedBytes = chunkIndexToReservedBytes.remove(chunkIndex);
+    if (reservedBytes != null) {
+      chunkMemoryBudget.release(reservedBytes);
+    }
+  }
+
+  /**
+   * Releases the memory reserved for all the data chunks of this operation.
+   */
+  private void releaseAllChunkMemory() {
+    for (Integer chunkIndex : chunkIndexToReservedBytes.keySet()) {
+      releaseChunkMemory(chunkIndex);
+    }
+  }
+
+  /**
+   * Computes the number of data chunks to fetch ahead of the caller. In order for the caller to never wait on the
+   * network, as many chunks as the caller consumes in the time taken to fetch a chunk need to be in flight, along with
+   * the one being consumed. Until both times are known, the maximum window is used.
+   * @return the prefetch window, between the configured minimum and maximum number of chunks.
+   */
+  int getPrefetchWindow() {
+    int maxChunks = routerConfig.routerGetPrefetchMaxChunks;
+    double drainTimeMs = chunkDrainTimeEwmaMs;
+    if (chunkFetchTimeEwmaMs < 0 || drainTimeMs <= 0) {
+      return maxChunks;
+    }
+    long window = (long) Math.ceil(chunkFetchTimeEwmaMs / drainTimeMs) + 1;
+    return (int) Math.max(routerConfig.routerGetPrefetchMinChunks, Math.min(maxChunks, window));
+  }
+
+  /**
+   * @param average the current moving average, or a negative value if there is none.
+   * @param sample the new sample.
+   * @return the moving average after including the given sample.
+   */
+  private static double updateEwma(double average, long sample) {
+    return average < 0 ? sample : CHUNK_TIME_EWMA_WEIGHT * sample + (1 - CHUNK_TIME_EWMA_WEIGHT) * average;
+  }
+
   // ReadableStreamChannel implementation:
 
   /**
@@ -276,18 +424,44 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     private int indexOfNextChunkToWriteOut = 0;
     // whether this object has called the readIntoCallback yet.
     private final AtomicBoolean readIntoCallbackCalled = new AtomicBoolean(false);
-    // the callback that is passed into the asyncWritableChannel write() operation.
-    private final Callback<Long> chunkAsyncWriteCallback = new Callback<Long>() {
+    // the number of bytes of the blob that have been handed to maybeWriteToChannel so far, used when the range is cut
+    // out of the data chunks as they are written out.
+    private long blobBytesSeen = 0;
+    // whether any chunk has been handed to the asyncWritableChannel yet.
+    private boolean chunkWriteStarted = false;
+
+    /**
+     * The callback that is passed into the asyncWritableChannel write() operation of a chunk.
+     */
+    private class ChunkAsyncWriteCallback implements Callback<Long> {
+      private final int chunkIndex;
+      private final long writeStartTimeMs;
+
+      /**
+       * @param chunkIndex the index of the chunk that is being written out.
+       * @param writeStartTimeMs the time at which the chunk was handed to the asyncWritableChannel.
+       */
+      ChunkAsyncWriteCallback(int chunkIndex, long writeStartTimeMs) {
+        this.chunkIndex = chunkIndex;
+        this.writeStartTimeMs = writeStartTimeMs;
+      }
+
       @Override
       public void onCompletion(Long result, Exception exception) {
         bytesWritten += result;
         if (exception != null) {
           operationException.set(exception);
         }
+        releaseChunkMemory(chunkIndex);
+        // the caller only starts consuming a chunk once it is done with the previous one.
+        long nowMs = time.milliseconds();
+        chunkDrainTimeEwmaMs =
+            updateEwma(chunkDrainTimeEwmaMs, nowMs - Math.max(writeStartTimeMs, lastChunkWriteCompletionTimeMs));
+        lastChunkWriteCompletionTimeMs = nowMs;
         numChunksWrittenOut++;
         readyForPollCallback.onPollReady();
       }
-    };
+    }
 
     /**
      * The bytes that will be read from this channel is not known until the read is complete.
@@ -358,15 +532,58 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       if (firstChunk.isComplete() && readCalled) {
         while (operationException.get() == null && chunkIndexToBuffer.containsKey(indexOfNextChunkToWriteOut)) {
           ByteBuffer chunkBuf = chunkIndexToBuffer.remove(indexOfNextChunkToWriteOut);
-          asyncWritableChannel.write(chunkBuf, chunkAsyncWriteCallback);
+          if (sliceRangeOnWrite) {
+            chunkBuf = sliceRange(chunkBuf);
+            if (!chunkBuf.hasRemaining()) {
+              // none of the chunk is in the range.
+              releaseChunkMemory(indexOfNextChunkToWriteOut);
+              numChunksWrittenOut++;
+              indexOfNextChunkToWriteOut++;
+              continue;
+            }
+          }
+          long nowMs = time.milliseconds();
+          if (!chunkWriteStarted) {
+            routerMetrics.getBlobTimeToFirstByteMs.update(nowMs - submissionTimeMs);
+            chunkWriteStarted = true;
+          }
+          asyncWritableChannel.write(chunkBuf, new ChunkAsyncWriteCallback(indexOfNextChunkToWriteOut, nowMs));
           indexOfNextChunkToWriteOut++;
         }
+        if (operationException.get() == null && numChunksWrittenOut == numChunksTotal && sliceRangeOnWrite
+            && !chunkWriteStarted) {
+          operationException.set(new RouterException("Range " + range + " cannot be satisfied by a blob of size "
+              + blobBytesSeen, RouterErrorCode.RangeNotSatisfiable));
+        }
         if (operationException.get() != null || numChunksWrittenOut == numChunksTotal) {
           completeRead();
         }
       }
     }
 
+    /**
+     * Cuts the part of the requested range that lies in the given data chunk out of it. The data chunks must be handed
+     * to this method in order.
+     * @param chunkBuf the buffer holding the next data chunk of the blob.
+     * @return the part of the chunk that lies in the range, which may be empty.
+     */
+    private ByteBuffer sliceRange(ByteBuffer chunkBuf) {
+      long chunkStartOffset = blobBytesSeen;
+      blobBytesSeen += chunkBuf.remaining();
+      long rangeEndOffset =
+          range.getType() == ByteRange.ByteRangeType.OFFSET_RANGE ? range.getEndOffset() : Long.MAX_VALUE;
+      long sliceStart = Math.max(range.getStartOffset() - chunkStartOffset, 0);
+      long sliceEnd = Math.min(rangeEndOffset - chunkStartOffset + 1, chunkBuf.remaining());
+      ByteBuffer slice = chunkBuf.duplicate();
+      if (sliceStart >= sliceEnd) {
+        slice.limit(slice.position());
+      } else {
+        slice.limit(slice.position() + (int) sliceEnd);
+        slice.position(slice.position() + (int) sliceStart);
+      }
+      return slice.slice();
+    }
+
     /**
      * Complete the read from this {@link ReadableStreamChannel} by invoking the callback and marking the future.
      */
@@ -376,8 +593,17 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         if (readIntoCallback != null) {
           readIntoCallback.onCompletion(bytesWritten, operationException.get());
         }
-        routerMetrics.getBlobOperationTotalTimeMs.update(time.milliseconds() - submissionTimeMs);
+        long totalTimeMs = time.milliseconds() - submissionTimeMs;
+        routerMetrics.getBlobOperationTotalTimeMs.update(totalTimeMs);
+        if (operationException.get() == null && totalTimeMs > 0) {
+          routerMetrics.getBlobThroughputBytesPerSec.update(bytesWritten * Time.MsPerSec / totalTimeMs);
+        }
+        if (dataChunks != null) {
+          routerMetrics.getBlobPrefetchWindowChunks.update(getPrefetchWindow());
+        }
+        completeTrace(operationException.get());
       }
+      releaseAllChunkMemory();
       operationCompleted = true;
     }
   }
@@ -403,6 +629,10 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     protected boolean successfullyDeserialized;
     // map of correlation id to the request metadata for every request issued for this operation.
     protected final Map<Integer, GetRequestInfo> correlationIdToGetRequestInfo = new TreeMap<>();
+    // whether a hedged request has been allowed for the current chunk.
+    private boolean hedged;
+    // the time at which the first request for the current chunk was sent, or -1 if none has been sent yet.
+    private long fetchStartTimeMs;
     // the state of the chunk.
     protected volatile ChunkState state;
 
@@ -445,9 +675,18 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       chunkException = null;
       successfullyDeserialized = false;
       correlationIdToGetRequestInfo.clear();
+      hedged = false;
+      fetchStartTimeMs = -1;
       state = ChunkState.Free;
     }
 
+    /**
+     * @return the name of the spans of the requests for the current chunk in the trace of the operation.
+     */
+    String getTraceSpanName() {
+      return chunkIndex == -1 ? "BlobRequest" : "DataChunkRequest-" + chunkIndex;
+    }
+
     /**
      * Assign a chunk of the overall blob to this GetChunk.
      * @param index the index of the chunk of the overall blob that needs to be fetched through this GetChunk.
@@ -456,12 +695,62 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     void initialize(int index, BlobId id) {
       chunkIndex = index;
       chunkBlobId = id;
-      chunkOperationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, chunkBlobId.getPartition(),
-          routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
-          routerConfig.routerGetRequestParallelism);
+      chunkOperationTracker = getOperationTracker(chunkBlobId.getPartition());
       state = ChunkState.Ready;
     }
 
+    /**
+     * @return the {@link ByteRange} of the current chunk to fetch, or {@code null} if the whole chunk is to be fetched.
+     */
+    ByteRange getChunkRange() {
+      if (dataChunkSize == -1) {
+        return null;
+      }
+      long startOffset = chunkIndex == 0 ? firstDataChunkStartOffset : 0;
+      long endOffset = chunkIndex == numChunksTotal - 1 ? lastDataChunkEndOffset : dataChunkSize - 1;
+      return startOffset == 0 && endOffset == getFullChunkSize() - 1 ? null
+          : ByteRange.fromOffsetRange(startOffset, endOffset);
+    }
+
+    /**
+     * @return the {@link ByteRange} of the current chunk to ask the servers for, or {@code null} if the whole chunk is
+     *         to be asked for.
+     */
+    ByteRange getRequestRange() {
+      return routerConfig.routerGetRangeRequestEnabled ? getChunkRange() : null;
+    }
+
+    /**
+     * @return the size of the whole of the current data chunk. Only valid if the sizes of the blob are known.
+     */
+    private long getFullChunkSize() {
+      return chunkIndex == numChunksTotal - 1 ? lastDataChunkSize : dataChunkSize;
+    }
+
+    /**
+     * Cuts the range of the current chunk that is needed out of the content returned by a server, if the server
+     * returned the whole chunk.
+     * @param content the content returned by the server.
+     * @return the content of the range of the chunk that is needed.
+     * @throws IOException if the size of the content matches neither the range nor the whole chunk.
+     */
+    private ByteBuffer cutChunkRange(ByteBuffer content)
+        throws IOException {
+      ByteRange chunkRange = getChunkRange();
+      if (chunkRange == null || content.remaining() == chunkRange.getRangeSize()) {
+        return content;
+      }
+      if (content.remaining() != getFullChunkSize()) {
+        throw new IOException(
+            "Server returned " + content.remaining() + " bytes for range " + chunkRange + " of chunk " + chunkIndex
+                + " of size " + getFullChunkSize() + " of blob " + blobId);
+      }
+      if (getRequestRange() != null) {
+        routerMetrics.getBlobRangeIgnoredCount.inc();
+      }
+      return sliceContent(content, chunkRange);
+    }
+
     /**
      * return the {@link RouterException} associated with the operation on this chunk, if any.
      * @return the {@link RouterException} associated with the operation on this chunk, if any.
@@ -484,10 +773,22 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       cleanupExpiredInFlightRequests();
       checkAndMaybeComplete();
       if (!isComplete()) {
+        maybeHedge();
         fetchRequests(requestRegistrationCallback);
       }
     }
 
+    /**
+     * Allow one more request to be sent if the requests in flight have been pending for longer than requests to the
+     * partition usually take. This is done at most once for a chunk.
+     */
+    private void maybeHedge() {
+      if (!hedged && isHedgeDue(chunkBlobId.getPartition(), correlationIdToGetRequestInfo)
+          && chunkOperationTracker.hedge()) {
+        hedged = true;
+      }
+    }
+
     /**
      * Clean up requests sent out by this operation that have now timed out.
      */
@@ -502,6 +803,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
           responseHandler.onRequestResponseException(entry.getValue().replicaId,
               new IOException("Timed out waiting for a response"));
           chunkException = new RouterException("Timed out waiting for a response", RouterErrorCode.OperationTimedOut);
+          traceRequest(getTraceSpanName(), entry.getValue(), null);
           inFlightRequestsIterator.remove();
         } else {
           // the entries are ordered by correlation id and time. Break on the first request that has not timed out.
@@ -517,14 +819,21 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       Iterator<ReplicaId> replicaIterator = chunkOperationTracker.getReplicaIterator();
       while (replicaIterator.hasNext()) {
         ReplicaId replicaId = replicaIterator.next();
+        boolean isHedge = chunkOperationTracker.isNextSendHedge();
         replicaIterator.remove();
         String hostname = replicaId.getDataNodeId().getHostname();
         Port port = replicaId.getDataNodeId().getPortToConnectTo();
-        GetRequest getRequest = createGetRequest(chunkBlobId, getOperationFlag(), getGetOptions());
-        RequestInfo request = new RequestInfo(hostname, port, getRequest);
+        GetRequest getRequest = createGetRequest(chunkBlobId, getOperationFlag(), getGetOptions(), getRequestRange());
+        RequestInfo request = new RequestInfo(hostname, port, getRequest, getRequest.getCorrelationId());
         int correlationId = getRequest.getCorrelationId();
-        correlationIdToGetRequestInfo.put(correlationId, new GetRequestInfo(replicaId, time.milliseconds()));
+        correlationIdToGetRequestInfo.put(correlationId, createGetRequestInfo(replicaId, isHedge));
         correlationIdToGetChunk.put(correlationId, this);
+        if (fetchStartTimeMs == -1) {
+          fetchStartTimeMs = time.milliseconds();
+        }
+        if (isHedge) {
+          routerMetrics.hedgedGetRequestRate.mark();
+        }
         requestRegistrationCallback.registerRequestToSend(GetBlobOperation.this, request);
         if (RouterUtils.isRemoteReplica(routerConfig, replicaId)) {
           logger.trace("Making request to a remote replica in", replicaId.getDataNodeId().getDatacenterName());
@@ -562,7 +871,11 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         throws IOException, MessageFormatException {
       if (!successfullyDeserialized) {
         BlobData blobData = MessageFormatRecord.deserializeBlob(payload);
-        chunkIndexToBuffer.put(chunkIndex, blobData.getStream().getByteBuffer());
+        ByteBuffer content = blobData.getStream().getByteBuffer();
+        ByteBuffer chunkBuf = cutChunkRange(content);
+        // the memory of the whole content stays held by the chunk until it is released.
+        adjustChunkMemory(chunkIndex, content.remaining());
+        chunkIndexToBuffer.put(chunkIndex, chunkBuf);
         numChunksRetrieved++;
         successfullyDeserialized = true;
       } else {
@@ -590,7 +903,11 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
       routerMetrics.getDataNodeBasedMetrics(getRequestInfo.replicaId.getDataNodeId()).getRequestLatencyMs
           .update(requestLatencyMs);
+      if (responseInfo.getError() == null) {
+        routerMetrics.updateGetRequestLatency(chunkBlobId.getPartition(), requestLatencyMs);
+      }
       if (responseInfo.getError() != null) {
+        traceRequest(getTraceSpanName(), getRequestInfo, null);
         chunkException = new RouterException("Operation timed out", RouterErrorCode.OperationTimedOut);
         responseHandler.onRequestResponseException(getRequestInfo.replicaId, new IOException("NetworkClient error"));
         onErrorResponse(getRequestInfo.replicaId);
@@ -598,11 +915,11 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         try {
           GetResponse getResponse = GetResponse
               .readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())), clusterMap);
+          traceRequest(getTraceSpanName(), getRequestInfo, getResponse);
           if (getResponse.getCorrelationId() != correlationId) {
-            // The NetworkClient associates a response with a request based on the fact that only one request is sent
-            // out over a connection id, and the response received on a connection id must be for the latest request
-            // sent over it. The check here ensures that is indeed the case. If not, log an error and fail this request.
-            // There is no other way to handle it.
+            // The NetworkClient associates a response with a request either because it is the only request in flight on
+            // its connection id, or by the correlation id in the response. The check here ensures that is indeed the
+            // case. If not, log an error and fail this request. There is no other way to handle it.
             routerMetrics.unknownReplicaResponseError.inc();
             chunkException = new RouterException(
                 "The correlation id in the GetResponse " + getResponse.getCorrelationId()
@@ -645,6 +962,9 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
           responseHandler.onRequestResponseError(getRequestInfo.replicaId, getError);
           if (getError == ServerErrorCode.No_Error) {
             handleBody(getResponse.getInputStream());
+            if (getRequestInfo.isHedge && !chunkOperationTracker.hasSucceeded()) {
+              routerMetrics.hedgedGetRequestWinCount.inc();
+            }
             chunkOperationTracker.onResponse(getRequestInfo.replicaId, true);
             if (RouterUtils.isRemoteReplica(routerConfig, getRequestInfo.replicaId)) {
               logger.trace("Cross colo request successful for remote replica in ",
@@ -654,7 +974,8 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
           } else {
             // process and set the most relevant exception.
             processServerError(getError);
-            if (getError == ServerErrorCode.Blob_Deleted || getError == ServerErrorCode.Blob_Expired) {
+            if (getError == ServerErrorCode.Blob_Deleted || getError == ServerErrorCode.Blob_Expired
+                || getError == ServerErrorCode.Range_Not_Satisfiable) {
               // this is a successful response and one that completes the operation regardless of whether the
               // success target has been reached or not.
               chunkCompleted = true;
@@ -692,13 +1013,14 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
 
     /**
      * Set the exception associated with this chunk operation.
-     * A {@link ServerErrorCode#Blob_Deleted} or {@link ServerErrorCode#Blob_Expired} error overrides any other
-     * previously received exception.
+     * A {@link ServerErrorCode#Blob_Deleted}, {@link ServerErrorCode#Blob_Expired} or
+     * {@link ServerErrorCode#Range_Not_Satisfiable} error overrides any other previously received exception.
      * @param exception the {@link RouterException} to possibly set.
      */
     void setChunkException(RouterException exception) {
       if (chunkException == null || exception.getErrorCode() == RouterErrorCode.BlobDeleted
-          || exception.getErrorCode() == RouterErrorCode.BlobExpired) {
+          || exception.getErrorCode() == RouterErrorCode.BlobExpired
+          || exception.getErrorCode() == RouterErrorCode.RangeNotSatisfiable) {
         chunkException = exception;
       }
     }
@@ -732,12 +1054,28 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     }
   }
 
+  /**
+   * Cuts a range out of the content of a chunk.
+   * @param content the content of the chunk.
+   * @param resolvedRange the {@link ByteRange} to cut out, resolved against the size of the content.
+   * @return a buffer over the range of the content.
+   */
+  private static ByteBuffer sliceContent(ByteBuffer content, ByteRange resolvedRange) {
+    ByteBuffer slice = content.duplicate();
+    slice.limit(content.position() + (int) resolvedRange.getEndOffset() + 1);
+    slice.position(content.position() + (int) resolvedRange.getStartOffset());
+    return slice.slice();
+  }
+
   /**
    * Special GetChunk used to retrieve and hold the first chunk of a blob. The first chunk is special because it
    * could either be a metadata chunk of a composite blob, or the single chunk of a simple blob,
    * and whether a chunk is composite or simple can only be determined after the first chunk is fetched.
    */
   private class FirstGetChunk extends GetChunk {
+    // the exception to complete this chunk with if the requested range cannot be satisfied by a composite blob.
+    private RouterException rangeException;
+
     /**
      * Construct a FirstGetChunk and initialize it with the given {@link BlobId}.
      * @param blobId the {@link BlobId} to assign to this chunk. This will be the id of the overall blob.
@@ -762,6 +1100,62 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       return GetOptions.None;
     }
 
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The first chunk is fetched with the range requested for the blob. The server applies it if the blob turns out to
+     * be simple, and returns the metadata chunk whole otherwise. A range from a start offset is never asked for, as
+     * whether the server applied it could not be told from the size of what it returns.
+     */
+    @Override
+    ByteRange getRequestRange() {
+      return routerConfig.routerGetRangeRequestEnabled && range != null
+          && range.getType() != ByteRange.ByteRangeType.FROM_START_OFFSET ? range : null;
+    }
+
+    /**
+     * Cuts the range requested out of the content of a simple blob returned by a server, if the server returned the
+     * whole blob. Whether it did is told from the size of the content: a server that applied the range returns no more
+     * than the size of the range.
+     * @param content the content returned by the server.
+     * @return the content of the range requested, or the whole content if the whole blob is requested.
+     */
+    private ByteBuffer cutBlobRange(ByteBuffer content) {
+      if (range == null) {
+        return content;
+      }
+      ByteRange requestRange = getRequestRange();
+      if (requestRange != null) {
+        long maxRangeSize = requestRange.getType() == ByteRange.ByteRangeType.OFFSET_RANGE ? requestRange.getRangeSize()
+            : requestRange.getLastNBytes();
+        if (content.remaining() <= maxRangeSize) {
+          return content;
+        }
+        routerMetrics.getBlobRangeIgnoredCount.inc();
+      }
+      try {
+        return sliceContent(content, range.toResolvedByteRange(content.remaining()));
+      } catch (RouterException e) {
+        rangeException = e;
+        return content;
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * A successful response for the metadata chunk of a composite blob that cannot satisfy the requested range
+     * completes this chunk with the range error.
+     */
+    @Override
+    void checkAndMaybeComplete() {
+      super.checkAndMaybeComplete();
+      if (isComplete() && rangeException != null) {
+        chunkException = rangeException;
+        operationException.set(rangeException);
+      }
+    }
+
     /**
      * {@inheritDoc}
      * <br>
@@ -777,19 +1171,18 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         chunkIndexToBuffer = new TreeMap<>();
         if (blobType == BlobType.MetadataBlob) {
           ByteBuffer serializedMetadataContent = blobData.getStream().getByteBuffer();
-          List<StoreKey> keys =
-              MetadataContentSerDe.deserializeMetadataContentRecord(serializedMetadataContent, blobIdFactory);
-          chunkIdIterator = keys.listIterator();
-          numChunksTotal = keys.size();
-          dataChunks = new GetChunk[Math.min(keys.size(), NonBlockingRouter.MAX_IN_MEM_CHUNKS)];
-          for (int i = 0; i < dataChunks.length; i++) {
-            dataChunks[i] = new GetChunk(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
+          blobMetadataCache.putChunkIds(blobId.getID(), serializedMetadataContent, cacheGeneration);
+          try {
+            initializeDataChunks(
+                MetadataContentSerDe.deserializeCompositeBlobInfo(serializedMetadataContent, blobIdFactory));
+          } catch (RouterException e) {
+            rangeException = e;
           }
         } else {
           chunkIdIterator = null;
           numChunksTotal = 1;
           dataChunks = null;
-          chunkIndexToBuffer.put(0, blobData.getStream().getByteBuffer());
+          chunkIndexToBuffer.put(0, cutBlobRange(blobData.getStream().getByteBuffer()));
           numChunksRetrieved = 1;
         }
         successfullyDeserialized = true;
@@ -801,6 +1194,54 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       }
     }
 
+    /**
+     * Complete this chunk with the cached ids of the data chunks of the blob, instead of fetching the metadata chunk.
+     * @param compositeBlobInfo the {@link CompositeBlobInfo} holding the ids of the data chunks of the blob.
+     */
+    void initializeFromChunkIds(CompositeBlobInfo compositeBlobInfo) {
+      chunkIndexToBuffer = new TreeMap<>();
+      try {
+        initializeDataChunks(compositeBlobInfo);
+      } catch (RouterException e) {
+        chunkException = e;
+      }
+      successfullyDeserialized = true;
+      state = ChunkState.Complete;
+    }
+
+    /**
+     * Initialize the {@link GetChunk}s that fetch the data chunks of a composite blob. If a range is requested and the
+     * sizes of the blob are known, only the data chunks that overlap the range are fetched.
+     * @param compositeBlobInfo the {@link CompositeBlobInfo} holding the ids of the data chunks of the blob.
+     * @throws RouterException if the requested range cannot be satisfied by the blob.
+     */
+    private void initializeDataChunks(CompositeBlobInfo compositeBlobInfo)
+        throws RouterException {
+      List<StoreKey> keys = compositeBlobInfo.getKeys();
+      if (range != null && compositeBlobInfo.hasSizes()) {
+        ByteRange resolvedRange = range.toResolvedByteRange(compositeBlobInfo.getTotalSize());
+        dataChunkSize = compositeBlobInfo.getChunkSize();
+        int firstChunkIndex = (int) (resolvedRange.getStartOffset() / dataChunkSize);
+        int lastChunkIndex = (int) (resolvedRange.getEndOffset() / dataChunkSize);
+        firstDataChunkStartOffset = resolvedRange.getStartOffset() - firstChunkIndex * dataChunkSize;
+        lastDataChunkEndOffset = resolvedRange.getEndOffset() - lastChunkIndex * dataChunkSize;
+        lastDataChunkSize = Math.min(dataChunkSize, compositeBlobInfo.getTotalSize() - lastChunkIndex * dataChunkSize);
+        keys = keys.subList(firstChunkIndex, lastChunkIndex + 1);
+      } else if (range != null) {
+        if (range.getType() == ByteRange.ByteRangeType.LAST_N_BYTES) {
+          throw new RouterException("Range " + range + " needs the size of the blob, which is not recorded in the"
+              + " metadata of composite blob " + blobId, RouterErrorCode.RangeNotSatisfiable);
+        }
+        sliceRangeOnWrite = true;
+      }
+      chunkIdIterator = keys.listIterator();
+      numChunksTotal = keys.size();
+      dataChunks = new GetChunk[Math.min(keys.size(), routerConfig.routerGetPrefetchMaxChunks)];
+      for (int i = 0; i < dataChunks.length; i++) {
+        dataChunks[i] = new GetChunk(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
+      }
+    }
+
     /**
      * {@inheritDoc}
      * <br>
@@ -820,6 +1261,10 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         case Blob_Not_Found:
           setChunkException(new RouterException("Server returned: " + errorCode, RouterErrorCode.BlobDoesNotExist));
           break;
+        case Range_Not_Satisfiable:
+          setChunkException(
+              new RouterException("Server returned: " + errorCode, RouterErrorCode.RangeNotSatisfiable));
+          break;
         default:
           setChunkException(
               new RouterException("Server returned: " + errorCode, RouterErrorCode.UnexpectedInternalError));
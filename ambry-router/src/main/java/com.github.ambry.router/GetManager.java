@@ -18,6 +18,7 @@ import com.github.ambry.commons.BlobIdFactory;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.network.RequestInfo;
 import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.protocol.GetRequest;
@@ -29,13 +30,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * GetManager manages GetBlob and GetBlobInfo operations. This is just a template for now.
- * These methods have to be thread safe.
+ * GetManager manages GetBlob and GetBlobInfo operations, and {@link BatchGetBlobInfoOperation}s. This is just a
+ * template for now. These methods have to be thread safe.
  */
 class GetManager {
   private static final Logger logger = LoggerFactory.getLogger(GetManager.class);
@@ -47,6 +49,24 @@ class GetManager {
   // Because there is a guaranteed response from the NetworkClient for every request sent out, entries
   // get cleaned up periodically.
   private final Map<Integer, GetOperation> correlationIdToGetOperation = new HashMap<Integer, GetOperation>();
+  private final Set<BatchGetBlobInfoOperation> batchGetBlobInfoOperations;
+  private final Map<Integer, BatchGetBlobInfoOperation> correlationIdToBatchGetBlobInfoOperation =
+      new HashMap<Integer, BatchGetBlobInfoOperation>();
+  // gets of whole blobs that other gets of the same blob can still join, if get coalescing is enabled.
+  private final ConcurrentMap<String, CoalescedGetBlob> blobIdToCoalescedGetBlob =
+      new ConcurrentHashMap<String, CoalescedGetBlob>();
+  // coalesced gets whose subscribers may still have to be dropped for holding up the others.
+  private final Set<CoalescedGetBlob> coalescedGetBlobs =
+      Collections.newSetFromMap(new ConcurrentHashMap<CoalescedGetBlob, Boolean>());
+  private final CoalescedGetBlob.GetBlobSubmitter uncoalescedGetBlobSubmitter =
+      new CoalescedGetBlob.GetBlobSubmitter() {
+        @Override
+        public void submitGetBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+          operationCompleteCallback.registerOperation();
+          submitGetBlobOperation(blobId, null, null, false, new FutureResult<ReadableStreamChannel>(), callback,
+              false);
+        }
+      };
 
   // shared by all GetOperations
   private final ClusterMap clusterMap;
@@ -56,6 +76,8 @@ class GetManager {
   private final NonBlockingRouterMetrics routerMetrics;
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
+  private final ChunkMemoryBudget chunkMemoryBudget;
+  private final BlobMetadataCache blobMetadataCache;
 
   private class GetRequestRegistrationCallbackImpl implements RequestRegistrationCallback<GetOperation> {
     private List<RequestInfo> requestListToFill;
@@ -72,6 +94,25 @@ class GetManager {
   private final GetRequestRegistrationCallbackImpl requestRegistrationCallback =
       new GetRequestRegistrationCallbackImpl();
 
+  /**
+   * Used by a {@link BatchGetBlobInfoOperation} to associate a {@code CorrelationId} to a
+   * {@link BatchGetBlobInfoOperation}.
+   */
+  private class BatchGetBlobInfoRequestRegistrationCallbackImpl
+      implements RequestRegistrationCallback<BatchGetBlobInfoOperation> {
+    private List<RequestInfo> requestListToFill;
+
+    @Override
+    public void registerRequestToSend(BatchGetBlobInfoOperation batchGetBlobInfoOperation, RequestInfo requestInfo) {
+      requestListToFill.add(requestInfo);
+      correlationIdToBatchGetBlobInfoOperation
+          .put(((RequestOrResponse) requestInfo.getRequest()).getCorrelationId(), batchGetBlobInfoOperation);
+    }
+  }
+
+  private final BatchGetBlobInfoRequestRegistrationCallbackImpl batchRequestRegistrationCallback =
+      new BatchGetBlobInfoRequestRegistrationCallbackImpl();
+
   /**
    * Create a GetManager
    * @param clusterMap The {@link ClusterMap} of the cluster.
@@ -81,11 +122,16 @@ class GetManager {
    * @param operationCompleteCallback The {@link OperationCompleteCallback} to use to complete operations.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
+   * @param chunkMemoryBudget The {@link ChunkMemoryBudget} to reserve the memory for the data chunks of get operations
+   *                          from.
+   * @param blobMetadataCache The {@link BlobMetadataCache} in which get operations look up and cache the metadata of
+   *                          blobs.
    * @param time The {@link Time} instance to use.
    */
   GetManager(ClusterMap clusterMap, ResponseHandler responseHandler, RouterConfig routerConfig,
       NonBlockingRouterMetrics routerMetrics, OperationCompleteCallback operationCompleteCallback,
-      ReadyForPollCallback readyForPollCallback, Time time) {
+      ReadyForPollCallback readyForPollCallback, ChunkMemoryBudget chunkMemoryBudget,
+      BlobMetadataCache blobMetadataCache, Time time) {
     this.clusterMap = clusterMap;
     blobIdFactory = new BlobIdFactory(clusterMap);
     this.responseHandler = responseHandler;
@@ -93,21 +139,39 @@ class GetManager {
     this.routerMetrics = routerMetrics;
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
+    this.chunkMemoryBudget = chunkMemoryBudget;
+    this.blobMetadataCache = blobMetadataCache;
     this.time = time;
     getOperations = Collections.newSetFromMap(new ConcurrentHashMap<GetOperation, Boolean>());
+    batchGetBlobInfoOperations =
+        Collections.newSetFromMap(new ConcurrentHashMap<BatchGetBlobInfoOperation, Boolean>());
   }
 
   /**
-   * Submit an operation to get the BlobInfo associated with a blob asynchronously.
+   * Submit an operation to get the BlobInfo associated with a blob asynchronously. If the BlobInfo is cached, the
+   * operation is completed right away.
    * @param blobId the blobId for which the BlobInfo is being requested, in string form.
+   * @param trace the {@link RequestTrace} of the request that the operation is a part of, or {@code null} if it is not
+   *              traced.
+   * @param sampleTrace {@code true} if the operation is not part of a request traced by the caller and should be
+   *                    sampled by the router instead.
    * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
    * @param callback the {@link Callback} object to be called on completion of the operation.
    */
-  void submitGetBlobInfoOperation(String blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
+  void submitGetBlobInfoOperation(String blobId, RequestTrace trace, boolean sampleTrace,
+      FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
+    BlobInfo cachedBlobInfo = blobMetadataCache.getBlobInfo(blobId);
+    if (cachedBlobInfo != null) {
+      routerMetrics.operationDequeuingRate.mark();
+      routerMetrics.getBlobInfoOperationLatencyMs.update(0);
+      operationCompleteCallback.completeOperation(futureResult, callback, cachedBlobInfo, null);
+      return;
+    }
     try {
       GetBlobInfoOperation getBlobInfoOperation =
           new GetBlobInfoOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult,
-              callback, operationCompleteCallback, time);
+              callback, operationCompleteCallback, blobMetadataCache, time);
+      getBlobInfoOperation.setUpTrace(trace, sampleTrace);
       getOperations.add(getBlobInfoOperation);
     } catch (RouterException e) {
       routerMetrics.getBlobInfoErrorCount.inc();
@@ -117,18 +181,81 @@ class GetManager {
     }
   }
 
+  /**
+   * Submit an operation to get the BlobInfo of a number of blobs asynchronously.
+   * @param blobIds the blobIds for which the BlobInfo is being requested, in string form.
+   * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
+   * @param callback the {@link Callback} object to be called on completion of the operation.
+   */
+  void submitGetBlobInfosOperation(List<String> blobIds, FutureResult<GetBlobInfosResult> futureResult,
+      Callback<GetBlobInfosResult> callback) {
+    BatchGetBlobInfoOperation batchGetBlobInfoOperation =
+        new BatchGetBlobInfoOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobIds, futureResult,
+            callback, blobMetadataCache, time);
+    if (batchGetBlobInfoOperation.isOperationComplete()) {
+      // none of the blob ids were valid or had to be fetched.
+      onComplete(batchGetBlobInfoOperation);
+    } else {
+      batchGetBlobInfoOperations.add(batchGetBlobInfoOperation);
+    }
+  }
+
+  /**
+   * Submit an operation to get a blob asynchronously. If get coalescing is enabled and the whole blob is requested, the
+   * get joins the operation in flight for the blob, if there is one that has not returned the blob yet.
+   * @param blobId the blobId for which the BlobInfo is being requested, in string form.
+   * @param range the {@link ByteRange} of the blob requested, or {@code null} for the whole blob.
+   * @param trace the {@link RequestTrace} of the request that the operation is a part of, or {@code null} if it is not
+   *              traced.
+   * @param sampleTrace {@code true} if the operation is not part of a request traced by the caller and should be
+   *                    sampled by the router instead.
+   * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
+   * @param callback the {@link Callback} object to be called on completion of the operation.
+   */
+  void submitGetBlobOperation(String blobId, ByteRange range, RequestTrace trace, boolean sampleTrace,
+      FutureResult<ReadableStreamChannel> futureResult, Callback<ReadableStreamChannel> callback) {
+    submitGetBlobOperation(blobId, range, trace, sampleTrace, futureResult, callback,
+        routerConfig.routerGetCoalescingEnabled);
+  }
+
   /**
    * Submit an operation to get a blob asynchronously.
    * @param blobId the blobId for which the BlobInfo is being requested, in string form.
+   * @param range the {@link ByteRange} of the blob requested, or {@code null} for the whole blob.
+   * @param trace the {@link RequestTrace} of the request that the operation is a part of, or {@code null} if it is not
+   *              traced. Gets that join an operation in flight are not traced.
+   * @param sampleTrace {@code true} if the operation is not part of a request traced by the caller and should be
+   *                    sampled by the router instead.
    * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
    * @param callback the {@link Callback} object to be called on completion of the operation.
+   * @param coalesce {@code true} if the get can be coalesced with other gets of the whole blob.
    */
-  void submitGetBlobOperation(String blobId, FutureResult<ReadableStreamChannel> futureResult,
-      Callback<ReadableStreamChannel> callback) {
+  private void submitGetBlobOperation(String blobId, ByteRange range, RequestTrace trace, boolean sampleTrace,
+      FutureResult<ReadableStreamChannel> futureResult, Callback<ReadableStreamChannel> callback, boolean coalesce) {
+    CoalescedGetBlob coalescedGetBlob = null;
+    if (range == null && coalesce) {
+      coalescedGetBlob = blobIdToCoalescedGetBlob.get(blobId);
+      if (coalescedGetBlob != null && coalescedGetBlob.subscribe(futureResult, callback)) {
+        routerMetrics.getBlobCoalescedRequestCount.inc();
+        routerMetrics.operationDequeuingRate.mark();
+        return;
+      }
+      coalescedGetBlob = new CoalescedGetBlob(blobId, futureResult, callback, blobIdToCoalescedGetBlob, routerMetrics,
+          operationCompleteCallback, uncoalescedGetBlobSubmitter, time, routerConfig.routerRequestTimeoutMs,
+          routerConfig.routerGetCoalescingMaxSubscriberLagChunks);
+      futureResult = coalescedGetBlob.getOperationFuture();
+      callback = coalescedGetBlob;
+    }
     try {
       GetBlobOperation getBlobOperation =
-          new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult, callback,
-              operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+          new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, range, futureResult,
+              callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, chunkMemoryBudget,
+              blobMetadataCache, time);
+      getBlobOperation.setUpTrace(trace, sampleTrace);
+      if (coalescedGetBlob != null) {
+        blobIdToCoalescedGetBlob.put(blobId, coalescedGetBlob);
+        coalescedGetBlobs.add(coalescedGetBlob);
+      }
       getOperations.add(getBlobOperation);
     } catch (RouterException e) {
       routerMetrics.getBlobErrorCount.inc();
@@ -175,6 +302,28 @@ class GetManager {
             new RouterException("Get poll encountered unexpected error", e, RouterErrorCode.UnexpectedInternalError));
       }
     }
+    for (CoalescedGetBlob coalescedGetBlob : coalescedGetBlobs) {
+      coalescedGetBlob.dropStalledSubscribers();
+      if (coalescedGetBlob.isComplete()) {
+        coalescedGetBlobs.remove(coalescedGetBlob);
+      }
+    }
+    batchRequestRegistrationCallback.requestListToFill = requestListToFill;
+    for (BatchGetBlobInfoOperation op : batchGetBlobInfoOperations) {
+      boolean exceptionEncountered = false;
+      try {
+        op.poll(batchRequestRegistrationCallback);
+      } catch (Exception e) {
+        exceptionEncountered = true;
+        op.setOperationException(new RouterException("Batch get poll encountered unexpected error", e,
+            RouterErrorCode.UnexpectedInternalError));
+      }
+      if (exceptionEncountered || op.isOperationComplete()) {
+        if (batchGetBlobInfoOperations.remove(op)) {
+          onComplete(op);
+        }
+      }
+    }
     routerMetrics.getManagerPollTimeMs.update(time.milliseconds() - startTime);
   }
 
@@ -185,6 +334,11 @@ class GetManager {
   void handleResponse(ResponseInfo responseInfo) {
     long startTime = time.milliseconds();
     GetRequest getRequest = (GetRequest) responseInfo.getRequest();
+    if (correlationIdToBatchGetBlobInfoOperation.containsKey(getRequest.getCorrelationId())) {
+      handleBatchResponse(responseInfo,
+          correlationIdToBatchGetBlobInfoOperation.remove(getRequest.getCorrelationId()), startTime);
+      return;
+    }
     GetOperation getOperation = correlationIdToGetOperation.remove(getRequest.getCorrelationId());
     if (getOperations.contains(getOperation)) {
       try {
@@ -202,6 +356,58 @@ class GetManager {
     }
   }
 
+  /**
+   * Hands over a response to the {@link BatchGetBlobInfoOperation} that issued the request.
+   * @param responseInfo the {@link ResponseInfo} containing the response.
+   * @param batchGetBlobInfoOperation the {@link BatchGetBlobInfoOperation} that the request was sent for.
+   * @param startTime the time at which the handling of the response started.
+   */
+  private void handleBatchResponse(ResponseInfo responseInfo, BatchGetBlobInfoOperation batchGetBlobInfoOperation,
+      long startTime) {
+    // If it is still an active operation, hand over the response. Otherwise, ignore.
+    if (batchGetBlobInfoOperations.contains(batchGetBlobInfoOperation)) {
+      boolean exceptionEncountered = false;
+      try {
+        batchGetBlobInfoOperation.handleResponse(responseInfo);
+      } catch (Exception e) {
+        exceptionEncountered = true;
+        batchGetBlobInfoOperation.setOperationException(
+            new RouterException("Batch get handleResponse encountered unexpected error", e,
+                RouterErrorCode.UnexpectedInternalError));
+      }
+      if (exceptionEncountered || batchGetBlobInfoOperation.isOperationComplete()) {
+        if (batchGetBlobInfoOperations.remove(batchGetBlobInfoOperation)) {
+          onComplete(batchGetBlobInfoOperation);
+        }
+      }
+      routerMetrics.getManagerHandleResponseTimeMs.update(time.milliseconds() - startTime);
+    } else {
+      routerMetrics.ignoredResponseCount.inc();
+    }
+  }
+
+  /**
+   * Called when a {@link BatchGetBlobInfoOperation} is completed. Completes the operation by performing the callback.
+   * @param op the {@link BatchGetBlobInfoOperation} that has completed.
+   */
+  private void onComplete(BatchGetBlobInfoOperation op) {
+    Exception e = op.getOperationException();
+    GetBlobInfosResult result = null;
+    if (e == null) {
+      result = op.getOperationResult();
+      for (Exception blobException : result.getFailures().values()) {
+        routerMetrics.getBlobInfoErrorCount.inc();
+        routerMetrics.countError(blobException);
+      }
+    } else {
+      routerMetrics.getBlobInfoErrorCount.inc();
+      routerMetrics.countError(e);
+    }
+    routerMetrics.operationDequeuingRate.mark();
+    routerMetrics.getBlobInfosOperationLatencyMs.update(time.milliseconds() - op.getSubmissionTimeMs());
+    operationCompleteCallback.completeOperation(op.getFutureResult(), op.getCallback(), result, e);
+  }
+
   /**
    * Close the GetManager.
    * Complete all existing get operations.
@@ -211,6 +417,16 @@ class GetManager {
       removeAndAbort(op,
           new RouterException("Aborted operation because Router is closed", RouterErrorCode.RouterClosed));
     }
+    for (BatchGetBlobInfoOperation op : batchGetBlobInfoOperations) {
+      if (batchGetBlobInfoOperations.remove(op)) {
+        Exception e = new RouterException("Aborted operation because Router is closed", RouterErrorCode.RouterClosed);
+        routerMetrics.operationDequeuingRate.mark();
+        routerMetrics.operationAbortCount.inc();
+        routerMetrics.getBlobInfoErrorCount.inc();
+        routerMetrics.countError(e);
+        operationCompleteCallback.completeOperation(op.getFutureResult(), op.getCallback(), null, e);
+      }
+    }
   }
 
   /**
@@ -14,19 +14,24 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
 import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.protocol.GetOptions;
 import com.github.ambry.protocol.GetRequest;
+import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.utils.Time;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +54,14 @@ abstract class GetOperation<T> {
   protected final AtomicReference<Exception> operationException = new AtomicReference<>();
   protected T operationResult;
   protected final long submissionTimeMs;
+  private final long submissionTimeNs;
+  // the trace the operation adds its spans to, or null if the operation is not traced.
+  private RequestTrace trace = null;
+  // true if the operation sampled itself and so completes and records its trace, false if the trace belongs to the
+  // request that the operation is a part of.
+  private boolean ownsTrace = false;
+  private final AtomicBoolean traceCompleted = new AtomicBoolean(false);
+  private boolean requestCreated = false;
 
   private static final Logger logger = LoggerFactory.getLogger(GetOperation.class);
 
@@ -76,9 +89,30 @@ abstract class GetOperation<T> {
     this.operationCallback = operationCallback;
     this.time = time;
     submissionTimeMs = time.milliseconds();
+    submissionTimeNs = time.nanoseconds();
     blobId = RouterUtils.getBlobIdFromString(blobIdStr, clusterMap);
   }
 
+  /**
+   * Sets up the tracing of the operation. Must be called before the operation is polled for the first time.
+   * @param requestTrace the {@link RequestTrace} of the request that the operation is a part of. The operation adds
+   *                     its spans to it, but leaves completing it to the caller. If {@code null}, the operation is not
+   *                     traced unless {@code sample} is set.
+   * @param sample {@code true} if the operation is not part of a request traced by the caller and should instead be
+   *               sampled by the {@link com.github.ambry.metrics.TraceRecorder} of the router, in which case the
+   *               operation completes and records its own trace. {@code requestTrace} is ignored if this is set.
+   */
+  void setUpTrace(RequestTrace requestTrace, boolean sample) {
+    if (sample) {
+      trace = routerMetrics.traceRecorder.startTrace(getClass().getSimpleName() + " " + blobId.getID(),
+          routerConfig.routerTraceSamplingInterval, submissionTimeMs, submissionTimeNs);
+      ownsTrace = true;
+    } else {
+      trace = requestTrace;
+      ownsTrace = false;
+    }
+  }
+
   /**
    * Return the {@link FutureResult} associated with this operation.
    * @return the {@link FutureResult} associated with this operation.
@@ -165,6 +199,46 @@ abstract class GetOperation<T> {
     }
   }
 
+  /**
+   * Create and return the {@link OperationTracker} for a get on the given partition, of the type configured by
+   * {@link RouterConfig#routerGetOperationTrackerType}.
+   * @param partitionId the {@link PartitionId} of the blob or chunk to get.
+   * @return the created {@link OperationTracker}.
+   */
+  protected OperationTracker getOperationTracker(PartitionId partitionId) {
+    if (routerConfig.routerGetOperationTrackerType.equals(AdaptiveOperationTracker.class.getSimpleName())) {
+      return new AdaptiveOperationTracker(routerConfig.routerDatacenterName, partitionId,
+          routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
+          routerConfig.routerGetRequestParallelism, routerMetrics,
+          routerConfig.routerAdaptiveOperationTrackerLatencyHalfLifeMs, time);
+    }
+    return new SimpleOperationTracker(routerConfig.routerDatacenterName, partitionId,
+        routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
+        routerConfig.routerGetRequestParallelism);
+  }
+
+  /**
+   * Determines whether a hedged request should be sent for a get on the given partition. That is the case if hedging
+   * is enabled and the oldest of the given requests in flight has been pending for longer than the configured
+   * percentile of the observed latency of get requests to the partition (and at least the configured minimum delay).
+   * @param partitionId the {@link PartitionId} of the blob or chunk being fetched.
+   * @param requestsInFlight the requests in flight for the blob or chunk, ordered by the time they were sent.
+   * @return {@code true} if a hedged request should be sent.
+   */
+  protected boolean isHedgeDue(PartitionId partitionId, Map<Integer, GetRequestInfo> requestsInFlight) {
+    if (!routerConfig.routerGetHedgingEnabled || requestsInFlight.isEmpty()) {
+      return false;
+    }
+    long nowMs = time.milliseconds();
+    long thresholdMs = routerMetrics.getGetRequestLatencyPercentileMs(partitionId,
+        routerConfig.routerGetHedgingLatencyPercentile, nowMs);
+    if (thresholdMs == -1) {
+      return false;
+    }
+    long oldestStartTimeMs = requestsInFlight.values().iterator().next().startTimeMs;
+    return nowMs - oldestStartTimeMs >= Math.max(thresholdMs, routerConfig.routerGetHedgingMinDelayMs);
+  }
+
   /**
    * Create and return the {@link GetRequest} associated with the given blobId.
    * @return the created {@link GetRequest}.
@@ -173,11 +247,83 @@ abstract class GetOperation<T> {
    * @return the created GetRequest.
    */
   protected GetRequest createGetRequest(BlobId blobId, MessageFormatFlags flag, GetOptions getOptions) {
+    return createGetRequest(blobId, flag, getOptions, null);
+  }
+
+  /**
+   * Create and return the {@link GetRequest} for the given {@link ByteRange} of the blob with the given blobId.
+   * @param blobId The {@link BlobId} for which the {@link GetRequest} is being created.
+   * @param flag The {@link MessageFormatFlags} to be set with the GetRequest.
+   * @param getOptions The {@link GetOptions} to be set with the GetRequest.
+   * @param range The {@link ByteRange} of the blob content to fetch, or {@code null} to fetch the whole content.
+   * @return the created GetRequest.
+   */
+  protected GetRequest createGetRequest(BlobId blobId, MessageFormatFlags flag, GetOptions getOptions,
+      ByteRange range) {
     List<BlobId> blobIds = Collections.singletonList(blobId);
     List<PartitionRequestInfo> partitionRequestInfoList =
         Collections.singletonList(new PartitionRequestInfo(blobId.getPartition(), blobIds));
     return new GetRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname, flag,
-        partitionRequestInfoList, getOptions);
+        partitionRequestInfoList, getOptions, range, trace == null ? 0 : trace.getTraceId());
+  }
+
+  /**
+   * Create and return the {@link GetRequestInfo} for a request that is being sent to the given replica. If the
+   * operation is traced, the time between the submission of the operation and the creation of its first request is
+   * added to the trace.
+   * @param replicaId the replica to which the request is being sent.
+   * @param isHedge {@code true} if this is a hedged request, sent because the other requests were slow.
+   * @return the created GetRequestInfo.
+   */
+  protected GetRequestInfo createGetRequestInfo(ReplicaId replicaId, boolean isHedge) {
+    long startTimeNs = time.nanoseconds();
+    if (trace != null && !requestCreated) {
+      trace.addSpan("RouterQueue", null, submissionTimeNs, startTimeNs);
+    }
+    requestCreated = true;
+    return new GetRequestInfo(replicaId, time.milliseconds(), startTimeNs, isHedge);
+  }
+
+  /**
+   * Adds the span of a request sent to a replica to the trace of the operation, if the operation is traced. The span
+   * covers the request from its creation until its response was received, and is broken down further by the time the
+   * server reports to have spent on the request, if it does.
+   * @param spanName the name of the span.
+   * @param getRequestInfo the {@link GetRequestInfo} of the request.
+   * @param getResponse the {@link GetResponse} received for the request, or {@code null} if none was received.
+   */
+  protected void traceRequest(String spanName, GetRequestInfo getRequestInfo, GetResponse getResponse) {
+    if (trace != null) {
+      RequestTrace.Span span = trace.addSpan(spanName, getRequestInfo.replicaId.getDataNodeId().getHostname(),
+          getRequestInfo.startTimeNs, time.nanoseconds());
+      if (getResponse != null && getResponse.getServerQueueTimeInNs() != -1) {
+        span.setRemoteTimes(getResponse.getServerQueueTimeInNs(), getResponse.getServerProcessingTimeInNs());
+      }
+    }
+  }
+
+  /**
+   * Completes the trace of the operation, if the operation is traced. A trace that the operation started is completed
+   * and recorded. To the trace of a request that the operation is a part of, a span that covers the whole operation is
+   * added. Only the first call counts.
+   * @param exception the exception the operation failed with, or {@code null} if it succeeded.
+   */
+  protected void completeTrace(Exception exception) {
+    if (trace != null && traceCompleted.compareAndSet(false, true)) {
+      if (!ownsTrace) {
+        trace.addSpan(getClass().getSimpleName(), null, submissionTimeNs, time.nanoseconds());
+        return;
+      }
+      String outcome = "Success";
+      if (exception instanceof RouterException) {
+        outcome = ((RouterException) exception).getErrorCode().toString();
+      } else if (exception != null) {
+        outcome = exception.getClass().getSimpleName();
+      }
+      if (trace.complete(time.nanoseconds(), outcome)) {
+        routerMetrics.traceRecorder.record(trace);
+      }
+    }
   }
 }
 
@@ -187,15 +333,31 @@ abstract class GetOperation<T> {
 class GetRequestInfo {
   final ReplicaId replicaId;
   final long startTimeMs;
+  final long startTimeNs;
+  final boolean isHedge;
+
+  /**
+   * Construct a GetRequestInfo
+   * @param replicaId the replica to which this request is being sent.
+   * @param startTimeMs the time at which this request was created.
+   * @param startTimeNs the time at which this request was created, in nanoseconds.
+   */
+  GetRequestInfo(ReplicaId replicaId, long startTimeMs, long startTimeNs) {
+    this(replicaId, startTimeMs, startTimeNs, false);
+  }
 
   /**
    * Construct a GetRequestInfo
    * @param replicaId the replica to which this request is being sent.
    * @param startTimeMs the time at which this request was created.
+   * @param startTimeNs the time at which this request was created, in nanoseconds.
+   * @param isHedge {@code true} if this is a hedged request, sent because the other requests were slow.
    */
-  GetRequestInfo(ReplicaId replicaId, long startTimeMs) {
+  GetRequestInfo(ReplicaId replicaId, long startTimeMs, long startTimeNs, boolean isHedge) {
     this.replicaId = replicaId;
     this.startTimeMs = startTimeMs;
+    this.startTimeNs = startTimeNs;
+    this.isHedge = isHedge;
   }
 }
 
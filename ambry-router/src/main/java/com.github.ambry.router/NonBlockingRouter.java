@@ -18,18 +18,27 @@ import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.network.NetworkClient;
+import com.github.ambry.network.NetworkClientEventLoopGroup;
 import com.github.ambry.network.NetworkClientFactory;
 import com.github.ambry.network.RequestInfo;
 import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.network.ResponseQueue;
+import com.github.ambry.network.Send;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.protocol.RequestOrResponseType;
+import com.github.ambry.utils.SimpleByteBufferPool;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
@@ -45,6 +54,7 @@ import org.slf4j.LoggerFactory;
  */
 class NonBlockingRouter implements Router {
   private final NetworkClientFactory networkClientFactory;
+  private final NetworkClientEventLoopGroup networkClientEventLoopGroup;
   private final ArrayList<OperationController> ocList;
   private final AtomicBoolean isOpen = new AtomicBoolean(true);
   // Shared with the operation managers.
@@ -55,13 +65,20 @@ class NonBlockingRouter implements Router {
   private final ResponseHandler responseHandler;
   private final Time time;
   private final List<String> idsToDelete = new ArrayList<String>();
+  // the memory for the data chunks of get operations, shared by all the OperationControllers.
+  private final ChunkMemoryBudget getChunkMemoryBudget;
+  // the pool of the buffers of put chunks, shared by all the OperationControllers.
+  private final SimpleByteBufferPool putChunkBufferPool;
+  // the selector of the partitions of put chunks, shared by all the OperationControllers.
+  private final WritablePartitionSelector writablePartitionSelector;
+  // the cache of the metadata of blobs, shared by all the OperationControllers.
+  private final BlobMetadataCache blobMetadataCache;
 
   private static final Logger logger = LoggerFactory.getLogger(NonBlockingRouter.class);
   private final AtomicInteger currentOperationsCount = new AtomicInteger(0);
   private final OperationCompleteCallback operationCompleteCallback =
       new OperationCompleteCallback(currentOperationsCount);
 
-  static final int MAX_IN_MEM_CHUNKS = 4;
   static final int SHUTDOWN_WAIT_MS = 10 * Time.MsPerSec;
   static final AtomicInteger correlationIdGenerator = new AtomicInteger(0);
 
@@ -69,8 +86,8 @@ class NonBlockingRouter implements Router {
    * Constructs a NonBlockingRouter.
    * @param routerConfig the configs for the router.
    * @param routerMetrics the metrics for the router.
-   * @param networkClientFactory the {@link NetworkClientFactory} used by the {@link OperationController} to create
-   *                             instances of {@link NetworkClient}.
+   * @param networkClientFactory the {@link NetworkClientFactory} used to create the {@link NetworkClient}s of the
+   *                             {@link NetworkClientEventLoopGroup} shared by the {@link OperationController}s.
    * @param notificationSystem the notification system to use to notify about blob creations and deletions.
    * @param clusterMap the cluster map for the cluster.
    * @param time the time instance.
@@ -87,11 +104,28 @@ class NonBlockingRouter implements Router {
     this.clusterMap = clusterMap;
     this.responseHandler = new ResponseHandler(clusterMap);
     this.time = time;
+    getChunkMemoryBudget = new ChunkMemoryBudget(routerConfig.routerGetChunkMemoryCapacityBytes);
+    putChunkBufferPool = new SimpleByteBufferPool(routerConfig.routerPutChunkBufferPoolCapacityBytes);
+    writablePartitionSelector =
+        new WritablePartitionSelector(clusterMap, routerConfig.routerWritablePartitionsRefreshIntervalMs,
+            routerConfig.routerRequestTimeoutMs, routerMetrics, time);
+    blobMetadataCache = new BlobMetadataCache(routerConfig.routerMetadataCacheCapacityBytes,
+        routerConfig.routerMetadataCacheTtlMs, routerConfig.routerMetadataCacheUseDirectMemory, routerMetrics, time);
+    // The timeout for the network client poll should be a function of the request timeout,
+    // as the poll timeout should not cause the request to not time out for a lot longer than the configured request
+    // timeout. In the worst case, the request will time out in (request_timeout_ms + poll_timeout_ms), so the poll
+    // timeout should be at least an order of magnitude smaller.
+    networkClientEventLoopGroup =
+        new NetworkClientEventLoopGroup(networkClientFactory, routerConfig.routerNetworkEventLoopCount,
+            routerConfig.routerRequestTimeoutMs / 10, time);
     ocList = new ArrayList<OperationController>(routerConfig.routerScalingUnitCount);
     for (int i = 0; i < routerConfig.routerScalingUnitCount; i++) {
       ocList.add(new OperationController(i));
     }
     routerMetrics.initializeNumActiveOperationsMetrics(currentOperationsCount);
+    routerMetrics.initializeGetChunkMemoryMetrics(getChunkMemoryBudget);
+    routerMetrics.initializePutChunkBufferPoolMetrics(putChunkBufferPool);
+    routerMetrics.initializeMetadataCacheMetrics(blobMetadataCache);
   }
 
   /**
@@ -121,12 +155,75 @@ class NonBlockingRouter implements Router {
    */
   @Override
   public Future<BlobInfo> getBlobInfo(String blobId, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, null, true, callback);
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} asynchronously as part of a traced request and invokes the {@link Callback} when
+   * the request completes. The spans of the operation are added to {@code trace}, which the caller completes.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} is requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain the {@link BlobInfo} eventually.
+   */
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, trace, false, callback);
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} asynchronously and invokes the {@link Callback} when the request completes.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} is requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param sampleTrace {@code true} if the caller does not trace the request and the router should sample it instead.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain the {@link BlobInfo} eventually.
+   */
+  private Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, boolean sampleTrace,
+      Callback<BlobInfo> callback) {
     currentOperationsCount.incrementAndGet();
     routerMetrics.getBlobInfoOperationRate.mark();
     routerMetrics.operationQueuingRate.mark();
     FutureResult<BlobInfo> futureResult = new FutureResult<BlobInfo>();
     if (isOpen.get()) {
-      getOperationController().getBlobInfo(blobId, futureResult, callback);
+      getOperationController().getBlobInfo(blobId, trace, sampleTrace, futureResult, callback);
+    } else {
+      RouterException routerException =
+          new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+      routerMetrics.operationDequeuingRate.mark();
+      routerMetrics.getBlobInfoErrorCount.inc();
+      routerMetrics.countError(routerException);
+      operationCompleteCallback.completeOperation(futureResult, callback, null, routerException);
+    }
+    return futureResult;
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} of a number of blobs asynchronously and returns a future that will eventually
+   * contain the {@link BlobInfo} of each blob that could be fetched, and the cause of failure for every other blob.
+   * @param blobIds The IDs of the blobs for which the {@link BlobInfo} is requested.
+   * @return A future that would contain the {@link GetBlobInfosResult} eventually.
+   */
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} of a number of blobs asynchronously and invokes the {@link Callback} when the
+   * request completes. The requests for the blobs are coalesced into one request per data node.
+   * @param blobIds The IDs of the blobs for which the {@link BlobInfo} is requested.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain the {@link GetBlobInfosResult} eventually.
+   */
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback) {
+    currentOperationsCount.incrementAndGet();
+    routerMetrics.getBlobInfosOperationRate.mark();
+    routerMetrics.operationQueuingRate.mark();
+    FutureResult<GetBlobInfosResult> futureResult = new FutureResult<GetBlobInfosResult>();
+    if (isOpen.get()) {
+      getOperationController().getBlobInfos(blobIds, futureResult, callback);
     } else {
       RouterException routerException =
           new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
@@ -146,7 +243,7 @@ class NonBlockingRouter implements Router {
    */
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   /**
@@ -157,12 +254,67 @@ class NonBlockingRouter implements Router {
    */
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  /**
+   * Requests for a range of the blob data asynchronously and returns a future that will eventually contain a
+   * {@link ReadableStreamChannel} that represents the requested range of the blob data on a successful response.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data requested. If {@code null}, the whole blob is requested.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the blob data eventually.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  /**
+   * Requests for a range of the blob data asynchronously and invokes the {@link Callback} when the request completes.
+   * Only the data chunks of a composite blob that overlap the range are fetched.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data requested. If {@code null}, the whole blob is requested.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the blob data eventually.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, null, true, callback);
+  }
+
+  /**
+   * Requests for a range of the blob data asynchronously as part of a traced request and invokes the {@link Callback}
+   * when the request completes. The spans of the operation are added to {@code trace}, which the caller completes.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data requested. If {@code null}, the whole blob is requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the blob data eventually.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, trace, false, callback);
+  }
+
+  /**
+   * Requests for a range of the blob data asynchronously and invokes the {@link Callback} when the request completes.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data requested. If {@code null}, the whole blob is requested.
+   * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+   * @param sampleTrace {@code true} if the caller does not trace the request and the router should sample it instead.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link ReadableStreamChannel} that represents the blob data eventually.
+   */
+  private Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      boolean sampleTrace, Callback<ReadableStreamChannel> callback) {
     currentOperationsCount.incrementAndGet();
     routerMetrics.getBlobOperationRate.mark();
     routerMetrics.operationQueuingRate.mark();
     FutureResult<ReadableStreamChannel> futureResult = new FutureResult<ReadableStreamChannel>();
     if (isOpen.get()) {
-      getOperationController().getBlob(blobId, futureResult, callback);
+      getOperationController().getBlob(blobId, range, trace, sampleTrace, futureResult, callback);
     } else {
       RouterException routerException =
           new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
@@ -251,6 +403,45 @@ class NonBlockingRouter implements Router {
     return futureResult;
   }
 
+  /**
+   * Requests for a number of blobs to be deleted asynchronously and returns a future that will eventually contain the
+   * blobs that could not be deleted.
+   * @param blobIds The IDs of the blobs that need to be deleted.
+   * @return A future that would contain a map from the ID of each blob that could not be deleted to the cause of the
+   *         failure, eventually.
+   */
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  /**
+   * Requests for a number of blobs to be deleted asynchronously and invokes the {@link Callback} when the request
+   * completes. The deletes of the blobs are coalesced into one request per data node.
+   * @param blobIds The IDs of the blobs that need to be deleted.
+   * @param callback The {@link Callback} which will be invoked on the completion of the request.
+   * @return A future that would contain a map from the ID of each blob that could not be deleted to the cause of the
+   *         failure, eventually.
+   */
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback) {
+    currentOperationsCount.incrementAndGet();
+    routerMetrics.deleteBlobsOperationRate.mark();
+    routerMetrics.operationQueuingRate.mark();
+    FutureResult<Map<String, Exception>> futureResult = new FutureResult<Map<String, Exception>>();
+    if (isOpen.get()) {
+      getOperationController().deleteBlobs(blobIds, futureResult, callback);
+    } else {
+      RouterException routerException =
+          new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+      routerMetrics.operationDequeuingRate.mark();
+      routerMetrics.deleteBlobErrorCount.inc();
+      routerMetrics.countError(routerException);
+      operationCompleteCallback.completeOperation(futureResult, callback, null, routerException);
+    }
+    return futureResult;
+  }
+
   /**
    * Closes the router and releases any resources held by the router. If the router is already closed, then this
    * method has no effect.
@@ -287,9 +478,13 @@ class NonBlockingRouter implements Router {
   private void shutDownOperationControllers() {
     if (isOpen.compareAndSet(true, false)) {
       logger.info("Closing the router");
+      for (OperationController oc : ocList) {
+        oc.wakeup();
+      }
       for (OperationController oc : ocList) {
         oc.shutdown();
       }
+      networkClientEventLoopGroup.close();
     }
   }
 
@@ -315,16 +510,25 @@ class NonBlockingRouter implements Router {
    * OperationControllers. A worker thread (the RequestResponseHandler thread) will poll The OperationController for
    * requests to be sent and will notify it on receiving responses. The OperationController in turn makes use of the
    * {@link PutManager}, {@link GetManager} and {@link DeleteManager} to perform puts, gets and deletes,
-   * respectively. A {@link NetworkClient} is used to interact with the network.
+   * respectively. Requests are sent out through the {@link NetworkClientEventLoopGroup} shared by all the
+   * OperationControllers, which delivers the responses into the OperationController's {@link ResponseQueue}.
    */
   private class OperationController implements Runnable {
     private final PutManager putManager;
     private final GetManager getManager;
     private final DeleteManager deleteManager;
-    private final NetworkClient networkClient;
+    private final ResponseQueue responseQueue;
     private final Thread requestResponseHandlerThread;
     private final CountDownLatch shutDownLatch = new CountDownLatch(1);
     private final ReadyForPollCallback readyForPollCallback;
+    // the requests submitted by this OperationController that have not received a response yet, with the time at
+    // which they were submitted. A request that gets no response within the request timeout is removed and counted as
+    // a timed out request, just like the operation that sent it does, so that a data node that stopped responding
+    // does not keep requests in flight forever.
+    private final Map<Send, RequestInFlight> requestsInFlight = new IdentityHashMap<>();
+    // the submitted requests in the order in which they were submitted, to find the ones that timed out. This can also
+    // contain requests that have received a response already, until they would have timed out.
+    private final Deque<Send> requestsInSubmissionOrder = new ArrayDeque<>();
 
     /**
      * Constructs an OperationController
@@ -333,14 +537,14 @@ class NonBlockingRouter implements Router {
      */
     OperationController(int index)
         throws IOException {
-      networkClient = networkClientFactory.getNetworkClient();
-      readyForPollCallback = new ReadyForPollCallback(networkClient);
-      putManager = new PutManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
-          operationCompleteCallback, readyForPollCallback, index, time);
+      responseQueue = new ResponseQueue();
+      readyForPollCallback = new ReadyForPollCallback(responseQueue);
+      putManager = new PutManager(writablePartitionSelector, responseHandler, notificationSystem, routerConfig,
+          routerMetrics, operationCompleteCallback, readyForPollCallback, index, putChunkBufferPool, time);
       getManager = new GetManager(clusterMap, responseHandler, routerConfig, routerMetrics, operationCompleteCallback,
-          readyForPollCallback, time);
+          readyForPollCallback, getChunkMemoryBudget, blobMetadataCache, time);
       deleteManager = new DeleteManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
-          operationCompleteCallback, time);
+          operationCompleteCallback, blobMetadataCache, time);
       requestResponseHandlerThread = Utils.newThread("RequestResponseHandlerThread-" + index, this, true);
       requestResponseHandlerThread.start();
       routerMetrics.initializeOperationControllerMetrics(requestResponseHandlerThread);
@@ -349,24 +553,43 @@ class NonBlockingRouter implements Router {
     /**
      * Requests for the {@link BlobInfo} asynchronously and invokes the {@link Callback} when the request completes.
      * @param blobId The ID of the blob for which the {@link BlobInfo} is requested.
+     * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+     * @param sampleTrace {@code true} if the caller does not trace the request and the router should sample it.
      * @param futureResult The future that would contain the {@link BlobInfo} eventually.
      * @param callback The {@link Callback} which will be invoked on the completion of the request.
      */
-    private void getBlobInfo(String blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
-      getManager.submitGetBlobInfoOperation(blobId, futureResult, callback);
+    private void getBlobInfo(String blobId, RequestTrace trace, boolean sampleTrace,
+        FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
+      getManager.submitGetBlobInfoOperation(blobId, trace, sampleTrace, futureResult, callback);
+      readyForPollCallback.onPollReady();
+    }
+
+    /**
+     * Requests for the BlobInfo of a number of blobs asynchronously and invokes the {@link Callback} when the request
+     * completes.
+     * @param blobIds The IDs of the blobs for which the BlobInfo is requested.
+     * @param futureResult A future that would contain the {@link GetBlobInfosResult} eventually.
+     * @param callback The {@link Callback} which will be invoked on the completion of the request.
+     */
+    private void getBlobInfos(List<String> blobIds, FutureResult<GetBlobInfosResult> futureResult,
+        Callback<GetBlobInfosResult> callback) {
+      getManager.submitGetBlobInfosOperation(blobIds, futureResult, callback);
       readyForPollCallback.onPollReady();
     }
 
     /**
      * Requests for the blob data asynchronously and invokes the {@link Callback} when the request completes.
      * @param blobId The ID of the blob for which blob data is requested.
+     * @param range The {@link ByteRange} of the blob data requested, or {@code null} for the whole blob.
+     * @param trace The {@link RequestTrace} of the request this is a part of, or {@code null} if it is not traced.
+     * @param sampleTrace {@code true} if the caller does not trace the request and the router should sample it.
      * @param futureResult A future that would contain a {@link ReadableStreamChannel} that represents the blob data
      *                     eventually.
      * @param callback The callback which will be invoked on the completion of the request.
      */
-    private void getBlob(String blobId, FutureResult<ReadableStreamChannel> futureResult,
-        Callback<ReadableStreamChannel> callback) {
-      getManager.submitGetBlobOperation(blobId, futureResult, callback);
+    private void getBlob(String blobId, ByteRange range, RequestTrace trace, boolean sampleTrace,
+        FutureResult<ReadableStreamChannel> futureResult, Callback<ReadableStreamChannel> callback) {
+      getManager.submitGetBlobOperation(blobId, range, trace, sampleTrace, futureResult, callback);
       readyForPollCallback.onPollReady();
     }
 
@@ -407,6 +630,26 @@ class NonBlockingRouter implements Router {
       readyForPollCallback.onPollReady();
     }
 
+    /**
+     * Requests for a number of blobs to be deleted asynchronously and invokes the {@link Callback} when the request
+     * completes.
+     * @param blobIds The IDs of the blobs that need to be deleted.
+     * @param futureResult A future that would contain the blobs that could not be deleted, eventually.
+     * @param callback The {@link Callback} which will be invoked on the completion of the request.
+     */
+    private void deleteBlobs(List<String> blobIds, FutureResult<Map<String, Exception>> futureResult,
+        Callback<Map<String, Exception>> callback) {
+      deleteManager.submitDeleteBlobsOperation(blobIds, futureResult, callback);
+      readyForPollCallback.onPollReady();
+    }
+
+    /**
+     * Wakes up the RequestResponseHandler thread if it is waiting for responses.
+     */
+    private void wakeup() {
+      responseQueue.wakeup();
+    }
+
     /**
      * Shuts down the OperationController and cleans up all the resources associated with it.
      */
@@ -447,11 +690,60 @@ class NonBlockingRouter implements Router {
     }
 
     /**
-     * Handle the response from polling the {@link NetworkClient}.
+     * Records the given requests as in flight to their data nodes in the {@link NonBlockingRouterMetrics}.
+     * @param requestInfoList the list of {@link RequestInfo} that are about to be submitted.
+     */
+    private void onRequestsSent(List<RequestInfo> requestInfoList) {
+      long nowMs = time.milliseconds();
+      for (RequestInfo requestInfo : requestInfoList) {
+        NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics =
+            routerMetrics.getDataNodeBasedMetrics(requestInfo.getHost(), requestInfo.getPort().getPort());
+        if (nodeLevelMetrics != null) {
+          nodeLevelMetrics.onRequestSent(nowMs);
+          requestsInFlight.put(requestInfo.getRequest(), new RequestInFlight(nodeLevelMetrics, nowMs));
+          requestsInSubmissionOrder.add(requestInfo.getRequest());
+        }
+      }
+    }
+
+    /**
+     * Removes the requests that have been in flight for longer than the request timeout and records them as timed out
+     * in the {@link NonBlockingRouterMetrics}. A response that arrives for one of them later is not recorded again.
+     */
+    private void expireRequestsInFlight() {
+      long nowMs = time.milliseconds();
+      while (!requestsInSubmissionOrder.isEmpty()) {
+        Send request = requestsInSubmissionOrder.peek();
+        RequestInFlight requestInFlight = requestsInFlight.get(request);
+        if (requestInFlight != null) {
+          if (nowMs - requestInFlight.sendTimeMs <= routerConfig.routerRequestTimeoutMs) {
+            break;
+          }
+          requestsInFlight.remove(request);
+          requestInFlight.nodeLevelMetrics.onRequestFailed(requestInFlight.sendTimeMs,
+              routerConfig.routerRequestTimeoutMs, nowMs);
+        }
+        requestsInSubmissionOrder.remove();
+      }
+    }
+
+    /**
+     * Handle the responses delivered by the {@link NetworkClientEventLoopGroup}.
      * @param responseInfoList the list of {@link ResponseInfo} containing the responses.
      */
     private void onResponse(List<ResponseInfo> responseInfoList) {
+      long nowMs = time.milliseconds();
       for (ResponseInfo responseInfo : responseInfoList) {
+        RequestInFlight requestInFlight = requestsInFlight.remove(responseInfo.getRequest());
+        if (requestInFlight != null) {
+          if (responseInfo.getError() == null) {
+            requestInFlight.nodeLevelMetrics.onRequestCompleted(requestInFlight.sendTimeMs, nowMs);
+          } else {
+            // a failed request is counted as a timed out one.
+            requestInFlight.nodeLevelMetrics.onRequestFailed(requestInFlight.sendTimeMs,
+                routerConfig.routerRequestTimeoutMs, nowMs);
+          }
+        }
         RequestOrResponseType type = ((RequestOrResponse) responseInfo.getRequest()).getRequestType();
         switch (type) {
           case PutRequest:
@@ -471,67 +763,51 @@ class NonBlockingRouter implements Router {
 
     /**
      * The RequestResponseHandler thread simply runs in a loop polling the OperationController for any
-     * requests to be sent, and notifies it about network events.
+     * requests to be sent, submitting them to the {@link NetworkClientEventLoopGroup} and notifying the
+     * OperationController about the responses.
      */
     @Override
     public void run() {
-      // The timeout for the network client poll should be a function of the request timeout,
-      // as the poll timeout should not cause the request to not time out for a lot longer than the configured request
-      // timeout. In the worst case, the request will time out in (request_timeout_ms + poll_timeout_ms), so the poll
-      // timeout should be at least an order of magnitude smaller.
-      final int NETWORK_CLIENT_POLL_TIMEOUT = routerConfig.routerRequestTimeoutMs / 10;
+      // see the comment on the event loop poll timeout in the NonBlockingRouter constructor. Similarly, if get requests
+      // are hedged, the poll timeout should not delay hedged requests much beyond the point at which they are due.
+      int responsePollTimeout = routerConfig.routerRequestTimeoutMs / 10;
+      if (routerConfig.routerGetHedgingEnabled) {
+        responsePollTimeout = Math.min(responsePollTimeout, routerConfig.routerGetHedgingMinDelayMs);
+      }
+      final int RESPONSE_POLL_TIMEOUT = responsePollTimeout;
       try {
         while (isOpen.get()) {
+          expireRequestsInFlight();
           List<RequestInfo> requestInfoList = pollForRequests();
-          List<ResponseInfo> responseInfoList = networkClient.sendAndPoll(requestInfoList, NETWORK_CLIENT_POLL_TIMEOUT);
+          onRequestsSent(requestInfoList);
+          networkClientEventLoopGroup.submit(requestInfoList, responseQueue);
+          List<ResponseInfo> responseInfoList = responseQueue.poll(RESPONSE_POLL_TIMEOUT);
+          if (!networkClientEventLoopGroup.isOpen()) {
+            // an event loop failed, so the responses are for requests that were aborted rather than sent.
+            throw new IllegalStateException("The network event loops of the router are closed");
+          }
           onResponse(responseInfoList);
         }
       } catch (Throwable e) {
         logger.error("Aborting, as requestResponseHandlerThread received an unexpected error: ", e);
       } finally {
-        networkClient.close();
         shutDownLatch.countDown();
         // Close the router.
         shutDownOperationControllers();
       }
     }
   }
-}
-
-/**
- * An object of this class is passed by the router to the operation managers to use to complete operations.
- */
-class OperationCompleteCallback {
-  private final AtomicInteger operationsCount;
-  private static final Logger logger = LoggerFactory.getLogger(OperationCompleteCallback.class);
 
   /**
-   * Construct an OperationCompleteCallback object
-   * @param operationsCount the operationsCount to decrement whenever an operation is completed.
+   * A request that has been submitted by an {@link OperationController} and has not received a response yet.
    */
-  OperationCompleteCallback(AtomicInteger operationsCount) {
-    this.operationsCount = operationsCount;
-  }
+  private static class RequestInFlight {
+    final NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics;
+    final long sendTimeMs;
 
-  /**
-   * Completes a router operation by invoking the {@code callback} and setting the {@code futureResult} with
-   * {@code operationResult} (if any) and {@code exception} (if any).
-   * @param futureResult the {@link FutureResult} that needs to be set.
-   * @param callback that {@link Callback} that needs to be invoked. Can be null.
-   * @param operationResult the result of the operation (if any).
-   * @param exception {@link Exception} encountered while performing the operation (if any).
-   * @param <T> the type of the operation result, which depends on the kind of operation.
-   */
-  <T> void completeOperation(FutureResult<T> futureResult, Callback<T> callback, T operationResult,
-      Exception exception) {
-    operationsCount.decrementAndGet();
-    try {
-      futureResult.done(operationResult, exception);
-      if (callback != null) {
-        callback.onCompletion(operationResult, exception);
-      }
-    } catch (Exception e) {
-      logger.error("Exception caught during future and callback completion", e);
+    RequestInFlight(NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics, long sendTimeMs) {
+      this.nodeLevelMetrics = nodeLevelMetrics;
+      this.sendTimeMs = sendTimeMs;
     }
   }
 }
@@ -541,13 +817,14 @@ class OperationCompleteCallback {
  * event occurs for any operation. A poll-eligible event is any event that occurs asynchronously to the
  * RequestResponseHandler thread such that there is a high chance of meaningful work getting done when the operation is
  * subsequently polled. When the callback is invoked, the RequestResponseHandler thread which could be
- * sleeping in a {@link NetworkClient#sendAndPoll(List, int)} is woken up so that the operations can be
- * polled without additional delays. For example, when a chunk gets filled by the ChunkFillerThread within the
- * {@link PutManager}, this callback is invoked so that the RequestResponseHandler immediately polls the operation to
- * send out the request for the chunk.
+ * waiting in a {@link ResponseQueue#poll(long)} (or sleeping in a {@link NetworkClient#sendAndPoll(List, int)}) is
+ * woken up so that the operations can be polled without additional delays. For example, when a chunk gets filled by
+ * the ChunkFillerThread within the {@link PutManager}, this callback is invoked so that the RequestResponseHandler
+ * immediately polls the operation to send out the request for the chunk.
  */
 class ReadyForPollCallback {
   NetworkClient networkClient;
+  ResponseQueue responseQueue;
 
   /**
    * Construct the ReadyForPollCallback
@@ -558,10 +835,21 @@ class ReadyForPollCallback {
   }
 
   /**
-   * Wake up the associated {@link NetworkClient}.
+   * Construct the ReadyForPollCallback
+   * @param responseQueue the {@link ResponseQueue} that the RequestResponseHandler thread waits on.
+   */
+  ReadyForPollCallback(ResponseQueue responseQueue) {
+    this.responseQueue = responseQueue;
+  }
+
+  /**
+   * Wake up the associated {@link NetworkClient} or {@link ResponseQueue}.
    */
   public void onPollReady() {
-    networkClient.wakeup();
+    if (responseQueue != null) {
+      responseQueue.wakeup();
+    } else {
+      networkClient.wakeup();
+    }
   }
 }
-
@@ -19,6 +19,7 @@ import com.github.ambry.config.NetworkConfig;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.SSLConfig;
 import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.metrics.TraceRecorder;
 import com.github.ambry.network.NetworkClientFactory;
 import com.github.ambry.network.NetworkMetrics;
 import com.github.ambry.network.SSLFactory;
@@ -61,14 +62,31 @@ public class NonBlockingRouterFactory implements RouterFactory {
   public NonBlockingRouterFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
       NotificationSystem notificationSystem)
       throws GeneralSecurityException, IOException {
-    if (verifiableProperties != null && clusterMap != null && notificationSystem != null) {
+    this(verifiableProperties, clusterMap, notificationSystem, new TraceRecorder(TraceRecorder.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Creates an instance of NonBlockingRouterFactory with the given {@code verifiableProperties},
+   * {@code clusterMap}, {@code notificationSystem} and {@code traceRecorder}.
+   * @param verifiableProperties the in-memory properties to use to construct configurations.
+   * @param clusterMap the {@link ClusterMap} to use to determine where operations should go.
+   * @param notificationSystem the {@link NotificationSystem} to use to log operations.
+   * @param traceRecorder the {@link TraceRecorder} to record the traces of the get operations that the router samples
+   *                      in.
+   * @throws IllegalArgumentException if any of the arguments are null.
+   * @throws IOException if the SSL configs could not be initialized.
+   */
+  public NonBlockingRouterFactory(VerifiableProperties verifiableProperties, ClusterMap clusterMap,
+      NotificationSystem notificationSystem, TraceRecorder traceRecorder)
+      throws GeneralSecurityException, IOException {
+    if (verifiableProperties != null && clusterMap != null && notificationSystem != null && traceRecorder != null) {
       routerConfig = new RouterConfig(verifiableProperties);
       if (!clusterMap.hasDatacenter(routerConfig.routerDatacenterName)) {
         throw new IllegalStateException(
             "Router datacenter " + routerConfig.routerDatacenterName + " is not part of the clustermap");
       }
       MetricRegistry registry = clusterMap.getMetricRegistry();
-      routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+      routerMetrics = new NonBlockingRouterMetrics(clusterMap, traceRecorder);
       this.clusterMap = clusterMap;
       this.notificationSystem = notificationSystem;
       networkConfig = new NetworkConfig(verifiableProperties);
@@ -78,7 +96,8 @@ public class NonBlockingRouterFactory implements RouterFactory {
       this.time = SystemTime.getInstance();
       networkClientFactory = new NetworkClientFactory(networkMetrics, networkConfig, sslFactory,
           routerConfig.routerScalingUnitMaxConnectionsPerPortPlainText,
-          routerConfig.routerScalingUnitMaxConnectionsPerPortSsl, routerConfig.routerConnectionCheckoutTimeoutMs, time);
+          routerConfig.routerScalingUnitMaxConnectionsPerPortSsl, routerConfig.routerMaxInFlightRequestsPerConnection,
+          routerConfig.routerConnectionCheckoutTimeoutMs, time);
     } else {
       throw new IllegalArgumentException("Null argument passed in");
     }
@@ -18,10 +18,16 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.metrics.TraceRecorder;
+import com.github.ambry.utils.SimpleByteBufferPool;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -36,8 +42,10 @@ public class NonBlockingRouterMetrics {
   // Operation rate.
   public final Meter putBlobOperationRate;
   public final Meter getBlobInfoOperationRate;
+  public final Meter getBlobInfosOperationRate;
   public final Meter getBlobOperationRate;
   public final Meter deleteBlobOperationRate;
+  public final Meter deleteBlobsOperationRate;
   public final Meter operationQueuingRate;
   public final Meter operationDequeuingRate;
 
@@ -45,9 +53,13 @@ public class NonBlockingRouterMetrics {
   public final Histogram putBlobOperationLatencyMs;
   public final Histogram putChunkOperationLatencyMs;
   public final Histogram getBlobInfoOperationLatencyMs;
+  public final Histogram getBlobInfosOperationLatencyMs;
+  public final Histogram getBlobInfosPerRequest;
   public final Histogram getBlobOperationLatencyMs;
   public final Histogram getBlobOperationTotalTimeMs;
   public final Histogram deleteBlobOperationLatencyMs;
+  public final Histogram deleteBlobsOperationLatencyMs;
+  public final Histogram deleteBlobsPerRequest;
   public final Histogram routerRequestLatencyMs;
 
   // Operation error count.
@@ -87,6 +99,41 @@ public class NonBlockingRouterMetrics {
   public final Histogram waitTimeForFreeChunkAvailabilityMs;
   // time spent by a chunk waiting for data to become available in the channel.
   public final Histogram waitTimeForChannelDataAvailabilityMs;
+  // the number of times a chunk could not be filled as the pool of put chunk buffers was exhausted.
+  public final Counter putChunkBufferPoolExhaustedCount;
+  public Gauge<Long> putChunkBufferPoolAvailableBytes;
+  // the number of chunks of a put operation that may be filled at a time, sampled whenever a data chunk is put.
+  public final Histogram putParallelChunkLimit;
+  // the number of times the cached writable partitions were fetched again from the cluster map.
+  public final Counter writablePartitionsRefreshCount;
+  // time from the submission of a getBlob operation until the first chunk of the blob is handed to the consumer.
+  public final Histogram getBlobTimeToFirstByteMs;
+  // rate at which the blob of a getBlob operation is handed to the consumer, over the duration of the operation.
+  public final Histogram getBlobThroughputBytesPerSec;
+  // the number of data chunks fetched ahead of the consumer at the end of a getBlob operation on a composite blob.
+  public final Histogram getBlobPrefetchWindowChunks;
+  // the number of times a data chunk could not be fetched as the memory for get chunks was exhausted.
+  public final Counter getChunkMemoryExhaustedCount;
+  public Gauge<Long> getChunkMemoryReservedBytes;
+  // the number of times a server returned a whole chunk when asked for a range of it.
+  public final Counter getBlobRangeIgnoredCount;
+  // lookups of the BlobInfo or chunk ids of blobs in the metadata cache, and what happens to the cached metadata.
+  public final Counter metadataCacheHitCount;
+  public final Counter metadataCacheMissCount;
+  public final Counter metadataCacheEvictionCount;
+  public final Counter metadataCacheInvalidationCount;
+  public Gauge<Double> metadataCacheHitRatio;
+  public Gauge<Long> metadataCacheSizeBytes;
+  public Gauge<Integer> metadataCacheBlobCount;
+  // gets that joined the get operation in flight for the same blob instead of starting their own, the number of gets
+  // served by each coalesced operation, the gets that failed to consume their share of a coalesced operation (or were
+  // dropped for holding up the others) and the gets that started reading too late and needed an operation of their own.
+  public final Counter getBlobCoalescedRequestCount;
+  public final Histogram getBlobCoalescedSubscriberCount;
+  public final Counter getBlobCoalescedSubscriberErrorCount;
+  public final Counter getBlobCoalescedFailoverCount;
+  // the most recent traces of sampled get operations, shared with the service that serves them.
+  public final TraceRecorder traceRecorder;
 
   // Misc metrics.
   public final Meter operationErrorRate;
@@ -95,23 +142,48 @@ public class NonBlockingRouterMetrics {
   public final Counter ignoredResponseCount;
   public final Counter crossColoRequestCount;
   public final Counter crossColoSuccessCount;
+  public final Meter hedgedGetRequestRate;
+  public final Counter hedgedGetRequestWinCount;
   public Gauge<Long> chunkFillerThreadRunning;
   public Gauge<Long> requestResponseHandlerThreadRunning;
   public Gauge<Integer> activeOperations;
 
+  // The observed latency of get requests for each partition, which decides when get operations send hedged requests.
+  // The latency of a partition is kept over a window of its most recent requests, and a percentile of it is only
+  // computed once there are enough samples, and then at most once per refresh interval.
+  static final int PARTITION_LATENCY_WINDOW_SIZE = 100;
+  static final int PARTITION_LATENCY_MIN_SAMPLES = 20;
+  static final long PARTITION_LATENCY_REFRESH_INTERVAL_MS = 1000;
+  private final ConcurrentHashMap<PartitionId, PartitionLatency> partitionToGetRequestLatency =
+      new ConcurrentHashMap<>();
+
   // Map that stores dataNode-level metrics.
   private final Map<DataNodeId, NodeLevelMetrics> dataNodeToMetrics;
+  // Map that stores dataNode-level metrics by the "hostname:port" of every port of the data node.
+  private final Map<String, NodeLevelMetrics> hostPortToMetrics;
 
   public NonBlockingRouterMetrics(ClusterMap clusterMap) {
+    this(clusterMap, new TraceRecorder(TraceRecorder.DEFAULT_CAPACITY));
+  }
+
+  /**
+   * @param clusterMap the {@link ClusterMap} whose {@link MetricRegistry} the metrics are registered with.
+   * @param traceRecorder the {@link TraceRecorder} to record the traces of sampled get operations in.
+   */
+  public NonBlockingRouterMetrics(ClusterMap clusterMap, TraceRecorder traceRecorder) {
     metricRegistry = clusterMap.getMetricRegistry();
 
     // Operation Rate.
     putBlobOperationRate = metricRegistry.meter(MetricRegistry.name(PutOperation.class, "PutBlobOperationRate"));
     getBlobInfoOperationRate =
         metricRegistry.meter(MetricRegistry.name(GetBlobInfoOperation.class, "GetBlobInfoOperationRate"));
+    getBlobInfosOperationRate =
+        metricRegistry.meter(MetricRegistry.name(BatchGetBlobInfoOperation.class, "GetBlobInfosOperationRate"));
     getBlobOperationRate = metricRegistry.meter(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationRate"));
     deleteBlobOperationRate =
         metricRegistry.meter(MetricRegistry.name(DeleteOperation.class, "DeleteBlobOperationRate"));
+    deleteBlobsOperationRate =
+        metricRegistry.meter(MetricRegistry.name(BatchDeleteOperation.class, "DeleteBlobsOperationRate"));
     operationQueuingRate = metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationQueuingRate"));
     operationDequeuingRate =
         metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationDequeuingRate"));
@@ -123,12 +195,20 @@ public class NonBlockingRouterMetrics {
         metricRegistry.histogram(MetricRegistry.name(PutOperation.class, "PutChunkOperationLatencyMs"));
     getBlobInfoOperationLatencyMs =
         metricRegistry.histogram(MetricRegistry.name(GetBlobInfoOperation.class, "GetBlobInfoOperationLatencyMs"));
+    getBlobInfosOperationLatencyMs = metricRegistry.histogram(
+        MetricRegistry.name(BatchGetBlobInfoOperation.class, "GetBlobInfosOperationLatencyMs"));
+    getBlobInfosPerRequest =
+        metricRegistry.histogram(MetricRegistry.name(BatchGetBlobInfoOperation.class, "GetBlobInfosPerRequest"));
     getBlobOperationLatencyMs =
         metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationLatencyMs"));
     getBlobOperationTotalTimeMs =
         metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationTotalTimeMs"));
     deleteBlobOperationLatencyMs =
         metricRegistry.histogram(MetricRegistry.name(DeleteOperation.class, "DeleteBlobOperationLatencyMs"));
+    deleteBlobsOperationLatencyMs =
+        metricRegistry.histogram(MetricRegistry.name(BatchDeleteOperation.class, "DeleteBlobsOperationLatencyMs"));
+    deleteBlobsPerRequest =
+        metricRegistry.histogram(MetricRegistry.name(BatchDeleteOperation.class, "DeleteBlobsPerRequest"));
     routerRequestLatencyMs =
         metricRegistry.histogram(MetricRegistry.name(NonBlockingRouter.class, "RouterRequestLatencyMs"));
 
@@ -188,6 +268,38 @@ public class NonBlockingRouterMetrics {
         metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForFreeChunkAvailabilityMs"));
     waitTimeForChannelDataAvailabilityMs =
         metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForChannelDataAvailabilityMs"));
+    putChunkBufferPoolExhaustedCount =
+        metricRegistry.counter(MetricRegistry.name(PutManager.class, "PutChunkBufferPoolExhaustedCount"));
+    putParallelChunkLimit = metricRegistry.histogram(MetricRegistry.name(PutOperation.class, "PutParallelChunkLimit"));
+    writablePartitionsRefreshCount =
+        metricRegistry.counter(MetricRegistry.name(WritablePartitionSelector.class, "WritablePartitionsRefreshCount"));
+    getBlobTimeToFirstByteMs =
+        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobTimeToFirstByteMs"));
+    getBlobThroughputBytesPerSec =
+        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobThroughputBytesPerSec"));
+    getBlobPrefetchWindowChunks =
+        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobPrefetchWindowChunks"));
+    getChunkMemoryExhaustedCount =
+        metricRegistry.counter(MetricRegistry.name(GetBlobOperation.class, "GetChunkMemoryExhaustedCount"));
+    getBlobRangeIgnoredCount =
+        metricRegistry.counter(MetricRegistry.name(GetBlobOperation.class, "GetBlobRangeIgnoredCount"));
+    metadataCacheHitCount =
+        metricRegistry.counter(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheHitCount"));
+    metadataCacheMissCount =
+        metricRegistry.counter(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheMissCount"));
+    metadataCacheEvictionCount =
+        metricRegistry.counter(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheEvictionCount"));
+    metadataCacheInvalidationCount =
+        metricRegistry.counter(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheInvalidationCount"));
+    getBlobCoalescedRequestCount =
+        metricRegistry.counter(MetricRegistry.name(CoalescedGetBlob.class, "GetBlobCoalescedRequestCount"));
+    getBlobCoalescedSubscriberCount =
+        metricRegistry.histogram(MetricRegistry.name(CoalescedGetBlob.class, "GetBlobCoalescedSubscriberCount"));
+    getBlobCoalescedSubscriberErrorCount =
+        metricRegistry.counter(MetricRegistry.name(CoalescedGetBlob.class, "GetBlobCoalescedSubscriberErrorCount"));
+    getBlobCoalescedFailoverCount =
+        metricRegistry.counter(MetricRegistry.name(CoalescedGetBlob.class, "GetBlobCoalescedFailoverCount"));
+    this.traceRecorder = traceRecorder;
 
     // Misc metrics.
     operationErrorRate = metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationErrorRate"));
@@ -198,13 +310,22 @@ public class NonBlockingRouterMetrics {
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "CrossColoRequestCount"));
     crossColoSuccessCount =
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "CrossColoSuccessCount"));
+    hedgedGetRequestRate = metricRegistry.meter(MetricRegistry.name(GetOperation.class, "HedgedGetRequestRate"));
+    hedgedGetRequestWinCount =
+        metricRegistry.counter(MetricRegistry.name(GetOperation.class, "HedgedGetRequestWinCount"));
 
     // Track metrics at the DataNode level.
     dataNodeToMetrics = new HashMap<>();
+    hostPortToMetrics = new HashMap<>();
     for (DataNodeId dataNodeId : clusterMap.getDataNodeIds()) {
       String dataNodeName = dataNodeId.getDatacenterName() + "." + dataNodeId.getHostname() + "." + Integer
           .toString(dataNodeId.getPort());
-      dataNodeToMetrics.put(dataNodeId, new NodeLevelMetrics(metricRegistry, dataNodeName));
+      NodeLevelMetrics nodeLevelMetrics = new NodeLevelMetrics(metricRegistry, dataNodeName);
+      dataNodeToMetrics.put(dataNodeId, nodeLevelMetrics);
+      hostPortToMetrics.put(dataNodeId.getHostname() + ":" + dataNodeId.getPort(), nodeLevelMetrics);
+      if (dataNodeId.hasSSLPort()) {
+        hostPortToMetrics.put(dataNodeId.getHostname() + ":" + dataNodeId.getSSLPort(), nodeLevelMetrics);
+      }
     }
   }
 
@@ -258,6 +379,69 @@ public class NonBlockingRouterMetrics {
     metricRegistry.register(MetricRegistry.name(NonBlockingRouter.class, "NumActiveOperations"), activeOperations);
   }
 
+  /**
+   * Initializes a {@link Gauge} metric to monitor the memory available in the pool of put chunk buffers.
+   * @param putChunkBufferPool the {@link SimpleByteBufferPool} shared by the put operations.
+   */
+  void initializePutChunkBufferPoolMetrics(final SimpleByteBufferPool putChunkBufferPool) {
+    putChunkBufferPoolAvailableBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return putChunkBufferPool.availableMemory();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(PutManager.class, "PutChunkBufferPoolAvailableBytes"),
+        putChunkBufferPoolAvailableBytes);
+  }
+
+  /**
+   * Initializes {@link Gauge} metrics to monitor the hit ratio and the size of the metadata cache.
+   * @param blobMetadataCache the {@link BlobMetadataCache} shared by the operations.
+   */
+  void initializeMetadataCacheMetrics(final BlobMetadataCache blobMetadataCache) {
+    metadataCacheHitRatio = new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        long hits = metadataCacheHitCount.getCount();
+        long lookups = hits + metadataCacheMissCount.getCount();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+      }
+    };
+    metadataCacheSizeBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return blobMetadataCache.getSizeInBytes();
+      }
+    };
+    metadataCacheBlobCount = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return blobMetadataCache.getBlobCount();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheHitRatio"),
+        metadataCacheHitRatio);
+    metricRegistry.register(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheSizeBytes"),
+        metadataCacheSizeBytes);
+    metricRegistry.register(MetricRegistry.name(BlobMetadataCache.class, "MetadataCacheBlobCount"),
+        metadataCacheBlobCount);
+  }
+
+  /**
+   * Initializes a {@link Gauge} metric to monitor the number of bytes reserved for the data chunks of get operations.
+   * @param chunkMemoryBudget the {@link ChunkMemoryBudget} shared by the get operations.
+   */
+  void initializeGetChunkMemoryMetrics(final ChunkMemoryBudget chunkMemoryBudget) {
+    getChunkMemoryReservedBytes = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return chunkMemoryBudget.getReservedBytes();
+      }
+    };
+    metricRegistry.register(MetricRegistry.name(GetBlobOperation.class, "GetChunkMemoryReservedBytes"),
+        getChunkMemoryReservedBytes);
+  }
+
   /**
    * Count errors based on error type.
    * <p/>
@@ -313,6 +497,36 @@ public class NonBlockingRouterMetrics {
     }
   }
 
+  /**
+   * Records the latency of a get request to a replica of the given partition.
+   * @param partitionId the {@link PartitionId} that the request was for.
+   * @param requestLatencyMs the latency of the request.
+   */
+  void updateGetRequestLatency(PartitionId partitionId, long requestLatencyMs) {
+    PartitionLatency partitionLatency = partitionToGetRequestLatency.get(partitionId);
+    if (partitionLatency == null) {
+      partitionLatency = new PartitionLatency();
+      PartitionLatency existing = partitionToGetRequestLatency.putIfAbsent(partitionId, partitionLatency);
+      if (existing != null) {
+        partitionLatency = existing;
+      }
+    }
+    partitionLatency.latencyMs.update(requestLatencyMs);
+  }
+
+  /**
+   * Returns a percentile of the recently observed latency of get requests to the given partition.
+   * @param partitionId the {@link PartitionId} to get the latency of.
+   * @param percentile the percentile, between 0 and 1.
+   * @param nowMs the current time in ms.
+   * @return the latency at the given percentile in ms, or -1 if not enough get requests to the partition have been
+   *         observed.
+   */
+  long getGetRequestLatencyPercentileMs(PartitionId partitionId, double percentile, long nowMs) {
+    PartitionLatency partitionLatency = partitionToGetRequestLatency.get(partitionId);
+    return partitionLatency == null ? -1 : partitionLatency.getPercentileMs(percentile, nowMs);
+  }
+
   /**
    * Get {@link NodeLevelMetrics} for a given {@link DataNodeId}. The construction of {@code dataNodeToMetrics}
    * and any {@link DataNodeId} as a key passed to this method are all based on the {@link ClusterMap}, and the
@@ -325,6 +539,46 @@ public class NonBlockingRouterMetrics {
     return dataNodeToMetrics.get(dataNodeId);
   }
 
+  /**
+   * Get {@link NodeLevelMetrics} for the data node that listens on the given hostname and port. The port can be either
+   * the plain text or the SSL port of the data node.
+   * @param hostname the hostname of the data node.
+   * @param port the port of the data node.
+   * @return The {@link NodeLevelMetrics}, or {@code null} if no data node in the {@link ClusterMap} listens on the
+   *         given hostname and port.
+   */
+  NodeLevelMetrics getDataNodeBasedMetrics(String hostname, int port) {
+    return hostPortToMetrics.get(hostname + ":" + port);
+  }
+
+  /**
+   * The observed latency of the get requests to a partition, along with a cached percentile of it.
+   */
+  private static class PartitionLatency {
+    final Histogram latencyMs = new Histogram(new SlidingWindowReservoir(PARTITION_LATENCY_WINDOW_SIZE));
+    private double cachedPercentile = -1;
+    private long cachedPercentileMs = -1;
+    private long lastRefreshTimeMs = -1;
+
+    /**
+     * @param percentile the percentile, between 0 and 1.
+     * @param nowMs the current time in ms.
+     * @return the latency at the given percentile in ms, or -1 if there are not enough samples.
+     */
+    synchronized long getPercentileMs(double percentile, long nowMs) {
+      if (latencyMs.getCount() < PARTITION_LATENCY_MIN_SAMPLES) {
+        return -1;
+      }
+      if (percentile != cachedPercentile || lastRefreshTimeMs == -1
+          || nowMs - lastRefreshTimeMs >= PARTITION_LATENCY_REFRESH_INTERVAL_MS) {
+        cachedPercentileMs = (long) Math.ceil(latencyMs.getSnapshot().getValue(percentile));
+        cachedPercentile = percentile;
+        lastRefreshTimeMs = nowMs;
+      }
+      return cachedPercentileMs;
+    }
+  }
+
   /**
    * A metrics class that tracks at the {@link DataNodeId} level. These metrics are collected based on the operation
    * requests sent to individual {@link DataNodeId}. An operation request is part of an operation, and conveys an actual
@@ -354,6 +608,21 @@ public class NonBlockingRouterMetrics {
     public final Counter getRequestErrorCount;
     public final Counter deleteRequestErrorCount;
 
+    // The exponentially weighted moving average of the round-trip time of requests of all types, and the number of
+    // requests in flight from the NonBlockingRouter to the remote data node. These are used by the
+    // AdaptiveOperationTracker to estimate how long a new request to the data node will take.
+    public final Gauge<Double> requestLatencyEwmaMsGauge;
+    public final Gauge<Integer> requestsInFlightGauge;
+
+    // weight of the latest sample in the moving average of the request latency.
+    static final double REQUEST_LATENCY_EWMA_WEIGHT = 0.2;
+
+    // the number of requests in flight to the data node by the time at which they were sent.
+    private final TreeMap<Long, Integer> sendTimeMsToRequestsInFlight = new TreeMap<>();
+    private int requestsInFlight = 0;
+    private double requestLatencyEwmaMs = 0;
+    private long lastRequestLatencyUpdateTimeMs = -1;
+
     NodeLevelMetrics(MetricRegistry registry, String dataNodeName) {
       // Request rate.
       putRequestRate = registry.meter(MetricRegistry.name(PutOperation.class, dataNodeName, "PutRequestRate"));
@@ -381,6 +650,108 @@ public class NonBlockingRouterMetrics {
           registry.counter(MetricRegistry.name(GetBlobOperation.class, dataNodeName, "GetRequestErrorCount"));
       deleteRequestErrorCount =
           registry.counter(MetricRegistry.name(DeleteOperation.class, dataNodeName, "DeleteRequestErrorCount"));
+
+      // Request latency estimation.
+      requestLatencyEwmaMsGauge = new Gauge<Double>() {
+        @Override
+        public Double getValue() {
+          return getRequestLatencyEwmaMs();
+        }
+      };
+      registry.register(MetricRegistry.name(NonBlockingRouter.class, dataNodeName, "RequestLatencyEwmaMs"),
+          requestLatencyEwmaMsGauge);
+      requestsInFlightGauge = new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return getRequestsInFlight();
+        }
+      };
+      registry.register(MetricRegistry.name(NonBlockingRouter.class, dataNodeName, "RequestsInFlight"),
+          requestsInFlightGauge);
+    }
+
+    /**
+     * Records that a request has been sent to the data node.
+     * @param sendTimeMs the time at which the request was sent.
+     */
+    synchronized void onRequestSent(long sendTimeMs) {
+      Integer count = sendTimeMsToRequestsInFlight.get(sendTimeMs);
+      sendTimeMsToRequestsInFlight.put(sendTimeMs, count == null ? 1 : count + 1);
+      requestsInFlight++;
+    }
+
+    /**
+     * Records that a request to the data node has completed successfully.
+     * @param sendTimeMs the time at which the request was sent.
+     * @param nowMs the current time in ms.
+     */
+    synchronized void onRequestCompleted(long sendTimeMs, long nowMs) {
+      removeRequestInFlight(sendTimeMs);
+      updateRequestLatency(nowMs - sendTimeMs, nowMs);
+    }
+
+    /**
+     * Records that a request to the data node has failed or timed out. A failure can be quick (a refused connection,
+     * for instance), so it is counted as taking at least {@code penaltyLatencyMs} to keep a failing data node from
+     * looking fast.
+     * @param sendTimeMs the time at which the request was sent.
+     * @param penaltyLatencyMs the minimum latency to count for the failed request.
+     * @param nowMs the current time in ms.
+     */
+    synchronized void onRequestFailed(long sendTimeMs, long penaltyLatencyMs, long nowMs) {
+      removeRequestInFlight(sendTimeMs);
+      updateRequestLatency(Math.max(nowMs - sendTimeMs, penaltyLatencyMs), nowMs);
+    }
+
+    private void removeRequestInFlight(long sendTimeMs) {
+      Integer count = sendTimeMsToRequestsInFlight.get(sendTimeMs);
+      if (count != null) {
+        if (count == 1) {
+          sendTimeMsToRequestsInFlight.remove(sendTimeMs);
+        } else {
+          sendTimeMsToRequestsInFlight.put(sendTimeMs, count - 1);
+        }
+        requestsInFlight--;
+      }
+    }
+
+    private void updateRequestLatency(long requestLatencyMs, long nowMs) {
+      if (lastRequestLatencyUpdateTimeMs == -1) {
+        requestLatencyEwmaMs = requestLatencyMs;
+      } else {
+        requestLatencyEwmaMs += REQUEST_LATENCY_EWMA_WEIGHT * (requestLatencyMs - requestLatencyEwmaMs);
+      }
+      lastRequestLatencyUpdateTimeMs = nowMs;
+    }
+
+    /**
+     * @return the number of requests to the data node that are in flight.
+     */
+    synchronized int getRequestsInFlight() {
+      return requestsInFlight;
+    }
+
+    /**
+     * @return the time at which the oldest request in flight to the data node was sent, or -1 if no request is in
+     *         flight.
+     */
+    synchronized long getOldestRequestInFlightSendTimeMs() {
+      return sendTimeMsToRequestsInFlight.isEmpty() ? -1 : sendTimeMsToRequestsInFlight.firstKey();
+    }
+
+    /**
+     * @return the moving average of the request latency to the data node in ms. 0 if no request has completed yet.
+     */
+    synchronized double getRequestLatencyEwmaMs() {
+      return requestLatencyEwmaMs;
+    }
+
+    /**
+     * @return the time at which the moving average of the request latency was last updated, or -1 if no request to the
+     *         data node has completed yet.
+     */
+    synchronized long getLastRequestLatencyUpdateTimeMs() {
+      return lastRequestLatencyUpdateTimeMs;
     }
   }
 }
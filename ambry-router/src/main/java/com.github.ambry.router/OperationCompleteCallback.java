@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An object of this class is passed by the router to the operation managers to use to complete operations.
+ */
+class OperationCompleteCallback {
+  private final AtomicInteger operationsCount;
+  private static final Logger logger = LoggerFactory.getLogger(OperationCompleteCallback.class);
+
+  /**
+   * Construct an OperationCompleteCallback object
+   * @param operationsCount the operationsCount to decrement whenever an operation is completed.
+   */
+  OperationCompleteCallback(AtomicInteger operationsCount) {
+    this.operationsCount = operationsCount;
+  }
+
+  /**
+   * Accounts for an operation that the router starts on its own rather than for a call to one of its APIs, so that its
+   * completion through {@link #completeOperation(FutureResult, Callback, Object, Exception)} is balanced.
+   */
+  void registerOperation() {
+    operationsCount.incrementAndGet();
+  }
+
+  /**
+   * Completes a router operation by invoking the {@code callback} and setting the {@code futureResult} with
+   * {@code operationResult} (if any) and {@code exception} (if any).
+   * @param futureResult the {@link FutureResult} that needs to be set.
+   * @param callback that {@link Callback} that needs to be invoked. Can be null.
+   * @param operationResult the result of the operation (if any).
+   * @param exception {@link Exception} encountered while performing the operation (if any).
+   * @param <T> the type of the operation result, which depends on the kind of operation.
+   */
+  <T> void completeOperation(FutureResult<T> futureResult, Callback<T> callback, T operationResult,
+      Exception exception) {
+    operationsCount.decrementAndGet();
+    try {
+      futureResult.done(operationResult, exception);
+      if (callback != null) {
+        callback.onCompletion(operationResult, exception);
+      }
+    } catch (Exception e) {
+      logger.error("Exception caught during future and callback completion", e);
+    }
+  }
+}
@@ -60,4 +60,23 @@ interface OperationTracker {
    * @return An iterator that iterates all possible and valid replicas.
    */
   Iterator<ReplicaId> getReplicaIterator();
+
+  /**
+   * Allows one request to be sent to the next replica beyond the parallelism, while the ones in flight are still
+   * pending. This is used to send hedged requests when the requests in flight are slow. The allowance is only used up
+   * by a request sent beyond the parallelism, so the parallelism applies again once the requests in flight complete.
+   * Requests sent within the parallelism, such as ones that replace failed requests, leave it in place.
+   *
+   * @return {@code true} if there is a replica to which the additional request can be sent, {@code false} otherwise,
+   *         in which case nothing is changed.
+   */
+  boolean hedge();
+
+  /**
+   * Determines whether the request to the next replica returned by the iterator would be sent beyond the parallelism
+   * because of {@link #hedge()}, as opposed to within the parallelism.
+   *
+   * @return {@code true} if the next request sent is a hedged request.
+   */
+  boolean isNextSendHedge();
 }
@@ -13,7 +13,6 @@
  */
 package com.github.ambry.router;
 
-import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.config.RouterConfig;
@@ -23,6 +22,7 @@ import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.notification.NotificationSystem;
 import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.RequestOrResponse;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.util.Collections;
@@ -59,9 +59,10 @@ class PutManager {
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
   private final ByteBufferAsyncWritableChannel.ChannelEventListener chunkArrivalListener;
+  private final ByteBufferPool bufferPool;
 
   // shared by all PutOperations
-  private final ClusterMap clusterMap;
+  private final WritablePartitionSelector partitionSelector;
   private final RouterConfig routerConfig;
   private final ResponseHandler responseHandler;
   private final NonBlockingRouterMetrics routerMetrics;
@@ -83,7 +84,7 @@ class PutManager {
 
   /**
    * Create a PutManager
-   * @param clusterMap The {@link ClusterMap} of the cluster.
+   * @param partitionSelector The {@link WritablePartitionSelector} to select the partitions of chunks with.
    * @param responseHandler The {@link ResponseHandler} used to notify failures for failure detection.
    * @param notificationSystem The {@link NotificationSystem} used for notifying blob creations.
    * @param routerConfig  The {@link RouterConfig} containing the configs for the PutManager.
@@ -92,19 +93,21 @@ class PutManager {
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
    * @param index the index of the {@link NonBlockingRouter.OperationController} in the {@link NonBlockingRouter}
+   * @param bufferPool The {@link ByteBufferPool} to allocate the buffers of data chunks from.
    * @param time The {@link Time} instance to use.
    */
-  PutManager(ClusterMap clusterMap, ResponseHandler responseHandler, NotificationSystem notificationSystem,
-      RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
+  PutManager(WritablePartitionSelector partitionSelector, ResponseHandler responseHandler,
+      NotificationSystem notificationSystem, RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
       OperationCompleteCallback operationCompleteCallback, ReadyForPollCallback readyForPollCallback, int index,
-      Time time) {
-    this.clusterMap = clusterMap;
+      ByteBufferPool bufferPool, Time time) {
+    this.partitionSelector = partitionSelector;
     this.responseHandler = responseHandler;
     this.notificationSystem = notificationSystem;
     this.routerConfig = routerConfig;
     this.routerMetrics = routerMetrics;
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
+    this.bufferPool = bufferPool;
     this.chunkArrivalListener = new ByteBufferAsyncWritableChannel.ChannelEventListener() {
       @Override
       public void onEvent(ByteBufferAsyncWritableChannel.EventType e) {
@@ -138,8 +141,9 @@ class PutManager {
       FutureResult<String> futureResult, Callback<String> callback) {
     try {
       PutOperation putOperation =
-          new PutOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobProperties, userMetaData,
-              channel, futureResult, callback, readyForPollCallback, chunkArrivalListener, time);
+          new PutOperation(routerConfig, routerMetrics, partitionSelector, responseHandler, blobProperties,
+              userMetaData, channel, futureResult, callback, readyForPollCallback, chunkArrivalListener, bufferPool,
+              time);
       putOperations.add(putOperation);
       putOperation.startReadingFromChannel();
     } catch (RouterException e) {
@@ -218,6 +222,7 @@ class PutManager {
    * @param op the {@link PutOperation} that has completed.
    */
   void onComplete(PutOperation op) {
+    op.releaseChunkBuffers();
     Exception e = op.getOperationException();
     if (e != null) {
       // @todo add blobs in the metadata chunk to ids_to_delete
@@ -273,6 +278,7 @@ class PutManager {
       // the RequestResponseHandler thread when it is in poll() or handleResponse(). In order to avoid the completion
       // from happening twice, complete it here only if the remove was successful.
       if (putOperations.remove(op)) {
+        op.releaseChunkBuffers();
         Exception e = new RouterException("Aborted operation because Router is closed.", RouterErrorCode.RouterClosed);
         routerMetrics.operationDequeuingRate.mark();
         routerMetrics.operationAbortCount.inc();
@@ -301,7 +307,9 @@ class PutManager {
           }
           if (chunkFillerThreadMaySleep) {
             synchronized (chunkFillerSynchronizer) {
-              while (chunkFillerThreadMaySleep) {
+              // isOpen is checked under the lock so that a close() that races with this thread going to sleep is
+              // not missed.
+              while (chunkFillerThreadMaySleep && isOpen.get()) {
                 isChunkFillerThreadAsleep = true;
                 chunkFillerSynchronizer.wait();
               }
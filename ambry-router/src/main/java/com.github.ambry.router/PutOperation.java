@@ -13,7 +13,6 @@
  */
 package com.github.ambry.router;
 
-import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
 import com.github.ambry.commons.BlobId;
@@ -23,6 +22,7 @@ import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.MessageFormatRecord;
 import com.github.ambry.messageformat.MetadataContentSerDe;
 import com.github.ambry.network.Port;
 import com.github.ambry.network.RequestInfo;
@@ -32,18 +32,18 @@ import com.github.ambry.protocol.PutResponse;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.ByteBufferPool;
 import com.github.ambry.utils.Time;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,26 +62,39 @@ import org.slf4j.LoggerFactory;
  * within a single PutChunk object which is used to complete the whole operation. No metadata chunks are created. The
  * blob id of the single data chunk will be the blob id of the blob.
  *
- * For composite blobs, a PutOperation consists of a fixed number of PutChunk objects and a MetadataPutChunk object.
+ * For composite blobs, a PutOperation consists of a number of PutChunk objects and a MetadataPutChunk object.
  * Each PutChunk holds one of the chunks of the object at any time and attempts to put the chunk successfully, and then
  * possibly moves on to hold another chunk of the object. This is repeated until either the operation fails or until all
  * the chunks are put successfully. If all the chunks are put successfully, the MetadataPutChunk is created to put
  * the metadata chunk consisting of the blob ids of all the data chunks, and the successful put of the metadata
  * chunk successfully completes the operation.
+ *
+ * The number of PutChunks that are used at a time adapts to the upload: it starts at
+ * {@link RouterConfig#routerPutMinParallelChunks}, grows by one (up to {@link RouterConfig#routerPutMaxParallelChunks})
+ * whenever a chunk is put successfully while data was waiting in the channel for a free chunk, and is halved whenever
+ * a chunk put has to be retried. The memory used by the chunks of all the operations is bounded by the router-wide
+ * buffer pool.
+ *
+ * If the size of the blob is not known upfront (the size in the {@link BlobProperties} and the size of the channel are
+ * both -1), the blob is put as a composite blob whose size and number of chunks are determined once the channel has
+ * been read completely, unless it turns out to fit in a single chunk that has not yet been sent out.
  */
 class PutOperation {
   // Operation arguments.
   private final RouterConfig routerConfig;
   private final NonBlockingRouterMetrics routerMetrics;
-  private final ClusterMap clusterMap;
+  private final WritablePartitionSelector partitionSelector;
   private final ResponseHandler responseHandler;
-  private final BlobProperties blobProperties;
+  // the properties of the blob. If the size of the blob is not known upfront, this is replaced with the properties
+  // that contain the size once the channel has been read completely.
+  private volatile BlobProperties blobProperties;
   private final byte[] userMetadata;
   private final ReadableStreamChannel channel;
   private final ByteBufferAsyncWritableChannel chunkFillerChannel;
   private final FutureResult<String> futureResult;
   private final Callback<String> callback;
   private final ReadyForPollCallback readyForPollCallback;
+  private final ByteBufferPool bufferPool;
   private final Time time;
 
   // Parameters associated with the state.
@@ -89,11 +102,20 @@ class PutOperation {
   // the list of PutChunks that will be used to hold chunks that are sent out. A PutChunk will only hold one chunk at
   // any time, but will be reused as and when the operation on the chunk is complete.
   protected final PutChunk[] putChunks;
-  // total number of data chunks this operation will result in.
-  private final int numDataChunks;
+  // total number of data chunks this operation will result in. -1 until it is known, if the size of the blob is not
+  // known upfront.
+  private volatile int numDataChunks;
   // the total size of the object (the overall blob). This is the same as the size in blobProperties,
-  // and the size to be read from the channel.
-  private final long blobSize;
+  // and the size to be read from the channel. -1 until it is known, if the size of the blob is not known upfront.
+  private long blobSize;
+  // whether the size of the blob was known when the operation was created.
+  private final boolean isBlobSizeKnownUpfront;
+  // the total number of bytes read from the channel, set once the channel has been read completely.
+  private volatile long totalBytesReadFromChannel = -1;
+  // the number of PutChunks that may be filled at a time.
+  private volatile int parallelChunkLimit;
+  // whether the channel has data that is waiting for a chunk to become available for filling.
+  private volatile boolean isWaitingForFreeChunk = false;
   // total bytes of this object that has been filled so far by the ChunkFillerThread.
   private long bytesFilledSoFar;
   // the reference to the chunk in putChunks that was most recently filled or became eligible for getting filled.
@@ -106,7 +128,7 @@ class PutOperation {
   private boolean chunkFillingCompleted = false;
   // the metadata chunk for this operation. If this operation results in only one chunk,
   // then there will be no metadata chunk and this will be null.
-  private final MetadataPutChunk metadataPutChunk;
+  private volatile MetadataPutChunk metadataPutChunk;
   // denotes whether the operation is complete.
   private boolean operationCompleted = false;
   // the blob id of the overall blob. This will be set if and when the operation is successful.
@@ -126,6 +148,8 @@ class PutOperation {
   private long waitTimeForCurrentChunkAvailabilityMs;
   // The time spent by a chunk for data to be available in the channel.
   private long waitTimeForChannelDataAvailabilityMs;
+  // whether the chunk buffers of this operation have been returned to the bufferPool. Guarded by this.
+  private boolean chunkBuffersReleased = false;
 
   private static final Logger logger = LoggerFactory.getLogger(PutOperation.class);
 
@@ -137,7 +161,7 @@ class PutOperation {
    * chunks.
    * @param routerConfig the {@link RouterConfig} containing the configs for put operations.
    * @param routerMetrics The {@link NonBlockingRouterMetrics} to be used for reporting metrics.
-   * @param clusterMap the {@link ClusterMap} of the cluster
+   * @param partitionSelector the {@link WritablePartitionSelector} to select the partitions of chunks with.
    * @param responseHandler the {@link ResponseHandler} responsible for failure detection.
    * @param blobProperties the BlobProperties associated with the put operation.
    * @param userMetadata the userMetadata associated with the put operation.
@@ -146,14 +170,18 @@ class PutOperation {
    * @param callback the callback that is to be called when the operation completes.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within this
    *                             operation.
+   * @param writableChannelEventListener the listener to notify when data is written into the channel that the
+   *                                     chunks are filled from.
+   * @param bufferPool the {@link ByteBufferPool} to allocate the buffers of data chunks from.
    * @param time the Time instance to use.
    * @throws RouterException if there is an error in constructing the PutOperation with the given parameters.
    */
-  PutOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
-      ResponseHandler responseHandler, BlobProperties blobProperties, byte[] userMetadata,
-      ReadableStreamChannel channel, FutureResult<String> futureResult, Callback<String> callback,
+  PutOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics,
+      WritablePartitionSelector partitionSelector, ResponseHandler responseHandler, BlobProperties blobProperties,
+      byte[] userMetadata, ReadableStreamChannel channel, FutureResult<String> futureResult, Callback<String> callback,
       ReadyForPollCallback readyForPollCallback,
-      ByteBufferAsyncWritableChannel.ChannelEventListener writableChannelEventListener, Time time)
+      ByteBufferAsyncWritableChannel.ChannelEventListener writableChannelEventListener, ByteBufferPool bufferPool,
+      Time time)
       throws RouterException {
     submissionTimeMs = time.milliseconds();
     blobSize = blobProperties.getBlobSize();
@@ -162,17 +190,22 @@ class PutOperation {
           "Channel size: " + channel.getSize() + " different from size in BlobProperties: " + blobProperties
               .getBlobSize(), RouterErrorCode.BadInputChannel);
     }
-    // Set numDataChunks
-    // the max blob size that can be supported is technically limited by the max chunk size configured.
-    long numDataChunksL = blobSize == 0 ? 1 : (blobSize - 1) / routerConfig.routerMaxPutChunkSizeBytes + 1;
-    if (numDataChunksL > Integer.MAX_VALUE) {
-      throw new RouterException("Cannot support a blob size of " + blobSize + " with a chunk size of " +
-          routerConfig.routerMaxPutChunkSizeBytes, RouterErrorCode.BlobTooLarge);
+    isBlobSizeKnownUpfront = blobSize != -1;
+    if (isBlobSizeKnownUpfront) {
+      // Set numDataChunks
+      // the max blob size that can be supported is technically limited by the max chunk size configured.
+      long numDataChunksL = blobSize == 0 ? 1 : (blobSize - 1) / routerConfig.routerMaxPutChunkSizeBytes + 1;
+      if (numDataChunksL > Integer.MAX_VALUE) {
+        throw new RouterException("Cannot support a blob size of " + blobSize + " with a chunk size of " +
+            routerConfig.routerMaxPutChunkSizeBytes, RouterErrorCode.BlobTooLarge);
+      }
+      numDataChunks = (int) numDataChunksL;
+    } else {
+      numDataChunks = -1;
     }
-    numDataChunks = (int) numDataChunksL;
     this.routerConfig = routerConfig;
     this.routerMetrics = routerMetrics;
-    this.clusterMap = clusterMap;
+    this.partitionSelector = partitionSelector;
     this.responseHandler = responseHandler;
     this.blobProperties = blobProperties;
     this.userMetadata = userMetadata;
@@ -180,16 +213,19 @@ class PutOperation {
     this.futureResult = futureResult;
     this.callback = callback;
     this.readyForPollCallback = readyForPollCallback;
+    this.bufferPool = bufferPool;
     this.time = time;
     bytesFilledSoFar = 0;
     chunkCounter = -1;
 
     // Initialize chunks
-    putChunks = new PutChunk[Math.min(numDataChunks, NonBlockingRouter.MAX_IN_MEM_CHUNKS)];
+    int maxParallelChunks = routerConfig.routerPutMaxParallelChunks;
+    putChunks = new PutChunk[isBlobSizeKnownUpfront ? Math.min(numDataChunks, maxParallelChunks) : maxParallelChunks];
     for (int i = 0; i < putChunks.length; i++) {
       putChunks[i] = new PutChunk();
     }
-    metadataPutChunk = numDataChunks > 1 ? new MetadataPutChunk() : null;
+    parallelChunkLimit = Math.min(putChunks.length, routerConfig.routerPutMinParallelChunks);
+    metadataPutChunk = numDataChunks > 1 || !isBlobSizeKnownUpfront ? new MetadataPutChunk() : null;
     chunkFillerChannel = new ByteBufferAsyncWritableChannel(writableChannelEventListener);
   }
 
@@ -202,6 +238,8 @@ class PutOperation {
       public void onCompletion(Long result, Exception exception) {
         if (exception != null) {
           setOperationExceptionAndComplete(exception);
+        } else if (!isBlobSizeKnownUpfront) {
+          totalBytesReadFromChannel = result;
         } else if (result != blobSize) {
           setOperationExceptionAndComplete(new RouterException("Incorrect number of bytes: " + result +
               " read in from the channel, expected: " + blobSize, RouterErrorCode.BadInputChannel));
@@ -228,6 +266,7 @@ class PutOperation {
     if (operationCompleted) {
       return;
     }
+    MetadataPutChunk metadataPutChunk = this.metadataPutChunk;
     if (metadataPutChunk != null && metadataPutChunk.isReady()) {
       metadataPutChunk.poll(requestRegistrationCallback);
       if (metadataPutChunk.isComplete()) {
@@ -272,11 +311,12 @@ class PutOperation {
    * @param chunk the {@link PutChunk} that has completed its operation.
    */
   void onChunkOperationComplete(PutChunk chunk) {
+    MetadataPutChunk metadataPutChunk = this.metadataPutChunk;
     if (chunk.getChunkBlobId() == null) {
       // the overall operation has failed if any of the chunk fails.
       logger.error("Failed putting chunk at index: " + chunk.getChunkIndex() + ", failing the entire operation");
       operationCompleted = true;
-    } else if (numDataChunks == 1 || chunk == metadataPutChunk) {
+    } else if (metadataPutChunk == null || chunk == metadataPutChunk) {
       blobId = chunk.getChunkBlobId();
       // the overall operation has succeeded.
       if (chunk.failedAttempts > 0) {
@@ -290,6 +330,11 @@ class PutOperation {
       // a data chunk has succeeded. More to come.
       logger.trace("Successfully put chunk with blob id: " + chunk.getChunkBlobId());
       metadataPutChunk.addChunkId(chunk.chunkBlobId, chunk.chunkIndex);
+      if (isWaitingForFreeChunk && parallelChunkLimit < putChunks.length) {
+        // the upload is limited by the chunks in flight rather than by the rate at which data arrives.
+        parallelChunkLimit++;
+      }
+      routerMetrics.putParallelChunkLimit.update(parallelChunkLimit);
     }
     routerMetrics.putChunkOperationLatencyMs.update(time.milliseconds() - chunk.chunkReadyAtMs);
     chunk.clear();
@@ -346,9 +391,13 @@ class PutOperation {
             }
             break;
           }
-        } while (bytesFilledSoFar < blobSize);
-        if (bytesFilledSoFar == blobSize) {
-          chunkFillingCompleted = true;
+        } while (!isBlobSizeKnownUpfront || bytesFilledSoFar < blobSize);
+        if (isBlobSizeKnownUpfront) {
+          if (bytesFilledSoFar == blobSize) {
+            chunkFillingCompleted = true;
+          }
+        } else if (channelReadBuffer == null && totalBytesReadFromChannel == bytesFilledSoFar) {
+          maybeCompleteUnknownSizeChunkFilling();
         }
       }
     } catch (Exception e) {
@@ -358,10 +407,48 @@ class PutOperation {
     }
   }
 
+  /**
+   * Completes chunk filling for a blob whose size was not known upfront, once all the data in the channel has been
+   * filled into chunks. The chunk that is being built (if any) is the last data chunk. If it is also the first one,
+   * the blob is put as a simple blob. Otherwise the metadata chunk is built as soon as all the data chunks are put.
+   * @throws InterruptedException if the allocation of a chunk buffer is interrupted.
+   */
+  private void maybeCompleteUnknownSizeChunkFilling()
+      throws InterruptedException {
+    if (chunkCounter == -1 && getChunkToFill() == null) {
+      // the blob is empty, and there is no buffer for its only chunk yet. Try again later.
+      return;
+    }
+    blobSize = bytesFilledSoFar;
+    numDataChunks = chunkCounter + 1;
+    blobProperties = new BlobProperties(blobSize, blobProperties.getServiceId(), blobProperties.getOwnerId(),
+        blobProperties.getContentType(), blobProperties.isPrivate(), blobProperties.getTimeToLiveInSeconds(),
+        blobProperties.getCreationTimeInMs());
+    if (chunkToFill != null && chunkToFill.isBuilding() && chunkToFill.buf.position() == 0 && chunkCounter > 0) {
+      // the previous chunk was the last one, and an empty read from the channel started this one.
+      chunkToFill.clear();
+      numDataChunks--;
+    } else if (chunkToFill != null && chunkToFill.isBuilding()) {
+      if (numDataChunks == 1) {
+        metadataPutChunk = null;
+      }
+      chunkToFill.onFillComplete();
+      routerMetrics.chunkFillTimeMs.update(chunkToFill.chunkReadyAtMs - chunkToFill.chunkFreeAtMs);
+      updateChunkFillerWaitTimeMetrics();
+    }
+    chunkFillingCompleted = true;
+    MetadataPutChunk metadataPutChunk = this.metadataPutChunk;
+    if (metadataPutChunk != null) {
+      metadataPutChunk.maybeBuild();
+    }
+    readyForPollCallback.onPollReady();
+  }
+
   /**
    * Called whenever the channel has data but no free or building chunk is available to be filled.
    */
   private void maybeStartTrackingWaitForChunkTime() {
+    isWaitingForFreeChunk = true;
     if (startTimeForChunkAvailabilityWaitMs == 0) {
       // this is the first point in time after the last chunk filling (if any) when the filling was blocked due to
       // chunk unavailability, so mark this time.
@@ -375,6 +462,7 @@ class PutOperation {
    * Called whenever the channel has data and there is a free or building chunk available to be filled.
    */
   private void maybeStopTrackingWaitForChunkTime() {
+    isWaitingForFreeChunk = false;
     if (startTimeForChunkAvailabilityWaitMs != 0) {
       // this is the first point in time since the last wait that a chunk became available for filling.
       waitTimeForCurrentChunkAvailabilityMs = time.milliseconds() - startTimeForChunkAvailabilityWaitMs;
@@ -419,46 +507,109 @@ class PutOperation {
 
   /**
    * Get the chunk to be filled. At most one chunk for an operation will ever be in Building state. If there is such
-   * a chunk, that is returned. If not, if there is a Free chunk, that is returned. If no Free chunks are available
-   * either, then null is returned.
+   * a chunk, that is returned. If not, if there is a Free chunk for which a buffer is available, that is returned.
+   * If no Free chunks are available either, then null is returned.
    * @return the chunk to fill, or null if there are no chunks eligible for filling.
+   * @throws InterruptedException if the allocation of a chunk buffer is interrupted.
    */
-  private PutChunk getChunkToFill() {
+  private PutChunk getChunkToFill()
+      throws InterruptedException {
     if (chunkToFill == null || !chunkToFill.isBuilding()) {
       chunkToFill = getFreeChunk();
       if (chunkToFill != null) {
-        chunkCounter++;
-        chunkToFill.prepareForBuilding(chunkCounter, getSizeOfChunkAt(chunkCounter));
+        if (chunkToFill.prepareForBuilding(chunkCounter + 1, getSizeOfChunkAt(chunkCounter + 1))) {
+          chunkCounter++;
+        } else {
+          // the buffer pool is exhausted. Data is left in the channel until buffers are returned to the pool, which
+          // pushes back on the writer of the channel.
+          chunkToFill = null;
+        }
       }
     }
     return chunkToFill;
   }
 
   /**
-   * @return A free chunk, if one is available; null otherwise.
+   * Allocates a buffer for a data chunk from the buffer pool, without waiting for memory to become available.
+   * @param size the size of the buffer.
+   * @return the allocated buffer, or null if the pool is exhausted or the buffers of this operation have been
+   *         released.
+   * @throws InterruptedException if the allocation is interrupted.
+   */
+  private synchronized ByteBuffer allocateChunkBuffer(int size)
+      throws InterruptedException {
+    if (chunkBuffersReleased) {
+      return null;
+    }
+    try {
+      return bufferPool.allocate(size, 0);
+    } catch (TimeoutException e) {
+      routerMetrics.putChunkBufferPoolExhaustedCount.inc();
+      return null;
+    }
+  }
+
+  /**
+   * Returns a buffer of a data chunk to the buffer pool, unless that was already done as part of
+   * {@link #releaseChunkBuffers()}.
+   * @param buffer the buffer to return.
+   */
+  private synchronized void deallocateChunkBuffer(ByteBuffer buffer) {
+    if (!chunkBuffersReleased) {
+      bufferPool.deallocate(buffer);
+    }
+  }
+
+  /**
+   * Returns the buffers of all the data chunks of this operation to the buffer pool. This is called once the operation
+   * is complete. Requests that are still being sent may hold on to the buffers, which is fine as the pool only bounds
+   * the memory that is allocated and does not hand out the same memory again.
+   */
+  synchronized void releaseChunkBuffers() {
+    if (!chunkBuffersReleased) {
+      for (PutChunk chunk : putChunks) {
+        chunk.releaseBuffers();
+      }
+      chunkBuffersReleased = true;
+    }
+  }
+
+  /**
+   * @return A free chunk among the chunks that may currently be filled, if one is available; null otherwise.
    */
   private PutChunk getFreeChunk() {
-    for (PutChunk chunk : putChunks) {
-      if (chunk.isFree()) {
-        return chunk;
+    int limit = parallelChunkLimit;
+    for (int i = 0; i < limit; i++) {
+      if (putChunks[i].isFree()) {
+        return putChunks[i];
       }
     }
     return null;
   }
 
+  /**
+   * Called when the put of a chunk has to be retried. Halves the number of chunks that may be filled at a time, as the
+   * cluster is unlikely to keep up with more chunks in flight.
+   */
+  private void onChunkPutRetry() {
+    parallelChunkLimit = Math.max(Math.min(putChunks.length, routerConfig.routerPutMinParallelChunks),
+        parallelChunkLimit / 2);
+  }
+
   /**
    * Get the chunk size of the chunk at the given position.
    * @param pos the position of the chunk in the overall blob.
    * @return the size of the chunk.
    */
   private int getSizeOfChunkAt(int pos) {
-    return pos == numDataChunks - 1 ? (int) ((blobSize - 1) % routerConfig.routerMaxPutChunkSizeBytes + 1)
-        : routerConfig.routerMaxPutChunkSizeBytes;
+    return isBlobSizeKnownUpfront && pos == numDataChunks - 1 ? (int) ((blobSize - 1)
+        % routerConfig.routerMaxPutChunkSizeBytes + 1) : routerConfig.routerMaxPutChunkSizeBytes;
   }
 
   /**
    * Return the number of data chunks that this operation will result in.
-   * @return the number of data chunks that this operation will result in.
+   * @return the number of data chunks that this operation will result in, or -1 if the size of the blob was not known
+   * upfront and the channel has not been read completely yet.
    */
   int getNumDataChunks() {
     return numDataChunks;
@@ -624,19 +775,42 @@ class PutOperation {
      */
     private void maybeFreeDefunctBuffers() {
       for (Iterator<DefunctBufferInfo> iter = defunctBufferInfos.iterator(); iter.hasNext(); ) {
+        DefunctBufferInfo defunctBufferInfo = iter.next();
         boolean canBeFreed = true;
-        for (PutRequest putRequest : iter.next().putRequests) {
+        for (PutRequest putRequest : defunctBufferInfo.putRequests) {
           if (!putRequest.isSendComplete()) {
             canBeFreed = false;
           }
         }
         if (canBeFreed) {
-          // this is where the buffer will be freed if the buffer pool is used. For now, simply remove the reference.
+          freeBuffer(defunctBufferInfo.buf);
           iter.remove();
         }
       }
     }
 
+    /**
+     * Returns the buffer of a data chunk to the buffer pool.
+     * @param buffer the buffer to free.
+     */
+    void freeBuffer(ByteBuffer buffer) {
+      deallocateChunkBuffer(buffer);
+    }
+
+    /**
+     * Returns the current buffer and the defunct buffers of this PutChunk to the buffer pool.
+     */
+    private void releaseBuffers() {
+      if (buf != null) {
+        bufferPool.deallocate(buf);
+        buf = null;
+      }
+      for (DefunctBufferInfo defunctBufferInfo : defunctBufferInfos) {
+        bufferPool.deallocate(defunctBufferInfo.buf);
+      }
+      defunctBufferInfos.clear();
+    }
+
     /**
      * @return the position of the current chunk in the overall blob.
      */
@@ -690,16 +864,23 @@ class PutOperation {
      * Prepare this chunk for building, that is, for being filled with data from the channel.
      * @param chunkIndex the position in the overall blob that this chunk is going to  be in.
      * @param size size to allocate memory for the buffer that will hold the data for this chunk.
+     * @return {@code true} if the chunk is ready to be built, {@code false} if no buffer could be allocated for it.
+     * @throws InterruptedException if the allocation of the buffer is interrupted.
      */
-    private void prepareForBuilding(int chunkIndex, int size) {
-      this.chunkIndex = chunkIndex;
+    private boolean prepareForBuilding(int chunkIndex, int size)
+        throws InterruptedException {
       if (buf == null) {
-        buf = ByteBuffer.allocate(size);
+        buf = allocateChunkBuffer(size);
+        if (buf == null) {
+          return false;
+        }
       } else {
         buf.clear();
         buf.limit(size);
       }
+      this.chunkIndex = chunkIndex;
       state = ChunkState.Building;
+      return true;
     }
 
     /**
@@ -766,6 +947,7 @@ class PutOperation {
           if (failedAttempts <= routerConfig.routerMaxSlippedPutAttempts) {
             logger.trace("Attempt to put chunk with id: " + chunkBlobId + " failed, attempting slipped put");
             routerMetrics.slippedPutAttemptCount.inc();
+            onChunkPutRetry();
             prepareForSending();
           } else {
             // this chunk could not be successfully put. The whole operation has to fail.
@@ -813,6 +995,7 @@ class PutOperation {
           onErrorResponse(entry.getValue().replicaId);
           responseHandler.onRequestResponseException(entry.getValue().replicaId,
               new IOException("Timed out waiting for a response"));
+          partitionSelector.onPutResponse(partitionId, time.milliseconds() - entry.getValue().startTimeMs, false);
           chunkException = new RouterException("Timed out waiting for a response", RouterErrorCode.OperationTimedOut);
           inFlightRequestsIterator.remove();
         } else {
@@ -832,7 +1015,7 @@ class PutOperation {
         String hostname = replicaId.getDataNodeId().getHostname();
         Port port = replicaId.getDataNodeId().getPortToConnectTo();
         PutRequest putRequest = createPutRequest();
-        RequestInfo request = new RequestInfo(hostname, port, putRequest);
+        RequestInfo request = new RequestInfo(hostname, port, putRequest, putRequest.getCorrelationId());
         int correlationId = putRequest.getCorrelationId();
         correlationIdToChunkPutRequestInfo
             .put(correlationId, new ChunkPutRequestInfo(replicaId, putRequest, time.milliseconds()));
@@ -854,25 +1037,18 @@ class PutOperation {
      */
     protected PutRequest createPutRequest() {
       return new PutRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname,
-          chunkBlobId, blobProperties, ByteBuffer.wrap(userMetadata), new ByteBufferInputStream(buf.duplicate()),
-          buf.remaining(), BlobType.DataBlob);
+          chunkBlobId, blobProperties, ByteBuffer.wrap(userMetadata), buf, BlobType.DataBlob);
     }
 
     /**
-     * Choose a random {@link PartitionId} for putting the current chunk and return it.
+     * Choose a {@link PartitionId} for putting the current chunk and return it.
      * @param partitionIdsToExclude the list of {@link PartitionId}s that should be excluded from consideration.
      * @return the chosen {@link PartitionId}
      * @throws RouterException
      */
     protected PartitionId getPartitionForPut(List<PartitionId> partitionIdsToExclude)
         throws RouterException {
-      // getWritablePartitions creates and returns a new list, so it is safe to manipulate it.
-      List<PartitionId> partitions = clusterMap.getWritablePartitionIds();
-      partitions.removeAll(partitionIdsToExclude);
-      if (partitions.isEmpty()) {
-        throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
-      }
-      return partitions.get(ThreadLocalRandom.current().nextInt(partitions.size()));
+      return partitionSelector.getPartition(partitionIdsToExclude);
     }
 
     /**
@@ -909,10 +1085,9 @@ class PutOperation {
           PutResponse putResponse =
               PutResponse.readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())));
           if (putResponse.getCorrelationId() != correlationId) {
-            // The NetworkClient associates a response with a request based on the fact that only one request is sent
-            // out over a connection id, and the response received on a connection id must be for the latest request
-            // sent over it. The check here ensures that is indeed the case. If not, log an error and fail this request.
-            // There is no other way to handle it.
+            // The NetworkClient associates a response with a request either because it is the only request in flight on
+            // its connection id, or by the correlation id in the response. The check here ensures that is indeed the
+            // case. If not, log an error and fail this request. There is no other way to handle it.
             routerMetrics.unknownReplicaResponseError.inc();
             logger.error("The correlation id in the PutResponse " + putResponse.getCorrelationId()
                 + " is not the same as the correlation id in the associated PutRequest: " + correlationId);
@@ -940,6 +1115,7 @@ class PutOperation {
           isSuccessful = false;
         }
       }
+      partitionSelector.onPutResponse(partitionId, requestLatencyMs, isSuccessful);
       if (isSuccessful) {
         operationTracker.onResponse(chunkPutRequestInfo.replicaId, true);
         if (RouterUtils.isRemoteReplica(routerConfig, chunkPutRequestInfo.replicaId)) {
@@ -1036,14 +1212,14 @@ class PutOperation {
    * on it.
    */
   class MetadataPutChunk extends PutChunk {
-    StoreKey[] chunkIds;
+    final List<StoreKey> chunkIds;
     int chunksDone;
 
     /**
      * Initialize the MetadataPutChunk.
      */
     MetadataPutChunk() {
-      chunkIds = new BlobId[numDataChunks];
+      chunkIds = new ArrayList<>(Math.max(numDataChunks, 0));
       chunksDone = 0;
       // metadata blob is in building state.
       state = ChunkState.Building;
@@ -1054,11 +1230,27 @@ class PutOperation {
      * @param chunkBlobId the blobId of the associated data chunk
      * @param chunkIndex the position of the associated data chunk in the overall blob.
      */
-    void addChunkId(BlobId chunkBlobId, int chunkIndex) {
-      chunkIds[chunkIndex] = chunkBlobId;
+    synchronized void addChunkId(BlobId chunkBlobId, int chunkIndex) {
+      while (chunkIds.size() <= chunkIndex) {
+        chunkIds.add(null);
+      }
+      chunkIds.set(chunkIndex, chunkBlobId);
       chunksDone++;
-      if (chunksDone == numDataChunks) {
-        buf = MetadataContentSerDe.serializeMetadataContent(Arrays.asList(chunkIds));
+      maybeBuild();
+    }
+
+    /**
+     * Serializes the metadata and makes this chunk ready, if the number of data chunks is known and all of them have
+     * been put.
+     */
+    synchronized void maybeBuild() {
+      if (isBuilding() && chunksDone == numDataChunks) {
+        if (routerConfig.routerMetadataContentVersion == MessageFormatRecord.Metadata_Content_Version_V2) {
+          buf = MetadataContentSerDe.serializeMetadataContent(routerConfig.routerMaxPutChunkSizeBytes, blobSize,
+              chunkIds);
+        } else {
+          buf = MetadataContentSerDe.serializeMetadataContent(chunkIds);
+        }
         onFillComplete();
       }
     }
@@ -1072,8 +1264,16 @@ class PutOperation {
     @Override
     protected PutRequest createPutRequest() {
       return new PutRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname,
-          chunkBlobId, blobProperties, ByteBuffer.wrap(userMetadata), new ByteBufferInputStream(buf.duplicate()),
-          buf.remaining(), BlobType.MetadataBlob);
+          chunkBlobId, blobProperties, ByteBuffer.wrap(userMetadata), buf, BlobType.MetadataBlob);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The buffer of the metadata chunk is not allocated from the buffer pool, so it is not returned to it.
+     */
+    @Override
+    void freeBuffer(ByteBuffer buffer) {
     }
   }
 
@@ -58,13 +58,16 @@ import java.util.NoSuchElementException;
 class SimpleOperationTracker implements OperationTracker {
   private final int successTarget;
   private final int parallelism;
-  private final LinkedList<ReplicaId> replicaPool = new LinkedList<ReplicaId>();
+  // the replicas to send requests to, in order. Subclasses may reorder it when they are constructed.
+  final LinkedList<ReplicaId> replicaPool = new LinkedList<ReplicaId>();
   private final OpTrackerIterator otIterator;
 
   private int totalReplicaCount = 0;
   private int inflightCount = 0;
   private int succeededCount = 0;
   private int failedCount = 0;
+  // the number of requests that may be sent beyond the parallelism because of hedges.
+  private int hedgedSendsAllowed = 0;
   private Iterator<ReplicaId> replicaIterator;
 
   /**
@@ -139,6 +142,20 @@ class SimpleOperationTracker implements OperationTracker {
     }
   }
 
+  @Override
+  public boolean hedge() {
+    if (replicaPool.isEmpty()) {
+      return false;
+    }
+    hedgedSendsAllowed++;
+    return true;
+  }
+
+  @Override
+  public boolean isNextSendHedge() {
+    return inflightCount >= parallelism && hedgedSendsAllowed > 0;
+  }
+
   @Override
   public Iterator<ReplicaId> getReplicaIterator() {
     replicaIterator = replicaPool.iterator();
@@ -148,11 +165,16 @@ class SimpleOperationTracker implements OperationTracker {
   private class OpTrackerIterator implements Iterator<ReplicaId> {
     @Override
     public boolean hasNext() {
-      return inflightCount < parallelism && replicaIterator.hasNext();
+      return inflightCount < parallelism + hedgedSendsAllowed && replicaIterator.hasNext();
     }
 
     @Override
     public void remove() {
+      // a hedge allows a single extra request, after which the parallelism applies again. Requests sent within the
+      // parallelism do not use it up.
+      if (isNextSendHedge()) {
+        hedgedSendsAllowed--;
+      }
       replicaIterator.remove();
       inflightCount++;
     }
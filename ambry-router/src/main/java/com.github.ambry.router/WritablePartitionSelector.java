@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.Time;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Selects the partitions that the chunks of put operations are put to. It is shared by all the put operations of a
+ * router.
+ * <p>
+ * Computing the writable partitions requires the {@link ClusterMap} to check the state of every replica of every
+ * partition, so the selector caches them in an array that is replaced as a whole (copy-on-write) when it is refreshed.
+ * The cache is refreshed periodically, so that partitions whose replicas come back up are used again, and on the next
+ * selection after a put request fails, as that is when the router reports the replica events that can make a
+ * partition unhealthy to the {@link ClusterMap}.
+ * <p>
+ * A partition is selected by picking two random candidates and choosing the one with the lower recent put latency.
+ * This takes constant time and steers puts away from slow (for example, heavily loaded or filling) disks without
+ * starving them. Failed puts are counted as taking at least the failure latency, so that partitions that fail quickly
+ * are not preferred.
+ * <p>
+ * This class is thread safe.
+ */
+class WritablePartitionSelector {
+  static final double PUT_LATENCY_EWMA_WEIGHT = 0.2;
+  private static final int MAX_RANDOM_ATTEMPTS = 4;
+
+  private final ClusterMap clusterMap;
+  private final long refreshIntervalMs;
+  private final long failureLatencyMs;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final Time time;
+  private final ConcurrentHashMap<PartitionId, PutLatency> partitionToPutLatency = new ConcurrentHashMap<>();
+  private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+  private volatile PartitionId[] writablePartitions = new PartitionId[0];
+  private volatile long lastRefreshTimeMs = -1;
+  private volatile boolean isStale = true;
+
+  /**
+   * Create a WritablePartitionSelector.
+   * @param clusterMap the {@link ClusterMap} to get the writable partitions from.
+   * @param refreshIntervalMs the maximum time in ms for which the cached writable partitions are used.
+   * @param failureLatencyMs the minimum latency in ms that a failed put is counted as taking.
+   * @param routerMetrics the {@link NonBlockingRouterMetrics} to record refreshes in.
+   * @param time the {@link Time} instance to use.
+   */
+  WritablePartitionSelector(ClusterMap clusterMap, long refreshIntervalMs, long failureLatencyMs,
+      NonBlockingRouterMetrics routerMetrics, Time time) {
+    this.clusterMap = clusterMap;
+    this.refreshIntervalMs = refreshIntervalMs;
+    this.failureLatencyMs = failureLatencyMs;
+    this.routerMetrics = routerMetrics;
+    this.time = time;
+  }
+
+  /**
+   * Selects a writable partition to put a chunk to.
+   * @param partitionIdsToExclude the partitions that should not be selected.
+   * @return the selected {@link PartitionId}.
+   * @throws RouterException if there are no writable partitions that are not excluded.
+   */
+  PartitionId getPartition(List<PartitionId> partitionIdsToExclude)
+      throws RouterException {
+    PartitionId[] partitions = getWritablePartitions();
+    PartitionId first = getRandomPartition(partitions, partitionIdsToExclude);
+    if (first == null) {
+      throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
+    }
+    PartitionId second = getRandomPartition(partitions, partitionIdsToExclude);
+    return second == null || getPutLatencyMs(first) <= getPutLatencyMs(second) ? first : second;
+  }
+
+  /**
+   * Records the outcome of a put request to a partition.
+   * @param partitionId the {@link PartitionId} the request was sent to.
+   * @param latencyMs the time in ms taken to receive the response.
+   * @param isSuccessful {@code true} if the request succeeded.
+   */
+  void onPutResponse(PartitionId partitionId, long latencyMs, boolean isSuccessful) {
+    PutLatency putLatency = partitionToPutLatency.get(partitionId);
+    if (putLatency == null) {
+      putLatency = new PutLatency();
+      PutLatency existing = partitionToPutLatency.putIfAbsent(partitionId, putLatency);
+      if (existing != null) {
+        putLatency = existing;
+      }
+    }
+    if (isSuccessful) {
+      putLatency.update(latencyMs);
+    } else {
+      putLatency.update(Math.max(latencyMs, failureLatencyMs));
+      isStale = true;
+    }
+  }
+
+  /**
+   * @param partitionId the {@link PartitionId} of interest.
+   * @return the moving average of the put latency of the partition in ms, or 0 if no put has been made to it.
+   */
+  double getPutLatencyMs(PartitionId partitionId) {
+    PutLatency putLatency = partitionToPutLatency.get(partitionId);
+    return putLatency == null ? 0 : putLatency.getEwmaMs();
+  }
+
+  /**
+   * Returns the cached writable partitions, refreshing them first if they are stale. Only one thread refreshes at a
+   * time. Other threads continue to use the current partitions unless there are none yet.
+   * @return the writable partitions.
+   */
+  PartitionId[] getWritablePartitions() {
+    PartitionId[] partitions = writablePartitions;
+    boolean refreshDue =
+        partitions.length == 0 || isStale || time.milliseconds() - lastRefreshTimeMs >= refreshIntervalMs;
+    boolean refreshOwner = refreshDue && refreshInProgress.compareAndSet(false, true);
+    if (refreshOwner || partitions.length == 0) {
+      try {
+        isStale = false;
+        List<PartitionId> partitionIds = clusterMap.getWritablePartitionIds();
+        partitions = partitionIds.toArray(new PartitionId[partitionIds.size()]);
+        writablePartitions = partitions;
+        lastRefreshTimeMs = time.milliseconds();
+        routerMetrics.writablePartitionsRefreshCount.inc();
+      } finally {
+        // a thread that refreshed only because there were no partitions yet must not end another thread's refresh.
+        if (refreshOwner) {
+          refreshInProgress.set(false);
+        }
+      }
+    }
+    return partitions;
+  }
+
+  /**
+   * Picks a random partition that is not excluded. A few random picks are made before falling back to picking from
+   * the partitions that are not excluded.
+   * @param partitions the partitions to pick from.
+   * @param partitionIdsToExclude the partitions that should not be picked.
+   * @return the picked {@link PartitionId}, or {@code null} if all the partitions are excluded.
+   */
+  private PartitionId getRandomPartition(PartitionId[] partitions, List<PartitionId> partitionIdsToExclude) {
+    if (partitions.length == 0) {
+      return null;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < MAX_RANDOM_ATTEMPTS; i++) {
+      PartitionId partitionId = partitions[random.nextInt(partitions.length)];
+      if (!partitionIdsToExclude.contains(partitionId)) {
+        return partitionId;
+      }
+    }
+    List<PartitionId> candidates = new ArrayList<>(partitions.length);
+    for (PartitionId partitionId : partitions) {
+      if (!partitionIdsToExclude.contains(partitionId)) {
+        candidates.add(partitionId);
+      }
+    }
+    return candidates.isEmpty() ? null : candidates.get(random.nextInt(candidates.size()));
+  }
+
+  /**
+   * The moving average of the latency of put requests to a partition.
+   */
+  private static class PutLatency {
+    private double ewmaMs = -1;
+
+    /**
+     * @param latencyMs the latency of a put request in ms.
+     */
+    synchronized void update(long latencyMs) {
+      ewmaMs = ewmaMs < 0 ? latencyMs : PUT_LATENCY_EWMA_WEIGHT * latencyMs + (1 - PUT_LATENCY_EWMA_WEIGHT) * ewmaMs;
+    }
+
+    /**
+     * @return the moving average of the put latency in ms.
+     */
+    synchronized double getEwmaMs() {
+      return Math.max(0, ewmaMs);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.utils.MockTime;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link AdaptiveOperationTracker}.
+ */
+public class AdaptiveOperationTrackerTest {
+  private static final long HALF_LIFE_MS = 10000;
+  private final MockClusterMap clusterMap;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final MockTime time = new MockTime();
+  private final PartitionId partitionId;
+  private final String localDcName;
+  private final List<DataNodeId> localDataNodes = new ArrayList<>();
+
+  public AdaptiveOperationTrackerTest()
+      throws IOException {
+    clusterMap = new MockClusterMap();
+    routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+    partitionId = clusterMap.getWritablePartitionIds().get(0);
+    localDcName = partitionId.getReplicaIds().get(0).getDataNodeId().getDatacenterName();
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      if (replicaId.getDataNodeId().getDatacenterName().equals(localDcName)) {
+        localDataNodes.add(replicaId.getDataNodeId());
+      }
+    }
+  }
+
+  /**
+   * Tests that the replicas with the lowest request latency are used first, and that a slow data node is not sent any
+   * requests as long as the faster ones succeed.
+   */
+  @Test
+  public void testReplicasOrderedByLatency() {
+    assertEquals("Test needs 3 local data nodes", 3, localDataNodes.size());
+    recordLatency(localDataNodes.get(0), 20);
+    recordLatency(localDataNodes.get(1), 1000);
+    recordLatency(localDataNodes.get(2), 10);
+    for (int i = 0; i < 10; i++) {
+      List<DataNodeId> order = getOrder(new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 3,
+          routerMetrics, HALF_LIFE_MS, time));
+      assertEquals("Unexpected order of data nodes",
+          Arrays.asList(localDataNodes.get(2), localDataNodes.get(0), localDataNodes.get(1)), order);
+      // with a parallelism of 2, the slow data node is never used if the others succeed.
+      OperationTracker tracker =
+          new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 2, routerMetrics, HALF_LIFE_MS, time);
+      List<ReplicaId> replicasUsed = new ArrayList<>();
+      Iterator<ReplicaId> replicaIterator = tracker.getReplicaIterator();
+      while (replicaIterator.hasNext()) {
+        ReplicaId replicaId = replicaIterator.next();
+        assertFalse("Slow data node should not be used", replicaId.getDataNodeId().equals(localDataNodes.get(1)));
+        replicaIterator.remove();
+        replicasUsed.add(replicaId);
+      }
+      assertEquals("Unexpected number of replicas used", 2, replicasUsed.size());
+      tracker.onResponse(replicasUsed.get(0), true);
+      assertTrue("Operation should have succeeded", tracker.hasSucceeded());
+    }
+  }
+
+  /**
+   * Tests that the number of requests in flight to a data node increases its expected latency.
+   */
+  @Test
+  public void testRequestsInFlight() {
+    recordLatency(localDataNodes.get(0), 10);
+    recordLatency(localDataNodes.get(1), 25);
+    recordLatency(localDataNodes.get(2), 100);
+    NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics =
+        routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(0));
+    nodeLevelMetrics.onRequestSent(time.milliseconds());
+    nodeLevelMetrics.onRequestSent(time.milliseconds());
+    assertEquals("Unexpected requests in flight", 2, nodeLevelMetrics.getRequestsInFlight());
+    assertEquals("Unexpected expected latency", 30,
+        AdaptiveOperationTracker.getExpectedLatencyMs(nodeLevelMetrics, HALF_LIFE_MS, time.milliseconds()), 0.001);
+    List<DataNodeId> order = getOrder(
+        new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 3, routerMetrics, HALF_LIFE_MS, time));
+    assertEquals("Unexpected order of data nodes",
+        Arrays.asList(localDataNodes.get(1), localDataNodes.get(0), localDataNodes.get(2)), order);
+  }
+
+  /**
+   * Tests that the observed latency of a data node that has not completed requests for a while counts for less, and
+   * that data nodes with unknown latency are tried first.
+   */
+  @Test
+  public void testLatencyDecayAndUnknownLatency() {
+    recordLatency(localDataNodes.get(0), 100);
+    NonBlockingRouterMetrics.NodeLevelMetrics slowNodeMetrics =
+        routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(0));
+    assertEquals("Data node with unknown latency should have 0 expected latency", 0,
+        AdaptiveOperationTracker.getExpectedLatencyMs(routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(1)),
+            HALF_LIFE_MS, time.milliseconds()), 0);
+    List<DataNodeId> order = getOrder(
+        new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 3, routerMetrics, HALF_LIFE_MS, time));
+    assertEquals("Data node with known latency should be last", localDataNodes.get(0), order.get(2));
+
+    time.currentMilliseconds += HALF_LIFE_MS;
+    recordLatency(localDataNodes.get(1), 60);
+    recordLatency(localDataNodes.get(2), 70);
+    assertEquals("Latency should have halved", 50,
+        AdaptiveOperationTracker.getExpectedLatencyMs(slowNodeMetrics, HALF_LIFE_MS, time.milliseconds()), 0.001);
+    order = getOrder(
+        new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 3, routerMetrics, HALF_LIFE_MS, time));
+    assertEquals("Unexpected order of data nodes",
+        Arrays.asList(localDataNodes.get(0), localDataNodes.get(1), localDataNodes.get(2)), order);
+  }
+
+  /**
+   * Tests that the observed latency of a data node does not decay while requests to it are in flight, and that a data
+   * node whose requests have been in flight for long is expected to be slow even if it used to be fast.
+   */
+  @Test
+  public void testLatencyWithRequestsInFlight() {
+    recordLatency(localDataNodes.get(0), 10);
+    recordLatency(localDataNodes.get(1), 50);
+    recordLatency(localDataNodes.get(2), 100);
+    NonBlockingRouterMetrics.NodeLevelMetrics stuckNodeMetrics =
+        routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(0));
+    long sendTimeMs = time.milliseconds();
+    stuckNodeMetrics.onRequestSent(sendTimeMs);
+    assertEquals("Unexpected oldest send time", sendTimeMs, stuckNodeMetrics.getOldestRequestInFlightSendTimeMs());
+    time.currentMilliseconds += 10 * HALF_LIFE_MS;
+    assertEquals("Latency should not decay while requests are in flight", 2 * 10 * HALF_LIFE_MS,
+        AdaptiveOperationTracker.getExpectedLatencyMs(stuckNodeMetrics, HALF_LIFE_MS, time.milliseconds()), 0.001);
+    List<DataNodeId> order = getOrder(
+        new AdaptiveOperationTracker(localDcName, partitionId, false, 1, 3, routerMetrics, HALF_LIFE_MS, time));
+    assertEquals("Data node with a request in flight for long should be last", localDataNodes.get(0), order.get(2));
+    // the request times out
+    stuckNodeMetrics.onRequestFailed(sendTimeMs, 1000, time.milliseconds());
+    assertEquals("No requests should be in flight", -1, stuckNodeMetrics.getOldestRequestInFlightSendTimeMs());
+    assertEquals("No requests should be in flight", 0, stuckNodeMetrics.getRequestsInFlight());
+    assertTrue("Timed out request should count as a slow one",
+        stuckNodeMetrics.getRequestLatencyEwmaMs() > routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(2))
+            .getRequestLatencyEwmaMs());
+  }
+
+  /**
+   * Tests that local replicas are used before remote ones, regardless of their latency.
+   */
+  @Test
+  public void testLocalReplicasFirst() {
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      DataNodeId dataNodeId = replicaId.getDataNodeId();
+      recordLatency(dataNodeId, dataNodeId.getDatacenterName().equals(localDcName) ? 1000 : 1);
+    }
+    List<DataNodeId> order = getOrder(new AdaptiveOperationTracker(localDcName, partitionId, true, 1,
+        partitionId.getReplicaIds().size(), routerMetrics, HALF_LIFE_MS, time));
+    assertEquals("All replicas should be used", partitionId.getReplicaIds().size(), order.size());
+    for (int i = 0; i < order.size(); i++) {
+      assertEquals("Local replicas should come first", i < localDataNodes.size(),
+          order.get(i).getDatacenterName().equals(localDcName));
+    }
+  }
+
+  /**
+   * Tests that the moving average of the latency of a data node is updated as requests complete.
+   */
+  @Test
+  public void testLatencyMovingAverage() {
+    NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics =
+        routerMetrics.getDataNodeBasedMetrics(localDataNodes.get(0));
+    assertEquals("No update time expected", -1, nodeLevelMetrics.getLastRequestLatencyUpdateTimeMs());
+    recordLatency(localDataNodes.get(0), 100);
+    assertEquals("First sample should be the average", 100, nodeLevelMetrics.getRequestLatencyEwmaMs(), 0);
+    recordLatency(localDataNodes.get(0), 200);
+    assertEquals("Unexpected moving average",
+        100 + NonBlockingRouterMetrics.NodeLevelMetrics.REQUEST_LATENCY_EWMA_WEIGHT * 100,
+        nodeLevelMetrics.getRequestLatencyEwmaMs(), 0.001);
+    assertEquals("No requests should be in flight", 0, nodeLevelMetrics.getRequestsInFlight());
+    assertEquals("Unexpected update time", time.milliseconds(), nodeLevelMetrics.getLastRequestLatencyUpdateTimeMs());
+    // a quick failure counts as taking the penalty latency
+    double averageMs = nodeLevelMetrics.getRequestLatencyEwmaMs();
+    nodeLevelMetrics.onRequestSent(time.milliseconds() - 1);
+    nodeLevelMetrics.onRequestFailed(time.milliseconds() - 1, 1000, time.milliseconds());
+    assertEquals("Failure should be counted at the penalty latency",
+        averageMs + NonBlockingRouterMetrics.NodeLevelMetrics.REQUEST_LATENCY_EWMA_WEIGHT * (1000 - averageMs),
+        nodeLevelMetrics.getRequestLatencyEwmaMs(), 0.001);
+    assertEquals("No requests should be in flight", 0, nodeLevelMetrics.getRequestsInFlight());
+    DataNodeId dataNodeId = localDataNodes.get(0);
+    assertSame("Metrics should be found by hostname and port", nodeLevelMetrics,
+        routerMetrics.getDataNodeBasedMetrics(dataNodeId.getHostname(), dataNodeId.getPort()));
+    assertNull("No metrics expected for unknown port",
+        routerMetrics.getDataNodeBasedMetrics(dataNodeId.getHostname(), 1));
+  }
+
+  /**
+   * Records a completed request with the given latency for a data node.
+   * @param dataNodeId the {@link DataNodeId} to record the request for.
+   * @param latencyMs the latency of the request.
+   */
+  private void recordLatency(DataNodeId dataNodeId, long latencyMs) {
+    NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics = routerMetrics.getDataNodeBasedMetrics(dataNodeId);
+    nodeLevelMetrics.onRequestSent(time.milliseconds() - latencyMs);
+    nodeLevelMetrics.onRequestCompleted(time.milliseconds() - latencyMs, time.milliseconds());
+  }
+
+  /**
+   * @param tracker the {@link OperationTracker} to get the order of data nodes from.
+   * @return the data nodes in the order in which the tracker sends requests to them.
+   */
+  private List<DataNodeId> getOrder(OperationTracker tracker) {
+    List<DataNodeId> order = new ArrayList<>();
+    Iterator<ReplicaId> replicaIterator = tracker.getReplicaIterator();
+    while (replicaIterator.hasNext()) {
+      order.add(replicaIterator.next().getDataNodeId());
+      replicaIterator.remove();
+    }
+    return order;
+  }
+}
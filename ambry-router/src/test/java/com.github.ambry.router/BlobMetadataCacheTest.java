@@ -0,0 +1,255 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.BlobIdFactory;
+import com.github.ambry.messageformat.BlobInfo;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.CompositeBlobInfo;
+import com.github.ambry.messageformat.MetadataContentSerDe;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link BlobMetadataCache}.
+ */
+public class BlobMetadataCacheTest {
+  private static final long TTL_MS = 10 * Time.MsPerSec;
+
+  private final MockClusterMap mockClusterMap;
+  private final BlobIdFactory blobIdFactory;
+  private final NonBlockingRouterMetrics routerMetrics;
+  // blobs are created at the system time, so the cache has to start at the system time for them to expire.
+  private final MockTime time = new MockTime(SystemTime.getInstance().milliseconds());
+  private final Random random = new Random();
+
+  public BlobMetadataCacheTest()
+      throws Exception {
+    mockClusterMap = new MockClusterMap();
+    blobIdFactory = new BlobIdFactory(mockClusterMap);
+    routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+  }
+
+  /**
+   * Tests that BlobInfos and chunk ids are returned as they were cached, from heap and direct memory.
+   * @throws Exception
+   */
+  @Test
+  public void testGetAndPut()
+      throws Exception {
+    for (boolean useDirectMemory : new boolean[]{false, true}) {
+      BlobMetadataCache cache = new BlobMetadataCache(1024 * 1024, TTL_MS, useDirectMemory, routerMetrics, time);
+      String blobId = getBlobId();
+      Assert.assertNull("Nothing should be cached", cache.getBlobInfo(blobId));
+      Assert.assertNull("Nothing should be cached", cache.getChunkIds(blobId, blobIdFactory));
+
+      BlobInfo blobInfo = getBlobInfo(Utils.Infinite_Time);
+      cache.putBlobInfo(blobId, blobInfo, cache.getGeneration());
+      assertBlobInfoEquals(blobInfo, cache.getBlobInfo(blobId));
+      Assert.assertNull("Chunk ids were not cached", cache.getChunkIds(blobId, blobIdFactory));
+
+      List<StoreKey> chunkIds = getChunkIds(5);
+      ByteBuffer serializedMetadataContent = MetadataContentSerDe.serializeMetadataContent(100, 450, chunkIds);
+      serializedMetadataContent.flip();
+      cache.putChunkIds(blobId, serializedMetadataContent, cache.getGeneration());
+      Assert.assertEquals("Position of the metadata content should not change", 0,
+          serializedMetadataContent.position());
+      CompositeBlobInfo compositeBlobInfo = cache.getChunkIds(blobId, blobIdFactory);
+      Assert.assertEquals("Chunk ids should match", chunkIds, compositeBlobInfo.getKeys());
+      Assert.assertEquals("Chunk size should match", 100, compositeBlobInfo.getChunkSize());
+      Assert.assertEquals("Total size should match", 450, compositeBlobInfo.getTotalSize());
+      Assert.assertEquals("Chunk ids should match when they are got again", chunkIds,
+          cache.getChunkIds(blobId, blobIdFactory).getKeys());
+      assertBlobInfoEquals(blobInfo, cache.getBlobInfo(blobId));
+      Assert.assertEquals("Unexpected number of cached blobs", 1, cache.getBlobCount());
+    }
+  }
+
+  /**
+   * Tests that metadata is evicted in least recently used order once the capacity is exceeded.
+   */
+  @Test
+  public void testEviction() {
+    BlobInfo blobInfo = getBlobInfo(Utils.Infinite_Time);
+    String firstBlobId = getBlobId();
+    BlobMetadataCache sizingCache = new BlobMetadataCache(1024 * 1024, TTL_MS, false, routerMetrics, time);
+    sizingCache.putBlobInfo(firstBlobId, blobInfo, sizingCache.getGeneration());
+    long entrySize = sizingCache.getSizeInBytes();
+
+    BlobMetadataCache cache = new BlobMetadataCache(3 * entrySize, TTL_MS, false, routerMetrics, time);
+    String secondBlobId = getBlobId();
+    String thirdBlobId = getBlobId();
+    cache.putBlobInfo(firstBlobId, blobInfo, cache.getGeneration());
+    cache.putBlobInfo(secondBlobId, blobInfo, cache.getGeneration());
+    cache.putBlobInfo(thirdBlobId, blobInfo, cache.getGeneration());
+    Assert.assertEquals("Unexpected cache size", 3 * entrySize, cache.getSizeInBytes());
+    // access the first blob so that the second one is the least recently used.
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(firstBlobId));
+    long evictionCount = routerMetrics.metadataCacheEvictionCount.getCount();
+    cache.putBlobInfo(getBlobId(), blobInfo, cache.getGeneration());
+    Assert.assertEquals("One blob should have been evicted", evictionCount + 1,
+        routerMetrics.metadataCacheEvictionCount.getCount());
+    Assert.assertNull("Least recently used blob should have been evicted", cache.getBlobInfo(secondBlobId));
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(firstBlobId));
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(thirdBlobId));
+    Assert.assertEquals("Unexpected cache size", 3 * entrySize, cache.getSizeInBytes());
+
+    // metadata that does not fit at all is not cached.
+    cache = new BlobMetadataCache(entrySize - 1, TTL_MS, false, routerMetrics, time);
+    cache.putBlobInfo(firstBlobId, blobInfo, cache.getGeneration());
+    Assert.assertNull("BlobInfo should not be cached", cache.getBlobInfo(firstBlobId));
+    Assert.assertEquals("Nothing should be cached", 0, cache.getSizeInBytes());
+  }
+
+  /**
+   * Tests that metadata is not served after the ttl of the cache or after the blob expires.
+   */
+  @Test
+  public void testExpiry()
+      throws InterruptedException {
+    BlobMetadataCache cache = new BlobMetadataCache(1024 * 1024, TTL_MS, false, routerMetrics, time);
+    String blobId = getBlobId();
+    // a blob that expires before the ttl of the cache. Its creation time is the system time, which the mock time
+    // started at.
+    long blobTtlSecs = 2;
+    cache.putBlobInfo(blobId, getBlobInfo(blobTtlSecs), cache.getGeneration());
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(blobId));
+    time.sleep((blobTtlSecs + 1) * Time.MsPerSec);
+    Assert.assertNull("BlobInfo of an expired blob should not be served", cache.getBlobInfo(blobId));
+    Assert.assertEquals("Nothing should be cached", 0, cache.getSizeInBytes());
+
+    cache.putBlobInfo(blobId, getBlobInfo(Utils.Infinite_Time), cache.getGeneration());
+    time.sleep(TTL_MS - 1);
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(blobId));
+    time.sleep(1);
+    Assert.assertNull("BlobInfo should have expired", cache.getBlobInfo(blobId));
+    Assert.assertEquals("Nothing should be cached", 0, cache.getSizeInBytes());
+  }
+
+  /**
+   * Tests that invalidation removes the metadata of a blob, that metadata of the blob fetched by operations that
+   * started before an invalidation is not cached and that the metadata of other blobs still is.
+   */
+  @Test
+  public void testInvalidation() {
+    BlobMetadataCache cache = new BlobMetadataCache(1024 * 1024, TTL_MS, false, routerMetrics, time);
+    String blobId = getBlobId();
+    BlobInfo blobInfo = getBlobInfo(Utils.Infinite_Time);
+    cache.putBlobInfo(blobId, blobInfo, cache.getGeneration());
+    long generation = cache.getGeneration();
+    cache.invalidate(blobId);
+    Assert.assertNull("BlobInfo should have been invalidated", cache.getBlobInfo(blobId));
+    Assert.assertEquals("Nothing should be cached", 0, cache.getSizeInBytes());
+    cache.putBlobInfo(blobId, blobInfo, generation);
+    Assert.assertNull("BlobInfo fetched before the invalidation should not be cached", cache.getBlobInfo(blobId));
+    String otherBlobId = getBlobId();
+    cache.putBlobInfo(otherBlobId, blobInfo, generation);
+    Assert.assertNotNull("BlobInfo of another blob should be cached", cache.getBlobInfo(otherBlobId));
+    cache.putBlobInfo(blobId, blobInfo, cache.getGeneration());
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(blobId));
+
+    // once the invalidation is forgotten, nothing fetched before it is cached.
+    generation = cache.getGeneration();
+    for (int i = 0; i < BlobMetadataCache.MAX_INVALIDATED_BLOBS + 1; i++) {
+      cache.invalidate(getBlobId());
+    }
+    otherBlobId = getBlobId();
+    cache.putBlobInfo(otherBlobId, blobInfo, generation);
+    Assert.assertNull("BlobInfo fetched before a forgotten invalidation should not be cached",
+        cache.getBlobInfo(otherBlobId));
+    cache.putBlobInfo(otherBlobId, blobInfo, cache.getGeneration());
+    Assert.assertNotNull("BlobInfo should be cached", cache.getBlobInfo(otherBlobId));
+  }
+
+  /**
+   * Tests that nothing is cached if the capacity is 0.
+   */
+  @Test
+  public void testDisabled() {
+    BlobMetadataCache cache = new BlobMetadataCache(0, TTL_MS, false, routerMetrics, time);
+    Assert.assertFalse("Cache should be disabled", cache.isEnabled());
+    String blobId = getBlobId();
+    long missCount = routerMetrics.metadataCacheMissCount.getCount();
+    cache.putBlobInfo(blobId, getBlobInfo(Utils.Infinite_Time), cache.getGeneration());
+    Assert.assertNull("Nothing should be cached", cache.getBlobInfo(blobId));
+    Assert.assertEquals("Lookups should not be counted", missCount, routerMetrics.metadataCacheMissCount.getCount());
+    Assert.assertEquals("Nothing should be cached", 0, cache.getSizeInBytes());
+  }
+
+  /**
+   * @return the id of a new blob in string form.
+   */
+  private String getBlobId() {
+    return new BlobId(getPartition()).getID();
+  }
+
+  /**
+   * @param count the number of chunk ids.
+   * @return a list of new chunk ids.
+   */
+  private List<StoreKey> getChunkIds(int count) {
+    List<StoreKey> chunkIds = new ArrayList<StoreKey>();
+    for (int i = 0; i < count; i++) {
+      chunkIds.add(new BlobId(getPartition()));
+    }
+    return chunkIds;
+  }
+
+  /**
+   * @return a random writable partition.
+   */
+  private PartitionId getPartition() {
+    List<PartitionId> partitions = mockClusterMap.getWritablePartitionIds();
+    return partitions.get(random.nextInt(partitions.size()));
+  }
+
+  /**
+   * @param ttlSecs the ttl of the blob in seconds.
+   * @return a {@link BlobInfo} of a new blob with the given ttl and random user metadata.
+   */
+  private BlobInfo getBlobInfo(long ttlSecs) {
+    BlobProperties blobProperties = new BlobProperties(random.nextInt(10000), "serviceId", "ownerId", "contentType",
+        random.nextBoolean(), ttlSecs);
+    byte[] userMetadata = new byte[random.nextInt(100) + 1];
+    random.nextBytes(userMetadata);
+    return new BlobInfo(blobProperties, userMetadata);
+  }
+
+  /**
+   * Asserts that two {@link BlobInfo}s are equivalent.
+   * @param expected the expected {@link BlobInfo}.
+   * @param actual the actual {@link BlobInfo}.
+   */
+  private void assertBlobInfoEquals(BlobInfo expected, BlobInfo actual) {
+    Assert.assertNotNull("BlobInfo should be cached", actual);
+    Assert.assertTrue("Blob properties should match",
+        RouterTestHelpers.haveEquivalentFields(expected.getBlobProperties(), actual.getBlobProperties()));
+    Assert.assertEquals("Creation time should match", expected.getBlobProperties().getCreationTimeInMs(),
+        actual.getBlobProperties().getCreationTimeInMs());
+    Assert.assertArrayEquals("User metadata should match", expected.getUserMetadata(), actual.getUserMetadata());
+  }
+}
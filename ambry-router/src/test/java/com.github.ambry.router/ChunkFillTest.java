@@ -20,6 +20,8 @@ import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SimpleByteBufferPool;
+import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Utils;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -42,6 +44,10 @@ public class ChunkFillTest {
   private byte[] putContent;
   private int blobSize;
   private int chunkSize;
+  // the pool of chunk buffers to use. If this is null, a pool with the default capacity is used.
+  private SimpleByteBufferPool bufferPool;
+  // whether the size of the blob is passed to the PutOperation.
+  private boolean isBlobSizeKnown = true;
   Random random = new Random();
 
   @Before
@@ -90,6 +96,35 @@ public class ChunkFillTest {
     fillChunksAndAssertSuccess();
   }
 
+  /**
+   * Test chunk filling when the buffer pool can only hold a single chunk. Filling must stall until the chunk is
+   * consumed, and then continue with the same buffer.
+   */
+  @Test
+  public void testChunkFillingWithExhaustedBufferPool()
+      throws Exception {
+    blobSize = chunkSize * (random.nextInt(10) + 2) + random.nextInt(chunkSize - 1) + 1;
+    bufferPool = new SimpleByteBufferPool(chunkSize);
+    fillChunksAndAssertSuccess();
+  }
+
+  /**
+   * Test chunk filling of blobs whose size is not known upfront. The last chunk must be completed once the channel has
+   * been read completely.
+   */
+  @Test
+  public void testChunkFillingUnknownBlobSize()
+      throws Exception {
+    isBlobSizeKnown = false;
+    int[] blobSizes = {0, random.nextInt(chunkSize - 1) + 1, chunkSize * (random.nextInt(10) + 1),
+        chunkSize * (random.nextInt(10) + 1) + random.nextInt(chunkSize - 1) + 1};
+    for (int size : blobSizes) {
+      blobSize = size;
+      totalSizeWritten = 0;
+      fillChunksAndAssertSuccess();
+    }
+  }
+
   /**
    * Test the calculation of number of chunks and the size of each chunk, using a very large blob size. No content
    * comparison is done. This test does not consume memory more than chunkSize.
@@ -114,9 +149,14 @@ public class ChunkFillTest {
     FutureResult<String> futureResult = new FutureResult<String>();
     MockTime time = new MockTime();
     MockNetworkClientFactory networkClientFactory = new MockNetworkClientFactory(vProps, null, 0, 0, 0, null, time);
-    PutOperation op = new PutOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, putBlobProperties,
-        putUserMetadata, putChannel, futureResult, null,
-        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, new MockTime());
+    WritablePartitionSelector partitionSelector =
+        new WritablePartitionSelector(mockClusterMap, routerConfig.routerWritablePartitionsRefreshIntervalMs,
+            routerConfig.routerRequestTimeoutMs, routerMetrics, time);
+    PutOperation op =
+        new PutOperation(routerConfig, routerMetrics, partitionSelector, responseHandler, putBlobProperties,
+            putUserMetadata, putChannel, futureResult, null,
+            new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null,
+            new SimpleByteBufferPool(routerConfig.routerPutChunkBufferPoolCapacityBytes), new MockTime());
     op.startReadingFromChannel();
     numChunks = op.getNumDataChunks();
     // largeBlobSize is not a multiple of chunkSize
@@ -189,22 +229,41 @@ public class ChunkFillTest {
     RouterConfig routerConfig = new RouterConfig(vProps);
     NonBlockingRouterMetrics routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
     ResponseHandler responseHandler = new ResponseHandler(mockClusterMap);
+    // a creation time in the past, so that a creation time that is reset when the size is fixed is noticed.
+    long creationTimeInMs = SystemTime.getInstance().milliseconds() - 1000;
     BlobProperties putBlobProperties =
-        new BlobProperties(blobSize, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
+        new BlobProperties(isBlobSizeKnown ? blobSize : -1, "serviceId", "memberId", "contentType", false,
+            Utils.Infinite_Time, creationTimeInMs);
     Random random = new Random();
     byte[] putUserMetadata = new byte[10];
     random.nextBytes(putUserMetadata);
     putContent = new byte[blobSize];
     random.nextBytes(putContent);
-    final ReadableStreamChannel putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
+    ReadableStreamChannel putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
+    if (!isBlobSizeKnown) {
+      putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent)) {
+        @Override
+        public long getSize() {
+          return -1;
+        }
+      };
+    }
     FutureResult<String> futureResult = new FutureResult<String>();
     MockTime time = new MockTime();
     MockNetworkClientFactory networkClientFactory = new MockNetworkClientFactory(vProps, null, 0, 0, 0, null, time);
-    PutOperation op = new PutOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, putBlobProperties,
-        putUserMetadata, putChannel, futureResult, null,
-        new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, time);
+    if (bufferPool == null) {
+      bufferPool = new SimpleByteBufferPool(routerConfig.routerPutChunkBufferPoolCapacityBytes);
+    }
+    WritablePartitionSelector partitionSelector =
+        new WritablePartitionSelector(mockClusterMap, routerConfig.routerWritablePartitionsRefreshIntervalMs,
+            routerConfig.routerRequestTimeoutMs, routerMetrics, time);
+    PutOperation op =
+        new PutOperation(routerConfig, routerMetrics, partitionSelector, responseHandler, putBlobProperties,
+            putUserMetadata, putChannel, futureResult, null,
+            new ReadyForPollCallback(networkClientFactory.getNetworkClient()), null, bufferPool, time);
     op.startReadingFromChannel();
-    numChunks = op.getNumDataChunks();
+    numChunks = blobSize == 0 ? 1 : (blobSize - 1) / chunkSize + 1;
+    Assert.assertEquals("Unexpected number of chunks", isBlobSizeKnown ? numChunks : -1, op.getNumDataChunks());
     compositeBuffers = new ByteBuffer[numChunks];
     final AtomicReference<Exception> operationException = new AtomicReference<Exception>(null);
 
@@ -225,6 +284,18 @@ public class ChunkFillTest {
     } while (!op.isChunkFillComplete());
 
     Assert.assertEquals("total size written out should match the blob size", blobSize, totalSizeWritten);
+    Assert.assertEquals("Unexpected number of chunks", numChunks, op.getNumDataChunks());
+    Assert.assertEquals("Unexpected blob size in the blob properties", blobSize,
+        op.getBlobProperties().getBlobSize());
+    Assert.assertEquals("Creation time should not change", creationTimeInMs,
+        op.getBlobProperties().getCreationTimeInMs());
+    if (bufferPool.capacity() < numChunks * (long) chunkSize) {
+      Assert.assertTrue("Buffer pool should have been exhausted",
+          routerMetrics.putChunkBufferPoolExhaustedCount.getCount() > 0);
+    }
+    op.releaseChunkBuffers();
+    Assert.assertEquals("All chunk buffers should have been returned to the pool", bufferPool.capacity(),
+        bufferPool.availableMemory());
 
     Exception exception = operationException.get();
     if (exception != null) {
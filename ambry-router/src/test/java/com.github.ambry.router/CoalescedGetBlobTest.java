@@ -0,0 +1,595 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
+import com.github.ambry.utils.MockTime;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link CoalescedGetBlob}.
+ */
+public class CoalescedGetBlobTest {
+  private static final String BLOB_ID = "blobId";
+  private static final int CHUNK_SIZE = 100;
+  private static final int CHUNK_COUNT = 5;
+  private static final long STALL_TIMEOUT_MS = 1000;
+
+  private final byte[] content = new byte[CHUNK_SIZE * CHUNK_COUNT];
+  private final ConcurrentMap<String, CoalescedGetBlob> inFlightGets = new ConcurrentHashMap<>();
+  private final AtomicInteger operationsCount = new AtomicInteger(0);
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final OperationCompleteCallback operationCompleteCallback = new OperationCompleteCallback(operationsCount);
+  private final MockTime time = new MockTime();
+  // the results of the gets that subscribers which started reading late get the blob through.
+  private final List<ChunkedReadableStreamChannel> ownGetResults = new ArrayList<>();
+  private final CoalescedGetBlob.GetBlobSubmitter getBlobSubmitter = new CoalescedGetBlob.GetBlobSubmitter() {
+    @Override
+    public void submitGetBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+      Assert.assertEquals("Unexpected blob ID", BLOB_ID, blobId);
+      ChunkedReadableStreamChannel result = new ChunkedReadableStreamChannel();
+      ownGetResults.add(result);
+      operationCompleteCallback.registerOperation();
+      operationCompleteCallback.completeOperation(new FutureResult<ReadableStreamChannel>(), callback,
+          (ReadableStreamChannel) result, null);
+    }
+  };
+
+  public CoalescedGetBlobTest()
+      throws IOException {
+    new Random().nextBytes(content);
+    routerMetrics = new NonBlockingRouterMetrics(new MockClusterMap());
+  }
+
+  /**
+   * Tests that a lone subscriber is handed the result of the operation as is.
+   * @throws Exception
+   */
+  @Test
+  public void singleSubscriberTest()
+      throws Exception {
+    FutureResult<ReadableStreamChannel> futureResult = new FutureResult<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(futureResult);
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    Assert.assertSame("Lone subscriber should get the source as is", source, futureResult.get());
+    Assert.assertFalse("Should not be registered anymore", inFlightGets.containsKey(BLOB_ID));
+    Assert.assertFalse("Subscription should be rejected after completion",
+        coalescedGetBlob.subscribe(new FutureResult<ReadableStreamChannel>(), null));
+    Assert.assertEquals("Operations count should not have changed", 0, operationsCount.get());
+  }
+
+  /**
+   * Tests that every subscriber receives the whole blob and that a chunk is acknowledged to the operation only once
+   * every subscriber has consumed it.
+   * @throws Exception
+   */
+  @Test
+  public void multipleSubscribersTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    int subscriberCount = 3;
+    for (int i = 1; i < subscriberCount; i++) {
+      Assert.assertTrue("Subscription should succeed",
+          coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    }
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    Assert.assertEquals("Operations count should account for the subscribers", 0, operationsCount.get());
+    List<ByteBufferAsyncWritableChannel> channels = new ArrayList<>();
+    List<Future<Long>> readFutures = new ArrayList<>();
+    for (FutureResult<ReadableStreamChannel> futureResult : futureResults) {
+      ReadableStreamChannel channel = futureResult.get();
+      Assert.assertNotSame("Subscribers should not get the source", source, channel);
+      Assert.assertEquals("Unexpected size", content.length, channel.getSize());
+      ByteBufferAsyncWritableChannel asyncWritableChannel = new ByteBufferAsyncWritableChannel();
+      channels.add(asyncWritableChannel);
+      readFutures.add(channel.readInto(asyncWritableChannel, null));
+      Assert.assertTrue("Source should be read as soon as a subscriber is ready", source.readStarted);
+    }
+    source.startWriting();
+    for (int chunk = 0; chunk < CHUNK_COUNT; chunk++) {
+      for (int i = 0; i < channels.size(); i++) {
+        Assert.assertEquals("Next chunk should not have been written before the chunk is acknowledged", chunk + 1,
+            source.chunksWritten);
+        ByteBuffer buf = channels.get(i).getNextChunk();
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        Assert.assertArrayEquals("Unexpected chunk",
+            Arrays.copyOfRange(content, chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE), bytes);
+        channels.get(i).resolveOldestChunk(null);
+      }
+    }
+    for (Future<Long> readFuture : readFutures) {
+      Assert.assertEquals("Unexpected bytes read", content.length, readFuture.get().longValue());
+    }
+    Assert.assertEquals("Unexpected subscriber count", subscriberCount,
+        routerMetrics.getBlobCoalescedSubscriberCount.getSnapshot().getMax());
+    try {
+      futureResults.get(0).get().readInto(new ByteBufferAsyncWritableChannel(), null);
+      Assert.fail("Reading twice should have failed");
+    } catch (IllegalStateException e) {
+      // expected. Nothing to do.
+    }
+  }
+
+  /**
+   * Tests that a subscriber whose channel fails is dropped without affecting the others.
+   * @throws Exception
+   */
+  @Test
+  public void failedSubscriberTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    ByteBufferAsyncWritableChannel failingChannel = new ByteBufferAsyncWritableChannel();
+    ByteBufferAsyncWritableChannel goodChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> failingFuture = futureResults.get(0).get().readInto(failingChannel, null);
+    Future<Long> goodFuture = futureResults.get(1).get().readInto(goodChannel, null);
+    source.startWriting();
+    Exception exception = new IOException("Channel failure");
+    failingChannel.getNextChunk();
+    failingChannel.resolveOldestChunk(exception);
+    try {
+      failingFuture.get();
+      Assert.fail("Read of the failed subscriber should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("Unexpected exception", exception, e.getCause());
+    }
+    Assert.assertEquals("Subscriber error should have been counted", 1,
+        routerMetrics.getBlobCoalescedSubscriberErrorCount.getCount());
+    int bytesRead = 0;
+    while (bytesRead < content.length) {
+      ByteBuffer buf = goodChannel.getNextChunk();
+      bytesRead += buf.remaining();
+      buf.position(buf.limit());
+      goodChannel.resolveOldestChunk(null);
+    }
+    Assert.assertEquals("Unexpected bytes read", content.length, goodFuture.get().longValue());
+    Assert.assertNull("Source should have completed without error", source.readException);
+  }
+
+  /**
+   * Tests that a subscriber that never reads does not hold up the others, and that it gets the blob through a get of
+   * its own if it starts reading after the shared read has started.
+   * @throws Exception
+   */
+  @Test
+  public void subscriberNeverReadsTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    List<ByteBufferAsyncWritableChannel> channels = new ArrayList<>();
+    List<Future<Long>> readFutures = new ArrayList<>();
+    for (int i = 0; i < futureResults.size(); i += 2) {
+      ByteBufferAsyncWritableChannel asyncWritableChannel = new ByteBufferAsyncWritableChannel();
+      channels.add(asyncWritableChannel);
+      readFutures.add(futureResults.get(i).get().readInto(asyncWritableChannel, null));
+    }
+    source.startWriting();
+    readAll(channels);
+    for (Future<Long> readFuture : readFutures) {
+      Assert.assertEquals("Unexpected bytes read", content.length, readFuture.get().longValue());
+    }
+    Assert.assertTrue("Should be complete", coalescedGetBlob.isComplete());
+    Assert.assertEquals("Operations count should account for the subscribers", 0, operationsCount.get());
+
+    ByteBufferAsyncWritableChannel lateChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> lateFuture = futureResults.get(1).get().readInto(lateChannel, null);
+    Assert.assertEquals("Late subscriber should have got the blob through a get of its own", 1, ownGetResults.size());
+    Assert.assertEquals("Failover should have been counted", 1,
+        routerMetrics.getBlobCoalescedFailoverCount.getCount());
+    Assert.assertEquals("Operations count should account for the get of the late subscriber", 0,
+        operationsCount.get());
+    ownGetResults.get(0).startWriting();
+    readAll(Arrays.asList(lateChannel));
+    Assert.assertEquals("Unexpected bytes read", content.length, lateFuture.get().longValue());
+    Assert.assertEquals("Source should have been read only once", CHUNK_COUNT, source.chunksWritten);
+  }
+
+  /**
+   * Tests that a subscriber that does not consume a chunk within the stall timeout is dropped and that the others
+   * receive the whole blob.
+   * @throws Exception
+   */
+  @Test
+  public void stalledSubscriberTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel(true);
+    coalescedGetBlob.onCompletion(source, null);
+    ByteBufferAsyncWritableChannel stalledChannel = new ByteBufferAsyncWritableChannel();
+    ByteBufferAsyncWritableChannel goodChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> stalledFuture = futureResults.get(0).get().readInto(stalledChannel, null);
+    Future<Long> goodFuture = futureResults.get(1).get().readInto(goodChannel, null);
+    source.startWriting();
+    stalledChannel.getNextChunk();
+    stalledChannel.resolveOldestChunk(null);
+    readAll(Arrays.asList(goodChannel));
+    time.sleep(STALL_TIMEOUT_MS);
+    coalescedGetBlob.dropStalledSubscribers();
+    Assert.assertFalse("Read of the stalled subscriber should not have completed", stalledFuture.isDone());
+    Assert.assertFalse("Read of the other subscriber should not have completed", goodFuture.isDone());
+    time.sleep(1);
+    coalescedGetBlob.dropStalledSubscribers();
+    try {
+      stalledFuture.get();
+      Assert.fail("Read of the stalled subscriber should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("Unexpected error code", RouterErrorCode.OperationTimedOut,
+          ((RouterException) e.getCause()).getErrorCode());
+    }
+    Assert.assertEquals("Dropped subscriber should have been counted", 1,
+        routerMetrics.getBlobCoalescedSubscriberErrorCount.getCount());
+    Assert.assertEquals("Unexpected bytes read", content.length, goodFuture.get().longValue());
+    Assert.assertNull("Source should have completed without error", source.readException);
+    Assert.assertTrue("Should be complete", coalescedGetBlob.isComplete());
+    // the chunks consumed late by the dropped subscriber should not be acknowledged again.
+    for (int i = 1; i < CHUNK_COUNT; i++) {
+      stalledChannel.getNextChunk();
+      stalledChannel.resolveOldestChunk(null);
+    }
+    Assert.assertEquals("Chunks should have been acknowledged once", CHUNK_COUNT, source.chunksAcknowledged.get());
+  }
+
+  /**
+   * Tests that a subscriber that falls more than the maximum lag behind the fastest subscriber is dropped before the
+   * stall timeout and that the others receive the whole blob.
+   * @throws Exception
+   */
+  @Test
+  public void laggingSubscriberTest()
+      throws Exception {
+    int maxLagChunks = 2;
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults), maxLagChunks);
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel(true);
+    coalescedGetBlob.onCompletion(source, null);
+    ByteBufferAsyncWritableChannel slowChannel = new ByteBufferAsyncWritableChannel();
+    ByteBufferAsyncWritableChannel fastChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> slowFuture = futureResults.get(0).get().readInto(slowChannel, null);
+    Future<Long> fastFuture = futureResults.get(1).get().readInto(fastChannel, null);
+    source.startWriting();
+    for (int i = 0; i < maxLagChunks; i++) {
+      consumeChunk(fastChannel);
+    }
+    coalescedGetBlob.dropStalledSubscribers();
+    Assert.assertFalse("Subscriber within the maximum lag should not have been dropped", slowFuture.isDone());
+    consumeChunk(fastChannel);
+    Assert.assertEquals("No chunk should have been acknowledged", 0, source.chunksAcknowledged.get());
+    coalescedGetBlob.dropStalledSubscribers();
+    try {
+      slowFuture.get();
+      Assert.fail("Read of the lagging subscriber should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("Unexpected error code", RouterErrorCode.OperationTimedOut,
+          ((RouterException) e.getCause()).getErrorCode());
+    }
+    Assert.assertEquals("Chunks consumed by the fast subscriber should have been acknowledged", maxLagChunks + 1,
+        source.chunksAcknowledged.get());
+    for (int i = maxLagChunks + 1; i < CHUNK_COUNT; i++) {
+      consumeChunk(fastChannel);
+    }
+    Assert.assertEquals("Unexpected bytes read", content.length, fastFuture.get().longValue());
+    Assert.assertNull("Source should have completed without error", source.readException);
+    Assert.assertEquals("Dropped subscriber should have been counted", 1,
+        routerMetrics.getBlobCoalescedSubscriberErrorCount.getCount());
+  }
+
+  /**
+   * Tests that the source is released if no subscriber starts reading within the stall timeout, and that subscribers
+   * that start reading later get the blob through a get of their own.
+   * @throws Exception
+   */
+  @Test
+  public void noSubscriberReadsTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    coalescedGetBlob.dropStalledSubscribers();
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    time.sleep(STALL_TIMEOUT_MS);
+    coalescedGetBlob.dropStalledSubscribers();
+    Assert.assertTrue("Source should not be closed yet", source.isOpen());
+    time.sleep(1);
+    coalescedGetBlob.dropStalledSubscribers();
+    Assert.assertFalse("Source should have been closed", source.isOpen());
+    Assert.assertTrue("Should be complete", coalescedGetBlob.isComplete());
+    ByteBufferAsyncWritableChannel lateChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> lateFuture = futureResults.get(0).get().readInto(lateChannel, null);
+    Assert.assertFalse("Source should not have been read", source.readStarted);
+    Assert.assertEquals("Late subscriber should have got the blob through a get of its own", 1, ownGetResults.size());
+    ownGetResults.get(0).startWriting();
+    readAll(Arrays.asList(lateChannel));
+    Assert.assertEquals("Unexpected bytes read", content.length, lateFuture.get().longValue());
+  }
+
+  /**
+   * Tests that the source is closed without being read if every subscriber closes its channel.
+   * @throws Exception
+   */
+  @Test
+  public void allSubscribersCloseTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed", coalescedGetBlob.subscribe(addFutureResult(futureResults), null));
+    ChunkedReadableStreamChannel source = new ChunkedReadableStreamChannel();
+    coalescedGetBlob.onCompletion(source, null);
+    futureResults.get(0).get().close();
+    Assert.assertTrue("Source should not be closed yet", source.isOpen());
+    futureResults.get(1).get().close();
+    Assert.assertFalse("Source should have been closed", source.isOpen());
+    Assert.assertFalse("Source should not have been read", source.readStarted);
+  }
+
+  /**
+   * Tests that the failure of the operation is propagated to every subscriber.
+   * @throws Exception
+   */
+  @Test
+  public void operationFailureTest()
+      throws Exception {
+    List<FutureResult<ReadableStreamChannel>> futureResults = new ArrayList<>();
+    final AtomicInteger callbackCount = new AtomicInteger(0);
+    Callback<ReadableStreamChannel> callback = new Callback<ReadableStreamChannel>() {
+      @Override
+      public void onCompletion(ReadableStreamChannel result, Exception exception) {
+        callbackCount.incrementAndGet();
+      }
+    };
+    CoalescedGetBlob coalescedGetBlob = createCoalescedGetBlob(addFutureResult(futureResults));
+    Assert.assertTrue("Subscription should succeed",
+        coalescedGetBlob.subscribe(addFutureResult(futureResults), callback));
+    Assert.assertTrue("Subscription should succeed",
+        coalescedGetBlob.subscribe(addFutureResult(futureResults), callback));
+    RouterException exception = new RouterException("Not found", RouterErrorCode.BlobDoesNotExist);
+    coalescedGetBlob.onCompletion(null, exception);
+    for (FutureResult<ReadableStreamChannel> futureResult : futureResults) {
+      try {
+        futureResult.get();
+        Assert.fail("Get should have failed");
+      } catch (ExecutionException e) {
+        Assert.assertEquals("Unexpected exception", exception, e.getCause());
+      }
+    }
+    Assert.assertEquals("Callbacks should have been invoked", 2, callbackCount.get());
+    Assert.assertFalse("Should not be registered anymore", inFlightGets.containsKey(BLOB_ID));
+  }
+
+  /**
+   * Creates a {@link CoalescedGetBlob} for {@link #BLOB_ID} and registers it as in flight.
+   * @param futureResult the {@link FutureResult} of the first subscriber.
+   * @return the {@link CoalescedGetBlob} created.
+   */
+  private CoalescedGetBlob createCoalescedGetBlob(FutureResult<ReadableStreamChannel> futureResult) {
+    return createCoalescedGetBlob(futureResult, CHUNK_COUNT);
+  }
+
+  /**
+   * Creates a {@link CoalescedGetBlob} for {@link #BLOB_ID} and registers it as in flight.
+   * @param futureResult the {@link FutureResult} of the first subscriber.
+   * @param maxLagChunks the number of chunks that a subscriber can fall behind the fastest one before it is dropped.
+   * @return the {@link CoalescedGetBlob} created.
+   */
+  private CoalescedGetBlob createCoalescedGetBlob(FutureResult<ReadableStreamChannel> futureResult, int maxLagChunks) {
+    CoalescedGetBlob coalescedGetBlob =
+        new CoalescedGetBlob(BLOB_ID, futureResult, null, inFlightGets, routerMetrics, operationCompleteCallback,
+            getBlobSubmitter, time, STALL_TIMEOUT_MS, maxLagChunks);
+    inFlightGets.put(BLOB_ID, coalescedGetBlob);
+    return coalescedGetBlob;
+  }
+
+  /**
+   * Creates a {@link FutureResult} for a subscriber and accounts for its get in the operations count, as the router
+   * would.
+   * @param futureResults the list to add the created {@link FutureResult} to.
+   * @return the created {@link FutureResult}.
+   */
+  private FutureResult<ReadableStreamChannel> addFutureResult(List<FutureResult<ReadableStreamChannel>> futureResults) {
+    FutureResult<ReadableStreamChannel> futureResult = new FutureResult<>();
+    futureResults.add(futureResult);
+    if (futureResults.size() > 1) {
+      operationsCount.incrementAndGet();
+    }
+    return futureResult;
+  }
+
+  /**
+   * Reads {@link #content} out of channels that are written to in lockstep, consuming a chunk from every channel
+   * before moving on to the next one.
+   * @param channels the {@link ByteBufferAsyncWritableChannel}s to read from.
+   * @throws InterruptedException
+   */
+  private void readAll(List<ByteBufferAsyncWritableChannel> channels)
+      throws InterruptedException {
+    for (int chunk = 0; chunk < CHUNK_COUNT; chunk++) {
+      for (ByteBufferAsyncWritableChannel channel : channels) {
+        ByteBuffer buf = channel.getNextChunk();
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        Assert.assertArrayEquals("Unexpected chunk",
+            Arrays.copyOfRange(content, chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE), bytes);
+        channel.resolveOldestChunk(null);
+      }
+    }
+  }
+
+  /**
+   * Consumes the next chunk written to a channel in full.
+   * @param channel the {@link ByteBufferAsyncWritableChannel} to consume the chunk from.
+   * @throws InterruptedException
+   */
+  private void consumeChunk(ByteBufferAsyncWritableChannel channel)
+      throws InterruptedException {
+    ByteBuffer buf = channel.getNextChunk();
+    buf.position(buf.limit());
+    channel.resolveOldestChunk(null);
+  }
+
+  /**
+   * A {@link ReadableStreamChannel} that writes {@link #content} in chunks of {@link #CHUNK_SIZE}, like the result of a
+   * {@link GetBlobOperation}. Either a chunk is written only once the previous one has been acknowledged or, like the
+   * operation does for the chunks it has prefetched, all the chunks are written without waiting for
+   * acknowledgements. As with the operation, the writing starts asynchronously to
+   * {@link #readInto(AsyncWritableChannel, Callback)}, through {@link #startWriting()}.
+   */
+  private class ChunkedReadableStreamChannel implements ReadableStreamChannel {
+    volatile boolean readStarted = false;
+    volatile int chunksWritten = 0;
+    volatile Exception readException = null;
+    private final boolean writeAhead;
+    private final AtomicInteger chunksAcknowledged = new AtomicInteger(0);
+    private volatile boolean isOpen = true;
+    private AsyncWritableChannel asyncWritableChannel;
+    private FutureResult<Long> readFuture;
+    private Callback<Long> readCallback;
+
+    /**
+     * Creates a channel that writes a chunk only once the previous one has been acknowledged.
+     */
+    ChunkedReadableStreamChannel() {
+      this(false);
+    }
+
+    /**
+     * @param writeAhead {@code true} if all the chunks are to be written without waiting for acknowledgements.
+     */
+    ChunkedReadableStreamChannel(boolean writeAhead) {
+      this.writeAhead = writeAhead;
+    }
+
+    @Override
+    public long getSize() {
+      return content.length;
+    }
+
+    @Override
+    public Future<Long> readInto(AsyncWritableChannel asyncWritableChannel, Callback<Long> callback) {
+      readStarted = true;
+      this.asyncWritableChannel = asyncWritableChannel;
+      readCallback = callback;
+      readFuture = new FutureResult<>();
+      return readFuture;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return isOpen;
+    }
+
+    @Override
+    public void close() {
+      isOpen = false;
+    }
+
+    @Override
+    public void setDigestAlgorithm(String digestAlgorithm) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getDigest() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Starts writing the chunks out to the channel that is being read into.
+     */
+    void startWriting() {
+      Assert.assertTrue("Read should have started", readStarted);
+      if (!writeAhead) {
+        writeNextChunk();
+        return;
+      }
+      while (chunksWritten < CHUNK_COUNT) {
+        ByteBuffer chunk = ByteBuffer.wrap(content, chunksWritten * CHUNK_SIZE, CHUNK_SIZE);
+        chunksWritten++;
+        asyncWritableChannel.write(chunk, new Callback<Long>() {
+          @Override
+          public void onCompletion(Long result, Exception exception) {
+            if (exception != null) {
+              readException = exception;
+            }
+            if (chunksAcknowledged.incrementAndGet() == CHUNK_COUNT) {
+              completeRead(readException);
+            }
+          }
+        });
+      }
+    }
+
+    /**
+     * Writes the next chunk, or completes the read if all the chunks have been written.
+     */
+    private void writeNextChunk() {
+      if (chunksWritten == CHUNK_COUNT) {
+        completeRead(null);
+        return;
+      }
+      ByteBuffer chunk = ByteBuffer.wrap(content, chunksWritten * CHUNK_SIZE, CHUNK_SIZE);
+      chunksWritten++;
+      asyncWritableChannel.write(chunk, new Callback<Long>() {
+        @Override
+        public void onCompletion(Long result, Exception exception) {
+          if (exception != null) {
+            completeRead(exception);
+          } else {
+            writeNextChunk();
+          }
+        }
+      });
+    }
+
+    /**
+     * Completes the read.
+     * @param exception the exception that the read failed with (if any).
+     */
+    private void completeRead(Exception exception) {
+      readException = exception;
+      long bytesRead = exception == null ? content.length : 0;
+      readFuture.done(bytesRead, exception);
+      if (readCallback != null) {
+        readCallback.onCompletion(bytesRead, exception);
+      }
+    }
+  }
+}
@@ -48,7 +48,7 @@ import static org.junit.Assert.fail;
 
 
 /**
- * Unit test for {@link DeleteManager} and {@link DeleteOperation}.
+ * Unit test for {@link DeleteManager}, {@link DeleteOperation} and {@link BatchDeleteOperation}.
  */
 public class DeleteManagerTest {
   private CountDownLatch operationCompleteLatch;
@@ -56,6 +56,7 @@ public class DeleteManagerTest {
   private AtomicReference<MockSelectorState> mockSelectorState;
   private MockClusterMap clusterMap;
   private MockServerLayout serverLayout;
+  private NonBlockingRouterMetrics routerMetrics;
   private NonBlockingRouter router;
   private BlobId blobId;
   private String blobIdString;
@@ -81,7 +82,8 @@ public class DeleteManagerTest {
     mockSelectorState = new AtomicReference<MockSelectorState>(MockSelectorState.Good);
     clusterMap = new MockClusterMap();
     serverLayout = new MockServerLayout(clusterMap);
-    router = new NonBlockingRouter(new RouterConfig(vProps), new NonBlockingRouterMetrics(clusterMap),
+    routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+    router = new NonBlockingRouter(new RouterConfig(vProps), routerMetrics,
         new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
             CHECKOUT_TIMEOUT_MS, serverLayout, mockTime), new LoggingNotificationSystem(), clusterMap, mockTime);
     List<PartitionId> mockPartitions = clusterMap.getWritablePartitionIds();
@@ -427,6 +429,155 @@ public class DeleteManagerTest {
     }
   }
 
+  /**
+   * Test that a batch delete deletes the blobs that exist, reports the ones that could not be deleted, and sends a
+   * single request to each data node for all the blobs.
+   */
+  @Test
+  public void testBatchDeletion()
+      throws Exception {
+    List<String> blobIdStrings = new ArrayList<>();
+    List<PartitionId> partitionIds = clusterMap.getWritablePartitionIds();
+    for (int i = 0; i < 4; i++) {
+      String id = new BlobId(partitionIds.get(i % partitionIds.size())).getID();
+      setServerErrorCodeOnAllServers(id, ServerErrorCode.No_Error);
+      blobIdStrings.add(id);
+    }
+    String deletedId = new BlobId(partitionIds.get(0)).getID();
+    setServerErrorCodeOnAllServers(deletedId, ServerErrorCode.Blob_Deleted);
+    blobIdStrings.add(deletedId);
+    // the servers do not know about this blob.
+    String notFoundId = new BlobId(partitionIds.get(1)).getID();
+    blobIdStrings.add(notFoundId);
+    blobIdStrings.add("abcd");
+    // duplicates are deleted once.
+    blobIdStrings.add(blobIdStrings.get(0));
+    final CountDownLatch callbackCalled = new CountDownLatch(1);
+    Future<Map<String, Exception>> batchFuture =
+        router.deleteBlobs(blobIdStrings, new Callback<Map<String, Exception>>() {
+          @Override
+          public void onCompletion(Map<String, Exception> result, Exception exception) {
+            callbackCalled.countDown();
+          }
+        });
+    Map<String, Exception> failedBlobs = batchFuture.get();
+    Assert.assertTrue("Callback was not called", callbackCalled.await(1, TimeUnit.SECONDS));
+    assertEquals("Unexpected failed blobs: " + failedBlobs, 2, failedBlobs.size());
+    assertEquals("Unexpected error for blob that does not exist", RouterErrorCode.BlobDoesNotExist,
+        ((RouterException) failedBlobs.get(notFoundId)).getErrorCode());
+    assertEquals("Unexpected error for invalid blob id", RouterErrorCode.InvalidBlobId,
+        ((RouterException) failedBlobs.get("abcd")).getErrorCode());
+    // every request carried all the blobs that have a replica on the node, so no more than one request per node was
+    // needed for the first round of requests.
+    assertEquals("Every request should carry all the valid blobs", 6,
+        routerMetrics.deleteBlobsPerRequest.getSnapshot().getMax());
+  }
+
+  /**
+   * Test that the requests of a batch delete carry no more than the configured number of blobs.
+   */
+  @Test
+  public void testBatchDeletionRequestSizeLimit()
+      throws Exception {
+    router.close();
+    Properties properties = getNonBlockingRouterProperties();
+    properties.setProperty("router.delete.batch.max.blobs.per.request", "2");
+    VerifiableProperties vProps = new VerifiableProperties(properties);
+    clusterMap = new MockClusterMap();
+    serverLayout = new MockServerLayout(clusterMap);
+    routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+    router = new NonBlockingRouter(new RouterConfig(vProps), routerMetrics,
+        new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, serverLayout, mockTime), new LoggingNotificationSystem(), clusterMap, mockTime);
+    List<String> blobIdStrings = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      String id = new BlobId(clusterMap.getWritablePartitionIds().get(0)).getID();
+      setServerErrorCodeOnAllServers(id, ServerErrorCode.No_Error);
+      blobIdStrings.add(id);
+    }
+    Map<String, Exception> failedBlobs = router.deleteBlobs(blobIdStrings).get();
+    assertEquals("All blobs should have been deleted: " + failedBlobs, 0, failedBlobs.size());
+    assertEquals("Requests should carry no more than the configured number of blobs", 2,
+        routerMetrics.deleteBlobsPerRequest.getSnapshot().getMax());
+  }
+
+  /**
+   * Test that the deletes of a batch are sent as single-blob requests when multi-blob requests are disabled.
+   */
+  @Test
+  public void testBatchDeletionWithoutBatchRequests()
+      throws Exception {
+    router.close();
+    Properties properties = getNonBlockingRouterProperties();
+    properties.setProperty("router.delete.batch.request.enabled", "false");
+    VerifiableProperties vProps = new VerifiableProperties(properties);
+    clusterMap = new MockClusterMap();
+    serverLayout = new MockServerLayout(clusterMap);
+    routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+    router = new NonBlockingRouter(new RouterConfig(vProps), routerMetrics,
+        new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, serverLayout, mockTime), new LoggingNotificationSystem(), clusterMap, mockTime);
+    List<String> blobIdStrings = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      String id = new BlobId(clusterMap.getWritablePartitionIds().get(0)).getID();
+      setServerErrorCodeOnAllServers(id, ServerErrorCode.No_Error);
+      blobIdStrings.add(id);
+    }
+    String deletedId = new BlobId(clusterMap.getWritablePartitionIds().get(0)).getID();
+    setServerErrorCodeOnAllServers(deletedId, ServerErrorCode.Blob_Deleted);
+    blobIdStrings.add(deletedId);
+    String notFoundId = new BlobId(clusterMap.getWritablePartitionIds().get(0)).getID();
+    blobIdStrings.add(notFoundId);
+    Map<String, Exception> failedBlobs = router.deleteBlobs(blobIdStrings).get();
+    assertEquals("Unexpected failed blobs: " + failedBlobs, 1, failedBlobs.size());
+    assertEquals("Unexpected error for blob that does not exist", RouterErrorCode.BlobDoesNotExist,
+        ((RouterException) failedBlobs.get(notFoundId)).getErrorCode());
+    assertEquals("Every request should carry a single blob", 1,
+        routerMetrics.deleteBlobsPerRequest.getSnapshot().getMax());
+  }
+
+  /**
+   * Test that the deletes of all the blobs of a batch time out when the servers do not respond.
+   */
+  @Test
+  public void testBatchDeletionTimeout()
+      throws Exception {
+    setServerResponse(false);
+    List<String> blobIdStrings = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      blobIdStrings.add(new BlobId(clusterMap.getWritablePartitionIds().get(i)).getID());
+    }
+    final CountDownLatch callbackCalled = new CountDownLatch(1);
+    Future<Map<String, Exception>> batchFuture =
+        router.deleteBlobs(blobIdStrings, new Callback<Map<String, Exception>>() {
+          @Override
+          public void onCompletion(Map<String, Exception> result, Exception exception) {
+            callbackCalled.countDown();
+          }
+        });
+    do {
+      // increment mock time
+      mockTime.sleep(1000);
+    } while (!callbackCalled.await(10, TimeUnit.MILLISECONDS));
+    Map<String, Exception> failedBlobs = batchFuture.get();
+    assertEquals("All blobs should have failed", blobIdStrings.size(), failedBlobs.size());
+    for (Exception e : failedBlobs.values()) {
+      assertEquals("RouterErrorCode should be OperationTimedOut", RouterErrorCode.OperationTimedOut,
+          ((RouterException) e).getErrorCode());
+    }
+  }
+
+  /**
+   * Sets the {@link ServerErrorCode} that all the servers return for a blob.
+   * @param blobIdString the id of the blob.
+   * @param serverErrorCode the {@link ServerErrorCode} to return.
+   */
+  private void setServerErrorCodeOnAllServers(String blobIdString, ServerErrorCode serverErrorCode) {
+    for (MockServer mockServer : serverLayout.getMockServers()) {
+      mockServer.setBlobIdToServerErrorCode(blobIdString, serverErrorCode);
+    }
+  }
+
   /**
    * Prepare {@link MockServer}"s" so that each of them will respond to a request with a predefined
    * {@link ServerErrorCode}. Since each server will have only one replica, so the size of {@code
@@ -486,6 +637,7 @@ public class DeleteManagerTest {
     properties.setProperty("router.hostname", "localhost");
     properties.setProperty("router.datacenter.name", "DC1");
     properties.setProperty("router.delete.request.parallelism", DELETE_PARALLELISM);
+    properties.setProperty("router.delete.batch.request.enabled", "true");
     return properties;
   }
 
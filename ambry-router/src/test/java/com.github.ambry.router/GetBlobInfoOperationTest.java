@@ -15,6 +15,7 @@ package com.github.ambry.router;
 
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.commons.LoggingNotificationSystem;
@@ -61,6 +62,7 @@ public class GetBlobInfoOperationTest {
   private int successTarget = 1;
   private RouterConfig routerConfig;
   private NonBlockingRouterMetrics routerMetrics;
+  private BlobMetadataCache blobMetadataCache;
   private final MockClusterMap mockClusterMap;
   private final MockServerLayout mockServerLayout;
   private final int replicasCount;
@@ -99,6 +101,8 @@ public class GetBlobInfoOperationTest {
     routerConfig = new RouterConfig(vprops);
     mockClusterMap = new MockClusterMap();
     routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    blobMetadataCache = new BlobMetadataCache(routerConfig.routerMetadataCacheCapacityBytes,
+        routerConfig.routerMetadataCacheTtlMs, routerConfig.routerMetadataCacheUseDirectMemory, routerMetrics, time);
     mockServerLayout = new MockServerLayout(mockClusterMap);
     replicasCount = mockClusterMap.getWritablePartitionIds().get(0).getReplicaIds().size();
     responseHandler = new ResponseHandler(mockClusterMap);
@@ -143,7 +147,7 @@ public class GetBlobInfoOperationTest {
     // test a bad case
     try {
       new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id",
-          operationFuture, operationCallback, operationCompleteCallback, time);
+          operationFuture, operationCallback, operationCompleteCallback, blobMetadataCache, time);
       Assert.fail("Instantiation of GetBlobInfo operation with an invalid blob id must fail");
     } catch (RouterException e) {
       Assert
@@ -154,7 +158,7 @@ public class GetBlobInfoOperationTest {
     // test a good case
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, operationCallback, operationCompleteCallback, time);
+            operationFuture, operationCallback, operationCompleteCallback, blobMetadataCache, time);
 
     Assert.assertEquals("Callback must match", operationCallback, op.getCallback());
     Assert.assertEquals("Futures must match", operationFuture, op.getFuture());
@@ -171,7 +175,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
     op.poll(requestRegistrationCallback);
@@ -199,7 +203,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     requestRegistrationCallback.requestListToFill = new ArrayList<>();
     op.poll(requestRegistrationCallback);
     while (!op.isOperationComplete()) {
@@ -215,6 +219,54 @@ public class GetBlobInfoOperationTest {
     Assert.assertEquals(RouterErrorCode.OperationTimedOut, routerException.getErrorCode());
   }
 
+  /**
+   * Test that a single hedged request is sent once the requests in flight take longer than the configured percentile of
+   * the observed latency of the partition, and that the operation completes with the first successful response.
+   * @throws Exception
+   */
+  @Test
+  public void testHedgedRequest()
+      throws Exception {
+    Properties properties = getNonBlockingRouterProperties();
+    properties.setProperty("router.get.hedging.enabled", "true");
+    properties.setProperty("router.get.hedging.min.delay.ms", "10");
+    RouterConfig hedgingRouterConfig = new RouterConfig(new VerifiableProperties(properties));
+    PartitionId partitionId = new BlobId(blobIdStr, mockClusterMap).getPartition();
+    for (int i = 0; i < NonBlockingRouterMetrics.PARTITION_LATENCY_MIN_SAMPLES; i++) {
+      routerMetrics.updateGetRequestLatency(partitionId, 20);
+    }
+    operationsCount.incrementAndGet();
+    GetBlobInfoOperation op =
+        new GetBlobInfoOperation(hedgingRouterConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
+    ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestListToFill;
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("There should only be as many requests at this point as requestParallelism", requestParallelism,
+        requestListToFill.size());
+    time.sleep(19);
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("No hedged request expected before the latency percentile has elapsed", requestParallelism,
+        requestListToFill.size());
+    time.sleep(1);
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("A hedged request should have been sent", requestParallelism + 1, requestListToFill.size());
+    Assert.assertEquals("Unexpected hedged request count", 1, routerMetrics.hedgedGetRequestRate.getCount());
+    time.sleep(100);
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("Only one hedged request should be sent", requestParallelism + 1, requestListToFill.size());
+
+    // only the hedged request gets a response.
+    List<RequestInfo> hedgedRequest = new ArrayList<>();
+    hedgedRequest.add(requestListToFill.get(requestParallelism));
+    for (ResponseInfo response : sendAndWaitForResponses(hedgedRequest)) {
+      op.handleResponse(response);
+    }
+    Assert.assertTrue("Operation should be complete at this time", op.isOperationComplete());
+    assertSuccess(op);
+    Assert.assertEquals("Hedged request should have won", 1, routerMetrics.hedgedGetRequestWinCount.getCount());
+  }
+
   /**
    * Test the case where all requests time out within the NetworkClient.
    * @throws Exception
@@ -225,7 +277,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -262,7 +314,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -323,7 +375,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -380,7 +432,7 @@ public class GetBlobInfoOperationTest {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
         new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
-            operationFuture, null, operationCompleteCallback, time);
+            operationFuture, null, operationCompleteCallback, blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
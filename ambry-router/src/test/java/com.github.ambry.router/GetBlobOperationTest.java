@@ -24,13 +24,21 @@ import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.MessageFormatRecord;
+import com.github.ambry.messageformat.MetadataContentSerDe;
+import com.github.ambry.metrics.RequestTrace;
 import com.github.ambry.network.NetworkClient;
 import com.github.ambry.network.NetworkClientErrorCode;
 import com.github.ambry.network.RequestInfo;
 import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.RequestOrResponse;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -85,10 +93,14 @@ public class GetBlobOperationTest {
 
   // Certain tests recreate the routerConfig with different properties.
   private RouterConfig routerConfig;
+  private ChunkMemoryBudget chunkMemoryBudget;
+  private BlobMetadataCache blobMetadataCache;
   private int blobSize;
 
   // Parameters for puts which are also used to verify the gets.
   private String blobIdStr;
+  // the trace of the caller that the gets are done on behalf of, or null if the gets are to sample their own traces.
+  private RequestTrace callerTrace = null;
   private byte[] putContent;
 
   private final GetTestRequestRegistrationCallbackImpl requestRegistrationCallback =
@@ -126,9 +138,12 @@ public class GetBlobOperationTest {
     mockSelectorState.set(MockSelectorState.Good);
     VerifiableProperties vprops = new VerifiableProperties(getDefaultNonBlockingRouterProperties());
     routerConfig = new RouterConfig(vprops);
+    chunkMemoryBudget = new ChunkMemoryBudget(routerConfig.routerGetChunkMemoryCapacityBytes);
     mockClusterMap = new MockClusterMap();
     blobIdFactory = new BlobIdFactory(mockClusterMap);
     routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    blobMetadataCache = new BlobMetadataCache(routerConfig.routerMetadataCacheCapacityBytes,
+        routerConfig.routerMetadataCacheTtlMs, routerConfig.routerMetadataCacheUseDirectMemory, routerMetrics, time);
     mockServerLayout = new MockServerLayout(mockClusterMap);
     replicasCount = mockClusterMap.getWritablePartitionIds().get(0).getReplicaIds().size();
     responseHandler = new ResponseHandler(mockClusterMap);
@@ -176,8 +191,9 @@ public class GetBlobOperationTest {
 
     // test a bad case
     try {
-      new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id", operationFuture,
-          operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+      new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id", null,
+          operationFuture, operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory,
+          chunkMemoryBudget, blobMetadataCache, time);
       Assert.fail("Instantiation of GetBlobOperation with an invalid blob id must fail");
     } catch (RouterException e) {
       Assert.assertEquals("Unexpected exception received on creating GetBlobOperation", RouterErrorCode.InvalidBlobId,
@@ -188,8 +204,9 @@ public class GetBlobOperationTest {
     // test a good case
     // operationCount is not incremented here as this operation is not taken to completion.
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, null,
+            operationFuture, operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory,
+            chunkMemoryBudget, blobMetadataCache, time);
 
     Assert.assertEquals("Callbacks must match", operationCallback, op.getCallback());
     Assert.assertEquals("Futures must match", operationFuture, op.getFuture());
@@ -210,6 +227,57 @@ public class GetBlobOperationTest {
     }
   }
 
+  /**
+   * Put a composite blob with tracing enabled; perform a get and ensure that the get is traced with a span for every
+   * request sent, each with the breakdown reported by the server.
+   */
+  @Test
+  public void testTracedGetSuccess()
+      throws Exception {
+    Properties props = getDefaultNonBlockingRouterProperties();
+    props.setProperty("router.trace.sampling.interval", "1");
+    routerConfig = new RouterConfig(new VerifiableProperties(props));
+    blobSize = maxChunkSize * 2 + 1;
+    doPut();
+    getAndAssertSuccess();
+    List<RequestTrace> traces = routerMetrics.traceRecorder.getSlowestTraces(10);
+    Assert.assertEquals("The get should have been traced", 1, traces.size());
+    RequestTrace trace = traces.get(0);
+    Assert.assertEquals("Unexpected outcome", "Success", trace.getOutcome());
+    List<RequestTrace.Span> spans = trace.getSpans();
+    Assert.assertEquals("The first span should be the time spent queued in the router", "RouterQueue",
+        spans.get(0).getName());
+    // at least one request for the metadata chunk and for each of the three data chunks.
+    Assert.assertTrue("Unexpected number of spans: " + spans.size(), spans.size() >= 5);
+    for (RequestTrace.Span span : spans.subList(1, spans.size())) {
+      Assert.assertNotNull("Request span should have a host", span.getHost());
+      Assert.assertEquals("Unexpected server queue time", MockServer.SERVER_QUEUE_TIME_IN_NS,
+          span.getRemoteQueueTimeInNs());
+      Assert.assertEquals("Unexpected server processing time", MockServer.SERVER_PROCESSING_TIME_IN_NS,
+          span.getRemoteProcessingTimeInNs());
+    }
+  }
+
+  /**
+   * Put a composite blob and perform a get on behalf of a caller with a trace of its own; ensure that the get adds its
+   * spans to the trace of the caller and leaves completing and recording it to the caller.
+   */
+  @Test
+  public void testCallerTracedGetSuccess()
+      throws Exception {
+    blobSize = maxChunkSize * 2 + 1;
+    doPut();
+    callerTrace = new RequestTrace(1, "caller", time.milliseconds(), time.nanoseconds());
+    getAndAssertSuccess();
+    Assert.assertEquals("The get should not have recorded a trace", 0, routerMetrics.traceRecorder.getRecordedCount());
+    Assert.assertEquals("The caller trace should not have been completed", -1, callerTrace.getDurationInNs());
+    List<RequestTrace.Span> spans = callerTrace.getSpans();
+    // at least one request for the metadata chunk and for each of the three data chunks, then the get as a whole.
+    Assert.assertTrue("Unexpected number of spans: " + spans.size(), spans.size() >= 5);
+    Assert.assertEquals("The last span should cover the get", GetBlobOperation.class.getSimpleName(),
+        spans.get(spans.size() - 1).getName());
+  }
+
   /**
    * Put a blob with no data, perform get and ensure success.
    */
@@ -248,6 +316,132 @@ public class GetBlobOperationTest {
     }
   }
 
+  /**
+   * Test that the gets of composite blobs succeed when there is no memory available for data chunks, as the chunk
+   * that is to be written out next is always fetched.
+   * @throws Exception
+   */
+  @Test
+  public void testCompositeBlobGetWithExhaustedChunkMemory()
+      throws Exception {
+    chunkMemoryBudget = new ChunkMemoryBudget(0);
+    blobSize = maxChunkSize * 4 + random.nextInt(maxChunkSize - 1) + 1;
+    doPut();
+    getAndAssertSuccess();
+    Assert.assertTrue("Chunk memory should have been exhausted",
+        routerMetrics.getChunkMemoryExhaustedCount.getCount() > 0);
+  }
+
+  /**
+   * Put simple and composite blobs and get various ranges of them; ensure that the contents of the ranges are read
+   * out and that a range within a single data chunk of a composite blob does not fetch the other data chunks.
+   * @throws Exception
+   */
+  @Test
+  public void testRangeGetSuccess()
+      throws Exception {
+    for (int size : new int[]{maxChunkSize, maxChunkSize * 4 + random.nextInt(maxChunkSize) + 1}) {
+      blobSize = size;
+      doPut();
+      for (ByteRange range : getRangesToTest()) {
+        getAndAssertSuccess(range);
+      }
+    }
+    int blobGetRequestCount = getBlobGetRequestCount();
+    getAndAssertSuccess(ByteRange.fromOffsetRange(maxChunkSize, 2 * maxChunkSize - 1));
+    Assert.assertTrue("Only the data chunk that holds the range should have been fetched",
+        getBlobGetRequestCount() - blobGetRequestCount <= 2 * routerConfig.routerGetRequestParallelism);
+  }
+
+  /**
+   * Test that the range is cut out by the router when the servers are not asked for ranges, and when they are asked
+   * but return whole chunks, like servers that do not support ranges.
+   * @throws Exception
+   */
+  @Test
+  public void testRangeGetWithoutServerRanges()
+      throws Exception {
+    Properties properties = getDefaultNonBlockingRouterProperties();
+    properties.setProperty("router.get.range.request.enabled", "false");
+    RouterConfig rangeRequestsEnabledConfig = routerConfig;
+    routerConfig = new RouterConfig(new VerifiableProperties(properties));
+    for (int size : new int[]{maxChunkSize, maxChunkSize * 4 + random.nextInt(maxChunkSize) + 1}) {
+      blobSize = size;
+      doPut();
+      for (ByteRange range : getRangesToTest()) {
+        getAndAssertSuccess(range);
+      }
+    }
+    Assert.assertEquals("Servers should not have been asked for ranges", 0,
+        routerMetrics.getBlobRangeIgnoredCount.getCount());
+
+    routerConfig = rangeRequestsEnabledConfig;
+    for (MockServer mockServer : mockServerLayout.getMockServers()) {
+      mockServer.setIgnoreRanges(true);
+    }
+    for (int size : new int[]{maxChunkSize, maxChunkSize * 4 + random.nextInt(maxChunkSize) + 1}) {
+      blobSize = size;
+      doPut();
+      for (ByteRange range : getRangesToTest()) {
+        getAndAssertSuccess(range);
+      }
+      getAndAssertFailure(ByteRange.fromOffsetRange(blobSize + 1, blobSize + 10),
+          RouterErrorCode.RangeNotSatisfiable);
+    }
+    Assert.assertTrue("Whole chunks returned for ranges should have been counted",
+        routerMetrics.getBlobRangeIgnoredCount.getCount() > 0);
+  }
+
+  /**
+   * Test that a get of a range that does not overlap a simple or a composite blob fails with
+   * {@link RouterErrorCode#RangeNotSatisfiable}, whether or not the chunk ids of the composite blob are cached.
+   * @throws Exception
+   */
+  @Test
+  public void testRangeNotSatisfiable()
+      throws Exception {
+    for (int size : new int[]{maxChunkSize, maxChunkSize * 2 + 1}) {
+      blobSize = size;
+      doPut();
+      getAndAssertFailure(ByteRange.fromStartOffset(blobSize), RouterErrorCode.RangeNotSatisfiable);
+      getAndAssertFailure(ByteRange.fromOffsetRange(blobSize + 1, blobSize + 10),
+          RouterErrorCode.RangeNotSatisfiable);
+      getAndAssertFailure(ByteRange.fromLastNBytes(0), RouterErrorCode.RangeNotSatisfiable);
+    }
+  }
+
+  /**
+   * Test gets of ranges of a composite blob whose metadata content does not record the sizes of the blob. The range
+   * is cut out of the data chunks as they are written out, and ranges of the last bytes cannot be served.
+   * @throws Exception
+   */
+  @Test
+  public void testRangeGetOfCompositeBlobWithoutSizes()
+      throws Exception {
+    blobSize = maxChunkSize * 3 + random.nextInt(maxChunkSize) + 1;
+    doPut();
+    rewriteMetadataContentAsV1();
+    for (ByteRange range : getRangesToTest()) {
+      if (range.getType() == ByteRange.ByteRangeType.LAST_N_BYTES) {
+        getAndAssertFailure(range, RouterErrorCode.RangeNotSatisfiable);
+      } else {
+        getAndAssertSuccess(range);
+      }
+    }
+    getAndAssertSuccess();
+  }
+
+  /**
+   * @return the number of requests for blob content that the mock servers have served.
+   */
+  private int getBlobGetRequestCount() {
+    int count = 0;
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      count += server.getBlobGetRequestCount();
+    }
+    return count;
+  }
+
   /**
    * Test the case where all requests time out within the GetOperation.
    * @throws Exception
@@ -258,8 +452,9 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, null,
+            operationFuture, null, operationCompleteCallback, readyForPollCallback, blobIdFactory, chunkMemoryBudget,
+            blobMetadataCache, time);
     requestRegistrationCallback.requestListToFill = new ArrayList<>();
     op.poll(requestRegistrationCallback);
     while (!op.isOperationComplete()) {
@@ -284,8 +479,9 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, null,
+            operationFuture, null, operationCompleteCallback, readyForPollCallback, blobIdFactory, chunkMemoryBudget,
+            blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -322,8 +518,9 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, null,
+            operationFuture, null, operationCompleteCallback, readyForPollCallback, blobIdFactory, chunkMemoryBudget,
+            blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -385,8 +582,9 @@ public class GetBlobOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, null,
+            operationFuture, null, operationCompleteCallback, readyForPollCallback, blobIdFactory, chunkMemoryBudget,
+            blobMetadataCache, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -482,6 +680,17 @@ public class GetBlobOperationTest {
    */
   private void getAndAssertSuccess()
       throws Exception {
+    getAndAssertSuccess(null);
+  }
+
+  /**
+   * Construct GetBlob operations for the given range with appropriate callbacks, then poll those operations until
+   * they complete, and ensure that the data in the range is read out and the contents match.
+   * @param range the {@link ByteRange} to get, or {@code null} to get the whole blob.
+   */
+  private void getAndAssertSuccess(ByteRange range)
+      throws Exception {
+    final byte[] expectedContent = getExpectedContent(range);
     final CountDownLatch readCompleteLatch = new CountDownLatch(1);
     final AtomicReference<Exception> readCompleteException = new AtomicReference<>(null);
     final AtomicLong readCompleteResult = new AtomicLong(0);
@@ -497,7 +706,7 @@ public class GetBlobOperationTest {
           Utils.newThread(new Runnable() {
             @Override
             public void run() {
-              assertSuccess(result, readCompleteLatch, readCompleteResult, readCompleteException);
+              assertSuccess(result, expectedContent, readCompleteLatch, readCompleteResult, readCompleteException);
             }
           }, false).start();
         }
@@ -506,8 +715,10 @@ public class GetBlobOperationTest {
 
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, range,
+            operationFuture, callback, operationCompleteCallback, readyForPollCallback, blobIdFactory,
+            chunkMemoryBudget, blobMetadataCache, time);
+    op.setUpTrace(callerTrace, callerTrace == null);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
     while (!op.isOperationComplete()) {
@@ -526,7 +737,104 @@ public class GetBlobOperationTest {
     if (readCompleteException.get() != null) {
       throw readCompleteException.get();
     }
-    Assert.assertEquals("Size read must equal size written", blobSize, readCompleteResult.get());
+    Assert.assertEquals("Size read must equal size written", expectedContent.length, readCompleteResult.get());
+    Assert.assertEquals("All chunk memory should have been released", 0, chunkMemoryBudget.getReservedBytes());
+    Assert.assertTrue("Time to first byte should have been recorded",
+        routerMetrics.getBlobTimeToFirstByteMs.getCount() > 0 || blobSize == 0);
+  }
+
+  /**
+   * Get the content that a get of the given range of the blob that was put is expected to return.
+   * @param range the {@link ByteRange} to get, or {@code null} to get the whole blob.
+   * @return the expected content.
+   * @throws RouterException if the range cannot be satisfied by the blob.
+   */
+  private byte[] getExpectedContent(ByteRange range)
+      throws RouterException {
+    if (range == null) {
+      return putContent;
+    }
+    ByteRange resolvedRange = range.toResolvedByteRange(putContent.length);
+    return Arrays.copyOfRange(putContent, (int) resolvedRange.getStartOffset(),
+        (int) resolvedRange.getEndOffset() + 1);
+  }
+
+  /**
+   * Get the ranges to test gets of the blob that was put with. They include ranges within a chunk, ranges that span
+   * chunk boundaries, ranges that end past the end of the blob and ranges of the last bytes of the blob.
+   * @return the ranges to test.
+   */
+  private List<ByteRange> getRangesToTest() {
+    List<ByteRange> ranges = new ArrayList<>();
+    ranges.add(ByteRange.fromOffsetRange(0, 0));
+    ranges.add(ByteRange.fromOffsetRange(blobSize / 3, 2 * blobSize / 3));
+    ranges.add(ByteRange.fromOffsetRange(blobSize - 1, blobSize + 100));
+    ranges.add(ByteRange.fromStartOffset(blobSize / 2));
+    ranges.add(ByteRange.fromLastNBytes(1));
+    ranges.add(ByteRange.fromLastNBytes(blobSize / 2 + 1));
+    ranges.add(ByteRange.fromLastNBytes(blobSize + 10));
+    if (blobSize > maxChunkSize) {
+      ranges.add(ByteRange.fromOffsetRange(maxChunkSize - 1, maxChunkSize));
+      ranges.add(ByteRange.fromOffsetRange(maxChunkSize, Math.min(2 * maxChunkSize, blobSize) - 1));
+    }
+    return ranges;
+  }
+
+  /**
+   * Rewrites the metadata chunk of the composite blob that was put on every server that has it, so that its content
+   * is in {@link com.github.ambry.messageformat.MessageFormatRecord#Metadata_Content_Version_V1}, which does not
+   * record the chunk size and the total size of the blob.
+   * @throws Exception
+   */
+  private void rewriteMetadataContentAsV1()
+      throws Exception {
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      ByteBuffer storedPutRequest = server.getBlobs().get(blobIdStr);
+      if (storedPutRequest == null) {
+        continue;
+      }
+      ByteBuffer buf = storedPutRequest.duplicate();
+      // read off the size and the type.
+      buf.getLong();
+      buf.getShort();
+      PutRequest putRequest =
+          PutRequest.readFrom(new DataInputStream(new ByteBufferInputStream(buf)), mockClusterMap);
+      byte[] metadataContent = Utils.readBytesFromStream(putRequest.getBlobStream(), (int) putRequest.getBlobSize());
+      List<StoreKey> keys =
+          MetadataContentSerDe.deserializeMetadataContentRecord(ByteBuffer.wrap(metadataContent), blobIdFactory);
+      ByteBuffer legacyMetadataContent = MetadataContentSerDe.serializeMetadataContent(keys);
+      legacyMetadataContent.flip();
+      server.send(new PutRequest(putRequest.getCorrelationId(), putRequest.getClientId(),
+          new BlobId(blobIdStr, mockClusterMap), putRequest.getBlobProperties(), putRequest.getUsermetadata(),
+          legacyMetadataContent, BlobType.MetadataBlob));
+    }
+  }
+
+  /**
+   * Get the given range of the blob that was put and ensure that the operation fails with the expected error.
+   * @param range the {@link ByteRange} to get.
+   * @param expectedErrorCode the expected {@link RouterErrorCode}.
+   * @throws Exception
+   */
+  private void getAndAssertFailure(ByteRange range, RouterErrorCode expectedErrorCode)
+      throws Exception {
+    operationsCount.incrementAndGet();
+    GetBlobOperation op =
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, range,
+            new FutureResult<ReadableStreamChannel>(), null, operationCompleteCallback, readyForPollCallback,
+            blobIdFactory, chunkMemoryBudget, blobMetadataCache, time);
+    ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestListToFill;
+    while (!op.isOperationComplete()) {
+      op.poll(requestRegistrationCallback);
+      List<ResponseInfo> responses = sendAndWaitForResponses(requestListToFill);
+      for (ResponseInfo response : responses) {
+        op.handleResponse(response);
+      }
+    }
+    RouterException routerException = (RouterException) op.getOperationException();
+    Assert.assertNotNull("Operation should have failed for range " + range, routerException);
+    Assert.assertEquals("Unexpected error for range " + range, expectedErrorCode, routerException.getErrorCode());
   }
 
   /**
@@ -534,8 +842,9 @@ public class GetBlobOperationTest {
    * happens outside of the GetOperation, so those are not checked here. But at this point, the operation result should
    * be ready.
    */
-  private void assertSuccess(ReadableStreamChannel readableStreamChannel, CountDownLatch readCompleteLatch,
-      AtomicLong readCompleteResult, AtomicReference<Exception> readCompleteException) {
+  private void assertSuccess(ReadableStreamChannel readableStreamChannel, byte[] expectedContent,
+      CountDownLatch readCompleteLatch, AtomicLong readCompleteResult,
+      AtomicReference<Exception> readCompleteException) {
     try {
       ByteBufferAsyncWritableChannel asyncWritableChannel = new ByteBufferAsyncWritableChannel();
       long written;
@@ -548,14 +857,14 @@ public class GetBlobOperationTest {
         ByteBuffer buf = asyncWritableChannel.getNextChunk();
         int bufLength = buf.remaining();
         Assert.assertTrue("total content read should not be greater than length of put content",
-            readBytes + bufLength <= putContent.length);
+            readBytes + bufLength <= expectedContent.length);
         while (buf.hasRemaining()) {
-          Assert.assertEquals("Get and Put blob content should match", putContent[readBytes++], buf.get());
+          Assert.assertEquals("Get and Put blob content should match", expectedContent[readBytes++], buf.get());
         }
         asyncWritableChannel.resolveOldestChunk(null);
         Assert.assertTrue("ReadyForPollCallback should have been invoked as writable channel callback was called",
             mockNetworkClient.getAndClearWokenUpStatus());
-      } while (readBytes < putContent.length);
+      } while (readBytes < expectedContent.length);
       written = readIntoFuture.get();
       Assert.assertEquals("the returned length in the future should be the length of data written", (long) readBytes,
           written);
@@ -602,6 +911,9 @@ public class GetBlobOperationTest {
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(maxChunkSize));
     properties.setProperty("router.get.request.parallelism", Integer.toString(2));
     properties.setProperty("router.get.success.target", Integer.toString(1));
+    properties.setProperty("router.metadata.content.version",
+        Short.toString(MessageFormatRecord.Metadata_Content_Version_V2));
+    properties.setProperty("router.get.range.request.enabled", "true");
     return properties;
   }
 }
@@ -14,9 +14,11 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
 import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.commons.LoggingNotificationSystem;
+import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobInfo;
@@ -26,6 +28,8 @@ import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Random;
@@ -47,9 +51,13 @@ public class GetManagerTest {
   // this is a reference to the state used by the mockSelector. just allows tests to manipulate the state.
   private final AtomicReference<MockSelectorState> mockSelectorState = new AtomicReference<MockSelectorState>();
   private NonBlockingRouter router;
+  private NonBlockingRouterMetrics routerMetrics;
   private int chunkSize;
   private int requestParallelism;
   private int successTarget;
+  private int getBlobInfoBatchMaxBlobsPerRequest = 100;
+  private long metadataCacheCapacityBytes = 0;
+  private boolean getCoalescingEnabled = false;
   // Request params;
   private BlobProperties putBlobProperties;
   private byte[] putUserMetadata;
@@ -121,6 +129,225 @@ public class GetManagerTest {
     router.close();
   }
 
+  /**
+   * Tests that the BlobInfo and the chunk ids of a composite blob are served from the metadata cache once they have
+   * been fetched, and that they are invalidated when the blob is deleted.
+   * @throws Exception
+   */
+  @Test
+  public void testMetadataCache()
+      throws Exception {
+    metadataCacheCapacityBytes = 1024 * 1024;
+    router = getNonBlockingRouter();
+    setOperationParams(chunkSize * 6 + 11);
+    String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+    router.getBlobInfo(blobId).get();
+    getBlobAndCompareContent(blobId);
+    Assert.assertEquals("Nothing should have been found in the cache", 0,
+        routerMetrics.metadataCacheHitCount.getCount());
+    Assert.assertTrue("Metadata should have been cached", routerMetrics.metadataCacheSizeBytes.getValue() > 0);
+
+    // the chunk ids are served from the cache, so only the data chunks are fetched.
+    getBlobAndCompareContent(blobId);
+    Assert.assertEquals("Chunk ids should have been found in the cache", 1,
+        routerMetrics.metadataCacheHitCount.getCount());
+
+    // the BlobInfo is served from the cache even if the servers fail every request.
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      server.setServerErrorForAllRequests(ServerErrorCode.Unknown_Error);
+    }
+    BlobInfo blobInfo = router.getBlobInfo(blobId).get();
+    Assert.assertTrue("Blob properties should match",
+        RouterTestHelpers.haveEquivalentFields(putBlobProperties, blobInfo.getBlobProperties()));
+    Assert.assertArrayEquals("User metadata should match", putUserMetadata, blobInfo.getUserMetadata());
+    GetBlobInfosResult result = router.getBlobInfos(Collections.singletonList(blobId)).get();
+    Assert.assertArrayEquals("User metadata should match", putUserMetadata,
+        result.getBlobInfos().get(blobId).getUserMetadata());
+    Assert.assertEquals("BlobInfo should have been found in the cache", 3,
+        routerMetrics.metadataCacheHitCount.getCount());
+
+    // a delete through the router invalidates the metadata. The mock servers stand in for the deletion by responding
+    // with Blob_Deleted to every request from here on.
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      server.setServerErrorForAllRequests(ServerErrorCode.Blob_Deleted);
+    }
+    router.deleteBlob(blobId).get();
+    Assert.assertEquals("Metadata should have been invalidated", 1,
+        routerMetrics.metadataCacheInvalidationCount.getCount());
+    Assert.assertEquals("No metadata should be cached", 0L, (long) routerMetrics.metadataCacheSizeBytes.getValue());
+    try {
+      router.getBlobInfo(blobId).get();
+      Assert.fail("Get of the BlobInfo of a deleted blob should fail");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("Unexpected error", RouterErrorCode.BlobDeleted,
+          ((RouterException) e.getCause()).getErrorCode());
+    }
+    try {
+      router.getBlob(blobId).get();
+      Assert.fail("Get of a deleted blob should fail");
+    } catch (ExecutionException e) {
+      Assert.assertEquals("Unexpected error", RouterErrorCode.BlobDeleted,
+          ((RouterException) e.getCause()).getErrorCode());
+    }
+    Assert.assertEquals("Nothing more should have been found in the cache", 3,
+        routerMetrics.metadataCacheHitCount.getCount());
+    router.close();
+  }
+
+  /**
+   * Tests getBlobInfos() of a number of blobs, some of which cannot be fetched, and checks that the requests for the
+   * blobs are coalesced into requests per data node.
+   * @throws Exception
+   */
+  @Test
+  public void testGetBlobInfos()
+      throws Exception {
+    router = getNonBlockingRouter();
+    // every partition has a replica on each of the 9 nodes, so the 40 replicas of the first round of requests for
+    // these blobs have to share nodes.
+    List<String> blobIds = putBlobsForGetBlobInfos(20);
+    String notFoundId = new BlobId(mockClusterMap.getWritablePartitionIds().get(0)).getID();
+    List<String> requestedIds = new ArrayList<String>(blobIds);
+    requestedIds.add(notFoundId);
+    requestedIds.add("abcd");
+    requestedIds.add(blobIds.get(0));
+    final CountDownLatch callbackCalled = new CountDownLatch(1);
+    GetBlobInfosResult result = router.getBlobInfos(requestedIds, new Callback<GetBlobInfosResult>() {
+      @Override
+      public void onCompletion(GetBlobInfosResult result, Exception exception) {
+        callbackCalled.countDown();
+      }
+    }).get();
+    Assert.assertTrue("Callback was not called", callbackCalled.await(1, TimeUnit.SECONDS));
+    Assert.assertEquals("Unexpected BlobInfos: " + result.getBlobInfos().keySet(), blobIds.size(),
+        result.getBlobInfos().size());
+    for (String blobId : blobIds) {
+      BlobInfo blobInfo = result.getBlobInfos().get(blobId);
+      Assert.assertTrue("Blob properties should match",
+          RouterTestHelpers.haveEquivalentFields(putBlobProperties, blobInfo.getBlobProperties()));
+      Assert.assertArrayEquals("User metadata should match", putUserMetadata, blobInfo.getUserMetadata());
+    }
+    Assert.assertEquals("Unexpected failures: " + result.getFailures(), 2, result.getFailures().size());
+    Assert.assertEquals("Unexpected error for blob that does not exist", RouterErrorCode.BlobDoesNotExist,
+        ((RouterException) result.getFailures().get(notFoundId)).getErrorCode());
+    Assert.assertEquals("Unexpected error for invalid blob id", RouterErrorCode.InvalidBlobId,
+        ((RouterException) result.getFailures().get("abcd")).getErrorCode());
+    Assert.assertTrue("Requests should carry multiple blobs",
+        routerMetrics.getBlobInfosPerRequest.getSnapshot().getMax() >= 5);
+    router.close();
+  }
+
+  /**
+   * Tests that the requests of getBlobInfos() carry no more than the configured number of blobs.
+   * @throws Exception
+   */
+  @Test
+  public void testGetBlobInfosRequestSizeLimit()
+      throws Exception {
+    getBlobInfoBatchMaxBlobsPerRequest = 2;
+    router = getNonBlockingRouter();
+    List<String> blobIds = putBlobsForGetBlobInfos(20);
+    GetBlobInfosResult result = router.getBlobInfos(blobIds).get();
+    Assert.assertEquals("Unexpected failures: " + result.getFailures(), 0, result.getFailures().size());
+    Assert.assertEquals("All BlobInfos should have been fetched", blobIds.size(), result.getBlobInfos().size());
+    Assert.assertEquals("Requests should carry no more than the configured number of blobs", 2,
+        routerMetrics.getBlobInfosPerRequest.getSnapshot().getMax());
+    router.close();
+  }
+
+  /**
+   * Tests that getBlobInfos() fails every blob that the data nodes fail to return.
+   * @throws Exception
+   */
+  @Test
+  public void testGetBlobInfosServerErrors()
+      throws Exception {
+    router = getNonBlockingRouter();
+    List<String> blobIds = putBlobsForGetBlobInfos(5);
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      server.setServerErrorForAllRequests(ServerErrorCode.Unknown_Error);
+    }
+    GetBlobInfosResult result = router.getBlobInfos(blobIds).get();
+    Assert.assertEquals("No BlobInfo should have been fetched", 0, result.getBlobInfos().size());
+    for (String blobId : blobIds) {
+      Assert.assertEquals("Unexpected error", RouterErrorCode.UnexpectedInternalError,
+          ((RouterException) result.getFailures().get(blobId)).getErrorCode());
+    }
+    for (MockServer server : mockServerLayout.getMockServers()) {
+      server.resetServerErrors();
+    }
+    router.close();
+  }
+
+  /**
+   * Tests that concurrent getBlob() calls for the same blob all receive the whole blob when get coalescing is enabled,
+   * and that gets of a range of the blob are unaffected.
+   * @throws Exception
+   */
+  @Test
+  public void testGetBlobCoalescing()
+      throws Exception {
+    getCoalescingEnabled = true;
+    router = getNonBlockingRouter();
+    setOperationParams(chunkSize * 6 + 11);
+    String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+    int getCount = 10;
+    final CountDownLatch callbacksCalled = new CountDownLatch(getCount);
+    List<Future<ReadableStreamChannel>> getBlobFutures = new ArrayList<>();
+    for (int i = 0; i < getCount; i++) {
+      getBlobFutures.add(router.getBlob(blobId, new Callback<ReadableStreamChannel>() {
+        @Override
+        public void onCompletion(ReadableStreamChannel result, Exception exception) {
+          callbacksCalled.countDown();
+        }
+      }));
+    }
+    Assert.assertTrue("Callbacks were not called", callbacksCalled.await(2, TimeUnit.SECONDS));
+    List<ReadableStreamChannel> channels = new ArrayList<>();
+    for (Future<ReadableStreamChannel> future : getBlobFutures) {
+      channels.add(future.get());
+    }
+    // a coalesced read completes only once every subscriber has consumed the blob, so the channels are consumed
+    // together.
+    List<ByteBufferAsyncWritableChannel> getChannels = new ArrayList<>();
+    List<Future<Long>> readIntoFutures = new ArrayList<>();
+    for (ReadableStreamChannel channel : channels) {
+      ByteBufferAsyncWritableChannel getChannel = new ByteBufferAsyncWritableChannel();
+      getChannels.add(getChannel);
+      readIntoFutures.add(channel.readInto(getChannel, null));
+    }
+    int[] readBytes = new int[getChannels.size()];
+    while (readBytes[0] < putContent.length) {
+      for (int i = 0; i < getChannels.size(); i++) {
+        ByteBuffer buf = getChannels.get(i).getNextChunk();
+        Assert.assertTrue("total content read should not be greater than length of put content",
+            readBytes[i] + buf.remaining() <= putContent.length);
+        while (buf.hasRemaining()) {
+          Assert.assertEquals("Get and Put blob content should match", putContent[readBytes[i]++], buf.get());
+        }
+        getChannels.get(i).resolveOldestChunk(null);
+      }
+    }
+    for (int i = 0; i < getChannels.size(); i++) {
+      Assert.assertEquals("Unexpected length read", putContent.length, readIntoFutures.get(i).get().longValue());
+    }
+    // every get either started an operation (and is counted as its first subscriber) or joined one.
+    long operationsStarted = routerMetrics.getBlobCoalescedSubscriberCount.getCount();
+    Assert.assertEquals("Every get should be served once", getCount,
+        routerMetrics.getBlobCoalescedRequestCount.getCount() + operationsStarted);
+    ByteRange range = ByteRange.fromOffsetRange(0, 10);
+    ByteBufferAsyncWritableChannel rangeChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> rangeFuture = router.getBlob(blobId, range).get().readInto(rangeChannel, null);
+    ByteBuffer buf = rangeChannel.getNextChunk();
+    byte[] rangeContent = new byte[buf.remaining()];
+    buf.get(rangeContent);
+    rangeChannel.resolveOldestChunk(null);
+    Assert.assertArrayEquals("Range content should match", Arrays.copyOfRange(putContent, 0, 11), rangeContent);
+    Assert.assertEquals("Unexpected range size", 11, rangeFuture.get().longValue());
+    Assert.assertEquals("All operations should be finished.", 0, router.getOperationsCount());
+    router.close();
+  }
+
   /**
    * Test that a bad user defined callback will not crash the router.
    * @throws Exception
@@ -252,14 +479,36 @@ public class GetManagerTest {
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
     properties.setProperty("router.put.request.parallelism", Integer.toString(requestParallelism));
     properties.setProperty("router.put.success.target", Integer.toString(successTarget));
+    properties.setProperty("router.get.blob.info.batch.max.blobs.per.request",
+        Integer.toString(getBlobInfoBatchMaxBlobsPerRequest));
+    properties.setProperty("router.metadata.cache.capacity.bytes", Long.toString(metadataCacheCapacityBytes));
+    properties.setProperty("router.get.coalescing.enabled", Boolean.toString(getCoalescingEnabled));
     VerifiableProperties vProps = new VerifiableProperties(properties);
-    router = new NonBlockingRouter(new RouterConfig(vProps), new NonBlockingRouterMetrics(mockClusterMap),
+    routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    router = new NonBlockingRouter(new RouterConfig(vProps), routerMetrics,
         new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
             CHECKOUT_TIMEOUT_MS, mockServerLayout, mockTime), new LoggingNotificationSystem(), mockClusterMap,
         mockTime);
     return router;
   }
 
+  /**
+   * Put a number of blobs with the same properties and user metadata, for getBlobInfos() to get.
+   * @param count the number of blobs to put.
+   * @return the ids of the blobs.
+   * @throws Exception
+   */
+  private List<String> putBlobsForGetBlobInfos(int count)
+      throws Exception {
+    setOperationParams(chunkSize);
+    List<String> blobIds = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
+      blobIds.add(router.putBlob(putBlobProperties, putUserMetadata, putChannel).get());
+    }
+    return blobIds;
+  }
+
   /**
    * Set operation parameters for the blob that will be put and got.
    * @param blobSize the blob size for the blob that will be put and got.
@@ -14,8 +14,11 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.MessageFormatFlags;
 import com.github.ambry.messageformat.MessageFormatRecord;
 import com.github.ambry.network.BoundedByteBufferReceive;
 import com.github.ambry.network.ByteBufferSend;
@@ -52,11 +55,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * A class that mocks the server (data node) and provides methods for sending requests and setting error states.
  */
 class MockServer {
+  static final long SERVER_QUEUE_TIME_IN_NS = 10;
+  static final long SERVER_PROCESSING_TIME_IN_NS = 20;
+
   private ServerErrorCode hardError = null;
   private LinkedList<ServerErrorCode> serverErrors = new LinkedList<ServerErrorCode>();
   private final Map<String, ByteBuffer> blobs = new ConcurrentHashMap<String, ByteBuffer>();
   private final HashMap<String, ServerErrorCode> blobIdToServerErrorCode = new HashMap<String, ServerErrorCode>();
   private boolean shouldRespond = true;
+  private int blobGetRequestCount = 0;
+  private boolean ignoreRanges = false;
   private final ClusterMap clusterMap;
   private final String dataCenter;
 
@@ -122,7 +130,7 @@ class MockServer {
   /**
    * Make a {@link GetResponse} for the given {@link GetRequest} for which the given {@link ServerErrorCode} was
    * encountered. The request could be for BlobInfo or for Blob (the only two options that the router would request
-   * for).
+   * for). A request for BlobInfo can be for multiple blobs, each in its own {@link PartitionRequestInfo}.
    * @param getRequest the {@link GetRequest} for which the response is being constructed.
    * @param getError the {@link ServerErrorCode} that was encountered.
    * @return the constructed {@link GetResponse}
@@ -131,11 +139,16 @@ class MockServer {
   GetResponse makeGetResponse(GetRequest getRequest, ServerErrorCode getError)
       throws IOException {
     GetResponse getResponse;
+    List<PartitionRequestInfo> infos = getRequest.getPartitionInfoList();
     if (getError == ServerErrorCode.No_Error) {
-      List<PartitionRequestInfo> infos = getRequest.getPartitionInfoList();
-      if (infos.size() != 1 || infos.get(0).getBlobIds().size() != 1) {
+      if (infos.size() != 1 && getRequest.getMessageFormatFlag() != MessageFormatFlags.BlobInfo) {
         getError = ServerErrorCode.Unknown_Error;
       }
+      for (PartitionRequestInfo info : infos) {
+        if (info.getBlobIds().size() != 1) {
+          getError = ServerErrorCode.Unknown_Error;
+        }
+      }
     }
 
     ServerErrorCode serverError;
@@ -153,74 +166,119 @@ class MockServer {
     }
 
     if (serverError == ServerErrorCode.No_Error) {
-      int byteBufferSize;
-      ByteBuffer byteBuffer;
-      StoreKey key = getRequest.getPartitionInfoList().get(0).getBlobIds().get(0);
-      if (blobs.containsKey(key.getID())) {
-        ByteBuffer buf = blobs.get(key.getID()).duplicate();
-        // read off the size
-        buf.getLong();
-        // read off the type.
-        buf.getShort();
-        PutRequest originalBlobPutReq =
-            PutRequest.readFrom(new DataInputStream(new ByteBufferInputStream(buf)), clusterMap);
-        switch (getRequest.getMessageFormatFlag()) {
-          case BlobInfo:
-            BlobProperties blobProperties = originalBlobPutReq.getBlobProperties();
-            ByteBuffer userMetadata = originalBlobPutReq.getUsermetadata();
-            byteBufferSize = MessageFormatRecord.BlobProperties_Format_V1.getBlobPropertiesRecordSize(blobProperties)
-                + MessageFormatRecord.UserMetadata_Format_V1.getUserMetadataSize(userMetadata);
-            byteBuffer = ByteBuffer.allocate(byteBufferSize);
-            MessageFormatRecord.BlobProperties_Format_V1.serializeBlobPropertiesRecord(byteBuffer, blobProperties);
-            MessageFormatRecord.UserMetadata_Format_V1.serializeUserMetadataRecord(byteBuffer, userMetadata);
-            break;
-          case Blob:
-            byteBufferSize =
-                (int) MessageFormatRecord.Blob_Format_V2.getBlobRecordSize((int) originalBlobPutReq.getBlobSize());
-            byteBuffer = ByteBuffer.allocate(byteBufferSize);
-            MessageFormatRecord.Blob_Format_V2
-                .serializePartialBlobRecord(byteBuffer, (int) originalBlobPutReq.getBlobSize(),
-                    originalBlobPutReq.getBlobType());
-            byteBuffer.put(
-                Utils.readBytesFromStream(originalBlobPutReq.getBlobStream(), (int) originalBlobPutReq.getBlobSize()));
-            Crc32 crc = new Crc32();
-            crc.update(byteBuffer.array(), 0, byteBuffer.position());
-            byteBuffer.putLong(crc.getValue());
-            break;
-          default:
-            throw new IOException("GetRequest flag is not supported: " + getRequest.getMessageFormatFlag());
+      List<ByteBuffer> contents = new ArrayList<ByteBuffer>();
+      int totalSize = 0;
+      List<PartitionResponseInfo> partitionResponseInfoList = new ArrayList<PartitionResponseInfo>();
+      for (PartitionRequestInfo info : infos) {
+        StoreKey key = info.getBlobIds().get(0);
+        ByteBuffer byteBuffer = null;
+        ServerErrorCode blobError = partitionError;
+        if (blobError == ServerErrorCode.No_Error) {
+          try {
+            byteBuffer =
+                getContent(key, getRequest.getMessageFormatFlag(), ignoreRanges ? null : getRequest.getRange());
+            if (byteBuffer == null) {
+              blobError = ServerErrorCode.Blob_Not_Found;
+            }
+          } catch (RouterException e) {
+            blobError = ServerErrorCode.Range_Not_Satisfiable;
+          }
         }
-      } else {
-        if (partitionError == ServerErrorCode.No_Error) {
-          partitionError = ServerErrorCode.Blob_Not_Found;
+        if (blobError == ServerErrorCode.No_Error) {
+          List<MessageInfo> messageInfoList = new ArrayList<MessageInfo>(1);
+          messageInfoList.add(new MessageInfo(key, byteBuffer.remaining()));
+          partitionResponseInfoList.add(new PartitionResponseInfo(info.getPartition(), messageInfoList));
+          contents.add(byteBuffer);
+          totalSize += byteBuffer.remaining();
+        } else {
+          partitionResponseInfoList.add(new PartitionResponseInfo(info.getPartition(), blobError));
         }
-        byteBuffer = ByteBuffer.allocate(0);
-        byteBufferSize = 0;
       }
-
-      byteBuffer.flip();
-      ByteBufferSend responseSend = new ByteBufferSend(byteBuffer);
-      List<MessageInfo> messageInfoList = new ArrayList<MessageInfo>(1);
-      List<PartitionResponseInfo> partitionResponseInfoList = new ArrayList<PartitionResponseInfo>();
-      messageInfoList.add(new MessageInfo(key, byteBufferSize));
-      PartitionResponseInfo partitionResponseInfo =
-          partitionError == ServerErrorCode.No_Error ? new PartitionResponseInfo(
-              getRequest.getPartitionInfoList().get(0).getPartition(), messageInfoList)
-              : new PartitionResponseInfo(getRequest.getPartitionInfoList().get(0).getPartition(), partitionError);
-      partitionResponseInfoList.add(partitionResponseInfo);
+      ByteBuffer responseBuffer = ByteBuffer.allocate(totalSize);
+      for (ByteBuffer content : contents) {
+        responseBuffer.put(content);
+      }
+      responseBuffer.flip();
       getResponse = new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), partitionResponseInfoList,
-          responseSend, serverError);
+          new ByteBufferSend(responseBuffer), serverError);
     } else {
       getResponse = new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(),
           new ArrayList<PartitionResponseInfo>(), new ByteBufferSend(ByteBuffer.allocate(0)), serverError);
     }
+    if (getRequest.getTraceId() != 0) {
+      // like the server, report the breakdown of the time spent on traced requests.
+      getResponse.setServerTimes(SERVER_QUEUE_TIME_IN_NS, SERVER_PROCESSING_TIME_IN_NS);
+    }
     return getResponse;
   }
 
+  /**
+   * Get the content to return for a blob that was put on this server.
+   * @param key the {@link StoreKey} of the blob.
+   * @param flag the {@link MessageFormatFlags} of the get request.
+   * @param range the {@link ByteRange} of the get request, if any. Like the server, it is only applied to the
+   *              content of data blobs.
+   * @return the content, ready to be read, or {@code null} if the blob was not put on this server.
+   * @throws IOException if there was an error constructing the content.
+   * @throws RouterException if the range cannot be satisfied by the blob.
+   */
+  private ByteBuffer getContent(StoreKey key, MessageFormatFlags flag, ByteRange range)
+      throws IOException, RouterException {
+    if (!blobs.containsKey(key.getID())) {
+      return null;
+    }
+    if (flag == MessageFormatFlags.Blob) {
+      blobGetRequestCount++;
+    }
+    int byteBufferSize;
+    ByteBuffer byteBuffer;
+    ByteBuffer buf = blobs.get(key.getID()).duplicate();
+    // read off the size
+    buf.getLong();
+    // read off the type.
+    buf.getShort();
+    PutRequest originalBlobPutReq =
+        PutRequest.readFrom(new DataInputStream(new ByteBufferInputStream(buf)), clusterMap);
+    switch (flag) {
+      case BlobInfo:
+        BlobProperties blobProperties = originalBlobPutReq.getBlobProperties();
+        ByteBuffer userMetadata = originalBlobPutReq.getUsermetadata();
+        byteBufferSize = MessageFormatRecord.BlobProperties_Format_V1.getBlobPropertiesRecordSize(blobProperties)
+            + MessageFormatRecord.UserMetadata_Format_V1.getUserMetadataSize(userMetadata);
+        byteBuffer = ByteBuffer.allocate(byteBufferSize);
+        MessageFormatRecord.BlobProperties_Format_V1.serializeBlobPropertiesRecord(byteBuffer, blobProperties);
+        MessageFormatRecord.UserMetadata_Format_V1.serializeUserMetadataRecord(byteBuffer, userMetadata);
+        break;
+      case Blob:
+        byte[] content =
+            Utils.readBytesFromStream(originalBlobPutReq.getBlobStream(), (int) originalBlobPutReq.getBlobSize());
+        int contentOffset = 0;
+        int contentSize = content.length;
+        if (range != null && originalBlobPutReq.getBlobType() == BlobType.DataBlob) {
+          ByteRange resolvedRange = range.toResolvedByteRange(contentSize);
+          contentOffset = (int) resolvedRange.getStartOffset();
+          contentSize = (int) resolvedRange.getRangeSize();
+        }
+        byteBufferSize = (int) MessageFormatRecord.Blob_Format_V2.getBlobRecordSize(contentSize);
+        byteBuffer = ByteBuffer.allocate(byteBufferSize);
+        MessageFormatRecord.Blob_Format_V2
+            .serializePartialBlobRecord(byteBuffer, contentSize, originalBlobPutReq.getBlobType());
+        byteBuffer.put(content, contentOffset, contentSize);
+        Crc32 crc = new Crc32();
+        crc.update(byteBuffer.array(), 0, byteBuffer.position());
+        byteBuffer.putLong(crc.getValue());
+        break;
+      default:
+        throw new IOException("GetRequest flag is not supported: " + flag);
+    }
+    byteBuffer.flip();
+    return byteBuffer;
+  }
+
   /**
    *
    * Make a {@link DeleteResponse} for the given {@link DeleteRequest} for which the given {@link ServerErrorCode} was
-   * encountered.
+   * encountered. For a multi-blob request, the error is returned for each of the blobs.
    * @param deleteRequest the {@link DeleteRequest} for which the response is being constructed.
    * @param deleteError the {@link ServerErrorCode} that was encountered.
    * @return the constructed {@link DeleteResponse}
@@ -228,6 +286,14 @@ class MockServer {
    */
   DeleteResponse makeDeleteResponse(DeleteRequest deleteRequest, ServerErrorCode deleteError)
       throws IOException {
+    if (deleteRequest.isMultiBlobRequest()) {
+      List<ServerErrorCode> blobErrors = new ArrayList<ServerErrorCode>();
+      for (BlobId blobId : deleteRequest.getBlobIds()) {
+        blobErrors.add(deleteError == ServerErrorCode.No_Error ? getErrorFromBlobIdStr(blobId.getID()) : deleteError);
+      }
+      return new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), ServerErrorCode.No_Error,
+          blobErrors);
+    }
     String blobIdString = deleteRequest.getBlobId().getID();
     if (deleteError == ServerErrorCode.No_Error) {
       deleteError = getErrorFromBlobIdStr(blobIdString);
@@ -257,6 +323,21 @@ class MockServer {
     return blobs;
   }
 
+  /**
+   * Makes this server return whole blobs for requests that carry a range, like a server that does not support ranges.
+   * @param ignoreRanges {@code true} if ranges are to be ignored.
+   */
+  void setIgnoreRanges(boolean ignoreRanges) {
+    this.ignoreRanges = ignoreRanges;
+  }
+
+  /**
+   * @return the number of requests for the content of a blob put on this server that this server has served.
+   */
+  int getBlobGetRequestCount() {
+    return blobGetRequestCount;
+  }
+
   /**
    * Return the datacenter name of this server.
    * @return the datacenter name.
@@ -13,11 +13,14 @@
  */
 package com.github.ambry.router;
 
+import com.github.ambry.clustermap.DataNodeId;
 import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.commons.LoggingNotificationSystem;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.TestUtils;
@@ -156,6 +159,138 @@ public class NonBlockingRouterTest {
     assertClosed();
   }
 
+  /**
+   * Test that scaling units share the network event loops, and that the event loops are closed along with the router.
+   */
+  @Test
+  public void testMultipleEventLoops()
+      throws Exception {
+    final int SCALING_UNITS = 2;
+    final int EVENT_LOOPS = 3;
+    Properties props = getNonBlockingRouterProperties("DC1");
+    props.setProperty("router.scaling.unit.count", Integer.toString(SCALING_UNITS));
+    props.setProperty("router.network.event.loop.count", Integer.toString(EVENT_LOOPS));
+    VerifiableProperties verifiableProperties = new VerifiableProperties((props));
+    MockClusterMap mockClusterMap = new MockClusterMap();
+    MockTime mockTime = new MockTime();
+    router = new NonBlockingRouter(new RouterConfig(verifiableProperties), new NonBlockingRouterMetrics(mockClusterMap),
+        new MockNetworkClientFactory(verifiableProperties, null, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, new MockServerLayout(mockClusterMap), mockTime), new LoggingNotificationSystem(),
+        mockClusterMap, mockTime);
+
+    assertExpectedThreadCounts(SCALING_UNITS);
+    Assert.assertEquals("Number of event loop threads running should be as expected", EVENT_LOOPS,
+        TestUtils.numThreadsByThisName("NetworkClientEventLoop"));
+
+    for (int i = 0; i < SCALING_UNITS * 10; i++) {
+      setOperationParams();
+      String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+      Assert.assertEquals("Unexpected blob size", putContent.length,
+          router.getBlobInfo(blobId).get().getBlobProperties().getBlobSize());
+    }
+    router.close();
+    assertExpectedThreadCounts(0);
+    Assert.assertEquals("Event loop threads should have exited", 0,
+        TestUtils.numThreadsByThisName("NetworkClientEventLoop"));
+  }
+
+  /**
+   * Test that gets work with the {@link AdaptiveOperationTracker}, and that the router tracks the requests in flight to
+   * and the latency of every data node that requests are sent to.
+   */
+  @Test
+  public void testAdaptiveOperationTracker()
+      throws Exception {
+    Properties props = getNonBlockingRouterProperties("DC1");
+    props.setProperty("router.get.operation.tracker.type", "AdaptiveOperationTracker");
+    VerifiableProperties verifiableProperties = new VerifiableProperties((props));
+    MockClusterMap mockClusterMap = new MockClusterMap();
+    MockTime mockTime = new MockTime();
+    NonBlockingRouterMetrics routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    router = new NonBlockingRouter(new RouterConfig(verifiableProperties), routerMetrics,
+        new MockNetworkClientFactory(verifiableProperties, null, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, new MockServerLayout(mockClusterMap), mockTime), new LoggingNotificationSystem(),
+        mockClusterMap, mockTime);
+    for (int i = 0; i < 5; i++) {
+      setOperationParams();
+      String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+      Assert.assertEquals("Unexpected blob size", putContent.length,
+          router.getBlobInfo(blobId).get().getBlobProperties().getBlobSize());
+      Assert.assertNotNull("Blob should have been fetched", router.getBlob(blobId).get());
+    }
+    // requests of completed operations may still be in flight.
+    long deadlineMs = System.currentTimeMillis() + 10 * 1000;
+    boolean requestsInFlight = true;
+    while (requestsInFlight && System.currentTimeMillis() < deadlineMs) {
+      requestsInFlight = false;
+      for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+        requestsInFlight |= routerMetrics.getDataNodeBasedMetrics(dataNodeId).getRequestsInFlight() != 0;
+      }
+      Thread.sleep(10);
+    }
+    Assert.assertFalse("All requests should have completed", requestsInFlight);
+    int dataNodesWithLatency = 0;
+    for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+      if (routerMetrics.getDataNodeBasedMetrics(dataNodeId).getLastRequestLatencyUpdateTimeMs() != -1) {
+        dataNodesWithLatency++;
+      }
+    }
+    Assert.assertTrue("Latency should have been recorded for the data nodes that were sent requests",
+        dataNodesWithLatency >= 2);
+    router.close();
+    assertExpectedThreadCounts(0);
+  }
+
+  /**
+   * Test that the requests to data nodes that do not respond are no longer tracked as in flight once they time out,
+   * and that they count as slow requests.
+   */
+  @Test
+  public void testRequestsInFlightTimeout()
+      throws Exception {
+    Properties props = getNonBlockingRouterProperties("DC1");
+    props.setProperty("router.get.operation.tracker.type", "AdaptiveOperationTracker");
+    VerifiableProperties verifiableProperties = new VerifiableProperties((props));
+    RouterConfig routerConfig = new RouterConfig(verifiableProperties);
+    MockClusterMap mockClusterMap = new MockClusterMap();
+    MockServerLayout mockServerLayout = new MockServerLayout(mockClusterMap);
+    MockTime mockTime = new MockTime();
+    NonBlockingRouterMetrics routerMetrics = new NonBlockingRouterMetrics(mockClusterMap);
+    router = new NonBlockingRouter(routerConfig, routerMetrics,
+        new MockNetworkClientFactory(verifiableProperties, null, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, mockServerLayout, mockTime), new LoggingNotificationSystem(), mockClusterMap,
+        mockTime);
+    for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+      mockServerLayout.getMockServer(dataNodeId.getHostname(), dataNodeId.getPort()).setShouldRespond(false);
+    }
+    String blobId = new BlobId(mockClusterMap.getWritablePartitionIds().get(0)).getID();
+    Future<BlobInfo> future = router.getBlobInfo(blobId);
+    long deadlineMs = System.currentTimeMillis() + 10 * 1000;
+    boolean requestsInFlight = true;
+    while (requestsInFlight && System.currentTimeMillis() < deadlineMs) {
+      mockTime.sleep(routerConfig.routerRequestTimeoutMs);
+      requestsInFlight = !future.isDone();
+      for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+        requestsInFlight |= routerMetrics.getDataNodeBasedMetrics(dataNodeId).getRequestsInFlight() != 0;
+      }
+      Thread.sleep(10);
+    }
+    Assert.assertFalse("Timed out requests should no longer be in flight", requestsInFlight);
+    int dataNodesWithLatency = 0;
+    for (DataNodeId dataNodeId : mockClusterMap.getDataNodeIds()) {
+      NonBlockingRouterMetrics.NodeLevelMetrics nodeLevelMetrics = routerMetrics.getDataNodeBasedMetrics(dataNodeId);
+      if (nodeLevelMetrics.getLastRequestLatencyUpdateTimeMs() != -1) {
+        dataNodesWithLatency++;
+        Assert.assertTrue("Timed out request should count as taking at least the request timeout",
+            nodeLevelMetrics.getRequestLatencyEwmaMs() >= routerConfig.routerRequestTimeoutMs);
+      }
+    }
+    Assert.assertTrue("Latency should have been recorded for the data nodes that were sent requests",
+        dataNodesWithLatency >= 2);
+    router.close();
+    assertExpectedThreadCounts(0);
+  }
+
   /**
    * Assert that the number of ChunkFiller and RequestResponseHandler threads running are as expected.
    * @param expectedCount the expected number of ChunkFiller and RequestResponseHandler threads.
@@ -23,6 +23,7 @@ import com.github.ambry.config.RouterConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.MessageFormatRecord;
 import com.github.ambry.messageformat.MetadataContentSerDe;
 import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.store.StoreKey;
@@ -67,6 +68,7 @@ public class PutManagerTest {
   private int requestParallelism;
   private int successTarget;
   private boolean instantiateNewRouterForPuts;
+  private short metadataContentVersion = MessageFormatRecord.Metadata_Content_Version_V1;
   private final Random random = new Random();
 
   private static final int MAX_PORTS_PLAIN_TEXT = 3;
@@ -143,6 +145,33 @@ public class PutManagerTest {
     }
   }
 
+  /**
+   * Tests put of a composite blob whose metadata content records the chunk size and the total size of the blob.
+   */
+  @Test
+  public void testCompositeBlobWithSizesPutSuccess()
+      throws Exception {
+    metadataContentVersion = MessageFormatRecord.Metadata_Content_Version_V2;
+    requestAndResultsList.clear();
+    requestAndResultsList.add(new RequestAndResult(chunkSize * 3 + random.nextInt(chunkSize - 1) + 1));
+    submitPutsAndAssertSuccess(true);
+  }
+
+  /**
+   * Tests puts of blobs whose size is not known upfront, of sizes that result in simple blobs and in composite blobs.
+   */
+  @Test
+  public void testUnknownSizeBlobPutSuccess()
+      throws Exception {
+    int[] blobSizes = {0, random.nextInt(chunkSize - 1) + 1, chunkSize, chunkSize * 5,
+        chunkSize * 5 + random.nextInt(chunkSize - 1) + 1};
+    for (int blobSize : blobSizes) {
+      requestAndResultsList.clear();
+      requestAndResultsList.add(new RequestAndResult(blobSize, false));
+      submitPutsAndAssertSuccess(true);
+    }
+  }
+
   /**
    * Test that a bad user defined callback will not crash the router.
    * @throws Exception
@@ -611,6 +640,7 @@ public class PutManagerTest {
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
     properties.setProperty("router.put.request.parallelism", Integer.toString(requestParallelism));
     properties.setProperty("router.put.success.target", Integer.toString(successTarget));
+    properties.setProperty("router.metadata.content.version", Short.toString(metadataContentVersion));
     VerifiableProperties vProps = new VerifiableProperties(properties);
     router = new NonBlockingRouter(new RouterConfig(vProps), new NonBlockingRouterMetrics(mockClusterMap),
         new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
@@ -679,6 +709,14 @@ public class PutManagerTest {
           try {
             ReadableStreamChannel putChannel =
                 new ByteBufferReadableStreamChannel(ByteBuffer.wrap(requestAndResult.putContent));
+            if (!requestAndResult.isSizeKnown) {
+              putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(requestAndResult.putContent)) {
+                @Override
+                public long getSize() {
+                  return -1;
+                }
+              };
+            }
             requestAndResult.result = (FutureResult<String>) router
                 .putBlob(requestAndResult.putBlobProperties, requestAndResult.putUserMetadata, putChannel, null);
             requestAndResult.result.await();
@@ -737,6 +775,8 @@ public class PutManagerTest {
     PutRequest request = deserializePutRequest(serializedRequest);
     if (request.getBlobType() == BlobType.MetadataBlob) {
       byte[] data = Utils.readBytesFromStream(request.getBlobStream(), (int) request.getBlobSize());
+      Assert.assertEquals("Unexpected metadata content version", metadataContentVersion,
+          ByteBuffer.wrap(data).getShort());
       List<StoreKey> dataBlobIds = MetadataContentSerDe
           .deserializeMetadataContentRecord(ByteBuffer.wrap(data), new BlobIdFactory(mockClusterMap));
       byte[] content = new byte[(int) request.getBlobProperties().getBlobSize()];
@@ -839,10 +879,22 @@ public class PutManagerTest {
     byte[] putUserMetadata;
     byte[] putContent;
     FutureResult<String> result;
+    final boolean isSizeKnown;
 
     RequestAndResult(int blobSize) {
+      this(blobSize, true);
+    }
+
+    /**
+     * @param blobSize the size of the blob to put.
+     * @param isSizeKnown whether the size of the blob is passed to the router. If not, the size in the
+     *                    {@link BlobProperties} and the size of the channel are -1.
+     */
+    RequestAndResult(int blobSize, boolean isSizeKnown) {
+      this.isSizeKnown = isSizeKnown;
       putBlobProperties =
-          new BlobProperties(blobSize, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
+          new BlobProperties(isSizeKnown ? blobSize : -1, "serviceId", "memberId", "contentType", false,
+              Utils.Infinite_Time);
       putUserMetadata = new byte[10];
       random.nextBytes(putUserMetadata);
       putContent = new byte[blobSize];
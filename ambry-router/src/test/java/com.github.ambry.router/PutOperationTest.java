@@ -26,6 +26,7 @@ import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.RequestOrResponse;
 import com.github.ambry.utils.ByteBufferChannel;
 import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SimpleByteBufferPool;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
@@ -88,7 +89,7 @@ public class PutOperationTest {
   @Test
   public void testSendIncomplete()
       throws Exception {
-    int numChunks = NonBlockingRouter.MAX_IN_MEM_CHUNKS + 1;
+    int numChunks = routerConfig.routerPutMinParallelChunks + 1;
     BlobProperties blobProperties =
         new BlobProperties(chunkSize * numChunks, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
     byte[] userMetadata = new byte[10];
@@ -98,8 +99,11 @@ public class PutOperationTest {
     FutureResult<String> future = new FutureResult<>();
     MockNetworkClient mockNetworkClient = new MockNetworkClient();
     PutOperation op =
-        new PutOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobProperties, userMetadata,
-            channel, future, null, new ReadyForPollCallback(mockNetworkClient), null, time);
+        new PutOperation(routerConfig, routerMetrics,
+            new WritablePartitionSelector(mockClusterMap, routerConfig.routerWritablePartitionsRefreshIntervalMs,
+                routerConfig.routerRequestTimeoutMs, routerMetrics, time), responseHandler, blobProperties,
+            userMetadata, channel, future, null, new ReadyForPollCallback(mockNetworkClient), null,
+            new SimpleByteBufferPool(routerConfig.routerPutChunkBufferPoolCapacityBytes), time);
     op.startReadingFromChannel();
     List<RequestInfo> requestInfos = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestInfos;
@@ -109,9 +113,9 @@ public class PutOperationTest {
         mockNetworkClient.getAndClearWokenUpStatus());
     // A poll should therefore return requestParallelism number of requests from each chunk
     op.poll(requestRegistrationCallback);
-    Assert.assertEquals(NonBlockingRouter.MAX_IN_MEM_CHUNKS * requestParallelism, requestInfos.size());
+    Assert.assertEquals(routerConfig.routerPutMinParallelChunks * requestParallelism, requestInfos.size());
 
-    // There are MAX_IN_MEM_CHUNKS + 1 data chunks for this blob (and a metadata chunk).
+    // There are routerPutMinParallelChunks + 1 data chunks for this blob (and a metadata chunk).
     // Once the first chunk is completely sent out, the first PutChunk will be reused. What the test verifies is that
     // the buffer of the first PutChunk does not get reused. It does this as follows:
     // For the first chunk,
@@ -174,6 +178,44 @@ public class PutOperationTest {
     Assert.assertTrue("Operation should be complete at this time", op.isOperationComplete());
   }
 
+  /**
+   * Ensure that the number of chunks that are filled at a time grows when a chunk is put successfully while data is
+   * waiting in the channel for a free chunk.
+   */
+  @Test
+  public void testParallelChunkLimitGrowth()
+      throws Exception {
+    int minParallelChunks = routerConfig.routerPutMinParallelChunks;
+    int numChunks = minParallelChunks * 3;
+    BlobProperties blobProperties =
+        new BlobProperties(chunkSize * numChunks, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
+    byte[] content = new byte[chunkSize * numChunks];
+    random.nextBytes(content);
+    ReadableStreamChannel channel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(content));
+    MockNetworkClient mockNetworkClient = new MockNetworkClient();
+    PutOperation op =
+        new PutOperation(routerConfig, routerMetrics,
+            new WritablePartitionSelector(mockClusterMap, routerConfig.routerWritablePartitionsRefreshIntervalMs,
+                routerConfig.routerRequestTimeoutMs, routerMetrics, time), responseHandler, blobProperties,
+            new byte[10], channel, new FutureResult<String>(), null, new ReadyForPollCallback(mockNetworkClient), null,
+            new SimpleByteBufferPool(routerConfig.routerPutChunkBufferPoolCapacityBytes), time);
+    op.startReadingFromChannel();
+    List<RequestInfo> requestInfos = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestInfos;
+    op.fillChunks();
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("Only the minimum number of chunks should have been filled",
+        minParallelChunks * requestParallelism, requestInfos.size());
+    // the first requests are for the first chunk. Completing it should free it and allow one more chunk to be filled.
+    op.handleResponse(getResponseInfo(requestInfos.get(0)));
+    Assert.assertEquals("Parallel chunk limit should have grown", minParallelChunks + 1,
+        routerMetrics.putParallelChunkLimit.getSnapshot().getMax());
+    requestInfos.clear();
+    op.fillChunks();
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals("Two more chunks should have been filled", 2 * requestParallelism, requestInfos.size());
+  }
+
   /**
    *  Reset the correlation id field of a {@link PutRequest} to 0.
    */
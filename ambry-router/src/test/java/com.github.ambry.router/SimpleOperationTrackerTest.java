@@ -387,6 +387,111 @@ public class SimpleOperationTrackerTest {
     assertTrue(ot.isDone());
   }
 
+  /**
+   * crossColoEnabled = false, successTarget = 1, parallelism = 2.
+   *
+   * <p/>
+   * 1. Get 2 local replicas to send request (and send requests);
+   * 2. Hedge, and get the 3rd local replica to send request (and send request);
+   * 3. Hedge fails as there are no more replicas;
+   * 4. 1 local replica succeeds.
+   * 5. Operation succeeds.
+   */
+  @Test
+  public void hedgeTest() {
+    initialize();
+    ot = new SimpleOperationTracker(localDcName, mockPartition, false, 1, 2);
+    // 3-0-0-0; 9-0-0-0
+    sendAllAllowed();
+    // 1-2-0-0; 9-0-0-0
+    assertEquals(2, inflightReplicas.size());
+    sendAllAllowed();
+    assertEquals("No more requests should be allowed without hedging", 2, inflightReplicas.size());
+    assertTrue("Hedge should be allowed", ot.hedge());
+    sendAllAllowed();
+    // 0-3-0-0; 9-0-0-0
+    assertEquals("Hedged request should have been allowed", 3, inflightReplicas.size());
+    assertFalse("Hedge should not be allowed as there are no more replicas", ot.hedge());
+    ot.onResponse(inflightReplicas.poll(), true);
+    // 0-2-1-0; 9-0-0-0
+    assertTrue(ot.hasSucceeded());
+    assertTrue(ot.isDone());
+  }
+
+  /**
+   * crossColoEnabled = false, successTarget = 1, parallelism = 1.
+   *
+   * <p/>
+   * 1. Get 1 local replica to send request (and send request);
+   * 2. Hedge, and get the 2nd local replica to send request (and send request);
+   * 3. 1 local replica fails, no request is sent as the hedge has been used up;
+   * 4. The other local replica fails, and the 3rd local replica is sent a request.
+   */
+  @Test
+  public void hedgeIsOneOffTest() {
+    initialize();
+    ot = new SimpleOperationTracker(localDcName, mockPartition, false, 1, 1);
+    // 3-0-0-0; 9-0-0-0
+    sendAllAllowed();
+    assertTrue("Hedge should be allowed", ot.hedge());
+    sendAllAllowed();
+    // 1-2-0-0; 9-0-0-0
+    assertEquals("Hedged request should have been allowed", 2, inflightReplicas.size());
+    ot.onResponse(inflightReplicas.poll(), false);
+    sendAllAllowed();
+    // 1-1-0-1; 9-0-0-0
+    assertEquals("Hedge should not raise the parallelism", 1, inflightReplicas.size());
+    ot.onResponse(inflightReplicas.poll(), false);
+    sendAllAllowed();
+    // 0-1-0-2; 9-0-0-0
+    assertEquals("Request should have been sent within the parallelism", 1, inflightReplicas.size());
+    assertFalse(ot.isDone());
+  }
+
+  /**
+   * crossColoEnabled = false, successTarget = 1, parallelism = 1.
+   *
+   * <p/>
+   * 1. Get 1 local replica to send request (and send request);
+   * 2. Hedge, then the local replica fails before any request is sent;
+   * 3. A request to the 2nd local replica is sent within the parallelism and is not a hedge;
+   * 4. A request to the 3rd local replica is sent beyond the parallelism as the hedge.
+   */
+  @Test
+  public void hedgeNotUsedUpByRegularSendTest() {
+    initialize();
+    ot = new SimpleOperationTracker(localDcName, mockPartition, false, 1, 1);
+    // 3-0-0-0; 9-0-0-0
+    sendAllAllowed();
+    assertTrue("Hedge should be allowed", ot.hedge());
+    ot.onResponse(inflightReplicas.poll(), false);
+    // 2-0-0-1; 9-0-0-0
+    Iterator<ReplicaId> itr = ot.getReplicaIterator();
+    assertTrue(itr.hasNext());
+    sendReplica(itr.next());
+    assertFalse("Request within the parallelism should not be a hedge", ot.isNextSendHedge());
+    itr.remove();
+    assertTrue("Hedge should not have been used up by a request within the parallelism", itr.hasNext());
+    sendReplica(itr.next());
+    assertTrue("Request beyond the parallelism should be the hedge", ot.isNextSendHedge());
+    itr.remove();
+    // 0-2-0-1; 9-0-0-0
+    assertFalse("Hedge should have been used up", itr.hasNext());
+    assertFalse(ot.isNextSendHedge());
+    assertEquals(2, inflightReplicas.size());
+  }
+
+  /**
+   * Send requests to all the replicas that the operation tracker allows requests to be sent to.
+   */
+  private void sendAllAllowed() {
+    Iterator<ReplicaId> itr = ot.getReplicaIterator();
+    while (itr.hasNext()) {
+      sendReplica(itr.next());
+      itr.remove();
+    }
+  }
+
   /**
    * Send request to a replica.
    * @param replica The replica where a request is sent to.
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.MockTime;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests for {@link WritablePartitionSelector}.
+ */
+public class WritablePartitionSelectorTest {
+  private static final long REFRESH_INTERVAL_MS = 1000;
+  private static final long FAILURE_LATENCY_MS = 5000;
+  private final CountingClusterMap clusterMap;
+  private final NonBlockingRouterMetrics routerMetrics;
+  private final MockTime time = new MockTime();
+  private final WritablePartitionSelector selector;
+
+  public WritablePartitionSelectorTest()
+      throws IOException {
+    clusterMap = new CountingClusterMap();
+    routerMetrics = new NonBlockingRouterMetrics(clusterMap);
+    selector = new WritablePartitionSelector(clusterMap, REFRESH_INTERVAL_MS, FAILURE_LATENCY_MS, routerMetrics, time);
+  }
+
+  /**
+   * Tests that the writable partitions are fetched from the cluster map only when the cached ones expire or after a
+   * failed put.
+   */
+  @Test
+  public void testWritablePartitionsCaching()
+      throws RouterException {
+    List<PartitionId> noExclusions = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      assertNotNull("A partition should have been selected", selector.getPartition(noExclusions));
+    }
+    assertEquals("Writable partitions should have been fetched once", 1,
+        clusterMap.getNumGetWritablePartitionIdsCalls());
+    time.currentMilliseconds += REFRESH_INTERVAL_MS - 1;
+    selector.getPartition(noExclusions);
+    assertEquals("Writable partitions should not have been fetched again", 1,
+        clusterMap.getNumGetWritablePartitionIdsCalls());
+    time.currentMilliseconds += 1;
+    selector.getPartition(noExclusions);
+    assertEquals("Expired writable partitions should have been fetched again", 2,
+        clusterMap.getNumGetWritablePartitionIdsCalls());
+    PartitionId partitionId = selector.getPartition(noExclusions);
+    selector.onPutResponse(partitionId, 10, true);
+    selector.getPartition(noExclusions);
+    assertEquals("A successful put should not cause a fetch", 2, clusterMap.getNumGetWritablePartitionIdsCalls());
+    selector.onPutResponse(partitionId, 10, false);
+    selector.getPartition(noExclusions);
+    assertEquals("A failed put should cause a fetch", 3, clusterMap.getNumGetWritablePartitionIdsCalls());
+    assertEquals("Unexpected refresh count", 3, routerMetrics.writablePartitionsRefreshCount.getCount());
+  }
+
+  /**
+   * Tests that a thread that refreshes the writable partitions only because there are none yet does not end the refresh
+   * of the thread that is already refreshing them.
+   */
+  @Test
+  public void testConcurrentInitialRefresh()
+      throws Exception {
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch releaseRefresh = new CountDownLatch(1);
+    clusterMap.blockNextGetWritablePartitionIds(refreshStarted, releaseRefresh);
+    Thread refresher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        selector.getWritablePartitions();
+      }
+    });
+    refresher.start();
+    assertTrue("Refresh did not start", refreshStarted.await(10, TimeUnit.SECONDS));
+    assertTrue("Partitions should be fetched as there are none yet", selector.getWritablePartitions().length > 0);
+    assertEquals("Unexpected fetch count", 2, clusterMap.getNumGetWritablePartitionIdsCalls());
+    selector.onPutResponse(selector.getWritablePartitions()[0], 10, false);
+    selector.getWritablePartitions();
+    assertEquals("Partitions should not be fetched while a refresh is in progress", 2,
+        clusterMap.getNumGetWritablePartitionIdsCalls());
+    releaseRefresh.countDown();
+    refresher.join();
+    selector.getWritablePartitions();
+    assertEquals("Partitions should be fetched once the refresh in progress completes", 3,
+        clusterMap.getNumGetWritablePartitionIdsCalls());
+  }
+
+  /**
+   * Tests that excluded partitions are never selected, and that an error is thrown when all partitions are excluded.
+   */
+  @Test
+  public void testExcludedPartitions()
+      throws RouterException {
+    List<PartitionId> partitionIds = clusterMap.getWritablePartitionIds();
+    PartitionId expected = partitionIds.remove(0);
+    for (int i = 0; i < 100; i++) {
+      assertEquals("Only the partition that is not excluded should be selected", expected,
+          selector.getPartition(partitionIds));
+    }
+    partitionIds.add(expected);
+    try {
+      selector.getPartition(partitionIds);
+      fail("Selection should have failed as all partitions are excluded");
+    } catch (RouterException e) {
+      assertEquals("Unexpected error code", RouterErrorCode.AmbryUnavailable, e.getErrorCode());
+    }
+  }
+
+  /**
+   * Tests that partitions with a lower put latency are preferred.
+   */
+  @Test
+  public void testLatencyWeightedSelection()
+      throws RouterException {
+    List<PartitionId> partitionIds = clusterMap.getWritablePartitionIds();
+    PartitionId slowPartition = partitionIds.get(0);
+    List<PartitionId> toExclude = new ArrayList<>(partitionIds.subList(2, partitionIds.size()));
+    selector.onPutResponse(slowPartition, 1000, true);
+    selector.onPutResponse(partitionIds.get(1), 10, true);
+    assertEquals("Unexpected latency", 1000, selector.getPutLatencyMs(slowPartition), 0);
+    selector.onPutResponse(slowPartition, 0, true);
+    assertEquals("Unexpected latency", (1 - WritablePartitionSelector.PUT_LATENCY_EWMA_WEIGHT) * 1000,
+        selector.getPutLatencyMs(slowPartition), 0.001);
+    selector.onPutResponse(partitionIds.get(1), 1, false);
+    double expectedLatencyMs = WritablePartitionSelector.PUT_LATENCY_EWMA_WEIGHT * FAILURE_LATENCY_MS
+        + (1 - WritablePartitionSelector.PUT_LATENCY_EWMA_WEIGHT) * 10;
+    assertEquals("A failed put should be counted at the failure latency", expectedLatencyMs,
+        selector.getPutLatencyMs(partitionIds.get(1)), 0.001);
+    selector.onPutResponse(partitionIds.get(1), 10, true);
+    selector.onPutResponse(partitionIds.get(1), 10, true);
+    int numTrials = 1000;
+    int numSlowSelections = 0;
+    for (int i = 0; i < numTrials; i++) {
+      if (selector.getPartition(toExclude).equals(slowPartition)) {
+        numSlowSelections++;
+      }
+    }
+    // the slow partition is only selected when both candidates are the slow partition, i.e. about 1/4 of the time.
+    assertTrue("Slow partition was selected too often: " + numSlowSelections, numSlowSelections < numTrials / 2);
+  }
+
+  /**
+   * A {@link MockClusterMap} that counts the calls to {@link #getWritablePartitionIds()}, and that can block a call.
+   */
+  private static class CountingClusterMap extends MockClusterMap {
+    private int numGetWritablePartitionIdsCalls = 0;
+    private CountDownLatch callStarted = null;
+    private CountDownLatch releaseCall = null;
+
+    CountingClusterMap()
+        throws IOException {
+      super();
+    }
+
+    /**
+     * Makes the next call to {@link #getWritablePartitionIds()} block until {@code releaseCall} is counted down.
+     * @param callStarted counted down when the call starts.
+     * @param releaseCall the latch that the call waits on.
+     */
+    synchronized void blockNextGetWritablePartitionIds(CountDownLatch callStarted, CountDownLatch releaseCall) {
+      this.callStarted = callStarted;
+      this.releaseCall = releaseCall;
+    }
+
+    synchronized int getNumGetWritablePartitionIdsCalls() {
+      return numGetWritablePartitionIdsCalls;
+    }
+
+    @Override
+    public List<PartitionId> getWritablePartitionIds() {
+      CountDownLatch toAwait;
+      synchronized (this) {
+        numGetWritablePartitionIdsCalls++;
+        toAwait = releaseCall;
+        if (toAwait != null) {
+          callStarted.countDown();
+          releaseCall = null;
+        }
+      }
+      if (toAwait != null) {
+        try {
+          toAwait.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return super.getWritablePartitionIds();
+    }
+  }
+}
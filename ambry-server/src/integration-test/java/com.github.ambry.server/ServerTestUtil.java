@@ -461,6 +461,30 @@ public final class ServerTestUtil {
         }
       }
 
+      // delete a batch of blobs with a single request. A blob that is already deleted fails on its own.
+      List<BlobId> batchToDelete = new ArrayList<BlobId>();
+      for (int i = 0; i < blobIds.size() && batchToDelete.size() < 2; i++) {
+        if (!blobsDeleted.contains(blobIds.get(i))) {
+          batchToDelete.add(blobIds.get(i));
+        }
+      }
+      if (batchToDelete.size() == 2 && !blobsDeleted.isEmpty()) {
+        BlobId alreadyDeleted = blobsDeleted.iterator().next();
+        batchToDelete.add(alreadyDeleted);
+        DeleteRequest deleteRequest = new DeleteRequest(1, "reptest", batchToDelete);
+        channel1.send(deleteRequest);
+        InputStream deleteResponseStream = channel1.receive().getInputStream();
+        DeleteResponse deleteResponse = DeleteResponse.readFrom(new DataInputStream(deleteResponseStream));
+        Assert.assertEquals(ServerErrorCode.No_Error, deleteResponse.getError());
+        Assert.assertEquals(ServerErrorCode.No_Error, deleteResponse.getBlobErrors().get(0));
+        Assert.assertEquals(ServerErrorCode.No_Error, deleteResponse.getBlobErrors().get(1));
+        // the delete may not have been replicated to the node yet.
+        ServerErrorCode alreadyDeletedError = deleteResponse.getBlobErrors().get(2);
+        Assert.assertTrue(alreadyDeletedError == ServerErrorCode.Blob_Deleted
+            || alreadyDeletedError == ServerErrorCode.No_Error);
+        blobsDeleted.addAll(batchToDelete);
+      }
+
       Iterator<BlobId> iterator = blobsDeleted.iterator();
       ArrayList<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
       while (iterator.hasNext()) {
@@ -21,6 +21,7 @@ import com.github.ambry.clustermap.HardwareState;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.PartitionState;
 import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.messageformat.DeleteMessageFormatInputStream;
 import com.github.ambry.messageformat.MessageFormatErrorCodes;
@@ -31,10 +32,12 @@ import com.github.ambry.messageformat.MessageFormatMetrics;
 import com.github.ambry.messageformat.MessageFormatSend;
 import com.github.ambry.messageformat.MessageFormatWriteSet;
 import com.github.ambry.messageformat.PutMessageFormatInputStream;
+import com.github.ambry.metrics.RequestPhaseMetrics;
 import com.github.ambry.network.CompositeSend;
 import com.github.ambry.network.Request;
 import com.github.ambry.network.RequestResponseChannel;
 import com.github.ambry.network.Send;
+import com.github.ambry.network.ServerRequest;
 import com.github.ambry.network.ServerNetworkResponseMetrics;
 import com.github.ambry.notification.BlobReplicaSourceType;
 import com.github.ambry.notification.NotificationSystem;
@@ -47,6 +50,8 @@ import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
 import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.PutResponse;
+import com.github.ambry.protocol.ReplicaBootstrapRequest;
+import com.github.ambry.protocol.ReplicaBootstrapResponse;
 import com.github.ambry.protocol.ReplicaMetadataRequest;
 import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
 import com.github.ambry.protocol.ReplicaMetadataResponse;
@@ -57,6 +62,8 @@ import com.github.ambry.store.FindInfo;
 import com.github.ambry.store.FindToken;
 import com.github.ambry.store.FindTokenFactory;
 import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.MessageWriteSet;
+import com.github.ambry.store.SealedSegmentReadSet;
 import com.github.ambry.store.Store;
 import com.github.ambry.store.StoreErrorCodes;
 import com.github.ambry.store.StoreException;
@@ -64,13 +71,25 @@ import com.github.ambry.store.StoreGetOptions;
 import com.github.ambry.store.StoreInfo;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.AsyncAccessLogger;
 import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,7 +104,7 @@ public class AmbryRequests implements RequestAPI {
   private StoreManager storeManager;
   private final RequestResponseChannel requestResponseChannel;
   private Logger logger = LoggerFactory.getLogger(getClass());
-  private Logger publicAccessLogger = LoggerFactory.getLogger("PublicAccessLogger");
+  private static final Logger publicAccessLogger = LoggerFactory.getLogger("PublicAccessLogger");
   private final ClusterMap clusterMap;
   private final DataNodeId currentNode;
   private final ServerMetrics metrics;
@@ -94,11 +113,61 @@ public class AmbryRequests implements RequestAPI {
   private final NotificationSystem notification;
   private final ReplicationManager replicationManager;
   private final StoreKeyFactory storeKeyFactory;
+  private final AsyncAccessLogger asyncPublicAccessLogger;
+
+  private static final int PUBLIC_ACCESS_LOG_FIELD_COUNT = 4;
+  private static final int PUBLIC_ACCESS_LOG_BATCH_SIZE = 256;
+  private static final long PUBLIC_ACCESS_LOG_IDLE_WAIT_MS = 10;
+
+  // formats entries whose fields are the request, the response and the processing time.
+  private static final AsyncAccessLogger.EntryFormatter REQUEST_RESPONSE_FORMATTER =
+      new AsyncAccessLogger.EntryFormatter() {
+        @Override
+        public void format(AsyncAccessLogger.Entry entry, StringBuilder builder) {
+          builder.append(entry.getField(0)).append(" ").append(entry.getField(1));
+          builder.append(" processingTime ").append(entry.getValue(0));
+        }
+      };
+
+  // formats entries of put requests. Fields 0 to 2 are the blob id, the blob properties and the blob type of the
+  // request, field 3 is the response and the values are the processing time, the size of the user metadata and the
+  // size of the blob. The request is formatted as PutRequest#toString() does.
+  private static final AsyncAccessLogger.EntryFormatter PUT_FORMATTER = new AsyncAccessLogger.EntryFormatter() {
+    @Override
+    public void format(AsyncAccessLogger.Entry entry, StringBuilder builder) {
+      builder.append("PutRequest[");
+      builder.append("BlobID=").append(((BlobId) entry.getField(0)).getID());
+      if (entry.getField(1) != null) {
+        builder.append(", ").append(entry.getField(1));
+      } else {
+        builder.append(", ").append("Properties=Null");
+      }
+      builder.append(", ").append("UserMetaDataSize=").append(entry.getValue(1));
+      builder.append(", ").append("blobType=").append(entry.getField(2));
+      builder.append(", ").append("blobSize=").append(entry.getValue(2));
+      builder.append("]");
+      builder.append(" ").append(entry.getField(3));
+      builder.append(" processingTime ").append(entry.getValue(0));
+    }
+  };
 
   public AmbryRequests(StoreManager storeManager, RequestResponseChannel requestResponseChannel, ClusterMap clusterMap,
       DataNodeId nodeId, MetricRegistry registry, FindTokenFactory findTokenFactory,
       NotificationSystem operationNotification, ReplicationManager replicationManager,
       StoreKeyFactory storeKeyFactory) {
+    this(storeManager, requestResponseChannel, clusterMap, nodeId, registry, findTokenFactory, operationNotification,
+        replicationManager, storeKeyFactory, null);
+  }
+
+  /**
+   * @param asyncPublicAccessLogger the {@link AsyncAccessLogger} to record public access log entries with, as created
+   *                                by {@link #createAsyncPublicAccessLogger(int)}. If {@code null}, entries are
+   *                                formatted and logged by the thread that handles the request.
+   */
+  public AmbryRequests(StoreManager storeManager, RequestResponseChannel requestResponseChannel, ClusterMap clusterMap,
+      DataNodeId nodeId, MetricRegistry registry, FindTokenFactory findTokenFactory,
+      NotificationSystem operationNotification, ReplicationManager replicationManager,
+      StoreKeyFactory storeKeyFactory, AsyncAccessLogger asyncPublicAccessLogger) {
     this.storeManager = storeManager;
     this.requestResponseChannel = requestResponseChannel;
     this.clusterMap = clusterMap;
@@ -109,6 +178,25 @@ public class AmbryRequests implements RequestAPI {
     this.notification = operationNotification;
     this.replicationManager = replicationManager;
     this.storeKeyFactory = storeKeyFactory;
+    this.asyncPublicAccessLogger = asyncPublicAccessLogger;
+  }
+
+  /**
+   * Creates an {@link AsyncAccessLogger} that writes out to the public access log.
+   * @param bufferSize the number of entries that can wait to be written out.
+   * @return the {@link AsyncAccessLogger} created.
+   */
+  public static AsyncAccessLogger createAsyncPublicAccessLogger(int bufferSize) {
+    return new AsyncAccessLogger("PublicAccessLogWriter", new AsyncAccessLogger.LogWriter() {
+      @Override
+      public void write(String message, boolean isError) {
+        if (isError) {
+          publicAccessLogger.error(message);
+        } else {
+          publicAccessLogger.info(message);
+        }
+      }
+    }, bufferSize, PUBLIC_ACCESS_LOG_FIELD_COUNT, PUBLIC_ACCESS_LOG_BATCH_SIZE, PUBLIC_ACCESS_LOG_IDLE_WAIT_MS);
   }
 
   public void handleRequests(Request request)
@@ -129,6 +217,9 @@ public class AmbryRequests implements RequestAPI {
         case ReplicaMetadataRequest:
           handleReplicaMetadataRequest(request);
           break;
+        case ReplicaBootstrapRequest:
+          handleReplicaBootstrapRequest(request);
+          break;
         default:
           throw new UnsupportedOperationException("Request type not supported");
       }
@@ -141,11 +232,14 @@ public class AmbryRequests implements RequestAPI {
   public void handlePutRequest(Request request)
       throws IOException, InterruptedException {
     PutRequest putRequest = PutRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
-    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    long startTimeInNs = SystemTime.getInstance().nanoseconds();
+    long requestQueueTimeInNs = startTimeInNs - getStartTimeInNs(request);
+    long requestQueueTime = TimeUnit.NANOSECONDS.toMillis(requestQueueTimeInNs);
     long totalTimeSpent = requestQueueTime;
     metrics.putBlobRequestQueueTimeInMs.update(requestQueueTime);
     metrics.putBlobRequestRate.mark();
-    long startTime = SystemTime.getInstance().milliseconds();
+    RequestPhaseMetrics phaseMetrics = metrics.putBlobPhaseMetrics;
+    long totalTimeSpentInNs = requestQueueTimeInNs;
     PutResponse response = null;
     try {
       ServerErrorCode error = validateRequest(putRequest.getBlobId().getPartition(), true);
@@ -190,13 +284,18 @@ public class AmbryRequests implements RequestAPI {
       response =
           new PutResponse(putRequest.getCorrelationId(), putRequest.getClientId(), ServerErrorCode.Unknown_Error);
     } finally {
-      long processingTime = SystemTime.getInstance().milliseconds() - startTime;
+      long processingTimeInNs = SystemTime.getInstance().nanoseconds() - startTimeInNs;
+      long processingTime = TimeUnit.NANOSECONDS.toMillis(processingTimeInNs);
       totalTimeSpent += processingTime;
-      publicAccessLogger.info("{} {} processingTime {}", putRequest, response, processingTime);
+      totalTimeSpentInNs = requestQueueTimeInNs + processingTimeInNs;
+      phaseMetrics.requestQueueTimeInNs.update(requestQueueTimeInNs);
+      phaseMetrics.processingTimeInNs.update(processingTimeInNs);
+      logPutPublicAccess(putRequest, response, processingTime);
       metrics.putBlobProcessingTimeInMs.update(processingTime);
     }
     sendPutResponse(requestResponseChannel, response, request, metrics.putBlobResponseQueueTimeInMs,
-        metrics.putBlobSendTimeInMs, metrics.putBlobTotalTimeInMs, totalTimeSpent, putRequest.getBlobSize(), metrics);
+        metrics.putBlobSendTimeInMs, metrics.putBlobTotalTimeInMs, totalTimeSpent, phaseMetrics, totalTimeSpentInNs,
+        putRequest.getBlobSize(), metrics);
   }
 
   public void handleGetRequest(Request request)
@@ -205,7 +304,10 @@ public class AmbryRequests implements RequestAPI {
     Histogram responseQueueTime = null;
     Histogram responseSendTime = null;
     Histogram responseTotalTime = null;
-    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    RequestPhaseMetrics phaseMetrics = null;
+    long startTimeInNs = SystemTime.getInstance().nanoseconds();
+    long requestQueueTimeInNs = startTimeInNs - getStartTimeInNs(request);
+    long requestQueueTime = TimeUnit.NANOSECONDS.toMillis(requestQueueTimeInNs);
     long totalTimeSpent = requestQueueTime;
     if (getRequest.getMessageFormatFlag() == MessageFormatFlags.Blob) {
       metrics.getBlobRequestQueueTimeInMs.update(requestQueueTime);
@@ -213,32 +315,37 @@ public class AmbryRequests implements RequestAPI {
       responseQueueTime = metrics.getBlobResponseQueueTimeInMs;
       responseSendTime = metrics.getBlobSendTimeInMs;
       responseTotalTime = metrics.getBlobTotalTimeInMs;
+      phaseMetrics = metrics.getBlobPhaseMetrics;
     } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.BlobProperties) {
       metrics.getBlobPropertiesRequestQueueTimeInMs.update(requestQueueTime);
       metrics.getBlobPropertiesRequestRate.mark();
       responseQueueTime = metrics.getBlobPropertiesResponseQueueTimeInMs;
       responseSendTime = metrics.getBlobPropertiesSendTimeInMs;
       responseTotalTime = metrics.getBlobPropertiesTotalTimeInMs;
+      phaseMetrics = metrics.getBlobPropertiesPhaseMetrics;
     } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.BlobUserMetadata) {
       metrics.getBlobUserMetadataRequestQueueTimeInMs.update(requestQueueTime);
       metrics.getBlobUserMetadataRequestRate.mark();
       responseQueueTime = metrics.getBlobUserMetadataResponseQueueTimeInMs;
       responseSendTime = metrics.getBlobUserMetadataSendTimeInMs;
       responseTotalTime = metrics.getBlobUserMetadataTotalTimeInMs;
+      phaseMetrics = metrics.getBlobUserMetadataPhaseMetrics;
     } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.BlobInfo) {
       metrics.getBlobInfoRequestQueueTimeInMs.update(requestQueueTime);
       metrics.getBlobInfoRequestRate.mark();
       responseQueueTime = metrics.getBlobInfoResponseQueueTimeInMs;
       responseSendTime = metrics.getBlobInfoSendTimeInMs;
       responseTotalTime = metrics.getBlobInfoTotalTimeInMs;
+      phaseMetrics = metrics.getBlobInfoPhaseMetrics;
     } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.All) {
       metrics.getBlobAllRequestQueueTimeInMs.update(requestQueueTime);
       metrics.getBlobAllRequestRate.mark();
       responseQueueTime = metrics.getBlobAllResponseQueueTimeInMs;
       responseSendTime = metrics.getBlobAllSendTimeInMs;
       responseTotalTime = metrics.getBlobAllTotalTimeInMs;
+      phaseMetrics = metrics.getBlobAllPhaseMetrics;
     }
-    long startTime = SystemTime.getInstance().milliseconds();
+    long totalTimeSpentInNs = requestQueueTimeInNs;
     GetResponse response = null;
     try {
       List<Send> messagesToSendList = new ArrayList<Send>(getRequest.getPartitionInfoList().size());
@@ -269,8 +376,8 @@ public class AmbryRequests implements RequestAPI {
             }
             StoreInfo info = storeToGet.get(partitionRequestInfo.getBlobIds(), storeGetOptions);
             MessageFormatSend blobsToSend =
-                new MessageFormatSend(info.getMessageReadSet(), getRequest.getMessageFormatFlag(), messageFormatMetrics,
-                    storeKeyFactory);
+                new MessageFormatSend(info.getMessageReadSet(), getRequest.getMessageFormatFlag(),
+                    getRequest.getRange(), messageFormatMetrics, storeKeyFactory);
             PartitionResponseInfo partitionResponseInfo =
                 new PartitionResponseInfo(partitionRequestInfo.getPartition(), info.getMessageReadSetInfo());
             messagesToSendList.add(blobsToSend);
@@ -297,8 +404,13 @@ public class AmbryRequests implements RequestAPI {
                 ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
             partitionResponseInfoList.add(partitionResponseInfo);
           } catch (MessageFormatException e) {
-            logger.error("Message format exception on a get with error code " + e.getErrorCode() +
-                " for partitionRequestInfo " + partitionRequestInfo, e);
+            if (e.getErrorCode() == MessageFormatErrorCodes.Range_Not_Satisfiable) {
+              logger.trace("Message format exception on a get with error code " + e.getErrorCode() +
+                  " for partitionRequestInfo " + partitionRequestInfo, e);
+            } else {
+              logger.error("Message format exception on a get with error code " + e.getErrorCode() +
+                  " for partitionRequestInfo " + partitionRequestInfo, e);
+            }
             if (e.getErrorCode() == MessageFormatErrorCodes.Data_Corrupt) {
               metrics.dataCorruptError.inc();
             } else if (e.getErrorCode() == MessageFormatErrorCodes.Unknown_Format_Version) {
@@ -318,9 +430,17 @@ public class AmbryRequests implements RequestAPI {
       response =
           new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), ServerErrorCode.Unknown_Error);
     } finally {
-      long processingTime = SystemTime.getInstance().milliseconds() - startTime;
+      long processingTimeInNs = SystemTime.getInstance().nanoseconds() - startTimeInNs;
+      long processingTime = TimeUnit.NANOSECONDS.toMillis(processingTimeInNs);
       totalTimeSpent += processingTime;
-      publicAccessLogger.info("{} {} processingTime {}", getRequest, response, processingTime);
+      totalTimeSpentInNs = requestQueueTimeInNs + processingTimeInNs;
+      phaseMetrics.requestQueueTimeInNs.update(requestQueueTimeInNs);
+      phaseMetrics.processingTimeInNs.update(processingTimeInNs);
+      if (getRequest.getTraceId() != 0) {
+        // the time spent reading the blobs off the disk is spent sending the response, which the requester times.
+        response.setServerTimes(requestQueueTimeInNs, processingTimeInNs);
+      }
+      logPublicAccess(getRequest, response, processingTime);
       if (getRequest.getMessageFormatFlag() == MessageFormatFlags.Blob) {
         metrics.getBlobProcessingTimeInMs.update(processingTime);
       } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.BlobProperties) {
@@ -334,39 +454,128 @@ public class AmbryRequests implements RequestAPI {
       }
     }
     sendGetResponse(requestResponseChannel, response, request, responseQueueTime, responseSendTime, responseTotalTime,
-        totalTimeSpent, response.sizeInBytes(), getRequest.getMessageFormatFlag(), metrics);
+        totalTimeSpent, phaseMetrics, totalTimeSpentInNs, response.sizeInBytes(), getRequest.getMessageFormatFlag(),
+        metrics);
   }
 
   public void handleDeleteRequest(Request request)
       throws IOException, InterruptedException {
     DeleteRequest deleteRequest = DeleteRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
-    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    long startTimeInNs = SystemTime.getInstance().nanoseconds();
+    long requestQueueTimeInNs = startTimeInNs - getStartTimeInNs(request);
+    long requestQueueTime = TimeUnit.NANOSECONDS.toMillis(requestQueueTimeInNs);
     long totalTimeSpent = requestQueueTime;
     metrics.deleteBlobRequestQueueTimeInMs.update(requestQueueTime);
     metrics.deleteBlobRequestRate.mark();
-    long startTime = SystemTime.getInstance().milliseconds();
+    RequestPhaseMetrics phaseMetrics = metrics.deleteBlobPhaseMetrics;
+    long totalTimeSpentInNs = requestQueueTimeInNs;
     DeleteResponse response = null;
     try {
-      ServerErrorCode error = validateRequest(deleteRequest.getBlobId().getPartition(), false);
-      if (error != ServerErrorCode.No_Error) {
-        logger.error("Validating delete request failed with error {} for request {}", error, deleteRequest);
-        response = new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), error);
+      metrics.deleteBlobsPerRequest.update(deleteRequest.getBlobIds().size());
+      if (deleteRequest.isMultiBlobRequest()) {
+        response = deleteBlobs(deleteRequest);
       } else {
-        MessageFormatInputStream stream = new DeleteMessageFormatInputStream(deleteRequest.getBlobId());
-        MessageInfo info = new MessageInfo(deleteRequest.getBlobId(), stream.getSize());
-        ArrayList<MessageInfo> infoList = new ArrayList<MessageInfo>();
-        infoList.add(info);
-        MessageFormatWriteSet writeset = new MessageFormatWriteSet(stream, infoList, false);
-        Store storeToDelete = storeManager.getStore(deleteRequest.getBlobId().getPartition());
-        storeToDelete.delete(writeset);
-        response =
-            new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), ServerErrorCode.No_Error);
-        if (notification != null) {
-          notification
-              .onBlobReplicaDeleted(currentNode.getHostname(), currentNode.getPort(), deleteRequest.getBlobId().getID(),
-                  BlobReplicaSourceType.PRIMARY);
+        ServerErrorCode error = validateRequest(deleteRequest.getBlobId().getPartition(), false);
+        if (error != ServerErrorCode.No_Error) {
+          logger.error("Validating delete request failed with error {} for request {}", error, deleteRequest);
+        } else {
+          error = deleteBlob(storeManager.getStore(deleteRequest.getBlobId().getPartition()),
+              deleteRequest.getBlobId(), deleteRequest);
         }
+        response = new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), error);
       }
+    } catch (Exception e) {
+      logger.error("Unknown exception for delete request " + deleteRequest, e);
+      response = new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(),
+          ServerErrorCode.Unknown_Error);
+      metrics.unExpectedStoreDeleteError.inc();
+    } finally {
+      long processingTimeInNs = SystemTime.getInstance().nanoseconds() - startTimeInNs;
+      long processingTime = TimeUnit.NANOSECONDS.toMillis(processingTimeInNs);
+      totalTimeSpent += processingTime;
+      totalTimeSpentInNs = requestQueueTimeInNs + processingTimeInNs;
+      phaseMetrics.requestQueueTimeInNs.update(requestQueueTimeInNs);
+      phaseMetrics.processingTimeInNs.update(processingTimeInNs);
+      logPublicAccess(deleteRequest, response, processingTime);
+      metrics.deleteBlobProcessingTimeInMs.update(processingTime);
+    }
+    requestResponseChannel.sendResponse(response, request,
+        createResponseMetrics(metrics.deleteBlobResponseQueueTimeInMs, metrics.deleteBlobSendTimeInMs,
+            metrics.deleteBlobTotalTimeInMs, null, null, totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
+  }
+
+  /**
+   * Deletes the blobs of a multi-blob {@link DeleteRequest}. The blobs are grouped by partition and the blobs of each
+   * partition are deleted with a single {@link Store#delete(MessageWriteSet)}, so that they share one write to the log
+   * and one pass over the index. As a store delete fails as a whole if any of its blobs cannot be deleted, the blobs of
+   * a partition whose batch fails are deleted again one at a time so that each of them gets its own error.
+   * @param deleteRequest the multi-blob {@link DeleteRequest}.
+   * @return the {@link DeleteResponse} with the error of each of the blobs in the request.
+   */
+  private DeleteResponse deleteBlobs(DeleteRequest deleteRequest) {
+    Map<PartitionId, Set<BlobId>> partitionToBlobIds = new LinkedHashMap<PartitionId, Set<BlobId>>();
+    for (BlobId blobId : deleteRequest.getBlobIds()) {
+      Set<BlobId> blobIds = partitionToBlobIds.get(blobId.getPartition());
+      if (blobIds == null) {
+        blobIds = new LinkedHashSet<BlobId>();
+        partitionToBlobIds.put(blobId.getPartition(), blobIds);
+      }
+      // a blob that appears more than once in the request is deleted once.
+      blobIds.add(blobId);
+    }
+    Map<BlobId, ServerErrorCode> blobIdToError = new HashMap<BlobId, ServerErrorCode>();
+    for (Map.Entry<PartitionId, Set<BlobId>> entry : partitionToBlobIds.entrySet()) {
+      ServerErrorCode error = validateRequest(entry.getKey(), false);
+      if (error != ServerErrorCode.No_Error) {
+        logger.error("Validating delete request failed with error {} for partition {} of request {}", error,
+            entry.getKey(), deleteRequest);
+        for (BlobId blobId : entry.getValue()) {
+          blobIdToError.put(blobId, error);
+        }
+        continue;
+      }
+      Store storeToDelete = storeManager.getStore(entry.getKey());
+      List<BlobId> blobIds = new ArrayList<BlobId>(entry.getValue());
+      if (blobIds.size() > 1) {
+        try {
+          deleteFromStore(storeToDelete, blobIds);
+          for (BlobId blobId : blobIds) {
+            blobIdToError.put(blobId, ServerErrorCode.No_Error);
+          }
+          continue;
+        } catch (StoreException e) {
+          logger.trace("Store exception on a batch delete with error code " + e.getErrorCode() + " for partition "
+              + entry.getKey() + " of request " + deleteRequest, e);
+          metrics.deleteBlobBatchFallbackCount.inc();
+        } catch (Exception e) {
+          logger.error("Unknown exception on a batch delete for partition " + entry.getKey() + " of request "
+              + deleteRequest, e);
+          metrics.deleteBlobBatchFallbackCount.inc();
+        }
+      }
+      for (BlobId blobId : blobIds) {
+        blobIdToError.put(blobId, deleteBlob(storeToDelete, blobId, deleteRequest));
+      }
+    }
+    List<ServerErrorCode> blobErrors = new ArrayList<ServerErrorCode>(deleteRequest.getBlobIds().size());
+    for (BlobId blobId : deleteRequest.getBlobIds()) {
+      blobErrors.add(blobIdToError.get(blobId));
+    }
+    return new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), ServerErrorCode.No_Error,
+        blobErrors);
+  }
+
+  /**
+   * Deletes a single blob from a store, recording any error in the metrics.
+   * @param storeToDelete the {@link Store} that the blob belongs to.
+   * @param blobId the {@link BlobId} of the blob to delete.
+   * @param deleteRequest the {@link DeleteRequest} that the blob is part of.
+   * @return the {@link ServerErrorCode} of the delete of the blob.
+   */
+  private ServerErrorCode deleteBlob(Store storeToDelete, BlobId blobId, DeleteRequest deleteRequest) {
+    try {
+      deleteFromStore(storeToDelete, Collections.singletonList(blobId));
+      return ServerErrorCode.No_Error;
     } catch (StoreException e) {
       if (e.getErrorCode() == StoreErrorCodes.ID_Not_Found) {
         logger.trace("Store exception on a delete with error code " + e.getErrorCode() +
@@ -385,37 +594,60 @@ public class AmbryRequests implements RequestAPI {
             " for request " + deleteRequest, e);
         metrics.unExpectedStoreDeleteError.inc();
       }
-      response = new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(),
-          ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
+      return ErrorMapping.getStoreErrorMapping(e.getErrorCode());
     } catch (Exception e) {
-      logger.error("Unknown exception for delete request " + deleteRequest, e);
-      response = new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(),
-          ServerErrorCode.Unknown_Error);
+      logger.error("Unknown exception for delete of blob " + blobId + " of request " + deleteRequest, e);
       metrics.unExpectedStoreDeleteError.inc();
-    } finally {
-      long processingTime = SystemTime.getInstance().milliseconds() - startTime;
-      totalTimeSpent += processingTime;
-      publicAccessLogger.info("{} {} processingTime {}", deleteRequest, response, processingTime);
-      metrics.deleteBlobProcessingTimeInMs.update(processingTime);
+      return ServerErrorCode.Unknown_Error;
+    }
+  }
+
+  /**
+   * Deletes blobs of the same partition from its store with a single {@link Store#delete(MessageWriteSet)} and notifies
+   * the deletes.
+   * @param storeToDelete the {@link Store} that the blobs belong to.
+   * @param blobIds the {@link BlobId}s of the blobs to delete.
+   * @throws IOException if the delete records could not be written.
+   * @throws MessageFormatException if the delete records could not be created.
+   * @throws StoreException if the store could not delete the blobs.
+   */
+  private void deleteFromStore(Store storeToDelete, List<BlobId> blobIds)
+      throws IOException, MessageFormatException, StoreException {
+    List<InputStream> streams = new ArrayList<InputStream>(blobIds.size());
+    List<MessageInfo> infoList = new ArrayList<MessageInfo>(blobIds.size());
+    for (BlobId blobId : blobIds) {
+      MessageFormatInputStream stream = new DeleteMessageFormatInputStream(blobId);
+      streams.add(stream);
+      infoList.add(new MessageInfo(blobId, stream.getSize()));
+    }
+    InputStream streamToWrite = streams.size() == 1 ? streams.get(0) : new SequenceInputStream(
+        Collections.enumeration(streams));
+    MessageFormatWriteSet writeset = new MessageFormatWriteSet(streamToWrite, infoList, false);
+    storeToDelete.delete(writeset);
+    if (notification != null) {
+      for (BlobId blobId : blobIds) {
+        notification.onBlobReplicaDeleted(currentNode.getHostname(), currentNode.getPort(), blobId.getID(),
+            BlobReplicaSourceType.PRIMARY);
+      }
     }
-    requestResponseChannel.sendResponse(response, request,
-        new ServerNetworkResponseMetrics(metrics.deleteBlobResponseQueueTimeInMs, metrics.deleteBlobSendTimeInMs,
-            metrics.deleteBlobTotalTimeInMs, null, null, totalTimeSpent));
   }
 
   public void handleReplicaMetadataRequest(Request request)
       throws IOException, InterruptedException {
     ReplicaMetadataRequest replicaMetadataRequest =
         ReplicaMetadataRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap, findTokenFactory);
-    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    long startTimeInNs = SystemTime.getInstance().nanoseconds();
+    long requestQueueTimeInNs = startTimeInNs - getStartTimeInNs(request);
+    long requestQueueTime = TimeUnit.NANOSECONDS.toMillis(requestQueueTimeInNs);
     long totalTimeSpent = requestQueueTime;
     metrics.replicaMetadataRequestQueueTimeInMs.update(requestQueueTime);
     metrics.replicaMetadataRequestRate.mark();
+    RequestPhaseMetrics phaseMetrics = metrics.replicaMetadataPhaseMetrics;
+    long totalTimeSpentInNs = requestQueueTimeInNs;
 
     List<ReplicaMetadataRequestInfo> replicaMetadataRequestInfoList =
         replicaMetadataRequest.getReplicaMetadataRequestInfoList();
     int partitionCnt = replicaMetadataRequestInfoList.size();
-    long startTimeInMs = SystemTime.getInstance().milliseconds();
     ReplicaMetadataResponse response = null;
     try {
       List<ReplicaMetadataResponseInfo> replicaMetadataResponseList =
@@ -483,47 +715,120 @@ public class AmbryRequests implements RequestAPI {
           new ReplicaMetadataResponse(replicaMetadataRequest.getCorrelationId(), replicaMetadataRequest.getClientId(),
               ServerErrorCode.Unknown_Error);
     } finally {
-      long processingTime = SystemTime.getInstance().milliseconds() - startTimeInMs;
+      long processingTimeInNs = SystemTime.getInstance().nanoseconds() - startTimeInNs;
+      long processingTime = TimeUnit.NANOSECONDS.toMillis(processingTimeInNs);
       totalTimeSpent += processingTime;
-      publicAccessLogger.info("{} {} processingTime {}", replicaMetadataRequest, response, processingTime);
+      totalTimeSpentInNs = requestQueueTimeInNs + processingTimeInNs;
+      phaseMetrics.requestQueueTimeInNs.update(requestQueueTimeInNs);
+      phaseMetrics.processingTimeInNs.update(processingTimeInNs);
+      logPublicAccess(replicaMetadataRequest, response, processingTime);
       logger.trace("{} {} processingTime {}", replicaMetadataRequest, response, processingTime);
       metrics.replicaMetadataRequestProcessingTimeInMs.update(processingTime);
     }
 
     requestResponseChannel.sendResponse(response, request,
-        new ServerNetworkResponseMetrics(metrics.replicaMetadataResponseQueueTimeInMs,
-            metrics.replicaMetadataSendTimeInMs, metrics.replicaMetadataTotalTimeInMs, null, null, totalTimeSpent));
+        createResponseMetrics(metrics.replicaMetadataResponseQueueTimeInMs, metrics.replicaMetadataSendTimeInMs,
+            metrics.replicaMetadataTotalTimeInMs, null, null, totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
+  }
+
+  public void handleReplicaBootstrapRequest(Request request)
+      throws IOException, InterruptedException {
+    ReplicaBootstrapRequest replicaBootstrapRequest =
+        ReplicaBootstrapRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    long startTimeInNs = SystemTime.getInstance().nanoseconds();
+    long requestQueueTimeInNs = startTimeInNs - getStartTimeInNs(request);
+    long requestQueueTime = TimeUnit.NANOSECONDS.toMillis(requestQueueTimeInNs);
+    long totalTimeSpent = requestQueueTime;
+    metrics.replicaBootstrapRequestQueueTimeInMs.update(requestQueueTime);
+    metrics.replicaBootstrapRequestRate.mark();
+    RequestPhaseMetrics phaseMetrics = metrics.replicaBootstrapPhaseMetrics;
+    long totalTimeSpentInNs = requestQueueTimeInNs;
+    ReplicaBootstrapResponse response = null;
+    try {
+      PartitionId partitionId = replicaBootstrapRequest.getPartitionId();
+      ServerErrorCode error = validateRequest(partitionId, false);
+      if (error != ServerErrorCode.No_Error) {
+        logger.error("Validating replica bootstrap request failed with error {} for request {}", error,
+            replicaBootstrapRequest);
+        response = new ReplicaBootstrapResponse(replicaBootstrapRequest.getCorrelationId(),
+            replicaBootstrapRequest.getClientId(), error);
+      } else {
+        Store store = storeManager.getStore(partitionId);
+        SealedSegmentReadSet readSet = store.getSealedSegment(replicaBootstrapRequest.getStartOffset());
+        response = new ReplicaBootstrapResponse(replicaBootstrapRequest.getCorrelationId(),
+            replicaBootstrapRequest.getClientId(), readSet);
+      }
+    } catch (StoreException e) {
+      if (e.getErrorCode() == StoreErrorCodes.Retry_After_Backoff) {
+        // the sealed segment is not ready to be served yet, the peer retries the request later
+        logger.trace("Sealed segment not ready for request {}", replicaBootstrapRequest);
+      } else {
+        logger.error("Store exception on a replica bootstrap request with error code " + e.getErrorCode() +
+            " for request " + replicaBootstrapRequest, e);
+        if (e.getErrorCode() == StoreErrorCodes.IOError) {
+          metrics.storeIOError.inc();
+        } else {
+          metrics.unExpectedStoreBootstrapError.inc();
+        }
+      }
+      response =
+          new ReplicaBootstrapResponse(replicaBootstrapRequest.getCorrelationId(), replicaBootstrapRequest.getClientId(),
+              ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
+    } catch (Exception e) {
+      logger.error("Unknown exception for request " + replicaBootstrapRequest, e);
+      response =
+          new ReplicaBootstrapResponse(replicaBootstrapRequest.getCorrelationId(), replicaBootstrapRequest.getClientId(),
+              ServerErrorCode.Unknown_Error);
+      metrics.unExpectedStoreBootstrapError.inc();
+    } finally {
+      long processingTimeInNs = SystemTime.getInstance().nanoseconds() - startTimeInNs;
+      long processingTime = TimeUnit.NANOSECONDS.toMillis(processingTimeInNs);
+      totalTimeSpent += processingTime;
+      totalTimeSpentInNs = requestQueueTimeInNs + processingTimeInNs;
+      phaseMetrics.requestQueueTimeInNs.update(requestQueueTimeInNs);
+      phaseMetrics.processingTimeInNs.update(processingTimeInNs);
+      logPublicAccess(replicaBootstrapRequest, response, processingTime);
+      metrics.replicaBootstrapRequestProcessingTimeInMs.update(processingTime);
+    }
+
+    requestResponseChannel.sendResponse(response, request,
+        createResponseMetrics(metrics.replicaBootstrapResponseQueueTimeInMs, metrics.replicaBootstrapSendTimeInMs,
+            metrics.replicaBootstrapTotalTimeInMs, null, null, totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
   }
 
   private void sendPutResponse(RequestResponseChannel requestResponseChannel, PutResponse response, Request request,
       Histogram responseQueueTime, Histogram responseSendTime, Histogram requestTotalTime, long totalTimeSpent,
-      long blobSize, ServerMetrics metrics)
+      RequestPhaseMetrics phaseMetrics, long totalTimeSpentInNs, long blobSize, ServerMetrics metrics)
       throws InterruptedException {
     if (response.getError() == ServerErrorCode.No_Error) {
       metrics.markPutBlobRequestRateBySize(blobSize);
       if (blobSize <= ServerMetrics.smallBlob) {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                metrics.putSmallBlobProcessingTimeInMs, metrics.putSmallBlobTotalTimeInMs, totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                metrics.putSmallBlobProcessingTimeInMs, metrics.putSmallBlobTotalTimeInMs, totalTimeSpent,
+                phaseMetrics, totalTimeSpentInNs));
       } else if (blobSize <= ServerMetrics.mediumBlob) {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                metrics.putMediumBlobProcessingTimeInMs, metrics.putMediumBlobTotalTimeInMs, totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                metrics.putMediumBlobProcessingTimeInMs, metrics.putMediumBlobTotalTimeInMs, totalTimeSpent,
+                phaseMetrics, totalTimeSpentInNs));
       } else {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                metrics.putLargeBlobProcessingTimeInMs, metrics.putLargeBlobTotalTimeInMs, totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                metrics.putLargeBlobProcessingTimeInMs, metrics.putLargeBlobTotalTimeInMs, totalTimeSpent,
+                phaseMetrics, totalTimeSpentInNs));
       }
     } else {
       requestResponseChannel.sendResponse(response, request,
-          new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-              totalTimeSpent));
+          createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+              totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
     }
   }
 
   private void sendGetResponse(RequestResponseChannel requestResponseChannel, GetResponse response, Request request,
       Histogram responseQueueTime, Histogram responseSendTime, Histogram requestTotalTime, long totalTimeSpent,
-      long blobSize, MessageFormatFlags flags, ServerMetrics metrics)
+      RequestPhaseMetrics phaseMetrics, long totalTimeSpentInNs, long blobSize, MessageFormatFlags flags,
+      ServerMetrics metrics)
       throws InterruptedException {
 
     if (blobSize <= ServerMetrics.smallBlob) {
@@ -531,55 +836,82 @@ public class AmbryRequests implements RequestAPI {
         if (response.getError() == ServerErrorCode.No_Error) {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getSmallBlobProcessingTimeInMs, metrics.getSmallBlobTotalTimeInMs, totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                  metrics.getSmallBlobProcessingTimeInMs, metrics.getSmallBlobTotalTimeInMs, totalTimeSpent,
+                  phaseMetrics, totalTimeSpentInNs));
         } else {
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                  totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
       }
     } else if (blobSize <= ServerMetrics.mediumBlob) {
       if (flags == MessageFormatFlags.Blob) {
         if (response.getError() == ServerErrorCode.No_Error) {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getMediumBlobProcessingTimeInMs, metrics.getMediumBlobTotalTimeInMs, totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                  metrics.getMediumBlobProcessingTimeInMs, metrics.getMediumBlobTotalTimeInMs, totalTimeSpent,
+                  phaseMetrics, totalTimeSpentInNs));
         } else {
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                  totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
       }
     } else {
       if (flags == MessageFormatFlags.Blob) {
         if (response.getError() == ServerErrorCode.No_Error) {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getLargeBlobProcessingTimeInMs, metrics.getLargeBlobTotalTimeInMs, totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
+                  metrics.getLargeBlobProcessingTimeInMs, metrics.getLargeBlobTotalTimeInMs, totalTimeSpent,
+                  phaseMetrics, totalTimeSpentInNs));
         } else {
           requestResponseChannel.sendResponse(response, request,
-              new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+              createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                  totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
-            new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+            createResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
+                totalTimeSpent, phaseMetrics, totalTimeSpentInNs));
       }
     }
   }
 
+  /**
+   * Creates the {@link ServerNetworkResponseMetrics} of a response, which also record the time in ns spent by the
+   * response in the queue and being sent, and the total time in ns spent on the request, in {@code phaseMetrics}.
+   */
+  private ServerNetworkResponseMetrics createResponseMetrics(Histogram responseQueueTime, Histogram responseSendTime,
+      Histogram responseTotalTime, Histogram responseSendTimeBySize, Histogram responseTotalTimeBySize,
+      long totalTimeSpent, RequestPhaseMetrics phaseMetrics, long totalTimeSpentInNs) {
+    return new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, responseTotalTime,
+        responseSendTimeBySize, responseTotalTimeBySize, totalTimeSpent, phaseMetrics.responseQueueTimeInNs,
+        phaseMetrics.sendTimeInNs, phaseMetrics.totalTimeInNs, totalTimeSpentInNs);
+  }
+
+  /**
+   * Gets the time in ns at which {@code request} was received, as given by the monotonic clock. Requests that do not
+   * record it are taken to have been received as long ago as their wall clock start time says.
+   */
+  private static long getStartTimeInNs(Request request) {
+    if (request instanceof ServerRequest) {
+      return ((ServerRequest) request).getStartTimeInNs();
+    }
+    Time time = SystemTime.getInstance();
+    return time.nanoseconds() - TimeUnit.MILLISECONDS.toNanos(time.milliseconds() - request.getStartTimeInMs());
+  }
+
   private ServerErrorCode validateRequest(PartitionId partition, boolean checkPartitionState) {
     // 1. check if partition exist on this node
     if (storeManager.getStore(partition) == null) {
@@ -604,4 +936,52 @@ public class AmbryRequests implements RequestAPI {
     }
     return ServerErrorCode.No_Error;
   }
+
+  /**
+   * Logs a request and its response to the public access log. If there is an {@link AsyncAccessLogger}, the request
+   * and the response are only converted to strings on its background thread.
+   * @param request the request.
+   * @param response the response to the request.
+   * @param processingTime the time taken to process the request.
+   */
+  private void logPublicAccess(Object request, Object response, long processingTime) {
+    if (!publicAccessLogger.isInfoEnabled()) {
+      return;
+    }
+    if (asyncPublicAccessLogger == null) {
+      publicAccessLogger.info("{} {} processingTime {}", request, response, processingTime);
+    } else {
+      AsyncAccessLogger.Entry entry = asyncPublicAccessLogger.claim();
+      if (entry != null) {
+        entry.setField(0, request).setField(1, response).setValue(0, processingTime);
+        asyncPublicAccessLogger.publish(entry, REQUEST_RESPONSE_FORMATTER, false);
+      }
+    }
+  }
+
+  /**
+   * Logs a put request and its response to the public access log. The fields of the request are recorded rather than
+   * the request itself, so that the blob content it refers to is not kept alive while the entry waits to be written.
+   * @param putRequest the {@link PutRequest}.
+   * @param response the response to the request.
+   * @param processingTime the time taken to process the request.
+   */
+  private void logPutPublicAccess(PutRequest putRequest, PutResponse response, long processingTime) {
+    if (asyncPublicAccessLogger == null || !publicAccessLogger.isInfoEnabled()) {
+      logPublicAccess(putRequest, response, processingTime);
+      return;
+    }
+    AsyncAccessLogger.Entry entry = asyncPublicAccessLogger.claim();
+    if (entry != null) {
+      ByteBuffer usermetadata = putRequest.getUsermetadata();
+      entry.setField(0, putRequest.getBlobId())
+          .setField(1, putRequest.getBlobProperties())
+          .setField(2, putRequest.getBlobType())
+          .setField(3, response)
+          .setValue(0, processingTime)
+          .setValue(1, usermetadata != null ? usermetadata.capacity() : 0)
+          .setValue(2, putRequest.getBlobSize());
+      asyncPublicAccessLogger.publish(entry, PUT_FORMATTER, false);
+    }
+  }
 }
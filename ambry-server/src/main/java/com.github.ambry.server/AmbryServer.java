@@ -38,6 +38,7 @@ import com.github.ambry.replication.ReplicationManager;
 import com.github.ambry.store.FindTokenFactory;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.AsyncAccessLogger;
 import com.github.ambry.utils.Scheduler;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
@@ -57,6 +58,7 @@ public class AmbryServer {
   private CountDownLatch shutdownLatch = new CountDownLatch(1);
   private NetworkServer networkServer = null;
   private AmbryRequests requests = null;
+  private AsyncAccessLogger asyncPublicAccessLogger = null;
   private RequestHandlerPool requestHandlerPool = null;
   private Scheduler scheduler = null;
   private StoreManager storeManager = null;
@@ -137,9 +139,14 @@ public class AmbryServer {
       }
 
       networkServer = new SocketServer(networkConfig, sslConfig, registry, ports);
+      if (serverConfig.serverPublicAccessLogAsyncBufferSize > 0) {
+        asyncPublicAccessLogger = AmbryRequests.createAsyncPublicAccessLogger(
+            serverConfig.serverPublicAccessLogAsyncBufferSize);
+        metrics.trackAsyncPublicAccessLogger(asyncPublicAccessLogger);
+      }
       requests =
           new AmbryRequests(storeManager, networkServer.getRequestResponseChannel(), clusterMap, nodeId, registry,
-              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory);
+              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory, asyncPublicAccessLogger);
       requestHandlerPool = new RequestHandlerPool(serverConfig.serverRequestHandlerNumOfThreads,
           networkServer.getRequestResponseChannel(), requests);
       networkServer.start();
@@ -169,6 +176,9 @@ public class AmbryServer {
       if (requestHandlerPool != null) {
         requestHandlerPool.shutdown();
       }
+      if (asyncPublicAccessLogger != null) {
+        asyncPublicAccessLogger.close();
+      }
       if (replicationManager != null) {
         replicationManager.shutdown();
       }
@@ -36,6 +36,7 @@ public class ErrorMapping {
     tempMap.put(StoreErrorCodes.ID_Not_Found, ServerErrorCode.Blob_Not_Found);
     tempMap.put(StoreErrorCodes.TTL_Expired, ServerErrorCode.Blob_Expired);
     tempMap.put(StoreErrorCodes.Already_Exist, ServerErrorCode.Blob_Already_Exists);
+    tempMap.put(StoreErrorCodes.Retry_After_Backoff, ServerErrorCode.Retry_After_Backoff);
     storeErrorMapping = Collections.unmodifiableMap(tempMap);
   }
 
@@ -44,6 +45,7 @@ public class ErrorMapping {
     tempMap.put(MessageFormatErrorCodes.Data_Corrupt, ServerErrorCode.Data_Corrupt);
     tempMap.put(MessageFormatErrorCodes.Unknown_Format_Version, ServerErrorCode.Data_Corrupt);
     tempMap.put(MessageFormatErrorCodes.IO_Error, ServerErrorCode.IO_Error);
+    tempMap.put(MessageFormatErrorCodes.Range_Not_Satisfiable, ServerErrorCode.Range_Not_Satisfiable);
     messageFormatErrorMapping = Collections.unmodifiableMap(tempMap);
   }
 
@@ -14,9 +14,12 @@
 package com.github.ambry.server;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.RequestPhaseMetrics;
+import com.github.ambry.utils.AsyncAccessLogger;
 
 
 /**
@@ -93,6 +96,8 @@ public class ServerMetrics {
   public final Histogram deleteBlobResponseQueueTimeInMs;
   public final Histogram deleteBlobSendTimeInMs;
   public final Histogram deleteBlobTotalTimeInMs;
+  public final Histogram deleteBlobsPerRequest;
+  public final Counter deleteBlobBatchFallbackCount;
 
   public final Histogram ttlBlobRequestQueueTimeInMs;
   public final Histogram ttlBlobProcessingTimeInMs;
@@ -106,6 +111,23 @@ public class ServerMetrics {
   public final Histogram replicaMetadataSendTimeInMs;
   public final Histogram replicaMetadataTotalTimeInMs;
 
+  public final Histogram replicaBootstrapRequestQueueTimeInMs;
+  public final Histogram replicaBootstrapRequestProcessingTimeInMs;
+  public final Histogram replicaBootstrapResponseQueueTimeInMs;
+  public final Histogram replicaBootstrapSendTimeInMs;
+  public final Histogram replicaBootstrapTotalTimeInMs;
+
+  // nanosecond breakdowns of the phases of each request type.
+  public final RequestPhaseMetrics putBlobPhaseMetrics;
+  public final RequestPhaseMetrics getBlobPhaseMetrics;
+  public final RequestPhaseMetrics getBlobPropertiesPhaseMetrics;
+  public final RequestPhaseMetrics getBlobUserMetadataPhaseMetrics;
+  public final RequestPhaseMetrics getBlobInfoPhaseMetrics;
+  public final RequestPhaseMetrics getBlobAllPhaseMetrics;
+  public final RequestPhaseMetrics deleteBlobPhaseMetrics;
+  public final RequestPhaseMetrics replicaMetadataPhaseMetrics;
+  public final RequestPhaseMetrics replicaBootstrapPhaseMetrics;
+
   public final Histogram blobSizeInBytes;
   public final Histogram blobUserMetadataSizeInBytes;
 
@@ -121,6 +143,7 @@ public class ServerMetrics {
   public final Meter deleteBlobRequestRate;
   public final Meter ttlBlobRequestRate;
   public final Meter replicaMetadataRequestRate;
+  public final Meter replicaBootstrapRequestRate;
 
   public final Meter putSmallBlobRequestRate;
   public final Meter getSmallBlobRequestRate;
@@ -140,6 +163,7 @@ public class ServerMetrics {
   public final Counter unExpectedStoreTTLError;
   public final Counter unExpectedStoreDeleteError;
   public final Counter unExpectedStoreFindEntriesError;
+  public final Counter unExpectedStoreBootstrapError;
   public final Counter idAlreadyExistError;
   public final Counter dataCorruptError;
   public final Counter unknownFormatError;
@@ -147,7 +171,10 @@ public class ServerMetrics {
   public final Counter idDeletedError;
   public final Counter ttlExpiredError;
 
+  private final MetricRegistry registry;
+
   public ServerMetrics(MetricRegistry registry) {
+    this.registry = registry;
     putBlobRequestQueueTimeInMs =
         registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobRequestQueueTime"));
     putBlobProcessingTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobProcessingTime"));
@@ -242,6 +269,9 @@ public class ServerMetrics {
         registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobResponseQueueTime"));
     deleteBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobSendTime"));
     deleteBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobTotalTime"));
+    deleteBlobsPerRequest = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobsPerRequest"));
+    deleteBlobBatchFallbackCount =
+        registry.counter(MetricRegistry.name(AmbryRequests.class, "DeleteBlobBatchFallbackCount"));
 
     ttlBlobRequestQueueTimeInMs =
         registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobRequestQueueTime"));
@@ -262,6 +292,27 @@ public class ServerMetrics {
     replicaMetadataTotalTimeInMs =
         registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataTotalTime"));
 
+    replicaBootstrapRequestQueueTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapRequestQueueTime"));
+    replicaBootstrapRequestProcessingTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapRequestProcessingTime"));
+    replicaBootstrapResponseQueueTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapResponseQueueTime"));
+    replicaBootstrapSendTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapSendTime"));
+    replicaBootstrapTotalTimeInMs =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapTotalTime"));
+
+    putBlobPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "PutBlob");
+    getBlobPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "GetBlob");
+    getBlobPropertiesPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "GetBlobProperties");
+    getBlobUserMetadataPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "GetBlobUserMetadata");
+    getBlobInfoPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "GetBlobInfo");
+    getBlobAllPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "GetBlobAll");
+    deleteBlobPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "DeleteBlob");
+    replicaMetadataPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "ReplicaMetadata");
+    replicaBootstrapPhaseMetrics = new RequestPhaseMetrics(registry, AmbryRequests.class, "ReplicaBootstrap");
+
     blobSizeInBytes = registry.histogram(MetricRegistry.name(AmbryRequests.class, "BlobSize"));
     blobUserMetadataSizeInBytes = registry.histogram(MetricRegistry.name(AmbryRequests.class, "BlobUserMetadataSize"));
 
@@ -279,6 +330,8 @@ public class ServerMetrics {
     deleteBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "DeleteBlobRequestRate"));
     ttlBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "TTLBlobRequestRate"));
     replicaMetadataRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestRate"));
+    replicaBootstrapRequestRate =
+        registry.meter(MetricRegistry.name(AmbryRequests.class, "ReplicaBootstrapRequestRate"));
 
     putSmallBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "PutSmallBlobRequestRate"));
     getSmallBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "GetSmallBlobRequestRate"));
@@ -306,6 +359,8 @@ public class ServerMetrics {
     unExpectedStoreTTLError = registry.counter(MetricRegistry.name(AmbryRequests.class, "UnexpectedStoreTTLError"));
     unExpectedStoreFindEntriesError =
         registry.counter(MetricRegistry.name(AmbryRequests.class, "UnexpectedStoreFindEntriesError"));
+    unExpectedStoreBootstrapError =
+        registry.counter(MetricRegistry.name(AmbryRequests.class, "UnexpectedStoreBootstrapError"));
   }
 
   public void markPutBlobRequestRateBySize(long blobSize) {
@@ -327,4 +382,26 @@ public class ServerMetrics {
       getLargeBlobRequestRate.mark();
     }
   }
+
+  /**
+   * Tracks the public access log entries of the {@code asyncPublicAccessLogger} that are waiting to be written out or
+   * have been dropped.
+   * @param asyncPublicAccessLogger the {@link AsyncAccessLogger} whose entries have to be tracked.
+   */
+  public void trackAsyncPublicAccessLogger(final AsyncAccessLogger asyncPublicAccessLogger) {
+    Gauge<Integer> pendingEntryCount = new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return asyncPublicAccessLogger.getPendingCount();
+      }
+    };
+    registry.register(MetricRegistry.name(AmbryRequests.class, "PublicAccessLogPendingEntryCount"), pendingEntryCount);
+    Gauge<Long> droppedEntryCount = new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return asyncPublicAccessLogger.getDroppedCount();
+      }
+    };
+    registry.register(MetricRegistry.name(AmbryRequests.class, "PublicAccessLogDroppedEntryCount"), droppedEntryCount);
+  }
 }
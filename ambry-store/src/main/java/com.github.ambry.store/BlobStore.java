@@ -21,6 +21,7 @@ import com.github.ambry.utils.Scheduler;
 import com.github.ambry.utils.Time;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -301,6 +302,44 @@ public class BlobStore implements Store {
     }
   }
 
+  @Override
+  public SealedSegmentReadSet getSealedSegment(long startOffset)
+      throws StoreException {
+    checkStarted();
+    final Timer.Context context = metrics.getSealedSegmentResponse.time();
+    try {
+      return index.getSealedSegment(startOffset);
+    } catch (IOException e) {
+      throw new StoreException("IO error while trying to read sealed segment from store " + dataDir, e,
+          StoreErrorCodes.IOError);
+    } finally {
+      context.stop();
+    }
+  }
+
+  @Override
+  public void appendSealedSegment(SealedSegmentInfo info, ReadableByteChannel channel)
+      throws StoreException {
+    checkStarted();
+    final Timer.Context context = metrics.appendSealedSegmentResponse.time();
+    try {
+      synchronized (lock) {
+        index.addSealedSegment(info, channel);
+      }
+      metrics.sealedSegmentBytesAppended.inc(info.getIndexSegmentSizeInBytes() + info.getLogSizeInBytes());
+    } catch (StoreException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new StoreException("IO error while trying to append sealed segment to store " + dataDir, e,
+          StoreErrorCodes.IOError);
+    } catch (Exception e) {
+      throw new StoreException("Unknown error while trying to append sealed segment to store " + dataDir, e,
+          StoreErrorCodes.Unknown_Error);
+    } finally {
+      context.stop();
+    }
+  }
+
   @Override
   public long getSizeInBytes() {
     return log.getLogEndOffset();
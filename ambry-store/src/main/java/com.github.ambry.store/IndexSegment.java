@@ -448,6 +448,29 @@ class IndexSegment {
     }
   }
 
+  /**
+   * The largest key contained in this segment
+   * @return The largest key in this segment or null if the segment has no entries
+   * @throws StoreException
+   */
+  public StoreKey getLastKey()
+      throws StoreException {
+    try {
+      rwLock.readLock().lock();
+      if (mapped.get()) {
+        ByteBuffer duplicate = mmap.duplicate();
+        int totalEntries = numberOfEntries(duplicate);
+        return totalEntries > 0 ? getKeyAt(duplicate, totalEntries - 1) : null;
+      }
+      return index.isEmpty() ? null : index.lastKey();
+    } catch (IOException e) {
+      throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() + " IO error while reading last key",
+          e, StoreErrorCodes.IOError);
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
   /**
    * Writes the index to a persistent file. Writes the data in the following format
    *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -137,6 +138,26 @@ public class Log implements Read, Write {
         offset, bytesWritten);
   }
 
+  /**
+   * Transfers the bytes of the log in the given range to the channel. Less than the requested amount may be written.
+   * @param channel The channel to write the bytes to
+   * @param position The offset in the log from which the transfer needs to start
+   * @param size The max number of bytes to transfer
+   * @return The number of bytes transferred
+   * @throws IOException
+   */
+  long writeTo(WritableByteChannel channel, long position, long size)
+      throws IOException {
+    if (position < 0 || position + size > currentWriteOffset.get()) {
+      metrics.overflowReadError.inc(1);
+      throw new IllegalArgumentException("Log : " + file.getAbsolutePath() + " error trying to transfer from " +
+          position + " size " + size + " outside the log end offset " + currentWriteOffset.get());
+    }
+    long written = fileChannel.transferTo(position, size, channel);
+    logger.trace("Log : {} transferred {} bytes from position {}", file.getAbsolutePath(), written, position);
+    return written;
+  }
+
   /**
    * Close this log
    */
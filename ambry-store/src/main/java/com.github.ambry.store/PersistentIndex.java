@@ -15,6 +15,7 @@ package com.github.ambry.store;
 
 import com.codahale.metrics.Timer;
 import com.github.ambry.config.StoreConfig;
+import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.CrcInputStream;
 import com.github.ambry.utils.CrcOutputStream;
 import com.github.ambry.utils.Scheduler;
@@ -31,8 +32,10 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -43,6 +46,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
@@ -66,6 +71,8 @@ public class PersistentIndex {
   private static final String Cleanup_Token_Filename = "cleanuptoken";
   public static final short version = 0;
   public static final short Cleanup_Token_Version_V1 = 0;
+  private static final int Crc_Size = 8;
+  private static final long Log_Crc_Piece_Size_In_Bytes = 4 * 1024 * 1024;
 
   protected Scheduler scheduler;
   protected ConcurrentSkipListMap<Long, IndexSegment> indexes = new ConcurrentSkipListMap<Long, IndexSegment>();
@@ -88,6 +95,11 @@ public class PersistentIndex {
   private long logEndOffsetOnStartup;
   private final StoreMetrics metrics;
   private Time time;
+  // crcs of the log ranges of sealed segments by segment start offset. Sealed segments never change, so the crcs
+  // are computed once in the background and reused for every peer that bootstraps from this index
+  private final ConcurrentMap<Long, Long> sealedSegmentLogCrcs = new ConcurrentHashMap<Long, Long>();
+  private final Set<Long> sealedSegmentLogCrcsInProgress =
+      Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
 
   private class IndexFilter implements FilenameFilter {
     @Override
@@ -342,6 +354,10 @@ public class PersistentIndex {
 
     IndexSegment lastSegment = indexes.lastEntry().getValue();
 
+    if (lastSegment.isMapped()) {
+      logger.info("Index: {} Rolling over because the last segment is sealed", dataDir);
+      return true;
+    }
     if (lastSegment.getSizeWritten() >= maxInMemoryIndexSizeInBytes) {
       logger.info("Index: {} Rolling over because the size written {} >= maxInMemoryIndexSizeInBytes {}", dataDir,
           lastSegment.getSizeWritten(), maxInMemoryIndexSizeInBytes);
@@ -861,6 +877,176 @@ public class PersistentIndex {
     }
   }
 
+  /**
+   * Returns the sealed index segment that starts at the given offset along with the log range that it covers. Only
+   * segments that have been persisted and memory mapped are considered sealed. If there is no sealed segment at the
+   * given offset, an empty set is returned whose handoff token points to the end of the sealed segment that ends at
+   * the offset (or the beginning of the store if the offset is 0).
+   * <p/>
+   * The crc of the log range is computed in the background. If it is not available yet, the computation is started
+   * and a {@link StoreException} with {@link StoreErrorCodes#Retry_After_Backoff} is thrown, so that the caller is
+   * never blocked on reading the whole range. The crc of the next sealed segment is computed ahead of its request.
+   * @param startOffset The offset in the log at which the sealed segment starts
+   * @return The {@link SealedSegmentReadSet} representing the segment
+   * @throws StoreException
+   * @throws IOException
+   */
+  SealedSegmentReadSet getSealedSegment(long startOffset)
+      throws StoreException, IOException {
+    Map.Entry<Long, IndexSegment> lastEntry = indexes.lastEntry();
+    IndexSegment segment = indexes.get(startOffset);
+    if (segment != null && segment.isMapped() && lastEntry.getKey() != startOffset) {
+      Long logCrc = sealedSegmentLogCrcs.get(startOffset);
+      if (logCrc == null) {
+        computeLogCrcInBackground(segment);
+        throw new StoreException("Index : " + dataDir + " crc of the sealed segment at " + startOffset +
+            " is not computed yet", StoreErrorCodes.Retry_After_Backoff);
+      }
+      Map.Entry<Long, IndexSegment> nextEntry = indexes.higherEntry(startOffset);
+      if (nextEntry != null && nextEntry.getValue().isMapped() && nextEntry.getKey() != lastEntry.getKey()) {
+        computeLogCrcInBackground(nextEntry.getValue());
+      }
+      byte[] indexSegmentBytes = Files.readAllBytes(segment.getFile().toPath());
+      SealedSegmentInfo info =
+          new SealedSegmentInfo(startOffset, segment.getEndOffset(), indexSegmentBytes.length, logCrc);
+      StoreFindToken handoffToken = new StoreFindToken(segment.getLastKey(), startOffset, sessionId);
+      logger.trace("Index : {} returning sealed segment {}", dataDir, info);
+      return new StoreSealedSegmentReadSet(info, handoffToken, ByteBuffer.wrap(indexSegmentBytes), log);
+    }
+    StoreFindToken handoffToken;
+    if (startOffset == 0) {
+      handoffToken = new StoreFindToken();
+    } else {
+      Map.Entry<Long, IndexSegment> prevEntry = indexes.lowerEntry(startOffset);
+      if (prevEntry == null || prevEntry.getValue().getEndOffset() != startOffset) {
+        throw new StoreException("Index : " + dataDir + " no segment ends at offset " + startOffset,
+            StoreErrorCodes.Illegal_Index_Operation);
+      }
+      handoffToken = new StoreFindToken(prevEntry.getValue().getLastKey(), prevEntry.getKey(), sessionId);
+    }
+    return new StoreSealedSegmentReadSet(startOffset, handoffToken);
+  }
+
+  /**
+   * Starts computing the crc of the log range of the given sealed segment on the scheduler, unless it is already
+   * computed or being computed.
+   * @param segment The sealed segment whose log range crc is needed
+   */
+  private void computeLogCrcInBackground(IndexSegment segment) {
+    long startOffset = segment.getStartOffset();
+    if (!sealedSegmentLogCrcs.containsKey(startOffset) && sealedSegmentLogCrcsInProgress.add(startOffset)) {
+      scheduler.schedule("sealed segment crc", new LogCrcTask(startOffset, segment.getEndOffset()), 0, -1,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Appends a sealed segment copied from a peer. The index segment and the log range are read from the channel and
+   * verified against their crcs. The log range is appended to the log and the segment is added as the latest segment
+   * of this index, while the previous latest segment is sealed. The segment has to start at the current end of both
+   * the log and the index.
+   * @param info The {@link SealedSegmentInfo} of the segment
+   * @param channel The channel to read the index segment and then the log range from
+   * @throws StoreException
+   * @throws IOException
+   */
+  void addSealedSegment(SealedSegmentInfo info, ReadableByteChannel channel)
+      throws StoreException, IOException {
+    synchronized (persistor) {
+      long indexEndOffset = getCurrentEndOffset();
+      if (indexEndOffset != info.getStartOffset() || log.getLogEndOffset() != info.getStartOffset()) {
+        throw new StoreException("Index : " + dataDir + " cannot append sealed segment " + info + " at index end " +
+            indexEndOffset + " log end " + log.getLogEndOffset(), StoreErrorCodes.Illegal_Index_Operation);
+      }
+      if (info.getIndexSegmentSizeInBytes() > Integer.MAX_VALUE) {
+        throw new StoreException("Index : " + dataDir + " sealed segment " + info + " is too large",
+            StoreErrorCodes.Illegal_Index_Operation);
+      }
+      ByteBuffer indexSegmentBytes = ByteBuffer.allocate((int) info.getIndexSegmentSizeInBytes());
+      while (indexSegmentBytes.hasRemaining()) {
+        if (channel.read(indexSegmentBytes) < 0) {
+          throw new IOException("Index : " + dataDir + " end of stream while reading sealed segment " + info);
+        }
+      }
+      indexSegmentBytes.flip();
+      validateSealedSegment(info, indexSegmentBytes);
+
+      File indexFile = new File(dataDir, info.getStartOffset() + "_" + Index_File_Name_Suffix);
+      File temp = new File(indexFile.getAbsolutePath() + ".tmp");
+      FileOutputStream fileStream = new FileOutputStream(temp);
+      try {
+        fileStream.getChannel().write(indexSegmentBytes);
+        fileStream.getChannel().force(true);
+      } finally {
+        fileStream.close();
+      }
+
+      CrcReadableByteChannel crcChannel = new CrcReadableByteChannel(channel);
+      log.appendFrom(crcChannel, info.getLogSizeInBytes());
+      if (crcChannel.getValue() != info.getLogCrc()) {
+        log.setLogEndOffset(info.getStartOffset());
+        temp.delete();
+        throw new StoreException("Index : " + dataDir + " crc check failed for log range of sealed segment " + info,
+            StoreErrorCodes.IOError);
+      }
+      log.flush();
+
+      // seal the current latest segment before the copied segment becomes the latest
+      if (indexes.size() > 0) {
+        IndexSegment lastSegment = indexes.lastEntry().getValue();
+        if (!lastSegment.isMapped()) {
+          lastSegment.writeIndexToFile(lastSegment.getEndOffset());
+          lastSegment.map(true);
+        }
+      }
+      if (!temp.renameTo(indexFile)) {
+        throw new StoreException("Index : " + dataDir + " could not rename " + temp + " to " + indexFile,
+            StoreErrorCodes.IOError);
+      }
+      // the segment is read in to rebuild its bloom filter and is then mapped and its bloom filter persisted, so
+      // that it is exposed just like a segment that was sealed locally
+      IndexSegment segment = new IndexSegment(indexFile, false, factory, config, metrics, journal);
+      segment.map(true);
+      indexes.put(segment.getStartOffset(), segment);
+      sealedSegmentLogCrcs.put(segment.getStartOffset(), info.getLogCrc());
+      logger.info("Index : {} appended sealed segment {}", dataDir, info);
+    }
+  }
+
+  /**
+   * Validates the header and crc of a persisted index segment against its {@link SealedSegmentInfo}
+   * @param info The info that the segment was received with
+   * @param indexSegmentBytes The persisted index segment
+   * @throws StoreException
+   */
+  private void validateSealedSegment(SealedSegmentInfo info, ByteBuffer indexSegmentBytes)
+      throws StoreException {
+    int crcPosition = indexSegmentBytes.limit() - Crc_Size;
+    if (crcPosition < 0) {
+      throw new StoreException("Index : " + dataDir + " sealed segment " + info + " is too small",
+          StoreErrorCodes.Index_Creation_Failure);
+    }
+    Crc32 crc = new Crc32();
+    crc.update(indexSegmentBytes.array(), 0, crcPosition);
+    if (crc.getValue() != indexSegmentBytes.getLong(crcPosition)) {
+      throw new StoreException("Index : " + dataDir + " crc check failed for sealed segment " + info,
+          StoreErrorCodes.Index_Creation_Failure);
+    }
+    ByteBuffer header = indexSegmentBytes.duplicate();
+    short segmentVersion = header.getShort();
+    if (segmentVersion != version) {
+      throw new StoreException("Index : " + dataDir + " unknown version " + segmentVersion + " of sealed segment",
+          StoreErrorCodes.Index_Version_Error);
+    }
+    // skip the key size and value size
+    header.position(header.position() + 8);
+    long segmentEndOffset = header.getLong();
+    if (segmentEndOffset != info.getEndOffset()) {
+      throw new StoreException("Index : " + dataDir + " sealed segment end offset " + segmentEndOffset +
+          " does not match " + info, StoreErrorCodes.Index_Creation_Failure);
+    }
+  }
+
   /**
    * Closes the index
    * @throws StoreException
@@ -989,6 +1175,44 @@ public class PersistentIndex {
     }
   }
 
+  /**
+   * Computes the crc of the log range of a sealed segment in pieces of {@link #Log_Crc_Piece_Size_In_Bytes}. Every
+   * piece is a separate run on the scheduler, so that other background tasks are not held up by a large range.
+   */
+  private class LogCrcTask implements Runnable {
+    private final long startOffset;
+    private final long endOffset;
+    private final Crc32 crc = new Crc32();
+    private long position;
+
+    LogCrcTask(long startOffset, long endOffset) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      position = startOffset;
+    }
+
+    @Override
+    public void run() {
+      try {
+        long size = Math.min(Log_Crc_Piece_Size_In_Bytes, endOffset - position);
+        StoreSealedSegmentReadSet.updateLogCrc(crc, log, position, size);
+        position += size;
+      } catch (Exception e) {
+        logger.error("Index : " + dataDir + " error while computing the crc of the sealed segment at " + startOffset,
+            e);
+        sealedSegmentLogCrcsInProgress.remove(startOffset);
+        return;
+      }
+      if (position < endOffset) {
+        scheduler.schedule("sealed segment crc", this, 0, -1, TimeUnit.MILLISECONDS);
+      } else {
+        sealedSegmentLogCrcs.put(startOffset, crc.getValue());
+        sealedSegmentLogCrcsInProgress.remove(startOffset);
+        logger.trace("Index : {} computed the crc of the sealed segment at {}", dataDir, startOffset);
+      }
+    }
+  }
+
   class IndexPersistor implements Runnable {
 
     /**
@@ -997,7 +1221,7 @@ public class PersistentIndex {
      * The last index segment is flushed whenever write is invoked.
      * @throws StoreException
      */
-    public void write()
+    public synchronized void write()
         throws StoreException {
       final Timer.Context context = metrics.indexFlushTime.time();
       try {
@@ -1034,7 +1258,10 @@ public class PersistentIndex {
             Map.Entry<Long, IndexSegment> infoEntry = indexes.lowerEntry(prevInfo.getStartOffset());
             prevInfo = infoEntry != null ? infoEntry.getValue() : null;
           }
-          currentInfo.writeIndexToFile(currentIndexEndOffsetBeforeFlush);
+          // the last segment is already sealed if it was copied from a peer and nothing was added after it
+          if (!currentInfo.isMapped()) {
+            currentInfo.writeIndexToFile(currentIndexEndOffsetBeforeFlush);
+          }
         }
       } catch (IOException e) {
         throw new StoreException("IO error while writing index to file", e, StoreErrorCodes.IOError);
@@ -1649,6 +1876,53 @@ public class PersistentIndex {
   public boolean hardDeleteCaughtUp() {
     return hardDeleter.isCaughtUp();
   }
+
+  /**
+   * A {@link ReadableByteChannel} that computes the crc of all the bytes read through it.
+   */
+  private static class CrcReadableByteChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private final Crc32 crc = new Crc32();
+
+    CrcReadableByteChannel(ReadableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read(ByteBuffer dst)
+        throws IOException {
+      int startPosition = dst.position();
+      int bytesRead = channel.read(dst);
+      if (bytesRead > 0) {
+        if (dst.hasArray()) {
+          crc.update(dst.array(), dst.arrayOffset() + startPosition, bytesRead);
+        } else {
+          ByteBuffer readBytes = dst.duplicate();
+          readBytes.position(startPosition);
+          readBytes.limit(startPosition + bytesRead);
+          while (readBytes.hasRemaining()) {
+            crc.update(readBytes.get());
+          }
+        }
+      }
+      return bytesRead;
+    }
+
+    long getValue() {
+      return crc.getValue();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      channel.close();
+    }
+  }
 }
 
 /**
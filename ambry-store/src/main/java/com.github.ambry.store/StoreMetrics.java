@@ -31,6 +31,9 @@ public class StoreMetrics {
   public final Timer findEntriesSinceResponse;
   public final Timer findMissingKeysResponse;
   public final Timer isKeyDeletedResponse;
+  public final Timer getSealedSegmentResponse;
+  public final Timer appendSealedSegmentResponse;
+  public final Counter sealedSegmentBytesAppended;
   public final Timer storeStartTime;
   public final Counter overflowWriteError;
   public final Counter overflowReadError;
@@ -68,6 +71,11 @@ public class StoreMetrics {
     findMissingKeysResponse =
         registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreFindMissingKeyResponse"));
     isKeyDeletedResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "IsKeyDeletedResponse"));
+    getSealedSegmentResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "GetSealedSegmentResponse"));
+    appendSealedSegmentResponse =
+        registry.timer(MetricRegistry.name(BlobStore.class, name + "AppendSealedSegmentResponse"));
+    sealedSegmentBytesAppended =
+        registry.counter(MetricRegistry.name(BlobStore.class, name + "SealedSegmentBytesAppended"));
     storeStartTime = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreStartTime"));
     overflowWriteError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowWriteError"));
     overflowReadError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowReadError"));
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.Crc32;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * A sealed index segment and the log range it covers. The persisted index segment is held in memory (it is bounded
+ * by the max in memory index size) while the log range is transferred directly from the log file channel.
+ */
+class StoreSealedSegmentReadSet implements SealedSegmentReadSet {
+  private static final int Crc_Read_Buffer_Size = 64 * 1024;
+
+  private final SealedSegmentInfo info;
+  private final FindToken handoffToken;
+  private final ByteBuffer indexSegmentBytes;
+  private final Log log;
+
+  /**
+   * Creates an empty read set that only hands off the token to continue replication from
+   * @param startOffset The offset at which no sealed segment was found
+   * @param handoffToken The token from which token based replication can continue
+   */
+  StoreSealedSegmentReadSet(long startOffset, FindToken handoffToken) {
+    this(new SealedSegmentInfo(startOffset, startOffset, 0, 0), handoffToken, ByteBuffer.allocate(0), null);
+  }
+
+  StoreSealedSegmentReadSet(SealedSegmentInfo info, FindToken handoffToken, ByteBuffer indexSegmentBytes, Log log) {
+    this.info = info;
+    this.handoffToken = handoffToken;
+    this.indexSegmentBytes = indexSegmentBytes;
+    this.log = log;
+  }
+
+  @Override
+  public SealedSegmentInfo getInfo() {
+    return info;
+  }
+
+  @Override
+  public FindToken getHandoffToken() {
+    return handoffToken;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return info.getIndexSegmentSizeInBytes() + info.getLogSizeInBytes();
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel, long relativeOffset, long maxSize)
+      throws IOException {
+    long indexSegmentSize = info.getIndexSegmentSizeInBytes();
+    if (relativeOffset < indexSegmentSize) {
+      ByteBuffer buffer = indexSegmentBytes.duplicate();
+      buffer.position((int) relativeOffset);
+      buffer.limit((int) Math.min(indexSegmentSize, relativeOffset + maxSize));
+      return channel.write(buffer);
+    }
+    long logRelativeOffset = relativeOffset - indexSegmentSize;
+    long sizeToWrite = Math.min(maxSize, info.getLogSizeInBytes() - logRelativeOffset);
+    return log.writeTo(channel, info.getStartOffset() + logRelativeOffset, sizeToWrite);
+  }
+
+  /**
+   * Updates the crc with the given range of the log
+   * @param crc The crc to update
+   * @param log The log to read from
+   * @param startOffset The start offset of the range
+   * @param size The size of the range
+   * @throws IOException
+   */
+  static void updateLogCrc(Crc32 crc, Log log, long startOffset, long size)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Crc_Read_Buffer_Size, size));
+    long position = startOffset;
+    long endOffset = startOffset + size;
+    while (position < endOffset) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), endOffset - position));
+      log.readInto(buffer, position);
+      crc.update(buffer.array(), 0, buffer.position());
+      position += buffer.position();
+    }
+  }
+}
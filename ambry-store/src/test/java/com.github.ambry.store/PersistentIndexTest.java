@@ -25,6 +25,8 @@ import com.github.ambry.utils.Scheduler;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -39,6 +41,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
@@ -846,6 +849,165 @@ public class PersistentIndexTest {
     }
   }
 
+  @Test
+  public void testSealedSegmentCopy()
+      throws Exception {
+    File sourceDir = new File(tempFile().getParent(), "sealed-source-" + UUID.randomUUID());
+    File targetDir = new File(tempFile().getParent(), "sealed-target-" + UUID.randomUUID());
+    Assert.assertTrue(sourceDir.mkdir());
+    Assert.assertTrue(targetDir.mkdir());
+    sourceDir.deleteOnExit();
+    targetDir.deleteOnExit();
+    Scheduler scheduler = new Scheduler(1, false);
+    scheduler.startup();
+    Properties props = new Properties();
+    props.setProperty("store.index.max.number.of.inmem.elements", "5");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    Log sourceLog = new Log(sourceDir.getAbsolutePath(), 6000, new StoreMetrics("source", new MetricRegistry()));
+    Log targetLog = new Log(targetDir.getAbsolutePath(), 6000, new StoreMetrics("target", new MetricRegistry()));
+    try {
+      byte[] logBytes = new byte[6000];
+      new Random().nextBytes(logBytes);
+      MockIndex sourceIndex = new MockIndex(sourceDir.getAbsolutePath(), scheduler, sourceLog, config, factory);
+      sourceLog.appendFrom(ByteBuffer.wrap(logBytes));
+      List<MockId> ids = new ArrayList<MockId>();
+      for (int i = 0; i < 20; i++) {
+        MockId id = new MockId("id" + (10 + i));
+        ids.add(id);
+        sourceIndex.addToIndex(new IndexEntry(id, new IndexValue(300, i * 300)), new FileSpan(i * 300, (i + 1) * 300));
+      }
+      // reload the source so that all the segments but the latest are sealed
+      sourceIndex.close();
+      sourceIndex = new MockIndex(sourceDir.getAbsolutePath(), scheduler, sourceLog, config, factory);
+      MockIndex targetIndex = new MockIndex(targetDir.getAbsolutePath(), scheduler, targetLog, config, factory);
+
+      long offset = 0;
+      int segmentsCopied = 0;
+      // the crc of the first segment is not computed until it is asked for
+      try {
+        sourceIndex.getSealedSegment(offset);
+        Assert.fail("The first sealed segment should not be ready before its crc is computed");
+      } catch (StoreException e) {
+        Assert.assertEquals(StoreErrorCodes.Retry_After_Backoff, e.getErrorCode());
+      }
+      SealedSegmentReadSet readSet = getSealedSegment(sourceIndex, offset);
+      while (!readSet.getInfo().isEmpty()) {
+        SealedSegmentInfo info = readSet.getInfo();
+        Assert.assertEquals(offset, info.getStartOffset());
+        targetIndex.addSealedSegment(info, Channels.newChannel(new ByteArrayInputStream(readAll(readSet))));
+        // the copied segment is sealed as soon as it is visible
+        IndexSegment copiedSegment = targetIndex.indexes.get(offset);
+        Assert.assertTrue("Copied segment should be mapped", copiedSegment.isMapped());
+        Assert.assertTrue("Bloom filter of the copied segment should be persisted",
+            new File(targetDir, offset + "_" + PersistentIndex.Bloom_File_Name_Suffix).exists());
+        offset = info.getEndOffset();
+        Assert.assertEquals(offset, targetIndex.getCurrentEndOffset());
+        Assert.assertEquals(offset, targetLog.getLogEndOffset());
+        segmentsCopied++;
+        readSet = getSealedSegment(sourceIndex, offset);
+      }
+      Assert.assertTrue("At least one sealed segment should have been copied", segmentsCopied > 0);
+      Assert.assertTrue("The latest segment should not have been copied", offset < 6000);
+      StoreFindToken handoffToken = (StoreFindToken) readSet.getHandoffToken();
+      Assert.assertEquals(sourceIndex.indexes.lowerKey(offset).longValue(), handoffToken.getIndexStartOffset());
+
+      // the copied entries and log bytes are identical to the source
+      for (MockId id : ids) {
+        IndexValue sourceValue = sourceIndex.findKey(id);
+        IndexValue targetValue = targetIndex.findKey(id);
+        if (sourceValue.getOffset() + sourceValue.getSize() <= offset) {
+          Assert.assertEquals(sourceValue.getOffset(), targetValue.getOffset());
+          Assert.assertEquals(sourceValue.getSize(), targetValue.getSize());
+        } else {
+          Assert.assertNull(targetValue);
+        }
+      }
+      ByteBuffer copiedBytes = ByteBuffer.allocate((int) offset);
+      targetLog.readInto(copiedBytes, 0);
+      Assert.assertArrayEquals(Arrays.copyOfRange(logBytes, 0, (int) offset), copiedBytes.array());
+
+      // the target keeps taking writes after the copied segments, and they go to a new segment
+      long copiedEndOffset = offset;
+      MockId newId = new MockId("id" + 99);
+      targetLog.appendFrom(ByteBuffer.wrap(new byte[300]));
+      targetIndex.addToIndex(new IndexEntry(newId, new IndexValue(300, copiedEndOffset)),
+          new FileSpan(copiedEndOffset, copiedEndOffset + 300));
+      Assert.assertEquals(copiedEndOffset, targetIndex.indexes.lastKey().longValue());
+      Assert.assertEquals(copiedEndOffset, targetIndex.findKey(newId).getOffset());
+      targetIndex.close();
+      targetIndex = new MockIndex(targetDir.getAbsolutePath(), scheduler, targetLog, config, factory);
+      Assert.assertEquals(copiedEndOffset, targetIndex.findKey(newId).getOffset());
+      Assert.assertEquals(0, targetIndex.findKey(ids.get(0)).getOffset());
+
+      // a segment that does not start at the end of the target is rejected
+      SealedSegmentReadSet firstSegment = getSealedSegment(sourceIndex, 0);
+      try {
+        targetIndex.addSealedSegment(firstSegment.getInfo(),
+            Channels.newChannel(new ByteArrayInputStream(readAll(firstSegment))));
+        Assert.fail("Appending a segment that does not start at the end of the index should fail");
+      } catch (StoreException e) {
+        Assert.assertEquals(StoreErrorCodes.Illegal_Index_Operation, e.getErrorCode());
+      }
+
+      // a segment whose log bytes are corrupt is rejected and the log is rolled back
+      MockIndex corruptTargetIndex = new MockIndex(targetDir.getAbsolutePath() + "-corrupt", scheduler,
+          new Log(createDir(targetDir.getAbsolutePath() + "-corrupt"), 6000,
+              new StoreMetrics("corrupt", new MetricRegistry())), config, factory);
+      byte[] corruptBytes = readAll(firstSegment);
+      corruptBytes[corruptBytes.length - 1] ^= 1;
+      try {
+        corruptTargetIndex.addSealedSegment(firstSegment.getInfo(),
+            Channels.newChannel(new ByteArrayInputStream(corruptBytes)));
+        Assert.fail("Appending a segment with corrupt log bytes should fail");
+      } catch (StoreException e) {
+        Assert.assertEquals(StoreErrorCodes.IOError, e.getErrorCode());
+      }
+      Assert.assertTrue(corruptTargetIndex.isEmpty());
+      Assert.assertEquals(0, corruptTargetIndex.getCurrentEndOffset());
+    } finally {
+      scheduler.shutdown();
+      sourceLog.close();
+      targetLog.close();
+    }
+  }
+
+  private String createDir(String path) {
+    File dir = new File(path);
+    dir.mkdir();
+    dir.deleteOnExit();
+    return path;
+  }
+
+  /**
+   * Gets the sealed segment at the given offset, waiting for its crc to be computed in the background if necessary
+   */
+  private SealedSegmentReadSet getSealedSegment(MockIndex index, long offset)
+      throws Exception {
+    long deadlineInMs = SystemTime.getInstance().milliseconds() + 10000;
+    while (true) {
+      try {
+        return index.getSealedSegment(offset);
+      } catch (StoreException e) {
+        if (e.getErrorCode() != StoreErrorCodes.Retry_After_Backoff
+            || SystemTime.getInstance().milliseconds() > deadlineInMs) {
+          throw e;
+        }
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private byte[] readAll(SealedSegmentReadSet readSet)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    long written = 0;
+    while (written < readSet.sizeInBytes()) {
+      written += readSet.writeTo(Channels.newChannel(outputStream), written, readSet.sizeInBytes() - written);
+    }
+    return outputStream.toByteArray();
+  }
+
   @Test
   public void testExistsWithFileSpan()
       throws IOException {
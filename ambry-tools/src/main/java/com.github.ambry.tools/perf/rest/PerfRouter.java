@@ -15,12 +15,19 @@ package com.github.ambry.tools.perf.rest;
 
 import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.metrics.RequestTrace;
+import com.github.ambry.router.ByteRange;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobInfosResult;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterErrorCode;
 import com.github.ambry.router.RouterException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Future;
 import org.slf4j.Logger;
@@ -94,6 +101,39 @@ class PerfRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<BlobInfo> getBlobInfo(String blobId, RequestTrace trace, Callback<BlobInfo> callback) {
+    return getBlobInfo(blobId, callback);
+  }
+
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds) {
+    return getBlobInfos(blobIds, null);
+  }
+
+  /**
+   * Returns pre-populated {@link BlobProperties} and user metadata for every blob ID.
+   * @param blobIds the IDs of the blobs.
+   * @param callback the {@link Callback} to invoke on operation completion.
+   * @return a {@link Future} that will eventually contain the {@link GetBlobInfosResult}.
+   */
+  @Override
+  public Future<GetBlobInfosResult> getBlobInfos(List<String> blobIds, Callback<GetBlobInfosResult> callback) {
+    logger.trace("Received getBlobInfos call");
+    FutureResult<GetBlobInfosResult> futureResult = new FutureResult<GetBlobInfosResult>();
+    if (!routerOpen) {
+      completeOperation(futureResult, callback, null, ROUTER_CLOSED_EXCEPTION);
+    } else {
+      Map<String, BlobInfo> blobInfos = new HashMap<String, BlobInfo>();
+      for (String blobId : blobIds) {
+        blobInfos.put(blobId, new BlobInfo(blobProperties, usermetadata));
+      }
+      completeOperation(futureResult, callback,
+          new GetBlobInfosResult(blobInfos, Collections.<String, Exception>emptyMap()), null);
+    }
+    return futureResult;
+  }
+
   /**
    * Returns a stream of repeating data up to a pre-set size. {@code blobId} is ignored.
    * @param blobId The ID of the blob for which blob data is requested.
@@ -102,7 +142,7 @@ class PerfRouter implements Router {
    */
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId) {
-    return getBlob(blobId, null);
+    return getBlob(blobId, null, null);
   }
 
   /**
@@ -114,17 +154,58 @@ class PerfRouter implements Router {
    */
   @Override
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, null, callback);
+  }
+
+  /**
+   * Returns a stream of repeating data as long as {@code range} of a blob of a pre-set size. {@code blobId} is
+   * ignored.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data that is requested.
+   * @return a {@link Future} that will eventually contain the blob data in the form of a
+   * {@link ReadableStreamChannel}.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range) {
+    return getBlob(blobId, range, null);
+  }
+
+  /**
+   * Returns a stream of repeating data as long as {@code range} of a blob of a pre-set size. {@code blobId} is
+   * ignored.
+   * @param blobId The ID of the blob for which blob data is requested.
+   * @param range The {@link ByteRange} of the blob data that is requested.
+   * @param callback the {@link Callback} to invoke on operation completion.
+   * @return a {@link Future} that will eventually contain the blob data in the form of a
+   * {@link ReadableStreamChannel}.
+   */
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range,
+      Callback<ReadableStreamChannel> callback) {
     logger.trace("Received getBlob call");
     FutureResult<ReadableStreamChannel> futureResult = new FutureResult<ReadableStreamChannel>();
     if (!routerOpen) {
       completeOperation(futureResult, callback, null, ROUTER_CLOSED_EXCEPTION);
     } else {
-      ReadableStreamChannel blob = new PerfRSC(chunk, blobProperties.getBlobSize());
-      completeOperation(futureResult, callback, blob, null);
+      try {
+        long size = blobProperties.getBlobSize();
+        if (range != null) {
+          size = range.toResolvedByteRange(size).getRangeSize();
+        }
+        completeOperation(futureResult, callback, new PerfRSC(chunk, size), null);
+      } catch (RouterException e) {
+        completeOperation(futureResult, callback, null, e);
+      }
     }
     return futureResult;
   }
 
+  @Override
+  public Future<ReadableStreamChannel> getBlob(String blobId, ByteRange range, RequestTrace trace,
+      Callback<ReadableStreamChannel> callback) {
+    return getBlob(blobId, range, callback);
+  }
+
   /**
    * Consumes the data in {@code channel} and simply throws it away. {@code blobProperties} and {@code usermetadata} are
    * ignored.
@@ -203,6 +284,23 @@ class PerfRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds) {
+    return deleteBlobs(blobIds, null);
+  }
+
+  @Override
+  public Future<Map<String, Exception>> deleteBlobs(List<String> blobIds, Callback<Map<String, Exception>> callback) {
+    logger.trace("Received deleteBlobs call");
+    FutureResult<Map<String, Exception>> futureResult = new FutureResult<Map<String, Exception>>();
+    if (!routerOpen) {
+      completeOperation(futureResult, callback, null, ROUTER_CLOSED_EXCEPTION);
+    } else {
+      completeOperation(futureResult, callback, Collections.<String, Exception>emptyMap(), null);
+    }
+    return futureResult;
+  }
+
   @Override
   public void close() {
     routerOpen = false;
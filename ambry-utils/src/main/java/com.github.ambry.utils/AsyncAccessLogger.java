@@ -0,0 +1,310 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * <p>
+ * An access logger that takes the formatting and the writing of log entries off the threads that record them.
+ * <p>
+ * Entries are recorded in a ring buffer of preallocated {@link Entry} slots. A thread that wants to log an entry
+ * claims a slot with {@link #claim()}, sets the raw fields of the entry (objects whose {@code toString()} is deferred
+ * and primitive values) and publishes it with {@link #publish(Entry, EntryFormatter, boolean)}. Claiming and
+ * publishing are lock-free and do not allocate. A background thread drains published entries in batches, formats each
+ * of them with the {@link EntryFormatter} it was published with and hands the formatted message to a
+ * {@link LogWriter}.
+ * <p>
+ * If the ring buffer is full, {@link #claim()} does not block. The entry is dropped instead and counted in
+ * {@link #getDroppedCount()}.
+ */
+public class AsyncAccessLogger implements Closeable {
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private final LogWriter logWriter;
+  private final Entry[] entries;
+  private final int mask;
+  private final int batchSize;
+  private final long idleWaitNs;
+  // the sequence number of the next entry to be claimed.
+  private final AtomicLong claimSequence = new AtomicLong(0);
+  // the sequence number of the next entry to be written. Entries before this are free to be claimed again.
+  private final AtomicLong writeSequence = new AtomicLong(0);
+  private final AtomicLong droppedCount = new AtomicLong(0);
+  private final AtomicLong writtenCount = new AtomicLong(0);
+  private final Thread writerThread;
+  private volatile boolean isOpen = true;
+
+  /**
+   * Writes formatted log messages out.
+   */
+  public interface LogWriter {
+
+    /**
+     * Writes out a formatted log message. Called only from the background thread of the {@link AsyncAccessLogger}.
+     * @param message the formatted message.
+     * @param isError {@code true} if the message is an error.
+     */
+    void write(String message, boolean isError);
+  }
+
+  /**
+   * Formats the fields recorded in an {@link Entry} into a log message.
+   */
+  public interface EntryFormatter {
+
+    /**
+     * Formats the fields of {@code entry}. Called only from the background thread of the {@link AsyncAccessLogger}.
+     * @param entry the {@link Entry} to format.
+     * @param builder the {@link StringBuilder} to append the formatted message to.
+     */
+    void format(Entry entry, StringBuilder builder);
+  }
+
+  /**
+   * A preallocated slot of the ring buffer that holds the raw fields of a log entry.
+   */
+  public static class Entry {
+    private final Object[] fields;
+    private final long[] values;
+    private long sequence;
+    private EntryFormatter formatter;
+    private boolean isError;
+    // set to the sequence number of the entry when it is published.
+    private volatile long publishedSequence = -1;
+
+    private Entry(int fieldCount) {
+      fields = new Object[fieldCount];
+      values = new long[fieldCount];
+    }
+
+    /**
+     * Sets an object field. The object is only converted to a string when the entry is formatted.
+     * @param index the index of the field.
+     * @param field the field.
+     * @return this entry.
+     */
+    public Entry setField(int index, Object field) {
+      fields[index] = field;
+      return this;
+    }
+
+    /**
+     * @param index the index of the field.
+     * @return the object field at {@code index}.
+     */
+    public Object getField(int index) {
+      return fields[index];
+    }
+
+    /**
+     * Sets a primitive value.
+     * @param index the index of the value.
+     * @param value the value.
+     * @return this entry.
+     */
+    public Entry setValue(int index, long value) {
+      values[index] = value;
+      return this;
+    }
+
+    /**
+     * @param index the index of the value.
+     * @return the primitive value at {@code index}.
+     */
+    public long getValue(int index) {
+      return values[index];
+    }
+
+    /**
+     * @return the number of object fields (and of primitive values) that the entry can hold.
+     */
+    public int getFieldCount() {
+      return fields.length;
+    }
+
+    /**
+     * Releases the references held by the entry so that the slot does not keep them alive until it is reused.
+     */
+    private void clear() {
+      for (int i = 0; i < fields.length; i++) {
+        fields[i] = null;
+      }
+      formatter = null;
+    }
+  }
+
+  /**
+   * Creates an AsyncAccessLogger and starts its background thread.
+   * @param name the name of the background thread.
+   * @param logWriter the {@link LogWriter} to write formatted messages out to.
+   * @param capacity the number of entries that can be pending. Rounded up to a power of two.
+   * @param fieldCount the number of object fields (and of primitive values) that each entry can hold.
+   * @param batchSize the maximum number of entries written out before the slots they occupied are released.
+   * @param idleWaitMs the time the background thread waits for when there are no entries to write.
+   */
+  public AsyncAccessLogger(String name, LogWriter logWriter, int capacity, int fieldCount, int batchSize,
+      long idleWaitMs) {
+    if (capacity <= 0 || capacity > (1 << 30) || fieldCount < 0 || batchSize <= 0 || idleWaitMs <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid arguments: capacity=" + capacity + ", fieldCount=" + fieldCount + ", batchSize=" + batchSize
+              + ", idleWaitMs=" + idleWaitMs);
+    }
+    this.logWriter = logWriter;
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    entries = new Entry[size];
+    for (int i = 0; i < size; i++) {
+      entries[i] = new Entry(fieldCount);
+    }
+    mask = size - 1;
+    this.batchSize = batchSize;
+    idleWaitNs = TimeUnit.MILLISECONDS.toNanos(idleWaitMs);
+    writerThread = Utils.newThread(name, new Writer(), true);
+    writerThread.start();
+  }
+
+  /**
+   * Claims a slot for an entry. The slot must be published with {@link #publish(Entry, EntryFormatter, boolean)} as
+   * soon as its fields are set, since entries are written out in the order in which they were claimed.
+   * @return the {@link Entry} whose fields have to be set, or {@code null} if the entry has been dropped because there
+   *         is no free slot or this logger is closed.
+   */
+  public Entry claim() {
+    while (isOpen) {
+      long sequence = claimSequence.get();
+      if (sequence - writeSequence.get() >= entries.length) {
+        break;
+      }
+      if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+        Entry entry = entries[(int) (sequence & mask)];
+        entry.sequence = sequence;
+        return entry;
+      }
+    }
+    droppedCount.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Publishes an entry that was claimed with {@link #claim()}, for it to be formatted and written out.
+   * @param entry the {@link Entry} to publish.
+   * @param formatter the {@link EntryFormatter} to format the entry with.
+   * @param isError {@code true} if the entry is an error.
+   */
+  public void publish(Entry entry, EntryFormatter formatter, boolean isError) {
+    entry.formatter = formatter;
+    entry.isError = isError;
+    entry.publishedSequence = entry.sequence;
+  }
+
+  /**
+   * @return the number of entries that have been dropped because there was no free slot.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return the number of entries that have been written out.
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return the number of entries that have been claimed but not yet written out.
+   */
+  public int getPendingCount() {
+    return (int) (claimSequence.get() - writeSequence.get());
+  }
+
+  /**
+   * @return the number of entries that can be pending.
+   */
+  public int getCapacity() {
+    return entries.length;
+  }
+
+  /**
+   * Stops accepting entries, writes out the entries that have been published and stops the background thread. Entries
+   * that are being recorded concurrently with the close may be lost.
+   */
+  @Override
+  public void close() {
+    if (isOpen) {
+      isOpen = false;
+      LockSupport.unpark(writerThread);
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * The task of the background thread. Formats and writes out published entries in batches.
+   */
+  private class Writer implements Runnable {
+    private final StringBuilder builder = new StringBuilder();
+
+    @Override
+    public void run() {
+      long nextSequence = writeSequence.get();
+      while (true) {
+        int written = 0;
+        while (written < batchSize) {
+          Entry entry = entries[(int) (nextSequence & mask)];
+          if (entry.publishedSequence != nextSequence) {
+            break;
+          }
+          write(entry);
+          entry.clear();
+          nextSequence++;
+          written++;
+        }
+        if (written > 0) {
+          writtenCount.addAndGet(written);
+          writeSequence.set(nextSequence);
+        } else if (!isOpen) {
+          break;
+        } else {
+          LockSupport.parkNanos(idleWaitNs);
+        }
+      }
+    }
+
+    /**
+     * Formats an entry and writes it out.
+     * @param entry the {@link Entry} to write out.
+     */
+    private void write(Entry entry) {
+      try {
+        builder.setLength(0);
+        entry.formatter.format(entry, builder);
+        logWriter.write(builder.toString(), entry.isError);
+      } catch (Exception e) {
+        logger.error("Exception while writing out an access log entry", e);
+      }
+    }
+  }
+}
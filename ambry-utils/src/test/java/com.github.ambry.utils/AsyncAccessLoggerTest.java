@@ -0,0 +1,250 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link AsyncAccessLogger}.
+ */
+public class AsyncAccessLoggerTest {
+  private static final long IDLE_WAIT_MS = 1;
+
+  /**
+   * Formats the entries published by {@link #publish(AsyncAccessLogger, String, long)}.
+   */
+  private static final AsyncAccessLogger.EntryFormatter FORMATTER = new AsyncAccessLogger.EntryFormatter() {
+    @Override
+    public void format(AsyncAccessLogger.Entry entry, StringBuilder builder) {
+      builder.append(entry.getField(0)).append("-").append(entry.getValue(0));
+    }
+  };
+
+  /**
+   * Tests that published entries are formatted and written out in order, with their error flags, and that the fields
+   * of an entry are released once it has been written out.
+   * @throws Exception
+   */
+  @Test
+  public void testWriteInOrder()
+      throws Exception {
+    CollectingLogWriter logWriter = new CollectingLogWriter(null);
+    AsyncAccessLogger asyncAccessLogger = new AsyncAccessLogger("test", logWriter, 5, 1, 3, IDLE_WAIT_MS);
+    assertEquals("Capacity should be rounded up to a power of two", 8, asyncAccessLogger.getCapacity());
+    int count = 20;
+    AsyncAccessLogger.Entry lastEntry = null;
+    for (int i = 0; i < count; i++) {
+      lastEntry = asyncAccessLogger.claim();
+      assertNotNull("Entry should have been claimed", lastEntry);
+      lastEntry.setField(0, "entry").setValue(0, i);
+      asyncAccessLogger.publish(lastEntry, FORMATTER, i % 2 == 1);
+      // wait for the entries to be written out so that none is dropped.
+      waitForPendingEntries(asyncAccessLogger, 4);
+    }
+    asyncAccessLogger.close();
+    assertEquals("Unexpected number of entries written out", count, asyncAccessLogger.getWrittenCount());
+    assertEquals("No entry should be pending", 0, asyncAccessLogger.getPendingCount());
+    assertEquals("No entry should have been dropped", 0, asyncAccessLogger.getDroppedCount());
+    assertEquals("Unexpected number of messages", count, logWriter.messages.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals("Unexpected message", "entry-" + i, logWriter.messages.get(i));
+      assertEquals("Unexpected error flag", i % 2 == 1, logWriter.errors.get(i));
+    }
+    assertNull("Fields of an entry that has been written out should be released", lastEntry.getField(0));
+    assertNull("No entry should be claimed after close", asyncAccessLogger.claim());
+  }
+
+  /**
+   * Tests that entries are dropped rather than blocking the caller when the buffer is full.
+   * @throws Exception
+   */
+  @Test
+  public void testDropWhenFull()
+      throws Exception {
+    CountDownLatch writeAllowed = new CountDownLatch(1);
+    CollectingLogWriter logWriter = new CollectingLogWriter(writeAllowed);
+    AsyncAccessLogger asyncAccessLogger = new AsyncAccessLogger("test", logWriter, 4, 1, 4, IDLE_WAIT_MS);
+    int capacity = asyncAccessLogger.getCapacity();
+    for (int i = 0; i < capacity; i++) {
+      publish(asyncAccessLogger, "entry", i);
+    }
+    int extra = 10;
+    for (int i = 0; i < extra; i++) {
+      assertNull("Entry should have been dropped", asyncAccessLogger.claim());
+    }
+    assertEquals("Unexpected dropped count", extra, asyncAccessLogger.getDroppedCount());
+    assertEquals("Unexpected pending count", capacity, asyncAccessLogger.getPendingCount());
+    writeAllowed.countDown();
+    waitForPendingEntries(asyncAccessLogger, 0);
+    publish(asyncAccessLogger, "entry", capacity);
+    asyncAccessLogger.close();
+    assertEquals("Unexpected number of entries written out", capacity + 1, asyncAccessLogger.getWrittenCount());
+    for (int i = 0; i <= capacity; i++) {
+      assertEquals("Unexpected message", "entry-" + i, logWriter.messages.get(i));
+    }
+  }
+
+  /**
+   * Tests that entries published concurrently by several threads are all written out, in the order in which each
+   * thread published them.
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentPublishers()
+      throws Exception {
+    final int threadCount = 4;
+    final int entriesPerThread = 2000;
+    CollectingLogWriter logWriter = new CollectingLogWriter(null);
+    final AsyncAccessLogger asyncAccessLogger =
+        new AsyncAccessLogger("test", logWriter, threadCount * entriesPerThread, 1, 64, IDLE_WAIT_MS);
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      final String name = "thread" + t;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+          for (int i = 0; i < entriesPerThread; i++) {
+            publish(asyncAccessLogger, name, i);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    startLatch.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    asyncAccessLogger.close();
+    assertEquals("No entry should have been dropped", 0, asyncAccessLogger.getDroppedCount());
+    assertEquals("Unexpected number of messages", threadCount * entriesPerThread, logWriter.messages.size());
+    int[] nextValues = new int[threadCount];
+    for (String message : logWriter.messages) {
+      String[] parts = message.split("-");
+      int thread = Integer.parseInt(parts[0].substring("thread".length()));
+      assertEquals("Entries of a thread should be written out in order", nextValues[thread]++,
+          Integer.parseInt(parts[1]));
+    }
+  }
+
+  /**
+   * Tests that an entry that fails to be formatted does not stop the entries after it from being written out.
+   * @throws Exception
+   */
+  @Test
+  public void testFormatterFailure()
+      throws Exception {
+    CollectingLogWriter logWriter = new CollectingLogWriter(null);
+    AsyncAccessLogger asyncAccessLogger = new AsyncAccessLogger("test", logWriter, 8, 1, 8, IDLE_WAIT_MS);
+    AsyncAccessLogger.Entry entry = asyncAccessLogger.claim();
+    asyncAccessLogger.publish(entry, new AsyncAccessLogger.EntryFormatter() {
+      @Override
+      public void format(AsyncAccessLogger.Entry entry, StringBuilder builder) {
+        throw new IllegalStateException("Formatting failure");
+      }
+    }, false);
+    publish(asyncAccessLogger, "entry", 1);
+    asyncAccessLogger.close();
+    assertEquals("Unexpected messages", Collections.singletonList("entry-1"), logWriter.messages);
+  }
+
+  /**
+   * Tests that invalid arguments are rejected.
+   */
+  @Test
+  public void testInvalidArguments() {
+    CollectingLogWriter logWriter = new CollectingLogWriter(null);
+    int[][] invalidArgs = {{0, 1, 1, 1}, {(1 << 30) + 1, 1, 1, 1}, {8, -1, 1, 1}, {8, 1, 0, 1}, {8, 1, 1, 0}};
+    for (int[] args : invalidArgs) {
+      try {
+        new AsyncAccessLogger("test", logWriter, args[0], args[1], args[2], args[3]);
+        fail("Creation should have failed");
+      } catch (IllegalArgumentException e) {
+        // expected. Nothing to do.
+      }
+    }
+  }
+
+  /**
+   * Claims and publishes an entry with the given field and value.
+   * @param asyncAccessLogger the {@link AsyncAccessLogger} to publish to.
+   * @param field the object field of the entry.
+   * @param value the primitive value of the entry.
+   */
+  private static void publish(AsyncAccessLogger asyncAccessLogger, String field, long value) {
+    AsyncAccessLogger.Entry entry = asyncAccessLogger.claim();
+    assertNotNull("Entry should have been claimed", entry);
+    entry.setField(0, field).setValue(0, value);
+    asyncAccessLogger.publish(entry, FORMATTER, false);
+  }
+
+  /**
+   * Waits until no more than {@code maxPendingCount} entries are pending.
+   * @param asyncAccessLogger the {@link AsyncAccessLogger} to wait on.
+   * @param maxPendingCount the maximum number of pending entries.
+   * @throws InterruptedException
+   */
+  private static void waitForPendingEntries(AsyncAccessLogger asyncAccessLogger, int maxPendingCount)
+      throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (asyncAccessLogger.getPendingCount() > maxPendingCount) {
+      assertTrue("Entries were not written out in time", System.currentTimeMillis() < deadlineMs);
+      Thread.sleep(1);
+    }
+  }
+
+  /**
+   * A {@link AsyncAccessLogger.LogWriter} that collects the messages written out. Can be made to block until allowed
+   * to write.
+   */
+  private static class CollectingLogWriter implements AsyncAccessLogger.LogWriter {
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    final List<Boolean> errors = Collections.synchronizedList(new ArrayList<Boolean>());
+    private final CountDownLatch writeAllowed;
+
+    /**
+     * @param writeAllowed the latch to wait on before every write. Can be {@code null}.
+     */
+    CollectingLogWriter(CountDownLatch writeAllowed) {
+      this.writeAllowed = writeAllowed;
+    }
+
+    @Override
+    public void write(String message, boolean isError) {
+      if (writeAllowed != null) {
+        try {
+          writeAllowed.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      messages.add(message);
+      errors.add(isError);
+    }
+  }
+}